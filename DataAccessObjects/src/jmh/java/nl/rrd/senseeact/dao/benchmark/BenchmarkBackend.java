@@ -0,0 +1,161 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseFactory;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.senseeact.dao.RecordIdGenerator;
+import nl.rrd.senseeact.dao.mariadb.MariaDBDatabaseFactory;
+import nl.rrd.senseeact.dao.memdb.MemoryDatabaseFactory;
+import nl.rrd.utils.exception.DatabaseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opens database connections for the benchmarks. The backend is "memory" or
+ * "mariadb". The MariaDB backend is configured with the system properties
+ * benchMysqlHost, benchMysqlPort, benchMysqlUser, benchMysqlPassword and
+ * benchMysqlDatabase. The Gradle build only runs MariaDB benchmarks if
+ * benchMysqlRun is true.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class BenchmarkBackend {
+	public static final String MEMORY = "memory";
+	public static final String MARIADB = "mariadb";
+
+	public static final String USER = "benchuser";
+	public static final long START_TIME = 1700000000000L;
+	public static final long SAMPLE_INTERVAL = 1000;
+
+	private DatabaseConnection dbConn;
+	private String dbNamePrefix;
+
+	/**
+	 * Opens a connection to the specified backend.
+	 *
+	 * @param backend the backend ("memory" or "mariadb")
+	 * @param syncEnabled true if the databases should log database actions
+	 * @throws IOException if the connection could not be opened
+	 */
+	public BenchmarkBackend(String backend, boolean syncEnabled)
+			throws IOException {
+		this(backend, syncEnabled, false);
+	}
+
+	/**
+	 * Opens a connection to the specified backend.
+	 *
+	 * @param backend the backend ("memory" or "mariadb")
+	 * @param syncEnabled true if the databases should log database actions
+	 * @param userPartitioning true if tables that are split by user should be
+	 * stored in one table partitioned by user
+	 * @throws IOException if the connection could not be opened
+	 */
+	public BenchmarkBackend(String backend, boolean syncEnabled,
+			boolean userPartitioning) throws IOException {
+		DatabaseFactory dbFactory;
+		switch (backend) {
+			case MEMORY:
+				dbFactory = new MemoryDatabaseFactory();
+				dbNamePrefix = "benchmark";
+				break;
+			case MARIADB:
+				MariaDBDatabaseFactory mariaDbFactory =
+						new MariaDBDatabaseFactory();
+				mariaDbFactory.setHost(System.getProperty("benchMysqlHost",
+						"localhost"));
+				mariaDbFactory.setPort(Integer.parseInt(System.getProperty(
+						"benchMysqlPort", "3306")));
+				mariaDbFactory.setUser(System.getProperty("benchMysqlUser"));
+				mariaDbFactory.setPassword(System.getProperty(
+						"benchMysqlPassword"));
+				dbFactory = mariaDbFactory;
+				dbNamePrefix = System.getProperty("benchMysqlDatabase",
+						"ssa_dao_bench");
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown backend: " +
+						backend);
+		}
+		dbFactory.setSyncEnabled(syncEnabled);
+		dbFactory.setUserPartitioning(userPartitioning);
+		dbConn = dbFactory.connect();
+	}
+
+	/**
+	 * Sets the generator of IDs for new records in databases that are
+	 * created after this call.
+	 *
+	 * @param recordIdGenerator the record ID generator
+	 */
+	public void setRecordIdGenerator(RecordIdGenerator recordIdGenerator) {
+		dbConn.setRecordIdGenerator(recordIdGenerator);
+	}
+
+	/**
+	 * Drops and creates a database with the sample table. The name is
+	 * appended to the database name prefix.
+	 *
+	 * @param name the name suffix
+	 * @return the database
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public Database createDatabase(String name) throws DatabaseException {
+		String dbName = dbNamePrefix + "_" + name;
+		dbConn.dropDatabase(dbName);
+		List<DatabaseTableDef<?>> tableDefs = new ArrayList<>();
+		tableDefs.add(new BenchmarkSampleTable());
+		return dbConn.initDatabase(dbName, tableDefs, false);
+	}
+
+	/**
+	 * Drops the database with the specified name suffix.
+	 *
+	 * @param name the name suffix
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void dropDatabase(String name) throws DatabaseException {
+		dbConn.dropDatabase(dbNamePrefix + "_" + name);
+	}
+
+	/**
+	 * Closes the connection.
+	 */
+	public void close() {
+		dbConn.close();
+	}
+
+	/**
+	 * Creates sample records for user {@link #USER USER} at consecutive
+	 * times.
+	 *
+	 * @param start the index of the first sample
+	 * @param count the number of samples
+	 * @return the samples
+	 */
+	public static List<BenchmarkSample> createSamples(int start, int count) {
+		return createSamples(USER, start, count);
+	}
+
+	/**
+	 * Creates sample records for the specified user at consecutive times.
+	 *
+	 * @param user the user
+	 * @param start the index of the first sample
+	 * @param count the number of samples
+	 * @return the samples
+	 */
+	public static List<BenchmarkSample> createSamples(String user, int start,
+			int count) {
+		List<BenchmarkSample> result = new ArrayList<>();
+		for (int i = start; i < start + count; i++) {
+			result.add(new BenchmarkSample(user,
+					START_TIME + i * SAMPLE_INTERVAL, i * 0.5,
+					"sample" + i));
+		}
+		return result;
+	}
+}
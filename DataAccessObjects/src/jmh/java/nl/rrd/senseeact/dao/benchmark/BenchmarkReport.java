@@ -0,0 +1,102 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Compares two JMH result files in JSON format: a baseline and a current
+ * run. It prints a table with the score of each benchmark and parameter
+ * combination in both runs and the relative change. A change that is worse
+ * than the threshold is marked as a regression. For throughput benchmarks a
+ * higher score is better, for the other modes a lower score is better.
+ *
+ * <p>Usage: BenchmarkReport baseline.json current.json [thresholdPercent]</p>
+ *
+ * <p>The default threshold is 10%. If any regression is found, the program
+ * exits with status 1.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class BenchmarkReport {
+	private static final double DEFAULT_THRESHOLD = 10;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args[0].isEmpty()) {
+			System.err.println("Usage: BenchmarkReport baseline.json current.json [thresholdPercent]");
+			System.exit(2);
+		}
+		double threshold = DEFAULT_THRESHOLD;
+		if (args.length >= 3)
+			threshold = Double.parseDouble(args[2]);
+		Map<String,Result> baseline = readResults(new File(args[0]));
+		Map<String,Result> current = readResults(new File(args[1]));
+		boolean regression = false;
+		System.out.println(String.format("%-70s %14s %14s %9s",
+				"Benchmark", "Baseline", "Current", "Change"));
+		for (String key : current.keySet()) {
+			Result curr = current.get(key);
+			Result base = baseline.get(key);
+			if (base == null) {
+				System.out.println(String.format("%-70s %14s %14.3f %9s",
+						key, "-", curr.score, "new"));
+				continue;
+			}
+			double change = 100 * (curr.score - base.score) / base.score;
+			boolean higherIsBetter = curr.mode.equals("thrpt");
+			double worse = higherIsBetter ? -change : change;
+			String mark = "";
+			if (worse > threshold) {
+				mark = " REGRESSION";
+				regression = true;
+			}
+			System.out.println(String.format("%-70s %14.3f %14.3f %+8.1f%% %s%s",
+					key, base.score, curr.score, change, curr.unit, mark));
+		}
+		for (String key : baseline.keySet()) {
+			if (!current.containsKey(key)) {
+				System.out.println(String.format("%-70s %14.3f %14s %9s",
+						key, baseline.get(key).score, "-", "removed"));
+			}
+		}
+		if (regression)
+			System.exit(1);
+	}
+
+	private static Map<String,Result> readResults(File file)
+			throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		List<Map<String,Object>> list = mapper.readValue(file,
+				new TypeReference<>() {});
+		Map<String,Result> results = new LinkedHashMap<>();
+		for (Map<?,?> item : list) {
+			String benchmark = (String)item.get("benchmark");
+			benchmark = benchmark.substring(benchmark.lastIndexOf('.',
+					benchmark.lastIndexOf('.') - 1) + 1);
+			Map<?,?> params = (Map<?,?>)item.get("params");
+			StringBuilder key = new StringBuilder(benchmark);
+			if (params != null) {
+				for (Object param : new TreeSet<>(params.keySet())) {
+					key.append(String.format(" %s=%s", param,
+							params.get(param)));
+				}
+			}
+			Map<?,?> metric = (Map<?,?>)item.get("primaryMetric");
+			Result result = new Result();
+			result.mode = (String)item.get("mode");
+			result.score = ((Number)metric.get("score")).doubleValue();
+			result.unit = (String)metric.get("scoreUnit");
+			results.put(key.toString(), result);
+		}
+		return results;
+	}
+
+	private static class Result {
+		public String mode;
+		public double score;
+		public String unit;
+	}
+}
@@ -0,0 +1,55 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+import nl.rrd.senseeact.dao.UserDatabaseObject;
+
+/**
+ * Sample record that is used in the benchmarks. It resembles a sensor
+ * sample with a user, a time and a value.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class BenchmarkSample extends UserDatabaseObject {
+	@DatabaseField(value=DatabaseType.LONG, index=true)
+	private long utcTime;
+	@DatabaseField(value=DatabaseType.DOUBLE)
+	private double value;
+	@DatabaseField(value=DatabaseType.STRING)
+	private String label;
+
+	public BenchmarkSample() {
+	}
+
+	public BenchmarkSample(String user, long utcTime, double value,
+			String label) {
+		super(user);
+		this.utcTime = utcTime;
+		this.value = value;
+		this.label = label;
+	}
+
+	public long getUtcTime() {
+		return utcTime;
+	}
+
+	public void setUtcTime(long utcTime) {
+		this.utcTime = utcTime;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public void setValue(double value) {
+		this.value = value;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	public void setLabel(String label) {
+		this.label = label;
+	}
+}
@@ -0,0 +1,21 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+public class BenchmarkSampleTable extends DatabaseTableDef<BenchmarkSample> {
+	public static final String NAME = "benchmark_sample";
+
+	private static final int VERSION = 0;
+
+	public BenchmarkSampleTable() {
+		super(NAME, BenchmarkSample.class, VERSION, true);
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
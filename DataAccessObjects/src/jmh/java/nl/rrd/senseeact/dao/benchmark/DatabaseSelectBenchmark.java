@@ -0,0 +1,78 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.utils.exception.DatabaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks selecting a time range of records for a user, as done when
+ * reading sensor samples.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseSelectBenchmark {
+	private static final String DB_NAME = "select";
+
+	@Param({BenchmarkBackend.MEMORY, BenchmarkBackend.MARIADB})
+	public String backend;
+
+	@Param({"1000", "10000", "100000"})
+	public int tableSize;
+
+	@Param({"100"})
+	public int rangeSize;
+
+	private BenchmarkBackend dbBackend;
+	private Database db;
+	private BenchmarkSampleTable table = new BenchmarkSampleTable();
+	private int nextStart = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, DatabaseException {
+		dbBackend = new BenchmarkBackend(backend, false);
+		db = dbBackend.createDatabase(DB_NAME);
+		int batch = 1000;
+		for (int i = 0; i < tableSize; i += batch) {
+			db.insert(BenchmarkSampleTable.NAME,
+					BenchmarkBackend.createSamples(i,
+					Math.min(batch, tableSize - i)));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DatabaseException {
+		dbBackend.dropDatabase(DB_NAME);
+		dbBackend.close();
+	}
+
+	@Benchmark
+	public List<BenchmarkSample> selectTimeRange() throws DatabaseException {
+		int start = nextStart;
+		nextStart = (nextStart + rangeSize) % (tableSize - rangeSize);
+		long startTime = BenchmarkBackend.START_TIME +
+				start * BenchmarkBackend.SAMPLE_INTERVAL;
+		long endTime = startTime + rangeSize *
+				BenchmarkBackend.SAMPLE_INTERVAL;
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("user", BenchmarkBackend.USER),
+				new DatabaseCriteria.GreaterEqual("utcTime", startTime),
+				new DatabaseCriteria.LessThan("utcTime", endTime)
+		);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("utcTime", true)
+		};
+		return db.select(table, criteria, 0, sort);
+	}
+}
@@ -0,0 +1,83 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.utils.exception.DatabaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks bulk inserts and updates of single records. Both are run with
+ * and without action logging for synchronisation.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseWriteBenchmark {
+	private static final String DB_NAME = "write";
+
+	@Param({BenchmarkBackend.MEMORY, BenchmarkBackend.MARIADB})
+	public String backend;
+
+	@Param({"1000", "10000"})
+	public int tableSize;
+
+	@Param({"false", "true"})
+	public boolean actionLog;
+
+	private BenchmarkBackend dbBackend;
+	private Database db;
+	private List<BenchmarkSample> records;
+	private int nextUpdate;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, DatabaseException {
+		dbBackend = new BenchmarkBackend(backend, actionLog);
+		db = dbBackend.createDatabase(DB_NAME);
+		records = BenchmarkBackend.createSamples(0, tableSize);
+		db.insert(BenchmarkSampleTable.NAME, records);
+		nextUpdate = 0;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DatabaseException {
+		dbBackend.dropDatabase(DB_NAME);
+		dbBackend.close();
+	}
+
+	@Benchmark
+	public void bulkInsert(InsertBatch batch) throws DatabaseException {
+		db.insert(BenchmarkSampleTable.NAME, batch.samples);
+	}
+
+	@Benchmark
+	public void updateRecord() throws DatabaseException {
+		BenchmarkSample record = records.get(nextUpdate);
+		nextUpdate = (nextUpdate + 1) % records.size();
+		record.setValue(record.getValue() + 1);
+		db.update(BenchmarkSampleTable.NAME, record);
+	}
+
+	@State(Scope.Thread)
+	public static class InsertBatch {
+		@Param({"100"})
+		public int batchSize;
+
+		public List<BenchmarkSample> samples;
+		private int nextSample = 0;
+
+		@Setup(Level.Invocation)
+		public void createBatch() {
+			// inserted samples get an ID, so create new ones each time
+			samples = BenchmarkBackend.createSamples(nextSample, batchSize);
+			nextSample += batchSize;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.DatabaseAction;
+import nl.rrd.senseeact.dao.DatabaseAction.Action;
+import nl.rrd.senseeact.dao.DatabaseFieldException;
+import nl.rrd.senseeact.dao.DatabaseObjectMapper;
+import nl.rrd.senseeact.dao.sync.DatabaseActionMerger;
+import nl.rrd.senseeact.dao.sync.MergeException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the conversion between database objects and data maps with
+ * {@link DatabaseObjectMapper DatabaseObjectMapper}, and merging of database
+ * actions with {@link DatabaseActionMerger DatabaseActionMerger}. These do
+ * not use a database.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+	private DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+	private BenchmarkSample sample;
+	private Map<String,Object> sampleMap;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		sample = BenchmarkBackend.createSamples(0, 1).get(0);
+		sample.setId("0123456789abcdef0123456789abcdef");
+		sampleMap = mapper.objectToMap(sample, false);
+	}
+
+	@Benchmark
+	public Map<String,Object> objectToMap() {
+		return mapper.objectToMap(sample, false);
+	}
+
+	@Benchmark
+	public BenchmarkSample mapToObject() throws DatabaseFieldException {
+		return mapper.mapToObject(sampleMap, BenchmarkSample.class, false);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public List<DatabaseAction> mergeActions(ActionState state)
+			throws MergeException {
+		DatabaseActionMerger merger = new DatabaseActionMerger();
+		return merger.mergeActions(state.actions);
+	}
+
+	@State(Scope.Thread)
+	public static class ActionState {
+		@Param({"100", "1000"})
+		public int recordCount;
+
+		public List<DatabaseAction> actions;
+
+		@Setup(Level.Invocation)
+		public void createActions() {
+			// the merger changes the actions, so create new ones each time
+			actions = new ArrayList<>();
+			long time = BenchmarkBackend.START_TIME;
+			for (int i = 0; i < recordCount; i++) {
+				Map<String,Object> data = new LinkedHashMap<>();
+				data.put("user", BenchmarkBackend.USER);
+				data.put("utcTime", time);
+				data.put("value", 0.5 * i);
+				data.put("label", "sample" + i);
+				actions.add(createAction(Action.INSERT, i, data, time++));
+				data = new LinkedHashMap<>();
+				data.put("value", 0.5 * i + 1);
+				actions.add(createAction(Action.UPDATE, i, data, time++));
+				data = new LinkedHashMap<>();
+				data.put("label", "updated" + i);
+				actions.add(createAction(Action.UPDATE, i, data, time++));
+			}
+		}
+
+		private DatabaseAction createAction(Action action, int record,
+				Map<String,Object> data, long time) {
+			DatabaseAction result = new DatabaseAction();
+			result.setTable(BenchmarkSampleTable.NAME);
+			result.setUser(BenchmarkBackend.USER);
+			result.setAction(action);
+			result.setRecordId(String.format("%032x", record));
+			result.setData(data);
+			result.setTime(time);
+			return result;
+		}
+	}
+}
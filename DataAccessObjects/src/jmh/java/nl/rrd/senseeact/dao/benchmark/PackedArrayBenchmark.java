@@ -0,0 +1,79 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import nl.rrd.senseeact.dao.DatabaseType;
+import nl.rrd.senseeact.dao.PackedArrayCodec;
+import nl.rrd.utils.exception.ParseException;
+import nl.rrd.utils.json.JsonMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the encoding of a list of step counts as a JSON array
+ * (database type {@link DatabaseType#TEXT TEXT}) and as a packed array
+ * (database type {@link DatabaseType#PACKED_ARRAY PACKED_ARRAY}). The
+ * parameter "valueCount" is the number of values: 60 for the seconds in a
+ * minute or 1440 for the minutes in a day. The encoded sizes are written to
+ * standard output at setup.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackedArrayBenchmark {
+	@Param({"60", "1440"})
+	public int valueCount;
+
+	private List<Integer> valueList;
+	private long[] values;
+	private String json;
+	private String packed;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		// step counts: mostly idle with bursts of walking
+		Random random = new Random(0);
+		valueList = new ArrayList<>();
+		values = new long[valueCount];
+		int steps = 0;
+		for (int i = 0; i < valueCount; i++) {
+			if (random.nextInt(4) == 0)
+				steps = random.nextInt(2) == 0 ? 0 : 80 + random.nextInt(40);
+			valueList.add(steps);
+			values[i] = steps;
+		}
+		json = JsonMapper.generate(valueList);
+		packed = PackedArrayCodec.encode(values);
+		System.out.println(String.format(
+				"Encoded size of %d values: JSON %d bytes, packed %d bytes",
+				valueCount, json.length(), packed.length()));
+	}
+
+	@Benchmark
+	public String encodeJson() {
+		return JsonMapper.generate(valueList);
+	}
+
+	@Benchmark
+	public List<Integer> decodeJson() throws ParseException {
+		return JsonMapper.parse(json, new TypeReference<>() {});
+	}
+
+	@Benchmark
+	public String encodePacked() {
+		return PackedArrayCodec.encode(values);
+	}
+
+	@Benchmark
+	public long[] decodePacked() {
+		return PackedArrayCodec.decode(packed);
+	}
+}
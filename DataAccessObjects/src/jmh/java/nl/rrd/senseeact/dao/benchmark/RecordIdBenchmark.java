@@ -0,0 +1,136 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.RandomRecordIdGenerator;
+import nl.rrd.senseeact.dao.RecordIdGenerator;
+import nl.rrd.senseeact.dao.TimeOrderedRecordIdGenerator;
+import nl.rrd.senseeact.dao.mariadb.MariaDBDatabase;
+import nl.rrd.senseeact.dao.mariadb.MariaDBRaw;
+import nl.rrd.utils.exception.DatabaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares bulk insert throughput for random record IDs and time-ordered
+ * record IDs (see {@link Database#setRecordIdGenerator(RecordIdGenerator)
+ * Database.setRecordIdGenerator()}). The table is filled with an initial
+ * number of samples and each invocation appends a batch of new samples
+ * without an ID.
+ *
+ * <p>For MariaDB the teardown prints the size of the data (including the
+ * primary key) and the secondary indexes per record, as reported by
+ * information_schema after ANALYZE TABLE. The table grows during the run,
+ * so the size is divided by the number of records.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordIdBenchmark {
+	private static final String DB_NAME = "record_id";
+
+	public static final String RANDOM = "random";
+	public static final String TIME_ORDERED = "timeOrdered";
+
+	@Param({BenchmarkBackend.MEMORY, BenchmarkBackend.MARIADB})
+	public String backend;
+
+	@Param({RANDOM, TIME_ORDERED})
+	public String idFormat;
+
+	@Param({"100000"})
+	public int tableSize;
+
+	private BenchmarkBackend dbBackend;
+	private Database db;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, DatabaseException {
+		dbBackend = new BenchmarkBackend(backend, false);
+		dbBackend.setRecordIdGenerator(createGenerator());
+		db = dbBackend.createDatabase(DB_NAME);
+		int batch = 1000;
+		for (int i = 0; i < tableSize; i += batch) {
+			db.insert(BenchmarkSampleTable.NAME,
+					BenchmarkBackend.createSamples(i,
+					Math.min(batch, tableSize - i)));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DatabaseException {
+		if (db instanceof MariaDBDatabase mariaDb)
+			printTableSize(mariaDb);
+		dbBackend.dropDatabase(DB_NAME);
+		dbBackend.close();
+	}
+
+	@Benchmark
+	public void bulkInsert(InsertBatch batch) throws DatabaseException {
+		db.insert(BenchmarkSampleTable.NAME, batch.samples);
+	}
+
+	private RecordIdGenerator createGenerator() {
+		switch (idFormat) {
+			case RANDOM:
+				return new RandomRecordIdGenerator();
+			case TIME_ORDERED:
+				return new TimeOrderedRecordIdGenerator();
+			default:
+				throw new IllegalArgumentException("Unknown ID format: " +
+						idFormat);
+		}
+	}
+
+	private void printTableSize(MariaDBDatabase mariaDb)
+			throws DatabaseException {
+		MariaDBRaw raw = new MariaDBRaw(mariaDb);
+		String where = "TABLE_SCHEMA = ? AND TABLE_NAME LIKE ?";
+		String[] args = new String[] { mariaDb.getName(),
+				BenchmarkSampleTable.NAME + "%" };
+		List<String> tables = raw.queryStringList(
+				"SELECT TABLE_NAME FROM information_schema.TABLES WHERE " +
+				where, args);
+		int count = 0;
+		for (String table : tables) {
+			raw.getQueryRunner().rawQuery("ANALYZE TABLE `" + table + "`",
+					null).close();
+			count += raw.queryInt("SELECT COUNT(*) FROM `" + table + "`",
+					null);
+		}
+		Integer dataKb = raw.queryInt("SELECT SUM(DATA_LENGTH) DIV 1024 " +
+				"FROM information_schema.TABLES WHERE " + where, args);
+		Integer indexKb = raw.queryInt("SELECT SUM(INDEX_LENGTH) DIV 1024 " +
+				"FROM information_schema.TABLES WHERE " + where, args);
+		if (count == 0 || dataKb == null || indexKb == null)
+			return;
+		System.out.println(String.format(
+				"%s: %d records, data %d KB (%.1f bytes/record), " +
+				"indexes %d KB (%.1f bytes/record)",
+				idFormat, count, dataKb, dataKb * 1024.0 / count, indexKb,
+				indexKb * 1024.0 / count));
+	}
+
+	@State(Scope.Thread)
+	public static class InsertBatch {
+		@Param({"100"})
+		public int batchSize;
+
+		public List<BenchmarkSample> samples;
+		private int nextSample = 0;
+
+		@Setup(Level.Invocation)
+		public void createBatch() {
+			// inserted samples get an ID, so create new ones each time
+			samples = BenchmarkBackend.createSamples(nextSample, batchSize);
+			nextSample += batchSize;
+		}
+	}
+}
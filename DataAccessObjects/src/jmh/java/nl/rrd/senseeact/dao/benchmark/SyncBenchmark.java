@@ -0,0 +1,96 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseAction;
+import nl.rrd.senseeact.dao.sync.DatabaseSynchronizer;
+import nl.rrd.senseeact.dao.sync.IllegalInputException;
+import nl.rrd.senseeact.dao.sync.SyncForbiddenException;
+import nl.rrd.utils.exception.DatabaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading database actions from a source database and a full
+ * round trip where the actions are written to an empty target database.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncBenchmark {
+	private static final String SOURCE_DB_NAME = "sync_source";
+	private static final String TARGET_DB_NAME = "sync_target";
+	private static final String SOURCE = "benchmark";
+
+	@Param({BenchmarkBackend.MEMORY, BenchmarkBackend.MARIADB})
+	public String backend;
+
+	@Param({"1000", "10000"})
+	public int tableSize;
+
+	@Param({"500"})
+	public int batchSize;
+
+	private BenchmarkBackend dbBackend;
+	private Database sourceDb;
+	private Database targetDb;
+	private DatabaseSynchronizer sync;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, DatabaseException {
+		dbBackend = new BenchmarkBackend(backend, true);
+		sourceDb = dbBackend.createDatabase(SOURCE_DB_NAME);
+		int batch = 1000;
+		for (int i = 0; i < tableSize; i += batch) {
+			List<BenchmarkSample> samples = BenchmarkBackend.createSamples(i,
+					Math.min(batch, tableSize - i));
+			sourceDb.insert(BenchmarkSampleTable.NAME, samples);
+			// half of the records get an update that should be merged
+			for (int j = 0; j < samples.size(); j += 2) {
+				BenchmarkSample sample = samples.get(j);
+				sample.setValue(sample.getValue() + 1);
+				sourceDb.update(BenchmarkSampleTable.NAME, sample);
+			}
+		}
+		sync = new DatabaseSynchronizer(BenchmarkBackend.USER, false);
+	}
+
+	@Setup(Level.Invocation)
+	public void createTarget() throws DatabaseException {
+		targetDb = dbBackend.createDatabase(TARGET_DB_NAME);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DatabaseException {
+		dbBackend.dropDatabase(SOURCE_DB_NAME);
+		dbBackend.dropDatabase(TARGET_DB_NAME);
+		dbBackend.close();
+	}
+
+	@Benchmark
+	public List<DatabaseAction> readBatch() throws DatabaseException {
+		return sync.readSyncActions(sourceDb, null, batchSize, null, null);
+	}
+
+	@Benchmark
+	public int roundTrip() throws DatabaseException, IllegalInputException,
+			SyncForbiddenException {
+		int count = 0;
+		while (true) {
+			List<DatabaseAction> actions = sync.readSyncActions(sourceDb,
+					sync.getSyncProgress(targetDb), batchSize, null,
+					List.of(SOURCE));
+			if (actions.isEmpty())
+				return count;
+			sync.writeSyncActions(targetDb, actions, SOURCE);
+			count += actions.size();
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseAction;
+import nl.rrd.senseeact.dao.sync.DatabaseSynchronizer;
+import nl.rrd.senseeact.dao.sync.IllegalInputException;
+import nl.rrd.senseeact.dao.sync.SyncForbiddenException;
+import nl.rrd.senseeact.dao.sync.SyncProgressTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the number of database actions per second that {@link
+ * DatabaseSynchronizer#writeSyncActions(Database, List, String)
+ * writeSyncActions()} can validate and write for one large upload. The
+ * upload is written to an empty database and to a database that already
+ * contains all records. In the last case every insert action is changed to
+ * an update action, so most of the time is spent in validation.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SyncWriteBenchmark {
+	private static final String SOURCE_DB_NAME = "sync_write_source";
+	private static final String NEW_DB_NAME = "sync_write_new";
+	private static final String EXISTING_DB_NAME = "sync_write_existing";
+	private static final String SOURCE = "benchmark";
+
+	/**
+	 * The number of actions in the upload. This is the number of operations
+	 * per benchmark invocation.
+	 */
+	public static final int UPLOAD_SIZE = 5000;
+
+	@Param({BenchmarkBackend.MEMORY, BenchmarkBackend.MARIADB})
+	public String backend;
+
+	private BenchmarkBackend dbBackend;
+	private Database newDb;
+	private Database existingDb;
+	private DatabaseSynchronizer sync;
+	private List<DatabaseAction> actions;
+	private List<DatabaseAction.Action> actionTypes = new ArrayList<>();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, DatabaseException,
+			IllegalInputException, SyncForbiddenException {
+		dbBackend = new BenchmarkBackend(backend, true);
+		Database sourceDb = dbBackend.createDatabase(SOURCE_DB_NAME);
+		sourceDb.insert(BenchmarkSampleTable.NAME,
+				BenchmarkBackend.createSamples(0, UPLOAD_SIZE));
+		sync = new DatabaseSynchronizer(BenchmarkBackend.USER, false);
+		actions = sync.readSyncActions(sourceDb, null, 0, null, null);
+		for (DatabaseAction action : actions) {
+			actionTypes.add(action.getAction());
+		}
+		existingDb = dbBackend.createDatabase(EXISTING_DB_NAME);
+		sync.writeSyncActions(existingDb, actions, SOURCE);
+	}
+
+	@Setup(Level.Invocation)
+	public void prepareUpload() throws DatabaseException {
+		// validation changes inserts of existing records to updates
+		for (int i = 0; i < actions.size(); i++) {
+			actions.get(i).setAction(actionTypes.get(i));
+		}
+		newDb = dbBackend.createDatabase(NEW_DB_NAME);
+		existingDb.delete(new SyncProgressTableDef(), null);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DatabaseException {
+		dbBackend.dropDatabase(SOURCE_DB_NAME);
+		dbBackend.dropDatabase(NEW_DB_NAME);
+		dbBackend.dropDatabase(EXISTING_DB_NAME);
+		dbBackend.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(UPLOAD_SIZE)
+	public void uploadNew() throws DatabaseException, IllegalInputException,
+			SyncForbiddenException {
+		sync.writeSyncActions(newDb, actions, SOURCE);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(UPLOAD_SIZE)
+	public void uploadExisting() throws DatabaseException,
+			IllegalInputException, SyncForbiddenException {
+		sync.writeSyncActions(existingDb, actions, SOURCE);
+	}
+}
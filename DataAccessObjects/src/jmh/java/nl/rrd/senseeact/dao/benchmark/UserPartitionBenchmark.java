@@ -0,0 +1,98 @@
+package nl.rrd.senseeact.dao.benchmark;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.utils.exception.DatabaseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-user query latency for a table that is split by user, when it
+ * is stored in a separate table per user and when it is stored in one table
+ * partitioned by user (see {@link Database#setUserPartitioning(boolean)
+ * Database.setUserPartitioning()}). The table is filled with samples for
+ * many users. Each invocation selects a time range for the next user.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserPartitionBenchmark {
+	private static final String DB_NAME = "user_partition";
+
+	@Param({BenchmarkBackend.MEMORY, BenchmarkBackend.MARIADB})
+	public String backend;
+
+	@Param({"false", "true"})
+	public boolean userPartitioning;
+
+	@Param({"100", "1000"})
+	public int userCount;
+
+	@Param({"1000"})
+	public int userSize;
+
+	@Param({"100"})
+	public int rangeSize;
+
+	private BenchmarkBackend dbBackend;
+	private Database db;
+	private BenchmarkSampleTable table = new BenchmarkSampleTable();
+	private int nextUser = 0;
+	private int nextStart = 0;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, DatabaseException {
+		dbBackend = new BenchmarkBackend(backend, false, userPartitioning);
+		db = dbBackend.createDatabase(DB_NAME);
+		int batch = 1000;
+		for (int user = 0; user < userCount; user++) {
+			for (int i = 0; i < userSize; i += batch) {
+				db.insert(BenchmarkSampleTable.NAME,
+						BenchmarkBackend.createSamples(getUser(user), i,
+						Math.min(batch, userSize - i)));
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DatabaseException {
+		dbBackend.dropDatabase(DB_NAME);
+		dbBackend.close();
+	}
+
+	@Benchmark
+	public List<BenchmarkSample> selectUserTimeRange()
+			throws DatabaseException {
+		String user = getUser(nextUser);
+		int start = nextStart;
+		nextUser = (nextUser + 1) % userCount;
+		if (nextUser == 0)
+			nextStart = (nextStart + rangeSize) % (userSize - rangeSize);
+		long startTime = BenchmarkBackend.START_TIME +
+				start * BenchmarkBackend.SAMPLE_INTERVAL;
+		long endTime = startTime + rangeSize *
+				BenchmarkBackend.SAMPLE_INTERVAL;
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("user", user),
+				new DatabaseCriteria.GreaterEqual("utcTime", startTime),
+				new DatabaseCriteria.LessThan("utcTime", endTime)
+		);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("utcTime", true)
+		};
+		return db.select(table, criteria, 0, sort);
+	}
+
+	private String getUser(int index) {
+		return BenchmarkBackend.USER + index;
+	}
+}
@@ -12,15 +12,14 @@ import nl.rrd.senseeact.dao.listener.DatabaseEvent;
 import nl.rrd.senseeact.dao.listener.DatabaseListenerRepository;
 import nl.rrd.senseeact.dao.sync.DatabaseActionMerger;
 import nl.rrd.senseeact.dao.sync.MergeException;
+import nl.rrd.senseeact.dao.sync.SyncConsumerProgressTableDef;
 import nl.rrd.senseeact.dao.sync.SyncProgressTableDef;
+import nl.rrd.senseeact.dao.sync.SyncWatermark;
+import nl.rrd.senseeact.dao.sync.SyncWatermarkTableDef;
 import org.slf4j.Logger;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 /**
@@ -128,11 +127,16 @@ import java.util.*;
 public abstract class Database {
 	public static final String LOGTAG = Database.class.getSimpleName();
 	public static final String TABLE_TOKEN_SEP = "__";
+	public static final String USER_PARTITION_INDEX = "userPartition";
 
 	private String name;
 	
 	private boolean syncEnabled = false;
 	private boolean saveSyncedRemoteActions = true;
+	private boolean userPartitioning = false;
+	private boolean rangeDeleteEnabled = false;
+	private RecordIdGenerator recordIdGenerator =
+			new RandomRecordIdGenerator();
 
 	////////////////////////////////////////////////////////////////////////////
 	// flags to enable caching
@@ -205,6 +209,112 @@ public abstract class Database {
 		this.saveSyncedRemoteActions = saveSyncedRemoteActions;
 	}
 
+	/**
+	 * Returns whether tables that are split by user (see {@link
+	 * DatabaseTableDef#isSplitByUser() DatabaseTableDef.isSplitByUser()})
+	 * should be stored in one physical table that is partitioned by user,
+	 * rather than in a separate physical table per user. The default is
+	 * false.
+	 *
+	 * @return true if tables that are split by user are stored in one
+	 * partitioned table, false if they are stored in a table per user
+	 */
+	public boolean isUserPartitioning() {
+		return userPartitioning;
+	}
+
+	/**
+	 * Sets whether tables that are split by user (see {@link
+	 * DatabaseTableDef#isSplitByUser() DatabaseTableDef.isSplitByUser()})
+	 * should be stored in one physical table that is partitioned by user,
+	 * rather than in a separate physical table per user. The default is
+	 * false.
+	 *
+	 * <p>This should be set before the tables are initialised with {@link
+	 * #initTable(DatabaseTableDef) initTable()}. If the storage of an existing
+	 * table does not match, the records are moved to the new storage.</p>
+	 *
+	 * <p>A partitioned table with many users avoids a large number of
+	 * physical tables. It also allows queries across users. The layout of the
+	 * partitioned table depends on the implementation. See {@link
+	 * #partitionTableByUser(String) partitionTableByUser()}.</p>
+	 *
+	 * @param userPartitioning true if tables that are split by user are
+	 * stored in one partitioned table, false if they are stored in a table
+	 * per user
+	 */
+	public void setUserPartitioning(boolean userPartitioning) {
+		this.userPartitioning = userPartitioning;
+	}
+
+	/**
+	 * Returns whether a delete with criteria is logged as one action {@link
+	 * DatabaseAction.Action#DELETE_RANGE DELETE_RANGE}, rather than a delete
+	 * action for each deleted record. The default is false. See {@link
+	 * #setRangeDeleteEnabled(boolean) setRangeDeleteEnabled()}.
+	 *
+	 * @return true if range deletes are logged, false if a delete action is
+	 * logged for each record
+	 */
+	public boolean isRangeDeleteEnabled() {
+		return rangeDeleteEnabled;
+	}
+
+	/**
+	 * Sets whether a delete with criteria is logged as one action {@link
+	 * DatabaseAction.Action#DELETE_RANGE DELETE_RANGE}, rather than a delete
+	 * action for each deleted record. The default is false.
+	 *
+	 * <p>A range delete is cheaper, because the deleted records don't need to
+	 * be read and logged. But when a remote database runs the action, it
+	 * deletes the records that match the criteria in that database. These
+	 * can be different records. For example if a client inserted a matching
+	 * record that was not synchronised yet when the records were deleted
+	 * here, the client deletes that record, while it's still inserted here
+	 * at the next synchronisation. Furthermore clients that were built before
+	 * this action was introduced, can't read it.</p>
+	 *
+	 * <p>Therefore you should only enable this if all clients support range
+	 * deletes and clients don't write to the tables where you delete records
+	 * with criteria, or if such differences don't matter.</p>
+	 *
+	 * @param rangeDeleteEnabled true if range deletes are logged, false if a
+	 * delete action is logged for each record
+	 */
+	public void setRangeDeleteEnabled(boolean rangeDeleteEnabled) {
+		this.rangeDeleteEnabled = rangeDeleteEnabled;
+	}
+
+	/**
+	 * Returns the generator of IDs for new records. It is used when a record
+	 * is inserted without an ID. The default is a {@link
+	 * RandomRecordIdGenerator RandomRecordIdGenerator}.
+	 *
+	 * @return the record ID generator
+	 */
+	public RecordIdGenerator getRecordIdGenerator() {
+		return recordIdGenerator;
+	}
+
+	/**
+	 * Sets the generator of IDs for new records. It is used when a record is
+	 * inserted without an ID. The default is a {@link RandomRecordIdGenerator
+	 * RandomRecordIdGenerator}, which generates random UUIDs. A {@link
+	 * TimeOrderedRecordIdGenerator TimeOrderedRecordIdGenerator} generates
+	 * IDs that increase with time, so new records are appended to the primary
+	 * key index. Both generate strings of 32 hexadecimal characters, so
+	 * existing records keep their IDs and the generator can be changed at
+	 * any time.
+	 *
+	 * <p>The memory database does not use this generator. It assigns
+	 * sequential numbers.</p>
+	 *
+	 * @param recordIdGenerator the record ID generator
+	 */
+	public void setRecordIdGenerator(RecordIdGenerator recordIdGenerator) {
+		this.recordIdGenerator = recordIdGenerator;
+	}
+
 	/**
 	 * Returns whether initialisation of the database has been finished. This
 	 * means that the database structure will not change anymore and related
@@ -263,6 +373,8 @@ public abstract class Database {
 				new ArrayList<>();
 		reservedTables.add(UserTableKeyTable.class);
 		reservedTables.add(SyncProgressTableDef.class);
+		reservedTables.add(SyncWatermarkTableDef.class);
+		reservedTables.add(SyncConsumerProgressTableDef.class);
 		reservedTables.add(DatabaseActionMetaTable.class);
 		List<String> tables = getCachedDbTables();
 		if (tableDef instanceof TableMetadataTableDef) {
@@ -288,6 +400,9 @@ public abstract class Database {
 			createMetaTable(tableDef);
 		} else {
 			upgradeTable(tableDef, versionMeta);
+			addLocalTimeMillisColumns(tableDef);
+			upgradeUserStorage(tableDef, TableMetadata.findKey(metas,
+					TableMetadata.KEY_SPLIT_BY_USER));
 			List<TableMetadata> newMetas = new ArrayList<>();
 			newMetas.add(versionMeta);
 			newMetas.add(cache.setTableFields(this, tableDef.getName(),
@@ -301,8 +416,12 @@ public abstract class Database {
 					tableDef.getCompoundIndexes(), TableMetadata.findKey(metas,
 					TableMetadata.KEY_INDEXES)));
 			newMetas.add(cache.setTableSplitByUser(this, tableDef.getName(),
-					tableDef.isSplitByUser(), TableMetadata.findKey(metas,
+					isStoredSplitByUser(tableDef), TableMetadata.findKey(metas,
 					TableMetadata.KEY_SPLIT_BY_USER)));
+			TableMetadata millisMeta = TableMetadata.findKey(metas,
+					TableMetadata.KEY_LOCAL_TIME_MILLIS);
+			if (millisMeta != null)
+				newMetas.add(millisMeta);
 			cache.setTableMetadata(this, tableDef.getName(), newMetas);
 		}
 		if (tableDef instanceof TableMetadataTableDef) {
@@ -330,6 +449,158 @@ public abstract class Database {
 		}
 	}
 	
+	/**
+	 * Adds the shadow field "localTimeMillis" (see {@link LocalTimeColumn
+	 * LocalTimeColumn}) to the physical tables of the specified logical table,
+	 * if the data class has that field and the tables don't have the column
+	 * yet. This is called from {@link #initTable(DatabaseTableDef)
+	 * initTable()} after the table has been upgraded, so that tables whose
+	 * data class got the field in a base class, don't need their own upgrade
+	 * step. It uses {@link UpgradeTableLocalTimeMillis
+	 * UpgradeTableLocalTimeMillis}.
+	 *
+	 * <p>This method only adds the columns. Existing records are filled in
+	 * later with {@link #backfillLocalTimeMillis(String)
+	 * backfillLocalTimeMillis()}.</p>
+	 *
+	 * <p>If the stored field list of the table already has the field, the
+	 * physical tables are not checked.</p>
+	 *
+	 * @param tableDef the table definition
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void addLocalTimeMillisColumns(DatabaseTableDef<?> tableDef)
+			throws DatabaseException {
+		if (tableDef.getName().startsWith("_"))
+			return;
+		List<String> fields = DatabaseFieldScanner.getDatabaseFieldNames(
+				tableDef.getDataClass());
+		if (!fields.contains(LocalTimeColumn.LOCAL_TIME_MILLIS))
+			return;
+		List<String> storedFields = DatabaseCache.getInstance()
+				.getTableFields(this, tableDef.getName());
+		if (storedFields.contains(LocalTimeColumn.LOCAL_TIME_MILLIS))
+			return;
+		for (String physTable : getPhysicalTables(tableDef.getName())) {
+			UpgradeTableLocalTimeMillis.upgrade(this, physTable);
+		}
+	}
+
+	/**
+	 * Returns the physical tables of the specified logical table. That is
+	 * the table with the same name if it exists, and the tables per user.
+	 *
+	 * @param table the logical table
+	 * @return the physical tables
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private List<String> getPhysicalTables(String table)
+			throws DatabaseException {
+		List<String> dbTables = getCachedDbTables();
+		List<String> physTables = new ArrayList<>();
+		if (dbTables.contains(table))
+			physTables.add(table);
+		DatabaseCriteria criteria = new DatabaseCriteria.Equal("table",
+				table);
+		List<UserTableKey> userTableKeys = select(new UserTableKeyTable(),
+				criteria, 0, null);
+		for (UserTableKey userTableKey : userTableKeys) {
+			String physTable = table + TABLE_TOKEN_SEP +
+					userTableKey.getKey();
+			if (dbTables.contains(physTable))
+				physTables.add(physTable);
+		}
+		return physTables;
+	}
+
+	/**
+	 * Returns whether queries on the specified table can use the shadow field
+	 * "localTimeMillis" (see {@link LocalTimeColumn LocalTimeColumn}) instead
+	 * of "localTime". That is the case if the field has been filled in for
+	 * all records. When the field is added to an existing table, this is
+	 * false until {@link #backfillLocalTimeMillis(String)
+	 * backfillLocalTimeMillis()} has completed.
+	 *
+	 * @param table the logical or physical table name
+	 * @return true if queries can use the shadow field, false otherwise
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public boolean isLocalTimeMillisComplete(String table)
+			throws DatabaseException {
+		if (table.startsWith("_"))
+			return false;
+		int sep = table.indexOf(TABLE_TOKEN_SEP);
+		if (sep != -1)
+			table = table.substring(0, sep);
+		return DatabaseCache.getInstance().isLocalTimeMillisComplete(this,
+				table);
+	}
+
+	/**
+	 * Returns the logical tables that have the shadow field "localTimeMillis"
+	 * (see {@link LocalTimeColumn LocalTimeColumn}), but where the field has
+	 * not been filled in for all records yet. You should call {@link
+	 * #backfillLocalTimeMillis(String) backfillLocalTimeMillis()} for these
+	 * tables.
+	 *
+	 * @return the logical tables
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public List<String> getLocalTimeMillisBackfillTables()
+			throws DatabaseException {
+		DatabaseCache cache = DatabaseCache.getInstance();
+		List<String> result = new ArrayList<>();
+		for (String table : selectTables()) {
+			if (table.startsWith("_"))
+				continue;
+			List<String> fields = cache.getTableFields(this, table);
+			if (fields.contains(LocalTimeColumn.LOCAL_TIME_MILLIS) &&
+					!cache.isLocalTimeMillisComplete(this, table)) {
+				result.add(table);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fills in the shadow field "localTimeMillis" (see {@link LocalTimeColumn
+	 * LocalTimeColumn}) for existing records of the specified logical table,
+	 * and then marks the field as complete in the table metadata (see {@link
+	 * TableMetadata#KEY_LOCAL_TIME_MILLIS KEY_LOCAL_TIME_MILLIS}). From then
+	 * on queries use the field. This can take a long time, so it should be
+	 * called in the background. New records get the field when they are
+	 * written, so they don't need a backfill. If the backfill is
+	 * interrupted, it can be resumed by calling this method again. It uses
+	 * {@link UpgradeTableLocalTimeMillis#backfill(Database, String)
+	 * UpgradeTableLocalTimeMillis.backfill()}.
+	 *
+	 * @param table the logical table
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void backfillLocalTimeMillis(String table)
+			throws DatabaseException {
+		for (String physTable : getPhysicalTables(table)) {
+			UpgradeTableLocalTimeMillis.backfill(this, physTable);
+		}
+		DatabaseCache.getInstance().setLocalTimeMillisComplete(this, table);
+	}
+
+	/**
+	 * Fills in the shadow field "localTimeMillis" (see {@link LocalTimeColumn
+	 * LocalTimeColumn}) from field "localTime" with one update statement. It
+	 * updates the records in the specified physical table where the shadow
+	 * field is null and the ID is after "afterId" and at most "lastId".
+	 * Records with an invalid local time are left unchanged.
+	 *
+	 * @param physTable the physical table
+	 * @param afterId the records should have an ID after this ID. If this is
+	 * null, there is no lower bound.
+	 * @param lastId the maximum ID of the records
+	 * @throws DatabaseException if a database error occurs
+	 */
+	protected abstract void doFillLocalTimeMillis(String physTable,
+			String afterId, String lastId) throws DatabaseException;
+
 	/**
 	 * Creates the specified physical database action table, if it doesn't
 	 * already exist.
@@ -354,7 +625,8 @@ public abstract class Database {
 	 * 
 	 * <p>The database table is only created if {@link
 	 * DatabaseTableDef#isSplitByUser() tableDef.isSplitByUser()} returns
-	 * false. Otherwise the tables are created when a query on a user is
+	 * false or {@link #isUserPartitioning() isUserPartitioning()} returns
+	 * true. Otherwise the tables are created when a query on a user is
 	 * performed.</p>
 	 * 
 	 * <p>This method is called from {@link #initTable(DatabaseTableDef)
@@ -371,6 +643,9 @@ public abstract class Database {
 				!tableDef.isSplitByUser()) {
 			createTable(tableDef.getName(), tableDef.getDataClass(),
 					tableDef.getCompoundIndexes());
+		} else if (!(tableDef instanceof DatabaseActionMetaTable) &&
+				!isStoredSplitByUser(tableDef)) {
+			createUserPartitionedTable(tableDef);
 		}
 		List<TableMetadata> metas = new ArrayList<>();
 		TableMetadata meta = new TableMetadata();
@@ -389,8 +664,15 @@ public abstract class Database {
 		metas.add(cache.setTableCompoundIndexes(this, tableDef.getName(),
 				tableDef.getCompoundIndexes(), null));
 		metas.add(cache.setTableSplitByUser(this, tableDef.getName(),
-				tableDef.isSplitByUser(), null));
+				isStoredSplitByUser(tableDef), null));
 		cache.setTableMetadata(this, tableDef.getName(), metas);
+		List<String> fields = DatabaseFieldScanner.getDatabaseFieldNames(
+				tableDef.getDataClass());
+		if (!tableDef.getName().startsWith("_") &&
+				fields.contains(LocalTimeColumn.LOCAL_TIME_MILLIS)) {
+			// a new table does not need a backfill
+			cache.setLocalTimeMillisComplete(this, tableDef.getName());
+		}
 	}
 	
 	/**
@@ -416,6 +698,99 @@ public abstract class Database {
 		cache.addPhysicalTable(this, name);
 	}
 	
+	/**
+	 * Returns whether the specified logical table is stored in a separate
+	 * physical table per user. This is true if the table is split by user and
+	 * user partitioning is disabled.
+	 *
+	 * @param tableDef the table definition
+	 * @return true if the table is stored in a physical table per user, false
+	 * otherwise
+	 */
+	private boolean isStoredSplitByUser(DatabaseTableDef<?> tableDef) {
+		return tableDef.isSplitByUser() && !userPartitioning;
+	}
+
+	/**
+	 * Creates the physical table for a logical table that is split by user,
+	 * if it is stored in one table partitioned by user. It creates the table
+	 * with the name of the logical table and then calls {@link
+	 * #partitionTableByUser(String) partitionTableByUser()}.
+	 *
+	 * @param tableDef the table definition
+	 * @throws DatabaseException if a database error occurs
+	 */
+	void createUserPartitionedTable(DatabaseTableDef<?> tableDef)
+			throws DatabaseException {
+		createTable(tableDef.getName(), tableDef.getDataClass(),
+				tableDef.getCompoundIndexes());
+		partitionTableByUser(tableDef.getName());
+	}
+
+	/**
+	 * Changes the layout of a new physical table, so that it can efficiently
+	 * store the records of many users. This is called when a table that is
+	 * split by user, is stored in one table because {@link
+	 * #isUserPartitioning() isUserPartitioning()} is true. The table has a
+	 * field "user" that is always assigned.
+	 *
+	 * <p>The default implementation creates an index on the field "user".
+	 * Subclasses can override this method to partition the table by
+	 * user.</p>
+	 *
+	 * @param table the (physical) table name
+	 * @throws DatabaseException if a database error occurs
+	 */
+	protected void partitionTableByUser(String table)
+			throws DatabaseException {
+		createIndex(table, new DatabaseIndex(USER_PARTITION_INDEX, "user"));
+	}
+
+	/**
+	 * Returns whether the specified index is created by {@link
+	 * #partitionTableByUser(String) partitionTableByUser()}. This is used to
+	 * find out whether a table is partitioned by user, when the table is
+	 * recreated to drop or rename a column. Then the partitioning is applied
+	 * again.
+	 *
+	 * <p>The default implementation returns true for the index {@link
+	 * #USER_PARTITION_INDEX USER_PARTITION_INDEX}. Subclasses that override
+	 * partitionTableByUser() should also override this method.</p>
+	 *
+	 * @param index the index
+	 * @return true if the index is created by partitionTableByUser(), false
+	 * otherwise
+	 */
+	protected boolean isUserPartitionIndex(DatabaseIndex index) {
+		return index.getName().equals(USER_PARTITION_INDEX);
+	}
+
+	/**
+	 * Moves the records of a logical table that is split by user, if its
+	 * current storage does not match {@link #isUserPartitioning()
+	 * isUserPartitioning()}. This is called from {@link
+	 * #initTable(DatabaseTableDef) initTable()} after the table has been
+	 * upgraded. It uses {@link UpgradeTableUserPartition
+	 * UpgradeTableUserPartition}.
+	 *
+	 * @param tableDef the table definition
+	 * @param splitMeta the metadata with the current splitByUser property or
+	 * null
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void upgradeUserStorage(DatabaseTableDef<?> tableDef,
+			TableMetadata splitMeta) throws DatabaseException {
+		if (!tableDef.isSplitByUser())
+			return;
+		boolean storedSplit = splitMeta == null ||
+				Boolean.parseBoolean(splitMeta.getValue());
+		boolean split = isStoredSplitByUser(tableDef);
+		if (storedSplit && !split)
+			UpgradeTableUserPartition.upgradeMerge(this, tableDef);
+		else if (!storedSplit && split)
+			UpgradeTableUserPartition.upgradeSplit(this, tableDef);
+	}
+
 	/**
 	 * Checks whether the specified logical table is up-to-date. If not, it
 	 * will upgrade the related physical tables until it's up-to-date. If
@@ -605,6 +980,18 @@ public abstract class Database {
 	 */
 	public abstract void renameColumn(String table, String oldName,
 			String newName) throws DatabaseException;
+
+	/**
+	 * Returns whether the specified (physical) table has a column with the
+	 * specified name.
+	 *
+	 * @param table the (physical) table name (lower case)
+	 * @param column the column name
+	 * @return true if the table has the column, false otherwise
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public abstract boolean hasColumn(String table, String column)
+			throws DatabaseException;
 	
 	/**
 	 * Selects all (logical) tables that have been created using {@link
@@ -714,6 +1101,10 @@ public abstract class Database {
 				dropCachedDbTable(actionTable.getName());
 		}
 		delete(UserTableKeyTable.NAME, null, criteria);
+		if (!table.startsWith("_")) {
+			delete(SyncWatermarkTableDef.NAME, null, criteria);
+			delete(SyncConsumerProgressTableDef.NAME, null, criteria);
+		}
 		DatabaseCache.getInstance().removeLogicalTable(this, table);
 	}
 	
@@ -891,6 +1282,15 @@ public abstract class Database {
 			String source) throws DatabaseException {
 		if (values.isEmpty())
 			return;
+		if (databaseInitialised && !table.startsWith("_")) {
+			List<String> fields = DatabaseCache.getInstance().getTableFields(
+					this, table);
+			List<String> packedFields = getPackedArrayFields(table);
+			for (Map<String,Object> map : values) {
+				LocalTimeColumn.setMillis(fields, map);
+				PackedArrayColumn.pack(packedFields, map);
+			}
+		}
 		String dbTable = table;
 		if (useSplitUserTable(table)) {
 			String insertUser = null;
@@ -975,7 +1375,7 @@ public abstract class Database {
 			DatabaseCache cache = DatabaseCache.getInstance();
 			UserTableKey userTableKey = cache.getUserTableKey(this, user, table);
 			String physTable = table + TABLE_TOKEN_SEP + userTableKey.getKey();
-			if (cache.getPhysicalTables(this).contains(physTable))
+			if (getCachedDbTables().contains(physTable))
 				return physTable;
 			createTable(physTable, cache.getTableDataClass(this, table),
 					cache.getTableCompoundIndexes(this, table));
@@ -1000,7 +1400,7 @@ public abstract class Database {
 				tableDef.getName());
 		String physTable = tableDef.getName() + TABLE_TOKEN_SEP +
 				userTableKey.getKey();
-		if (cache.getPhysicalTables(this).contains(physTable))
+		if (getCachedDbTables().contains(physTable))
 			return physTable;
 		createTable(physTable, tableDef.getDataClass(),
 				tableDef.getCompoundIndexes());
@@ -1549,6 +1949,19 @@ public abstract class Database {
 			throw new DatabaseException(
 					"Field \"id\" cannot be changed at update");
 		}
+		if (databaseInitialised && !table.startsWith("_") &&
+				values.containsKey(LocalTimeColumn.LOCAL_TIME)) {
+			Map<String,Object> millisValues = new LinkedHashMap<>(values);
+			LocalTimeColumn.setMillis(DatabaseCache.getInstance()
+					.getTableFields(this, table), millisValues);
+			values = millisValues;
+		}
+		List<String> packedFields = getPackedArrayFields(table);
+		if (!packedFields.isEmpty()) {
+			Map<String,Object> packedValues = new LinkedHashMap<>(values);
+			PackedArrayColumn.pack(packedFields, packedValues);
+			values = packedValues;
+		}
 		String physTable = table;
 		DatabaseCriteria physCriteria = criteria;
 		if (useSplitUserTable(table)) {
@@ -1599,6 +2012,61 @@ public abstract class Database {
 			Class<? extends DatabaseObject> dataClass,
 			DatabaseCriteria criteria, Map<String,?> values)
 			throws DatabaseException;
+
+	/**
+	 * Inserts a record into the specified table, or if a record with the same
+	 * ID already exists, merges the new values into that record. This is done
+	 * with one atomic statement, so concurrent writers don't overwrite each
+	 * other's changes. The record should have an ID that is derived from the
+	 * fields that identify it, so all writers use the same ID.
+	 *
+	 * <p>When a record is merged, the fields with a {@link DatabaseMerge
+	 * DatabaseMerge} are set to the result of the merge function. The other
+	 * fields keep their existing value.</p>
+	 *
+	 * <p>The result of a merge is not known without reading the record, so
+	 * it is not written to the action log and database listeners are not
+	 * notified. Therefore this method can only be used if sync logging is
+	 * disabled or the table is a reserved table. Tables that are split by
+	 * user are not supported.</p>
+	 *
+	 * @param table the table
+	 * @param record the record with ID
+	 * @param merges the merge functions
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void merge(DatabaseTableDef<?> table, DatabaseObject record,
+			List<DatabaseMerge> merges) throws DatabaseException {
+		if (record.getId() == null)
+			throw new DatabaseException("Merged record must have an ID");
+		if (syncEnabled && !table.getName().startsWith("_")) {
+			throw new DatabaseException(
+					"Merge not supported with sync logging in table \"" +
+					table.getName() + "\"");
+		}
+		if (table.isSplitByUser()) {
+			throw new DatabaseException(
+					"Merge not supported in table \"" + table.getName() +
+					"\" that is split by user");
+		}
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		doMerge(table.getName(), mapper.objectToMap(record, false), merges);
+	}
+
+	/**
+	 * Inserts a record into a physical table, or if a record with the same ID
+	 * already exists, merges the values into that record with one atomic
+	 * statement. See {@link #merge(DatabaseTableDef, DatabaseObject, List)
+	 * merge()}.
+	 *
+	 * @param table the (physical) table name (lower case)
+	 * @param values the record values, including "id". They should be
+	 * obtained with {@link DatabaseObjectMapper DatabaseObjectMapper}.
+	 * @param merges the merge functions
+	 * @throws DatabaseException if a database error occurs
+	 */
+	protected abstract void doMerge(String table, Map<String,?> values,
+			List<DatabaseMerge> merges) throws DatabaseException;
 	
 	/**
 	 * Returns the user on which an update query should be run in a table that
@@ -1735,7 +2203,7 @@ public abstract class Database {
 	private void purgeUserTable(String table, String user, boolean purgeUser)
 			throws DatabaseException {
 		DatabaseCache cache = DatabaseCache.getInstance();
-		List<String> physTables = cache.getPhysicalTables(this);
+		List<String> physTables = getCachedDbTables();
 		DatabaseCriteria userCriteria = new DatabaseCriteria.Equal(
 				"user", user);
 		DatabaseCriteria tableUserCriteria = new DatabaseCriteria.And(
@@ -1772,6 +2240,8 @@ public abstract class Database {
 			}
 		}
 		delete(SyncProgressTableDef.NAME, null, tableUserCriteria);
+		delete(SyncWatermarkTableDef.NAME, null, tableUserCriteria);
+		delete(SyncConsumerProgressTableDef.NAME, null, tableUserCriteria);
 		if (purgeUser) {
 			cache.removeUserTable(this, user, table);
 			delete(UserTableKeyTable.NAME, null, tableUserCriteria);
@@ -1788,7 +2258,7 @@ public abstract class Database {
 	 */
 	public void purgeResourceTable(String table) throws DatabaseException {
 		DatabaseCache cache = DatabaseCache.getInstance();
-		List<String> physTables = cache.getPhysicalTables(this);
+		List<String> physTables = getCachedDbTables();
 		DatabaseCriteria criteria = new DatabaseCriteria.Equal("table", table);
 		UserTableKey key = selectOne(new UserTableKeyTable(), criteria, null);
 		delete(table, null, null, DatabaseAction.SOURCE_LOCAL, true);
@@ -1799,6 +2269,8 @@ public abstract class Database {
 				delete(actionTable, null, null);
 		}
 		delete(SyncProgressTableDef.NAME, null, criteria);
+		delete(SyncWatermarkTableDef.NAME, null, criteria);
+		delete(SyncConsumerProgressTableDef.NAME, null, criteria);
 	}
 
 	/**
@@ -1911,6 +2383,15 @@ public abstract class Database {
 	 * <p>This method allows to disable sync logging, which should only be
 	 * used on a purge action.</p>
 	 *
+	 * <p>If range deletes are enabled (see {@link
+	 * #setRangeDeleteEnabled(boolean) setRangeDeleteEnabled()}) and the
+	 * criteria do not select a single record by ID, the delete is logged as
+	 * one action {@link DatabaseAction.Action#DELETE_RANGE DELETE_RANGE} with
+	 * the criteria, so the deleted records don't need to be read first. This
+	 * requires that the criteria select one user if the table has a user
+	 * field. Otherwise this method logs a delete action for each deleted
+	 * record.</p>
+	 *
 	 * @param table the table name (lower case)
 	 * @param dataClass the data class or null. Specifying the data class can
 	 * make the query more efficient, but it should only be specified if the
@@ -1933,12 +2414,17 @@ public abstract class Database {
 		List<? extends Map<String,?>> records = new ArrayList<>();
 		boolean syncLog = !disableSyncLog && syncEnabled && (
 				source.equals(DatabaseAction.SOURCE_LOCAL) ||
-				saveSyncedRemoteActions);
-		if (!table.startsWith("_") && syncLog) {
+				saveSyncedRemoteActions) && !table.startsWith("_");
+		boolean rangeDelete = syncLog && rangeDeleteEnabled &&
+				isRangeDelete(table, criteria);
+		if (syncLog && !rangeDelete) {
 			records = selectLogRecords(physTable, dataClass, physCriteria);
 		}
 		doDelete(physTable, dataClass, physCriteria);
-		if (!records.isEmpty() && !table.startsWith("_") && syncLog) {
+		if (rangeDelete) {
+			writeRangeDeleteAction(table, findRangeDeleteUser(criteria),
+					criteria, source);
+		} else if (!records.isEmpty() && syncLog) {
 			writeDatabaseActions(table, DatabaseAction.Action.DELETE, records,
 					null, source);
 		}
@@ -1948,6 +2434,115 @@ public abstract class Database {
 		}
 	}
 
+	/**
+	 * Returns whether a delete with the specified criteria should be logged
+	 * as a range delete. This is true if the criteria do not select a single
+	 * record by ID and, if the table has a user field, the criteria select
+	 * one user (see {@link #findRangeDeleteUser(DatabaseCriteria)
+	 * findRangeDeleteUser()}).
+	 *
+	 * @param table the (logical) table name
+	 * @param criteria the criteria (can be null)
+	 * @return true if the delete should be logged as a range delete, false
+	 * otherwise
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private boolean isRangeDelete(String table, DatabaseCriteria criteria)
+			throws DatabaseException {
+		if (findRecordId(criteria) != null)
+			return false;
+		List<String> fields = DatabaseCache.getInstance().getTableFields(this,
+				table);
+		if (!fields.contains("user"))
+			return true;
+		return findRangeDeleteUser(criteria) != null;
+	}
+
+	/**
+	 * Tries to find a {@link DatabaseCriteria.Equal DatabaseCriteria.Equal}
+	 * on field "id" in the specified criteria or in the operands of an
+	 * {@link DatabaseCriteria.And And} at the top level. If it's found, this
+	 * method returns the ID. Otherwise it returns null.
+	 *
+	 * @param criteria the criteria (can be null)
+	 * @return the record ID or null
+	 */
+	private String findRecordId(DatabaseCriteria criteria) {
+		return findTopLevelEqual(criteria, "id");
+	}
+
+	/**
+	 * Tries to find a {@link DatabaseCriteria.Equal DatabaseCriteria.Equal}
+	 * on field "user" in the specified criteria or in the operands of an
+	 * {@link DatabaseCriteria.And And} at the top level. Unlike {@link
+	 * #findSelectUser(DatabaseCriteria) findSelectUser()}, it does not look
+	 * into an {@link DatabaseCriteria.Or Or}, so if a user is found, all
+	 * records that match the criteria belong to that user. If no user is
+	 * found, this method returns null.
+	 *
+	 * @param criteria the criteria (can be null)
+	 * @return the user or null
+	 */
+	private String findRangeDeleteUser(DatabaseCriteria criteria) {
+		return findTopLevelEqual(criteria, "user");
+	}
+
+	private String findTopLevelEqual(DatabaseCriteria criteria,
+			String column) {
+		if (criteria instanceof DatabaseCriteria.And and) {
+			for (DatabaseCriteria op : and.getOperands()) {
+				String value = findTopLevelEqual(op, column);
+				if (value != null)
+					return value;
+			}
+		} else if (criteria instanceof DatabaseCriteria.Equal equal) {
+			if (equal.getColumn().equals(column) &&
+					equal.getValue() != null) {
+				String value = equal.getValue().toString();
+				if (!value.isEmpty())
+					return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes a {@link DatabaseAction.Action#DELETE_RANGE DELETE_RANGE} action
+	 * with the specified criteria to the {@link DatabaseActionTable
+	 * DatabaseActionTable} of the specified table and user. The action is not
+	 * merged with previous actions.
+	 *
+	 * @param table the (logical) table where the records were deleted
+	 * @param user the user or null (if the table has no user field)
+	 * @param criteria the criteria (can be null)
+	 * @param source the source
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void writeRangeDeleteAction(String table, String user,
+			DatabaseCriteria criteria, String source)
+			throws DatabaseException {
+		Object tableLock = DatabaseLockCollection.getLock(name, table);
+		synchronized (tableLock) {
+			DatabaseActionTable actionTable = DatabaseCache.getInstance()
+					.initActionTable(this, user, table);
+			Map<String,Object> record = new HashMap<>();
+			if (user != null)
+				record.put("user", user);
+			Map<String,Object> data = null;
+			if (criteria != null) {
+				DatabaseCriteriaMapper mapper = new DatabaseCriteriaMapper();
+				data = mapper.criteriaToMap(criteria);
+			}
+			List<DatabaseAction> actions = new ArrayList<>();
+			addDatabaseAction(actionTable, actions,
+					DatabaseAction.Action.DELETE_RANGE, record, data, source);
+			insert(actionTable.getName(), actions);
+			updateSyncWatermarks(table, user, actions);
+			DatabaseListenerRepository.getInstance()
+					.notifyAddDatabaseActions(name, table, actions);
+		}
+	}
+
 	/**
 	 * Deletes all records that match the specified criteria from a physical
 	 * database table.
@@ -1998,6 +2593,7 @@ public abstract class Database {
 			List<? extends Map<String,?>> records,
 			List<? extends Map<String,?>> values, String source)
 			throws DatabaseException {
+		List<String> packedFields = getPackedArrayFields(table);
 		Object tableLock = DatabaseLockCollection.getLock(name, table);
 		synchronized (tableLock) {
 			List<DatabaseAction> actions = new ArrayList<>();
@@ -2012,11 +2608,15 @@ public abstract class Database {
 				Map<String,?> data = null;
 				if (valuesIt != null)
 					data = valuesIt.next();
+				if (data != null && !packedFields.isEmpty())
+					data = PackedArrayColumn.toActionData(packedFields, data);
 				String recUser = (String)record.get("user");
 				if (actionTable == null ||
 						!isEqualNullString(recUser, currUser)) {
-					if (actionTable != null && !actions.isEmpty())
+					if (actionTable != null && !actions.isEmpty()) {
 						insertActions(actionTable.getName(), actions);
+						updateSyncWatermarks(table, currUser, actions);
+					}
 					actions.clear();
 					currUser = recUser;
 					actionTable = DatabaseCache.getInstance()
@@ -2027,12 +2627,89 @@ public abstract class Database {
 			}
 			if (actionTable != null && !actions.isEmpty()) {
 				insertActions(actionTable.getName(), actions);
+				updateSyncWatermarks(table, currUser, actions);
 				DatabaseListenerRepository.getInstance()
 						.notifyAddDatabaseActions(name, table, actions);
 			}
 		}
 	}
 
+	/**
+	 * Returns the fields with database type {@link DatabaseType#PACKED_ARRAY
+	 * PACKED_ARRAY} in the specified logical table. Their values are packed
+	 * in the database and written as JSON arrays in the action log (see
+	 * {@link PackedArrayColumn PackedArrayColumn}). If the database is not
+	 * initialised or the table is a reserved table, this method returns an
+	 * empty list.
+	 *
+	 * @param table the (logical) table
+	 * @return the packed array fields
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private List<String> getPackedArrayFields(String table)
+			throws DatabaseException {
+		if (!databaseInitialised || table.startsWith("_"))
+			return Collections.emptyList();
+		return PackedArrayColumn.getFields(DatabaseCache.getInstance()
+				.getTableDataClass(this, table));
+	}
+
+	/**
+	 * Updates the {@link SyncWatermark SyncWatermark}s for the specified
+	 * table and user after the specified database actions have been written.
+	 * It updates the latest time, order number and count for each source.
+	 * Each watermark is merged with one atomic statement (see {@link
+	 * #doMergeSyncWatermark(SyncWatermark) doMergeSyncWatermark()}), so
+	 * concurrent writers on other nodes cannot move a watermark back.
+	 *
+	 * @param table the (logical) table
+	 * @param user the user or null (if the table has no user field)
+	 * @param actions the database actions that were written
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void updateSyncWatermarks(String table, String user,
+			List<DatabaseAction> actions) throws DatabaseException {
+		Map<String,SyncWatermark> sourceMap = new LinkedHashMap<>();
+		for (DatabaseAction action : actions) {
+			SyncWatermark watermark = sourceMap.get(action.getSource());
+			if (watermark == null) {
+				watermark = new SyncWatermark();
+				watermark.setId(SyncWatermark.getKeyId(table, user,
+						action.getSource()));
+				watermark.setTable(table);
+				watermark.setUser(user);
+				watermark.setSource(action.getSource());
+				watermark.setTime(action.getTime());
+				watermark.setOrder(action.getOrder());
+				sourceMap.put(action.getSource(), watermark);
+			} else if (!watermark.isAfter(action.getTime(),
+					action.getOrder())) {
+				watermark.setTime(action.getTime());
+				watermark.setOrder(action.getOrder());
+			}
+			watermark.setCount(watermark.getCount() + 1);
+		}
+		for (SyncWatermark watermark : sourceMap.values()) {
+			doMergeSyncWatermark(watermark);
+		}
+	}
+
+	/**
+	 * Merges the specified watermark into the table {@link
+	 * SyncWatermarkTableDef _sync_watermark} with one atomic statement. The
+	 * watermark has an ID that was obtained with {@link
+	 * SyncWatermark#getKeyId(String, String, String)
+	 * SyncWatermark.getKeyId()}. If the record with that ID does not exist,
+	 * this method inserts the watermark. Otherwise it adds the count of the
+	 * watermark to the count of the record, and it sets the time and order
+	 * number if they are after the time and order number of the record.
+	 *
+	 * @param watermark the watermark
+	 * @throws DatabaseException if a database error occurs
+	 */
+	protected abstract void doMergeSyncWatermark(SyncWatermark watermark)
+			throws DatabaseException;
+
 	private boolean isEqualNullString(String s1, String s2) {
 		if ((s1 == null) != (s2 == null))
 			return false;
@@ -2182,21 +2859,15 @@ public abstract class Database {
 			dbAction.setSampleTime((Long)sampleUtcTime);
 			return;
 		}
-		Object sampleLocalTimeObj = record.get("localTime");
-		if (!(sampleLocalTimeObj instanceof String sampleLocalTimeStr)) {
-			return;
-		}
-		DateTimeFormatter parser = DateTimeFormatter.ofPattern(
-				"yyyy-MM-dd'T'HH:mm:ss.SSS");
-		LocalDateTime sampleLocalTime;
-		try {
-			sampleLocalTime = parser.parse(sampleLocalTimeStr,
-					LocalDateTime::from);
-		} catch (IllegalArgumentException ex) {
+		Object sampleMillis = record.get(LocalTimeColumn.LOCAL_TIME_MILLIS);
+		if (sampleMillis instanceof Long) {
+			dbAction.setSampleTime((Long)sampleMillis);
 			return;
 		}
-		ZonedDateTime sampleTime = sampleLocalTime.atZone(ZoneOffset.UTC);
-		dbAction.setSampleTime(sampleTime.toInstant().toEpochMilli());
+		Long sampleTime = LocalTimeColumn.toMillis(record.get(
+				LocalTimeColumn.LOCAL_TIME));
+		if (sampleTime != null)
+			dbAction.setSampleTime(sampleTime);
 	}
 
 	/**
@@ -2213,6 +2884,9 @@ public abstract class Database {
 	 * <li>localTime (optional): if the record has a "localTime" field, its
 	 * value should be set here. Otherwise it can be omitted or set to
 	 * null.</li>
+	 * <li>localTimeMillis (optional): if the record has a "localTimeMillis"
+	 * field (see {@link LocalTimeColumn LocalTimeColumn}), its value may be set
+	 * here. Otherwise it can be omitted or set to null.</li>
 	 * </ul></p>
 	 *
 	 * @param table the (physical) table name (lower case)
@@ -113,18 +113,20 @@ public class DatabaseAction extends BaseDatabaseObject {
 	}
 
 	/**
-	 * Returns the ID of the record that was affected by the action.
+	 * Returns the ID of the record that was affected by the action. For an
+	 * action {@link Action#DELETE_RANGE DELETE_RANGE}, this is null.
 	 *
-	 * @return the record ID
+	 * @return the record ID (null for a range delete)
 	 */
 	public String getRecordId() {
 		return recordId;
 	}
 
 	/**
-	 * Sets the ID of the record that was affected by the action.
+	 * Sets the ID of the record that was affected by the action. For an
+	 * action {@link Action#DELETE_RANGE DELETE_RANGE}, this is null.
 	 *
-	 * @param recordId the record ID
+	 * @param recordId the record ID (null for a range delete)
 	 */
 	public void setRecordId(String recordId) {
 		this.recordId = recordId;
@@ -133,7 +135,8 @@ public class DatabaseAction extends BaseDatabaseObject {
 	/**
 	 * Returns the data associated with the action, as a JSON object. For an
 	 * insert, it contains the complete record including "id". For an update it
-	 * contains the updated columns. For a select or delete, the data is null.
+	 * contains the updated columns. For a delete, the data is null. For a range
+	 * delete, it contains the criteria or null.
 	 *
 	 * @return the JSON data or null
 	 */
@@ -173,7 +176,8 @@ public class DatabaseAction extends BaseDatabaseObject {
 	/**
 	 * Sets the data associated with the action, as a JSON object. For an
 	 * insert, it contains the complete record including "id". For an update it
-	 * contains the updated columns. For a select or delete, the data is null.
+	 * contains the updated columns. For a delete, the data is null. For a range
+	 * delete, it contains the criteria or null.
 	 *
 	 * @param jsonData the JSON data or null
 	 */
@@ -306,11 +310,17 @@ public class DatabaseAction extends BaseDatabaseObject {
 	}
 	
 	/**
-	 * The possible actions.
+	 * The possible actions. An action {@link #DELETE_RANGE DELETE_RANGE}
+	 * deletes all records that match the criteria in the JSON data (see
+	 * {@link DatabaseCriteriaMapper DatabaseCriteriaMapper}). It is not
+	 * associated with a record, so the record ID is null. If the JSON data is
+	 * null, it deletes all records in the table (for the user of the
+	 * action).
 	 */
 	public enum Action {
 		INSERT,
 		UPDATE,
-		DELETE
+		DELETE,
+		DELETE_RANGE
 	}
 }
@@ -1,10 +1,14 @@
 package nl.rrd.senseeact.dao;
 
+import nl.rrd.senseeact.dao.sync.SyncWatermark;
+import nl.rrd.senseeact.dao.sync.SyncWatermarkTableDef;
 import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.exception.DatabaseException;
 import org.slf4j.Logger;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This is a special database table that is used internally in {@link Database
@@ -18,7 +22,9 @@ import java.util.List;
 public class DatabaseActionMetaTable extends DatabaseTableDef<DatabaseAction> {
 	public static final String NAME = "_action_log";
 
-	private static final int VERSION = 9;
+	private static final int VERSION = 10;
+
+	private static final int UPGRADE_BATCH_SIZE = 10000;
 
 	public DatabaseActionMetaTable() {
 		super(NAME, DatabaseAction.class, VERSION, false);
@@ -35,8 +41,10 @@ public class DatabaseActionMetaTable extends DatabaseTableDef<DatabaseAction> {
 			return upgradeTableV7(db, physTable);
 		} else if (version == 8) {
 			return upgradeTableV8(db, physTable);
+		} else if (version == 9) {
+			return upgradeTableV9(db, physTable);
 		} else {
-			return 9;
+			return 10;
 		}
 	}
 	
@@ -74,4 +82,80 @@ public class DatabaseActionMetaTable extends DatabaseTableDef<DatabaseAction> {
 		}
 		return 9;
 	}
+
+	/**
+	 * Fills the table {@link SyncWatermarkTableDef _sync_watermark} with the
+	 * actions that were logged in the specified action table before the
+	 * watermarks were maintained.
+	 *
+	 * @param db the database
+	 * @param physTable the action table
+	 * @return the new version
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private int upgradeTableV9(Database db, String physTable)
+			throws DatabaseException {
+		String key = physTable.substring(
+				DatabaseActionTable.NAME_PREFIX.length());
+		UserTableKey userTableKey = db.selectOne(new UserTableKeyTable(),
+				new DatabaseCriteria.Equal("key", key), null);
+		if (userTableKey == null)
+			return 10;
+		DatabaseCriteria tableUserCriteria;
+		if (userTableKey.getUser() == null) {
+			tableUserCriteria = new DatabaseCriteria.Equal("table",
+					userTableKey.getTable());
+		} else {
+			tableUserCriteria = new DatabaseCriteria.And(
+					new DatabaseCriteria.Equal("table",
+							userTableKey.getTable()),
+					new DatabaseCriteria.Equal("user", userTableKey.getUser())
+			);
+		}
+		db.delete(new SyncWatermarkTableDef(), tableUserCriteria);
+		Map<String,SyncWatermark> sourceMap = new LinkedHashMap<>();
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("time", true),
+				new DatabaseSort("order", true)
+		};
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		DatabaseAction last = null;
+		while (true) {
+			DatabaseCriteria criteria = null;
+			if (last != null) {
+				criteria = new DatabaseCriteria.Or(
+					new DatabaseCriteria.GreaterThan("time", last.getTime()),
+					new DatabaseCriteria.And(
+						new DatabaseCriteria.Equal("time", last.getTime()),
+						new DatabaseCriteria.GreaterThan("order",
+								last.getOrder())
+					)
+				);
+			}
+			List<Map<String,?>> maps = db.selectMaps(physTable,
+					DatabaseAction.class, criteria, UPGRADE_BATCH_SIZE, sort);
+			for (Map<String,?> map : maps) {
+				last = mapper.mapToObject(map, DatabaseAction.class, false);
+				SyncWatermark watermark = sourceMap.get(last.getSource());
+				if (watermark == null) {
+					watermark = new SyncWatermark();
+					watermark.setTable(userTableKey.getTable());
+					watermark.setUser(userTableKey.getUser());
+					watermark.setSource(last.getSource());
+					sourceMap.put(last.getSource(), watermark);
+				}
+				watermark.setTime(last.getTime());
+				watermark.setOrder(last.getOrder());
+				watermark.setCount(watermark.getCount() + 1);
+			}
+			if (maps.size() < UPGRADE_BATCH_SIZE)
+				break;
+		}
+		for (SyncWatermark watermark : sourceMap.values()) {
+			watermark.setId(SyncWatermark.getKeyId(watermark.getTable(),
+					watermark.getUser(), watermark.getSource()));
+			db.insert(SyncWatermarkTableDef.NAME, watermark);
+		}
+		return 10;
+	}
 }
@@ -11,6 +11,8 @@ import java.util.Map;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.rrd.senseeact.dao.cluster.ClusterEventBus;
+import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.exception.DatabaseException;
 
 /**
@@ -24,6 +26,12 @@ import nl.rrd.utils.exception.DatabaseException;
  * automatically from {@link Database Database} or {@link DatabaseConnection
  * DatabaseConnection}.</p>
  * 
+ * <p>If a database or table is added or removed, this cache publishes a
+ * {@link ClusterEventBus#TABLE_METADATA TABLE_METADATA} event on the {@link
+ * ClusterEventBus ClusterEventBus}, so other nodes in a cluster can
+ * invalidate their cache with {@link #invalidateDatabase(String)
+ * invalidateDatabase()}.</p>
+ * 
  * <p>All methods are thread-safe.</p>
  * 
  * @author Dennis Hofs (RRD)
@@ -74,6 +82,20 @@ public class DatabaseCache {
 	 * @param dbName the database name
 	 */
 	public void removeDatabase(String dbName) {
+		invalidateDatabase(dbName);
+		publishTableMetadata(dbName, null);
+	}
+
+	/**
+	 * Removes all cached metadata for the specified database, without
+	 * notifying other nodes in the cluster. This should be called when
+	 * another node has published a {@link ClusterEventBus#TABLE_METADATA
+	 * TABLE_METADATA} event. The metadata will be read from the database
+	 * again when it's needed.
+	 *
+	 * @param dbName the database name
+	 */
+	public void invalidateDatabase(String dbName) {
 		synchronized (STATIC_LOCK) {
 			databases.remove(dbName);
 		}
@@ -225,11 +247,12 @@ public class DatabaseCache {
 	public void addLogicalTable(Database db, String table) {
 		synchronized (STATIC_LOCK) {
 			List<String> tables = getCachedMetadata(db).logicalTables;
-			if (tables == null || tables.contains(table))
-				return;
-			tables.add(table);
-			Collections.sort(tables);
+			if (tables != null && !tables.contains(table)) {
+				tables.add(table);
+				Collections.sort(tables);
+			}
 		}
+		publishTableMetadata(db.getName(), table);
 	}
 	
 	/**
@@ -319,11 +342,12 @@ public class DatabaseCache {
 	public void addPhysicalTable(Database db, String table) {
 		synchronized (STATIC_LOCK) {
 			List<String> tables = getCachedMetadata(db).physicalTables;
-			if (tables == null || tables.contains(table))
-				return;
-			tables.add(table);
-			Collections.sort(tables);
+			if (tables != null && !tables.contains(table)) {
+				tables.add(table);
+				Collections.sort(tables);
+			}
 		}
+		publishTableMetadata(db.getName(), table);
 	}
 	
 	public List<TableMetadata> getTableMetadata(Database db, String table)
@@ -740,6 +764,73 @@ public class DatabaseCache {
 		}
 	}
 
+	/**
+	 * Returns whether the shadow field "localTimeMillis" (see {@link
+	 * LocalTimeColumn LocalTimeColumn}) has been filled in for all records of
+	 * the specified (logical) table. This is defined by the metadata key
+	 * {@link TableMetadata#KEY_LOCAL_TIME_MILLIS KEY_LOCAL_TIME_MILLIS}. The
+	 * value is cached. If the table does not have the field, this method
+	 * returns false.
+	 *
+	 * @param db the database
+	 * @param table the (logical) table name
+	 * @return true if the field has been filled in, false otherwise
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public boolean isLocalTimeMillisComplete(Database db, String table)
+			throws DatabaseException {
+		synchronized (STATIC_LOCK) {
+			DatabaseCachedMetadata cache = getCachedMetadata(db);
+			Boolean complete = cache.tableLocalTimeMillis.get(table);
+			if (complete != null)
+				return complete;
+			List<TableMetadata> metas = getTableMetadata(db, table);
+			TableMetadata meta = TableMetadata.findKey(metas,
+					TableMetadata.KEY_LOCAL_TIME_MILLIS);
+			complete = meta != null && Boolean.parseBoolean(meta.getValue());
+			cache.tableLocalTimeMillis.put(table, complete);
+			return complete;
+		}
+	}
+
+	/**
+	 * Marks that the shadow field "localTimeMillis" (see {@link
+	 * LocalTimeColumn LocalTimeColumn}) has been filled in for all records of
+	 * the specified (logical) table. It sets the metadata key {@link
+	 * TableMetadata#KEY_LOCAL_TIME_MILLIS KEY_LOCAL_TIME_MILLIS} in the cache
+	 * and in the metadata table, and it notifies other nodes in the cluster.
+	 *
+	 * @param db the database
+	 * @param table the (logical) table name
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void setLocalTimeMillisComplete(Database db, String table)
+			throws DatabaseException {
+		synchronized (STATIC_LOCK) {
+			DatabaseCachedMetadata cache = getCachedMetadata(db);
+			if (Boolean.TRUE.equals(cache.tableLocalTimeMillis.get(table)))
+				return;
+			List<TableMetadata> metas = getTableMetadata(db).computeIfAbsent(
+					table, k -> new ArrayList<>());
+			TableMetadata meta = TableMetadata.findKey(metas,
+					TableMetadata.KEY_LOCAL_TIME_MILLIS);
+			String strValue = Boolean.toString(true);
+			if (meta == null) {
+				meta = new TableMetadata();
+				meta.setTable(table);
+				meta.setKey(TableMetadata.KEY_LOCAL_TIME_MILLIS);
+				meta.setValue(strValue);
+				db.insert(TableMetadataTableDef.NAME, meta);
+				metas.add(meta);
+			} else if (!meta.getValue().equals(strValue)) {
+				meta.setValue(strValue);
+				db.update(TableMetadataTableDef.NAME, meta);
+			}
+			cache.tableLocalTimeMillis.put(table, true);
+		}
+		publishTableMetadata(db.getName(), table);
+	}
+
 	/**
 	 * Removes all references to the specified logical database table from the
 	 * cache. This is called from {@link Database#dropTable(String)
@@ -769,9 +860,12 @@ public class DatabaseCache {
 			cache.tableCompoundIndexes.remove(table);
 			cache.tableDataClasses.remove(table);
 			cache.tableFields.remove(table);
-			cache.tableMetadata.remove(table);
+			if (cache.tableMetadata != null)
+				cache.tableMetadata.remove(table);
 			cache.tableSplitByUser.remove(table);
+			cache.tableLocalTimeMillis.remove(table);
 		}
+		publishTableMetadata(db.getName(), table);
 	}
 	
 	/**
@@ -786,6 +880,7 @@ public class DatabaseCache {
 			if (cache.physicalTables != null)
 				cache.physicalTables.remove(table);
 		}
+		publishTableMetadata(db.getName(), table);
 	}
 	
 	/**
@@ -802,6 +897,24 @@ public class DatabaseCache {
 			cache.actionTables.remove(key);
 			cache.userTableKeys.remove(key);
 		}
+		publishTableMetadata(db.getName(), table);
+	}
+
+	/**
+	 * Publishes a {@link ClusterEventBus#TABLE_METADATA TABLE_METADATA} event
+	 * so other nodes in the cluster invalidate their cached metadata for the
+	 * specified database. This should be called outside the lock.
+	 *
+	 * @param dbName the database name
+	 * @param table the table name or null
+	 */
+	private void publishTableMetadata(String dbName, String table) {
+		Map<String,String> data = new LinkedHashMap<>();
+		data.put("database", dbName);
+		if (table != null)
+			data.put("table", table);
+		ClusterEventBus bus = AppComponents.get(ClusterEventBus.class);
+		bus.publish(ClusterEventBus.TABLE_METADATA, data);
 	}
 	
 	/**
@@ -855,5 +968,7 @@ public class DatabaseCache {
 		public Map<String,List<DatabaseIndex>> tableCompoundIndexes =
 				new LinkedHashMap<>();
 		public Map<String,Boolean> tableSplitByUser = new LinkedHashMap<>();
+		public Map<String,Boolean> tableLocalTimeMillis =
+				new LinkedHashMap<>();
 	}
 }
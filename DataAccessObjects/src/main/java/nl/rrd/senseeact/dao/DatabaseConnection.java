@@ -22,6 +22,10 @@ import java.util.List;
 public abstract class DatabaseConnection {
 	private boolean syncEnabled = false;
 	private boolean saveSyncedRemoteActions = true;
+	private boolean userPartitioning = false;
+	private boolean rangeDeleteEnabled = false;
+	private RecordIdGenerator recordIdGenerator =
+			new RandomRecordIdGenerator();
 
 	/**
 	 * Returns whether action logging is enabled for synchronization with
@@ -70,6 +74,83 @@ public abstract class DatabaseConnection {
 	public void setSaveSyncedRemoteActions(boolean saveSyncedRemoteActions) {
 		this.saveSyncedRemoteActions = saveSyncedRemoteActions;
 	}
+
+	/**
+	 * Returns whether tables that are split by user should be stored in one
+	 * physical table that is partitioned by user, rather than in a separate
+	 * physical table per user. The default is false. See {@link
+	 * Database#setUserPartitioning(boolean) Database.setUserPartitioning()}.
+	 *
+	 * @return true if tables that are split by user are stored in one
+	 * partitioned table, false if they are stored in a table per user
+	 */
+	public boolean isUserPartitioning() {
+		return userPartitioning;
+	}
+
+	/**
+	 * Sets whether tables that are split by user should be stored in one
+	 * physical table that is partitioned by user, rather than in a separate
+	 * physical table per user. The default is false. See {@link
+	 * Database#setUserPartitioning(boolean) Database.setUserPartitioning()}.
+	 *
+	 * @param userPartitioning true if tables that are split by user are
+	 * stored in one partitioned table, false if they are stored in a table
+	 * per user
+	 */
+	public void setUserPartitioning(boolean userPartitioning) {
+		this.userPartitioning = userPartitioning;
+	}
+
+	/**
+	 * Returns whether a delete with criteria is logged as one range delete
+	 * action, rather than a delete action for each deleted record. The
+	 * default is false. See {@link Database#setRangeDeleteEnabled(boolean)
+	 * Database.setRangeDeleteEnabled()}.
+	 *
+	 * @return true if range deletes are logged, false if a delete action is
+	 * logged for each record
+	 */
+	public boolean isRangeDeleteEnabled() {
+		return rangeDeleteEnabled;
+	}
+
+	/**
+	 * Sets whether a delete with criteria is logged as one range delete
+	 * action, rather than a delete action for each deleted record. The
+	 * default is false. See {@link Database#setRangeDeleteEnabled(boolean)
+	 * Database.setRangeDeleteEnabled()}.
+	 *
+	 * @param rangeDeleteEnabled true if range deletes are logged, false if a
+	 * delete action is logged for each record
+	 */
+	public void setRangeDeleteEnabled(boolean rangeDeleteEnabled) {
+		this.rangeDeleteEnabled = rangeDeleteEnabled;
+	}
+
+	/**
+	 * Returns the generator of IDs for new records. The default is a {@link
+	 * RandomRecordIdGenerator RandomRecordIdGenerator}. See {@link
+	 * Database#setRecordIdGenerator(RecordIdGenerator)
+	 * Database.setRecordIdGenerator()}.
+	 *
+	 * @return the record ID generator
+	 */
+	public RecordIdGenerator getRecordIdGenerator() {
+		return recordIdGenerator;
+	}
+
+	/**
+	 * Sets the generator of IDs for new records. The default is a {@link
+	 * RandomRecordIdGenerator RandomRecordIdGenerator}. See {@link
+	 * Database#setRecordIdGenerator(RecordIdGenerator)
+	 * Database.setRecordIdGenerator()}.
+	 *
+	 * @param recordIdGenerator the record ID generator
+	 */
+	public void setRecordIdGenerator(RecordIdGenerator recordIdGenerator) {
+		this.recordIdGenerator = recordIdGenerator;
+	}
 	
 	/**
 	 * Initialises a database and returns the database object. If the database
@@ -102,6 +183,9 @@ public abstract class DatabaseConnection {
 			db = doGetDatabase(name);
 		else
 			db = createDatabase(name);
+		db.setUserPartitioning(userPartitioning);
+		db.setRangeDeleteEnabled(rangeDeleteEnabled);
+		db.setRecordIdGenerator(recordIdGenerator);
 		List<String> newTableNames = new ArrayList<>();
 		for (DatabaseTableDef<?> tableDef : tableDefs) {
 			db.initTable(tableDef);
@@ -174,6 +258,9 @@ public abstract class DatabaseConnection {
 	 */
 	public Database getDatabase(String name) throws DatabaseException {
 		Database db = doGetDatabase(name);
+		db.setUserPartitioning(userPartitioning);
+		db.setRangeDeleteEnabled(rangeDeleteEnabled);
+		db.setRecordIdGenerator(recordIdGenerator);
 		db.setSyncEnabled(syncEnabled);
 		db.setSaveSyncedRemoteActions(saveSyncedRemoteActions);
 		db.setDatabaseInitialised(true);
@@ -31,6 +31,36 @@ public class DatabaseConnectionDecorator extends DatabaseConnection {
 		baseConn.setSaveSyncedRemoteActions(saveSyncedRemoteActions);
 	}
 
+	@Override
+	public boolean isUserPartitioning() {
+		return baseConn.isUserPartitioning();
+	}
+
+	@Override
+	public void setUserPartitioning(boolean userPartitioning) {
+		baseConn.setUserPartitioning(userPartitioning);
+	}
+
+	@Override
+	public boolean isRangeDeleteEnabled() {
+		return baseConn.isRangeDeleteEnabled();
+	}
+
+	@Override
+	public void setRangeDeleteEnabled(boolean rangeDeleteEnabled) {
+		baseConn.setRangeDeleteEnabled(rangeDeleteEnabled);
+	}
+
+	@Override
+	public RecordIdGenerator getRecordIdGenerator() {
+		return baseConn.getRecordIdGenerator();
+	}
+
+	@Override
+	public void setRecordIdGenerator(RecordIdGenerator recordIdGenerator) {
+		baseConn.setRecordIdGenerator(recordIdGenerator);
+	}
+
 	@Override
 	public Database initDatabase(String name,
 			List<? extends DatabaseTableDef<?>> tableDefs,
@@ -21,11 +21,16 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * <li>{@link GreaterThan GreaterThan}</li>
  * <li>{@link LessEqual LessEqual}</li>
  * <li>{@link GreaterEqual GreaterEqual}</li>
+ * <li>{@link StartsWith StartsWith}</li>
+ * <li>{@link EndsWith EndsWith}</li>
  * </ul></p>
  * 
  * <p>Each of them take two arguments: a column name and a literal value
  * (string or number). In the future the second argument could include other
- * types of expressions as well (for example another column name).</p>
+ * types of expressions as well (for example another column name).
+ * {@link StartsWith StartsWith} and {@link EndsWith EndsWith} only take a
+ * string value. In SQL databases they are translated to a LIKE expression.
+ * A StartsWith can use an index on the column, but an EndsWith can't.</p>
  * 
  * <p>Note that string comparisons are sensitive to case and diacritics. This
  * is normal in MongoDB and SQLite, but different than the default in
@@ -474,6 +479,126 @@ public abstract class DatabaseCriteria {
 		}
 	}
 	
+	public static class StartsWith extends DatabaseCriteria {
+		private String column;
+		private String prefix;
+
+		/**
+		 * Matches string values that start with the specified prefix. Note
+		 * that string comparisons are sensitive to case and diacritics. This
+		 * is normal in MongoDB and SQLite, but different than the default in
+		 * MariaDB.
+		 *
+		 * @param column the column name
+		 * @param prefix the prefix
+		 */
+		public StartsWith(String column, String prefix) {
+			this.column = column;
+			this.prefix = prefix;
+		}
+
+		public String getColumn() {
+			return column;
+		}
+
+		public String getPrefix() {
+			return prefix;
+		}
+
+		@Override
+		public boolean containsColumn(String column) {
+			return column.equals(this.column);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = column.hashCode();
+			result = 31 * result + prefix.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			StartsWith other = (StartsWith)obj;
+			if (!column.equals(other.column))
+				return false;
+			if (!prefix.equals(other.prefix))
+				return false;
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return column + " STARTS WITH " + formatValue(prefix);
+		}
+	}
+
+	public static class EndsWith extends DatabaseCriteria {
+		private String column;
+		private String suffix;
+
+		/**
+		 * Matches string values that end with the specified suffix. Note that
+		 * string comparisons are sensitive to case and diacritics. This is
+		 * normal in MongoDB and SQLite, but different than the default in
+		 * MariaDB.
+		 *
+		 * @param column the column name
+		 * @param suffix the suffix
+		 */
+		public EndsWith(String column, String suffix) {
+			this.column = column;
+			this.suffix = suffix;
+		}
+
+		public String getColumn() {
+			return column;
+		}
+
+		public String getSuffix() {
+			return suffix;
+		}
+
+		@Override
+		public boolean containsColumn(String column) {
+			return column.equals(this.column);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = column.hashCode();
+			result = 31 * result + suffix.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			EndsWith other = (EndsWith)obj;
+			if (!column.equals(other.column))
+				return false;
+			if (!suffix.equals(other.suffix))
+				return false;
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return column + " ENDS WITH " + formatValue(suffix);
+		}
+	}
+	
 	public static class And extends DatabaseCriteria {
 		private DatabaseCriteria[] operands;
 		
@@ -0,0 +1,234 @@
+package nl.rrd.senseeact.dao;
+
+import nl.rrd.utils.exception.ParseException;
+
+import java.util.*;
+
+/**
+ * This class can convert {@link DatabaseCriteria DatabaseCriteria} to a map
+ * that can be written as JSON, and back. It is used to store the criteria of
+ * a range delete in a {@link DatabaseAction DatabaseAction}. The format is
+ * the same as a select filter:
+ *
+ * <p><ul>
+ * <li>{"$and": [criteria, ...]}</li>
+ * <li>{"$or": [criteria, ...]}</li>
+ * <li>{"column": {"$eq": value}}, where the operator can be "$eq", "$ne",
+ * "$lt", "$gt", "$lte" or "$gte" and the value is a string, number or
+ * null.</li>
+ * <li>{"column": {"$startsWith": value}} or {"column": {"$endsWith": value}},
+ * where the value is a string.</li>
+ * </ul></p>
+ *
+ * <p>The values are database values, so they are written as they were
+ * passed to the criteria.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class DatabaseCriteriaMapper {
+
+	/**
+	 * Converts the specified criteria to a map.
+	 *
+	 * @param criteria the criteria
+	 * @return the map
+	 */
+	public Map<String,Object> criteriaToMap(DatabaseCriteria criteria) {
+		Map<String,Object> result = new LinkedHashMap<>();
+		if (criteria instanceof DatabaseCriteria.And and) {
+			result.put("$and", operandsToList(and.getOperands()));
+		} else if (criteria instanceof DatabaseCriteria.Or or) {
+			result.put("$or", operandsToList(or.getOperands()));
+		} else if (criteria instanceof DatabaseCriteria.Equal equal) {
+			result.put(equal.getColumn(), valueMap("$eq", equal.getValue()));
+		} else if (criteria instanceof DatabaseCriteria.NotEqual notEqual) {
+			result.put(notEqual.getColumn(), valueMap("$ne",
+					notEqual.getValue()));
+		} else if (criteria instanceof DatabaseCriteria.LessThan lessThan) {
+			result.put(lessThan.getColumn(), valueMap("$lt",
+					lessThan.getValue()));
+		} else if (criteria instanceof DatabaseCriteria.GreaterThan gt) {
+			result.put(gt.getColumn(), valueMap("$gt", gt.getValue()));
+		} else if (criteria instanceof DatabaseCriteria.LessEqual le) {
+			result.put(le.getColumn(), valueMap("$lte", le.getValue()));
+		} else if (criteria instanceof DatabaseCriteria.GreaterEqual ge) {
+			result.put(ge.getColumn(), valueMap("$gte", ge.getValue()));
+		} else if (criteria instanceof DatabaseCriteria.StartsWith sw) {
+			result.put(sw.getColumn(), valueMap("$startsWith", sw.getPrefix()));
+		} else if (criteria instanceof DatabaseCriteria.EndsWith ew) {
+			result.put(ew.getColumn(), valueMap("$endsWith", ew.getSuffix()));
+		} else {
+			throw new RuntimeException(
+					"Subclass of DatabaseCriteria not supported: " +
+					criteria.getClass().getName());
+		}
+		return result;
+	}
+
+	private List<Map<String,Object>> operandsToList(
+			DatabaseCriteria[] operands) {
+		List<Map<String,Object>> result = new ArrayList<>();
+		for (DatabaseCriteria operand : operands) {
+			result.add(criteriaToMap(operand));
+		}
+		return result;
+	}
+
+	private Map<String,Object> valueMap(String operator, Object value) {
+		Map<String,Object> result = new LinkedHashMap<>();
+		result.put(operator, value);
+		return result;
+	}
+
+	/**
+	 * Converts a map that was obtained from {@link
+	 * #criteriaToMap(DatabaseCriteria) criteriaToMap()} (possibly after
+	 * writing and reading JSON) to criteria.
+	 *
+	 * @param map the map
+	 * @return the criteria
+	 * @throws ParseException if the map is invalid
+	 */
+	public DatabaseCriteria mapToCriteria(Map<?,?> map) throws ParseException {
+		if (map.size() != 1) {
+			throw new ParseException(String.format(
+					"Criteria object has %s entries, expected 1", map.size()));
+		}
+		Object key = map.keySet().iterator().next();
+		if (!(key instanceof String column)) {
+			throw new ParseException("Expected string key in criteria: " +
+					key);
+		}
+		Object value = map.get(key);
+		if (column.equals("$and"))
+			return new DatabaseCriteria.And(listToOperands(value));
+		if (column.equals("$or"))
+			return new DatabaseCriteria.Or(listToOperands(value));
+		if (!(value instanceof Map<?,?> valueMap) || valueMap.size() != 1) {
+			throw new ParseException(String.format(
+					"Expected operator object after column \"%s\", found: %s",
+					column, value));
+		}
+		Object operator = valueMap.keySet().iterator().next();
+		Object operand = valueMap.get(operator);
+		if (operand != null && !(operand instanceof String) &&
+				!(operand instanceof Number)) {
+			throw new ParseException(String.format(
+					"Expected string, number or null value for column \"%s\", found: %s",
+					column, operand.getClass().getName()));
+		}
+		if (!(operator instanceof String)) {
+			throw new ParseException("Expected string operator: " +
+					operator);
+		}
+		boolean isNumber = operand instanceof Number;
+		if (operator.equals("$startsWith") || operator.equals("$endsWith")) {
+			if (!(operand instanceof String str)) {
+				throw new ParseException(String.format(
+						"Expected string value for operator \"%s\" in column \"%s\", found: %s",
+						operator, column, operand));
+			}
+			if (operator.equals("$startsWith"))
+				return new DatabaseCriteria.StartsWith(column, str);
+			else
+				return new DatabaseCriteria.EndsWith(column, str);
+		}
+		switch ((String)operator) {
+		case "$eq":
+			return isNumber ?
+					new DatabaseCriteria.Equal(column, (Number)operand) :
+					new DatabaseCriteria.Equal(column, (String)operand);
+		case "$ne":
+			return isNumber ?
+					new DatabaseCriteria.NotEqual(column, (Number)operand) :
+					new DatabaseCriteria.NotEqual(column, (String)operand);
+		case "$lt":
+			return isNumber ?
+					new DatabaseCriteria.LessThan(column, (Number)operand) :
+					new DatabaseCriteria.LessThan(column, (String)operand);
+		case "$gt":
+			return isNumber ?
+					new DatabaseCriteria.GreaterThan(column,
+							(Number)operand) :
+					new DatabaseCriteria.GreaterThan(column,
+							(String)operand);
+		case "$lte":
+			return isNumber ?
+					new DatabaseCriteria.LessEqual(column,
+							(Number)operand) :
+					new DatabaseCriteria.LessEqual(column,
+							(String)operand);
+		case "$gte":
+			return isNumber ?
+					new DatabaseCriteria.GreaterEqual(column,
+							(Number)operand) :
+					new DatabaseCriteria.GreaterEqual(column,
+							(String)operand);
+		default:
+			throw new ParseException(String.format(
+					"Unknown operator \"%s\" for column \"%s\"",
+					operator, column));
+		}
+	}
+
+	private DatabaseCriteria[] listToOperands(Object value)
+			throws ParseException {
+		if (!(value instanceof List<?> list)) {
+			throw new ParseException(
+					"Expected list after logical operator, found: " + value);
+		}
+		DatabaseCriteria[] result = new DatabaseCriteria[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			Object item = list.get(i);
+			if (!(item instanceof Map<?,?> itemMap)) {
+				throw new ParseException(
+						"Expected criteria object in list, found: " + item);
+			}
+			result[i] = mapToCriteria(itemMap);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the names of all columns that are used in the specified
+	 * criteria.
+	 *
+	 * @param criteria the criteria (can be null)
+	 * @return the column names
+	 */
+	public Set<String> getColumns(DatabaseCriteria criteria) {
+		Set<String> result = new LinkedHashSet<>();
+		addColumns(criteria, result);
+		return result;
+	}
+
+	private void addColumns(DatabaseCriteria criteria, Set<String> columns) {
+		if (criteria == null)
+			return;
+		if (criteria instanceof DatabaseCriteria.And and) {
+			for (DatabaseCriteria operand : and.getOperands()) {
+				addColumns(operand, columns);
+			}
+		} else if (criteria instanceof DatabaseCriteria.Or or) {
+			for (DatabaseCriteria operand : or.getOperands()) {
+				addColumns(operand, columns);
+			}
+		} else if (criteria instanceof DatabaseCriteria.Equal equal) {
+			columns.add(equal.getColumn());
+		} else if (criteria instanceof DatabaseCriteria.NotEqual notEqual) {
+			columns.add(notEqual.getColumn());
+		} else if (criteria instanceof DatabaseCriteria.LessThan lessThan) {
+			columns.add(lessThan.getColumn());
+		} else if (criteria instanceof DatabaseCriteria.GreaterThan gt) {
+			columns.add(gt.getColumn());
+		} else if (criteria instanceof DatabaseCriteria.LessEqual le) {
+			columns.add(le.getColumn());
+		} else if (criteria instanceof DatabaseCriteria.GreaterEqual ge) {
+			columns.add(ge.getColumn());
+		} else if (criteria instanceof DatabaseCriteria.StartsWith sw) {
+			columns.add(sw.getColumn());
+		} else if (criteria instanceof DatabaseCriteria.EndsWith ew) {
+			columns.add(ew.getColumn());
+		}
+	}
+}
@@ -3,6 +3,7 @@ package nl.rrd.senseeact.dao;
 import java.util.Map;
 
 import nl.rrd.senseeact.dao.DatabaseCriteria.And;
+import nl.rrd.senseeact.dao.DatabaseCriteria.EndsWith;
 import nl.rrd.senseeact.dao.DatabaseCriteria.Equal;
 import nl.rrd.senseeact.dao.DatabaseCriteria.GreaterEqual;
 import nl.rrd.senseeact.dao.DatabaseCriteria.GreaterThan;
@@ -10,6 +11,7 @@ import nl.rrd.senseeact.dao.DatabaseCriteria.LessEqual;
 import nl.rrd.senseeact.dao.DatabaseCriteria.LessThan;
 import nl.rrd.senseeact.dao.DatabaseCriteria.NotEqual;
 import nl.rrd.senseeact.dao.DatabaseCriteria.Or;
+import nl.rrd.senseeact.dao.DatabaseCriteria.StartsWith;
 
 /**
  * This class can check whether a database object matches specified criteria.
@@ -54,6 +56,10 @@ public class DatabaseCriteriaMatcher {
 			return matchesLessEqual(object, (LessEqual)criteria);
 		} else if (criteria instanceof GreaterEqual) {
 			return matchesGreaterEqual(object, (GreaterEqual)criteria);
+		} else if (criteria instanceof StartsWith) {
+			return matchesStartsWith(object, (StartsWith)criteria);
+		} else if (criteria instanceof EndsWith) {
+			return matchesEndsWith(object, (EndsWith)criteria);
 		} else if (criteria instanceof And) {
 			return matchesAnd(object, (And)criteria);
 		} else if (criteria instanceof Or) {
@@ -153,6 +159,38 @@ public class DatabaseCriteriaMatcher {
 		return PrimitiveValueComparison.isGreaterEqual(val1, val2);
 	}
 
+	/**
+	 * Returns whether a database record matches the specified StartsWith
+	 * criteria. If the value is not a string, this method returns false.
+	 * 
+	 * @param object the database object
+	 * @param criteria the criteria
+	 * @return true if the record matches the criteria, false otherwise
+	 */
+	private static boolean matchesStartsWith(Map<String,Object> object,
+			StartsWith criteria) {
+		Object value = object.get(criteria.getColumn());
+		if (!(value instanceof String))
+			return false;
+		return ((String)value).startsWith(criteria.getPrefix());
+	}
+
+	/**
+	 * Returns whether a database record matches the specified EndsWith
+	 * criteria. If the value is not a string, this method returns false.
+	 * 
+	 * @param object the database object
+	 * @param criteria the criteria
+	 * @return true if the record matches the criteria, false otherwise
+	 */
+	private static boolean matchesEndsWith(Map<String,Object> object,
+			EndsWith criteria) {
+		Object value = object.get(criteria.getColumn());
+		if (!(value instanceof String))
+			return false;
+		return ((String)value).endsWith(criteria.getSuffix());
+	}
+
 	/**
 	 * Returns whether a database record matches the specified And criteria.
 	 * 
@@ -22,6 +22,10 @@ import java.io.IOException;
 public abstract class DatabaseFactory {
 	private boolean syncEnabled = false;
 	private boolean saveSyncedRemoteActions = true;
+	private boolean userPartitioning = false;
+	private boolean rangeDeleteEnabled = false;
+	private RecordIdGenerator recordIdGenerator =
+			new RandomRecordIdGenerator();
 
 	/**
 	 * Returns whether action logging is enabled for synchronisation with
@@ -71,6 +75,83 @@ public abstract class DatabaseFactory {
 		this.saveSyncedRemoteActions = saveSyncedRemoteActions;
 	}
 
+	/**
+	 * Returns whether tables that are split by user should be stored in one
+	 * physical table that is partitioned by user, rather than in a separate
+	 * physical table per user. The default is false. See {@link
+	 * Database#setUserPartitioning(boolean) Database.setUserPartitioning()}.
+	 *
+	 * @return true if tables that are split by user are stored in one
+	 * partitioned table, false if they are stored in a table per user
+	 */
+	public boolean isUserPartitioning() {
+		return userPartitioning;
+	}
+
+	/**
+	 * Sets whether tables that are split by user should be stored in one
+	 * physical table that is partitioned by user, rather than in a separate
+	 * physical table per user. The default is false. See {@link
+	 * Database#setUserPartitioning(boolean) Database.setUserPartitioning()}.
+	 *
+	 * @param userPartitioning true if tables that are split by user are
+	 * stored in one partitioned table, false if they are stored in a table
+	 * per user
+	 */
+	public void setUserPartitioning(boolean userPartitioning) {
+		this.userPartitioning = userPartitioning;
+	}
+
+	/**
+	 * Returns whether a delete with criteria is logged as one range delete
+	 * action, rather than a delete action for each deleted record. The
+	 * default is false. See {@link Database#setRangeDeleteEnabled(boolean)
+	 * Database.setRangeDeleteEnabled()}.
+	 *
+	 * @return true if range deletes are logged, false if a delete action is
+	 * logged for each record
+	 */
+	public boolean isRangeDeleteEnabled() {
+		return rangeDeleteEnabled;
+	}
+
+	/**
+	 * Sets whether a delete with criteria is logged as one range delete
+	 * action, rather than a delete action for each deleted record. The
+	 * default is false. See {@link Database#setRangeDeleteEnabled(boolean)
+	 * Database.setRangeDeleteEnabled()}.
+	 *
+	 * @param rangeDeleteEnabled true if range deletes are logged, false if a
+	 * delete action is logged for each record
+	 */
+	public void setRangeDeleteEnabled(boolean rangeDeleteEnabled) {
+		this.rangeDeleteEnabled = rangeDeleteEnabled;
+	}
+
+	/**
+	 * Returns the generator of IDs for new records. The default is a {@link
+	 * RandomRecordIdGenerator RandomRecordIdGenerator}. See {@link
+	 * Database#setRecordIdGenerator(RecordIdGenerator)
+	 * Database.setRecordIdGenerator()}.
+	 *
+	 * @return the record ID generator
+	 */
+	public RecordIdGenerator getRecordIdGenerator() {
+		return recordIdGenerator;
+	}
+
+	/**
+	 * Sets the generator of IDs for new records. The default is a {@link
+	 * RandomRecordIdGenerator RandomRecordIdGenerator}. See {@link
+	 * Database#setRecordIdGenerator(RecordIdGenerator)
+	 * Database.setRecordIdGenerator()}.
+	 *
+	 * @param recordIdGenerator the record ID generator
+	 */
+	public void setRecordIdGenerator(RecordIdGenerator recordIdGenerator) {
+		this.recordIdGenerator = recordIdGenerator;
+	}
+
 	/**
 	 * Returns a new instance of {@link MemoryDatabaseFactory
 	 * MemoryDatabaseFactory}. This method is called as a default when you
@@ -98,6 +179,9 @@ public abstract class DatabaseFactory {
 		DatabaseConnection conn = doConnect();
 		conn.setSyncEnabled(syncEnabled);
 		conn.setSaveSyncedRemoteActions(saveSyncedRemoteActions);
+		conn.setUserPartitioning(userPartitioning);
+		conn.setRangeDeleteEnabled(rangeDeleteEnabled);
+		conn.setRecordIdGenerator(recordIdGenerator);
 		return conn;
 	}
 	
@@ -110,4 +194,60 @@ public abstract class DatabaseFactory {
 	 * @throws IOException if the connection could not be established
 	 */
 	protected abstract DatabaseConnection doConnect() throws IOException;
+
+	/**
+	 * Returns the number of read replicas of the database server. Read-only
+	 * queries can be run on a replica with {@link #connectReplica(int)
+	 * connectReplica()}. The default implementation returns 0.
+	 *
+	 * @return the number of read replicas
+	 */
+	public int getReplicaCount() {
+		return 0;
+	}
+
+	/**
+	 * Connects to the read replica at the specified index and returns a
+	 * {@link DatabaseConnection DatabaseConnection}. The index should be
+	 * less than {@link #getReplicaCount() getReplicaCount()}. When you no
+	 * longer need the connection, you should call {@link
+	 * DatabaseConnection#close() close()}.
+	 *
+	 * <p>A replica is a copy of the database server that is maintained by the
+	 * server, so you should only read from it. It can lag behind the
+	 * primary server. You should not initialise databases on a replica, but
+	 * get them with {@link DatabaseConnection#getDatabase(String)
+	 * DatabaseConnection.getDatabase()} after they were initialised on the
+	 * primary server.</p>
+	 *
+	 * <p>The returned connection will be configured for action logging as you
+	 * have configured this factory.</p>
+	 *
+	 * @param index the index of the replica
+	 * @return the database connection
+	 * @throws IOException if the connection could not be established
+	 */
+	public DatabaseConnection connectReplica(int index) throws IOException {
+		DatabaseConnection conn = doConnectReplica(index);
+		conn.setSyncEnabled(syncEnabled);
+		conn.setSaveSyncedRemoteActions(saveSyncedRemoteActions);
+		conn.setUserPartitioning(userPartitioning);
+		conn.setRangeDeleteEnabled(rangeDeleteEnabled);
+		conn.setRecordIdGenerator(recordIdGenerator);
+		return conn;
+	}
+
+	/**
+	 * Connects to the read replica at the specified index and returns a
+	 * {@link DatabaseConnection DatabaseConnection}. The default
+	 * implementation throws an IOException, because there are no replicas.
+	 *
+	 * @param index the index of the replica
+	 * @return the database connection
+	 * @throws IOException if the connection could not be established
+	 */
+	protected DatabaseConnection doConnectReplica(int index)
+			throws IOException {
+		throw new IOException("Replica not found: " + index);
+	}
 }
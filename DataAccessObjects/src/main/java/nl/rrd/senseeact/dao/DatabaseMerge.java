@@ -0,0 +1,100 @@
+package nl.rrd.senseeact.dao;
+
+/**
+ * This class defines how a field is merged by {@link
+ * Database#merge(DatabaseTableDef, DatabaseObject, java.util.List)
+ * Database.merge()}, when a record with the same ID already exists. It has a
+ * subclass for each merge function:
+ *
+ * <p><ul>
+ * <li>{@link Sum Sum}: the sum of the existing and new value</li>
+ * <li>{@link Min Min}: the minimum of the existing and new value</li>
+ * <li>{@link Max Max}: the maximum of the existing and new value</li>
+ * <li>{@link Average Average}: the average of the existing and new value,
+ * weighted by a count field</li>
+ * </ul></p>
+ *
+ * <p>The functions can only be used for numeric fields. They are always
+ * applied to the existing values, so the merge functions of different fields
+ * don't depend on each other.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public abstract class DatabaseMerge {
+	private String field;
+
+	/**
+	 * Constructs a new merge function for the specified field.
+	 *
+	 * @param field the field name
+	 */
+	public DatabaseMerge(String field) {
+		this.field = field;
+	}
+
+	/**
+	 * Returns the field name.
+	 *
+	 * @return the field name
+	 */
+	public String getField() {
+		return field;
+	}
+
+	/**
+	 * Sets the field to the sum of the existing and new value.
+	 */
+	public static class Sum extends DatabaseMerge {
+		public Sum(String field) {
+			super(field);
+		}
+	}
+
+	/**
+	 * Sets the field to the minimum of the existing and new value.
+	 */
+	public static class Min extends DatabaseMerge {
+		public Min(String field) {
+			super(field);
+		}
+	}
+
+	/**
+	 * Sets the field to the maximum of the existing and new value.
+	 */
+	public static class Max extends DatabaseMerge {
+		public Max(String field) {
+			super(field);
+		}
+	}
+
+	/**
+	 * Sets the field to the average of the existing and new value, weighted
+	 * by the existing and new value of a count field. The count field itself
+	 * is usually merged with {@link Sum Sum}. The field should have type
+	 * {@link DatabaseType#FLOAT FLOAT} or {@link DatabaseType#DOUBLE DOUBLE}.
+	 */
+	public static class Average extends DatabaseMerge {
+		private String countField;
+
+		/**
+		 * Constructs a new average function.
+		 *
+		 * @param field the field name
+		 * @param countField the name of the count field
+		 */
+		public Average(String field, String countField) {
+			super(field);
+			this.countField = countField;
+		}
+
+		/**
+		 * Returns the name of the count field.
+		 *
+		 * @return the name of the count field
+		 */
+		public String getCountField() {
+			return countField;
+		}
+	}
+}
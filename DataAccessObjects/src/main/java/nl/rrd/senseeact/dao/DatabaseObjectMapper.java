@@ -8,6 +8,7 @@ import nl.rrd.utils.json.JsonMapper;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -139,6 +140,16 @@ import java.util.*;
  * <td>{@link String String} in format yyyy-MM-dd'T'HH:mm:ss.SSSXXX (long, Long,
  * Date and Instant, which don't specify a timezone, are translated to the
  * default time zone)</td>
+ * </tr><tr>
+ * <td>{@link DatabaseType#PACKED_ARRAY PACKED_ARRAY}</td>
+ * <td>int[], long[], {@link List List} of {@link Integer Integer} or {@link
+ * Long Long}, {@link String String} with a JSON array of numbers</td>
+ * <td>{@link String String} encoded with {@link PackedArrayCodec
+ * PackedArrayCodec} or with JSON, or a {@link List List} of numbers if JSON
+ * is encoded</td>
+ * <td>{@link String String} encoded with {@link PackedArrayCodec
+ * PackedArrayCodec}, or a {@link List List} of {@link Long Long}s if JSON is
+ * decoded</td>
  * </tr></tbody></table></p>
  * 
  * @author Dennis Hofs (RRD)
@@ -388,6 +399,15 @@ public class DatabaseObjectMapper {
 		case ISOTIME:
 			ZonedDateTime time = getDateTimeValue(value);
 			return DateTimeUtils.ZONED_FORMAT.format(time);
+		case PACKED_ARRAY:
+			long[] longs = getLongArrayValue(value);
+			if (!decodeJson)
+				return PackedArrayCodec.encode(longs);
+			List<Long> list = new ArrayList<>(longs.length);
+			for (long l : longs) {
+				list.add(l);
+			}
+			return list;
 		default:
 			break;
 		}
@@ -425,6 +445,42 @@ public class DatabaseObjectMapper {
 		}
 	}
 
+	/**
+	 * Takes the value for a packed array field from a {@link DatabaseObject
+	 * DatabaseObject} (int[], long[], a list of numbers or a string with a JSON
+	 * array of numbers) and returns a long array.
+	 *
+	 * @param value the array value
+	 * @return the long array
+	 */
+	private long[] getLongArrayValue(Object value) {
+		if (value instanceof long[]) {
+			return (long[])value;
+		} else if (value instanceof int[] ints) {
+			long[] result = new long[ints.length];
+			for (int i = 0; i < ints.length; i++) {
+				result[i] = ints[i];
+			}
+			return result;
+		} else if (value instanceof List<?> list) {
+			long[] result = new long[list.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = ((Number)list.get(i)).longValue();
+			}
+			return result;
+		} else if (value instanceof String json) {
+			try {
+				return getLongArrayValue(JsonMapper.parse(json, List.class));
+			} catch (ParseException | ClassCastException ex) {
+				throw new IllegalArgumentException("Invalid array value: " +
+						value + ": " + ex.getMessage(), ex);
+			}
+		} else {
+			throw new IllegalArgumentException("Invalid array value: " +
+					value);
+		}
+	}
+
 	/**
 	 * Converts a value from the database to a value that is written to a
 	 * {@link DatabaseObject DatabaseObject}. The database value should be a
@@ -557,9 +613,82 @@ public class DatabaseObjectMapper {
 			} catch (ParseException ex) {
 				throw new IllegalArgumentException(ex.getMessage(), ex);
 			}
+		case PACKED_ARRAY:
+			long[] longs;
+			if (value instanceof List<?> list) {
+				longs = new long[list.size()];
+				for (int i = 0; i < longs.length; i++) {
+					if (!(list.get(i) instanceof Number)) {
+						throw new IllegalArgumentException(
+								"Invalid value for database type " + dbType +
+								": " + value);
+					}
+					longs[i] = ((Number)list.get(i)).longValue();
+				}
+			} else if (value.toString().startsWith("[")) {
+				// JSON array written before the field was packed
+				try {
+					longs = getLongArrayValue(JsonMapper.parse(
+							value.toString(), List.class));
+				} catch (ParseException | ClassCastException ex) {
+					throw new IllegalArgumentException(
+							"Invalid value for database type " + dbType +
+							": " + value + ": " + ex.getMessage(), ex);
+				}
+			} else {
+				longs = PackedArrayCodec.decode(value.toString());
+			}
+			return toArrayField(longs, field);
 		default:
 			break;
 		}
 		throw new RuntimeException("Unknown database type: " + dbType);
 	}
+
+	/**
+	 * Converts a long array to the type of the specified packed array field:
+	 * int[], long[], a list of {@link Integer Integer} or {@link Long Long}, or
+	 * a string with a JSON array.
+	 *
+	 * @param longs the long array
+	 * @param field the field
+	 * @return the value for the field
+	 * @throws IllegalArgumentException if the field type is not supported
+	 */
+	private Object toArrayField(long[] longs, Field field)
+			throws IllegalArgumentException {
+		Class<?> clazz = field.getType();
+		if (clazz == long[].class)
+			return longs;
+		if (clazz == String.class)
+			return JsonMapper.generate(longs);
+		boolean intElems;
+		if (clazz == int[].class) {
+			int[] result = new int[longs.length];
+			for (int i = 0; i < longs.length; i++) {
+				result[i] = (int)longs[i];
+			}
+			return result;
+		} else if (clazz == List.class && field.getGenericType() instanceof
+				ParameterizedType type) {
+			intElems = type.getActualTypeArguments()[0] == Integer.class;
+			if (!intElems && type.getActualTypeArguments()[0] != Long.class) {
+				throw new IllegalArgumentException(
+						"Invalid element type for database type " +
+						DatabaseType.PACKED_ARRAY + ": " + type);
+			}
+		} else {
+			throw new IllegalArgumentException(
+					"Invalid class for database type " +
+					DatabaseType.PACKED_ARRAY + ": " + clazz.getName());
+		}
+		List<Object> result = new ArrayList<>(longs.length);
+		for (long l : longs) {
+			if (intElems)
+				result.add((int)l);
+			else
+				result.add(l);
+		}
+		return result;
+	}
 }
@@ -18,5 +18,6 @@ public enum DatabaseType {
 	DATE,
 	TIME,
 	DATETIME,
-	ISOTIME
+	ISOTIME,
+	PACKED_ARRAY
 }
@@ -0,0 +1,84 @@
+package nl.rrd.senseeact.dao;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class defines the numeric shadow column of a local time column. Sample
+ * tables with a local time store it in a string field "localTime" with format
+ * yyyy-MM-dd'T'HH:mm:ss.SSS. The shadow field "localTimeMillis" stores the
+ * same time as a number: the milliseconds since the epoch if the local time
+ * were in UTC. The numeric value sorts in the same order as the string, but
+ * it is smaller and faster to compare.
+ *
+ * <p>If a table has the shadow field, the {@link Database Database} fills it
+ * in when a record is written with a local time, and SQL databases use it for
+ * comparisons and sorting on "localTime". When the data class of an existing
+ * table gets the shadow field, {@link Database#initTable(DatabaseTableDef)
+ * Database.initTable()} adds the column with {@link
+ * UpgradeTableLocalTimeMillis UpgradeTableLocalTimeMillis}. Existing records
+ * are filled in later with {@link Database#backfillLocalTimeMillis(String)
+ * Database.backfillLocalTimeMillis()}. Until then, queries keep using
+ * "localTime" (see {@link Database#isLocalTimeMillisComplete(String)
+ * Database.isLocalTimeMillisComplete()}).</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class LocalTimeColumn {
+	public static final String LOCAL_TIME = "localTime";
+	public static final String LOCAL_TIME_MILLIS = "localTimeMillis";
+
+	public static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern(
+			"yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+	/**
+	 * Converts a local time string to the value of the shadow field. If the
+	 * value is not a string in the format yyyy-MM-dd'T'HH:mm:ss.SSS, this
+	 * method returns null.
+	 *
+	 * @param localTime the local time string or null
+	 * @return the value of the shadow field or null
+	 */
+	public static Long toMillis(Object localTime) {
+		if (!(localTime instanceof String localTimeStr))
+			return null;
+		LocalDateTime time;
+		try {
+			time = FORMAT.parse(localTimeStr, LocalDateTime::from);
+		} catch (DateTimeParseException ex) {
+			return null;
+		}
+		return toMillis(time);
+	}
+
+	/**
+	 * Converts a local date/time to the value of the shadow field.
+	 *
+	 * @param localTime the local date/time
+	 * @return the value of the shadow field
+	 */
+	public static long toMillis(LocalDateTime localTime) {
+		return localTime.atZone(ZoneOffset.UTC).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * If the specified table has the shadow field and the specified record
+	 * has a local time, this method sets the shadow field in the record.
+	 * Otherwise it leaves the record unchanged.
+	 *
+	 * @param tableFields the fields of the table
+	 * @param record the record
+	 */
+	public static void setMillis(List<String> tableFields,
+			Map<String,Object> record) {
+		if (!tableFields.contains(LOCAL_TIME_MILLIS) ||
+				!record.containsKey(LOCAL_TIME)) {
+			return;
+		}
+		record.put(LOCAL_TIME_MILLIS, toMillis(record.get(LOCAL_TIME)));
+	}
+}
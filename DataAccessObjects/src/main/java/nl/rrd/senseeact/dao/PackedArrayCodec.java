@@ -0,0 +1,81 @@
+package nl.rrd.senseeact.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Base64;
+
+/**
+ * This class encodes arrays of integer numbers for database type {@link
+ * DatabaseType#PACKED_ARRAY PACKED_ARRAY}. Sensor values are often close to
+ * each other, so each value is stored as the difference with the previous
+ * value (the first value as the difference with 0). Each difference is
+ * zigzag encoded, so small negative numbers become small positive numbers,
+ * and then it's written as a variable-length integer with 7 bits per byte.
+ * Most values then take one byte. The bytes are encoded as a Base64 string,
+ * so they can be stored like any other string. The action log and
+ * synchronisation use JSON arrays instead (see {@link PackedArrayColumn
+ * PackedArrayColumn}).
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class PackedArrayCodec {
+
+	/**
+	 * Encodes the specified values.
+	 *
+	 * @param values the values
+	 * @return the Base64 string
+	 */
+	public static String encode(long[] values) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(values.length);
+		long prev = 0;
+		for (long value : values) {
+			long delta = value - prev;
+			prev = value;
+			long zigzag = (delta << 1) ^ (delta >> 63);
+			while ((zigzag & ~0x7FL) != 0) {
+				out.write((int)((zigzag & 0x7F) | 0x80));
+				zigzag >>>= 7;
+			}
+			out.write((int)zigzag);
+		}
+		return Base64.getEncoder().encodeToString(out.toByteArray());
+	}
+
+	/**
+	 * Decodes the specified Base64 string.
+	 *
+	 * @param encoded the Base64 string
+	 * @return the values
+	 * @throws IllegalArgumentException if the string is not a valid encoded
+	 * array
+	 */
+	public static long[] decode(String encoded)
+			throws IllegalArgumentException {
+		byte[] bytes = Base64.getDecoder().decode(encoded);
+		long[] buffer = new long[bytes.length];
+		int count = 0;
+		long prev = 0;
+		int pos = 0;
+		while (pos < bytes.length) {
+			long zigzag = 0;
+			int shift = 0;
+			while (true) {
+				if (pos == bytes.length || shift > 63) {
+					throw new IllegalArgumentException(
+							"Invalid packed array: " + encoded);
+				}
+				int b = bytes[pos++];
+				zigzag |= (long)(b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					break;
+				shift += 7;
+			}
+			long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+			prev += delta;
+			buffer[count++] = prev;
+		}
+		long[] result = new long[count];
+		System.arraycopy(buffer, 0, result, 0, count);
+		return result;
+	}
+}
@@ -0,0 +1,145 @@
+package nl.rrd.senseeact.dao;
+
+import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.ParseException;
+import nl.rrd.utils.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class converts the values of columns with database type {@link
+ * DatabaseType#PACKED_ARRAY PACKED_ARRAY} between the database and the
+ * action log. In the database the values are stored as strings encoded with
+ * {@link PackedArrayCodec PackedArrayCodec}. In the action data, which is
+ * synchronised with clients, the values are written as a string with a JSON
+ * array, the same as a column of type {@link DatabaseType#JSON JSON}. This
+ * way clients that don't know packed arrays, or that store the field as
+ * JSON, can still read and write the action data.
+ *
+ * <p>The {@link Database Database} packs the values when a record is
+ * written, so a record map may contain a packed string, a string with a JSON
+ * array, or a list of numbers.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class PackedArrayColumn {
+
+	/**
+	 * Returns the names of the fields with database type {@link
+	 * DatabaseType#PACKED_ARRAY PACKED_ARRAY} in the specified data class.
+	 *
+	 * @param dataClass the data class
+	 * @return the field names
+	 */
+	public static List<String> getFields(
+			Class<? extends DatabaseObject> dataClass) {
+		List<String> result = new ArrayList<>();
+		for (DatabaseFieldSpec field :
+				DatabaseFieldScanner.getDatabaseFields(dataClass)) {
+			if (field.getDbField().value() == DatabaseType.PACKED_ARRAY)
+				result.add(field.getPropSpec().getName());
+		}
+		return result;
+	}
+
+	/**
+	 * Converts the values of the specified packed array fields in a record
+	 * to the format in the database. A value can be a packed string, a
+	 * string with a JSON array or a list of numbers. This method changes the
+	 * record.
+	 *
+	 * @param fields the packed array fields of the table
+	 * @param record the record
+	 * @throws DatabaseException if a value is not a valid array
+	 */
+	public static void pack(List<String> fields, Map<String,Object> record)
+			throws DatabaseException {
+		for (String field : fields) {
+			Object value = record.get(field);
+			if (value instanceof List<?> list) {
+				record.put(field, PackedArrayCodec.encode(toLongArray(list,
+						value)));
+			} else if (value instanceof String str && str.startsWith("[")) {
+				record.put(field, PackedArrayCodec.encode(parseJsonArray(
+						str)));
+			}
+		}
+	}
+
+	/**
+	 * Converts the values of the specified packed array fields in the data
+	 * of a database action to strings with a JSON array. If the data doesn't
+	 * contain packed values, this method returns the same map. Otherwise it
+	 * returns a new map.
+	 *
+	 * @param fields the packed array fields of the table
+	 * @param data the action data
+	 * @return the action data with JSON arrays
+	 */
+	public static Map<String,?> toActionData(List<String> fields,
+			Map<String,?> data) {
+		Map<String,Object> result = null;
+		for (String field : fields) {
+			if (!(data.get(field) instanceof String str) ||
+					str.startsWith("[")) {
+				continue;
+			}
+			if (result == null)
+				result = new LinkedHashMap<>(data);
+			StringBuilder json = new StringBuilder("[");
+			long[] values = PackedArrayCodec.decode(str);
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0)
+					json.append(",");
+				json.append(values[i]);
+			}
+			json.append("]");
+			result.put(field, json.toString());
+		}
+		return result != null ? result : data;
+	}
+
+	/**
+	 * Parses a JSON array of numbers.
+	 *
+	 * @param json the JSON code
+	 * @return the numbers
+	 * @throws DatabaseException if the JSON code is not an array of numbers
+	 */
+	static long[] parseJsonArray(String json)
+			throws DatabaseException {
+		List<?> list;
+		try {
+			list = JsonMapper.parse(json, List.class);
+		} catch (ParseException ex) {
+			throw new DatabaseException("Invalid JSON array: " + json +
+					": " + ex.getMessage(), ex);
+		}
+		return toLongArray(list, json);
+	}
+
+	/**
+	 * Converts a list of numbers to a long array.
+	 *
+	 * @param list the list
+	 * @param value the original value for an error message
+	 * @return the long array
+	 * @throws DatabaseException if the list contains a value that is not a
+	 * number
+	 */
+	private static long[] toLongArray(List<?> list, Object value)
+			throws DatabaseException {
+		long[] result = new long[list.size()];
+		for (int i = 0; i < result.length; i++) {
+			if (!(list.get(i) instanceof Number number)) {
+				throw new DatabaseException(
+						"Invalid array of numbers: " + value);
+			}
+			result[i] = number.longValue();
+		}
+		return result;
+	}
+}
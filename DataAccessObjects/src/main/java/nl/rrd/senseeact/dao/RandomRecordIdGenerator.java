@@ -0,0 +1,18 @@
+package nl.rrd.senseeact.dao;
+
+import java.util.UUID;
+
+/**
+ * The default {@link RecordIdGenerator RecordIdGenerator}. It generates a
+ * random UUID (version 4) and formats it as 32 lowercase hexadecimal
+ * characters without dashes.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class RandomRecordIdGenerator implements RecordIdGenerator {
+
+	@Override
+	public String generateId() {
+		return UUID.randomUUID().toString().toLowerCase().replaceAll("-", "");
+	}
+}
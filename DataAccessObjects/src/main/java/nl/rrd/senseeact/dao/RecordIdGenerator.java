@@ -0,0 +1,23 @@
+package nl.rrd.senseeact.dao;
+
+/**
+ * A generator of IDs for new database records. A {@link Database Database}
+ * uses it when a record is inserted without an ID. The default is {@link
+ * RandomRecordIdGenerator RandomRecordIdGenerator}. You can configure another
+ * generator with {@link DatabaseFactory#setRecordIdGenerator(RecordIdGenerator)
+ * DatabaseFactory.setRecordIdGenerator()}.
+ *
+ * <p>The generated IDs are stored as strings, so all generators can be used
+ * for the same tables. Implementations must be thread-safe.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public interface RecordIdGenerator {
+
+	/**
+	 * Generates a new unique record ID.
+	 *
+	 * @return the record ID
+	 */
+	String generateId();
+}
@@ -46,6 +46,14 @@ public class TableMetadata extends BaseDatabaseObject {
 	 * database should have a separate table per user.
 	 */
 	public static final String KEY_SPLIT_BY_USER = "split_by_user";
+
+	/**
+	 * The value is "true" if the table has the shadow field "localTimeMillis"
+	 * (see {@link LocalTimeColumn LocalTimeColumn}) and the field has been
+	 * filled in for all records. Only then queries use the field. If the
+	 * field is still being filled in, this key is not set.
+	 */
+	public static final String KEY_LOCAL_TIME_MILLIS = "local_time_millis";
 	
 	@DatabaseField(value=DatabaseType.STRING, index=true)
 	private String table;
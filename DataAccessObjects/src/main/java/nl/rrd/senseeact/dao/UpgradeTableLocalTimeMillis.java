@@ -0,0 +1,95 @@
+package nl.rrd.senseeact.dao;
+
+import java.util.List;
+import java.util.Map;
+
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+
+import nl.rrd.utils.AppComponents;
+
+/**
+ * This class can be used to add the shadow field "localTimeMillis" to an
+ * existing table with field "localTime" (see {@link LocalTimeColumn
+ * LocalTimeColumn}). It can be called from {@link
+ * DatabaseTableDef#upgradeTable(int, Database, String)
+ * DatabaseTableDef.upgradeTable()} when the data class gets the shadow
+ * field. {@link Database#initTable(DatabaseTableDef) Database.initTable()}
+ * also calls it automatically for tables whose data class has the shadow
+ * field, when the physical table doesn't have the column yet.
+ *
+ * <p>The upgrade only adds the column with an index. The column is filled
+ * in for existing records later in the background with {@link
+ * Database#backfillLocalTimeMillis(String)
+ * Database.backfillLocalTimeMillis()}, which calls {@link
+ * #backfill(Database, String) backfill()}. Until that has completed,
+ * queries don't use the column. The backfill runs one set-based update per
+ * batch of records, so the table is never locked for a long time. The
+ * batches select records where the shadow field is still null, so the
+ * backfill can be resumed if it was interrupted.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class UpgradeTableLocalTimeMillis {
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * Adds the shadow field "localTimeMillis" to the specified physical table
+	 * if it doesn't have the column yet. The column is filled in later in the
+	 * background.
+	 *
+	 * @param db the database
+	 * @param physTable the physical table
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public static void upgrade(Database db, String physTable)
+			throws DatabaseException {
+		if (db.hasColumn(physTable, LocalTimeColumn.LOCAL_TIME_MILLIS))
+			return;
+		Logger logger = AppComponents.getLogger(Database.LOGTAG);
+		logger.info(String.format("Upgrade table %s: add %s", physTable,
+				LocalTimeColumn.LOCAL_TIME_MILLIS));
+		db.addColumn(physTable, new DatabaseColumnDef(
+				LocalTimeColumn.LOCAL_TIME_MILLIS, DatabaseType.LONG, true));
+	}
+
+	/**
+	 * Fills in the shadow field "localTimeMillis" for records in the
+	 * specified physical table where it is null. It selects the IDs of the
+	 * next batch of records and then fills in the batch with one update
+	 * statement. Records with an invalid local time are left unchanged.
+	 *
+	 * @param db the database
+	 * @param physTable the physical table
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public static void backfill(Database db, String physTable)
+			throws DatabaseException {
+		Logger logger = AppComponents.getLogger(Database.LOGTAG);
+		DatabaseCriteria nullCriteria = new DatabaseCriteria.Equal(
+				LocalTimeColumn.LOCAL_TIME_MILLIS, (Long)null);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("id", true)
+		};
+		int count = 0;
+		String lastId = null;
+		while (true) {
+			DatabaseCriteria criteria = nullCriteria;
+			if (lastId != null) {
+				criteria = new DatabaseCriteria.And(nullCriteria,
+						new DatabaseCriteria.GreaterThan("id", lastId));
+			}
+			List<Map<String,?>> maps = db.selectMaps(physTable, null,
+					criteria, BATCH_SIZE, sort);
+			if (maps.isEmpty())
+				return;
+			String batchEnd = (String)maps.get(maps.size() - 1).get("id");
+			db.doFillLocalTimeMillis(physTable, lastId, batchEnd);
+			count += maps.size();
+			lastId = batchEnd;
+			logger.info(String.format(
+					"Backfill table %s: filled %s in %s records",
+					physTable, LocalTimeColumn.LOCAL_TIME_MILLIS, count));
+		}
+	}
+}
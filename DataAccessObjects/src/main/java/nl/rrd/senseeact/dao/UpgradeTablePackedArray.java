@@ -0,0 +1,76 @@
+package nl.rrd.senseeact.dao;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+
+import nl.rrd.utils.AppComponents;
+
+/**
+ * This class can be used to convert a text column with JSON arrays of
+ * numbers to database type {@link DatabaseType#PACKED_ARRAY PACKED_ARRAY}. It
+ * can be called from {@link
+ * DatabaseTableDef#upgradeTable(int, Database, String)
+ * DatabaseTableDef.upgradeTable()} when a field of the data class is changed
+ * from a JSON text field to a packed array.
+ *
+ * <p>Both types are stored as text, so the column is not changed. The
+ * records are converted in small batches. Values that are already packed are
+ * skipped, so the upgrade can be resumed if it was interrupted. The {@link
+ * DatabaseObjectMapper DatabaseObjectMapper} can still read JSON arrays, so
+ * this upgrade is only needed to reduce storage.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class UpgradeTablePackedArray {
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * Converts the JSON arrays in the specified column of a physical table
+	 * to packed arrays.
+	 *
+	 * @param db the database
+	 * @param physTable the physical table
+	 * @param column the column name
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public static void upgrade(Database db, String physTable, String column)
+			throws DatabaseException {
+		Logger logger = AppComponents.getLogger(Database.LOGTAG);
+		logger.info(String.format(
+				"Start upgrade table %s: pack column %s", physTable, column));
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("id", true)
+		};
+		int count = 0;
+		String lastId = null;
+		while (true) {
+			DatabaseCriteria criteria = null;
+			if (lastId != null)
+				criteria = new DatabaseCriteria.GreaterThan("id", lastId);
+			List<Map<String,?>> maps = db.selectMaps(physTable, null,
+					criteria, BATCH_SIZE, sort);
+			if (maps.isEmpty())
+				break;
+			for (Map<String,?> map : maps) {
+				Object value = map.get(column);
+				if (value == null || !value.toString().startsWith("["))
+					continue;
+				long[] longs = PackedArrayColumn.parseJsonArray(
+						value.toString());
+				Map<String,Object> values = new LinkedHashMap<>();
+				values.put(column, PackedArrayCodec.encode(longs));
+				db.update(physTable, null, new DatabaseCriteria.Equal("id",
+						(String)map.get("id")), values);
+				count++;
+			}
+			lastId = (String)maps.get(maps.size() - 1).get("id");
+		}
+		logger.info(String.format(
+				"Finished upgrade table %s: packed column %s in %s records",
+				physTable, column, count));
+	}
+}
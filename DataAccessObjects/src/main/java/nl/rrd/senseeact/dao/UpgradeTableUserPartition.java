@@ -0,0 +1,160 @@
+package nl.rrd.senseeact.dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+
+import nl.rrd.utils.AppComponents;
+
+/**
+ * This class moves the records of a table that is split by user, between
+ * separate tables per user and one table that is partitioned by user. It is
+ * called from {@link Database#initTable(DatabaseTableDef)
+ * Database.initTable()} when {@link Database#isUserPartitioning()
+ * Database.isUserPartitioning()} has changed for an existing database.
+ *
+ * <p>The records are moved in batches. Each batch is first deleted from the
+ * target table and then inserted, so the upgrade can be resumed if it was
+ * interrupted. A source table is dropped when it is empty. The user table
+ * keys are kept, because they also identify the action tables.</p>
+ *
+ * <p>Unlike {@link UpgradeTableSplitByUser UpgradeTableSplitByUser}, this
+ * class does not require that the records have a time.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class UpgradeTableUserPartition {
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * Upgrades the specified logical table by merging the physical tables per
+	 * user into one table that is partitioned by user.
+	 *
+	 * @param db the database
+	 * @param tableDef the table definition
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public static void upgradeMerge(Database db, DatabaseTableDef<?> tableDef)
+			throws DatabaseException {
+		List<String> dbTables = db.selectDbTables();
+		String prefix = tableDef.getName() + Database.TABLE_TOKEN_SEP;
+		List<String> userTables = new ArrayList<>();
+		for (String dbTable : dbTables) {
+			if (dbTable.startsWith(prefix))
+				userTables.add(dbTable);
+		}
+		if (!dbTables.contains(tableDef.getName()))
+			db.createUserPartitionedTable(tableDef);
+		if (userTables.isEmpty())
+			return;
+		Logger logger = AppComponents.getLogger(Database.LOGTAG);
+		logger.info(String.format(
+				"Start upgrade table %s: merge %s user tables",
+				tableDef.getName(), userTables.size()));
+		for (String userTable : userTables) {
+			upgradeMergeUserTable(db, tableDef, userTable);
+		}
+		logger.info(String.format(
+				"Finished upgrade table %s: merge user tables",
+				tableDef.getName()));
+	}
+
+	/**
+	 * Moves all records from the specified user table to the partitioned
+	 * table and then drops the user table.
+	 *
+	 * @param db the database
+	 * @param tableDef the table definition
+	 * @param userTable the physical user table
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private static void upgradeMergeUserTable(Database db,
+			DatabaseTableDef<?> tableDef, String userTable)
+			throws DatabaseException {
+		Logger logger = AppComponents.getLogger(Database.LOGTAG);
+		int count = 0;
+		while (true) {
+			List<Map<String,?>> maps = db.selectMaps(userTable, null, null,
+					BATCH_SIZE, null);
+			if (maps.isEmpty())
+				break;
+			moveBatch(db, userTable, tableDef.getName(), maps);
+			count += maps.size();
+		}
+		db.dropCachedDbTable(userTable);
+		logger.info(String.format(
+				"Upgrade table %s: moved %s records from user table %s",
+				tableDef.getName(), count, userTable));
+	}
+
+	/**
+	 * Upgrades the specified logical table by splitting the table that is
+	 * partitioned by user into separate physical tables per user.
+	 *
+	 * @param db the database
+	 * @param tableDef the table definition
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public static void upgradeSplit(Database db, DatabaseTableDef<?> tableDef)
+			throws DatabaseException {
+		if (!db.selectDbTables().contains(tableDef.getName()))
+			return;
+		Logger logger = AppComponents.getLogger(Database.LOGTAG);
+		logger.info(String.format("Start upgrade table %s: split by user",
+				tableDef.getName()));
+		while (true) {
+			List<Map<String,?>> maps = db.selectMaps(tableDef.getName(), null,
+					null, BATCH_SIZE, null);
+			if (maps.isEmpty())
+				break;
+			Map<String,List<Map<String,?>>> userMaps = new LinkedHashMap<>();
+			for (Map<String,?> map : maps) {
+				String user = (String)map.get("user");
+				List<Map<String,?>> list = userMaps.computeIfAbsent(user,
+						key -> new ArrayList<>());
+				list.add(map);
+			}
+			for (String user : userMaps.keySet()) {
+				String userTable = db.getSplitUserTable(tableDef, user);
+				moveBatch(db, tableDef.getName(), userTable,
+						userMaps.get(user));
+			}
+			logger.info(String.format(
+					"Upgrade table %s: moved batch of %s records to %s user tables",
+					tableDef.getName(), maps.size(), userMaps.size()));
+		}
+		db.dropCachedDbTable(tableDef.getName());
+		logger.info(String.format("Finished upgrade table %s: split by user",
+				tableDef.getName()));
+	}
+
+	/**
+	 * Moves a batch of records from one physical table to another. The
+	 * records are first deleted from the target table, so the move can be
+	 * repeated.
+	 *
+	 * @param db the database
+	 * @param source the source table
+	 * @param target the target table
+	 * @param maps the records from the source table
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private static void moveBatch(Database db, String source, String target,
+			List<Map<String,?>> maps) throws DatabaseException {
+		List<Map<String,Object>> insertMaps = new ArrayList<>();
+		DatabaseCriteria[] ors = new DatabaseCriteria[maps.size()];
+		for (int i = 0; i < maps.size(); i++) {
+			Map<String,?> map = maps.get(i);
+			insertMaps.add(new LinkedHashMap<>(map));
+			ors[i] = new DatabaseCriteria.Equal("id", (String)map.get("id"));
+		}
+		DatabaseCriteria idCriteria = new DatabaseCriteria.Or(ors);
+		db.delete(target, null, idCriteria);
+		db.insertMaps(target, insertMaps);
+		db.delete(source, null, idCriteria);
+	}
+}
@@ -0,0 +1,198 @@
+package nl.rrd.senseeact.dao.cluster;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+import nl.rrd.utils.exception.ParseException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An event that is published to the other nodes of a cluster through a {@link
+ * ClusterEventBus ClusterEventBus}. It tells other nodes that something
+ * changed, so they can update or invalidate their caches in memory. The event
+ * has a type and a map with string data that depends on the type. It should
+ * only contain identifiers, so other nodes can read the current state from
+ * the database.
+ *
+ * <p>Events can be stored in the database by {@link DatabaseClusterEventBus
+ * DatabaseClusterEventBus}. In the database they are stored in a table with
+ * name "_cluster_event" (see {@link ClusterEventTable
+ * ClusterEventTable}).</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class ClusterEvent extends BaseDatabaseObject {
+	@JsonIgnore
+	private String id;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String node;
+	@DatabaseField(value=DatabaseType.LONG)
+	private long seq;
+	@DatabaseField(value=DatabaseType.STRING)
+	private String type;
+	@DatabaseField(value=DatabaseType.LONG, index=true)
+	private long time;
+	@DatabaseField(value=DatabaseType.TEXT)
+	private String data;
+
+	private Map<String,String> dataMap = new LinkedHashMap<>();
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * Returns the ID of the node that published the event.
+	 *
+	 * @return the node ID
+	 */
+	public String getNode() {
+		return node;
+	}
+
+	/**
+	 * Sets the ID of the node that published the event.
+	 *
+	 * @param node the node ID
+	 */
+	public void setNode(String node) {
+		this.node = node;
+	}
+
+	/**
+	 * Returns the sequence number of the event. Each node numbers its
+	 * events from 1. It's set by {@link DatabaseClusterEventBus
+	 * DatabaseClusterEventBus}, so other nodes can read the events that they
+	 * haven't received yet without relying on the time.
+	 *
+	 * @return the sequence number
+	 */
+	public long getSeq() {
+		return seq;
+	}
+
+	/**
+	 * Sets the sequence number of the event. Each node numbers its events
+	 * from 1. It's set by {@link DatabaseClusterEventBus
+	 * DatabaseClusterEventBus}, so other nodes can read the events that they
+	 * haven't received yet without relying on the time.
+	 *
+	 * @param seq the sequence number
+	 */
+	public void setSeq(long seq) {
+		this.seq = seq;
+	}
+
+	/**
+	 * Returns the event type.
+	 *
+	 * @return the event type
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * Sets the event type.
+	 *
+	 * @param type the event type
+	 */
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	/**
+	 * Returns the time when the event was published, as a unix time in
+	 * milliseconds.
+	 *
+	 * @return the time when the event was published
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Sets the time when the event was published, as a unix time in
+	 * milliseconds.
+	 *
+	 * @param time the time when the event was published
+	 */
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * Returns the JSON code for the data. This method is used for the DAO.
+	 * Users can call {@link #getDataMap() getDataMap()}.
+	 *
+	 * @return the JSON code for the data
+	 */
+	public String getData() {
+		ObjectMapper mapper = new ObjectMapper();
+		try {
+			return mapper.writeValueAsString(dataMap);
+		} catch (JsonProcessingException ex) {
+			throw new RuntimeException("Can't generate JSON code: " +
+					ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Sets the JSON code for the data. This method is used for the DAO. Users
+	 * can call {@link #setDataMap(Map) setDataMap()}.
+	 *
+	 * @param data the JSON code for the data
+	 * @throws ParseException if the JSON code is invalid
+	 */
+	public void setData(String data) throws ParseException {
+		ObjectMapper mapper = new ObjectMapper();
+		try {
+			this.dataMap = mapper.readValue(data, new TypeReference<>() {});
+		} catch (JsonProcessingException ex) {
+			throw new ParseException("Can't parse JSON object: " +
+					ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * Returns the data. The keys depend on the event type.
+	 *
+	 * @return the data
+	 */
+	public Map<String,String> getDataMap() {
+		return dataMap;
+	}
+
+	/**
+	 * Sets the data. The keys depend on the event type.
+	 *
+	 * @param dataMap the data
+	 */
+	public void setDataMap(Map<String,String> dataMap) {
+		this.dataMap = dataMap;
+	}
+
+	/**
+	 * Returns the data value for the specified key. If the key does not
+	 * exist, this method returns null.
+	 *
+	 * @param key the key
+	 * @return the value or null
+	 */
+	public String get(String key) {
+		return dataMap.get(key);
+	}
+}
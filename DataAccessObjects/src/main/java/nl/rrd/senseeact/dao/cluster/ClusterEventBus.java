@@ -0,0 +1,176 @@
+package nl.rrd.senseeact.dao.cluster;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.utils.AppComponent;
+import nl.rrd.utils.AppComponents;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The event bus that keeps the caches in memory coherent between the nodes of
+ * a cluster. If a node changes something that other nodes may have cached,
+ * it should call {@link #publish(String, Map) publish()}. The event is then
+ * delivered to the listeners of that event type on all other nodes. An event
+ * is not delivered to the node that published it.
+ *
+ * <p>The bus can be configured as an {@link AppComponent AppComponent}. Its
+ * default implementation is {@link LocalClusterEventBus LocalClusterEventBus},
+ * which is for a single node and does not deliver any events. For a cluster
+ * you can configure {@link DatabaseClusterEventBus
+ * DatabaseClusterEventBus}.</p>
+ *
+ * <p>Events are delivered asynchronously and at most once. A node should
+ * therefore treat an event as a hint to reload or invalidate data from the
+ * database, rather than as the data itself.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@AppComponent
+public abstract class ClusterEventBus {
+	/**
+	 * Published when the structure of a table has changed, so other nodes
+	 * should clear their table metadata. The data contains keys "database"
+	 * and "table".
+	 */
+	public static final String TABLE_METADATA = "tableMetadata";
+
+	/**
+	 * Published when database actions have been added. The data contains keys
+	 * "database", "table" and "users". The users are a comma-separated list
+	 * of the user IDs of the actions. It's an empty string if the actions
+	 * did not have a user.
+	 */
+	public static final String DATABASE_ACTIONS = "databaseActions";
+
+	private final Object lock = new Object();
+	private String nodeId = UUID.randomUUID().toString().toLowerCase()
+			.replaceAll("-", "");
+	private Map<String,List<ClusterEventListener>> listeners = new HashMap<>();
+
+	/**
+	 * Returns a new instance of {@link LocalClusterEventBus
+	 * LocalClusterEventBus}. This method is called as a default when you get
+	 * an instance from {@link AppComponents AppComponents} and you haven't
+	 * configured a specific subclass.
+	 *
+	 * @return a new local cluster event bus
+	 */
+	public static ClusterEventBus getInstance() {
+		return new LocalClusterEventBus();
+	}
+
+	/**
+	 * Returns the ID of this node. It is generated randomly when the bus is
+	 * created.
+	 *
+	 * @return the ID of this node
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Adds a listener for events of the specified type.
+	 *
+	 * @param type the event type
+	 * @param listener the listener
+	 */
+	public void addListener(String type, ClusterEventListener listener) {
+		synchronized (lock) {
+			List<ClusterEventListener> ls = listeners.computeIfAbsent(type,
+					key -> new ArrayList<>());
+			ls.add(listener);
+		}
+	}
+
+	/**
+	 * Removes a listener for events of the specified type.
+	 *
+	 * @param type the event type
+	 * @param listener the listener
+	 */
+	public void removeListener(String type, ClusterEventListener listener) {
+		synchronized (lock) {
+			List<ClusterEventListener> ls = listeners.get(type);
+			if (ls == null)
+				return;
+			ls.remove(listener);
+			if (ls.isEmpty())
+				listeners.remove(type);
+		}
+	}
+
+	/**
+	 * Publishes an event to the other nodes of the cluster. This method does
+	 * not block on the network or database. If the event can't be delivered,
+	 * the error is logged.
+	 *
+	 * @param type the event type
+	 * @param data the event data
+	 */
+	public void publish(String type, Map<String,String> data) {
+		ClusterEvent event = new ClusterEvent();
+		event.setNode(nodeId);
+		event.setType(type);
+		event.setTime(System.currentTimeMillis());
+		event.setDataMap(new LinkedHashMap<>(data));
+		doPublish(event);
+	}
+
+	/**
+	 * Publishes the specified event to the other nodes of the cluster. This
+	 * method should not block on the network or database.
+	 *
+	 * @param event the event
+	 */
+	protected abstract void doPublish(ClusterEvent event);
+
+	/**
+	 * Delivers an event that was received from the cluster to the registered
+	 * listeners. Events that were published by this node are ignored. If a
+	 * listener throws an exception, it's logged and the other listeners are
+	 * still called.
+	 *
+	 * @param event the event
+	 */
+	protected void dispatch(ClusterEvent event) {
+		if (nodeId.equals(event.getNode()))
+			return;
+		List<ClusterEventListener> ls;
+		synchronized (lock) {
+			ls = listeners.get(event.getType());
+			if (ls == null)
+				return;
+			ls = new ArrayList<>(ls);
+		}
+		for (ClusterEventListener l : ls) {
+			try {
+				l.onClusterEvent(event);
+			} catch (RuntimeException ex) {
+				Logger logger = AppComponents.getLogger(Database.LOGTAG);
+				logger.error("Error in cluster event listener for event " +
+						event.getType() + ": " + ex.getMessage(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Starts the bus. Events are only published and delivered after this
+	 * method. The default implementation does nothing.
+	 */
+	public void start() {
+	}
+
+	/**
+	 * Closes the bus. After this method no more events are published or
+	 * delivered. The default implementation does nothing.
+	 */
+	public void close() {
+	}
+}
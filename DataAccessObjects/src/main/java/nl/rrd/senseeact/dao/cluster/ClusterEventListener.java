@@ -0,0 +1,20 @@
+package nl.rrd.senseeact.dao.cluster;
+
+/**
+ * This listener can be notified when another node of the cluster published a
+ * {@link ClusterEvent ClusterEvent}. Listeners can be registered for an event
+ * type at the {@link ClusterEventBus ClusterEventBus}.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public interface ClusterEventListener {
+
+	/**
+	 * Called when another node of the cluster published an event. This is
+	 * called on a thread of the event bus, so it should not block for a long
+	 * time.
+	 *
+	 * @param event the event
+	 */
+	void onClusterEvent(ClusterEvent event);
+}
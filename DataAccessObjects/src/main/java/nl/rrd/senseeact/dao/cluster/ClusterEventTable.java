@@ -0,0 +1,47 @@
+package nl.rrd.senseeact.dao.cluster;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseColumnDef;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.senseeact.dao.DatabaseType;
+import nl.rrd.utils.exception.DatabaseException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This table is used by {@link DatabaseClusterEventBus
+ * DatabaseClusterEventBus} to exchange {@link ClusterEvent ClusterEvent}s
+ * between the nodes of a cluster. In the database it's stored in a table with
+ * name "_cluster_event".
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class ClusterEventTable extends DatabaseTableDef<ClusterEvent> {
+	public static final String NAME = "_cluster_event";
+
+	private static final int VERSION = 1;
+
+	public ClusterEventTable() {
+		super(NAME, ClusterEvent.class, VERSION, false);
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		if (version == 0)
+			return upgradeTableV0(db, physTable);
+		else
+			return 1;
+	}
+
+	private int upgradeTableV0(Database db, String physTable)
+			throws DatabaseException {
+		db.addColumn(physTable, new DatabaseColumnDef("seq",
+				DatabaseType.LONG));
+		Map<String,Object> values = new LinkedHashMap<>();
+		values.put("seq", 0L);
+		db.update(physTable, null, null, values);
+		return 1;
+	}
+}
@@ -0,0 +1,331 @@
+package nl.rrd.senseeact.dao.cluster;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseFactory;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cluster event bus that exchanges events through a notification table in a
+ * database that is shared by all nodes. It runs a background thread that
+ * inserts published events into table "_cluster_event" (see {@link
+ * ClusterEventTable ClusterEventTable}) and polls the table for events from
+ * other nodes. Events that are older than {@link #EVENT_RETENTION
+ * EVENT_RETENTION} are deleted.
+ *
+ * <p>The thread is started with {@link #start() start()} and stopped with
+ * {@link #close() close()}. You can set the poll interval with {@link
+ * #setPollInterval(long) setPollInterval()}.</p>
+ *
+ * <p>Each node numbers its events with a sequence number (see {@link
+ * ClusterEvent#getSeq() ClusterEvent.getSeq()}). A node inserts its events
+ * from one thread, so they are committed in the order of their sequence
+ * numbers. For every other node the bus remembers the last sequence number
+ * that it received, and each poll reads the events after that. This doesn't
+ * depend on the clocks of the nodes. After the first poll, all events from
+ * nodes that were not seen before are received. At the first poll, the bus
+ * skips the events that were published before it was started. This is the
+ * only place where the time of an event is compared with the local clock,
+ * apart from deleting old events.</p>
+ *
+ * <p>If the events can't be inserted, they are published again after the
+ * database connection has been restored.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class DatabaseClusterEventBus extends ClusterEventBus {
+	public static final long DEFAULT_POLL_INTERVAL = 1000;
+	public static final long EVENT_RETENTION = 600000;
+
+	private static final long RECONNECT_DELAY = 10000;
+
+	private DatabaseFactory dbFactory;
+	private String dbName;
+	private long pollInterval = DEFAULT_POLL_INTERVAL;
+
+	private final Object lock = new Object();
+	private boolean running = false;
+	private Thread thread = null;
+	private List<ClusterEvent> pendingEvents = new ArrayList<>();
+	private long startTime;
+	private long nextSeq = 1;
+	private long lastPrune = 0;
+	// map from node ID to progress, null until the first poll
+	private Map<String,NodeProgress> nodeProgress = null;
+
+	/**
+	 * Constructs a new event bus. It will connect to the specified database
+	 * when you call {@link #start() start()}. The database will be created if
+	 * it doesn't exist.
+	 *
+	 * @param dbFactory the database factory
+	 * @param dbName the name of the database with the notification table
+	 */
+	public DatabaseClusterEventBus(DatabaseFactory dbFactory, String dbName) {
+		this.dbFactory = dbFactory;
+		this.dbName = dbName;
+	}
+
+	/**
+	 * Returns the interval in milliseconds at which the notification table is
+	 * polled. The default is {@link #DEFAULT_POLL_INTERVAL
+	 * DEFAULT_POLL_INTERVAL}.
+	 *
+	 * @return the poll interval in milliseconds
+	 */
+	public long getPollInterval() {
+		return pollInterval;
+	}
+
+	/**
+	 * Sets the interval in milliseconds at which the notification table is
+	 * polled. The default is {@link #DEFAULT_POLL_INTERVAL
+	 * DEFAULT_POLL_INTERVAL}.
+	 *
+	 * @param pollInterval the poll interval in milliseconds
+	 */
+	public void setPollInterval(long pollInterval) {
+		this.pollInterval = pollInterval;
+	}
+
+	/**
+	 * Starts the background thread that publishes and receives events.
+	 */
+	@Override
+	public void start() {
+		synchronized (lock) {
+			if (running)
+				return;
+			running = true;
+			startTime = System.currentTimeMillis();
+			thread = new Thread(this::runThread, getClass().getSimpleName());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	@Override
+	public void close() {
+		Thread thread;
+		synchronized (lock) {
+			if (!running)
+				return;
+			running = false;
+			thread = this.thread;
+			this.thread = null;
+			lock.notifyAll();
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException ex) {
+			throw new RuntimeException("Thread interrupted: " +
+					ex.getMessage(), ex);
+		}
+	}
+
+	@Override
+	protected void doPublish(ClusterEvent event) {
+		synchronized (lock) {
+			if (!running)
+				return;
+			pendingEvents.add(event);
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Runs the background thread. It keeps a database connection open and
+	 * reconnects after an error.
+	 */
+	private void runThread() {
+		Logger logger = AppComponents.getLogger(Database.LOGTAG);
+		while (isRunning()) {
+			DatabaseConnection conn = null;
+			try {
+				conn = dbFactory.connect();
+				conn.setSyncEnabled(false);
+				Database db = conn.initDatabase(dbName,
+						List.of(new ClusterEventTable()), false);
+				while (isRunning()) {
+					runIteration(db);
+					waitPollInterval();
+				}
+			} catch (IOException | DatabaseException ex) {
+				logger.error("Error in cluster event bus: " + ex.getMessage(),
+						ex);
+				waitReconnect();
+			} finally {
+				if (conn != null)
+					conn.close();
+			}
+		}
+	}
+
+	/**
+	 * Inserts the pending events, reads new events from other nodes and
+	 * deletes old events.
+	 *
+	 * @param db the database
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void runIteration(Database db) throws DatabaseException {
+		insertPendingEvents(db);
+		long now = System.currentTimeMillis();
+		boolean firstPoll = nodeProgress == null;
+		if (firstPoll)
+			nodeProgress = new HashMap<>();
+		readEvents(db, now, firstPoll);
+		Iterator<NodeProgress> it = nodeProgress.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().lastReceived <= now - 2 * EVENT_RETENTION)
+				it.remove();
+		}
+		if (now - lastPrune >= EVENT_RETENTION / 10) {
+			db.delete(new ClusterEventTable(), new DatabaseCriteria.LessThan(
+					"time", now - EVENT_RETENTION));
+			lastPrune = now;
+		}
+	}
+
+	/**
+	 * Inserts the pending events. Events that don't have a sequence number
+	 * yet, get the next sequence number. If the insert fails, the events are
+	 * put back at the start of the pending events, so they are inserted
+	 * again in the same order after the database connection has been
+	 * restored. An event that was inserted twice has the same sequence
+	 * number, so other nodes receive it only once.
+	 *
+	 * @param db the database
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void insertPendingEvents(Database db) throws DatabaseException {
+		List<ClusterEvent> events;
+		synchronized (lock) {
+			events = pendingEvents;
+			pendingEvents = new ArrayList<>();
+		}
+		if (events.isEmpty())
+			return;
+		long now = System.currentTimeMillis();
+		for (ClusterEvent event : events) {
+			if (event.getSeq() == 0)
+				event.setSeq(nextSeq++);
+			event.setTime(now);
+		}
+		try {
+			db.insert(ClusterEventTable.NAME, events);
+		} catch (DatabaseException ex) {
+			for (ClusterEvent event : events) {
+				event.setId(null);
+			}
+			synchronized (lock) {
+				events.addAll(pendingEvents);
+				pendingEvents = events;
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reads the events from other nodes that were not received yet, and
+	 * updates the node progress. At the first poll, the events that were
+	 * published before the bus was started, are only marked as received.
+	 *
+	 * @param db the database
+	 * @param now the current time
+	 * @param firstPoll true if this is the first poll, false otherwise
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void readEvents(Database db, long now, boolean firstPoll)
+			throws DatabaseException {
+		String ownNode = getNodeId();
+		List<DatabaseCriteria> orCriteria = new ArrayList<>();
+		List<DatabaseCriteria> newNodeCriteria = new ArrayList<>();
+		newNodeCriteria.add(new DatabaseCriteria.NotEqual("node", ownNode));
+		for (String node : nodeProgress.keySet()) {
+			orCriteria.add(new DatabaseCriteria.And(
+					new DatabaseCriteria.Equal("node", node),
+					new DatabaseCriteria.GreaterThan("seq",
+						nodeProgress.get(node).seq)));
+			newNodeCriteria.add(new DatabaseCriteria.NotEqual("node", node));
+		}
+		orCriteria.add(new DatabaseCriteria.And(newNodeCriteria.toArray(
+				new DatabaseCriteria[0])));
+		DatabaseCriteria criteria = new DatabaseCriteria.Or(
+				orCriteria.toArray(new DatabaseCriteria[0]));
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("seq", true)
+		};
+		List<ClusterEvent> received = db.select(new ClusterEventTable(),
+				criteria, 0, sort);
+		for (ClusterEvent event : received) {
+			NodeProgress progress = nodeProgress.computeIfAbsent(
+					event.getNode(), key -> new NodeProgress());
+			if (event.getSeq() <= progress.seq)
+				continue;
+			progress.seq = event.getSeq();
+			progress.lastReceived = now;
+			if (!firstPoll || event.getTime() >= startTime)
+				dispatch(event);
+		}
+	}
+
+	private boolean isRunning() {
+		synchronized (lock) {
+			return running;
+		}
+	}
+
+	/**
+	 * Waits until the poll interval has elapsed, an event is published or the
+	 * bus is closed.
+	 */
+	private void waitPollInterval() {
+		synchronized (lock) {
+			if (!running || !pendingEvents.isEmpty())
+				return;
+			try {
+				lock.wait(pollInterval);
+			} catch (InterruptedException ex) {
+				throw new RuntimeException("Thread interrupted: " +
+						ex.getMessage(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Waits before reconnecting to the database after an error, or until the
+	 * bus is closed.
+	 */
+	private void waitReconnect() {
+		long end = System.currentTimeMillis() + RECONNECT_DELAY;
+		synchronized (lock) {
+			long now = System.currentTimeMillis();
+			while (running && now < end) {
+				try {
+					lock.wait(end - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException("Thread interrupted: " +
+							ex.getMessage(), ex);
+				}
+				now = System.currentTimeMillis();
+			}
+		}
+	}
+
+	private static class NodeProgress {
+		private long seq = 0;
+		private long lastReceived;
+	}
+}
@@ -0,0 +1,13 @@
+package nl.rrd.senseeact.dao.cluster;
+
+/**
+ * Cluster event bus for a single node. It does not deliver any events,
+ * because there are no other nodes.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class LocalClusterEventBus extends ClusterEventBus {
+	@Override
+	protected void doPublish(ClusterEvent event) {
+	}
+}
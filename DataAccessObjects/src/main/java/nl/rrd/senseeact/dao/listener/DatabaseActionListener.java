@@ -25,4 +25,18 @@ public interface DatabaseActionListener {
 	 */
 	void onAddDatabaseActions(String database, String table,
 			List<DatabaseAction> actions);
+
+	/**
+	 * Called when another node in the cluster added database actions. The
+	 * actions themselves are not available, but they can be read from the
+	 * database. The default implementation does nothing.
+	 * 
+	 * @param database the database
+	 * @param table the table
+	 * @param users the users of the actions. This is an empty list if the
+	 * actions did not have a user.
+	 */
+	default void onAddRemoteDatabaseActions(String database, String table,
+			List<String> users) {
+	}
 }
@@ -2,11 +2,14 @@ package nl.rrd.senseeact.dao.listener;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseAction;
+import nl.rrd.senseeact.dao.cluster.ClusterEventBus;
+import nl.rrd.utils.AppComponents;
 
 /**
  * This repository contains all database listeners within the current process.
@@ -18,6 +21,13 @@ import nl.rrd.senseeact.dao.DatabaseAction;
  * <p>The class {@link Database Database} calls the notify methods. They should
  * not be called by clients.</p>
  * 
+ * <p>New database actions are also published as a {@link
+ * ClusterEventBus#DATABASE_ACTIONS DATABASE_ACTIONS} event on the {@link
+ * ClusterEventBus ClusterEventBus}. When another node in the cluster receives
+ * the event, it should call {@link
+ * #notifyRemoteDatabaseActions(String, String, List)
+ * notifyRemoteDatabaseActions()}.</p>
+ * 
  * @author Dennis Hofs (RRD)
  */
 public class DatabaseListenerRepository {
@@ -175,5 +185,35 @@ public class DatabaseListenerRepository {
 		for (DatabaseActionListener l : ls) {
 			l.onAddDatabaseActions(database, table, actions);
 		}
+		List<String> users = new ArrayList<>();
+		for (DatabaseAction action : actions) {
+			if (action.getUser() != null && !users.contains(action.getUser()))
+				users.add(action.getUser());
+		}
+		Map<String,String> data = new LinkedHashMap<>();
+		data.put("database", database);
+		data.put("table", table);
+		data.put("users", String.join(",", users));
+		ClusterEventBus bus = AppComponents.get(ClusterEventBus.class);
+		bus.publish(ClusterEventBus.DATABASE_ACTIONS, data);
+	}
+
+	/**
+	 * Called when another node in the cluster added database actions.
+	 * Registered listeners will be notified with {@link
+	 * DatabaseActionListener#onAddRemoteDatabaseActions(String, String, List)
+	 * onAddRemoteDatabaseActions()}.
+	 * 
+	 * @param database the database
+	 * @param table the table
+	 * @param users the users of the actions. This is an empty list if the
+	 * actions did not have a user.
+	 */
+	public void notifyRemoteDatabaseActions(String database, String table,
+			List<String> users) {
+		List<DatabaseActionListener> ls = getDatabaseActionListeners(database);
+		for (DatabaseActionListener l : ls) {
+			l.onAddRemoteDatabaseActions(database, table, users);
+		}
 	}
 }
@@ -2,13 +2,20 @@ package nl.rrd.senseeact.dao.mariadb;
 
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.senseeact.dao.DatabaseIndex;
+import nl.rrd.senseeact.dao.DatabaseMerge;
 import nl.rrd.senseeact.dao.DatabaseType;
+import nl.rrd.senseeact.dao.LocalTimeColumn;
 import nl.rrd.senseeact.dao.sql.SQLCursor;
 import nl.rrd.senseeact.dao.sql.SQLDatabase;
+import nl.rrd.senseeact.dao.sync.SyncWatermark;
+import nl.rrd.senseeact.dao.sync.SyncWatermarkTableDef;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of {@link SQLDatabase SQLDatabase} for MariaDB.
@@ -16,6 +23,8 @@ import java.util.List;
  * @author Dennis Hofs (RRD)
  */
 public class MariaDBDatabase extends SQLDatabase {
+	private static final int USER_PARTITIONS = 32;
+	static final String USER_PARTITION_RECORD_INDEX = "recordId";
 
 	/**
 	 * Constructs a new instance.
@@ -47,6 +56,7 @@ public class MariaDBDatabase extends SQLDatabase {
 			case TIME -> "TIME";
 			case DATETIME -> "DATETIME";
 			case ISOTIME -> "VARCHAR(255)";
+			case PACKED_ARRAY -> "LONGTEXT";
 		};
 	}
 
@@ -107,10 +117,135 @@ public class MariaDBDatabase extends SQLDatabase {
 		}
 	}
 
+	/**
+	 * Partitions the table by user. MariaDB requires that the primary key
+	 * includes the partitioning column, so the primary key is changed to
+	 * (user, _id). This also clusters the records of each user. A separate
+	 * index on _id is added for queries by record ID. Then the table is
+	 * partitioned by a hash of the user into a fixed number of partitions.
+	 *
+	 * @param table the (physical) table name
+	 * @throws DatabaseException if a database error occurs
+	 */
+	@Override
+	protected void partitionTableByUser(String table)
+			throws DatabaseException {
+		getQueryRunner().execSQL("ALTER TABLE " + escapeName(table) +
+				" DROP PRIMARY KEY, ADD PRIMARY KEY (" + escapeName("user") +
+				", " + escapeName("_id") + ")");
+		createIndex(table, new DatabaseIndex(USER_PARTITION_RECORD_INDEX,
+				"_id"));
+		getQueryRunner().execSQL("ALTER TABLE " + escapeName(table) +
+				" PARTITION BY KEY(" + escapeName("user") + ") PARTITIONS " +
+				USER_PARTITIONS);
+	}
+
+	@Override
+	protected boolean isUserPartitionIndex(DatabaseIndex index) {
+		return index.getName().equals(USER_PARTITION_RECORD_INDEX) &&
+				Arrays.equals(index.getFields(), new String[] { "_id" });
+	}
+
 	@Override
 	public void dropIndex(String table, String name) throws DatabaseException {
 		String sql = "DROP INDEX " + escapeName(table + "." + name) + " ON " +
 				escapeName(table);
 		getQueryRunner().execSQL(sql);
 	}
+
+	@Override
+	protected void doFillLocalTimeMillis(String physTable, String afterId,
+			String lastId) throws DatabaseException {
+		// the local time is interpreted as UTC, see LocalTimeColumn
+		String millis = "TIMESTAMPDIFF(MICROSECOND, '1970-01-01 00:00:00', " +
+				"STR_TO_DATE(`localTime`, '%Y-%m-%dT%H:%i:%s.%f')) DIV 1000";
+		StringBuilder sql = new StringBuilder("UPDATE `" + physTable +
+				"` SET `" + LocalTimeColumn.LOCAL_TIME_MILLIS + "` = " +
+				millis + " WHERE `" + LocalTimeColumn.LOCAL_TIME_MILLIS +
+				"` IS NULL AND `localTime` REGEXP " +
+				"'^[0-9]{4}-[0-9]{2}-[0-9]{2}T" +
+				"[0-9]{2}:[0-9]{2}:[0-9]{2}[.][0-9]{3}$'");
+		List<String> args = new ArrayList<>();
+		if (afterId != null) {
+			sql.append(" AND `_id` > ?");
+			args.add(afterId);
+		}
+		sql.append(" AND `_id` <= ?");
+		args.add(lastId);
+		getQueryRunner().execSQL(sql.toString(), args.toArray(new String[0]));
+	}
+
+	@Override
+	protected void doMergeSyncWatermark(SyncWatermark watermark)
+			throws DatabaseException {
+		// the order number is set before the time, so it is compared with
+		// the old time
+		String sql = "INSERT INTO `" + SyncWatermarkTableDef.NAME + "` " +
+				"(`_id`, `table`, `user`, `source`, `time`, `order`, " +
+				"`count`) VALUES (?, ?, ?, ?, ?, ?, ?) " +
+				"ON DUPLICATE KEY UPDATE " +
+				"`count` = `count` + VALUES(`count`), " +
+				"`order` = IF(VALUES(`time`) > `time` OR " +
+				"(VALUES(`time`) = `time` AND VALUES(`order`) > `order`), " +
+				"VALUES(`order`), `order`), " +
+				"`time` = GREATEST(`time`, VALUES(`time`))";
+		String[] args = new String[] {
+				watermark.getId(),
+				watermark.getTable(),
+				watermark.getUser(),
+				watermark.getSource(),
+				Long.toString(watermark.getTime()),
+				Integer.toString(watermark.getOrder()),
+				Integer.toString(watermark.getCount())
+		};
+		getQueryRunner().execSQL(sql, args);
+	}
+
+	@Override
+	protected void doMerge(String table, Map<String,?> values,
+			List<DatabaseMerge> merges) throws DatabaseException {
+		List<String> cols = new ArrayList<>();
+		List<String> args = new ArrayList<>();
+		for (String key : values.keySet()) {
+			cols.add(key.equals("id") ? "`_id`" : "`" + key + "`");
+			Object value = values.get(key);
+			args.add(value == null ? null : value.toString());
+		}
+		// MariaDB applies the assignments from left to right, so averages
+		// are set first, while their count fields have the existing value
+		List<String> updates = new ArrayList<>();
+		for (DatabaseMerge merge : merges) {
+			if (merge instanceof DatabaseMerge.Average average) {
+				String col = "`" + average.getField() + "`";
+				String count = "`" + average.getCountField() + "`";
+				updates.add(col + " = IF(" + count + " + VALUES(" + count +
+						") = 0, VALUES(" + col + "), (" + col + " * " + count +
+						" + VALUES(" + col + ") * VALUES(" + count + ")) / (" +
+						count + " + VALUES(" + count + ")))");
+			}
+		}
+		for (DatabaseMerge merge : merges) {
+			String col = "`" + merge.getField() + "`";
+			if (merge instanceof DatabaseMerge.Sum) {
+				updates.add(col + " = " + col + " + VALUES(" + col + ")");
+			} else if (merge instanceof DatabaseMerge.Min) {
+				updates.add(col + " = LEAST(" + col + ", VALUES(" + col +
+						"))");
+			} else if (merge instanceof DatabaseMerge.Max) {
+				updates.add(col + " = GREATEST(" + col + ", VALUES(" + col +
+						"))");
+			}
+		}
+		StringBuilder sql = new StringBuilder("INSERT INTO `" + table +
+				"` (" + String.join(", ", cols) + ") VALUES (" +
+				String.join(", ", Collections.nCopies(cols.size(), "?")) +
+				")");
+		if (updates.isEmpty()) {
+			sql.append(" ON DUPLICATE KEY UPDATE `_id` = `_id`");
+		} else {
+			sql.append(" ON DUPLICATE KEY UPDATE ");
+			sql.append(String.join(", ", updates));
+		}
+		getQueryRunner().execSQL(sql.toString(), args.toArray(new String[0]));
+	}
 }
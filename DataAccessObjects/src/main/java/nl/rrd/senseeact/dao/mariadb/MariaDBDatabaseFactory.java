@@ -2,6 +2,8 @@ package nl.rrd.senseeact.dao.mariadb;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
 
 import nl.rrd.senseeact.dao.DatabaseConnection;
 import nl.rrd.senseeact.dao.DatabaseFactory;
@@ -15,6 +17,8 @@ import nl.rrd.utils.AppComponent;
  * <li>port: port number of the MariaDB server (default: 3306)</li>
  * <li>user: the user name</li>
  * <li>password: the password</li>
+ * <li>replicas: read replicas of the MariaDB server (default: none). They
+ * should accept the same user and password.</li>
  * </ul></p>
  *
  * <p>You must set at least the user and password.</p>
@@ -27,6 +31,7 @@ public class MariaDBDatabaseFactory extends DatabaseFactory {
 	private int port = 3306;
 	private String user = null;
 	private String password = null;
+	private List<Replica> replicas = new ArrayList<>();
 
 	public MariaDBDatabaseFactory() {
 		try {
@@ -83,8 +88,85 @@ public class MariaDBDatabaseFactory extends DatabaseFactory {
 		this.password = password;
 	}
 
+	/**
+	 * Returns the read replicas of the MariaDB server. The default is an
+	 * empty list.
+	 *
+	 * @return the read replicas
+	 */
+	public List<Replica> getReplicas() {
+		return replicas;
+	}
+
+	/**
+	 * Sets the read replicas of the MariaDB server. The default is an empty
+	 * list.
+	 *
+	 * @param replicas the read replicas
+	 */
+	public void setReplicas(List<Replica> replicas) {
+		this.replicas = replicas;
+	}
+
+	/**
+	 * Adds a read replica of the MariaDB server.
+	 *
+	 * @param host the host name of the replica
+	 * @param port the port number of the replica
+	 */
+	public void addReplica(String host, int port) {
+		replicas.add(new Replica(host, port));
+	}
+
 	@Override
 	protected DatabaseConnection doConnect() throws IOException {
 		return new MariaDBDatabaseConnection(host, port, user, password);
 	}
+
+	@Override
+	public int getReplicaCount() {
+		return replicas.size();
+	}
+
+	@Override
+	protected DatabaseConnection doConnectReplica(int index)
+			throws IOException {
+		if (index < 0 || index >= replicas.size())
+			throw new IOException("Replica not found: " + index);
+		Replica replica = replicas.get(index);
+		return new MariaDBDatabaseConnection(replica.getHost(),
+				replica.getPort(), user, password);
+	}
+
+	/**
+	 * The host and port of a read replica of the MariaDB server.
+	 */
+	public static class Replica {
+		private String host;
+		private int port;
+
+		/**
+		 * Constructs a new replica.
+		 *
+		 * @param host the host name
+		 * @param port the port number
+		 */
+		public Replica(String host, int port) {
+			this.host = host;
+			this.port = port;
+		}
+
+		public String getHost() {
+			return host;
+		}
+
+		public int getPort() {
+			return port;
+		}
+
+		@Override
+		public String toString() {
+			return host + ":" + port;
+		}
+	}
 }
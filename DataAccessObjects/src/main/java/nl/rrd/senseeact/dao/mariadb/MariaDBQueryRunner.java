@@ -40,16 +40,8 @@ public class MariaDBQueryRunner implements SQLQueryRunner {
 		execSQL(sql, null);
 	}
 
-	/**
-	 * The same as {@link #execSQL(String) execSQL()}, but you may specify a
-	 * parameterized query.
-	 *
-	 * @param sql the SQL query (may contain ? placeholders)
-	 * @param args values to write as escaped strings for the ? placeholders
-	 * in the query (may be null)
-	 * @throws DatabaseException if a database error occurs
-	 */
-	private void execSQL(String sql, String[] args) throws DatabaseException {
+	@Override
+	public void execSQL(String sql, String[] args) throws DatabaseException {
 		long start = System.currentTimeMillis();
 		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 			if (args != null) {
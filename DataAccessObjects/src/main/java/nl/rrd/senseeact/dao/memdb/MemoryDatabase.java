@@ -2,6 +2,8 @@ package nl.rrd.senseeact.dao.memdb;
 
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.senseeact.dao.*;
+import nl.rrd.senseeact.dao.sync.SyncWatermark;
+import nl.rrd.senseeact.dao.sync.SyncWatermarkTableDef;
 
 import java.util.*;
 
@@ -55,6 +57,13 @@ public class MemoryDatabase extends Database {
 			throws DatabaseException {
 	}
 
+	@Override
+	public boolean hasColumn(String table, String column)
+			throws DatabaseException {
+		// records are stored as maps without a fixed set of columns
+		return true;
+	}
+
 	@Override
 	protected List<String> selectDbTables() throws DatabaseException {
 		synchronized (lock) {
@@ -163,4 +172,123 @@ public class MemoryDatabase extends Database {
 			return t.select(criteria, 0, null);
 		}
 	}
+
+	@Override
+	protected void doFillLocalTimeMillis(String physTable, String afterId,
+			String lastId) throws DatabaseException {
+		synchronized (lock) {
+			MemoryDatabaseTable t = tables.get(physTable);
+			if (t == null) {
+				throw new DatabaseException("Table \"" + physTable +
+						"\" not found");
+			}
+			List<DatabaseCriteria> andCriteria = new ArrayList<>();
+			andCriteria.add(new DatabaseCriteria.Equal(
+					LocalTimeColumn.LOCAL_TIME_MILLIS, (Long)null));
+			if (afterId != null) {
+				andCriteria.add(new DatabaseCriteria.GreaterThan("id",
+						afterId));
+			}
+			andCriteria.add(new DatabaseCriteria.LessEqual("id", lastId));
+			List<Map<String,?>> maps = t.select(new DatabaseCriteria.And(
+					andCriteria.toArray(new DatabaseCriteria[0])), 0, null);
+			for (Map<String,?> map : maps) {
+				Long millis = LocalTimeColumn.toMillis(map.get(
+						LocalTimeColumn.LOCAL_TIME));
+				if (millis == null)
+					continue;
+				Map<String,Object> values = new LinkedHashMap<>();
+				values.put(LocalTimeColumn.LOCAL_TIME_MILLIS, millis);
+				t.update(new DatabaseCriteria.Equal("id",
+						(String)map.get("id")), values);
+			}
+		}
+	}
+
+	@Override
+	protected void doMergeSyncWatermark(SyncWatermark watermark)
+			throws DatabaseException {
+		synchronized (lock) {
+			MemoryDatabaseTable t = tables.get(SyncWatermarkTableDef.NAME);
+			if (t == null) {
+				throw new DatabaseException("Table \"" +
+						SyncWatermarkTableDef.NAME + "\" not found");
+			}
+			DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+			DatabaseCriteria criteria = new DatabaseCriteria.Equal("id",
+					watermark.getId());
+			List<Map<String,?>> maps = t.select(criteria, 0, null);
+			if (maps.isEmpty()) {
+				t.insert(Collections.singletonList(mapper.objectToMap(
+						watermark, true)));
+				return;
+			}
+			SyncWatermark current = mapper.mapToObject(maps.get(0),
+					SyncWatermark.class, false);
+			if (!current.isAfter(watermark.getTime(), watermark.getOrder())) {
+				current.setTime(watermark.getTime());
+				current.setOrder(watermark.getOrder());
+			}
+			current.setCount(current.getCount() + watermark.getCount());
+			t.update(criteria, mapper.objectToMap(current, true));
+		}
+	}
+
+	@Override
+	protected void doMerge(String table, Map<String,?> values,
+			List<DatabaseMerge> merges) throws DatabaseException {
+		synchronized (lock) {
+			MemoryDatabaseTable t = tables.get(table);
+			if (t == null) {
+				throw new DatabaseException("Table \"" + table +
+						"\" not found");
+			}
+			DatabaseCriteria criteria = new DatabaseCriteria.Equal("id",
+					(String)values.get("id"));
+			List<Map<String,?>> maps = t.select(criteria, 0, null);
+			if (maps.isEmpty()) {
+				Map<String,Object> record = new LinkedHashMap<>(values);
+				t.insert(Collections.singletonList(record));
+				return;
+			}
+			Map<String,?> current = maps.get(0);
+			Map<String,Object> updates = new LinkedHashMap<>();
+			for (DatabaseMerge merge : merges) {
+				String field = merge.getField();
+				Number curr = (Number)current.get(field);
+				Number value = (Number)values.get(field);
+				if (merge instanceof DatabaseMerge.Average average) {
+					String countField = average.getCountField();
+					double count = ((Number)current.get(countField))
+							.doubleValue();
+					double valueCount = ((Number)values.get(countField))
+							.doubleValue();
+					if (count + valueCount == 0) {
+						updates.put(field, value);
+					} else {
+						updates.put(field, (curr.doubleValue() * count +
+								value.doubleValue() * valueCount) /
+								(count + valueCount));
+					}
+				} else if (merge instanceof DatabaseMerge.Sum) {
+					if (value instanceof Double || value instanceof Float) {
+						updates.put(field, curr.doubleValue() +
+								value.doubleValue());
+					} else if (value instanceof Long) {
+						updates.put(field, curr.longValue() + value.longValue());
+					} else {
+						updates.put(field, curr.intValue() + value.intValue());
+					}
+				} else if (merge instanceof DatabaseMerge.Min) {
+					if (value.doubleValue() < curr.doubleValue())
+						updates.put(field, value);
+				} else if (merge instanceof DatabaseMerge.Max) {
+					if (value.doubleValue() > curr.doubleValue())
+						updates.put(field, value);
+				}
+			}
+			if (!updates.isEmpty())
+				t.update(criteria, updates);
+		}
+	}
 }
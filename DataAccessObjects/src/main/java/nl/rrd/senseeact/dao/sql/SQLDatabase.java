@@ -237,11 +237,23 @@ public abstract class SQLDatabase extends Database {
 		alterTableColumns(table, columns, oldCols, oldIdxs, newCols, newIdxs);
 	}
 
+	@Override
+	public boolean hasColumn(String table, String column)
+			throws DatabaseException {
+		return queryRunner.getTableColumns(table).containsKey(column);
+	}
+
 	/**
 	 * Alters the set of columns of a table. This can be used to drop a column
 	 * or rename a column. The parameters oldCols and newCols should have the
 	 * same length and there should be a one-to-one mapping between them.
 	 *
+	 * <p>The table is recreated. If the current table is partitioned by user
+	 * (see {@link #isUserPartitionIndex(DatabaseIndex)
+	 * isUserPartitionIndex()}), then {@link #partitionTableByUser(String)
+	 * partitionTableByUser()} is called on the new table before the records
+	 * are copied.</p>
+	 *
 	 * @param table the table name
 	 * @param colTypes a map from current column names to column types (excluding
 	 * _id)
@@ -256,6 +268,14 @@ public abstract class SQLDatabase extends Database {
 			List<String> oldCols, List<DatabaseIndex> oldIdxs,
 			List<String> newCols, List<DatabaseIndex> newIdxs)
 			throws DatabaseException {
+		boolean partitioned = false;
+		List<DatabaseIndex> createIdxs = new ArrayList<>();
+		for (DatabaseIndex newIdx : newIdxs) {
+			if (isUserPartitionIndex(newIdx))
+				partitioned = true;
+			else
+				createIdxs.add(newIdx);
+		}
 		for (DatabaseIndex oldIdx : oldIdxs) {
 			dropIndex(table, oldIdx.getName());
 		}
@@ -274,7 +294,9 @@ public abstract class SQLDatabase extends Database {
 		}
 		createSql += ")";
 		queryRunner.execSQL(createSql);
-		for (DatabaseIndex newIdx : newIdxs) {
+		if (partitioned)
+			partitionTableByUser(table);
+		for (DatabaseIndex newIdx : createIdxs) {
 			createIndex(table, newIdx);
 		}
 		String copySql = "INSERT INTO " + escapeName(table) + " (" +
@@ -356,7 +378,7 @@ public abstract class SQLDatabase extends Database {
 		if (map.containsKey("id"))
 			id = (String)map.get("id");
 		if (id == null)
-			id = generateId();
+			id = getRecordIdGenerator().generateId();
 		content.put("_id", id);
 		for (Object keyObj : map.keySet()) {
 			if (keyObj.equals("id"))
@@ -368,15 +390,6 @@ public abstract class SQLDatabase extends Database {
 		return content;
 	}
 
-	/**
-	 * Generates a random UUID for a database record.
-	 *
-	 * @return the ID
-	 */
-	private String generateId() {
-		return UUID.randomUUID().toString().toLowerCase().replaceAll("-", "");
-	}
-
 	@Override
 	protected List<Map<String,?>> doSelectMaps(String table,
 			Class<? extends DatabaseObject> dataClass,
@@ -409,13 +422,20 @@ public abstract class SQLDatabase extends Database {
 				dataClass, criteria);
 		StringBuilder orderBy = null;
 		if (sort != null && sort.length > 0) {
+			boolean useLocalTimeMillis = columns.containsKey(
+					LocalTimeColumn.LOCAL_TIME_MILLIS) &&
+					isLocalTimeMillisComplete(table);
 			orderBy = new StringBuilder();
 			for (DatabaseSort sortItem : sort) {
 				if (orderBy.length() > 0)
 					orderBy.append(", ");
 				String sortCol = sortItem.getColumn();
-				if (sortCol.equals("id"))
+				if (sortCol.equals("id")) {
 					sortCol = "_id";
+				} else if (sortCol.equals(LocalTimeColumn.LOCAL_TIME) &&
+						useLocalTimeMillis) {
+					sortCol = LocalTimeColumn.LOCAL_TIME_MILLIS;
+				}
 				orderBy.append(getCompareColumn(sortCol, columns.get(sortCol)));
 				orderBy.append(" ");
 				orderBy.append(sortItem.isAscending() ? "ASC" : "DESC");
@@ -538,6 +558,8 @@ public abstract class SQLDatabase extends Database {
 			selCols.add("utcTime");
 		if (tableCols.containsKey("localTime"))
 			selCols.add("localTime");
+		if (tableCols.containsKey(LocalTimeColumn.LOCAL_TIME_MILLIS))
+			selCols.add(LocalTimeColumn.LOCAL_TIME_MILLIS);
 		String[] selColArray = selCols.toArray(new String[0]);
 		List<Map<String,?>> records = new ArrayList<>();
 		SQLCursor cursor = queryRunner.query(table, selColArray,
@@ -563,6 +585,12 @@ public abstract class SQLDatabase extends Database {
 							selCols.indexOf("localTime") + 1,
 							tableCols.get("localTime")));
 				}
+				String millisCol = LocalTimeColumn.LOCAL_TIME_MILLIS;
+				if (tableCols.containsKey(millisCol)) {
+					record.put(millisCol, cursor.getValue(
+							selCols.indexOf(millisCol) + 1,
+							tableCols.get(millisCol)));
+				}
 				records.add(record);
 				hasMore = cursor.moveToNext();
 			}
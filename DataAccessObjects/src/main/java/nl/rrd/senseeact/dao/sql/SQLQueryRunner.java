@@ -30,6 +30,17 @@ public interface SQLQueryRunner {
 	 */
 	void execSQL(String sql) throws DatabaseException;
 
+	/**
+	 * The same as {@link #execSQL(String) execSQL()}, but you may specify a
+	 * parameterized query.
+	 *
+	 * @param sql the SQL query (may contain ? placeholders)
+	 * @param args values to write as escaped strings for the ? placeholders
+	 * in the query (may be null)
+	 * @throws DatabaseException if a database error occurs
+	 */
+	void execSQL(String sql, String[] args) throws DatabaseException;
+
 	/**
 	 * Runs a raw SQL select query. Normally you should use a more specific
 	 * method such as {@link
@@ -5,6 +5,7 @@ import java.util.List;
 import java.util.Map;
 
 import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.LocalTimeColumn;
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.senseeact.dao.DatabaseObject;
 
@@ -17,8 +18,11 @@ import nl.rrd.senseeact.dao.DatabaseObject;
  * @author Dennis Hofs (RRD)
  */
 public class SQLWhereBuilder {
+	private static final String LIKE_ESCAPE = "!";
+
 	private SQLDatabase database;
 	private Map<String,String> tableColumns;
+	private boolean useLocalTimeMillis = false;
 	private String where = null;
 	private String[] args = null;
 
@@ -37,6 +41,9 @@ public class SQLWhereBuilder {
 			return;
 		this.database = database;
 		tableColumns = database.getTableColumns(table, dataClass);
+		useLocalTimeMillis = tableColumns.containsKey(
+				LocalTimeColumn.LOCAL_TIME_MILLIS) &&
+				database.isLocalTimeMillisComplete(table);
 		StringBuffer where = new StringBuffer();
 		List<String> args = new ArrayList<>();
 		buildCriteria(criteria, where, args);
@@ -90,6 +97,11 @@ public class SQLWhereBuilder {
 		} else if (criteria instanceof DatabaseCriteria.GreaterEqual) {
 			buildGreaterEqual((DatabaseCriteria.GreaterEqual)criteria, where,
 					args);
+		} else if (criteria instanceof DatabaseCriteria.StartsWith) {
+			buildStartsWith((DatabaseCriteria.StartsWith)criteria, where,
+					args);
+		} else if (criteria instanceof DatabaseCriteria.EndsWith) {
+			buildEndsWith((DatabaseCriteria.EndsWith)criteria, where, args);
 		} else if (criteria instanceof DatabaseCriteria.And) {
 			buildAnd((DatabaseCriteria.And)criteria, where, args);
 		} else if (criteria instanceof DatabaseCriteria.Or) {
@@ -184,7 +196,11 @@ public class SQLWhereBuilder {
 	}
 
 	/**
-	 * Appends the where content for a binary comparison operator.
+	 * Appends the where content for a binary comparison operator. If the
+	 * column is "localTime" and the table has the shadow column
+	 * "localTimeMillis" (see {@link LocalTimeColumn LocalTimeColumn}), which
+	 * has been filled in for all records, the comparison is done on the
+	 * shadow column.
 	 *
 	 * @param column the column name
 	 * @param op the operator
@@ -195,16 +211,16 @@ public class SQLWhereBuilder {
 	 */
 	private void buildComparison(String column, String op, Object value,
 			StringBuffer where, List<String> args) throws DatabaseException {
-		if (column.equals("id")) {
-			where.append(database.escapeName("_id"));
-		} else {
-			if (!tableColumns.containsKey(column)) {
-				throw new DatabaseException(String.format(
-						"Column \"%s\" not found", column));
+		if (column.equals(LocalTimeColumn.LOCAL_TIME) && useLocalTimeMillis) {
+			// compare the numeric shadow column if the value is a valid
+			// local time, which has the same order as the string
+			Long millis = LocalTimeColumn.toMillis(value);
+			if (millis != null) {
+				column = LocalTimeColumn.LOCAL_TIME_MILLIS;
+				value = millis;
 			}
-			where.append(database.getCompareColumn(column,
-					tableColumns.get(column)));
 		}
+		appendCompareColumn(column, where);
 		where.append(" ");
 		where.append(op);
 		if (value == null) {
@@ -215,6 +231,88 @@ public class SQLWhereBuilder {
 		}
 	}
 
+	/**
+	 * Appends the where content for the "starts with" operator. This is a
+	 * LIKE expression with the escaped prefix followed by a % wildcard.
+	 *
+	 * @param criteria the criteria
+	 * @param where the where string
+	 * @param args the argument list
+	 * @throws DatabaseException if the column in the criteria does not exist
+	 */
+	private void buildStartsWith(DatabaseCriteria.StartsWith criteria,
+			StringBuffer where, List<String> args) throws DatabaseException {
+		buildLike(criteria.getColumn(), escapeLike(criteria.getPrefix()) + "%",
+				where, args);
+	}
+
+	/**
+	 * Appends the where content for the "ends with" operator. This is a LIKE
+	 * expression with a % wildcard followed by the escaped suffix.
+	 *
+	 * @param criteria the criteria
+	 * @param where the where string
+	 * @param args the argument list
+	 * @throws DatabaseException if the column in the criteria does not exist
+	 */
+	private void buildEndsWith(DatabaseCriteria.EndsWith criteria,
+			StringBuffer where, List<String> args) throws DatabaseException {
+		buildLike(criteria.getColumn(), "%" + escapeLike(criteria.getSuffix()),
+				where, args);
+	}
+
+	/**
+	 * Appends a LIKE expression. The pattern should already be escaped with
+	 * {@link #escapeLike(String) escapeLike()}, except for the wildcards.
+	 *
+	 * @param column the column name
+	 * @param pattern the LIKE pattern
+	 * @param where the where string
+	 * @param args the argument list
+	 * @throws DatabaseException if the column does not exist
+	 */
+	private void buildLike(String column, String pattern, StringBuffer where,
+			List<String> args) throws DatabaseException {
+		appendCompareColumn(column, where);
+		where.append(" LIKE ? ESCAPE '" + LIKE_ESCAPE + "'");
+		args.add(pattern);
+	}
+
+	/**
+	 * Escapes the wildcards in the specified string, so it can be used in a
+	 * LIKE pattern with escape character {@link #LIKE_ESCAPE LIKE_ESCAPE}.
+	 *
+	 * @param s the string
+	 * @return the escaped string
+	 */
+	private String escapeLike(String s) {
+		return s.replace(LIKE_ESCAPE, LIKE_ESCAPE + LIKE_ESCAPE)
+				.replace("%", LIKE_ESCAPE + "%")
+				.replace("_", LIKE_ESCAPE + "_");
+	}
+
+	/**
+	 * Appends the specification of a column in a comparison. The column "id"
+	 * is mapped to the primary key "_id".
+	 *
+	 * @param column the column name
+	 * @param where the where string
+	 * @throws DatabaseException if the column does not exist
+	 */
+	private void appendCompareColumn(String column, StringBuffer where)
+			throws DatabaseException {
+		if (column.equals("id")) {
+			where.append(database.escapeName("_id"));
+		} else {
+			if (!tableColumns.containsKey(column)) {
+				throw new DatabaseException(String.format(
+						"Column \"%s\" not found", column));
+			}
+			where.append(database.getCompareColumn(column,
+					tableColumns.get(column)));
+		}
+	}
+
 	/**
 	 * Appends the where content for the "and" operator.
 	 *
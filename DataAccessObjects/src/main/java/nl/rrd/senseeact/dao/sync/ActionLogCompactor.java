@@ -0,0 +1,525 @@
+package nl.rrd.senseeact.dao.sync;
+
+import nl.rrd.senseeact.dao.*;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+
+import java.util.*;
+
+/**
+ * This class compacts the database action tables of a database. Every write
+ * to a table adds a {@link DatabaseAction DatabaseAction} to an action table,
+ * so without compaction the action tables keep growing.
+ *
+ * <p>For each action table, the compactor determines a horizon. This is the
+ * earliest of the following:</p>
+ *
+ * <p><ul>
+ * <li>The current time minus the retention of the table. Actions within the
+ * retention period are never compacted. The retention can be set per table.
+ * A negative retention disables compaction for a table.</li>
+ * <li>The progress of each known remote consumer of the table (see {@link
+ * SyncConsumerProgress SyncConsumerProgress}). Consumers that have not
+ * reported their progress during the consumer timeout are ignored.</li>
+ * </ul></p>
+ *
+ * <p>Below the horizon the history of each record is compacted. If the last
+ * action on a record is a delete, then the earlier actions are removed and
+ * the delete action is kept as a tombstone. A consumer that is behind the
+ * horizon, for example because it exceeded the consumer timeout or because
+ * it was not known, still receives the delete. A consumer that never had the
+ * record skips it. Otherwise the actions are merged into the last action
+ * with the {@link DatabaseActionMerger DatabaseActionMerger}. The merged
+ * action keeps its time and order, so the sync progress of consumers remains
+ * valid.</p>
+ *
+ * <p>The counts in the {@link SyncWatermark SyncWatermark}s are reduced by
+ * the number of removed actions.</p>
+ *
+ * <p>Range deletes ({@link DatabaseAction.Action#DELETE_RANGE
+ * DELETE_RANGE}) are not associated with a record. They are kept, so new
+ * consumers still delete the records that are inserted by earlier
+ * actions.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class ActionLogCompactor {
+	private static final int SCAN_BATCH_SIZE = 1000;
+	private static final int RECORD_BATCH_SIZE = 100;
+
+	private long defaultRetention = 30L * 24 * 3600000;
+	private Map<String,Long> tableRetentions = new HashMap<>();
+	private long consumerTimeout = 90L * 24 * 3600000;
+
+	/**
+	 * Returns the default retention in milliseconds. Actions within this
+	 * period are not compacted. A negative value means that tables are not
+	 * compacted, unless a table retention is set. The default is 30 days.
+	 *
+	 * @return the default retention in milliseconds
+	 */
+	public long getDefaultRetention() {
+		return defaultRetention;
+	}
+
+	/**
+	 * Sets the default retention in milliseconds. Actions within this
+	 * period are not compacted. A negative value means that tables are not
+	 * compacted, unless a table retention is set. The default is 30 days.
+	 *
+	 * @param defaultRetention the default retention in milliseconds
+	 */
+	public void setDefaultRetention(long defaultRetention) {
+		this.defaultRetention = defaultRetention;
+	}
+
+	/**
+	 * Returns the retention for specific tables. This is a map from table
+	 * name to retention in milliseconds. A negative value means that the
+	 * table is not compacted.
+	 *
+	 * @return the table retentions
+	 */
+	public Map<String,Long> getTableRetentions() {
+		return tableRetentions;
+	}
+
+	/**
+	 * Sets the retention for specific tables. This is a map from table name
+	 * to retention in milliseconds. A negative value means that the table is
+	 * not compacted.
+	 *
+	 * @param tableRetentions the table retentions
+	 */
+	public void setTableRetentions(Map<String,Long> tableRetentions) {
+		this.tableRetentions = tableRetentions;
+	}
+
+	/**
+	 * Returns the consumer timeout in milliseconds. A consumer that has not
+	 * reported its progress during this time, is no longer taken into
+	 * account. The default is 90 days.
+	 *
+	 * @return the consumer timeout in milliseconds
+	 */
+	public long getConsumerTimeout() {
+		return consumerTimeout;
+	}
+
+	/**
+	 * Sets the consumer timeout in milliseconds. A consumer that has not
+	 * reported its progress during this time, is no longer taken into
+	 * account. The default is 90 days.
+	 *
+	 * @param consumerTimeout the consumer timeout in milliseconds
+	 */
+	public void setConsumerTimeout(long consumerTimeout) {
+		this.consumerTimeout = consumerTimeout;
+	}
+
+	/**
+	 * Compacts all action tables in the specified database.
+	 *
+	 * @param database the database
+	 * @return the statistics about the compaction
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public Result compact(Database database) throws DatabaseException {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		long now = System.currentTimeMillis();
+		Result result = new Result();
+		List<String> physTables = DatabaseCache.getInstance()
+				.getPhysicalTables(database);
+		List<UserTableKey> keys = database.select(new UserTableKeyTable(),
+				null, 0, null);
+		for (UserTableKey key : keys) {
+			DatabaseActionTable actionTable = new DatabaseActionTable(key);
+			if (!physTables.contains(actionTable.getName()))
+				continue;
+			Long retention = tableRetentions.get(key.getTable());
+			if (retention == null)
+				retention = defaultRetention;
+			if (retention < 0)
+				continue;
+			SyncConsumerProgress horizon = getHorizon(database, key,
+					now - retention, now);
+			if (horizon.getTime() <= 0)
+				continue;
+			Result tableResult = compactActionTable(database, actionTable,
+					horizon);
+			if (tableResult.deletedRows > 0) {
+				logger.info(String.format(
+						"Compacted action table %s (%s, %s): merged %d records, removed %d deleted records, reclaimed %d rows, %d bytes",
+						actionTable.getName(), key.getTable(), key.getUser(),
+						tableResult.mergedRecords, tableResult.removedRecords,
+						tableResult.deletedRows, tableResult.reclaimedBytes));
+			}
+			result.add(tableResult);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the horizon for the specified action table. Actions at or
+	 * before the horizon can be compacted.
+	 *
+	 * @param database the database
+	 * @param key the key of the action table
+	 * @param retentionTime the current time minus the retention
+	 * @param now the current time
+	 * @return the horizon
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private SyncConsumerProgress getHorizon(Database database,
+			UserTableKey key, long retentionTime, long now)
+			throws DatabaseException {
+		SyncConsumerProgress horizon = new SyncConsumerProgress();
+		horizon.setTime(retentionTime);
+		horizon.setOrder(Integer.MAX_VALUE);
+		DatabaseCriteria criteria;
+		if (key.getUser() == null) {
+			criteria = new DatabaseCriteria.Equal("table", key.getTable());
+		} else {
+			criteria = new DatabaseCriteria.And(
+					new DatabaseCriteria.Equal("table", key.getTable()),
+					new DatabaseCriteria.Equal("user", key.getUser())
+			);
+		}
+		criteria = new DatabaseCriteria.And(
+				criteria,
+				new DatabaseCriteria.GreaterEqual("updated",
+						now - consumerTimeout)
+		);
+		List<SyncConsumerProgress> consumers = database.select(
+				new SyncConsumerProgressTableDef(), criteria, 0, null);
+		for (SyncConsumerProgress consumer : consumers) {
+			if (consumer.getTime() < horizon.getTime() ||
+					(consumer.getTime() == horizon.getTime() &&
+					consumer.getOrder() < horizon.getOrder())) {
+				horizon.setTime(consumer.getTime());
+				horizon.setOrder(consumer.getOrder());
+			}
+		}
+		return horizon;
+	}
+
+	/**
+	 * Compacts the specified action table up to the specified horizon. It
+	 * first scans the actions to find the records that can be compacted.
+	 * Then it compacts those records in batches. Each batch is run while
+	 * holding the table lock that is also used when actions are written.
+	 *
+	 * @param database the database
+	 * @param actionTable the action table
+	 * @param horizon the horizon
+	 * @return the statistics about the compaction
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private Result compactActionTable(Database database,
+			DatabaseActionTable actionTable, SyncConsumerProgress horizon)
+			throws DatabaseException {
+		Map<String,RecordHistory> histories = scanRecordHistories(database,
+				actionTable, horizon);
+		List<String> recordIds = new ArrayList<>();
+		for (String recordId : histories.keySet()) {
+			RecordHistory history = histories.get(recordId);
+			if (history.count > 1)
+				recordIds.add(recordId);
+		}
+		Result result = new Result();
+		String table = actionTable.getUserTableKey().getTable();
+		Object tableLock = DatabaseLockCollection.getLock(database.getName(),
+				table);
+		for (int i = 0; i < recordIds.size(); i += RECORD_BATCH_SIZE) {
+			List<String> batch = recordIds.subList(i, Math.min(
+					i + RECORD_BATCH_SIZE, recordIds.size()));
+			synchronized (tableLock) {
+				compactRecords(database, actionTable, horizon, batch, result);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Scans the actions at or before the specified horizon and returns the
+	 * history of each record.
+	 *
+	 * @param database the database
+	 * @param actionTable the action table
+	 * @param horizon the horizon
+	 * @return a map from record ID to history
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private Map<String,RecordHistory> scanRecordHistories(Database database,
+			DatabaseActionTable actionTable, SyncConsumerProgress horizon)
+			throws DatabaseException {
+		Map<String,RecordHistory> histories = new LinkedHashMap<>();
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("time", true),
+				new DatabaseSort("order", true)
+		};
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		DatabaseAction last = null;
+		while (true) {
+			DatabaseCriteria criteria = getHorizonCriteria(horizon);
+			if (last != null) {
+				criteria = new DatabaseCriteria.And(
+					criteria,
+					new DatabaseCriteria.Or(
+						new DatabaseCriteria.GreaterThan("time",
+								last.getTime()),
+						new DatabaseCriteria.And(
+							new DatabaseCriteria.Equal("time", last.getTime()),
+							new DatabaseCriteria.GreaterThan("order",
+									last.getOrder())
+						)
+					)
+				);
+			}
+			List<Map<String,?>> maps = database.selectMaps(
+					actionTable.getName(), DatabaseAction.class, criteria,
+					SCAN_BATCH_SIZE, sort);
+			for (Map<String,?> map : maps) {
+				last = mapper.mapToObject(map, DatabaseAction.class, false);
+				if (last.getRecordId() == null)
+					continue;
+				RecordHistory history = histories.computeIfAbsent(
+						last.getRecordId(), key -> new RecordHistory());
+				history.count++;
+			}
+			if (maps.size() < SCAN_BATCH_SIZE)
+				return histories;
+		}
+	}
+
+	/**
+	 * Compacts the actions at or before the specified horizon for the
+	 * specified records. This method should be called while holding the
+	 * table lock.
+	 *
+	 * @param database the database
+	 * @param actionTable the action table
+	 * @param horizon the horizon
+	 * @param recordIds the record IDs
+	 * @param result the result to which the statistics should be added
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void compactRecords(Database database,
+			DatabaseActionTable actionTable, SyncConsumerProgress horizon,
+			List<String> recordIds, Result result) throws DatabaseException {
+		DatabaseCriteria[] recordCriteria =
+				new DatabaseCriteria[recordIds.size()];
+		for (int i = 0; i < recordCriteria.length; i++) {
+			recordCriteria[i] = new DatabaseCriteria.Equal("recordId",
+					recordIds.get(i));
+		}
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				getHorizonCriteria(horizon),
+				new DatabaseCriteria.Or(recordCriteria)
+		);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("time", true),
+				new DatabaseSort("order", true)
+		};
+		List<DatabaseAction> actions = database.select(actionTable.getName(),
+				DatabaseAction.class, criteria, 0, sort);
+		Map<String,List<DatabaseAction>> recordActions =
+				new LinkedHashMap<>();
+		for (DatabaseAction action : actions) {
+			recordActions.computeIfAbsent(action.getRecordId(),
+					key -> new ArrayList<>()).add(action);
+		}
+		List<String> deleteIds = new ArrayList<>();
+		Map<String,Integer> deleteSourceCounts = new HashMap<>();
+		DatabaseActionMerger merger = new DatabaseActionMerger();
+		for (List<DatabaseAction> history : recordActions.values()) {
+			if (history.size() < 2)
+				continue;
+			DatabaseAction lastAction = history.get(history.size() - 1);
+			if (lastAction.getAction() == DatabaseAction.Action.DELETE) {
+				// keep the delete as a tombstone
+				for (DatabaseAction action : history) {
+					if (action == lastAction)
+						continue;
+					deleteIds.add(action.getId());
+					deleteSourceCounts.merge(action.getSource(), 1,
+							Integer::sum);
+					result.reclaimedBytes += getDataSize(action);
+				}
+				result.removedRecords++;
+				continue;
+			}
+			long prevSize = 0;
+			for (DatabaseAction action : history) {
+				prevSize += getDataSize(action);
+			}
+			DatabaseAction merged;
+			try {
+				merged = merger.mergeActions(history).get(0);
+			} catch (MergeException ex) {
+				Logger logger = AppComponents.getLogger(
+						getClass().getSimpleName());
+				logger.error("Can't merge actions on record " +
+						lastAction.getRecordId() + " in action table " +
+						actionTable.getName() + ": " + ex.getMessage());
+				continue;
+			}
+			database.update(actionTable.getName(), merged);
+			for (DatabaseAction action : history) {
+				if (!action.getId().equals(merged.getId())) {
+					deleteIds.add(action.getId());
+					deleteSourceCounts.merge(action.getSource(), 1,
+							Integer::sum);
+				}
+			}
+			result.reclaimedBytes += prevSize - getDataSize(merged);
+			result.mergedRecords++;
+		}
+		for (int i = 0; i < deleteIds.size(); i += RECORD_BATCH_SIZE) {
+			List<String> batch = deleteIds.subList(i, Math.min(
+					i + RECORD_BATCH_SIZE, deleteIds.size()));
+			DatabaseCriteria[] idCriteria = new DatabaseCriteria[batch.size()];
+			for (int j = 0; j < idCriteria.length; j++) {
+				idCriteria[j] = new DatabaseCriteria.Equal("id", batch.get(j));
+			}
+			database.delete(actionTable.getName(), DatabaseAction.class,
+					new DatabaseCriteria.Or(idCriteria));
+		}
+		result.deletedRows += deleteIds.size();
+		reduceWatermarkCounts(database, actionTable.getUserTableKey(),
+				deleteSourceCounts);
+	}
+
+	/**
+	 * Reduces the counts in the {@link SyncWatermark SyncWatermark}s of the
+	 * specified table and user after actions have been removed. This method
+	 * should be called while holding the table lock.
+	 *
+	 * @param database the database
+	 * @param key the key of the action table
+	 * @param sourceCounts a map from source to the number of removed actions
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void reduceWatermarkCounts(Database database, UserTableKey key,
+			Map<String,Integer> sourceCounts) throws DatabaseException {
+		if (sourceCounts.isEmpty())
+			return;
+		DatabaseCriteria criteria;
+		if (key.getUser() == null) {
+			criteria = new DatabaseCriteria.Equal("table", key.getTable());
+		} else {
+			criteria = new DatabaseCriteria.And(
+					new DatabaseCriteria.Equal("table", key.getTable()),
+					new DatabaseCriteria.Equal("user", key.getUser())
+			);
+		}
+		List<SyncWatermark> watermarks = database.select(
+				new SyncWatermarkTableDef(), criteria, 0, null);
+		for (SyncWatermark watermark : watermarks) {
+			Integer removed = sourceCounts.get(watermark.getSource());
+			if (removed == null)
+				continue;
+			watermark.setCount(Math.max(0, watermark.getCount() - removed));
+			database.update(SyncWatermarkTableDef.NAME, watermark);
+		}
+	}
+
+	/**
+	 * Returns the criteria to select actions at or before the specified
+	 * horizon.
+	 *
+	 * @param horizon the horizon
+	 * @return the criteria
+	 */
+	private DatabaseCriteria getHorizonCriteria(
+			SyncConsumerProgress horizon) {
+		return new DatabaseCriteria.Or(
+			new DatabaseCriteria.LessThan("time", horizon.getTime()),
+			new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("time", horizon.getTime()),
+				new DatabaseCriteria.LessEqual("order", horizon.getOrder())
+			)
+		);
+	}
+
+	/**
+	 * Returns the size of the data of the specified action. This is the
+	 * length of the JSON data. It is used as an estimation of the number of
+	 * bytes that are reclaimed.
+	 *
+	 * @param action the action
+	 * @return the size in bytes
+	 */
+	private long getDataSize(DatabaseAction action) {
+		if (action.getJsonData() == null)
+			return 0;
+		return action.getJsonData().length();
+	}
+
+	private static class RecordHistory {
+		public int count = 0;
+	}
+
+	/**
+	 * Statistics about a compaction.
+	 */
+	public static class Result {
+		private int mergedRecords = 0;
+		private int removedRecords = 0;
+		private int deletedRows = 0;
+		private long reclaimedBytes = 0;
+
+		/**
+		 * Returns the number of records whose actions were merged into one
+		 * action.
+		 *
+		 * @return the number of merged records
+		 */
+		public int getMergedRecords() {
+			return mergedRecords;
+		}
+
+		/**
+		 * Returns the number of deleted records whose actions were reduced to
+		 * the delete action.
+		 *
+		 * @return the number of removed records
+		 */
+		public int getRemovedRecords() {
+			return removedRecords;
+		}
+
+		/**
+		 * Returns the number of rows that were deleted from the action
+		 * tables.
+		 *
+		 * @return the number of deleted rows
+		 */
+		public int getDeletedRows() {
+			return deletedRows;
+		}
+
+		/**
+		 * Returns an estimation of the number of bytes that were reclaimed.
+		 * This is based on the length of the JSON data of the actions.
+		 *
+		 * @return the number of reclaimed bytes
+		 */
+		public long getReclaimedBytes() {
+			return reclaimedBytes;
+		}
+
+		/**
+		 * Adds the statistics of another result to this result.
+		 *
+		 * @param other the other result
+		 */
+		public void add(Result other) {
+			mergedRecords += other.mergedRecords;
+			removedRecords += other.removedRecords;
+			deletedRows += other.deletedRows;
+			reclaimedBytes += other.reclaimedBytes;
+		}
+	}
+}
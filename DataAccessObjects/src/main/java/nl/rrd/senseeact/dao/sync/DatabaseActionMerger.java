@@ -4,10 +4,13 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.ParseException;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseAction;
 import nl.rrd.senseeact.dao.DatabaseAction.Action;
 import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseCriteriaMapper;
+import nl.rrd.senseeact.dao.DatabaseCriteriaMatcher;
 
 import java.io.IOException;
 import java.util.*;
@@ -16,6 +19,11 @@ import java.util.*;
  * This class can merge a list of database actions. The returned list will
  * have only one action per record. It takes the last action of each record
  * and merges any previous actions into it.
+ *
+ * <p>Actions {@link Action#DELETE_RANGE DELETE_RANGE} are not associated
+ * with a record. They separate the list into segments that are merged
+ * separately, so no action is moved across a range delete. Insert actions
+ * before a range delete that are certainly deleted by it, are removed.</p>
  * 
  * @author Dennis Hofs (RRD)
  */
@@ -30,6 +38,30 @@ public class DatabaseActionMerger {
 	 */
 	public List<DatabaseAction> mergeActions(List<DatabaseAction> actions)
 			throws MergeException {
+		List<DatabaseAction> result = new ArrayList<>();
+		int start = 0;
+		for (int i = 0; i < actions.size(); i++) {
+			DatabaseAction action = actions.get(i);
+			if (action.getAction() != Action.DELETE_RANGE)
+				continue;
+			result.addAll(mergeSegment(actions.subList(start, i)));
+			removeRangeInserts(result, action);
+			result.add(action);
+			start = i + 1;
+		}
+		result.addAll(mergeSegment(actions.subList(start, actions.size())));
+		return result;
+	}
+
+	/**
+	 * Merges a list of database actions that does not contain range deletes.
+	 *
+	 * @param actions the database actions
+	 * @return the merged actions
+	 * @throws MergeException if the actions can't be merged
+	 */
+	private List<DatabaseAction> mergeSegment(List<DatabaseAction> actions)
+			throws MergeException {
 		// actionMap: map from record ID to list of actions
 		// First item in "actionMap" is the record ID of the last item in
 		// "actions".
@@ -51,6 +83,48 @@ public class DatabaseActionMerger {
 		return mergedActions;
 	}
 
+	/**
+	 * Removes the insert actions from the specified list that are certainly
+	 * deleted by the specified range delete. That is an insert action whose
+	 * data contains all columns of the criteria and matches the criteria.
+	 *
+	 * @param actions the merged actions before the range delete
+	 * @param rangeDelete the range delete
+	 * @throws MergeException if the criteria of the range delete are invalid
+	 */
+	private void removeRangeInserts(List<DatabaseAction> actions,
+			DatabaseAction rangeDelete) throws MergeException {
+		DatabaseCriteriaMapper mapper = new DatabaseCriteriaMapper();
+		DatabaseCriteria criteria = null;
+		Set<String> columns = new HashSet<>();
+		if (rangeDelete.getJsonData() != null) {
+			try {
+				criteria = mapper.mapToCriteria(parseActionData(rangeDelete));
+			} catch (ParseException ex) {
+				throw new MergeException("Invalid criteria in range delete: " +
+						ex.getMessage(), ex);
+			}
+			columns = mapper.getColumns(criteria);
+		}
+		Iterator<DatabaseAction> it = actions.iterator();
+		while (it.hasNext()) {
+			DatabaseAction action = it.next();
+			if (action.getAction() != Action.INSERT ||
+					!action.getTable().equals(rangeDelete.getTable())) {
+				continue;
+			}
+			if (criteria == null) {
+				it.remove();
+				continue;
+			}
+			Map<String,Object> data = parseActionData(action);
+			if (data.keySet().containsAll(columns) &&
+					DatabaseCriteriaMatcher.matches(data, criteria)) {
+				it.remove();
+			}
+		}
+	}
+
 	private static class MergeResult {
 		public DatabaseAction mergedAction;
 		public int deleteCount = 0;
@@ -1,18 +1,23 @@
 package nl.rrd.senseeact.dao.sync;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonWriteFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import nl.rrd.senseeact.dao.*;
 import nl.rrd.utils.AppComponents;
-import nl.rrd.utils.CurrentIterator;
 import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.ParseException;
 import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This class can synchronize two databases. It can read database actions that
@@ -37,12 +42,32 @@ import java.util.*;
  * @author Dennis Hofs (RRD)
  */
 public class DatabaseSynchronizer {
+	/**
+	 * The time in milliseconds after which an unchanged consumer progress is
+	 * saved again in {@link #saveConsumerProgress(Database, String, List)
+	 * saveConsumerProgress()}.
+	 */
+	public static final long CONSUMER_PROGRESS_REFRESH = 3600000;
+
+	/**
+	 * The minimum time in milliseconds between two saves of a consumer
+	 * progress that only moved forward. See {@link
+	 * #saveConsumerProgress(Database, String, List, boolean)
+	 * saveConsumerProgress()}.
+	 */
+	public static final long CONSUMER_PROGRESS_SAVE_INTERVAL = 60000;
+
+	private static final Object CONSUMER_PROGRESS_LOCK = new Object();
+	private static final Map<String,SavedConsumerProgress>
+			savedConsumerProgress = new HashMap<>();
+
 	private String user;
 	private boolean includeResourceTables;
 	private List<String> includeTables = new ArrayList<>();
 	private List<String> excludeTables = new ArrayList<>();
 	private List<SyncTimeRangeRestriction> timeRangeRestrictions =
 			new ArrayList<>();
+	private SyncReadExecutor parallelReadExecutor = null;
 
 	public DatabaseSynchronizer(String user, boolean includeResourceTables) {
 		this.user = user;
@@ -141,6 +166,33 @@ public class DatabaseSynchronizer {
 		this.timeRangeRestrictions = timeRangeRestrictions;
 	}
 
+	/**
+	 * Returns the executor for parallel reads. For more information see
+	 * {@link #setParallelReads(SyncReadExecutor) setParallelReads()}.
+	 *
+	 * @return the executor for parallel reads or null (default)
+	 */
+	public SyncReadExecutor getParallelReads() {
+		return parallelReadExecutor;
+	}
+
+	/**
+	 * Enables parallel reads in {@link
+	 * #readSyncActions(Database, List, int, Long, List) readSyncActions()}
+	 * and {@link #getSyncActionStats(Database, List, List)
+	 * getSyncActionStats()}. By default (null) the action tables are queried
+	 * one by one. If you set an executor with more than one thread, the
+	 * action tables are queried concurrently on the threads of the executor.
+	 * The executor should be shared by all synchronizers, so it limits the
+	 * total number of parallel reads. See {@link SyncReadExecutor
+	 * SyncReadExecutor}.
+	 *
+	 * @param executor the executor for parallel reads or null
+	 */
+	public void setParallelReads(SyncReadExecutor executor) {
+		this.parallelReadExecutor = executor;
+	}
+
 	/**
 	 * Returns the user whose data should be synchronized.
 	 *
@@ -243,12 +295,233 @@ public class DatabaseSynchronizer {
 		return new ArrayList<>(tableProgress.values());
 	}
 	
+	/**
+	 * Returns the synchronisation progress that results from writing the
+	 * specified database actions to a database with the specified current
+	 * progress. This is the progress that {@link #getSyncProgress(Database)
+	 * getSyncProgress()} would return after a successful call of {@link
+	 * #writeSyncActions(Database, List, String) writeSyncActions()}, without
+	 * querying the database. It can be used to request the next batch of
+	 * actions from a remote database while the current batch is being
+	 * written.
+	 *
+	 * @param progress the current progress or null
+	 * @param actions the database actions that will be written
+	 * @return the progress after the actions have been written
+	 */
+	public List<SyncProgress> getProgressAfterActions(
+			List<SyncProgress> progress, List<DatabaseAction> actions) {
+		Map<String,SyncProgress> tableProgress = new LinkedHashMap<>();
+		if (progress != null) {
+			for (SyncProgress sp : progress) {
+				tableProgress.put(sp.getTable(), sp);
+			}
+		}
+		for (DatabaseAction action : actions) {
+			SyncProgress current = tableProgress.get(action.getTable());
+			if (current != null && (action.getTime() < current.getTime() ||
+					(action.getTime() == current.getTime() &&
+					action.getOrder() <= current.getOrder()))) {
+				continue;
+			}
+			SyncProgress next = new SyncProgress();
+			next.setTable(action.getTable());
+			next.setUser(user);
+			next.setTime(action.getTime());
+			next.setOrder(action.getOrder());
+			tableProgress.put(action.getTable(), next);
+		}
+		return new ArrayList<>(tableProgress.values());
+	}
+
+	/**
+	 * Saves the progress that a remote consumer sent with a request to read
+	 * database actions. The consumer has read all actions up to that
+	 * progress. This is stored as {@link SyncConsumerProgress
+	 * SyncConsumerProgress} for each table that this synchroniser includes. A
+	 * table without progress is stored with time 0 and order -1. The
+	 * {@link ActionLogCompactor ActionLogCompactor} only compacts actions that
+	 * all known consumers have read.
+	 *
+	 * <p>This method is called for every read request of a consumer, so it
+	 * limits the number of database queries. If this process saved the
+	 * progress of the consumer less than {@link
+	 * #CONSUMER_PROGRESS_SAVE_INTERVAL CONSUMER_PROGRESS_SAVE_INTERVAL} ago,
+	 * and the progress only moved forward since then, this method does
+	 * nothing. The stored progress is then behind, which only means that
+	 * compaction is delayed. If the progress moved back or a table is new,
+	 * the progress is saved immediately. Otherwise a stored progress is only
+	 * updated if it changed or if it was last updated more than {@link
+	 * #CONSUMER_PROGRESS_REFRESH CONSUMER_PROGRESS_REFRESH} ago.</p>
+	 *
+	 * @param database the database
+	 * @param consumer the ID of the consumer
+	 * @param progress the progress that the consumer sent or null
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void saveConsumerProgress(Database database, String consumer,
+			List<SyncProgress> progress) throws DatabaseException {
+		saveConsumerProgress(database, consumer, progress, false);
+	}
+
+	/**
+	 * Saves the progress that a remote consumer sent with a request to read
+	 * database actions. This is the same as {@link
+	 * #saveConsumerProgress(Database, String, List) saveConsumerProgress()},
+	 * but if "checkpoint" is true, the progress is always compared with the
+	 * stored progress, even if it was saved recently. A consumer can set a
+	 * checkpoint when it has written all actions up to the progress, for
+	 * example at the start of a synchronisation.
+	 *
+	 * @param database the database
+	 * @param consumer the ID of the consumer
+	 * @param progress the progress that the consumer sent or null
+	 * @param checkpoint true if the progress is a checkpoint of the consumer
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void saveConsumerProgress(Database database, String consumer,
+			List<SyncProgress> progress, boolean checkpoint)
+			throws DatabaseException {
+		long now = System.currentTimeMillis();
+		List<String> tables = getSyncTables(database);
+		String savedKey = database.getName() + "\n" + consumer + "\n" + user;
+		if (!checkpoint && isConsumerProgressSaved(savedKey, tables, progress,
+				now)) {
+			return;
+		}
+		List<DatabaseCriteria> resourceTables = new ArrayList<>();
+		for (String table : tables) {
+			if (!isUserTable(database, table))
+				resourceTables.add(new DatabaseCriteria.Equal("table", table));
+		}
+		SyncConsumerProgressTableDef tableDef =
+				new SyncConsumerProgressTableDef();
+		List<SyncConsumerProgress> stored = new ArrayList<>(database.select(
+				tableDef, new DatabaseCriteria.And(
+					new DatabaseCriteria.Equal("consumer", consumer),
+					new DatabaseCriteria.Equal("user", user)
+				), 0, null));
+		if (!resourceTables.isEmpty()) {
+			stored.addAll(database.select(tableDef, new DatabaseCriteria.And(
+					new DatabaseCriteria.Equal("consumer", consumer),
+					new DatabaseCriteria.Or(resourceTables.toArray(
+							new DatabaseCriteria[0]))
+				), 0, null));
+		}
+		Map<String,SyncConsumerProgress> storedMap = new HashMap<>();
+		for (SyncConsumerProgress consumerProgress : stored) {
+			storedMap.put(consumerProgress.getTable(), consumerProgress);
+		}
+		for (String table : tables) {
+			SyncProgress tableProgress = findTableProgress(table, progress);
+			long time = tableProgress != null ? tableProgress.getTime() : 0;
+			int order = tableProgress != null ? tableProgress.getOrder() : -1;
+			SyncConsumerProgress consumerProgress = storedMap.get(table);
+			if (consumerProgress == null) {
+				consumerProgress = new SyncConsumerProgress();
+				consumerProgress.setConsumer(consumer);
+				consumerProgress.setTable(table);
+				if (isUserTable(database, table))
+					consumerProgress.setUser(user);
+			} else if (consumerProgress.getTime() == time &&
+					consumerProgress.getOrder() == order &&
+					now - consumerProgress.getUpdated() <
+					CONSUMER_PROGRESS_REFRESH) {
+				continue;
+			}
+			consumerProgress.setTime(time);
+			consumerProgress.setOrder(order);
+			consumerProgress.setUpdated(now);
+			if (consumerProgress.getId() == null) {
+				database.insert(SyncConsumerProgressTableDef.NAME,
+						consumerProgress);
+			} else {
+				database.update(SyncConsumerProgressTableDef.NAME,
+						consumerProgress);
+			}
+		}
+		setConsumerProgressSaved(savedKey, tables, progress, now);
+	}
+
+	/**
+	 * Returns whether this process saved the progress of a consumer less than
+	 * {@link #CONSUMER_PROGRESS_SAVE_INTERVAL
+	 * CONSUMER_PROGRESS_SAVE_INTERVAL} ago, and the specified progress is at
+	 * or after the saved progress for every table. In that case the progress
+	 * does not need to be saved now.
+	 *
+	 * @param key the key of the consumer progress
+	 * @param tables the tables
+	 * @param progress the new progress or null
+	 * @param now the current time
+	 * @return true if the progress does not need to be saved, false otherwise
+	 */
+	private boolean isConsumerProgressSaved(String key, List<String> tables,
+			List<SyncProgress> progress, long now) {
+		synchronized (CONSUMER_PROGRESS_LOCK) {
+			SavedConsumerProgress saved = savedConsumerProgress.get(key);
+			if (saved == null ||
+					now - saved.time >= CONSUMER_PROGRESS_SAVE_INTERVAL) {
+				return false;
+			}
+			for (String table : tables) {
+				SyncProgress savedProgress = saved.tableProgress.get(table);
+				if (savedProgress == null)
+					return false;
+				SyncProgress tableProgress = findTableProgress(table,
+						progress);
+				long time = tableProgress != null ?
+						tableProgress.getTime() : 0;
+				int order = tableProgress != null ?
+						tableProgress.getOrder() : -1;
+				if (time < savedProgress.getTime() ||
+						(time == savedProgress.getTime() &&
+						order < savedProgress.getOrder())) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Remembers that this process saved the progress of a consumer. It also
+	 * removes saved progress that is older than {@link
+	 * #CONSUMER_PROGRESS_SAVE_INTERVAL CONSUMER_PROGRESS_SAVE_INTERVAL}.
+	 *
+	 * @param key the key of the consumer progress
+	 * @param tables the tables
+	 * @param progress the saved progress or null
+	 * @param now the current time
+	 */
+	private void setConsumerProgressSaved(String key, List<String> tables,
+			List<SyncProgress> progress, long now) {
+		SavedConsumerProgress saved = new SavedConsumerProgress();
+		saved.time = now;
+		for (String table : tables) {
+			SyncProgress tableProgress = new SyncProgress();
+			tableProgress.setTable(table);
+			SyncProgress current = findTableProgress(table, progress);
+			tableProgress.setTime(current != null ? current.getTime() : 0);
+			tableProgress.setOrder(current != null ? current.getOrder() : -1);
+			saved.tableProgress.put(table, tableProgress);
+		}
+		synchronized (CONSUMER_PROGRESS_LOCK) {
+			savedConsumerProgress.values().removeIf(item ->
+					now - item.time >= CONSUMER_PROGRESS_SAVE_INTERVAL);
+			savedConsumerProgress.put(key, saved);
+		}
+	}
+
 	/**
 	 * Returns statistics about new database actions that should be written to
 	 * a remote database. It defines the number of new database actions and the
 	 * time of the latest database action (if any). The values are obtained
-	 * from multiple queries (for each table first the count, then the latest
-	 * time), so they may not exactly correspond. To get a database action with
+	 * from the {@link SyncWatermark SyncWatermark}s of each table. Only if a
+	 * table has new actions since the progress, it runs a count query on the
+	 * action log. The values may therefore not exactly correspond. Without
+	 * progress the count is the number of logged actions, including actions
+	 * that have been merged since. To get a database action with
 	 * the specified latest time (there may be more than one), it may be needed
 	 * to read more actions than the specified count. You may use the count as
 	 * an indication of how many database actions need to be synchronised, so
@@ -271,39 +544,153 @@ public class DatabaseSynchronizer {
 			List<SyncProgress> progress, List<String> excludeSources)
 			throws DatabaseException {
 		List<String> tables = getSyncTables(database);
+		Map<String,TableActionStats> tableStats;
+		if (isParallelRead(tables)) {
+			tableStats = runParallelTableReads(database, tables,
+					(readDb, table) -> getTableSyncActionStats(readDb, table,
+					findTableProgress(table, progress), excludeSources));
+		} else {
+			tableStats = new LinkedHashMap<>();
+			for (String table : tables) {
+				tableStats.put(table, getTableSyncActionStats(database, table,
+						findTableProgress(table, progress), excludeSources));
+			}
+		}
 		int totalCount = 0;
 		Long maxTime = null;
-		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
-		for (String table : tables) {
-			SyncProgress sp = findTableProgress(table, progress);
-			DatabaseCriteria criteria = getReadSyncCriteria(table, sp,
-					null, excludeSources);
-			String actionUser = null;
-			if (isUserTable(database, table))
-				actionUser = this.user;
-			DatabaseActionTable actionTable = DatabaseCache
-					.getInstance().initActionTable(database, actionUser, table);
-			int count = database.count(actionTable.getName(),
-					DatabaseAction.class, criteria);
-			if (count == 0)
-				continue;
-			DatabaseSort[] sort = new DatabaseSort[] {
-					new DatabaseSort("time", false)
-			};
-			List<Map<String,?>> maps = database.selectMaps(
-					actionTable.getName(), DatabaseAction.class, criteria,
-					1, sort);
-			if (maps.isEmpty())
+		for (TableActionStats stats : tableStats.values()) {
+			if (stats == null)
 				continue;
-			DatabaseAction action = mapper.mapToObject(maps.get(0),
-					DatabaseAction.class, false);
-			totalCount += count;
-			if (maxTime == null || action.getTime() > maxTime)
-				maxTime = action.getTime();
+			totalCount += stats.count;
+			if (maxTime == null || stats.maxTime > maxTime)
+				maxTime = stats.maxTime;
 		}
 		return new SyncActionStats(progress, totalCount, maxTime);
 	}
 
+	/**
+	 * Returns statistics about new database actions in the specified table
+	 * that should be written to a remote database. If there are no new
+	 * actions, this method returns null. See also {@link
+	 * #getSyncActionStats(Database, List, List) getSyncActionStats()}.
+	 *
+	 * @param database the database
+	 * @param table the table name
+	 * @param progress the progress for the table or null
+	 * @param excludeSources database actions with one of these sources will
+	 * be excluded. This can be set to null or an empty list.
+	 * @return the statistics or null
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private TableActionStats getTableSyncActionStats(Database database,
+			String table, SyncProgress progress, List<String> excludeSources)
+			throws DatabaseException {
+		String actionUser = null;
+		if (isUserTable(database, table))
+			actionUser = this.user;
+		SyncWatermark watermark = getTableWatermark(database, actionUser,
+				table, excludeSources);
+		if (!hasNewActions(watermark, progress))
+			return null;
+		boolean restricted = findTimeRangeRestriction(table) != null;
+		if (progress == null && !restricted)
+			return new TableActionStats(watermark.getCount(),
+					watermark.getTime());
+		DatabaseCriteria criteria = getReadSyncCriteria(table, progress,
+				null, excludeSources);
+		DatabaseActionTable actionTable = DatabaseCache
+				.getInstance().initActionTable(database, actionUser, table);
+		int count = database.count(actionTable.getName(),
+				DatabaseAction.class, criteria);
+		if (count == 0)
+			return null;
+		if (!restricted)
+			return new TableActionStats(count, watermark.getTime());
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("time", false)
+		};
+		List<Map<String,?>> maps = database.selectMaps(
+				actionTable.getName(), DatabaseAction.class, criteria,
+				1, sort);
+		if (maps.isEmpty())
+			return null;
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		DatabaseAction action = mapper.mapToObject(maps.get(0),
+				DatabaseAction.class, false);
+		return new TableActionStats(count, action.getTime());
+	}
+
+	/**
+	 * Combines the {@link SyncWatermark SyncWatermark}s for the specified user
+	 * and table, excluding the specified sources. The result has the latest
+	 * time and order number and the total count of the included watermarks.
+	 * If no actions have been logged from the included sources, this method
+	 * returns null.
+	 *
+	 * @param database the database
+	 * @param user the user or null (if the table has general data)
+	 * @param table the table name
+	 * @param excludeSources watermarks with one of these sources will be
+	 * excluded. This can be set to null or an empty list.
+	 * @return the combined watermark or null
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private SyncWatermark getTableWatermark(Database database, String user,
+			String table, List<String> excludeSources)
+			throws DatabaseException {
+		DatabaseCriteria criteria;
+		if (user == null) {
+			criteria = new DatabaseCriteria.Equal("table", table);
+		} else {
+			criteria = new DatabaseCriteria.And(
+					new DatabaseCriteria.Equal("table", table),
+					new DatabaseCriteria.Equal("user", user)
+			);
+		}
+		List<SyncWatermark> watermarks = database.select(
+				new SyncWatermarkTableDef(), criteria, 0, null);
+		SyncWatermark result = null;
+		for (SyncWatermark watermark : watermarks) {
+			if (excludeSources != null && excludeSources.contains(
+					watermark.getSource())) {
+				continue;
+			}
+			if (result == null) {
+				result = new SyncWatermark();
+				result.setTable(table);
+				result.setUser(user);
+				result.setTime(watermark.getTime());
+				result.setOrder(watermark.getOrder());
+			} else if (watermark.isAfter(result.getTime(),
+					result.getOrder())) {
+				result.setTime(watermark.getTime());
+				result.setOrder(watermark.getOrder());
+			}
+			result.setCount(result.getCount() + watermark.getCount());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether the specified watermark shows that there may be new
+	 * database actions after the specified progress. If this method returns
+	 * false, there are certainly no new actions.
+	 *
+	 * @param watermark the watermark from {@link
+	 * #getTableWatermark(Database, String, String, List) getTableWatermark()}
+	 * or null
+	 * @param progress the progress or null
+	 * @return true if there may be new actions, false if there are no new
+	 * actions
+	 */
+	private boolean hasNewActions(SyncWatermark watermark,
+			SyncProgress progress) {
+		if (watermark == null)
+			return false;
+		return progress == null || watermark.isAfter(progress.getTime(),
+				progress.getOrder());
+	}
+
 	/**
 	 * Reads new database actions that should be written to a remote database.
 	 * The specified progress list defines what data has already been
@@ -322,6 +709,13 @@ public class DatabaseSynchronizer {
 	 * <p>This method may merge database actions using {@link
 	 * DatabaseActionMerger DatabaseActionMerger}.</p>
 	 *
+	 * <p>If parallel reads are enabled (see {@link
+	 * #setParallelReads(SyncReadExecutor) setParallelReads()}), the
+	 * action tables are queried concurrently. A batch then contains the
+	 * oldest actions across all tables (ordered by time and order), rather
+	 * than the actions of the first tables. In both cases the actions are
+	 * returned grouped by table.</p>
+	 *
 	 * @param database the database
 	 * @param progress the progress or null
 	 * @param maxCount the maximum number of actions to read (&lt;= 0 if no
@@ -337,6 +731,10 @@ public class DatabaseSynchronizer {
 			List<SyncProgress> progress, int maxCount, Long maxTime,
 			List<String> excludeSources) throws DatabaseException {
 		List<String> tables = getSyncTables(database);
+		if (isParallelRead(tables)) {
+			return readSyncActionsParallel(database, tables, progress,
+					maxCount, maxTime, excludeSources);
+		}
 		List<DatabaseAction> actions = new ArrayList<>();
 		Iterator<String> tableIt = tables.iterator();
 		while (tableIt.hasNext() && (maxCount <= 0 ||
@@ -363,6 +761,170 @@ public class DatabaseSynchronizer {
 		return actions;
 	}
 
+	/**
+	 * Reads new database actions like {@link
+	 * #readSyncActions(Database, List, int, Long, List) readSyncActions()},
+	 * but it queries the action tables concurrently. Each table query is
+	 * limited to maxCount actions. The results are combined with a k-way
+	 * merge on time and order, so that at most maxCount of the oldest actions
+	 * are returned. The result for each table is a prefix of its sorted
+	 * actions, so the sync progress per table remains valid.
+	 *
+	 * @param database the database
+	 * @param tables the tables to read
+	 * @param progress the progress or null
+	 * @param maxCount the maximum number of actions to read (&lt;= 0 if no
+	 * limit)
+	 * @param maxTime the maximum time of an action, as a unix time in
+	 * milliseconds (null if no limit)
+	 * @param excludeSources database actions with one of these sources will
+	 * be excluded. This can be set to null or an empty list.
+	 * @return the new database actions
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private List<DatabaseAction> readSyncActionsParallel(Database database,
+			List<String> tables, List<SyncProgress> progress, int maxCount,
+			Long maxTime, List<String> excludeSources)
+			throws DatabaseException {
+		Map<String,String> actionUsers = new HashMap<>();
+		for (String table : tables) {
+			actionUsers.put(table, isUserTable(database, table) ?
+					this.user : null);
+		}
+		Map<String,List<DatabaseAction>> tableActions = runParallelTableReads(
+				database, tables,
+				(readDb, table) -> readTableSyncActions(readDb,
+						actionUsers.get(table), table,
+						findTableProgress(table, progress), maxCount, maxTime,
+						excludeSources));
+		List<List<DatabaseAction>> lists = new ArrayList<>();
+		for (String table : tables) {
+			lists.add(tableActions.get(table));
+		}
+		int[] counts = getMergedTableCounts(lists, maxCount);
+		List<DatabaseAction> actions = new ArrayList<>();
+		DatabaseActionMerger merger = new DatabaseActionMerger();
+		for (int i = 0; i < lists.size(); i++) {
+			if (counts[i] == 0)
+				continue;
+			List<DatabaseAction> unmerged = lists.get(i).subList(0,
+					counts[i]);
+			try {
+				actions.addAll(merger.mergeActions(unmerged));
+			} catch (MergeException ex) {
+				throw new DatabaseException(
+						"Can't merge database actions: " + ex.getMessage(),
+						ex);
+			}
+		}
+		return actions;
+	}
+
+	/**
+	 * Runs a k-way merge on the specified action lists, which should each be
+	 * sorted by time and order. It takes actions from the lists in that order
+	 * until maxCount actions have been taken or all lists are exhausted. It
+	 * returns the number of actions that were taken from each list.
+	 *
+	 * @param lists the sorted action lists
+	 * @param maxCount the maximum number of actions (&lt;= 0 if no limit)
+	 * @return the number of actions to take from each list
+	 */
+	private int[] getMergedTableCounts(List<List<DatabaseAction>> lists,
+			int maxCount) {
+		int[] counts = new int[lists.size()];
+		PriorityQueue<Integer> queue = new PriorityQueue<>((a, b) -> {
+			DatabaseAction actionA = lists.get(a).get(counts[a]);
+			DatabaseAction actionB = lists.get(b).get(counts[b]);
+			int cmp = Long.compare(actionA.getTime(), actionB.getTime());
+			if (cmp != 0)
+				return cmp;
+			cmp = Integer.compare(actionA.getOrder(), actionB.getOrder());
+			if (cmp != 0)
+				return cmp;
+			return Integer.compare(a, b);
+		});
+		for (int i = 0; i < lists.size(); i++) {
+			if (!lists.get(i).isEmpty())
+				queue.add(i);
+		}
+		int total = 0;
+		while (!queue.isEmpty() && (maxCount <= 0 || total < maxCount)) {
+			int index = queue.poll();
+			counts[index]++;
+			total++;
+			if (counts[index] < lists.get(index).size())
+				queue.add(index);
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns whether the tables should be read in parallel. This is true if
+	 * parallel reads are enabled and there is more than one table.
+	 *
+	 * @param tables the tables to read
+	 * @return true if the tables should be read in parallel, false otherwise
+	 */
+	private boolean isParallelRead(List<String> tables) {
+		return parallelReadExecutor != null &&
+				parallelReadExecutor.getThreads() > 1 && tables.size() > 1;
+	}
+
+	/**
+	 * Runs a read task for each of the specified tables on the executor that
+	 * was set with {@link #setParallelReads(SyncReadExecutor)
+	 * setParallelReads()}. It submits one worker for each table, up to the
+	 * number of threads of the executor. Each worker reads tables until all
+	 * tables have been read. If the executor has a connection source, each
+	 * worker gets its own database connection. This method waits until all
+	 * tasks have completed. It returns a map from table name to the task
+	 * result. If any task fails, this method throws the first error.
+	 *
+	 * @param database the database
+	 * @param tables the tables
+	 * @param task the task to run for each table
+	 * @param <T> the type of the task result
+	 * @return the results by table name
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private <T> Map<String,T> runParallelTableReads(Database database,
+			List<String> tables, TableReadTask<T> task)
+			throws DatabaseException {
+		ParallelTableRead<T> read = new ParallelTableRead<>(database, tables,
+				task);
+		int workerCount = Math.min(parallelReadExecutor.getThreads(),
+				tables.size());
+		List<Future<?>> workers = new ArrayList<>();
+		try {
+			for (int i = 0; i < workerCount; i++) {
+				workers.add(parallelReadExecutor.submit(read::runWorker));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} catch (RejectedExecutionException ex) {
+			read.cancel();
+			throw new DatabaseException(
+					"Sync read executor has been closed", ex);
+		} catch (InterruptedException ex) {
+			read.cancel();
+			throw new DatabaseException(
+					"Interrupted while reading sync actions", ex);
+		} catch (ExecutionException ex) {
+			// runWorker catches all errors
+			throw new RuntimeException("Unexpected error in sync read: " +
+					ex.getCause().getMessage(), ex.getCause());
+		}
+		if (read.error != null)
+			throw read.error;
+		Map<String,T> result = new LinkedHashMap<>();
+		for (String table : tables) {
+			result.put(table, read.results.get(table));
+		}
+		return result;
+	}
+
 	/**
 	 * Returns the names of the tables that can be synchronised. It returns
 	 * all tables in the database for which {@link
@@ -410,6 +972,10 @@ public class DatabaseSynchronizer {
 	 * set "excludeSources" to ensure that you don't select database actions
 	 * that were written by the remote database itself.
 	 *
+	 * <p>If the {@link SyncWatermark SyncWatermark}s show that there are no
+	 * new actions, this method returns an empty list without querying the
+	 * action table.</p>
+	 *
 	 * @param database the database
 	 * @param user the user or null (if the table has general data)
 	 * @param table the table name
@@ -427,6 +993,10 @@ public class DatabaseSynchronizer {
 			String user, String table, SyncProgress progress, int maxCount,
 			Long maxTime, List<String> excludeSources)
 			throws DatabaseException {
+		SyncWatermark watermark = getTableWatermark(database, user, table,
+				excludeSources);
+		if (!hasNewActions(watermark, progress))
+			return new ArrayList<>();
 		DatabaseCriteria criteria = getReadSyncCriteria(table, progress,
 				maxTime, excludeSources);
 		DatabaseSort[] sort = new DatabaseSort[] {
@@ -445,6 +1015,128 @@ public class DatabaseSynchronizer {
 		return result;
 	}
 
+	/**
+	 * Reads a page of a snapshot of the current records in a table. This can
+	 * be used to bootstrap a new remote database. Instead of replaying all
+	 * database actions, the remote database loads the current records and
+	 * then continues with the actions after the watermark of the snapshot.
+	 * See {@link SyncSnapshot SyncSnapshot}.
+	 *
+	 * <p>The snapshot includes tables that have no progress in the specified
+	 * progress list and no time range restriction. Tables with a time range
+	 * restriction should be synchronised with {@link
+	 * #readSyncActions(Database, List, int, Long, List) readSyncActions()}.
+	 * A snapshot contains all current records, regardless of the source of
+	 * the database actions that wrote them.</p>
+	 *
+	 * <p>If the specified previous page is null or complete, this method
+	 * starts a snapshot of the first table that should be bootstrapped. It
+	 * takes the watermark before it reads any record. Records that are
+	 * changed while the snapshot is read, may or may not be included in their
+	 * new state, but the actions for those changes come after the watermark,
+	 * so they will be synchronised afterwards. Writing these actions again
+	 * gives the same result.</p>
+	 *
+	 * <p>If there are no more tables to bootstrap, this method returns a
+	 * snapshot where the table is null.</p>
+	 *
+	 * @param database the database
+	 * @param progress the progress of the remote database or null
+	 * @param previous the previous page or null
+	 * @param maxCount the maximum number of records to read (&lt;= 0 if no
+	 * limit)
+	 * @return the snapshot page
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public SyncSnapshot readSyncSnapshot(Database database,
+			List<SyncProgress> progress, SyncSnapshot previous, int maxCount)
+			throws DatabaseException {
+		List<String> tables = new ArrayList<>();
+		for (String table : getSyncTables(database)) {
+			if (findTableProgress(table, progress) == null &&
+					findTimeRangeRestriction(table) == null) {
+				tables.add(table);
+			}
+		}
+		SyncSnapshot result = new SyncSnapshot();
+		if (previous != null && !previous.isComplete() &&
+				tables.contains(previous.getTable())) {
+			result.setTable(previous.getTable());
+			result.setTime(previous.getTime());
+			result.setOrder(previous.getOrder());
+			result.setLastRecordId(previous.getLastRecordId());
+		} else if (tables.isEmpty()) {
+			return result;
+		} else {
+			result.setTable(tables.get(0));
+		}
+		String table = result.getTable();
+		String actionUser = null;
+		if (isUserTable(database, table))
+			actionUser = this.user;
+		if (result.getLastRecordId() == null) {
+			// all actions until the watermark have been written to the table
+			Object tableLock = DatabaseLockCollection.getLock(
+					database.getName(), table);
+			SyncWatermark watermark;
+			synchronized (tableLock) {
+				watermark = getTableWatermark(database, actionUser, table,
+						null);
+			}
+			if (watermark != null) {
+				result.setTime(watermark.getTime());
+				result.setOrder(watermark.getOrder());
+			}
+		}
+		List<DatabaseCriteria> andCriteria = new ArrayList<>();
+		if (actionUser != null)
+			andCriteria.add(new DatabaseCriteria.Equal("user", actionUser));
+		if (result.getLastRecordId() != null) {
+			andCriteria.add(new DatabaseCriteria.GreaterThan("id",
+					result.getLastRecordId()));
+		}
+		DatabaseCriteria criteria = null;
+		if (!andCriteria.isEmpty()) {
+			criteria = new DatabaseCriteria.And(andCriteria.toArray(
+					new DatabaseCriteria[0]));
+		}
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("id", true)
+		};
+		Class<? extends DatabaseObject> dataClass = DatabaseCache
+				.getInstance().getTableDataClass(database, table);
+		List<? extends DatabaseObject> records = database.select(table,
+				dataClass, criteria, maxCount, sort);
+		List<String> packedFields = PackedArrayColumn.getFields(dataClass);
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		ObjectMapper jsonMapper = JsonMapper.builder()
+				.enable(JsonWriteFeature.ESCAPE_NON_ASCII)
+				.build();
+		List<DatabaseAction> actions = new ArrayList<>();
+		for (DatabaseObject record : records) {
+			DatabaseAction action = new DatabaseAction();
+			action.setTable(table);
+			action.setUser(actionUser);
+			action.setAction(DatabaseAction.Action.INSERT);
+			action.setRecordId(record.getId());
+			try {
+				action.setJsonData(jsonMapper.writeValueAsString(
+						PackedArrayColumn.toActionData(packedFields,
+						mapper.objectToMap(record, false))));
+			} catch (JsonProcessingException ex) {
+				throw new RuntimeException("Can't convert data to JSON: " +
+						ex.getMessage(), ex);
+			}
+			action.setTime(result.getTime());
+			action.setOrder(result.getOrder());
+			actions.add(action);
+			result.setLastRecordId(record.getId());
+		}
+		result.setActions(actions);
+		result.setComplete(maxCount <= 0 || records.size() < maxCount);
+		return result;
+	}
+
 	/**
 	 * Purges records in the database for tables that have a time range
 	 * restriction (see {@link #getTimeRangeRestrictions()
@@ -504,12 +1196,15 @@ public class DatabaseSynchronizer {
 		if (isUtcTable) {
 			andCriteria.add(new DatabaseCriteria.LessThan("utcTime",
 						restrict.getStartTime()));
+		} else if (tableFields.contains(LocalTimeColumn.LOCAL_TIME_MILLIS) &&
+				database.isLocalTimeMillisComplete(table)) {
+			andCriteria.add(new DatabaseCriteria.LessThan(
+					LocalTimeColumn.LOCAL_TIME_MILLIS,
+					restrict.getStartTime()));
 		} else {
 			Instant instant = Instant.ofEpochMilli(restrict.getStartTime());
-			DateTimeFormatter format = DateTimeFormatter.ofPattern(
-					"yyyy-MM-dd'T'HH:mm:ss.SSS");
 			String localTime = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC)
-					.toLocalDateTime().format(format);
+					.toLocalDateTime().format(LocalTimeColumn.FORMAT);
 			andCriteria.add(new DatabaseCriteria.LessThan("localTime",
 					localTime));
 		}
@@ -573,10 +1268,17 @@ public class DatabaseSynchronizer {
 		}
 		SyncTimeRangeRestriction restriction = findTimeRangeRestriction(table);
 		if (restriction != null) {
-			criteriaItems.add(new DatabaseCriteria.GreaterEqual(
-					"sampleTime", restriction.getStartTime()));
-			criteriaItems.add(new DatabaseCriteria.LessThan(
-					"sampleTime", restriction.getEndTime()));
+			// range deletes have no sample time
+			criteriaItems.add(new DatabaseCriteria.Or(
+				new DatabaseCriteria.And(
+					new DatabaseCriteria.GreaterEqual("sampleTime",
+							restriction.getStartTime()),
+					new DatabaseCriteria.LessThan("sampleTime",
+							restriction.getEndTime())
+				),
+				new DatabaseCriteria.Equal("action",
+						DatabaseAction.Action.DELETE_RANGE.toString())
+			));
 		}
 		DatabaseCriteria[] criteriaArray = criteriaItems.toArray(
 				new DatabaseCriteria[0]);
@@ -609,6 +1311,11 @@ public class DatabaseSynchronizer {
 	 * allowed for example if this synchroniser allows only data for one user
 	 * and the action affects data for another user.
 	 *
+	 * <p>A range delete ({@link DatabaseAction.Action#DELETE_RANGE
+	 * DELETE_RANGE}) is run as one delete with the criteria from the action
+	 * data. In a user table it only deletes records of the user of the
+	 * action.</p>
+	 *
 	 * <p>After writing an action, this method updates the table
 	 * "_sync_progress". The action is also added to the table "_action_log"
 	 * with the specified source ID. You can pass the same source ID when you
@@ -628,12 +1335,78 @@ public class DatabaseSynchronizer {
 			List<DatabaseAction> actions, String source)
 			throws SyncForbiddenException, IllegalInputException,
 			DatabaseException {
-		List<SyncProgress> progressList = getSyncProgress(database);
-		CurrentIterator<DatabaseAction> actionIt =
-				new CurrentIterator<>(actions.iterator());
-		actionIt.moveNext();
-		DatabaseActionGroup actionGroup = getNextActionGroup(database,
-				actionIt, progressList);
+		writeSyncActions(database, actions, getSyncProgress(database), source,
+				true);
+	}
+
+	/**
+	 * Writes a page of a snapshot that was read from a remote database with
+	 * {@link #readSyncSnapshot(Database, List, SyncSnapshot, int)
+	 * readSyncSnapshot()}. The insert actions are validated and written like
+	 * in {@link #writeSyncActions(Database, List, String) writeSyncActions()}.
+	 * If a record already exists, it is updated. The sync progress of the
+	 * table is only updated after the last page of the table. It is then set
+	 * to the watermark of the snapshot. If the snapshot is interrupted before,
+	 * there is no progress and the snapshot can be started again.
+	 *
+	 * @param database the database
+	 * @param snapshot the snapshot page
+	 * @param source the source of the database action. This should identify
+	 * the remote database and is used to ensure that these database actions
+	 * are excluded at a reverse synchronization.
+	 * @throws SyncForbiddenException if an action is not allowed
+	 * @throws IllegalInputException if an action is invalid
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void writeSyncSnapshot(Database database, SyncSnapshot snapshot,
+			String source) throws SyncForbiddenException,
+			IllegalInputException, DatabaseException {
+		String table = snapshot.getTable();
+		if (table == null)
+			return;
+		for (DatabaseAction action : snapshot.getActions()) {
+			if (action.getAction() != DatabaseAction.Action.INSERT ||
+					!table.equals(action.getTable())) {
+				throw new IllegalInputException(String.format(
+						"Snapshot of table \"%s\" contains invalid action: %s",
+						table, action));
+			}
+		}
+		writeSyncActions(database, snapshot.getActions(), null, source,
+				false);
+		if (snapshot.isComplete()) {
+			saveSyncProgress(database, table, snapshot.getTime(),
+					snapshot.getOrder());
+		}
+	}
+
+	/**
+	 * Writes the specified database actions from a remote database to this
+	 * database. This is called from {@link
+	 * #writeSyncActions(Database, List, String) writeSyncActions()} and
+	 * {@link #writeSyncSnapshot(Database, SyncSnapshot, String)
+	 * writeSyncSnapshot()}.
+	 *
+	 * @param database the database
+	 * @param actions the actions
+	 * @param progressList the current progress. Actions that have already
+	 * been synchronised according to this progress, are skipped. This can be
+	 * null.
+	 * @param source the source of the database action
+	 * @param saveProgress true if the sync progress should be updated after
+	 * each group of actions, false otherwise
+	 * @throws SyncForbiddenException if an action is not allowed
+	 * @throws IllegalInputException if an action is invalid
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void writeSyncActions(Database database,
+			List<DatabaseAction> actions, List<SyncProgress> progressList,
+			String source, boolean saveProgress)
+			throws SyncForbiddenException, IllegalInputException,
+			DatabaseException {
+		WriteValidation validation = new WriteValidation(database, actions);
+		DatabaseActionGroup actionGroup = getNextActionGroup(validation,
+				progressList);
 		DatabaseCache cache = DatabaseCache.getInstance();
 		while (actionGroup != null) {
 			List<DatabaseActionGroup.Item> groupItems =
@@ -656,35 +1429,56 @@ public class DatabaseSynchronizer {
 					writeSyncDeleteActionGroup(database, groupItems, actionUser,
 							source);
 					break;
+				case DELETE_RANGE:
+					writeSyncDeleteRangeActionGroup(database, groupItems,
+							source);
+					break;
 				default:
 					break;
 				}
+				validation.onGroupWritten(groupItems, actionUser);
 			}
 
-			// update sync progress
-			DatabaseAction lastAction = actionGroup.getLastAction();
-			String table = lastAction.getTable();
-			DatabaseCriteria criteria = new DatabaseCriteria.And(
-					new DatabaseCriteria.Equal("table", table),
-					new DatabaseCriteria.Equal("user", user)
-			);
-			SyncProgress progress = database.selectOne(
-					new SyncProgressTableDef(), criteria, null);
-			if (progress == null) {
-				progress = new SyncProgress();
-				progress.setTable(table);
-				progress.setUser(user);
+			if (saveProgress) {
+				DatabaseAction lastAction = actionGroup.getLastAction();
+				saveSyncProgress(database, lastAction.getTable(),
+						lastAction.getTime(), lastAction.getOrder());
 			}
-			progress.setTime(lastAction.getTime());
-			progress.setOrder(lastAction.getOrder());
-			if (progress.getId() == null)
-				database.insert(SyncProgressTableDef.NAME, progress);
-			else
-				database.update(SyncProgressTableDef.NAME, progress);
 
-			actionGroup = getNextActionGroup(database, actionIt, progressList);
+			actionGroup = getNextActionGroup(validation, progressList);
 		}
 	}
+
+	/**
+	 * Sets the sync progress of the specified table in the table
+	 * "_sync_progress".
+	 *
+	 * @param database the database
+	 * @param table the table name
+	 * @param time the time of the last synchronised action
+	 * @param order the order number of the last synchronised action
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void saveSyncProgress(Database database, String table, long time,
+			int order) throws DatabaseException {
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("table", table),
+				new DatabaseCriteria.Equal("user", user)
+		);
+		SyncProgress progress = database.selectOne(
+				new SyncProgressTableDef(), criteria, null);
+		if (progress == null) {
+			progress = new SyncProgress();
+			progress.setTable(table);
+			progress.setUser(user);
+		}
+		progress.setTime(time);
+		progress.setOrder(order);
+		if (progress.getId() == null)
+			database.insert(SyncProgressTableDef.NAME, progress);
+		else
+			database.update(SyncProgressTableDef.NAME, progress);
+	}
 	
 	/**
 	 * Writes a group of insert database actions. This method is called from
@@ -792,6 +1586,68 @@ public class DatabaseSynchronizer {
 		}
 	}
 
+	/**
+	 * Writes a group of range delete actions. This method is called from
+	 * {@link #writeSyncActions(Database, List, String) writeSyncActions()}.
+	 * The specified action group contains one or more range delete actions
+	 * for the same table. The actions have been validated and the data of
+	 * each item contains the criteria or null. If the table is a user table,
+	 * the criteria are restricted to the user of the action.
+	 *
+	 * @param database the database
+	 * @param actions the actions
+	 * @param source the source of the database action. This should identify
+	 * the remote database and is used to ensure that these database actions
+	 * are excluded at a reverse synchronization.
+	 * @throws IllegalInputException if the criteria are invalid
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void writeSyncDeleteRangeActionGroup(Database database,
+			List<DatabaseActionGroup.Item> actions, String source)
+			throws IllegalInputException, DatabaseException {
+		String table = actions.get(0).action.getTable();
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		logger.info("Run group of {} range delete actions on table {}",
+				actions.size(), table);
+		boolean isUserTable = isUserTable(database, table);
+		for (DatabaseActionGroup.Item item : actions) {
+			DatabaseAction action = item.action;
+			DatabaseCriteria criteria = parseRangeCriteria(item.data);
+			if (isUserTable) {
+				DatabaseCriteria userCriteria = new DatabaseCriteria.Equal(
+						"user", action.getUser());
+				if (criteria == null) {
+					criteria = userCriteria;
+				} else {
+					criteria = new DatabaseCriteria.And(userCriteria,
+							criteria);
+				}
+			}
+			database.delete(table, null, criteria, source);
+		}
+	}
+
+	/**
+	 * Parses the criteria from the data of a range delete action.
+	 *
+	 * @param data the data or null
+	 * @return the criteria or null
+	 * @throws IllegalInputException if the criteria are invalid
+	 */
+	private DatabaseCriteria parseRangeCriteria(Map<String,Object> data)
+			throws IllegalInputException {
+		if (data == null)
+			return null;
+		DatabaseCriteriaMapper mapper = new DatabaseCriteriaMapper();
+		try {
+			return mapper.mapToCriteria(data);
+		} catch (ParseException ex) {
+			throw new IllegalInputException(
+					"Invalid criteria in range delete: " + ex.getMessage(),
+					ex);
+		}
+	}
+
 	/**
 	 * Consumes the next group of actions with the same action type and the
 	 * same table. It skips actions that have already been synchronised
@@ -807,23 +1663,22 @@ public class DatabaseSynchronizer {
 	 * action is invalid. See {@link #writeSyncActions(Database, List, String)
 	 * writeSyncActions()} for more info.</p>
 	 * 
-	 * @param database the database
-	 * @param actionIt the action iterator, positioned at the first or a later
-	 * action
+	 * @param validation the validation context, positioned at the first or a
+	 * later action
 	 * @param progressList the progress list or null
 	 * @return the next action group or null
 	 * @throws IllegalInputException it the action data is invalid
 	 */
-	private DatabaseActionGroup getNextActionGroup(Database database,
-			CurrentIterator<DatabaseAction> actionIt,
+	private DatabaseActionGroup getNextActionGroup(WriteValidation validation,
 			List<SyncProgress> progressList) throws SyncForbiddenException,
 			IllegalInputException, DatabaseException {
+		Database database = validation.database;
 		DatabaseAction first = null;
 		boolean isTableSplitByUser = false;
 		DatabaseActionGroup actionGroup = null;
 		List<DatabaseActionGroup.Item> groupItems = new ArrayList<>();
-		while (actionIt.getCurrent() != null) {
-			DatabaseAction action = actionIt.getCurrent();
+		while (validation.getCurrent() != null) {
+			DatabaseAction action = validation.getCurrent();
 			if (action.getTable() == null)
 				throw new IllegalInputException("Table not set");
 	
@@ -833,11 +1688,11 @@ public class DatabaseSynchronizer {
 			if (progress != null && (action.getTime() < progress.getTime() ||
 					(action.getTime() == progress.getTime() &&
 					action.getOrder() <= progress.getOrder()))) {
-				actionIt.moveNext();
+				validation.moveNext();
 				continue;
 			}
 
-			ValidateWriteResult validation = validateWriteAction(database,
+			ValidateWriteResult result = validateWriteAction(validation,
 					action);
 			if (first == null) {
 				first = action;
@@ -847,7 +1702,7 @@ public class DatabaseSynchronizer {
 				DatabaseCache cache = DatabaseCache.getInstance();
 				isTableSplitByUser = cache.isTableSplitByUser(database,
 						first.getTable());
-			} else if (!validation.skipAction) {
+			} else if (!result.skipAction) {
 				if (first.getAction() != action.getAction()) {
 					return actionGroup;
 				}
@@ -859,19 +1714,19 @@ public class DatabaseSynchronizer {
 					return actionGroup;
 				}
 			}
-			if (!validation.skipAction) {
+			if (!result.skipAction) {
 				groupItems.add(new DatabaseActionGroup.Item(action,
-						validation.data));
+						result.data));
 			}
 			actionGroup.setLastAction(action);
-			actionIt.moveNext();
+			validation.moveNext();
 		}
 		return actionGroup;
 	}
 
 	/**
 	 * The result of {@link
-	 * DatabaseSynchronizer#validateWriteAction(Database, DatabaseAction)
+	 * DatabaseSynchronizer#validateWriteAction(WriteValidation, DatabaseAction)
 	 * validateWriteAction()}.
 	 */
 	private static class ValidateWriteResult {
@@ -884,21 +1739,22 @@ public class DatabaseSynchronizer {
 	 * context of this synchronizer. If the validation fails, this method throws
 	 * an exception.
 	 *
-	 * @param database the database
+	 * @param validation the validation context
 	 * @param action the action
 	 * @throws SyncForbiddenException if the action is not allowed
 	 * @throws IllegalInputException it the action data is invalid
 	 * @throws DatabaseException if a database error occurs
 	 */
-	private void validateWriteTableUser(Database database,
+	private void validateWriteTableUser(WriteValidation validation,
 			DatabaseAction action) throws SyncForbiddenException,
 			IllegalInputException, DatabaseException {
+		Database database = validation.database;
 		String table = action.getTable();
 		// validate table name
 		if (table == null) {
 			throw new IllegalInputException("Table not set");
 		}
-		List<String> dbTables = database.selectTables();
+		List<String> dbTables = validation.getTables();
 		if (!dbTables.contains(table)) {
 			throw new IllegalInputException(String.format(
 					"Table \"%s\" not found", action.getTable()));
@@ -932,7 +1788,7 @@ public class DatabaseSynchronizer {
 	 * #writeSyncActions(Database, List, String) writeSyncActions()}.
 	 *
 	 * <p>This method first calls {@link
-	 * #validateWriteTableUser(Database, DatabaseAction)
+	 * #validateWriteTableUser(WriteValidation, DatabaseAction)
 	 * validateWriteTableUser()}. Then it validates that data is included with
 	 * an insert or update action and the data is valid (in particular the
 	 * sensitive "id" and "user" fields). The parsed action data is set in
@@ -959,25 +1815,27 @@ public class DatabaseSynchronizer {
 	 * just changes the action.</p>
 	 *
 	 * <p>To check whether the action should be skipped or modified, it will
-	 * try to read the current record from the database.</p>
+	 * look up the current record in the validation context. That context reads
+	 * the records of upcoming actions in batches.</p>
 	 *
-	 * @param database the database
+	 * @param validation the validation context
 	 * @param action the action (may be modified)
 	 * @return the validation result
 	 * @throws SyncForbiddenException if the action is not allowed
 	 * @throws IllegalInputException it the action data is invalid
 	 * @throws DatabaseException if a database error occurs
 	 */
-	private ValidateWriteResult validateWriteAction(Database database,
+	private ValidateWriteResult validateWriteAction(WriteValidation validation,
 			DatabaseAction action) throws SyncForbiddenException,
 			IllegalInputException, DatabaseException {
+		Database database = validation.database;
 		ValidateWriteResult result = new ValidateWriteResult();
-		validateWriteTableUser(database, action);
-		ObjectMapper mapper = new ObjectMapper();
+		validateWriteTableUser(validation, action);
 		Map<?,?> uncheckedData = null;
 		if (action.getJsonData() != null) {
 			try {
-				uncheckedData = mapper.readValue(action.getJsonData(),
+				uncheckedData = validation.mapper.readValue(
+						action.getJsonData(),
 						Map.class);
 			} catch (IOException ex) {
 				throw new IllegalInputException("Can't parse JSON data: " +
@@ -996,6 +1854,21 @@ public class DatabaseSynchronizer {
 		DatabaseCache cache = DatabaseCache.getInstance();
 		List<String> fields = cache.getTableFields(database, table);
 
+		if (action.getAction() == DatabaseAction.Action.DELETE_RANGE) {
+			// validate criteria columns
+			DatabaseCriteriaMapper mapper = new DatabaseCriteriaMapper();
+			DatabaseCriteria criteria = parseRangeCriteria(data);
+			for (String column : mapper.getColumns(criteria)) {
+				if (!column.equals("id") && !fields.contains(column)) {
+					throw new IllegalInputException(String.format(
+							"Unknown field \"%s\" in table \"%s\"",
+							column, table));
+				}
+			}
+			result.data = data;
+			return result;
+		}
+
 		// validate record ID
 		if (action.getRecordId() == null) {
 			throw new IllegalInputException("Record ID not set");
@@ -1003,11 +1876,11 @@ public class DatabaseSynchronizer {
 		String user = null;
 		if (cache.isTableSplitByUser(database, table))
 			user = action.getUser();
-		BaseDatabaseObject record = selectRecord(database, table, user,
+		WriteRecord record = validation.findRecord(table, user,
 				action.getRecordId());
 		String recordUser = null;
-		if (record instanceof UserDatabaseObject userRecord)
-			recordUser = userRecord.getUser();
+		if (record != null)
+			recordUser = record.user;
 		if (action.getAction() == DatabaseAction.Action.UPDATE ||
 				action.getAction() == DatabaseAction.Action.DELETE) {
 			if (record == null) {
@@ -1093,37 +1966,335 @@ public class DatabaseSynchronizer {
 	}
 
 	/**
-	 * Selects a record from the specified table. If the record does not exist,
-	 * this method returns null. If the table is split by user, you must specify
+	 * Selects the records with the specified IDs from the specified table.
+	 * It returns a map from record ID to record. IDs of records that do not
+	 * exist are not included. If the table is split by user, you must specify
 	 * a user.
 	 *
 	 * @param database the database
 	 * @param table the table name
 	 * @param user the user or null
-	 * @param id the record ID
-	 * @return the record or null
+	 * @param ids the record IDs
+	 * @return the records
 	 * @throws DatabaseException if a database error occurs
 	 */
-	private BaseDatabaseObject selectRecord(Database database, String table,
-			String user, String id) throws DatabaseException {
+	private Map<String,WriteRecord> selectRecords(Database database,
+			String table, String user, List<String> ids)
+			throws DatabaseException {
+		boolean isUserTable = isUserTable(database, table);
 		Class<? extends BaseDatabaseObject> clazz;
-		if (isUserTable(database, table))
+		if (isUserTable)
 			clazz = UserDatabaseObject.class;
 		else
 			clazz = BaseDatabaseObject.class;
-		DatabaseCriteria criteria;
+		DatabaseCriteria[] idCriteria = new DatabaseCriteria[ids.size()];
+		for (int i = 0; i < idCriteria.length; i++) {
+			idCriteria[i] = new DatabaseCriteria.Equal("id", ids.get(i));
+		}
+		DatabaseCriteria criteria = new DatabaseCriteria.Or(idCriteria);
 		if (user != null) {
 			criteria = new DatabaseCriteria.And(
-					new DatabaseCriteria.Equal("id", id),
+					criteria,
 					new DatabaseCriteria.Equal("user", user));
-		} else {
-			criteria = new DatabaseCriteria.Equal("id", id);
 		}
 		List<? extends BaseDatabaseObject> objects = database.select(table,
 				clazz, criteria, 0, null);
-		if (objects.isEmpty())
-			return null;
-		else
-			return objects.get(0);
+		Map<String,WriteRecord> result = new HashMap<>();
+		for (BaseDatabaseObject object : objects) {
+			String recordUser = null;
+			if (object instanceof UserDatabaseObject userObject)
+				recordUser = userObject.getUser();
+			result.put(object.getId(), new WriteRecord(recordUser));
+		}
+		return result;
+	}
+
+	/**
+	 * The context in which {@link
+	 * #writeSyncActions(Database, List, String) writeSyncActions()} validates
+	 * the actions. It iterates over the actions and it caches data that is
+	 * needed to validate every action: the JSON mapper, the database tables
+	 * and the current records.
+	 *
+	 * <p>When an action needs a record that is not in the cache yet, it reads
+	 * that record together with the records of the next actions on the same
+	 * table and user, with one query for at most {@link
+	 * #RECORD_PREFETCH_SIZE RECORD_PREFETCH_SIZE} records. After each group
+	 * of actions has been written, you should call {@link
+	 * #onGroupWritten(List, String) onGroupWritten()} so the cache stays
+	 * consistent with the database.</p>
+	 */
+	private class WriteValidation {
+		private static final int RECORD_PREFETCH_SIZE = 500;
+
+		private Database database;
+		private List<DatabaseAction> actions;
+		private int position = 0;
+		private ObjectMapper mapper = new ObjectMapper();
+		private List<String> tables = null;
+		private Map<RecordKey,WriteRecord> records = new HashMap<>();
+
+		public WriteValidation(Database database,
+				List<DatabaseAction> actions) {
+			this.database = database;
+			this.actions = actions;
+		}
+
+		/**
+		 * Returns the current action. If the iteration has been completed,
+		 * this method returns null.
+		 *
+		 * @return the current action or null
+		 */
+		public DatabaseAction getCurrent() {
+			if (position >= actions.size())
+				return null;
+			return actions.get(position);
+		}
+
+		/**
+		 * Moves to the next action.
+		 */
+		public void moveNext() {
+			position++;
+		}
+
+		/**
+		 * Returns the names of the tables in the database. The tables are read
+		 * once for the whole write.
+		 *
+		 * @return the table names
+		 * @throws DatabaseException if a database error occurs
+		 */
+		public List<String> getTables() throws DatabaseException {
+			if (tables == null)
+				tables = database.selectTables();
+			return tables;
+		}
+
+		/**
+		 * Finds the current record with the specified ID. If the record does
+		 * not exist, this method returns null. If the table is split by user,
+		 * you must specify a user.
+		 *
+		 * @param table the table name
+		 * @param user the user or null
+		 * @param id the record ID
+		 * @return the record or null
+		 * @throws DatabaseException if a database error occurs
+		 */
+		public WriteRecord findRecord(String table, String user, String id)
+				throws DatabaseException {
+			RecordKey key = new RecordKey(table, user, id);
+			if (!records.containsKey(key))
+				prefetchRecords(key);
+			return records.get(key);
+		}
+
+		/**
+		 * Reads the record with the specified key and the records of the
+		 * next actions on the same table and user that are not in the cache
+		 * yet. Records that do not exist are cached as null.
+		 *
+		 * @param key the key of the record that is needed now
+		 * @throws DatabaseException if a database error occurs
+		 */
+		private void prefetchRecords(RecordKey key) throws DatabaseException {
+			Set<RecordKey> keys = new LinkedHashSet<>();
+			keys.add(key);
+			for (int i = position + 1; i < actions.size() &&
+					keys.size() < RECORD_PREFETCH_SIZE; i++) {
+				DatabaseAction action = actions.get(i);
+				if (!key.table.equals(action.getTable()) ||
+						action.getRecordId() == null) {
+					continue;
+				}
+				if (key.user != null && !key.user.equals(action.getUser()))
+					continue;
+				RecordKey actionKey = new RecordKey(key.table, key.user,
+						action.getRecordId());
+				if (!records.containsKey(actionKey))
+					keys.add(actionKey);
+			}
+			List<String> ids = new ArrayList<>();
+			for (RecordKey fetchKey : keys) {
+				ids.add(fetchKey.id);
+			}
+			Map<String,WriteRecord> found = selectRecords(database,
+					key.table, key.user, ids);
+			for (RecordKey fetchKey : keys) {
+				records.put(fetchKey, found.get(fetchKey.id));
+			}
+		}
+
+		/**
+		 * Updates the record cache after a group of actions has been written
+		 * to the database.
+		 *
+		 * @param items the actions that were written
+		 * @param user if the actions are for a table that is split by user,
+		 * this is the user to which the actions belong. Otherwise this is
+		 * null.
+		 */
+		public void onGroupWritten(List<DatabaseActionGroup.Item> items,
+				String user) {
+			for (DatabaseActionGroup.Item item : items) {
+				DatabaseAction action = item.action;
+				if (action.getAction() == DatabaseAction.Action.DELETE_RANGE) {
+					// the deleted records are unknown, so read them again
+					records.keySet().removeIf(key ->
+							key.table.equals(action.getTable()) &&
+							Objects.equals(key.user, user));
+					continue;
+				}
+				RecordKey key = new RecordKey(action.getTable(), user,
+						action.getRecordId());
+				switch (action.getAction()) {
+				case INSERT:
+					records.put(key, new WriteRecord(action.getUser()));
+					break;
+				case DELETE:
+					records.put(key, null);
+					break;
+				default:
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A record that exists in the database while actions are validated in
+	 * {@link WriteValidation WriteValidation}.
+	 */
+	private static class WriteRecord {
+		public String user;
+
+		public WriteRecord(String user) {
+			this.user = user;
+		}
+	}
+
+	/**
+	 * The key of a record in {@link WriteValidation WriteValidation}. The
+	 * user is only set if the table is split by user.
+	 */
+	private static class RecordKey {
+		private String table;
+		private String user;
+		private String id;
+
+		public RecordKey(String table, String user, String id) {
+			this.table = table;
+			this.user = user;
+			this.id = id;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(table, user, id);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null || getClass() != obj.getClass())
+				return false;
+			RecordKey other = (RecordKey)obj;
+			return table.equals(other.table) &&
+					Objects.equals(user, other.user) &&
+					id.equals(other.id);
+		}
+	}
+
+	private interface TableReadTask<T> {
+		T run(Database database, String table) throws DatabaseException;
+	}
+
+	private class ParallelTableRead<T> {
+		private final Object lock = new Object();
+		private Database database;
+		private TableReadTask<T> task;
+		private Queue<String> pendingTables;
+		private Map<String,T> results = new HashMap<>();
+		private DatabaseException error = null;
+
+		public ParallelTableRead(Database database, List<String> tables,
+				TableReadTask<T> task) {
+			this.database = database;
+			this.task = task;
+			this.pendingTables = new LinkedList<>(tables);
+		}
+
+		public void cancel() {
+			synchronized (lock) {
+				pendingTables.clear();
+			}
+		}
+
+		public void runWorker() {
+			DatabaseConnection conn = null;
+			try {
+				Database readDb = database;
+				SyncReadExecutor.ConnectionSource connSource =
+						parallelReadExecutor.getConnectionSource();
+				if (connSource != null) {
+					conn = connSource.openConnection();
+					readDb = conn.getDatabase(database.getName());
+				}
+				String table;
+				while ((table = nextTable()) != null) {
+					T result = task.run(readDb, table);
+					synchronized (lock) {
+						results.put(table, result);
+					}
+				}
+			} catch (IOException ex) {
+				onError(new DatabaseException(
+						"Can't open database connection: " + ex.getMessage(),
+						ex));
+			} catch (DatabaseException ex) {
+				onError(ex);
+			} catch (RuntimeException ex) {
+				onError(new DatabaseException(
+						"Error while reading sync actions: " + ex.getMessage(),
+						ex));
+			} finally {
+				if (conn != null)
+					conn.close();
+			}
+		}
+
+		private String nextTable() {
+			synchronized (lock) {
+				if (error != null)
+					return null;
+				return pendingTables.poll();
+			}
+		}
+
+		private void onError(DatabaseException ex) {
+			synchronized (lock) {
+				if (error == null)
+					error = ex;
+				pendingTables.clear();
+			}
+		}
+	}
+
+	private static class TableActionStats {
+		public int count;
+		public long maxTime;
+
+		public TableActionStats(int count, long maxTime) {
+			this.count = count;
+			this.maxTime = maxTime;
+		}
+	}
+
+	private static class SavedConsumerProgress {
+		public long time;
+		public Map<String,SyncProgress> tableProgress = new HashMap<>();
 	}
 }
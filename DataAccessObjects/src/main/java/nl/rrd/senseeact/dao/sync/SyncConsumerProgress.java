@@ -0,0 +1,165 @@
+package nl.rrd.senseeact.dao.sync;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseAction;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+
+/**
+ * A SyncConsumerProgress object is stored in the database to track what
+ * database actions ({@link DatabaseAction DatabaseAction}) a remote consumer
+ * has already read from the local database. It contains the time and order
+ * number of the last action that the consumer confirmed with the progress of
+ * a read request. Progress is tracked per consumer, table and user. If the
+ * consumer has not read any action from the table yet, the time is 0 and the
+ * order is -1.
+ *
+ * <p>The {@link ActionLogCompactor ActionLogCompactor} only compacts actions
+ * that all known consumers have read.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SyncConsumerProgress extends BaseDatabaseObject {
+	@JsonIgnore
+	private String id;
+
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String consumer;
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String table;
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String user;
+	@DatabaseField(value=DatabaseType.LONG)
+	private long time;
+	@DatabaseField(value=DatabaseType.INT)
+	private int order;
+	@DatabaseField(value=DatabaseType.LONG)
+	private long updated;
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * Returns the ID of the consumer.
+	 *
+	 * @return the ID of the consumer
+	 */
+	public String getConsumer() {
+		return consumer;
+	}
+
+	/**
+	 * Sets the ID of the consumer.
+	 *
+	 * @param consumer the ID of the consumer
+	 */
+	public void setConsumer(String consumer) {
+		this.consumer = consumer;
+	}
+
+	/**
+	 * Returns the table name.
+	 *
+	 * @return the table name (lower case)
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * Sets the table name.
+	 *
+	 * @param table the table name (lower case)
+	 */
+	public void setTable(String table) {
+		this.table = table;
+	}
+
+	/**
+	 * Returns the user name. This is null for a table without a user field.
+	 *
+	 * @return the user name or null
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Sets the user name. This is null for a table without a user field.
+	 *
+	 * @param user the user name or null
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Returns the time of the last database action that the consumer has
+	 * read.
+	 *
+	 * @return the time of the last database action that the consumer has read
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Sets the time of the last database action that the consumer has read.
+	 *
+	 * @param time the time of the last database action that the consumer has
+	 * read
+	 */
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * Returns the order number of the last database action that the consumer
+	 * has read.
+	 *
+	 * @return the order number of the last database action that the consumer
+	 * has read
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Sets the order number of the last database action that the consumer
+	 * has read.
+	 *
+	 * @param order the order number of the last database action that the
+	 * consumer has read
+	 */
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	/**
+	 * Returns the time when the consumer last reported its progress, as a
+	 * unix time in milliseconds.
+	 *
+	 * @return the time when the consumer last reported its progress
+	 */
+	public long getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * Sets the time when the consumer last reported its progress, as a unix
+	 * time in milliseconds.
+	 *
+	 * @param updated the time when the consumer last reported its progress
+	 */
+	public void setUpdated(long updated) {
+		this.updated = updated;
+	}
+}
@@ -0,0 +1,31 @@
+package nl.rrd.senseeact.dao.sync;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+/**
+ * This is a special database table that is used for synchronisation with a
+ * remote database. It keeps track of what data remote consumers have already
+ * read from the local database. It contains {@link SyncConsumerProgress
+ * SyncConsumerProgress} objects. In the database it's stored in a table with
+ * name "_sync_consumer_progress".
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SyncConsumerProgressTableDef
+		extends DatabaseTableDef<SyncConsumerProgress> {
+	public static final String NAME = "_sync_consumer_progress";
+
+	private static final int VERSION = 0;
+
+	public SyncConsumerProgressTableDef() {
+		super(NAME, SyncConsumerProgress.class, VERSION, false);
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
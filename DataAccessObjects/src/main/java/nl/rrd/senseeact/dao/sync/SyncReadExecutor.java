@@ -0,0 +1,102 @@
+package nl.rrd.senseeact.dao.sync;
+
+import nl.rrd.senseeact.dao.DatabaseConnection;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class runs the parallel table reads of {@link DatabaseSynchronizer
+ * DatabaseSynchronizer}. It has a fixed number of threads, which is the
+ * maximum number of table reads that run at the same time. One instance
+ * should be shared by all synchronizers, so the number of read threads and
+ * database connections is limited for the whole application, regardless of
+ * the number of concurrent sync requests. Further reads are queued.
+ *
+ * <p>A database connection may serialise its queries. In that case you
+ * should specify a {@link ConnectionSource ConnectionSource}. Each read then
+ * gets a connection from the source and closes it when the read completes,
+ * so the source can return pooled connections. If the source is null, all
+ * reads use the database that is passed to the synchronizer. That database
+ * should then be thread-safe.</p>
+ *
+ * <p>When the executor is no longer used, you should call {@link #close()
+ * close()}.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SyncReadExecutor {
+	private int threads;
+	private ConnectionSource connectionSource;
+	private ExecutorService executor;
+
+	/**
+	 * Constructs a new executor.
+	 *
+	 * @param threads the maximum number of table reads that run at the same
+	 * time
+	 * @param connectionSource the source of database connections for the
+	 * reads or null
+	 */
+	public SyncReadExecutor(int threads, ConnectionSource connectionSource) {
+		this.threads = threads;
+		this.connectionSource = connectionSource;
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "SyncReadExecutor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Returns the maximum number of table reads that run at the same time.
+	 *
+	 * @return the maximum number of table reads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns the source of database connections for the reads. If this is
+	 * null, the reads use the database that is passed to the synchronizer.
+	 *
+	 * @return the connection source or null
+	 */
+	public ConnectionSource getConnectionSource() {
+		return connectionSource;
+	}
+
+	/**
+	 * Submits a read task.
+	 *
+	 * @param task the task
+	 * @return the future of the task
+	 */
+	Future<?> submit(Runnable task) {
+		return executor.submit(task);
+	}
+
+	/**
+	 * Shuts down the read threads. Running reads are interrupted.
+	 */
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A source of database connections for parallel reads.
+	 */
+	public interface ConnectionSource {
+		/**
+		 * Opens a database connection. The connection is closed when the read
+		 * completes.
+		 *
+		 * @return the database connection
+		 * @throws IOException if the connection could not be opened
+		 */
+		DatabaseConnection openConnection() throws IOException;
+	}
+}
@@ -0,0 +1,160 @@
+package nl.rrd.senseeact.dao.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseAction;
+import nl.rrd.utils.json.JsonObject;
+
+/**
+ * A page of a snapshot of the current records in one table. It is used to
+ * bootstrap a new database without replaying the entire history of database
+ * actions. See {@link
+ * DatabaseSynchronizer#readSyncSnapshot(Database, List, SyncSnapshot, int)
+ * DatabaseSynchronizer.readSyncSnapshot()}.
+ *
+ * <p>Each record is represented by an insert action ({@link DatabaseAction
+ * DatabaseAction}). All actions have the time and order number of the
+ * watermark of the table. That is the latest action that had been logged
+ * when the snapshot was started. After the last page of the table has been
+ * written, the sync progress of the table is set to the watermark, so
+ * subsequent synchronisation continues with the actions after the
+ * watermark.</p>
+ *
+ * <p>The records are read in pages ordered by record ID. To read the next
+ * page, you should pass the previous page, which defines the table, the
+ * watermark and the last record ID. The actions of the previous page are not
+ * needed.</p>
+ *
+ * <p>If there are no more tables to bootstrap, the table is null.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SyncSnapshot extends JsonObject {
+	private String table = null;
+	private long time = 0;
+	private int order = -1;
+	private List<DatabaseAction> actions = new ArrayList<>();
+	private String lastRecordId = null;
+	private boolean complete = true;
+
+	/**
+	 * Returns the table name. This is null if there are no more tables to
+	 * bootstrap.
+	 *
+	 * @return the table name or null
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * Sets the table name. This is null if there are no more tables to
+	 * bootstrap.
+	 *
+	 * @param table the table name or null
+	 */
+	public void setTable(String table) {
+		this.table = table;
+	}
+
+	/**
+	 * Returns the time of the watermark. If no actions have been logged for
+	 * the table, this is 0.
+	 *
+	 * @return the time of the watermark
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Sets the time of the watermark. If no actions have been logged for the
+	 * table, this is 0.
+	 *
+	 * @param time the time of the watermark
+	 */
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * Returns the order number of the watermark. If no actions have been
+	 * logged for the table, this is -1.
+	 *
+	 * @return the order number of the watermark
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Sets the order number of the watermark. If no actions have been logged
+	 * for the table, this is -1.
+	 *
+	 * @param order the order number of the watermark
+	 */
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	/**
+	 * Returns the insert actions for the records in this page.
+	 *
+	 * @return the insert actions
+	 */
+	public List<DatabaseAction> getActions() {
+		return actions;
+	}
+
+	/**
+	 * Sets the insert actions for the records in this page.
+	 *
+	 * @param actions the insert actions
+	 */
+	public void setActions(List<DatabaseAction> actions) {
+		this.actions = actions;
+	}
+
+	/**
+	 * Returns the ID of the last record in this page. The next page starts
+	 * after this ID. If this page is empty, it's the ID of the last record in
+	 * the previous page, or null if there was no previous page.
+	 *
+	 * @return the ID of the last record or null
+	 */
+	public String getLastRecordId() {
+		return lastRecordId;
+	}
+
+	/**
+	 * Sets the ID of the last record in this page. The next page starts after
+	 * this ID. If this page is empty, it's the ID of the last record in the
+	 * previous page, or null if there was no previous page.
+	 *
+	 * @param lastRecordId the ID of the last record or null
+	 */
+	public void setLastRecordId(String lastRecordId) {
+		this.lastRecordId = lastRecordId;
+	}
+
+	/**
+	 * Returns whether this is the last page of the table.
+	 *
+	 * @return true if this is the last page of the table, false otherwise
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Sets whether this is the last page of the table.
+	 *
+	 * @param complete true if this is the last page of the table, false
+	 * otherwise
+	 */
+	public void setComplete(boolean complete) {
+		this.complete = complete;
+	}
+}
@@ -0,0 +1,203 @@
+package nl.rrd.senseeact.dao.sync;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseAction;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * A SyncWatermark object summarises the database actions ({@link
+ * DatabaseAction DatabaseAction}) that have been logged for a table, user and
+ * source. It contains the time and order number of the latest action and the
+ * number of logged actions. Select actions are not included. The watermarks
+ * are maintained by the {@link nl.rrd.senseeact.dao.Database Database} when
+ * it writes database actions, so the synchroniser can find out whether there
+ * are new actions without scanning the action log.
+ *
+ * <p>The count is the number of actions that were logged. It does not
+ * decrease when actions are merged or purged later, so it should be used as
+ * an estimation.</p>
+ *
+ * <p>The ID of a watermark is derived from the table, user and source (see
+ * {@link #getKeyId(String, String, String) getKeyId()}), so a watermark can
+ * be inserted or updated in one atomic statement.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SyncWatermark extends BaseDatabaseObject {
+	@JsonIgnore
+	private String id;
+
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String table;
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String user;
+	@DatabaseField(value=DatabaseType.STRING)
+	private String source;
+	@DatabaseField(value=DatabaseType.LONG)
+	private long time;
+	@DatabaseField(value=DatabaseType.INT)
+	private int order;
+	@DatabaseField(value=DatabaseType.INT)
+	private int count = 0;
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	/**
+	 * Returns the table name.
+	 *
+	 * @return the table name (lower case)
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * Sets the table name.
+	 *
+	 * @param table the table name (lower case)
+	 */
+	public void setTable(String table) {
+		this.table = table;
+	}
+
+	/**
+	 * Returns the user name. This is null for a table without a user field.
+	 *
+	 * @return the user name or null
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Sets the user name. This is null for a table without a user field.
+	 *
+	 * @param user the user name or null
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Returns the source of the database actions.
+	 *
+	 * @return the source
+	 */
+	public String getSource() {
+		return source;
+	}
+
+	/**
+	 * Sets the source of the database actions.
+	 *
+	 * @param source the source
+	 */
+	public void setSource(String source) {
+		this.source = source;
+	}
+
+	/**
+	 * Returns the time of the latest database action.
+	 *
+	 * @return the time of the latest database action
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Sets the time of the latest database action.
+	 *
+	 * @param time the time of the latest database action
+	 */
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * Returns the order number of the latest database action.
+	 *
+	 * @return the order number of the latest database action
+	 */
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Sets the order number of the latest database action.
+	 *
+	 * @param order the order number of the latest database action
+	 */
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	/**
+	 * Returns the number of database actions that have been logged.
+	 *
+	 * @return the number of database actions
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Sets the number of database actions that have been logged.
+	 *
+	 * @param count the number of database actions
+	 */
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	/**
+	 * Returns whether the latest database action of this watermark is after
+	 * the specified time and order number.
+	 *
+	 * @param time the time
+	 * @param order the order number
+	 * @return true if the latest action is after the specified time and
+	 * order, false otherwise
+	 */
+	public boolean isAfter(long time, int order) {
+		return this.time > time || (this.time == time && this.order > order);
+	}
+
+	/**
+	 * Returns the ID of the watermark for the specified table, user and
+	 * source. It is a hex string of a SHA-256 hash.
+	 *
+	 * @param table the table name (lower case)
+	 * @param user the user name or null
+	 * @param source the source of the database actions
+	 * @return the ID
+	 */
+	public static String getKeyId(String table, String user, String source) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException("Algorithm SHA-256 not found: " +
+					ex.getMessage(), ex);
+		}
+		String key = table + "\n" + (user == null ? "" : user) + "\n" +
+				source;
+		byte[] hash = md.digest(key.getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(hash);
+	}
+}
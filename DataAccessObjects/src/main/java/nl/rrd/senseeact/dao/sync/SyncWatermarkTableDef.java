@@ -0,0 +1,83 @@
+package nl.rrd.senseeact.dao.sync;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseObjectMapper;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is a special database table that is used for synchronisation with a
+ * remote database. It contains a {@link SyncWatermark SyncWatermark} for each
+ * table, user and source of logged database actions. In the database it's
+ * stored in a table with name "_sync_watermark".
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SyncWatermarkTableDef extends DatabaseTableDef<SyncWatermark> {
+	public static final String NAME = "_sync_watermark";
+
+	private static final int VERSION = 1;
+
+	public SyncWatermarkTableDef() {
+		super(NAME, SyncWatermark.class, VERSION, false);
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		if (version == 0)
+			return upgradeTableV0(db, physTable);
+		else
+			return 1;
+	}
+
+	/**
+	 * Replaces the generated IDs of the watermarks with IDs that are derived
+	 * from the table, user and source. See {@link
+	 * SyncWatermark#getKeyId(String, String, String) getKeyId()}. Duplicate
+	 * watermarks for the same key are merged.
+	 *
+	 * @param db the database
+	 * @param physTable the physical table
+	 * @return the new version
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private int upgradeTableV0(Database db, String physTable)
+			throws DatabaseException {
+		List<Map<String,?>> maps = db.selectMaps(physTable, null, null, 0,
+				null);
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		Map<String,SyncWatermark> idMap = new LinkedHashMap<>();
+		for (Map<String,?> map : maps) {
+			SyncWatermark watermark = mapper.mapToObject(map,
+					SyncWatermark.class, false);
+			String id = SyncWatermark.getKeyId(watermark.getTable(),
+					watermark.getUser(), watermark.getSource());
+			SyncWatermark current = idMap.get(id);
+			if (current == null) {
+				watermark.setId(id);
+				idMap.put(id, watermark);
+			} else {
+				if (!current.isAfter(watermark.getTime(),
+						watermark.getOrder())) {
+					current.setTime(watermark.getTime());
+					current.setOrder(watermark.getOrder());
+				}
+				current.setCount(current.getCount() + watermark.getCount());
+			}
+		}
+		db.delete(physTable, null, null);
+		List<Map<String,Object>> insertMaps = new ArrayList<>();
+		for (SyncWatermark watermark : idMap.values()) {
+			insertMaps.add(mapper.objectToMap(watermark, true));
+		}
+		if (!insertMaps.isEmpty())
+			db.insertMaps(physTable, insertMaps);
+		return 1;
+	}
+}
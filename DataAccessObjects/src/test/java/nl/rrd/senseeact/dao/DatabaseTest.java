@@ -3,7 +3,10 @@ package nl.rrd.senseeact.dao;
 import nl.rrd.utils.exception.DatabaseException;
 import org.junit.Assert;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
@@ -364,4 +367,138 @@ public class DatabaseTest {
 			}
 		}
 	}
+
+	public void testUserPartitioning() throws Exception {
+		Database db = initDatabase(true);
+
+		PrimitiveTestObjectFixture fixture = new PrimitiveTestObjectFixture();
+		List<PrimitiveTestObject> testObjListUser1 = new ArrayList<>();
+		List<PrimitiveTestObject> testObjListUser2 = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			testObjListUser1.add(fixture.createRandomTestObject("testuser1"));
+			testObjListUser2.add(fixture.createRandomTestObject("testuser2"));
+		}
+		db.insert(PrimitiveTestTable.NAME, testObjListUser1);
+		db.insert(PrimitiveTestTable.NAME, testObjListUser2);
+
+		// merge user tables into one partitioned table
+		dbConn.setUserPartitioning(true);
+		try {
+			db = initDatabase(true);
+			Assert.assertFalse(db.selectDbTables().stream().anyMatch(
+					table -> table.startsWith(PrimitiveTestTable.NAME +
+					Database.TABLE_TOKEN_SEP)));
+			Assert.assertEquals(testObjListUser1.size() +
+					testObjListUser2.size(), db.count(PrimitiveTestTable.NAME,
+					PrimitiveTestObject.class, null));
+			assertUserRecords(db, "testuser1", testObjListUser1);
+			assertUserRecords(db, "testuser2", testObjListUser2);
+			PrimitiveTestObject inserted = fixture.createRandomTestObject(
+					"testuser1");
+			db.insert(PrimitiveTestTable.NAME, inserted);
+			testObjListUser1.add(inserted);
+		} finally {
+			dbConn.setUserPartitioning(false);
+		}
+
+		// split the partitioned table into user tables again
+		db = initDatabase(true);
+		Assert.assertFalse(db.selectDbTables().contains(
+				PrimitiveTestTable.NAME));
+		assertUserRecords(db, "testuser1", testObjListUser1);
+		assertUserRecords(db, "testuser2", testObjListUser2);
+	}
+
+	public void testLocalTimeMillis() throws Exception {
+		Database db = dbConn.initDatabase(dbName, Collections.singletonList(
+				new LocalTimeTestTable<>(LocalTimeTestObject.class)), false);
+		Assert.assertFalse(db.hasColumn(LocalTimeTestTable.NAME,
+				LocalTimeColumn.LOCAL_TIME_MILLIS));
+		LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+		List<LocalTimeTestObject> oldObjs = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			LocalTimeTestObject obj = new LocalTimeTestObject();
+			obj.setLocalTime(start.plusHours(i).format(
+					LocalTimeColumn.FORMAT));
+			obj.setValue(i);
+			oldObjs.add(obj);
+		}
+		db.insert(LocalTimeTestTable.NAME, oldObjs);
+
+		// the data class gets the shadow field: initTable adds the column
+		LocalTimeTestTable<LocalTimeMillisTestObject> table =
+				new LocalTimeTestTable<>(LocalTimeMillisTestObject.class);
+		db = dbConn.initDatabase(dbName, Collections.singletonList(table),
+				false);
+		Assert.assertTrue(db.hasColumn(LocalTimeTestTable.NAME,
+				LocalTimeColumn.LOCAL_TIME_MILLIS));
+		LocalTimeMillisTestObject newObj = new LocalTimeMillisTestObject();
+		newObj.setLocalTime(start.plusHours(5).format(LocalTimeColumn.FORMAT));
+		newObj.setValue(5);
+		db.insert(LocalTimeTestTable.NAME, newObj);
+		List<LocalTimeMillisTestObject> objs = db.select(table, null, 0,
+				null);
+		Assert.assertEquals(6, objs.size());
+		int nullCount = 0;
+		for (LocalTimeMillisTestObject obj : objs) {
+			if (obj.getLocalTimeMillis() == null)
+				nullCount++;
+		}
+		// the existing records are filled in later in the background
+		Assert.assertEquals(5, nullCount);
+		Assert.assertFalse(db.isLocalTimeMillisComplete(
+				LocalTimeTestTable.NAME));
+		Assert.assertEquals(Collections.singletonList(LocalTimeTestTable.NAME),
+				db.getLocalTimeMillisBackfillTables());
+
+		// before the backfill, comparisons and sorting use localTime
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.GreaterEqual("localTime",
+					start.plusHours(1).format(LocalTimeColumn.FORMAT)),
+				new DatabaseCriteria.LessThan("localTime",
+					start.plusHours(5).format(LocalTimeColumn.FORMAT)));
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("localTime", false)
+		};
+		Assert.assertEquals(Arrays.asList(4, 3, 2, 1), getValues(
+				db.select(table, criteria, 0, sort)));
+
+		db.backfillLocalTimeMillis(LocalTimeTestTable.NAME);
+		Assert.assertTrue(db.isLocalTimeMillisComplete(
+				LocalTimeTestTable.NAME));
+		Assert.assertTrue(db.getLocalTimeMillisBackfillTables().isEmpty());
+		objs = db.select(table, null, 0, null);
+		Assert.assertEquals(6, objs.size());
+		for (LocalTimeMillisTestObject obj : objs) {
+			Assert.assertEquals(LocalTimeColumn.toMillis(obj.getLocalTime()),
+					obj.getLocalTimeMillis());
+		}
+
+		// after the backfill, comparisons and sorting use the shadow field
+		Assert.assertEquals(Arrays.asList(4, 3, 2, 1), getValues(
+				db.select(table, criteria, 0, sort)));
+
+		// the completion marker is stored in the table metadata
+		db = dbConn.initDatabase(dbName, Collections.singletonList(table),
+				false);
+		Assert.assertTrue(db.isLocalTimeMillisComplete(
+				LocalTimeTestTable.NAME));
+	}
+
+	private List<Integer> getValues(List<LocalTimeMillisTestObject> objs) {
+		List<Integer> values = new ArrayList<>();
+		for (LocalTimeMillisTestObject obj : objs) {
+			values.add(obj.getValue());
+		}
+		return values;
+	}
+
+	private void assertUserRecords(Database db, String user,
+			List<PrimitiveTestObject> expected) throws DatabaseException {
+		DatabaseCriteria criteria = new DatabaseCriteria.Equal("user", user);
+		List<PrimitiveTestObject> selectedList = db.select(
+				new PrimitiveTestTable(true), criteria, 0, null);
+		Assert.assertEquals(new HashSet<>(expected),
+				new HashSet<>(selectedList));
+	}
 }
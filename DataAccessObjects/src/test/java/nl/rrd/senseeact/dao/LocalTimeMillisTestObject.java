@@ -0,0 +1,14 @@
+package nl.rrd.senseeact.dao;
+
+public class LocalTimeMillisTestObject extends LocalTimeTestObject {
+	@DatabaseField(value=DatabaseType.LONG, index=true)
+	private Long localTimeMillis;
+
+	public Long getLocalTimeMillis() {
+		return localTimeMillis;
+	}
+
+	public void setLocalTimeMillis(Long localTimeMillis) {
+		this.localTimeMillis = localTimeMillis;
+	}
+}
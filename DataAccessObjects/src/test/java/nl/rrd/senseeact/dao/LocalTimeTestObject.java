@@ -0,0 +1,24 @@
+package nl.rrd.senseeact.dao;
+
+public class LocalTimeTestObject extends BaseDatabaseObject {
+	@DatabaseField(value=DatabaseType.STRING)
+	private String localTime;
+	@DatabaseField(value=DatabaseType.INT)
+	private int value;
+
+	public String getLocalTime() {
+		return localTime;
+	}
+
+	public void setLocalTime(String localTime) {
+		this.localTime = localTime;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	public void setValue(int value) {
+		this.value = value;
+	}
+}
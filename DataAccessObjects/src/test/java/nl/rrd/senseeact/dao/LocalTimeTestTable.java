@@ -0,0 +1,20 @@
+package nl.rrd.senseeact.dao;
+
+import nl.rrd.utils.exception.DatabaseException;
+
+public class LocalTimeTestTable<T extends LocalTimeTestObject>
+		extends DatabaseTableDef<T> {
+	public static final String NAME = "localtimetest";
+
+	private static final int VERSION = 0;
+
+	public LocalTimeTestTable(Class<T> dataClass) {
+		super(NAME, dataClass, VERSION, false);
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
@@ -0,0 +1,101 @@
+package nl.rrd.senseeact.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PackedArrayCodecTest {
+
+	@Test
+	public void testEmpty() {
+		String encoded = PackedArrayCodec.encode(new long[0]);
+		Assert.assertEquals("", encoded);
+		Assert.assertArrayEquals(new long[0], PackedArrayCodec.decode(
+				encoded));
+	}
+
+	@Test
+	public void testNegative() {
+		assertRoundTrip(new long[] { -1, -2, -100, 0, -1000000, 5, -5 });
+	}
+
+	@Test
+	public void testMinMax() {
+		assertRoundTrip(new long[] { Long.MIN_VALUE });
+		assertRoundTrip(new long[] { Long.MAX_VALUE });
+		assertRoundTrip(new long[] { Long.MAX_VALUE, Long.MIN_VALUE,
+				Long.MAX_VALUE, 0, Long.MIN_VALUE, -1, Long.MAX_VALUE });
+		assertRoundTrip(new long[] { Integer.MIN_VALUE, Integer.MAX_VALUE });
+	}
+
+	@Test
+	public void testRandom() {
+		Random random = new Random(1);
+		for (int i = 0; i < 100; i++) {
+			long[] values = new long[random.nextInt(50)];
+			for (int j = 0; j < values.length; j++) {
+				values[j] = random.nextLong();
+			}
+			assertRoundTrip(values);
+		}
+	}
+
+	@Test
+	public void testMalformed() {
+		// not Base64
+		assertInvalid("!!!");
+		// last value not terminated
+		assertInvalid(Base64.getEncoder().encodeToString(
+				new byte[] { 2, (byte)0x80 }));
+		// value longer than 64 bits
+		byte[] bytes = new byte[11];
+		Arrays.fill(bytes, (byte)0xFF);
+		bytes[10] = 1;
+		assertInvalid(Base64.getEncoder().encodeToString(bytes));
+	}
+
+	@Test
+	public void testActionData() throws Exception {
+		List<String> fields = Collections.singletonList("values");
+		Map<String,Object> record = new LinkedHashMap<>();
+		record.put("id", "1");
+		record.put("values", PackedArrayCodec.encode(
+				new long[] { 3, -1, Long.MAX_VALUE }));
+		Map<String,?> data = PackedArrayColumn.toActionData(fields, record);
+		Assert.assertEquals("[3,-1," + Long.MAX_VALUE + "]",
+				data.get("values"));
+		Assert.assertEquals(record.get("id"), data.get("id"));
+
+		// remote actions may have a JSON string or a list
+		Map<String,Object> remote = new LinkedHashMap<>(data);
+		PackedArrayColumn.pack(fields, remote);
+		Assert.assertEquals(record, remote);
+		remote.put("values", new ArrayList<>(Arrays.asList(3, -1,
+				Long.MAX_VALUE)));
+		PackedArrayColumn.pack(fields, remote);
+		Assert.assertEquals(record, remote);
+		PackedArrayColumn.pack(fields, remote);
+		Assert.assertEquals(record, remote);
+	}
+
+	private void assertRoundTrip(long[] values) {
+		String encoded = PackedArrayCodec.encode(values);
+		Assert.assertArrayEquals(values, PackedArrayCodec.decode(encoded));
+	}
+
+	private void assertInvalid(String encoded) {
+		try {
+			PackedArrayCodec.decode(encoded);
+			Assert.fail("Expected IllegalArgumentException for: " + encoded);
+		} catch (IllegalArgumentException ex) {
+		}
+	}
+}
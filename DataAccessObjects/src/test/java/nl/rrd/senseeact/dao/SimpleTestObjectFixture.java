@@ -154,6 +154,27 @@ public class SimpleTestObjectFixture {
 		result = selectObjects(6, 10, 11, 12);
 		selectTests.add(new SelectTestResult<SimpleTestObject>(
 				"and or", criteria, 0, sort, result));
+
+		criteria = new DatabaseCriteria.StartsWith("key", "c");
+		sort = null;
+		result = selectObjects(3);
+		selectTests.add(new SelectTestResult<SimpleTestObject>(
+				"starts with", criteria, 0, sort, result));
+
+		criteria = new DatabaseCriteria.StartsWith("value", "y%");
+		sort = null;
+		result = selectObjects();
+		selectTests.add(new SelectTestResult<SimpleTestObject>(
+				"starts with escaped wildcard", criteria, 0, sort, result));
+
+		criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.EndsWith("extra", "tra"),
+				new DatabaseCriteria.GreaterThan("order", 4)
+		);
+		sort = new DatabaseSort[] { new DatabaseSort("order", true) };
+		result = selectObjects(5, 7, 8);
+		selectTests.add(new SelectTestResult<SimpleTestObject>(
+				"ends with, limit", criteria, 3, sort, result));
 	}
 
 	public List<SimpleTestObject> getInserts() {
@@ -0,0 +1,88 @@
+package nl.rrd.senseeact.dao;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeOrderedRecordIdGeneratorTest {
+
+	@Test
+	public void testOrder() {
+		TestGenerator generator = new TestGenerator();
+		String last = null;
+		for (int i = 0; i < 1000; i++) {
+			if (i % 10 == 0)
+				generator.now++;
+			String id = generator.generateId();
+			assertValidId(id);
+			if (last != null)
+				assertIncreasing(last, id);
+			last = id;
+		}
+		Assert.assertEquals(generator.now, getTime(last));
+	}
+
+	@Test
+	public void testCounterOverflow() {
+		// the counter has 12 bits, so at most 4096 IDs fit in one millisecond
+		TestGenerator generator = new TestGenerator();
+		long start = generator.now;
+		String last = generator.generateId();
+		Assert.assertEquals(start, getTime(last));
+		for (int i = 0; i < 10000; i++) {
+			String id = generator.generateId();
+			assertValidId(id);
+			assertIncreasing(last, id);
+			last = id;
+		}
+		Assert.assertTrue(getTime(last) >= start + 2);
+
+		// IDs in the next real millisecond still follow the advanced time
+		generator.now++;
+		String id = generator.generateId();
+		assertIncreasing(last, id);
+		Assert.assertEquals(getTime(last), getTime(id));
+	}
+
+	@Test
+	public void testClockBack() {
+		TestGenerator generator = new TestGenerator();
+		String last = generator.generateId();
+		generator.now -= 5000;
+		for (int i = 0; i < 100; i++) {
+			String id = generator.generateId();
+			assertValidId(id);
+			assertIncreasing(last, id);
+			last = id;
+		}
+
+		// when the clock has caught up, the real time is used again
+		generator.now += 10000;
+		String id = generator.generateId();
+		assertIncreasing(last, id);
+		Assert.assertEquals(generator.now, getTime(id));
+	}
+
+	private void assertIncreasing(String prev, String next) {
+		Assert.assertTrue(prev + " >= " + next, prev.compareTo(next) < 0);
+	}
+
+	private void assertValidId(String id) {
+		Assert.assertTrue(id, id.matches("[0-9a-f]{32}"));
+		// version 7 and variant 2
+		Assert.assertEquals('7', id.charAt(12));
+		Assert.assertTrue(id, "89ab".indexOf(id.charAt(16)) != -1);
+	}
+
+	private long getTime(String id) {
+		return Long.parseLong(id.substring(0, 12), 16);
+	}
+
+	private static class TestGenerator extends TimeOrderedRecordIdGenerator {
+		private long now = 1700000000000L;
+
+		@Override
+		long currentTimeMillis() {
+			return now;
+		}
+	}
+}
@@ -1,12 +1,29 @@
 package nl.rrd.senseeact.dao.mariadb;
 
+import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
 import nl.rrd.senseeact.dao.DatabaseTest;
+import nl.rrd.senseeact.dao.SimpleTestObject;
+import nl.rrd.senseeact.dao.SimpleTestTable;
+import nl.rrd.senseeact.dao.cluster.ClusterEvent;
+import nl.rrd.senseeact.dao.cluster.DatabaseClusterEventBus;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 public class MariaDBDatabaseTest {
+	private static final int REPLICATION_TIMEOUT = 10000; // milliseconds
+	private static final int CLUSTER_EVENT_TIMEOUT = 10000; // milliseconds
+
+	private MariaDBDatabaseFactory dbFactory = null;
+	private String dbName = null;
 	private DatabaseConnection dbConn = null;
 	private DatabaseTest dbTest = null;
 
@@ -21,12 +38,18 @@ public class MariaDBDatabaseTest {
 				"testMysqlPort", "3306"));
 		String user = System.getProperty("testMysqlUser");
 		String password = System.getProperty("testMysqlPassword");
-		String dbName = System.getProperty("testMysqlDatabase");
-		MariaDBDatabaseFactory dbFactory = new MariaDBDatabaseFactory();
+		dbName = System.getProperty("testMysqlDatabase");
+		dbFactory = new MariaDBDatabaseFactory();
 		dbFactory.setHost(host);
 		dbFactory.setPort(port);
 		dbFactory.setUser(user);
 		dbFactory.setPassword(password);
+		// a second MariaDB server that replicates the first server
+		String replicaHost = System.getProperty("testMysqlReplicaHost");
+		if (replicaHost != null && !replicaHost.isEmpty()) {
+			dbFactory.addReplica(replicaHost, Integer.parseInt(
+					System.getProperty("testMysqlReplicaPort", "3306")));
+		}
 		dbConn = dbFactory.connect();
 		dbConn.dropDatabase(dbName);
 		dbTest = new DatabaseTest(dbConn, dbName);
@@ -88,6 +111,130 @@ public class MariaDBDatabaseTest {
 		dbTest.testSelectQuerySplitByUser();
 	}
 
+	@Test
+	public void testUserPartitioning() throws Exception {
+		if (dbTest == null)
+			return;
+		dbTest.testUserPartitioning();
+	}
+
+	@Test
+	public void testLocalTimeMillis() throws Exception {
+		if (dbTest == null)
+			return;
+		dbTest.testLocalTimeMillis();
+	}
+
+	@Test
+	public void testUserPartitioningRenameColumn() throws Exception {
+		if (dbTest == null)
+			return;
+		dbConn.setUserPartitioning(true);
+		try {
+			SimpleTestTable table = new SimpleTestTable(true);
+			MariaDBDatabase db = (MariaDBDatabase)dbConn.initDatabase(dbName,
+					Collections.singletonList(table), true);
+			SimpleTestObject obj = new SimpleTestObject();
+			obj.setUser("user1");
+			obj.setKey("key1");
+			obj.setValue("value1");
+			db.insert(table.getName(), obj);
+			// renaming a column recreates the table
+			db.renameColumn(table.getName(), "extra", "extra2");
+			db.renameColumn(table.getName(), "extra2", "extra");
+			Assert.assertTrue(db.getIndices(table.getName()).stream()
+					.anyMatch(db::isUserPartitionIndex));
+			List<SimpleTestObject> records = db.select(table,
+					new DatabaseCriteria.Equal("user", "user1"), 0, null);
+			Assert.assertEquals(1, records.size());
+			Assert.assertEquals(obj.getId(), records.get(0).getId());
+		} finally {
+			dbConn.setUserPartitioning(false);
+		}
+	}
+
+	@Test
+	public void testReplica() throws Exception {
+		if (dbTest == null || dbFactory.getReplicaCount() == 0)
+			return;
+		SimpleTestTable table = new SimpleTestTable(false);
+		Database db = dbConn.initDatabase(dbName,
+				Collections.singletonList(table), true);
+		SimpleTestObject obj = new SimpleTestObject();
+		obj.setUser("user1");
+		obj.setKey("key1");
+		obj.setValue("value1");
+		db.insert(table.getName(), obj);
+		DatabaseConnection replicaConn = dbFactory.connectReplica(0);
+		try {
+			long start = System.currentTimeMillis();
+			List<SimpleTestObject> records = Collections.emptyList();
+			while (records.isEmpty() && System.currentTimeMillis() - start <
+					REPLICATION_TIMEOUT) {
+				Thread.sleep(100);
+				try {
+					Database replicaDb = replicaConn.getDatabase(dbName);
+					records = replicaDb.select(table, null, 0, null);
+				} catch (Exception ex) {
+					// database or table not replicated yet
+				}
+			}
+			Assert.assertEquals(1, records.size());
+			Assert.assertEquals(obj.getId(), records.get(0).getId());
+			Assert.assertEquals("value1", records.get(0).getValue());
+		} finally {
+			replicaConn.close();
+		}
+	}
+
+	@Test
+	public void testClusterEventBus() throws Exception {
+		if (dbTest == null)
+			return;
+		DatabaseClusterEventBus bus1 = new DatabaseClusterEventBus(dbFactory,
+				dbName);
+		DatabaseClusterEventBus bus2 = new DatabaseClusterEventBus(dbFactory,
+				dbName);
+		bus1.setPollInterval(100);
+		bus2.setPollInterval(100);
+		List<ClusterEvent> received1 = new ArrayList<>();
+		List<ClusterEvent> received2 = new ArrayList<>();
+		bus1.addListener("test", event -> {
+			synchronized (received1) {
+				received1.add(event);
+			}
+		});
+		bus2.addListener("test", event -> {
+			synchronized (received2) {
+				received2.add(event);
+				received2.notifyAll();
+			}
+		});
+		bus1.start();
+		bus2.start();
+		try {
+			bus1.publish("test", Map.of("key", "value1"));
+			synchronized (received2) {
+				long end = System.currentTimeMillis() + CLUSTER_EVENT_TIMEOUT;
+				long now = System.currentTimeMillis();
+				while (received2.isEmpty() && now < end) {
+					received2.wait(end - now);
+					now = System.currentTimeMillis();
+				}
+				Assert.assertEquals(1, received2.size());
+				Assert.assertEquals(bus1.getNodeId(),
+						received2.get(0).getNode());
+				Assert.assertEquals("value1", received2.get(0).get("key"));
+			}
+			synchronized (received1) {
+				Assert.assertTrue(received1.isEmpty());
+			}
+		} finally {
+			bus1.close();
+			bus2.close();
+		}
+	}
+
 	@After
 	public void cleanup() throws Exception {
 		if (dbConn != null)
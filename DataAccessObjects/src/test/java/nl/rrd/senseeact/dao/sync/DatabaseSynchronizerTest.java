@@ -51,6 +51,10 @@ public class DatabaseSynchronizerTest {
 		testInserts();
 		testSyncActions();
 		testMergedActions();
+		testLargeUpload();
+		testCompaction();
+		testSnapshot();
+		testRangeDelete();
 	}
 	
 	private void testInserts() throws Exception {
@@ -118,6 +122,14 @@ public class DatabaseSynchronizerTest {
 		Assert.assertEquals(0, progress.size());
 		actions = syncRead.readSyncActions(serverDb, progress, 0, null,
 				List.of("client1"));
+		SyncActionStats stats = syncRead.getSyncActionStats(serverDb,
+				progress, List.of("client1"));
+		Assert.assertTrue(stats.getCount() >= actions.size());
+		long latestTime = 0;
+		for (DatabaseAction action : actions) {
+			latestTime = Math.max(latestTime, action.getTime());
+		}
+		Assert.assertEquals(Long.valueOf(latestTime), stats.getLatestTime());
 		syncWrite.writeSyncActions(client1Db, actions, "server");
 		// try to write the same actions again
 		syncWrite.writeSyncActions(client1Db, actions, "server");
@@ -127,6 +139,13 @@ public class DatabaseSynchronizerTest {
 		}, "testuser1");
 		progress = syncWrite.getSyncProgress(client1Db);
 		assertEqualProgress(actions, progress);
+		// the watermarks show that there are no new actions
+		stats = syncRead.getSyncActionStats(serverDb, progress,
+				List.of("client1"));
+		Assert.assertEquals(0, stats.getCount());
+		Assert.assertNull(stats.getLatestTime());
+		Assert.assertTrue(syncRead.readSyncActions(serverDb, progress, 0,
+				null, List.of("client1")).isEmpty());
 
 		// synchronize from client2 to server
 		logger.info("Synchronize from client2 to server");
@@ -219,6 +238,44 @@ public class DatabaseSynchronizerTest {
 		actions = syncRead.readSyncActions(serverDb, progress, 0, null,
 				List.of("client1"));
 		Assert.assertEquals(9, actions.size());
+		// parallel reads should return the same actions
+		SyncReadExecutor readExecutor = new SyncReadExecutor(4, null);
+		try {
+			DatabaseSynchronizer parallelRead = new DatabaseSynchronizer(
+					SyncTestFixture.USER1, true);
+			parallelRead.setParallelReads(readExecutor);
+			List<DatabaseAction> parallelActions = parallelRead.readSyncActions(
+					serverDb, progress, 0, null, List.of("client1"));
+			assertEqualActionIds(actions, parallelActions);
+			// a parallel batch should contain the oldest actions across tables,
+			// still grouped by table
+			parallelActions = parallelRead.readSyncActions(serverDb, progress, 4,
+					null, List.of("client1"));
+			assertEqualActionIds(getOldestActions(actions, 4), parallelActions);
+			// reading parallel batches should return all actions exactly once
+			List<SyncProgress> batchProgress = progress;
+			List<DatabaseAction> batchActions = new ArrayList<>();
+			int batchCount = 0;
+			while (true) {
+				parallelActions = parallelRead.readSyncActions(serverDb,
+						batchProgress, 4, null, List.of("client1"));
+				if (parallelActions.isEmpty())
+					break;
+				Assert.assertTrue(parallelActions.size() <= 4);
+				batchCount++;
+				batchActions.addAll(parallelActions);
+				batchProgress = syncWrite.getProgressAfterActions(batchProgress,
+						parallelActions);
+			}
+			Assert.assertEquals(3, batchCount);
+			Assert.assertEquals(actions.size(), batchActions.size());
+			Assert.assertEquals(getActionIdSet(actions),
+					getActionIdSet(batchActions));
+		} finally {
+			readExecutor.close();
+		}
+		List<SyncProgress> expectedProgress =
+				syncWrite.getProgressAfterActions(progress, actions);
 		syncWrite.writeSyncActions(client1Db, actions, "server");
 		// try to write the same actions again
 		syncWrite.writeSyncActions(client1Db, actions, "server");
@@ -230,6 +287,7 @@ public class DatabaseSynchronizerTest {
 		}, "testuser1");
 		progress = syncWrite.getSyncProgress(client1Db);
 		assertEqualProgress(actions, progress);
+		assertEqualProgress(actions, expectedProgress);
 	}
 
 	public void testSyncActions() throws Exception {
@@ -330,6 +388,256 @@ public class DatabaseSynchronizerTest {
 		dbSync.writeSyncActions(db, actions, "remote");
 	}
 
+	/**
+	 * Writes a large upload with more records than are read in one batch
+	 * during validation. It contains inserts, updates and deletes of the same
+	 * records and updates of records that were deleted earlier in the same
+	 * upload.
+	 */
+	public void testLargeUpload() throws Exception {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		serverDbConn.dropDatabase(serverDbName);
+		Database db = initDatabase(serverDbConn, serverDbName);
+		String user = SyncTestFixture.USER1;
+		DatabaseSynchronizer dbSync = new DatabaseSynchronizer(user, false);
+		SyncTestUser1Table table = new SyncTestUser1Table();
+		DatabaseObjectMapper dbMapper = new DatabaseObjectMapper();
+		ObjectMapper jsonMapper = new ObjectMapper();
+		int count = 2000;
+		long now = System.currentTimeMillis();
+		int order = 0;
+		List<DatabaseAction> actions = new ArrayList<>();
+		List<SyncTestUserObject> objects = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			SyncTestUserObject object = new SyncTestUserObject();
+			object.setId(UUID.randomUUID().toString().toLowerCase()
+					.replaceAll("-", ""));
+			object.setUser(user);
+			object.setSource("remote");
+			object.setIntField(i);
+			objects.add(object);
+			Map<String,Object> map = dbMapper.objectToMap(object, false);
+			actions.add(createLargeUploadAction(table, user, Action.INSERT,
+					object.getId(), jsonMapper.writeValueAsString(map), now,
+					order++));
+		}
+		for (int i = 0; i < count; i += 2) {
+			SyncTestUserObject object = objects.get(i);
+			object.setIntField(object.getIntField() + count);
+			Map<String,Object> updateData = new LinkedHashMap<>();
+			updateData.put("intField", object.getIntField());
+			actions.add(createLargeUploadAction(table, user, Action.UPDATE,
+					object.getId(), jsonMapper.writeValueAsString(updateData),
+					now, order++));
+		}
+		Set<SyncTestUserObject> expected = new HashSet<>();
+		List<DatabaseAction> deleteActions = new ArrayList<>();
+		List<DatabaseAction> skipActions = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			SyncTestUserObject object = objects.get(i);
+			if (i % 3 != 0) {
+				expected.add(object);
+				continue;
+			}
+			deleteActions.add(createLargeUploadAction(table, user,
+					Action.DELETE, object.getId(), null, now, order++));
+			Map<String,Object> updateData = new LinkedHashMap<>();
+			updateData.put("intField", -1);
+			skipActions.add(createLargeUploadAction(table, user,
+					Action.UPDATE, object.getId(),
+					jsonMapper.writeValueAsString(updateData), now, order++));
+		}
+		actions.addAll(deleteActions);
+		actions.addAll(skipActions);
+		long start = System.currentTimeMillis();
+		dbSync.writeSyncActions(db, actions, "remote");
+		logger.info("Wrote {} actions in {} ms", actions.size(),
+				System.currentTimeMillis() - start);
+		Assert.assertEquals(expected, new HashSet<>(db.select(table, null, 0,
+				null)));
+		// clear progress and write again: inserts of existing records are
+		// changed to updates, and deletes of deleted records are skipped
+		db.delete(new SyncProgressTableDef(), null);
+		dbSync.writeSyncActions(db, actions, "remote");
+		Assert.assertEquals(expected, new HashSet<>(db.select(table, null, 0,
+				null)));
+	}
+
+	/**
+	 * Compacts the action log. Actions on a deleted record are removed only
+	 * after the known consumer has read them.
+	 */
+	public void testCompaction() throws Exception {
+		serverDbConn.dropDatabase(serverDbName);
+		Database db = initDatabase(serverDbConn, serverDbName);
+		String user = SyncTestFixture.USER1;
+		SyncTestUser1Table table = new SyncTestUser1Table();
+		List<SyncTestUserObject> objects = fixture.getUserObjects(
+				Source.SERVER, table.getName(), 0, user);
+		db.insert(table.getName(), objects);
+		db.delete(table.getName(), objects.get(0));
+		DatabaseSynchronizer sync = new DatabaseSynchronizer(user, false);
+		sync.setIncludeTables(List.of(table.getName()));
+		ActionLogCompactor compactor = new ActionLogCompactor();
+		compactor.setDefaultRetention(0);
+		// the consumer has not read anything yet
+		sync.saveConsumerProgress(db, "consumer", null);
+		ActionLogCompactor.Result result = compactor.compact(db);
+		Assert.assertEquals(0, result.getDeletedRows());
+		List<DatabaseAction> actions = sync.readSyncActions(db, null, 0, null,
+				null);
+		Assert.assertEquals(objects.size(), actions.size());
+		// the consumer has read everything; without checkpoint the forward
+		// progress would only be saved after the save interval
+		sync.saveConsumerProgress(db, "consumer",
+				sync.getProgressAfterActions(null, actions), true);
+		result = compactor.compact(db);
+		// the delete is kept as a tombstone for consumers that are behind
+		Assert.assertEquals(0, result.getDeletedRows());
+		actions = sync.readSyncActions(db, null, 0, null, null);
+		Assert.assertEquals(objects.size(), actions.size());
+		int deleteCount = 0;
+		for (DatabaseAction action : actions) {
+			if (action.getAction() == Action.DELETE) {
+				Assert.assertEquals(objects.get(0).getId(),
+						action.getRecordId());
+				deleteCount++;
+			} else {
+				Assert.assertEquals(Action.INSERT, action.getAction());
+			}
+		}
+		Assert.assertEquals(1, deleteCount);
+	}
+
+	/**
+	 * Bootstraps a client database from a snapshot with one record per page.
+	 * After the snapshot only new actions are read.
+	 */
+	public void testSnapshot() throws Exception {
+		serverDbConn.dropDatabase(serverDbName);
+		client1DbConn.dropDatabase(client1DbName);
+		Database serverDb = initDatabase(serverDbConn, serverDbName);
+		Database client1Db = initDatabase(client1DbConn, client1DbName);
+		String user = SyncTestFixture.USER1;
+		for (DatabaseTableDef<SyncTestUserObject> table : userTables) {
+			List<SyncTestUserObject> objects = fixture.getUserObjects(
+					Source.SERVER, table.getName(), 0, user);
+			serverDb.insert(table.getName(), objects);
+			serverDb.delete(table.getName(), objects.get(0));
+		}
+		DatabaseSynchronizer syncRead = new DatabaseSynchronizer(user, false);
+		DatabaseSynchronizer syncWrite = new DatabaseSynchronizer(user,
+				false);
+		SyncSnapshot snapshot = null;
+		while (true) {
+			snapshot = syncRead.readSyncSnapshot(serverDb,
+					syncWrite.getSyncProgress(client1Db), snapshot, 1);
+			if (snapshot.getTable() == null)
+				break;
+			Assert.assertTrue(snapshot.getActions().size() <= 1);
+			syncWrite.writeSyncSnapshot(client1Db, snapshot, "server");
+		}
+		assertEqualTables(serverDb, client1Db);
+		List<SyncProgress> progress = syncWrite.getSyncProgress(client1Db);
+		Assert.assertEquals(userTables.size(), progress.size());
+		Assert.assertTrue(syncRead.readSyncActions(serverDb, progress, 0,
+				null, null).isEmpty());
+		for (DatabaseTableDef<SyncTestUserObject> table : userTables) {
+			List<SyncTestUserObject> objects = serverDb.select(table, null, 0,
+					null);
+			serverDb.delete(table.getName(), objects.get(0));
+		}
+		List<DatabaseAction> actions = syncRead.readSyncActions(serverDb,
+				progress, 0, null, null);
+		Assert.assertEquals(userTables.size(), actions.size());
+		syncWrite.writeSyncActions(client1Db, actions, "server");
+		assertEqualTables(serverDb, client1Db);
+	}
+
+	/**
+	 * Deletes records with criteria on the server. If range deletes are
+	 * enabled, this is logged as one range delete, which deletes the same
+	 * records on a client. A new client reads the range delete without the
+	 * inserts that it deletes. If range deletes are disabled, a delete action
+	 * is logged for each record.
+	 */
+	public void testRangeDelete() throws Exception {
+		serverDbConn.dropDatabase(serverDbName);
+		client1DbConn.dropDatabase(client1DbName);
+		client2DbConn.dropDatabase(client2DbName);
+		Database serverDb = initDatabase(serverDbConn, serverDbName);
+		Database client1Db = initDatabase(client1DbConn, client1DbName);
+		Database client2Db = initDatabase(client2DbConn, client2DbName);
+		serverDb.setRangeDeleteEnabled(true);
+		String user = SyncTestFixture.USER1;
+		SyncTestUser1Table table = new SyncTestUser1Table();
+		List<SyncTestUserObject> objects = fixture.getUserObjects(
+				Source.SERVER, table.getName(), 0, user);
+		serverDb.insert(table.getName(), objects);
+		DatabaseSynchronizer syncRead = new DatabaseSynchronizer(user, false);
+		DatabaseSynchronizer syncWrite = new DatabaseSynchronizer(user,
+				false);
+		List<DatabaseAction> actions = syncRead.readSyncActions(serverDb,
+				null, 0, null, null);
+		syncWrite.writeSyncActions(client1Db, actions, "server");
+		serverDb.delete(table, new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("user", user),
+				new DatabaseCriteria.LessEqual("intField",
+						objects.get(0).getIntField())
+		));
+		int remaining = serverDb.count(table, null);
+		Assert.assertTrue(remaining < objects.size());
+		actions = syncRead.readSyncActions(serverDb,
+				syncWrite.getSyncProgress(client1Db), 0, null, null);
+		Assert.assertEquals(1, actions.size());
+		Assert.assertEquals(Action.DELETE_RANGE, actions.get(0).getAction());
+		Assert.assertNull(actions.get(0).getRecordId());
+		syncWrite.writeSyncActions(client1Db, actions, "server");
+		assertEqualTables(serverDb, client1Db);
+		actions = syncRead.readSyncActions(serverDb, null, 0, null, null);
+		Assert.assertEquals(remaining + 1, actions.size());
+		Assert.assertEquals(Action.DELETE_RANGE,
+				actions.get(actions.size() - 1).getAction());
+		syncWrite.writeSyncActions(client2Db, actions, "server");
+		assertEqualTables(serverDb, client2Db);
+
+		serverDb.setRangeDeleteEnabled(false);
+		serverDb.delete(table, new DatabaseCriteria.Equal("user", user));
+		actions = syncRead.readSyncActions(serverDb,
+				syncWrite.getSyncProgress(client1Db), 0, null, null);
+		Assert.assertEquals(remaining, actions.size());
+		for (DatabaseAction action : actions) {
+			Assert.assertEquals(Action.DELETE, action.getAction());
+		}
+		syncWrite.writeSyncActions(client1Db, actions, "server");
+		assertEqualTables(serverDb, client1Db);
+	}
+
+	private void assertEqualTables(Database expectedDb, Database actualDb)
+			throws DatabaseException {
+		for (DatabaseTableDef<SyncTestUserObject> table : userTables) {
+			Set<SyncTestUserObject> expected = new HashSet<>(
+					expectedDb.select(table, null, 0, null));
+			Set<SyncTestUserObject> actual = new HashSet<>(
+					actualDb.select(table, null, 0, null));
+			Assert.assertEquals(expected, actual);
+		}
+	}
+
+	private DatabaseAction createLargeUploadAction(
+			DatabaseTableDef<?> table, String user, Action actionType,
+			String recordId, String json, long time, int order) {
+		DatabaseAction action = new DatabaseAction();
+		action.setTable(table.getName());
+		action.setUser(user);
+		action.setAction(actionType);
+		action.setRecordId(recordId);
+		action.setJsonData(json);
+		action.setTime(time);
+		action.setOrder(order);
+		return action;
+	}
+
 	private void testMergedActions() throws Exception {
 		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 		serverDbConn.dropDatabase(serverDbName);
@@ -427,6 +735,53 @@ public class DatabaseSynchronizerTest {
 		}
 	}
 
+	private void assertEqualActionIds(List<DatabaseAction> expected,
+			List<DatabaseAction> actual) {
+		List<String> expectedIds = new ArrayList<>();
+		for (DatabaseAction action : expected) {
+			expectedIds.add(action.getTable() + ":" + action.getId());
+		}
+		List<String> actualIds = new ArrayList<>();
+		for (DatabaseAction action : actual) {
+			actualIds.add(action.getTable() + ":" + action.getId());
+		}
+		Assert.assertEquals(expectedIds, actualIds);
+	}
+
+	private Set<String> getActionIdSet(List<DatabaseAction> actions) {
+		Set<String> result = new HashSet<>();
+		for (DatabaseAction action : actions) {
+			result.add(action.getTable() + ":" + action.getId());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the specified number of oldest actions (by time and order) from
+	 * a list that is grouped by table. The result keeps the order of the
+	 * list. Actions with the same time and order are taken from the first
+	 * table.
+	 *
+	 * @param actions the actions grouped by table
+	 * @param count the number of actions
+	 * @return the oldest actions
+	 */
+	private List<DatabaseAction> getOldestActions(
+			List<DatabaseAction> actions, int count) {
+		List<DatabaseAction> sorted = new ArrayList<>(actions);
+		sorted.sort(Comparator.comparingLong(DatabaseAction::getTime)
+				.thenComparingInt(DatabaseAction::getOrder));
+		Set<DatabaseAction> oldest = Collections.newSetFromMap(
+				new IdentityHashMap<>());
+		oldest.addAll(sorted.subList(0, Math.min(count, sorted.size())));
+		List<DatabaseAction> result = new ArrayList<>();
+		for (DatabaseAction action : actions) {
+			if (oldest.contains(action))
+				result.add(action);
+		}
+		return result;
+	}
+
 	private void assertEqualProgress(List<DatabaseAction> actions,
 			List<SyncProgress> progressList) {
 		List<String> checkedTables = new ArrayList<>();
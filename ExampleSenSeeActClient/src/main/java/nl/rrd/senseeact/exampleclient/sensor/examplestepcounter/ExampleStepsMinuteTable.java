@@ -3,12 +3,13 @@ package nl.rrd.senseeact.exampleclient.sensor.examplestepcounter;
 import nl.rrd.senseeact.client.model.sample.IntListSample;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.senseeact.dao.UpgradeTablePackedArray;
 import nl.rrd.utils.exception.DatabaseException;
 
 public class ExampleStepsMinuteTable extends DatabaseTableDef<IntListSample> {
 	public static final String NAME = "example_steps_minute";
 
-	private static final int VERSION = 0;
+	private static final int VERSION = 1;
 
 	public ExampleStepsMinuteTable() {
 		super(NAME, IntListSample.class, VERSION, true);
@@ -17,6 +18,15 @@ public class ExampleStepsMinuteTable extends DatabaseTableDef<IntListSample> {
 	@Override
 	public int upgradeTable(int version, Database db, String physTable)
 			throws DatabaseException {
-		return 0;
+		if (version == 0)
+			return upgradeTableV0(db, physTable);
+		else
+			return 1;
+	}
+
+	private int upgradeTableV0(Database db, String physTable)
+			throws DatabaseException {
+		UpgradeTablePackedArray.upgrade(db, physTable, "values");
+		return 1;
 	}
 }
@@ -0,0 +1,297 @@
+package nl.rrd.senseeact.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Transport for {@link SenSeeActClient SenSeeActClient} that is backed by
+ * {@link HttpClient java.net.http.HttpClient}. One HttpClient is created
+ * for the lifetime of the transport, so connections are reused between
+ * requests and, if the server supports it, requests are multiplexed over
+ * HTTP/2.
+ *
+ * <p>The number of concurrent requests is limited to {@link
+ * #setMaxConcurrentRequests(int) maxConcurrentRequests}. Further requests are
+ * queued until a running request completes. The settings should be configured
+ * before the first request is sent.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class JavaHttpTransport implements SenSeeActTransport {
+	public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 64;
+	public static final Duration DEFAULT_CONNECT_TIMEOUT =
+			Duration.ofSeconds(30);
+
+	private final Object lock = new Object();
+	private HttpClient client = null;
+	private boolean closed = false;
+
+	private boolean http2 = true;
+	private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private Duration requestTimeout = null;
+	private int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+
+	private int runningCount = 0;
+	private Deque<PendingRequest> pendingRequests = new ArrayDeque<>();
+	private Set<CompletableFuture<TransportResponse>> runningFutures =
+			new HashSet<>();
+
+	/**
+	 * Returns whether HTTP/2 should be used if the server supports it. The
+	 * default is true.
+	 *
+	 * @return true if HTTP/2 should be used, false if HTTP/1.1 should be used
+	 */
+	public boolean isHttp2() {
+		return http2;
+	}
+
+	/**
+	 * Sets whether HTTP/2 should be used if the server supports it. The
+	 * default is true.
+	 *
+	 * @param http2 true if HTTP/2 should be used, false if HTTP/1.1 should be
+	 * used
+	 */
+	public void setHttp2(boolean http2) {
+		this.http2 = http2;
+	}
+
+	/**
+	 * Returns the timeout for setting up a connection. The default is 30
+	 * seconds.
+	 *
+	 * @return the connection timeout
+	 */
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/**
+	 * Sets the timeout for setting up a connection. The default is 30
+	 * seconds.
+	 *
+	 * @param connectTimeout the connection timeout
+	 */
+	public void setConnectTimeout(Duration connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Returns the timeout for a complete request. The default is null, which
+	 * means that there is no timeout. Note that watch requests are hanging
+	 * requests that may take about a minute.
+	 *
+	 * @return the request timeout or null
+	 */
+	public Duration getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	/**
+	 * Sets the timeout for a complete request. The default is null, which
+	 * means that there is no timeout. Note that watch requests are hanging
+	 * requests that may take about a minute.
+	 *
+	 * @param requestTimeout the request timeout or null
+	 */
+	public void setRequestTimeout(Duration requestTimeout) {
+		this.requestTimeout = requestTimeout;
+	}
+
+	/**
+	 * Returns the maximum number of requests that can run at the same time.
+	 * The default is {@link #DEFAULT_MAX_CONCURRENT_REQUESTS
+	 * DEFAULT_MAX_CONCURRENT_REQUESTS}.
+	 *
+	 * @return the maximum number of concurrent requests
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	/**
+	 * Sets the maximum number of requests that can run at the same time.
+	 * The default is {@link #DEFAULT_MAX_CONCURRENT_REQUESTS
+	 * DEFAULT_MAX_CONCURRENT_REQUESTS}.
+	 *
+	 * @param maxConcurrentRequests the maximum number of concurrent requests
+	 */
+	public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	@Override
+	public CompletableFuture<TransportResponse> send(TransportRequest request) {
+		CompletableFuture<TransportResponse> future = new CompletableFuture<>();
+		synchronized (lock) {
+			if (closed) {
+				future.completeExceptionally(new IOException(
+						"Transport closed"));
+				return future;
+			}
+			pendingRequests.add(new PendingRequest(request, future));
+		}
+		startPendingRequests();
+		return future;
+	}
+
+	@Override
+	public void close() {
+		List<CompletableFuture<TransportResponse>> cancelled =
+				new ArrayList<>();
+		synchronized (lock) {
+			if (closed)
+				return;
+			closed = true;
+			for (PendingRequest pending : pendingRequests) {
+				cancelled.add(pending.future);
+			}
+			pendingRequests.clear();
+			cancelled.addAll(runningFutures);
+			runningFutures.clear();
+			client = null;
+		}
+		for (CompletableFuture<TransportResponse> future : cancelled) {
+			future.completeExceptionally(new IOException("Transport closed"));
+		}
+	}
+
+	/**
+	 * Starts pending requests as long as the maximum number of concurrent
+	 * requests has not been reached.
+	 */
+	private void startPendingRequests() {
+		List<PendingRequest> startRequests = new ArrayList<>();
+		HttpClient client;
+		synchronized (lock) {
+			if (closed)
+				return;
+			while (runningCount < maxConcurrentRequests &&
+					!pendingRequests.isEmpty()) {
+				PendingRequest pending = pendingRequests.removeFirst();
+				runningCount++;
+				runningFutures.add(pending.future);
+				startRequests.add(pending);
+			}
+			client = getClient();
+		}
+		for (PendingRequest pending : startRequests) {
+			startRequest(client, pending);
+		}
+	}
+
+	/**
+	 * Starts the specified request. When the request completes, this method
+	 * completes the future of the pending request and starts the next pending
+	 * requests.
+	 *
+	 * @param client the HTTP client
+	 * @param pending the pending request
+	 */
+	private void startRequest(HttpClient client, PendingRequest pending) {
+		HttpRequest httpRequest;
+		try {
+			httpRequest = toHttpRequest(pending.request);
+		} catch (IllegalArgumentException ex) {
+			onRequestCompleted(pending, null, new IOException(
+					"Invalid request: " + ex.getMessage(), ex));
+			return;
+		}
+		client.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray())
+				.whenComplete((response, error) ->
+						onRequestCompleted(pending, response, error));
+	}
+
+	/**
+	 * Called when a request has completed, either with a response or with an
+	 * error.
+	 *
+	 * @param pending the pending request
+	 * @param response the response or null
+	 * @param error the error or null
+	 */
+	private void onRequestCompleted(PendingRequest pending,
+			HttpResponse<byte[]> response, Throwable error) {
+		synchronized (lock) {
+			runningCount--;
+			runningFutures.remove(pending.future);
+		}
+		if (error instanceof CompletionException && error.getCause() != null)
+			error = error.getCause();
+		if (error instanceof IOException) {
+			pending.future.completeExceptionally(error);
+		} else if (error != null) {
+			pending.future.completeExceptionally(new IOException(
+					"Request failed: " + error.getMessage(), error));
+		} else {
+			pending.future.complete(new TransportResponse(
+					response.statusCode(), response.headers().map(),
+					response.body()));
+		}
+		startPendingRequests();
+	}
+
+	/**
+	 * Converts a transport request to a request for the HTTP client.
+	 *
+	 * @param request the transport request
+	 * @return the HTTP request
+	 * @throws IllegalArgumentException if the URL or a header is invalid
+	 */
+	private HttpRequest toHttpRequest(TransportRequest request) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(
+				request.toUrlWithQuery()));
+		if (requestTimeout != null)
+			builder.timeout(requestTimeout);
+		for (String name : request.getHeaders().keySet()) {
+			builder.header(name, request.getHeaders().get(name));
+		}
+		HttpRequest.BodyPublisher body;
+		if (request.getContent() == null) {
+			body = HttpRequest.BodyPublishers.noBody();
+		} else {
+			builder.header("Content-Type", request.getContentType());
+			body = HttpRequest.BodyPublishers.ofByteArray(
+					request.getContent());
+		}
+		builder.method(request.getMethod(), body);
+		return builder.build();
+	}
+
+	/**
+	 * Returns the HTTP client. It's created at the first call. This method
+	 * should be called with a lock on "lock".
+	 *
+	 * @return the HTTP client
+	 */
+	private HttpClient getClient() {
+		if (client != null)
+			return client;
+		client = HttpClient.newBuilder()
+				.version(http2 ? HttpClient.Version.HTTP_2 :
+						HttpClient.Version.HTTP_1_1)
+				.connectTimeout(connectTimeout)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+		return client;
+	}
+
+	private static class PendingRequest {
+		private TransportRequest request;
+		private CompletableFuture<TransportResponse> future;
+
+		private PendingRequest(TransportRequest request,
+				CompletableFuture<TransportResponse> future) {
+			this.request = request;
+			this.future = future;
+		}
+	}
+}
@@ -27,11 +27,18 @@ import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.slf4j.Logger;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,8 +64,23 @@ import java.util.regex.Pattern;
  * is invalid.</li>
  * </ul></p>
  * 
- * <p>All methods except {@link #close() close()} must be called on the same
- * thread.</p>
+ * <p>All methods except {@link #close() close()} and the asynchronous methods
+ * must be called on the same thread.</p>
+ *
+ * <p>The record, watch and sync queries also have asynchronous variants that
+ * return a {@link CompletableFuture CompletableFuture}, such as {@link
+ * #getRecordsAsync(String, String, String, ZonedDateTime, ZonedDateTime, DatabaseCriteria, DatabaseSort[], int, Class)
+ * getRecordsAsync()}. The record and watch queries are sent through a
+ * {@link SenSeeActTransport SenSeeActTransport} that reuses connections and
+ * can multiplex requests over HTTP/2. The synchronous variants of these
+ * queries use the same transport. By default the client creates its own
+ * {@link JavaHttpTransport JavaHttpTransport}, but you can set a shared or
+ * configured transport with {@link #setTransport(SenSeeActTransport)
+ * setTransport()}. If the future completes exceptionally, the exception is
+ * a {@link SenSeeActClientException SenSeeActClientException}, {@link
+ * HttpClientException HttpClientException}, {@link ParseException
+ * ParseException} or IOException, as described for the synchronous
+ * method.</p>
  * 
  * @author Dennis Hofs (RRD)
  */
@@ -74,6 +96,11 @@ public class SenSeeActClient {
 	private final Object lock = new Object();
 	private boolean closed = false;
 	private List<HttpClient2> activeClients = new ArrayList<>();
+	private SenSeeActTransport transport = null;
+	private boolean ownTransport = false;
+	private Executor backgroundExecutor = null;
+	private ExecutorService ownExecutor = null;
+	private String syncClientId = null;
 	private String baseUrl;
 	private String protocolVersion = PROTOCOL_VERSION;
 	
@@ -108,6 +135,89 @@ public class SenSeeActClient {
 		return responseHeaders;
 	}
 
+	/**
+	 * Returns the transport that is used for the record, watch and sync
+	 * queries. If no transport was set with {@link
+	 * #setTransport(SenSeeActTransport) setTransport()}, this method creates a
+	 * {@link JavaHttpTransport JavaHttpTransport} at the first call. That
+	 * transport is closed when this client is closed.
+	 *
+	 * @return the transport
+	 * @throws IOException if this client has been closed
+	 */
+	public SenSeeActTransport getTransport() throws IOException {
+		synchronized (lock) {
+			if (closed)
+				throw new IOException("RRDSenSeeActClient closed");
+			if (transport == null) {
+				transport = new JavaHttpTransport();
+				ownTransport = true;
+			}
+			return transport;
+		}
+	}
+
+	/**
+	 * Sets the transport that is used for the record, watch and sync queries.
+	 * This should be called before any query is run. A transport that is set
+	 * with this method is not closed when this client is closed, so it can be
+	 * shared by multiple clients.
+	 *
+	 * @param transport the transport
+	 */
+	public void setTransport(SenSeeActTransport transport) {
+		synchronized (lock) {
+			if (ownTransport && this.transport != null)
+				this.transport.close();
+			this.transport = transport;
+			ownTransport = false;
+		}
+	}
+
+	/**
+	 * Returns the ID of this client that is sent when reading database
+	 * actions from the server. The server stores the sync progress of each
+	 * client, so it knows which actions can be compacted. If this is null,
+	 * all clients of the same user share one progress. The default is null.
+	 *
+	 * @return the client ID or null
+	 */
+	public String getSyncClientId() {
+		return syncClientId;
+	}
+
+	/**
+	 * Sets the ID of this client that is sent when reading database actions
+	 * from the server. The server stores the sync progress of each client, so
+	 * it knows which actions can be compacted. The ID should be unique for
+	 * each installation and it should remain the same as long as the local
+	 * database exists. If this is null, all clients of the same user share
+	 * one progress. The default is null.
+	 *
+	 * @param syncClientId the client ID or null
+	 */
+	public void setSyncClientId(String syncClientId) {
+		this.syncClientId = syncClientId;
+	}
+
+	/**
+	 * Sets the executor that runs the asynchronous sync queries in the
+	 * background. These queries block while they wait for responses from the
+	 * server, and they may wait for other tasks on the same executor.
+	 * Therefore the executor should not have a fixed number of threads. If
+	 * you don't set an executor, the client creates a cached thread pool,
+	 * which is shut down when the client is closed. An executor that you set
+	 * is not shut down. This should be called before any asynchronous query
+	 * is run.
+	 *
+	 * @param backgroundExecutor the executor
+	 */
+	public void setBackgroundExecutor(Executor backgroundExecutor) {
+		synchronized (lock) {
+			this.backgroundExecutor = backgroundExecutor;
+		}
+	}
+
 	/**
 	 * Closes this client. Any running queries will throw an IOException.
 	 */
@@ -119,6 +229,10 @@ public class SenSeeActClient {
 			for (HttpClient2 client : activeClients) {
 				client.close();
 			}
+			if (ownTransport && transport != null)
+				transport.close();
+			if (ownExecutor != null)
+				ownExecutor.shutdownNow();
 		}
 	}
 
@@ -2159,9 +2273,25 @@ public class SenSeeActClient {
 	public List<SubjectEvent> watchSubjects(String project, String regId)
 			throws SenSeeActClientException, HttpClientException, ParseException,
 			IOException {
-		return runQuery(String.format("/project/%s/subjects/watch/%s",
-				project, regId), "GET", true,
-				HttpClient2::readResponse,
+		return waitForResult(watchSubjectsAsync(project, regId));
+	}
+
+	/**
+	 * Asynchronous variant of {@link #watchSubjects(String, String)
+	 * watchSubjects()}. As this is a hanging GET, the asynchronous variant
+	 * allows you to watch many registrations without a thread for each of
+	 * them. The returned future completes with the result or with one of the
+	 * exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param regId the registration ID
+	 * @return the future subject events
+	 */
+	public CompletableFuture<List<SubjectEvent>> watchSubjectsAsync(
+			String project, String regId) {
+		TransportRequest request = createTransportRequest(String.format(
+				"/project/%s/subjects/watch/%s", project, regId), "GET");
+		return runQueryAsync(request, true,
 				response -> {
 					List<?> list = response.readJson(List.class);
 					List<SubjectEvent> result = new ArrayList<>();
@@ -2828,6 +2958,119 @@ public class SenSeeActClient {
 				limit, dataClass);
 	}
 
+	/**
+	 * Asynchronous variant of reading records from a table, with filter by
+	 * user, custom filter and sort and limit. See
+	 * {@link #getRecords(String, String, String, DatabaseCriteria, DatabaseSort[], int, Class)
+	 * getRecords()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param limit the maximum number of records to return. If you set this to
+	 * 0, there is no limit.
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future records
+	 */
+	public <T extends DatabaseObject> CompletableFuture<List<T>>
+	getRecordsAsync(String project, String table, String subject,
+			DatabaseCriteria criteria, DatabaseSort[] sort, int limit,
+			Class<T> dataClass) {
+		return doGetRecordsAsync(project, table, subject, null, null,
+				criteria, sort, limit, dataClass);
+	}
+
+	/**
+	 * Asynchronous variant of reading records from a table, with filter by user
+	 * and UTC time, custom filter and sort and limit. See
+	 * {@link #getRecords(String, String, String, ZonedDateTime, ZonedDateTime, DatabaseCriteria, DatabaseSort[], int, Class)
+	 * getRecords()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or null
+	 * @param end the end time or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param limit the maximum number of records to return. If you set this to
+	 * 0, there is no limit.
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future records
+	 */
+	public <T extends DatabaseObject> CompletableFuture<List<T>>
+	getRecordsAsync(String project, String table, String subject,
+			ZonedDateTime start, ZonedDateTime end, DatabaseCriteria criteria,
+			DatabaseSort[] sort, int limit, Class<T> dataClass) {
+		return doGetRecordsAsync(project, table, subject, start, end,
+				criteria, sort, limit, dataClass);
+	}
+
+	/**
+	 * Asynchronous variant of reading records from a table, with filter by user
+	 * and local time, custom filter and sort and limit. See
+	 * {@link #getRecords(String, String, String, LocalDateTime, LocalDateTime, DatabaseCriteria, DatabaseSort[], int, Class)
+	 * getRecords()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or null
+	 * @param end the end time or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param limit the maximum number of records to return. If you set this to
+	 * 0, there is no limit.
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future records
+	 */
+	public <T extends DatabaseObject> CompletableFuture<List<T>>
+	getRecordsAsync(String project, String table, String subject,
+			LocalDateTime start, LocalDateTime end, DatabaseCriteria criteria,
+			DatabaseSort[] sort, int limit, Class<T> dataClass) {
+		return doGetRecordsAsync(project, table, subject, start, end,
+				criteria, sort, limit, dataClass);
+	}
+
+	/**
+	 * Asynchronous variant of reading records from a table, with filter by user
+	 * and date, custom filter and sort and limit. See
+	 * {@link #getRecords(String, String, String, LocalDate, LocalDate, DatabaseCriteria, DatabaseSort[], int, Class)
+	 * getRecords()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start date or null
+	 * @param end the end date or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param limit the maximum number of records to return. If you set this to
+	 * 0, there is no limit.
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future records
+	 */
+	public <T extends DatabaseObject> CompletableFuture<List<T>>
+	getRecordsAsync(String project, String table, String subject,
+			LocalDate start, LocalDate end, DatabaseCriteria criteria,
+			DatabaseSort[] sort, int limit, Class<T> dataClass) {
+		return doGetRecordsAsync(project, table, subject, start, end,
+				criteria, sort, limit, dataClass);
+	}
 	/**
 	 * Common implementation for the different getRecords() methods.
 	 *
@@ -2862,6 +3105,34 @@ public class SenSeeActClient {
 			final DatabaseSort[] sort, final int limit,
 			final Class<T> dataClass) throws SenSeeActClientException,
 			HttpClientException, ParseException, IOException {
+		return waitForResult(doGetRecordsAsync(project, table, subject, start,
+				end, criteria, sort, limit, dataClass));
+	}
+
+	/**
+	 * Common asynchronous implementation for the different getRecords() and
+	 * getRecordsAsync() methods. See {@link
+	 * #doGetRecords(String, String, String, Object, Object, DatabaseCriteria, DatabaseSort[], int, Class)
+	 * doGetRecords()}.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or date or null
+	 * @param end the end time or date or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param limit the maximum number of records to return. If you set this to
+	 * 0, there is no limit.
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future records
+	 */
+	private <T extends DatabaseObject> CompletableFuture<List<T>>
+	doGetRecordsAsync(String project, String table, String subject,
+			Object start, Object end, DatabaseCriteria criteria,
+			DatabaseSort[] sort, int limit, Class<T> dataClass) {
 		String path, method;
 		if (criteria == null && sort == null && limit != 0) {
 			path = String.format("/project/%s/table/%s", project, table);
@@ -2871,48 +3142,21 @@ public class SenSeeActClient {
 					project, table);
 			method = "POST";
 		}
-		return runQuery(path, method, true,
-			client -> {
-				DateTimeFormatter dateFormat = DateTimeUtils.DATE_FORMAT;
-				DateTimeFormatter localFormat = DateTimeUtils.LOCAL_FORMAT;
-				DateTimeFormatter zonedFormat = DateTimeUtils.ZONED_FORMAT;
-				if (subject != null)
-					client.addQueryParam("user", subject);
-				if (start instanceof ZonedDateTime) {
-					client.addQueryParam("start", ((ZonedDateTime) start).format(
-							zonedFormat));
-				} else if (start instanceof LocalDateTime) {
-					client.addQueryParam("start", ((LocalDateTime) start).format(
-							localFormat));
-				} else if (start instanceof LocalDate) {
-					client.addQueryParam("start", ((LocalDate) start).format(
-							dateFormat));
-				}
-				if (end instanceof ZonedDateTime) {
-					client.addQueryParam("end", ((ZonedDateTime) end).format(
-							zonedFormat));
-				} else if (end instanceof LocalDateTime) {
-					client.addQueryParam("end", ((LocalDateTime) end).format(
-							localFormat));
-				} else if (end instanceof LocalDate) {
-					client.addQueryParam("end", ((LocalDate) end).format(
-							dateFormat));
-				}
-				Map<String, Object> content = new LinkedHashMap<>();
-				if (criteria != null) {
-					Map<String, Object> jsonCriteria =
-							SelectFilterGenerator.toJsonObject(criteria);
-					content.put("filter", jsonCriteria);
-				}
-				if (sort != null)
-					content.put("sort", sort);
-				if (limit > 0)
-					content.put("limit", limit);
-				if (!content.isEmpty())
-					return client.writeJson(content);
-				else
-					return client.readResponse();
-			},
+		TransportRequest request = createTransportRequest(path, method);
+		addRecordQueryParams(request, subject, start, end);
+		Map<String, Object> content = new LinkedHashMap<>();
+		if (criteria != null) {
+			Map<String, Object> jsonCriteria =
+					SelectFilterGenerator.toJsonObject(criteria);
+			content.put("filter", jsonCriteria);
+		}
+		if (sort != null)
+			content.put("sort", sort);
+		if (limit > 0)
+			content.put("limit", limit);
+		if (!content.isEmpty())
+			request.setJsonContent(content);
+		return runQueryAsync(request, true,
 			response -> {
 				List<Map<?,?>> mapList = response.readJson(
 						new TypeReference<>() {});
@@ -2925,6 +3169,49 @@ public class SenSeeActClient {
 			});
 	}
 
+	/**
+	 * Adds the query parameters for the subject and time range of a query
+	 * on records.
+	 *
+	 * @param request the request
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or date or null. If not null, it should be
+	 * a {@link ZonedDateTime ZonedDateTime}, {@link LocalDateTime
+	 * LocalDateTime} or {@link LocalDate LocalDate}.
+	 * @param end the end time or date or null. If not null, it should be a
+	 * {@link ZonedDateTime ZonedDateTime}, {@link LocalDateTime LocalDateTime}
+	 * or {@link LocalDate LocalDate}.
+	 */
+	private void addRecordQueryParams(TransportRequest request, String subject,
+			Object start, Object end) {
+		if (subject != null)
+			request.addQueryParam("user", subject);
+		String startStr = formatRecordTime(start);
+		if (startStr != null)
+			request.addQueryParam("start", startStr);
+		String endStr = formatRecordTime(end);
+		if (endStr != null)
+			request.addQueryParam("end", endStr);
+	}
+
+	/**
+	 * Formats a start or end time for a query on records.
+	 *
+	 * @param time a {@link ZonedDateTime ZonedDateTime}, {@link LocalDateTime
+	 * LocalDateTime} or {@link LocalDate LocalDate}, or null
+	 * @return the formatted time or null
+	 */
+	private String formatRecordTime(Object time) {
+		if (time instanceof ZonedDateTime zonedTime)
+			return zonedTime.format(DateTimeUtils.ZONED_FORMAT);
+		else if (time instanceof LocalDateTime localTime)
+			return localTime.format(DateTimeUtils.LOCAL_FORMAT);
+		else if (time instanceof LocalDate date)
+			return date.format(DateTimeUtils.DATE_FORMAT);
+		else
+			return null;
+	}
+
 	/**
 	 * Returns the first record from a table. The table is sorted by utcTime,
 	 * localTime or id, depending on what fields are available. If there are no
@@ -4056,115 +4343,326 @@ public class SenSeeActClient {
 	}
 
 	/**
-	 * Common implementation for the different getFirstRecord() and
-	 * getLastRecord() methods.
+	 * Asynchronous variant of reading the first record from a table, with
+	 * filter by user, custom filter and sort. See
+	 * {@link #getFirstRecord(String, String, String, DatabaseCriteria, DatabaseSort[], Class)
+	 * getFirstRecord()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
 	 *
 	 * @param project the project code
 	 * @param table the table name
 	 * @param subject the user ID of the subject user or null
-	 * @param start the start time or date or null. If not null, it should be
-	 * a {@link ZonedDateTime ZonedDateTime}, {@link LocalDateTime
-	 * LocalDateTime} or {@link LocalDate LocalDate}.
-	 * @param end the end time or date or null. If not null, it should be a
-	 * {@link ZonedDateTime ZonedDateTime}, {@link LocalDateTime LocalDateTime}
-	 * or {@link LocalDate LocalDate}.
 	 * @param criteria database criteria on other fields than user or time.
 	 * This can be null
 	 * @param sort custom database sort or null
 	 * @param dataClass the data class to return
-	 * @param isFirst true to get the first record, false to get the last record
 	 * @param <T> the data class
-	 * @return the records
-	 * @throws SenSeeActClientException if the SenSeeAct service returns an
-	 * error response
-	 * @throws HttpClientException if the server returns an error response (for
-	 * example if the server is available, but the SenSeeAct service is not)
-	 * @throws ParseException if an error occurs while parsing the response
-	 * @throws IOException if an error occurs while communicating with the
-	 * server
+	 * @return the future record, which may complete with null
 	 */
-	private <T extends DatabaseObject> T doGetFirstLastRecord(String project,
-			String table, final String subject, final Object start,
-			final Object end, final DatabaseCriteria criteria,
-			final DatabaseSort[] sort, final Class<T> dataClass,
-			boolean isFirst) throws SenSeeActClientException, HttpClientException,
-			ParseException, IOException {
-		String path, method;
-		if (criteria == null && sort == null) {
-			path = String.format("/project/%s/table/%s/%s", project, table,
-					isFirst ? "first" : "last");
-			method = "GET";
-		} else {
-			path = String.format("/project/%s/table/%s/filter/get/%s",
-					project, table, isFirst ? "first" : "last");
-			method = "POST";
-		}
-		return runQuery(path, method, true,
-			client -> {
-				DateTimeFormatter dateFormat = DateTimeUtils.DATE_FORMAT;
-				DateTimeFormatter localFormat = DateTimeUtils.LOCAL_FORMAT;
-				DateTimeFormatter zonedFormat = DateTimeUtils.ZONED_FORMAT;
-				if (subject != null)
-					client.addQueryParam("user", subject);
-				if (start instanceof ZonedDateTime) {
-					client.addQueryParam("start", ((ZonedDateTime) start).format(
-							zonedFormat));
-				} else if (start instanceof LocalDateTime) {
-					client.addQueryParam("start", ((LocalDateTime) start).format(
-							localFormat));
-				} else if (start instanceof LocalDate) {
-					client.addQueryParam("start", ((LocalDate) start).format(
-							dateFormat));
-				}
-				if (end instanceof ZonedDateTime) {
-					client.addQueryParam("end", ((ZonedDateTime) end).format(
-							zonedFormat));
-				} else if (end instanceof LocalDateTime) {
-					client.addQueryParam("end", ((LocalDateTime) end).format(
-							localFormat));
-				} else if (end instanceof LocalDate) {
-					client.addQueryParam("end", ((LocalDate) end).format(
-							dateFormat));
-				}
-				Map<String, Object> content = new LinkedHashMap<>();
-				if (criteria != null) {
-					Map<String, Object> jsonCriteria =
-							SelectFilterGenerator.toJsonObject(criteria);
-					content.put("filter", jsonCriteria);
-				}
-				if (sort != null)
-					content.put("sort", sort);
-				if (!content.isEmpty())
-					return client.writeJson(content);
-				else
-					return client.readResponse();
-			},
-			response -> {
-				Map<?,?> map = response.readJson(Map.class);
-				DatabaseObjectMapper mapper = new DatabaseObjectMapper();
-				Map<?,?> value = (Map<?,?>)map.get("value");
-				if (value == null)
-					return null;
-				else
-					return mapper.mapToObject(value, dataClass, true);
-			});
+	public <T extends DatabaseObject> CompletableFuture<T> getFirstRecordAsync(
+			String project, String table, String subject,
+			DatabaseCriteria criteria, DatabaseSort[] sort,
+			Class<T> dataClass) {
+		return doGetFirstLastRecordAsync(project, table, subject,
+				null, null, criteria, sort, dataClass, true);
 	}
 
 	/**
-	 * Reads the record with the specified ID from a table within a project.
-	 *
-	 * <p>To get the tables in a project, get the {@link BaseProject
-	 * BaseProject} from the {@link ProjectRepository ProjectRepository} and
-	 * call {@link BaseProject#getDatabaseTables() getDatabaseTables()}. The
-	 * returned tables contain the name (for parameter "table") and the data
-	 * class (for parameter "dataClass").</p>
+	 * Asynchronous variant of reading the first record from a table, with
+	 * filter by user and UTC time, custom filter and sort. See
+	 * {@link #getFirstRecord(String, String, String, ZonedDateTime, ZonedDateTime, DatabaseCriteria, DatabaseSort[], Class)
+	 * getFirstRecord()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
 	 *
-	 * <p>The specified record must belong to the specified subject. If you set
-	 * the subject to null, the record should belong to yourself. If the
-	 * specified subject doesn't exist or you're not allowed to access the
-	 * subject, this method will throw an {@link SenSeeActClientException
-	 * SenSeeActClientException} with 403 Forbidden. If the record ID doesn't
-	 * exist, this method will throw an {@link SenSeeActClientException
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or null
+	 * @param end the end time or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future record, which may complete with null
+	 */
+	public <T extends DatabaseObject> CompletableFuture<T> getFirstRecordAsync(
+			String project, String table, String subject, ZonedDateTime start,
+			ZonedDateTime end, DatabaseCriteria criteria, DatabaseSort[] sort,
+			Class<T> dataClass) {
+		return doGetFirstLastRecordAsync(project, table, subject,
+				start, end, criteria, sort, dataClass, true);
+	}
+
+	/**
+	 * Asynchronous variant of reading the first record from a table, with
+	 * filter by user and local time, custom filter and sort. See
+	 * {@link #getFirstRecord(String, String, String, LocalDateTime, LocalDateTime, DatabaseCriteria, DatabaseSort[], Class)
+	 * getFirstRecord()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or null
+	 * @param end the end time or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future record, which may complete with null
+	 */
+	public <T extends DatabaseObject> CompletableFuture<T> getFirstRecordAsync(
+			String project, String table, String subject, LocalDateTime start,
+			LocalDateTime end, DatabaseCriteria criteria, DatabaseSort[] sort,
+			Class<T> dataClass) {
+		return doGetFirstLastRecordAsync(project, table, subject,
+				start, end, criteria, sort, dataClass, true);
+	}
+
+	/**
+	 * Asynchronous variant of reading the first record from a table, with
+	 * filter by user and date, custom filter and sort. See
+	 * {@link #getFirstRecord(String, String, String, LocalDate, LocalDate, DatabaseCriteria, DatabaseSort[], Class)
+	 * getFirstRecord()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start date or null
+	 * @param end the end date or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future record, which may complete with null
+	 */
+	public <T extends DatabaseObject> CompletableFuture<T> getFirstRecordAsync(
+			String project, String table, String subject, LocalDate start,
+			LocalDate end, DatabaseCriteria criteria, DatabaseSort[] sort,
+			Class<T> dataClass) {
+		return doGetFirstLastRecordAsync(project, table, subject,
+				start, end, criteria, sort, dataClass, true);
+	}
+	/**
+	 * Asynchronous variant of reading the last record from a table, with filter
+	 * by user, custom filter and sort. See
+	 * {@link #getLastRecord(String, String, String, DatabaseCriteria, DatabaseSort[], Class)
+	 * getLastRecord()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future record, which may complete with null
+	 */
+	public <T extends DatabaseObject> CompletableFuture<T> getLastRecordAsync(
+			String project, String table, String subject,
+			DatabaseCriteria criteria, DatabaseSort[] sort,
+			Class<T> dataClass) {
+		return doGetFirstLastRecordAsync(project, table, subject,
+				null, null, criteria, sort, dataClass, false);
+	}
+
+	/**
+	 * Asynchronous variant of reading the last record from a table, with filter
+	 * by user and UTC time, custom filter and sort. See
+	 * {@link #getLastRecord(String, String, String, ZonedDateTime, ZonedDateTime, DatabaseCriteria, DatabaseSort[], Class)
+	 * getLastRecord()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or null
+	 * @param end the end time or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future record, which may complete with null
+	 */
+	public <T extends DatabaseObject> CompletableFuture<T> getLastRecordAsync(
+			String project, String table, String subject, ZonedDateTime start,
+			ZonedDateTime end, DatabaseCriteria criteria, DatabaseSort[] sort,
+			Class<T> dataClass) {
+		return doGetFirstLastRecordAsync(project, table, subject,
+				start, end, criteria, sort, dataClass, false);
+	}
+
+	/**
+	 * Asynchronous variant of reading the last record from a table, with filter
+	 * by user and local time, custom filter and sort. See
+	 * {@link #getLastRecord(String, String, String, LocalDateTime, LocalDateTime, DatabaseCriteria, DatabaseSort[], Class)
+	 * getLastRecord()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or null
+	 * @param end the end time or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future record, which may complete with null
+	 */
+	public <T extends DatabaseObject> CompletableFuture<T> getLastRecordAsync(
+			String project, String table, String subject, LocalDateTime start,
+			LocalDateTime end, DatabaseCriteria criteria, DatabaseSort[] sort,
+			Class<T> dataClass) {
+		return doGetFirstLastRecordAsync(project, table, subject,
+				start, end, criteria, sort, dataClass, false);
+	}
+
+	/**
+	 * Asynchronous variant of reading the last record from a table, with filter
+	 * by user and date, custom filter and sort. See
+	 * {@link #getLastRecord(String, String, String, LocalDate, LocalDate, DatabaseCriteria, DatabaseSort[], Class)
+	 * getLastRecord()}. The returned future completes with the result or with
+	 * one of the exceptions of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start date or null
+	 * @param end the end date or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future record, which may complete with null
+	 */
+	public <T extends DatabaseObject> CompletableFuture<T> getLastRecordAsync(
+			String project, String table, String subject, LocalDate start,
+			LocalDate end, DatabaseCriteria criteria, DatabaseSort[] sort,
+			Class<T> dataClass) {
+		return doGetFirstLastRecordAsync(project, table, subject,
+				start, end, criteria, sort, dataClass, false);
+	}
+	/**
+	 * Common implementation for the different getFirstRecord() and
+	 * getLastRecord() methods.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or date or null. If not null, it should be
+	 * a {@link ZonedDateTime ZonedDateTime}, {@link LocalDateTime
+	 * LocalDateTime} or {@link LocalDate LocalDate}.
+	 * @param end the end time or date or null. If not null, it should be a
+	 * {@link ZonedDateTime ZonedDateTime}, {@link LocalDateTime LocalDateTime}
+	 * or {@link LocalDate LocalDate}.
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param isFirst true to get the first record, false to get the last record
+	 * @param <T> the data class
+	 * @return the records
+	 * @throws SenSeeActClientException if the SenSeeAct service returns an
+	 * error response
+	 * @throws HttpClientException if the server returns an error response (for
+	 * example if the server is available, but the SenSeeAct service is not)
+	 * @throws ParseException if an error occurs while parsing the response
+	 * @throws IOException if an error occurs while communicating with the
+	 * server
+	 */
+	private <T extends DatabaseObject> T doGetFirstLastRecord(String project,
+			String table, final String subject, final Object start,
+			final Object end, final DatabaseCriteria criteria,
+			final DatabaseSort[] sort, final Class<T> dataClass,
+			boolean isFirst) throws SenSeeActClientException, HttpClientException,
+			ParseException, IOException {
+		return waitForResult(doGetFirstLastRecordAsync(project, table, subject,
+				start, end, criteria, sort, dataClass, isFirst));
+	}
+
+	/**
+	 * Common asynchronous implementation for the different getFirstRecord(),
+	 * getLastRecord(), getFirstRecordAsync() and getLastRecordAsync()
+	 * methods. See {@link
+	 * #doGetFirstLastRecord(String, String, String, Object, Object, DatabaseCriteria, DatabaseSort[], Class, boolean)
+	 * doGetFirstLastRecord()}.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param start the start time or date or null
+	 * @param end the end time or date or null
+	 * @param criteria database criteria on other fields than user or time.
+	 * This can be null
+	 * @param sort custom database sort or null
+	 * @param dataClass the data class to return
+	 * @param isFirst true to get the first record, false to get the last record
+	 * @param <T> the data class
+	 * @return the future record, which may complete with null
+	 */
+	private <T extends DatabaseObject> CompletableFuture<T>
+	doGetFirstLastRecordAsync(String project, String table, String subject,
+			Object start, Object end, DatabaseCriteria criteria,
+			DatabaseSort[] sort, Class<T> dataClass, boolean isFirst) {
+		String path, method;
+		if (criteria == null && sort == null) {
+			path = String.format("/project/%s/table/%s/%s", project, table,
+					isFirst ? "first" : "last");
+			method = "GET";
+		} else {
+			path = String.format("/project/%s/table/%s/filter/get/%s",
+					project, table, isFirst ? "first" : "last");
+			method = "POST";
+		}
+		TransportRequest request = createTransportRequest(path, method);
+		addRecordQueryParams(request, subject, start, end);
+		Map<String, Object> content = new LinkedHashMap<>();
+		if (criteria != null) {
+			Map<String, Object> jsonCriteria =
+					SelectFilterGenerator.toJsonObject(criteria);
+			content.put("filter", jsonCriteria);
+		}
+		if (sort != null)
+			content.put("sort", sort);
+		if (!content.isEmpty())
+			request.setJsonContent(content);
+		return runQueryAsync(request, true,
+			response -> {
+				Map<?,?> map = response.readJson(Map.class);
+				DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+				Map<?,?> value = (Map<?,?>)map.get("value");
+				if (value == null)
+					return null;
+				else
+					return mapper.mapToObject(value, dataClass, true);
+			});
+	}
+
+	/**
+	 * Reads the record with the specified ID from a table within a project.
+	 *
+	 * <p>To get the tables in a project, get the {@link BaseProject
+	 * BaseProject} from the {@link ProjectRepository ProjectRepository} and
+	 * call {@link BaseProject#getDatabaseTables() getDatabaseTables()}. The
+	 * returned tables contain the name (for parameter "table") and the data
+	 * class (for parameter "dataClass").</p>
+	 *
+	 * <p>The specified record must belong to the specified subject. If you set
+	 * the subject to null, the record should belong to yourself. If the
+	 * specified subject doesn't exist or you're not allowed to access the
+	 * subject, this method will throw an {@link SenSeeActClientException
+	 * SenSeeActClientException} with 403 Forbidden. If the record ID doesn't
+	 * exist, this method will throw an {@link SenSeeActClientException
 	 * SenSeeActClientException} with 404 Not Found.</p>
 	 * 
 	 * @param project the project code
@@ -4186,13 +4684,32 @@ public class SenSeeActClient {
 			final String subject, String id, final Class<T> dataClass)
 			throws SenSeeActClientException, HttpClientException, ParseException,
 			IOException {
-		return runQuery(String.format("/project/%s/table/%s/%s",
-				project, table, id), "GET", true,
-				client -> {
-					if (subject != null)
-						client.addQueryParam("user", subject);
-					return client.readResponse();
-				},
+		return waitForResult(getRecordAsync(project, table, subject, id,
+				dataClass));
+	}
+
+	/**
+	 * Asynchronous variant of {@link
+	 * #getRecord(String, String, String, String, Class) getRecord()}. The
+	 * returned future completes with the result or with one of the exceptions
+	 * of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @param id the record ID
+	 * @param dataClass the data class to return
+	 * @param <T> the data class
+	 * @return the future record
+	 */
+	public <T extends DatabaseObject> CompletableFuture<T> getRecordAsync(
+			String project, String table, String subject, String id,
+			Class<T> dataClass) {
+		TransportRequest request = createTransportRequest(String.format(
+				"/project/%s/table/%s/%s", project, table, id), "GET");
+		if (subject != null)
+			request.addQueryParam("user", subject);
+		return runQueryAsync(request, true,
 				response -> {
 					Map<?,?> map = response.readJson(Map.class);
 					DatabaseObjectMapper mapper = new DatabaseObjectMapper();
@@ -4361,9 +4878,26 @@ public class SenSeeActClient {
 	public List<String> watchTable(String project, String table, String regId)
 			throws SenSeeActClientException, HttpClientException, ParseException,
 			IOException {
-		return runQuery(String.format("/project/%s/table/%s/watch/%s",
-				project, table, regId), "GET", true,
-				HttpClient2::readResponse,
+		return waitForResult(watchTableAsync(project, table, regId));
+	}
+
+	/**
+	 * Asynchronous variant of {@link #watchTable(String, String, String)
+	 * watchTable()}. As this is a hanging GET, the asynchronous variant allows
+	 * you to watch many registrations without a thread for each of them. The
+	 * returned future completes with the result or with one of the exceptions
+	 * of the synchronous method.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param regId the registration ID
+	 * @return the future subjects with new database actions
+	 */
+	public CompletableFuture<List<String>> watchTableAsync(String project,
+			String table, String regId) {
+		TransportRequest request = createTransportRequest(String.format(
+				"/project/%s/table/%s/watch/%s", project, table, regId), "GET");
+		return runQueryAsync(request, true,
 				response -> response.readJson(new TypeReference<>() {}));
 	}
 	
@@ -5164,6 +5698,42 @@ public class SenSeeActClient {
 				HttpResponse::readString);
 	}
 
+	/**
+	 * Waits until records that were inserted into a table within a project
+	 * have been written to the database. If the server has enabled the
+	 * ingestion queue, inserted records are acknowledged before they are
+	 * written to the database. Call this method before you read records that
+	 * you just inserted. If the queue is not enabled, this method returns
+	 * immediately.
+	 *
+	 * <p>This method waits for the records of the specified subject. If you
+	 * set it to null, it waits for your own records. For a table without
+	 * users, the subject is ignored.</p>
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param subject the user ID of the subject user or null
+	 * @throws SenSeeActClientException if the SenSeeAct service returns an
+	 * error response
+	 * @throws HttpClientException if the server returns an error response (for
+	 * example if the server is available, but the SenSeeAct service is not)
+	 * @throws ParseException if an error occurs while parsing the response
+	 * @throws IOException if an error occurs while communicating with the
+	 * server
+	 */
+	public void flushRecords(String project, String table,
+			final String subject) throws SenSeeActClientException,
+			HttpClientException, ParseException, IOException {
+		runQuery(String.format("/project/%s/table/%s/flush",
+				project, table), "POST", true,
+				client -> {
+					if (subject != null)
+						client.addQueryParam("user", subject);
+					return client.readResponse();
+				},
+				HttpResponse::readString);
+	}
+
 	/**
 	 * Synchronizes new database actions from the remote server database to the
 	 * local client database. It gets all data for the specified user.
@@ -5210,6 +5780,12 @@ public class SenSeeActClient {
 		if (db == null || !syncRestriction.isSyncEnabled())
 			return new SyncResult();
 		logger.info("Start synchronization from server");
+		int snapshotCount = 0;
+		if (syncRestriction.isSnapshotBootstrap()) {
+			snapshotCount = syncReadSnapshot(project, batchSize, db, subject,
+					syncRestriction.getTableRestriction(),
+					syncRestriction.getTimeRangeRestrictions());
+		}
 		SyncActionStats stats = getSyncReadStats(project, db, subject,
 				syncRestriction.getTableRestriction(),
 				syncRestriction.getTimeRangeRestrictions(), includeOwn);
@@ -5225,11 +5801,115 @@ public class SenSeeActClient {
 		logger.info("Completed synchronization from server: {} of estimated {} unmerged database actions",
 				total, expectedTotal);
 		SyncResult result = new SyncResult();
-		result.setCount(total);
+		result.setCount(snapshotCount + total);
 		result.setProgress(stats.getProgress());
 		return result;
 	}
 	
+	/**
+	 * Asynchronous variant of {@link
+	 * #syncRead(String, int, Database, String, boolean, SyncRestriction, SyncProgressListener)
+	 * syncRead()}. The synchronization runs on a background thread. The
+	 * returned future completes with the result or with one of the exceptions
+	 * of the synchronous method. You should not run another synchronization
+	 * on the same database until the future has completed.
+	 *
+	 * @param project the project code
+	 * @param batchSize the maximum number of database actions to read in one
+	 * batch
+	 * @param db the project database (can be null)
+	 * @param subject the user ID of the subject user
+	 * @param includeOwn true if actions that were earlier synchronized from
+	 * the local database to the server, should be included
+	 * @param syncRestriction synchronization restrictions. This can be null.
+	 * @param listener a progress listener or null
+	 * @return the future synchronization result
+	 */
+	public CompletableFuture<SyncResult> syncReadAsync(String project,
+			int batchSize, Database db, String subject, boolean includeOwn,
+			SyncRestriction syncRestriction, SyncProgressListener listener) {
+		return runInBackground(() -> syncRead(project, batchSize, db, subject,
+				includeOwn, syncRestriction, listener));
+	}
+
+	/**
+	 * Bootstraps tables that have not been synchronized before, from a
+	 * snapshot of the current records at the server. It reads the snapshot in
+	 * pages of the specified batch size and writes each page to the local
+	 * database. When the last page of a table has been written, the sync
+	 * progress of the table is set to the watermark of the snapshot, so the
+	 * subsequent synchronization only reads the database actions after the
+	 * snapshot. See {@link SyncSnapshot SyncSnapshot}.
+	 *
+	 * @param project the project code
+	 * @param batchSize the maximum number of records to read in one batch
+	 * @param db the project database
+	 * @param subject the user ID of the subject user
+	 * @param tableRestriction tables to include or exclude
+	 * @param timeRangeRestrictions time range restrictions or null or an empty
+	 * list. Tables with a time range restriction are not bootstrapped.
+	 * @return the number of records that were written
+	 * @throws SenSeeActClientException if the SenSeeAct service returns an
+	 * error response
+	 * @throws HttpClientException if the server returns an error response (for
+	 * example if the server is available, but the SenSeeAct service is not)
+	 * @throws ParseException if an error occurs while parsing the response
+	 * @throws IOException if an error occurs while communicating with the
+	 * server
+	 * @throws DatabaseException if a database error occurs or received
+	 * records are illegal
+	 */
+	private int syncReadSnapshot(String project, int batchSize, Database db,
+			final String subject, SyncTableRestriction tableRestriction,
+			List<SyncTimeRangeRestriction> timeRangeRestrictions)
+			throws SenSeeActClientException, HttpClientException,
+			ParseException, IOException, DatabaseException {
+		getAuthHeaders();
+		DatabaseSynchronizer sync = new DatabaseSynchronizer(subject, true);
+		sync.setIncludeTables(tableRestriction.getIncludeTables());
+		sync.setExcludeTables(tableRestriction.getExcludeTables());
+		int total = 0;
+		SyncSnapshot snapshot = null;
+		while (true) {
+			final Map<String,Object> params = new LinkedHashMap<>();
+			params.put("maxCount", batchSize);
+			if (syncClientId != null)
+				params.put("clientId", syncClientId);
+			params.put("progress", sync.getSyncProgress(db));
+			params.put("includeTables", tableRestriction.getIncludeTables());
+			params.put("excludeTables", tableRestriction.getExcludeTables());
+			if (timeRangeRestrictions != null &&
+					!timeRangeRestrictions.isEmpty()) {
+				params.put("timeRangeRestrictions", timeRangeRestrictions);
+			}
+			if (snapshot != null) {
+				// the records of the previous page are not needed
+				snapshot.setActions(new ArrayList<>());
+				params.put("snapshot", snapshot);
+			}
+			snapshot = runQuery(
+					String.format("/sync/project/%s/read-snapshot", project),
+					"POST", true,
+					client -> client.addQueryParam("user", subject)
+							.writeJson(params),
+					response -> response.readJson(SyncSnapshot.class));
+			if (snapshot.getTable() == null)
+				break;
+			logger.debug(String.format(
+					"Write snapshot of %d records from table %s to local database (user: %s)",
+					snapshot.getActions().size(), snapshot.getTable(),
+					subject));
+			try {
+				sync.writeSyncSnapshot(db, snapshot, SYNC_REMOTE_ID);
+			} catch (IllegalInputException | SyncForbiddenException ex) {
+				throw new DatabaseException(ex.getMessage(), ex);
+			}
+			total += snapshot.getActions().size();
+		}
+		logger.info("Completed snapshot from server: {} records", total);
+		return total;
+	}
+
 	/**
 	 * Returns statistics about the new database actions that should be
 	 * synchronized from the remote server database to the local client
@@ -5308,6 +5988,10 @@ public class SenSeeActClient {
 	 * 
 	 * <p>The progress in syncStats is updated after the synchronization.</p>
 	 * 
+	 * <p>While a batch is written to the local database, the next batch is
+	 * already requested from the server, using the progress that will result
+	 * from writing the current batch.</p>
+	 * 
 	 * @param project the project code
 	 * @param batchSize the maximum number of database actions to read in one
 	 * batch
@@ -5344,93 +6028,108 @@ public class SenSeeActClient {
 			throw new NullPointerException("Parameter \"subject\" is null");
 		if (db == null)
 			return 0;
+		DatabaseSynchronizer sync = new DatabaseSynchronizer(subject, true);
+		sync.setIncludeTables(tableRestriction.getIncludeTables());
+		sync.setExcludeTables(tableRestriction.getExcludeTables());
 		int totalCount = 0;
-		boolean hasMore = true;
-		while (hasMore) {
-			int count = syncReadBatch(project, batchSize, syncStats, db,
-					subject, tableRestriction, timeRangeRestrictions,
-					includeOwn);
-			if (count > 0) {
-				totalCount += count;
+		CompletableFuture<List<DatabaseAction>> nextBatch =
+				readSyncBatchAsync(project, batchSize,
+				syncStats.getLatestTime(), syncStats.getProgress(), true,
+				subject, tableRestriction, timeRangeRestrictions, includeOwn);
+		try {
+			while (true) {
+				List<DatabaseAction> actions = waitForResult(nextBatch);
+				nextBatch = null;
+				if (actions.isEmpty())
+					break;
+				// request the next batch while this batch is written
+				List<SyncProgress> nextProgress = sync.getProgressAfterActions(
+						syncStats.getProgress(), actions);
+				nextBatch = readSyncBatchAsync(project, batchSize,
+						syncStats.getLatestTime(), nextProgress, false,
+						subject, tableRestriction, timeRangeRestrictions,
+						includeOwn);
+				writeSyncBatch(sync, db, subject, actions, syncStats);
+				totalCount += actions.size();
 				if (listener != null)
 					listener.syncUpdate(totalCount, syncStats.getCount());
-			} else {
-				hasMore = false;
 			}
+		} finally {
+			if (nextBatch != null)
+				nextBatch.cancel(true);
 		}
 		return totalCount;
 	}
 	
 	/**
-	 * Synchronizes a batch of new database actions from the remote server
-	 * database to the local client database. It gets all data for the specified
-	 * user.
-	 * 
-	 * <p>You need to specify the object database or the sample database for
-	 * the specified project. You can get it from {@link BaseProject
-	 * BaseProject} and it can be null.</p>
-	 * 
-	 * <p>The progress in syncStats is updated after the synchronization.</p>
+	 * Starts reading a batch of new database actions from the remote server
+	 * database. It gets all data for the specified user after the specified
+	 * progress.
 	 * 
 	 * @param project the project code
 	 * @param maxCount the maximum number of database actions to read
-	 * @param syncStats statistics about the new database actions
-	 * @param db the object database or sample database of the project (can be
-	 * null)
+	 * @param maxTime the maximum time of an action, as a unix time in
+	 * milliseconds (null if no limit)
+	 * @param progress the progress of actions from the server that have been
+	 * written to the local database
+	 * @param checkpoint true if all actions up to the progress have been
+	 * written to the local database, so the server should save the progress
 	 * @param subject the user ID of the subject user
 	 * @param tableRestriction tables to include or exclude
 	 * @param timeRangeRestrictions time range restrictions or null or an empty
-	 * list. Restrictions are only used to limit database actions to receive,
-	 * not to purge old data.
+	 * list
 	 * @param includeOwn true if actions that were earlier synchronized from
 	 * the local database to the server, should be included
-	 * @return the number of synchronized database actions
-	 * @throws SenSeeActClientException if the SenSeeAct service returns an
-	 * error response
-	 * @throws HttpClientException if the server returns an error response (for
-	 * example if the server is available, but the SenSeeAct service is not)
-	 * @throws ParseException if an error occurs while parsing the response
-	 * @throws IOException if an error occurs while communicating with the
-	 * server
-	 * @throws DatabaseException if a database error occurs or received
-	 * database actions are illegal
+	 * @return the future database actions
 	 */
-	private int syncReadBatch(String project, int maxCount,
-			SyncActionStats syncStats, Database db, final String subject,
+	private CompletableFuture<List<DatabaseAction>> readSyncBatchAsync(
+			String project, int maxCount, Long maxTime,
+			List<SyncProgress> progress, boolean checkpoint, String subject,
 			SyncTableRestriction tableRestriction,
 			List<SyncTimeRangeRestriction> timeRangeRestrictions,
-			boolean includeOwn) throws SenSeeActClientException, HttpClientException,
-			ParseException, IOException, DatabaseException {
-		if (subject == null)
-			throw new NullPointerException("Parameter \"subject\" is null");
-		if (db == null)
-			return 0;
+			boolean includeOwn) {
 		logger.debug("Read batch of database actions from server");
-		final Map<String,Object> params = new LinkedHashMap<>();
+		Map<String,Object> params = new LinkedHashMap<>();
 		params.put("maxCount", maxCount);
-		params.put("maxTime", syncStats.getLatestTime());
+		params.put("maxTime", maxTime);
 		params.put("includeOwn", includeOwn);
-		params.put("progress", syncStats.getProgress());
+		if (syncClientId != null)
+			params.put("clientId", syncClientId);
+		if (checkpoint)
+			params.put("checkpoint", true);
+		params.put("progress", progress);
 		params.put("includeTables", tableRestriction.getIncludeTables());
 		params.put("excludeTables", tableRestriction.getExcludeTables());
 		if (timeRangeRestrictions != null && !timeRangeRestrictions.isEmpty()) {
 			params.put("timeRangeRestrictions", timeRangeRestrictions);
 		}
-		List<DatabaseAction> actions = runQuery(
-				String.format("/sync/project/%s/read", project), "POST", true,
-				client -> client.addQueryParam("user", subject)
-						.writeJson(params),
-				response -> response.readJson(new TypeReference<>() {})
-		);
-		if (actions.isEmpty())
-			return 0;
-		getAuthHeaders();
+		TransportRequest request = createTransportRequest(
+				String.format("/sync/project/%s/read", project), "POST");
+		request.addQueryParam("user", subject);
+		request.setJsonContent(params);
+		return runQueryAsync(request, true,
+				response -> response.readJson(new TypeReference<>() {}));
+	}
+
+	/**
+	 * Writes a batch of database actions that were read from the remote
+	 * server database, to the local client database. The progress in
+	 * syncStats is updated after the synchronization.
+	 * 
+	 * @param sync the synchronizer
+	 * @param db the object database or sample database of the project
+	 * @param subject the user ID of the subject user
+	 * @param actions the database actions
+	 * @param syncStats statistics about the new database actions
+	 * @throws DatabaseException if a database error occurs or received
+	 * database actions are illegal
+	 */
+	private void writeSyncBatch(DatabaseSynchronizer sync, Database db,
+			String subject, List<DatabaseAction> actions,
+			SyncActionStats syncStats) throws DatabaseException {
 		logger.debug(String.format(
 			"Write batch of database actions to local database (user: %s)",
 			subject));
-		DatabaseSynchronizer sync = new DatabaseSynchronizer(subject, true);
-		sync.setIncludeTables(tableRestriction.getIncludeTables());
-		sync.setExcludeTables(tableRestriction.getExcludeTables());
 		try {
 			sync.writeSyncActions(db, actions, SYNC_REMOTE_ID);
 		} catch (IllegalInputException | SyncForbiddenException ex) {
@@ -5442,7 +6141,6 @@ public class SenSeeActClient {
 		for (int i = 0; i < actions.size() && i < MAX_ACTION_LOG; i++) {
 			logger.debug("    " + actions.get(i));
 		}
-		return actions.size();
 	}
 
 	public void syncRegisterPush(String project, final String subject,
@@ -5563,6 +6261,33 @@ public class SenSeeActClient {
 		return true;
 	}
 	
+	/**
+	 * Asynchronous variant of {@link
+	 * #syncWatch(String, int, Database, String, SyncTableRestriction, List)
+	 * syncWatch()}. The watch runs on a background thread. The returned future
+	 * completes with the result or with one of the exceptions of the
+	 * synchronous method.
+	 *
+	 * @param project the project code
+	 * @param maxCount the maximum number of database actions to read
+	 * @param db the object database or sample database of the project (can be
+	 * null)
+	 * @param subject the user ID of the subject user
+	 * @param tableRestriction tables to include or exclude
+	 * @param timeRangeRestrictions time range restrictions or null or an empty
+	 * list
+	 * @return the future result: true if the method can be called again to
+	 * receive or wait for new actions, false if there will never be database
+	 * actions
+	 */
+	public CompletableFuture<Boolean> syncWatchAsync(String project,
+			int maxCount, Database db, String subject,
+			SyncTableRestriction tableRestriction,
+			List<SyncTimeRangeRestriction> timeRangeRestrictions) {
+		return runInBackground(() -> syncWatch(project, maxCount, db, subject,
+				tableRestriction, timeRangeRestrictions));
+	}
+
 	/**
 	 * Synchronizes new database actions from the local client database to the
 	 * remote server database. It assumes that the local database only contains
@@ -5624,6 +6349,30 @@ public class SenSeeActClient {
 		return result;
 	}
 
+	/**
+	 * Asynchronous variant of {@link
+	 * #syncWrite(String, int, Database, String, SyncRestriction, SyncProgressListener)
+	 * syncWrite()}. The synchronization runs on a background thread. The
+	 * returned future completes with the result or with one of the exceptions
+	 * of the synchronous method. You should not run another synchronization
+	 * on the same database until the future has completed.
+	 *
+	 * @param project the project code
+	 * @param batchSize the maximum number of database actions to write in one
+	 * batch
+	 * @param db the project database (can be null)
+	 * @param subject the user ID of the subject user
+	 * @param syncRestriction synchronization restrictions. This can be null.
+	 * @param listener a progress listener or null
+	 * @return the future synchronization result
+	 */
+	public CompletableFuture<SyncResult> syncWriteAsync(String project,
+			int batchSize, Database db, String subject,
+			SyncRestriction syncRestriction, SyncProgressListener listener) {
+		return runInBackground(() -> syncWrite(project, batchSize, db, subject,
+				syncRestriction, listener));
+	}
+
 	/**
 	 * Returns statistics about the new database actions that should be
 	 * synchronized from the local client database to the remote server
@@ -5906,6 +6655,68 @@ public class SenSeeActClient {
 				return result;
 			});
 	}
+
+	/**
+	 * Returns a time series of the system statistic with the specified name.
+	 * You can only call this method as an admin. The server selects the finest
+	 * resolution where the number of points does not exceed "maxPoints". This
+	 * can be the raw statistics or the minute, hour or day rollups. If even
+	 * the day rollups have more points, the day rollups are returned. See
+	 * also {@link #getSystemStats(SystemStat.Name, ZonedDateTime,
+	 * ZonedDateTime) getSystemStats()}.
+	 * 
+	 * @param name the statistic name
+	 * @param start start time of the statistics to return (inclusive)
+	 * @param end end time of the statistics to return (exclusive)
+	 * @param maxPoints the maximum number of points
+	 * @return the time series
+	 * @throws SenSeeActClientException if the SenSeeAct service returns an
+	 * error response
+	 * @throws HttpClientException if the server returns an error response (for
+	 * example if the server is available, but the SenSeeAct service is not)
+	 * @throws ParseException if an error occurs while parsing the response
+	 * @throws IOException if an error occurs while communicating with the
+	 * server
+	 */
+	public SystemStatSeries getSystemStatSeries(SystemStat.Name name,
+			final ZonedDateTime start, final ZonedDateTime end,
+			final int maxPoints) throws SenSeeActClientException,
+			HttpClientException, ParseException, IOException {
+		return runQuery("/stats/" + name + "/series", "GET", true,
+			client -> {
+				DateTimeFormatter zonedFormat = DateTimeUtils.ZONED_FORMAT;
+				if (start != null) {
+					client.addQueryParam("start", start.format(zonedFormat));
+				}
+				if (end != null) {
+					client.addQueryParam("end", end.format(zonedFormat));
+				}
+				client.addQueryParam("maxPoints", Integer.toString(maxPoints));
+				return client.readResponse();
+			},
+			response -> {
+				Map<String,Object> map = response.readJson(
+						new TypeReference<>() {});
+				SystemStatSeries result = new SystemStatSeries();
+				try {
+					result.setResolution(SystemStatRollup.Resolution.valueOf(
+							(String)map.get("resolution")));
+				} catch (IllegalArgumentException | NullPointerException |
+						ClassCastException ex) {
+					throw new ParseException("Invalid resolution: " +
+							map.get("resolution"));
+				}
+				List<?> maps = (List<?>)map.get("points");
+				List<SystemStatRollup> points = new ArrayList<>();
+				DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+				for (Object point : maps) {
+					points.add(mapper.mapToObject((Map<?,?>)point,
+							SystemStatRollup.class, true));
+				}
+				result.setPoints(points);
+				return result;
+			});
+	}
 	
 	/**
 	 * Returns the latest value of a system statistic. Each statistic has a
@@ -6385,15 +7196,281 @@ public class SenSeeActClient {
 	}
 
 	private HttpError readHttpError(HttpClientException ex) {
+		return readHttpError(ex.getErrorContent());
+	}
+
+	private HttpError readHttpError(String errorContent) {
 		ObjectMapper mapper = new ObjectMapper();
 		try {
-			return mapper.readValue(ex.getErrorContent(),
-					HttpError.class);
+			return mapper.readValue(errorContent, HttpError.class);
 		} catch (JsonProcessingException parseEx) {
 			return null;
 		}
 	}
 
+	/**
+	 * Creates a request for a SenSeeAct query that should be run with {@link
+	 * #runQueryAsync(TransportRequest, boolean, TransportResultReader)
+	 * runQueryAsync()}.
+	 *
+	 * @param action the action. This is appended to the base URL and should
+	 * start with a slash.
+	 * @param method the HTTP method (e.g. GET or POST)
+	 * @return the request
+	 */
+	private TransportRequest createTransportRequest(String action,
+			String method) {
+		return new TransportRequest(method, baseUrl + "/v" + protocolVersion +
+				action);
+	}
+
+	/**
+	 * Runs a SenSeeAct query asynchronously through the transport. If the
+	 * query requires authentication, you should set "authenticate" to true.
+	 * Then this method will add the authentication token.
+	 *
+	 * <p>If {@link #isTransportEnabled() isTransportEnabled()} returns false,
+	 * the query is not sent through the transport, but it's run with the HTTP
+	 * client from {@link #getHttpClientForUrl(String, String, boolean)
+	 * getHttpClientForUrl()} on a background thread.</p>
+	 *
+	 * <p>If the service returns an error response, the returned future
+	 * completes exceptionally with a {@link SenSeeActClientException
+	 * SenSeeActClientException} or, if the response is not a SenSeeAct error,
+	 * an {@link HttpClientException HttpClientException}. Furthermore it may
+	 * complete exceptionally with a {@link ParseException ParseException} or
+	 * IOException.</p>
+	 *
+	 * @param request the request
+	 * @param authenticate true if the query requires authentication, false
+	 * otherwise
+	 * @param reader the reader that reads the result from a successful
+	 * response
+	 * @param <T> the result type
+	 * @return the future result
+	 */
+	private <T> CompletableFuture<T> runQueryAsync(TransportRequest request,
+			boolean authenticate, TransportResultReader<T> reader) {
+		if (!isTransportEnabled()) {
+			return runInBackground(() -> runHttpClientQuery(request,
+					authenticate, reader));
+		}
+		SenSeeActTransport transport;
+		try {
+			if (authenticate) {
+				for (AuthHeader header : getAuthHeaders()) {
+					request.addHeader(header.getName(), header.getValue());
+				}
+			}
+			transport = getTransport();
+		} catch (Exception ex) {
+			return CompletableFuture.failedFuture(ex);
+		}
+		CompletableFuture<T> result = new CompletableFuture<>();
+		transport.send(request).whenComplete((response, error) -> {
+			if (error != null) {
+				result.completeExceptionally(error);
+				return;
+			}
+			try {
+				result.complete(readTransportResponse(response, reader));
+			} catch (Exception ex) {
+				result.completeExceptionally(ex);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns whether asynchronous queries should be sent through the
+	 * transport. The default is true. If this method returns false, the
+	 * queries are run on a background thread with the HTTP client from {@link
+	 * #getHttpClientForUrl(String, String, boolean) getHttpClientForUrl()}.
+	 * A subclass that overrides getHttpClientForUrl() and wants that method to
+	 * be used for all queries, should override this method to return false.
+	 *
+	 * @return true if queries should be sent through the transport, false if
+	 * they should be run with the HTTP client
+	 */
+	protected boolean isTransportEnabled() {
+		return true;
+	}
+
+	/**
+	 * Reads the result from a transport response. If the response is an
+	 * error response, this method throws a SenSeeActClientException or
+	 * HttpClientException.
+	 *
+	 * @param response the response
+	 * @param reader the result reader
+	 * @param <T> the result type
+	 * @return the result
+	 * @throws SenSeeActClientException if the SenSeeAct service returns an
+	 * error response
+	 * @throws HttpClientException if the server returns an error response (for
+	 * example if the server is available, but the SenSeeAct service is not)
+	 * @throws ParseException if an error occurs while parsing the response
+	 * @throws IOException if a reading error occurs
+	 */
+	private <T> T readTransportResponse(TransportResponse response,
+			TransportResultReader<T> reader) throws SenSeeActClientException,
+			HttpClientException, ParseException, IOException {
+		if (!response.isSuccess()) {
+			String content = response.readString();
+			HttpError error = readHttpError(content);
+			if (error == null) {
+				throw new HttpClientException(response.getStatusCode(),
+						response.getStatusMessage(), content);
+			}
+			throw new SenSeeActClientException(response.getStatusCode(),
+					response.getStatusMessage(), error);
+		}
+		T result = reader.read(response);
+		responseHeaders = response.getJoinedHeaders();
+		return result;
+	}
+
+	/**
+	 * Runs a transport request synchronously with an HTTP client from {@link
+	 * #getHttpClientForUrl(String, String, boolean) getHttpClientForUrl()}.
+	 * This is used instead of the transport if {@link #isTransportEnabled()
+	 * isTransportEnabled()} returns false.
+	 *
+	 * @param request the request
+	 * @param authenticate true if the query requires authentication, false
+	 * otherwise
+	 * @param reader the reader that reads the result from a successful
+	 * response
+	 * @param <T> the result type
+	 * @return the result
+	 * @throws SenSeeActClientException if the SenSeeAct service returns an
+	 * error response
+	 * @throws HttpClientException if the server returns an error response (for
+	 * example if the server is available, but the SenSeeAct service is not)
+	 * @throws ParseException if an error occurs while parsing the response
+	 * @throws IOException if an error occurs while communicating with the
+	 * server
+	 */
+	private <T> T runHttpClientQuery(TransportRequest request,
+			boolean authenticate, TransportResultReader<T> reader)
+			throws SenSeeActClientException, HttpClientException,
+			ParseException, IOException {
+		HttpClient2 client = getHttpClientForUrl(request.getUrl(),
+				request.getMethod(), authenticate);
+		try {
+			Map<String,String> params = request.getQueryParams();
+			for (String name : params.keySet()) {
+				client.addQueryParam(name, params.get(name));
+			}
+			Map<String,String> headers = request.getHeaders();
+			for (String name : headers.keySet()) {
+				client.addHeader(name, headers.get(name));
+			}
+			HttpResponse httpResponse;
+			if (request.getJsonContent() != null)
+				httpResponse = client.writeJson(request.getJsonContent());
+			else
+				httpResponse = client.readResponse();
+			Map<String,List<String>> responseHeaders = new LinkedHashMap<>();
+			Map<String,String> httpHeaders = httpResponse.getHeaders();
+			for (String name : httpHeaders.keySet()) {
+				responseHeaders.put(name, List.of(httpHeaders.get(name)));
+			}
+			TransportResponse response = new TransportResponse(200,
+					responseHeaders, httpResponse.readString().getBytes(
+					StandardCharsets.UTF_8));
+			return readTransportResponse(response, reader);
+		} catch (HttpClientException httpEx) {
+			HttpError error = readHttpError(httpEx);
+			if (error == null)
+				throw httpEx;
+			throw new SenSeeActClientException(httpEx.getStatusCode(),
+					httpEx.getStatusMessage(), error);
+		} finally {
+			closeHttpClient(client);
+		}
+	}
+
+	/**
+	 * Waits until the specified future of an asynchronous query completes and
+	 * returns the result. If the future completed exceptionally, this method
+	 * throws the exception.
+	 *
+	 * @param future the future
+	 * @param <T> the result type
+	 * @return the result
+	 * @throws SenSeeActClientException if the SenSeeAct service returns an
+	 * error response
+	 * @throws HttpClientException if the server returns an error response (for
+	 * example if the server is available, but the SenSeeAct service is not)
+	 * @throws ParseException if an error occurs while parsing the response
+	 * @throws IOException if an error occurs while communicating with the
+	 * server, or if the thread is interrupted
+	 */
+	private <T> T waitForResult(CompletableFuture<T> future)
+			throws SenSeeActClientException, HttpClientException,
+			ParseException, IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			future.cancel(true);
+			throw new InterruptedIOException("Query interrupted");
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof SenSeeActClientException clientEx)
+				throw clientEx;
+			if (cause instanceof HttpClientException httpEx)
+				throw httpEx;
+			if (cause instanceof ParseException parseEx)
+				throw parseEx;
+			if (cause instanceof IOException ioEx)
+				throw ioEx;
+			if (cause instanceof RuntimeException runtimeEx)
+				throw runtimeEx;
+			throw new IOException("Query failed: " + cause.getMessage(),
+					cause);
+		}
+	}
+
+	/**
+	 * Runs the specified task on the background executor. The returned future
+	 * completes with the result or the exception of the task. This is used
+	 * for the asynchronous variants of the sync queries, which also access the
+	 * local database. See {@link #setBackgroundExecutor(Executor)
+	 * setBackgroundExecutor()}.
+	 *
+	 * @param task the task
+	 * @param <T> the result type
+	 * @return the future result
+	 */
+	private <T> CompletableFuture<T> runInBackground(Callable<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		synchronized (lock) {
+			if (closed) {
+				future.completeExceptionally(new IOException(
+						"RRDSenSeeActClient closed"));
+				return future;
+			}
+			if (backgroundExecutor == null) {
+				// a cached pool, because tasks may wait for other tasks
+				ownExecutor = Executors.newCachedThreadPool(runnable -> {
+					Thread thread = new Thread(runnable);
+					thread.setDaemon(true);
+					return thread;
+				});
+				backgroundExecutor = ownExecutor;
+			}
+			backgroundExecutor.execute(() -> {
+				try {
+					future.complete(task.call());
+				} catch (Throwable ex) {
+					future.completeExceptionally(ex);
+				}
+			});
+		}
+		return future;
+	}
+
 	/**
 	 * Creates an HTTP client for a new SenSeeAct query. This method is used in
 	 * {@link #runQuery(String, String, boolean, SenSeeActRequestRunner, SenSeeActResultReader)
@@ -0,0 +1,31 @@
+package nl.rrd.senseeact.client;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A transport sends HTTP requests for {@link SenSeeActClient SenSeeActClient}
+ * asynchronously. Implementations should reuse connections between requests.
+ * The default implementation is {@link JavaHttpTransport JavaHttpTransport}.
+ * A transport can be shared by multiple clients.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public interface SenSeeActTransport {
+
+	/**
+	 * Sends the specified request. The returned future completes when the
+	 * complete response has been received. This includes error responses. If
+	 * an error occurs while communicating with the server, the future
+	 * completes exceptionally with an IOException.
+	 *
+	 * @param request the request
+	 * @return the future response
+	 */
+	CompletableFuture<TransportResponse> send(TransportRequest request);
+
+	/**
+	 * Closes this transport. Any running requests will complete exceptionally
+	 * with an IOException.
+	 */
+	void close();
+}
@@ -17,6 +17,7 @@ public class SyncRestriction extends JsonObject {
 	private SyncTableRestriction tableRestriction = new SyncTableRestriction();
 	private List<SyncTimeRangeRestriction> timeRangeRestrictions =
 			new ArrayList<>();
+	private boolean snapshotBootstrap = false;
 
 	/**
 	 * Returns whether a synchronization should be run on the project database.
@@ -133,6 +134,36 @@ public class SyncRestriction extends JsonObject {
 				startTime, endTime));
 	}
 
+	/**
+	 * Returns whether tables that have not been synchronized before, should be
+	 * bootstrapped from a snapshot of the current records at the server. This
+	 * is only used when reading database actions from the server. Instead of
+	 * replaying all database actions, the client loads the current records
+	 * and then reads the actions after the snapshot. Tables with a time range
+	 * restriction are not bootstrapped. The default is false.
+	 *
+	 * @return true if new tables should be bootstrapped from a snapshot, false
+	 * otherwise (default)
+	 */
+	public boolean isSnapshotBootstrap() {
+		return snapshotBootstrap;
+	}
+
+	/**
+	 * Sets whether tables that have not been synchronized before, should be
+	 * bootstrapped from a snapshot of the current records at the server. This
+	 * is only used when reading database actions from the server. Instead of
+	 * replaying all database actions, the client loads the current records
+	 * and then reads the actions after the snapshot. Tables with a time range
+	 * restriction are not bootstrapped. The default is false.
+	 *
+	 * @param snapshotBootstrap true if new tables should be bootstrapped from
+	 * a snapshot, false otherwise (default)
+	 */
+	public void setSnapshotBootstrap(boolean snapshotBootstrap) {
+		this.snapshotBootstrap = snapshotBootstrap;
+	}
+
 	/**
 	 * Merges this restriction with an other restriction, so that all data
 	 * that passes either restriction, will pass the result restriction.
@@ -163,6 +194,8 @@ public class SyncRestriction extends JsonObject {
 		}
 		result.timeRangeRestrictions.addAll(timeRangeRestrictions);
 		result.timeRangeRestrictions.addAll(other.timeRangeRestrictions);
+		result.snapshotBootstrap = snapshotBootstrap &&
+				other.snapshotBootstrap;
 		return result;
 	}
 }
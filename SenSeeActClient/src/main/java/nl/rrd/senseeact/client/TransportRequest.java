@@ -0,0 +1,160 @@
+package nl.rrd.senseeact.client;
+
+import nl.rrd.utils.json.JsonMapper;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An HTTP request that can be sent with a {@link SenSeeActTransport
+ * SenSeeActTransport}. It contains the method, URL, query parameters, headers
+ * and optional content.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class TransportRequest {
+	private String method;
+	private String url;
+	private Map<String,String> queryParams = new LinkedHashMap<>();
+	private Map<String,String> headers = new LinkedHashMap<>();
+	private String contentType = null;
+	private byte[] content = null;
+	private Object jsonContent = null;
+
+	/**
+	 * Constructs a new request.
+	 *
+	 * @param method the HTTP method (e.g. GET or POST)
+	 * @param url the URL without query parameters
+	 */
+	public TransportRequest(String method, String url) {
+		this.method = method;
+		this.url = url;
+	}
+
+	/**
+	 * Returns the HTTP method (e.g. GET or POST).
+	 *
+	 * @return the HTTP method
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * Returns the URL without query parameters.
+	 *
+	 * @return the URL without query parameters
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Adds a query parameter. The value will be URL-encoded.
+	 *
+	 * @param name the parameter name
+	 * @param value the parameter value
+	 * @return this request (so you can chain method calls)
+	 */
+	public TransportRequest addQueryParam(String name, String value) {
+		queryParams.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Returns the query parameters.
+	 *
+	 * @return the query parameters
+	 */
+	public Map<String,String> getQueryParams() {
+		return queryParams;
+	}
+
+	/**
+	 * Adds an HTTP header.
+	 *
+	 * @param name the header name
+	 * @param value the header value
+	 * @return this request (so you can chain method calls)
+	 */
+	public TransportRequest addHeader(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+
+	/**
+	 * Returns the HTTP headers.
+	 *
+	 * @return the HTTP headers
+	 */
+	public Map<String,String> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Sets the content of this request to the JSON representation of the
+	 * specified object.
+	 *
+	 * @param content the content object
+	 * @return this request (so you can chain method calls)
+	 */
+	public TransportRequest setJsonContent(Object content) {
+		this.contentType = "application/json";
+		this.content = JsonMapper.generate(content).getBytes(
+				StandardCharsets.UTF_8);
+		this.jsonContent = content;
+		return this;
+	}
+
+	/**
+	 * Returns the object that was set with {@link #setJsonContent(Object)
+	 * setJsonContent()}, or null if the request has no content.
+	 *
+	 * @return the content object or null
+	 */
+	public Object getJsonContent() {
+		return jsonContent;
+	}
+
+	/**
+	 * Returns the content type, or null if the request has no content.
+	 *
+	 * @return the content type or null
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Returns the content, or null if the request has no content.
+	 *
+	 * @return the content or null
+	 */
+	public byte[] getContent() {
+		return content;
+	}
+
+	/**
+	 * Returns the URL including the URL-encoded query parameters.
+	 *
+	 * @return the URL including the query parameters
+	 */
+	public String toUrlWithQuery() {
+		if (queryParams.isEmpty())
+			return url;
+		StringBuilder builder = new StringBuilder(url);
+		boolean first = true;
+		for (String name : queryParams.keySet()) {
+			builder.append(first ? "?" : "&");
+			first = false;
+			builder.append(URLEncoder.encode(name, StandardCharsets.UTF_8));
+			builder.append("=");
+			builder.append(URLEncoder.encode(queryParams.get(name),
+					StandardCharsets.UTF_8));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,173 @@
+package nl.rrd.senseeact.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import nl.rrd.utils.exception.ParseException;
+import nl.rrd.utils.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An HTTP response that was received with a {@link SenSeeActTransport
+ * SenSeeActTransport}. It contains the status code, the headers and the
+ * complete content. Header names are case-insensitive and a header can have
+ * multiple values.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class TransportResponse {
+	private static final Map<Integer,String> STATUS_MESSAGES = Map.of(
+			400, "Bad Request",
+			401, "Unauthorized",
+			403, "Forbidden",
+			404, "Not Found",
+			429, "Too Many Requests",
+			500, "Internal Server Error",
+			501, "Not Implemented",
+			502, "Bad Gateway",
+			503, "Service Unavailable",
+			504, "Gateway Timeout"
+	);
+
+	private int statusCode;
+	private Map<String,List<String>> headers = new TreeMap<>(
+			String.CASE_INSENSITIVE_ORDER);
+	private byte[] content;
+
+	/**
+	 * Constructs a new response.
+	 *
+	 * @param statusCode the HTTP status code
+	 * @param headers the response headers. This map is copied into a map
+	 * with case-insensitive header names.
+	 * @param content the response content
+	 */
+	public TransportResponse(int statusCode, Map<String,List<String>> headers,
+			byte[] content) {
+		this.statusCode = statusCode;
+		for (String name : headers.keySet()) {
+			List<String> values = this.headers.computeIfAbsent(name,
+					key -> new ArrayList<>());
+			values.addAll(headers.get(name));
+		}
+		this.content = content;
+	}
+
+	/**
+	 * Returns the HTTP status code.
+	 *
+	 * @return the HTTP status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * Returns the status message for the HTTP status code. HTTP/2 responses
+	 * don't have a reason phrase, so this is derived from the status code.
+	 *
+	 * @return the status message
+	 */
+	public String getStatusMessage() {
+		String message = STATUS_MESSAGES.get(statusCode);
+		if (message != null)
+			return message;
+		return "HTTP " + statusCode;
+	}
+
+	/**
+	 * Returns true if the status code is in the range 2xx.
+	 *
+	 * @return true if the status code is in the range 2xx
+	 */
+	public boolean isSuccess() {
+		return statusCode >= 200 && statusCode < 300;
+	}
+
+	/**
+	 * Returns the response headers. The header names in the map are
+	 * case-insensitive. Each header has at least one value.
+	 *
+	 * @return the response headers
+	 */
+	public Map<String,List<String>> getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Returns the first value of the specified header. The header name is
+	 * case-insensitive. If the header doesn't exist, this method returns null.
+	 *
+	 * @param name the header name
+	 * @return the first header value or null
+	 */
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		if (values == null || values.isEmpty())
+			return null;
+		return values.get(0);
+	}
+
+	/**
+	 * Returns the response headers with one value per header. If a header has
+	 * multiple values, they are joined with a comma, as allowed by RFC 9110.
+	 * The header names in the map are case-insensitive.
+	 *
+	 * @return the response headers with joined values
+	 */
+	public Map<String,String> getJoinedHeaders() {
+		Map<String,String> result = new TreeMap<>(
+				String.CASE_INSENSITIVE_ORDER);
+		for (String name : headers.keySet()) {
+			result.put(name, String.join(", ", headers.get(name)));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the response content.
+	 *
+	 * @return the response content
+	 */
+	public byte[] getContent() {
+		return content;
+	}
+
+	/**
+	 * Reads the response content as a UTF-8 string.
+	 *
+	 * @return the response string
+	 */
+	public String readString() {
+		return new String(content, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Parses the response content as a JSON string and converts it to an
+	 * object of the specified class.
+	 *
+	 * @param clazz the result class
+	 * @param <T> the type of object to return
+	 * @return the result object
+	 * @throws ParseException if the content can't be parsed
+	 */
+	public <T> T readJson(Class<T> clazz) throws ParseException {
+		return JsonMapper.parse(readString(), clazz);
+	}
+
+	/**
+	 * Parses the response content as a JSON string and converts it to an
+	 * object of the specified type.
+	 *
+	 * @param typeRef the result type
+	 * @param <T> the type of object to return
+	 * @return the result object
+	 * @throws ParseException if the content can't be parsed
+	 */
+	public <T> T readJson(TypeReference<T> typeRef) throws ParseException {
+		return JsonMapper.parse(readString(), typeRef);
+	}
+}
@@ -0,0 +1,18 @@
+package nl.rrd.senseeact.client;
+
+import nl.rrd.utils.exception.ParseException;
+
+import java.io.IOException;
+
+public interface TransportResultReader<T> {
+
+	/**
+	 * Reads the request result from a successful transport response.
+	 *
+	 * @param response the response
+	 * @return the result
+	 * @throws ParseException if an error occurs while parsing the response
+	 * @throws IOException if a reading error occurs
+	 */
+	T read(TransportResponse response) throws ParseException, IOException;
+}
@@ -94,7 +94,59 @@ public class SystemStat extends BaseDatabaseObject {
 		 * as obtained by getSystemLoadAverage().
 		 * The extra field is null.
 		 */
-		SYSTEM_CPU_LOAD_AVG_1MIN("system_cpu_load_avg_1min");
+		SYSTEM_CPU_LOAD_AVG_1MIN("system_cpu_load_avg_1min"),
+
+		/**
+		 * The number of push messages that are waiting to be delivered. The
+		 * extra field is null.
+		 */
+		PUSH_QUEUE_SIZE("push_queue_size"),
+
+		/**
+		 * The average time in milliseconds from queueing a push message until
+		 * it was delivered, for the messages that were delivered since the
+		 * previous assessment. The extra field is null.
+		 */
+		PUSH_DELIVERY_LATENCY_AVG("push_delivery_latency_avg"),
+
+		/**
+		 * The maximum time in milliseconds from queueing a push message until
+		 * it was delivered, for the messages that were delivered since the
+		 * previous assessment. The extra field is null.
+		 */
+		PUSH_DELIVERY_LATENCY_MAX("push_delivery_latency_max"),
+
+		/**
+		 * The number of failed attempts to deliver a push message since the
+		 * previous assessment. The extra field is null.
+		 */
+		PUSH_DELIVERY_FAILURES("push_delivery_failures"),
+
+		/**
+		 * The number of rows that were deleted from the database action
+		 * tables of a project by a compaction run. The extra field is the
+		 * project code.
+		 */
+		ACTION_LOG_ROWS_RECLAIMED("action_log_rows_reclaimed"),
+
+		/**
+		 * The estimated number of bytes of action data that were reclaimed
+		 * from the database action tables of a project by a compaction run.
+		 * The extra field is the project code.
+		 */
+		ACTION_LOG_BYTES_RECLAIMED("action_log_bytes_reclaimed"),
+
+		/**
+		 * The number of requests that were admitted by the rate limiter since
+		 * the previous assessment. The extra field is the request class.
+		 */
+		RATE_LIMIT_ADMITTED("rate_limit_admitted"),
+
+		/**
+		 * The number of requests that were rejected by the rate limiter since
+		 * the previous assessment. The extra field is the request class.
+		 */
+		RATE_LIMIT_REJECTED("rate_limit_rejected");
 		
 		private final String name;
 		
@@ -0,0 +1,287 @@
+package nl.rrd.senseeact.client.model;
+
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * This class aggregates the values of a {@link SystemStat SystemStat} in a
+ * time bucket. The rollups are stored at different resolutions in separate
+ * tables. See {@link SystemStatRollupTable SystemStatRollupTable}. Each
+ * rollup covers the statistics with the same name and extra field, whose
+ * time is in the bucket from "utcTime" (inclusive) until "utcTime" plus the
+ * duration of the {@link Resolution Resolution} (exclusive).
+ *
+ * <p>The ID of a rollup is derived from the name, extra field and time (see
+ * {@link #getKeyId(SystemStat.Name, String, long) getKeyId()}), so new
+ * statistics can be merged into a rollup in one atomic statement.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SystemStatRollup extends BaseDatabaseObject {
+
+	/**
+	 * The resolution of a rollup. {@link #RAW RAW} is not stored in a rollup
+	 * table. It can be used to represent raw statistics as rollups with count
+	 * 1.
+	 */
+	public enum Resolution {
+		RAW(0),
+		MINUTE(60000L),
+		HOUR(3600000L),
+		DAY(24 * 3600000L);
+
+		private final long duration;
+
+		Resolution(long duration) {
+			this.duration = duration;
+		}
+
+		/**
+		 * Returns the duration of a bucket in milliseconds. For {@link #RAW
+		 * RAW} this is 0.
+		 *
+		 * @return the duration of a bucket in milliseconds
+		 */
+		public long getDuration() {
+			return duration;
+		}
+
+		/**
+		 * Returns the start time of the bucket that contains the specified
+		 * time. Buckets are aligned to UTC. For {@link #RAW RAW} this method
+		 * returns the specified time.
+		 *
+		 * @param utcTime the time as a unix time in milliseconds
+		 * @return the start time of the bucket
+		 */
+		public long getBucketStart(long utcTime) {
+			if (duration == 0)
+				return utcTime;
+			return utcTime - Math.floorMod(utcTime, duration);
+		}
+	}
+
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private SystemStat.Name name;
+
+	@DatabaseField(value=DatabaseType.TEXT)
+	private String extra = null;
+
+	@DatabaseField(value=DatabaseType.LONG, index=true)
+	private long utcTime;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long min;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long max;
+
+	@DatabaseField(value=DatabaseType.DOUBLE)
+	private double avg;
+
+	@DatabaseField(value=DatabaseType.INT)
+	private int count = 0;
+
+	/**
+	 * Constructs a new empty rollup.
+	 */
+	public SystemStatRollup() {
+	}
+
+	/**
+	 * Constructs a new rollup for the bucket that starts at the specified
+	 * time. It contains the specified statistic.
+	 *
+	 * @param stat the statistic
+	 * @param utcTime the start time of the bucket as a unix time in
+	 * milliseconds
+	 */
+	public SystemStatRollup(SystemStat stat, long utcTime) {
+		this.name = stat.getName();
+		this.extra = stat.getExtra();
+		this.utcTime = utcTime;
+		this.min = stat.getValue();
+		this.max = stat.getValue();
+		this.avg = stat.getValue();
+		this.count = 1;
+	}
+
+	/**
+	 * Adds the value of the specified statistic to this rollup. It updates the
+	 * minimum, maximum, average and count.
+	 *
+	 * @param stat the statistic
+	 */
+	public void add(SystemStat stat) {
+		long value = stat.getValue();
+		if (count == 0) {
+			min = value;
+			max = value;
+			avg = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			avg = (avg * count + value) / (count + 1);
+		}
+		count++;
+	}
+
+	/**
+	 * Returns the name of the statistic.
+	 *
+	 * @return the name of the statistic
+	 */
+	public SystemStat.Name getName() {
+		return name;
+	}
+
+	/**
+	 * Sets the name of the statistic.
+	 *
+	 * @param name the name of the statistic
+	 */
+	public void setName(SystemStat.Name name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the extra field of the statistic. See {@link
+	 * SystemStat#getExtra() SystemStat.getExtra()}.
+	 *
+	 * @return the extra field
+	 */
+	public String getExtra() {
+		return extra;
+	}
+
+	/**
+	 * Sets the extra field of the statistic. See {@link
+	 * SystemStat#getExtra() SystemStat.getExtra()}.
+	 *
+	 * @param extra the extra field
+	 */
+	public void setExtra(String extra) {
+		this.extra = extra;
+	}
+
+	/**
+	 * Returns the start time of the bucket as a unix time in milliseconds.
+	 *
+	 * @return the start time of the bucket
+	 */
+	public long getUtcTime() {
+		return utcTime;
+	}
+
+	/**
+	 * Sets the start time of the bucket as a unix time in milliseconds.
+	 *
+	 * @param utcTime the start time of the bucket
+	 */
+	public void setUtcTime(long utcTime) {
+		this.utcTime = utcTime;
+	}
+
+	/**
+	 * Returns the minimum value in the bucket.
+	 *
+	 * @return the minimum value
+	 */
+	public long getMin() {
+		return min;
+	}
+
+	/**
+	 * Sets the minimum value in the bucket.
+	 *
+	 * @param min the minimum value
+	 */
+	public void setMin(long min) {
+		this.min = min;
+	}
+
+	/**
+	 * Returns the maximum value in the bucket.
+	 *
+	 * @return the maximum value
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Sets the maximum value in the bucket.
+	 *
+	 * @param max the maximum value
+	 */
+	public void setMax(long max) {
+		this.max = max;
+	}
+
+	/**
+	 * Returns the average value in the bucket.
+	 *
+	 * @return the average value
+	 */
+	public double getAvg() {
+		return avg;
+	}
+
+	/**
+	 * Sets the average value in the bucket.
+	 *
+	 * @param avg the average value
+	 */
+	public void setAvg(double avg) {
+		this.avg = avg;
+	}
+
+	/**
+	 * Returns the number of statistics in the bucket.
+	 *
+	 * @return the number of statistics
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Sets the number of statistics in the bucket.
+	 *
+	 * @param count the number of statistics
+	 */
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	/**
+	 * Returns the ID of the rollup for the specified name, extra field and
+	 * start time of the bucket. It is a hex string of a SHA-256 hash.
+	 *
+	 * @param name the name of the statistic
+	 * @param extra the extra field or null
+	 * @param utcTime the start time of the bucket as a unix time in
+	 * milliseconds
+	 * @return the ID
+	 */
+	public static String getKeyId(SystemStat.Name name, String extra,
+			long utcTime) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new RuntimeException("Algorithm SHA-256 not found: " +
+					ex.getMessage(), ex);
+		}
+		String key = name + "\n" + (extra == null ? "" : extra) + "\n" +
+				utcTime;
+		byte[] hash = md.digest(key.getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(hash);
+	}
+}
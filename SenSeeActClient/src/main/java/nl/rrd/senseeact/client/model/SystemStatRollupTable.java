@@ -0,0 +1,117 @@
+package nl.rrd.senseeact.client.model;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseIndex;
+import nl.rrd.senseeact.dao.DatabaseObjectMapper;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table for {@link SystemStatRollup SystemStatRollup}s at one resolution.
+ * There is a separate table for each resolution except {@link
+ * SystemStatRollup.Resolution#RAW RAW}.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SystemStatRollupTable extends DatabaseTableDef<SystemStatRollup> {
+	public static final String NAME_PREFIX = "system_stat_rollups_";
+
+	private static final int VERSION = 1;
+
+	private SystemStatRollup.Resolution resolution;
+
+	/**
+	 * Constructs a new table definition for the specified resolution. This
+	 * must not be {@link SystemStatRollup.Resolution#RAW RAW}.
+	 *
+	 * @param resolution the resolution
+	 */
+	public SystemStatRollupTable(SystemStatRollup.Resolution resolution) {
+		super(getTableName(resolution), SystemStatRollup.class, VERSION,
+				false);
+		this.resolution = resolution;
+		addCompoundIndex(new DatabaseIndex("nameTime", "name", "utcTime"));
+	}
+
+	/**
+	 * Returns the table name for the specified resolution.
+	 *
+	 * @param resolution the resolution
+	 * @return the table name
+	 */
+	public static String getTableName(SystemStatRollup.Resolution resolution) {
+		if (resolution == SystemStatRollup.Resolution.RAW) {
+			throw new IllegalArgumentException(
+					"Raw statistics are not stored in a rollup table");
+		}
+		return NAME_PREFIX + resolution.name().toLowerCase();
+	}
+
+	/**
+	 * Returns the resolution of the rollups in this table.
+	 *
+	 * @return the resolution
+	 */
+	public SystemStatRollup.Resolution getResolution() {
+		return resolution;
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		if (version == 0)
+			return upgradeTableV0(db, physTable);
+		else
+			return 1;
+	}
+
+	/**
+	 * Replaces the generated IDs of the rollups with IDs that are derived
+	 * from the name, extra field and time. See {@link
+	 * SystemStatRollup#getKeyId(SystemStat.Name, String, long) getKeyId()}.
+	 * Duplicate rollups for the same key are merged.
+	 *
+	 * @param db the database
+	 * @param physTable the physical table
+	 * @return the new version
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private int upgradeTableV0(Database db, String physTable)
+			throws DatabaseException {
+		List<Map<String,?>> maps = db.selectMaps(physTable, null, null, 0,
+				null);
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		Map<String,SystemStatRollup> idMap = new LinkedHashMap<>();
+		for (Map<String,?> map : maps) {
+			SystemStatRollup rollup = mapper.mapToObject(map,
+					SystemStatRollup.class, false);
+			String id = SystemStatRollup.getKeyId(rollup.getName(),
+					rollup.getExtra(), rollup.getUtcTime());
+			SystemStatRollup current = idMap.get(id);
+			if (current == null) {
+				rollup.setId(id);
+				idMap.put(id, rollup);
+			} else if (rollup.getCount() > 0) {
+				int count = current.getCount() + rollup.getCount();
+				current.setMin(Math.min(current.getMin(), rollup.getMin()));
+				current.setMax(Math.max(current.getMax(), rollup.getMax()));
+				current.setAvg((current.getAvg() * current.getCount() +
+						rollup.getAvg() * rollup.getCount()) / count);
+				current.setCount(count);
+			}
+		}
+		db.delete(physTable, null, null);
+		List<Map<String,Object>> insertMaps = new ArrayList<>();
+		for (SystemStatRollup rollup : idMap.values()) {
+			insertMaps.add(mapper.objectToMap(rollup, true));
+		}
+		if (!insertMaps.isEmpty())
+			db.insertMaps(physTable, insertMaps);
+		return 1;
+	}
+}
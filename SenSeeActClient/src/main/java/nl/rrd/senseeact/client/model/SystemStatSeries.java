@@ -0,0 +1,56 @@
+package nl.rrd.senseeact.client.model;
+
+import nl.rrd.utils.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A time series of a system statistic at a selected resolution. This is
+ * returned by the query for system stat rollups. The server selects the
+ * finest resolution where the number of points does not exceed the requested
+ * maximum. If the resolution is {@link SystemStatRollup.Resolution#RAW RAW},
+ * each point represents one {@link SystemStat SystemStat} with count 1.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SystemStatSeries extends JsonObject {
+	private SystemStatRollup.Resolution resolution;
+	private List<SystemStatRollup> points = new ArrayList<>();
+
+	/**
+	 * Returns the resolution of the points.
+	 *
+	 * @return the resolution
+	 */
+	public SystemStatRollup.Resolution getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * Sets the resolution of the points.
+	 *
+	 * @param resolution the resolution
+	 */
+	public void setResolution(SystemStatRollup.Resolution resolution) {
+		this.resolution = resolution;
+	}
+
+	/**
+	 * Returns the points ordered by time.
+	 *
+	 * @return the points
+	 */
+	public List<SystemStatRollup> getPoints() {
+		return points;
+	}
+
+	/**
+	 * Sets the points ordered by time.
+	 *
+	 * @param points the points
+	 */
+	public void setPoints(List<SystemStatRollup> points) {
+		this.points = points;
+	}
+}
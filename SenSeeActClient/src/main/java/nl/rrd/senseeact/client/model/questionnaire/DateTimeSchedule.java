@@ -18,6 +18,7 @@ import nl.rrd.utils.validation.ValidateNotNull;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.Period;
 import java.time.temporal.ChronoUnit;
@@ -271,6 +272,71 @@ public class DateTimeSchedule extends JsonObject {
 		this.notifyDelay = notifyDelay;
 	}
 
+	/**
+	 * Finds the times when the event occurs from "start" (inclusive) until
+	 * "end" (exclusive). The times are local times. The result is sorted by
+	 * time.
+	 *
+	 * <p>The dates are obtained with {@link RecurDate#findNextDateAfter(
+	 * LocalDate, LocalDate) RecurDate.findNextDateAfter()}, starting at the
+	 * first date in the range, so this method does not iterate over the dates
+	 * before "start".</p>
+	 *
+	 * @param start the start time (inclusive)
+	 * @param end the end time (exclusive)
+	 * @return the times when the event occurs
+	 */
+	public List<LocalDateTime> findOccurrences(LocalDateTime start,
+			LocalDateTime end) {
+		List<LocalDateTime> result = new ArrayList<>();
+		LocalDate date = startDate;
+		LocalDate startRangeDate = start.toLocalDate();
+		if (recurDate != null && startRangeDate.isAfter(startDate)) {
+			date = startRangeDate;
+			if (!recurDate.occursAtDate(startDate, date))
+				date = recurDate.findNextDateAfter(startDate, date);
+		}
+		LocalDate lastDate = end.toLocalDate();
+		if (recurDate != null && endDate != null && endDate.isBefore(lastDate))
+			lastDate = endDate;
+		while (!date.isAfter(lastDate)) {
+			for (LocalTime time : findTimesAtDate()) {
+				LocalDateTime dateTime = date.atTime(time);
+				if (!dateTime.isBefore(start) && dateTime.isBefore(end))
+					result.add(dateTime);
+			}
+			if (recurDate == null)
+				break;
+			date = recurDate.findNextDateAfter(startDate, date);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the times when the event occurs at every recurring date. This
+	 * is the start time, followed by the recurring times until the end time
+	 * or the end of the day.
+	 *
+	 * @return the times
+	 */
+	private List<LocalTime> findTimesAtDate() {
+		List<LocalTime> result = new ArrayList<>();
+		result.add(startTime);
+		if (recurTime == null || recurTime.getDuration() <= 0)
+			return result;
+		long recurMs = recurTime.getDuration();
+		long dayMs = 24L * 3600000L;
+		long timeMs = startTime.toNanoOfDay() / 1000000L + recurMs;
+		while (timeMs < dayMs) {
+			LocalTime time = LocalTime.ofNanoOfDay(timeMs * 1000000L);
+			if (endTime != null && time.isAfter(endTime))
+				break;
+			result.add(time);
+			timeMs += recurMs;
+		}
+		return result;
+	}
+
 	/**
 	 * The base class for date recurrences. There are subclasses for recurrences
 	 * per day, week, month and year.
@@ -0,0 +1,180 @@
+package nl.rrd.senseeact.client.model.questionnaire;
+
+import nl.rrd.utils.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of the answers to a question. This is returned by the query for
+ * questionnaire answer statistics. The top-level object contains the
+ * statistics of all matching answers and a list with the statistics per
+ * user. In the objects per user, the user list is empty.
+ *
+ * <p>The numeric statistics (min, max, mean) only include answers with a
+ * numeric value. If there are no such answers, they are null.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class QuestionnaireAnswerStats extends JsonObject {
+	private String user = null;
+	private int count = 0;
+	private int numCount = 0;
+	private Double min = null;
+	private Double max = null;
+	private Double mean = null;
+	private Map<String,Integer> valueCounts = new LinkedHashMap<>();
+	private List<QuestionnaireAnswerStats> users = new ArrayList<>();
+
+	/**
+	 * Returns the user ID if these are the statistics of one user. For the
+	 * statistics of all users, this is null.
+	 *
+	 * @return the user ID or null
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Sets the user ID if these are the statistics of one user. For the
+	 * statistics of all users, this should be null.
+	 *
+	 * @param user the user ID or null
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Returns the number of matching answers.
+	 *
+	 * @return the number of matching answers
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Sets the number of matching answers.
+	 *
+	 * @param count the number of matching answers
+	 */
+	public void setCount(int count) {
+		this.count = count;
+	}
+
+	/**
+	 * Returns the number of matching answers with a numeric value.
+	 *
+	 * @return the number of answers with a numeric value
+	 */
+	public int getNumCount() {
+		return numCount;
+	}
+
+	/**
+	 * Sets the number of matching answers with a numeric value.
+	 *
+	 * @param numCount the number of answers with a numeric value
+	 */
+	public void setNumCount(int numCount) {
+		this.numCount = numCount;
+	}
+
+	/**
+	 * Returns the minimum numeric value or null.
+	 *
+	 * @return the minimum numeric value or null
+	 */
+	public Double getMin() {
+		return min;
+	}
+
+	/**
+	 * Sets the minimum numeric value or null.
+	 *
+	 * @param min the minimum numeric value or null
+	 */
+	public void setMin(Double min) {
+		this.min = min;
+	}
+
+	/**
+	 * Returns the maximum numeric value or null.
+	 *
+	 * @return the maximum numeric value or null
+	 */
+	public Double getMax() {
+		return max;
+	}
+
+	/**
+	 * Sets the maximum numeric value or null.
+	 *
+	 * @param max the maximum numeric value or null
+	 */
+	public void setMax(Double max) {
+		this.max = max;
+	}
+
+	/**
+	 * Returns the mean numeric value or null.
+	 *
+	 * @return the mean numeric value or null
+	 */
+	public Double getMean() {
+		return mean;
+	}
+
+	/**
+	 * Sets the mean numeric value or null.
+	 *
+	 * @param mean the mean numeric value or null
+	 */
+	public void setMean(Double mean) {
+		this.mean = mean;
+	}
+
+	/**
+	 * Returns the number of answers per string value. Answers without a
+	 * value are not included.
+	 *
+	 * @return map from string value to number of answers
+	 */
+	public Map<String,Integer> getValueCounts() {
+		return valueCounts;
+	}
+
+	/**
+	 * Sets the number of answers per string value. Answers without a value
+	 * should not be included.
+	 *
+	 * @param valueCounts map from string value to number of answers
+	 */
+	public void setValueCounts(Map<String,Integer> valueCounts) {
+		this.valueCounts = valueCounts;
+	}
+
+	/**
+	 * Returns the statistics per user. In the statistics of one user, this
+	 * list is empty.
+	 *
+	 * @return the statistics per user
+	 */
+	public List<QuestionnaireAnswerStats> getUsers() {
+		return users;
+	}
+
+	/**
+	 * Sets the statistics per user. In the statistics of one user, this list
+	 * should be empty.
+	 *
+	 * @param users the statistics per user
+	 */
+	public void setUsers(List<QuestionnaireAnswerStats> users) {
+		this.users = users;
+	}
+}
@@ -1,5 +1,6 @@
 package nl.rrd.senseeact.client.model.sample;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.core.type.TypeReference;
 import nl.rrd.senseeact.dao.DatabaseField;
 import nl.rrd.senseeact.dao.DatabaseType;
@@ -11,7 +12,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class IntListSample extends UTCSample {
-	@DatabaseField(value=DatabaseType.TEXT, json=true)
+	@DatabaseField(value=DatabaseType.PACKED_ARRAY)
 	private String values;
 
 	private List<Integer> valuesList = new ArrayList<>();
@@ -36,7 +37,9 @@ public class IntListSample extends UTCSample {
 
 	/**
 	 * Returns the JSON code for the values. This method is used for the DAO.
-	 * Users can call {@link #getValuesList() getValuesList()}.
+	 * In the database the values are stored as a packed array (see {@link
+	 * DatabaseType#PACKED_ARRAY PACKED_ARRAY}). Users can call {@link
+	 * #getValuesList() getValuesList()}.
 	 *
 	 * @return the JSON code for the values
 	 */
@@ -54,10 +57,22 @@ public class IntListSample extends UTCSample {
 		this.valuesList = JsonMapper.parse(values, new TypeReference<>() {});
 	}
 
+	/**
+	 * Returns the values.
+	 *
+	 * @return the values
+	 */
+	@JsonIgnore
 	public List<Integer> getValuesList() {
 		return valuesList;
 	}
 
+	/**
+	 * Sets the values.
+	 *
+	 * @param valuesList the values
+	 */
+	@JsonIgnore
 	public void setValuesList(List<Integer> valuesList) {
 		this.valuesList = valuesList;
 	}
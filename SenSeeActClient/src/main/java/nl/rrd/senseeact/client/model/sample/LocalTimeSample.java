@@ -1,9 +1,14 @@
 package nl.rrd.senseeact.client.model.sample;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import nl.rrd.utils.exception.ParseException;
+import nl.rrd.senseeact.dao.DatabaseField;
 import nl.rrd.senseeact.dao.DatabaseFieldException;
 import nl.rrd.senseeact.dao.DatabaseObjectMapper;
+import nl.rrd.senseeact.dao.DatabaseType;
+import nl.rrd.senseeact.dao.LocalTimeColumn;
+import nl.rrd.senseeact.dao.UpgradeTableLocalTimeMillis;
 
 import java.time.LocalDateTime;
 
@@ -16,6 +21,14 @@ import java.time.LocalDateTime;
  * Subclasses should define the sample value. The sample time is a local
  * date/time, so it does not define a time zone or UTC time.</p>
  * 
+ * <p>Besides the local time string, the sample stores the field
+ * "localTimeMillis". This is a numeric shadow of the local time that is
+ * derived from it (see {@link LocalTimeColumn LocalTimeColumn}). SQL
+ * databases use it for faster range queries and sorting on the local time.
+ * It is not included in JSON. A table that was created before this field
+ * existed, should call {@link UpgradeTableLocalTimeMillis
+ * UpgradeTableLocalTimeMillis} in its upgrade.</p>
+ * 
  * <p>Set methods may throw a {@link ParseException ParseException}. In that
  * case the parameter value will be treated as illegal and the {@link
  * DatabaseObjectMapper DatabaseObjectMapper} will throw a {@link
@@ -25,6 +38,8 @@ import java.time.LocalDateTime;
  */
 @JsonIgnoreProperties(ignoreUnknown=true)
 public class LocalTimeSample extends Sample {
+	@DatabaseField(value=DatabaseType.LONG, index=true)
+	private Long localTimeMillis = null;
 
 	/**
 	 * Constructs a new empty sample. This is used for DataAccessObjects and
@@ -53,4 +68,36 @@ public class LocalTimeSample extends Sample {
 	public void updateLocalDateTime(LocalDateTime time) {
 		setLocalTime(time.format(LOCAL_TIME_FORMAT));
 	}
+
+	@Override
+	public void setLocalTime(String localTime) {
+		super.setLocalTime(localTime);
+		localTimeMillis = LocalTimeColumn.toMillis(localTime);
+	}
+
+	/**
+	 * Returns the local time as milliseconds since the epoch if it were in
+	 * UTC. This is derived from the local time. If the local time is not set
+	 * or invalid, this method returns null.
+	 * 
+	 * @return the local time in milliseconds or null
+	 */
+	@JsonIgnore
+	public Long getLocalTimeMillis() {
+		return localTimeMillis;
+	}
+
+	/**
+	 * Sets the local time as milliseconds since the epoch if it were in UTC.
+	 * This is used for DataAccessObjects. Users should not call this. The
+	 * value is derived from the local time, so if the local time is set, this
+	 * method has no effect.
+	 * 
+	 * @param localTimeMillis the local time in milliseconds or null
+	 */
+	@JsonIgnore
+	public void setLocalTimeMillis(Long localTimeMillis) {
+		if (getLocalTime() == null)
+			this.localTimeMillis = localTimeMillis;
+	}
 }
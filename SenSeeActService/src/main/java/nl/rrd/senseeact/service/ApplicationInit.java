@@ -6,6 +6,10 @@ import nl.rrd.senseeact.client.project.ProjectRepository;
 import nl.rrd.senseeact.dao.DatabaseConnection;
 import nl.rrd.senseeact.dao.DatabaseFactory;
 import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.senseeact.dao.TimeOrderedRecordIdGenerator;
+import nl.rrd.senseeact.dao.cluster.ClusterEventBus;
+import nl.rrd.senseeact.dao.cluster.DatabaseClusterEventBus;
+import nl.rrd.senseeact.dao.cluster.LocalClusterEventBus;
 import nl.rrd.senseeact.dao.mariadb.MariaDBDatabaseFactory;
 import nl.rrd.senseeact.service.access.ProjectUserAccessControlRepository;
 import nl.rrd.senseeact.service.export.DataExporterFactory;
@@ -50,6 +54,8 @@ public abstract class ApplicationInit {
 			components.addComponent(config);
 		if (components.findComponent(DatabaseFactory.class) == null)
 			components.addComponent(createDatabaseFactory());
+		if (components.findComponent(ClusterEventBus.class) == null)
+			components.addComponent(createClusterEventBus());
 		if (components.findComponent(OAuthTableRepository.class) == null)
 			components.addComponent(createOAuthTableRepository());
 		if (components.findComponent(SSOTokenRepository.class) == null)
@@ -80,6 +86,9 @@ public abstract class ApplicationInit {
 		System.setOut(StdOutLogger.createStdOut(dataDir));
 		System.setErr(StdOutLogger.createStdErr(dataDir));
 		logger.info("SenSeeAct version: " + config.get(Configuration.VERSION));
+		ClusterEventBus clusterBus = AppComponents.get(ClusterEventBus.class);
+		ClusterCacheListener.register(clusterBus);
+		clusterBus.start();
 		PushNotificationService pushService = AppComponents.get(
 				PushNotificationService.class);
 		pushService.startService();
@@ -159,8 +168,52 @@ public abstract class ApplicationInit {
 						"Invalid value for property mysqlPort: " + portStr);
 			}
 		}
+		// replicas are off by default, because the recent writes that send
+		// reads to the primary are only known in this JVM, see
+		// DatabaseLoader.recordWrite()
+		String replicas = null;
+		if (config.getBooleanProperty(Configuration.MYSQL_REPLICAS_ENABLED,
+				false)) {
+			replicas = config.get(Configuration.MYSQL_REPLICAS);
+		}
+		if (replicas != null && !replicas.trim().isEmpty()) {
+			for (String replica : replicas.split(",")) {
+				String[] hostPort = replica.trim().split(":");
+				if (hostPort.length > 2 || hostPort[0].isEmpty()) {
+					throw new ParseException("Invalid value for property " +
+							Configuration.MYSQL_REPLICAS + ": " + replicas);
+				}
+				int replicaPort = 3306;
+				if (hostPort.length == 2) {
+					try {
+						replicaPort = Integer.parseInt(hostPort[1]);
+					} catch (NumberFormatException ex) {
+						throw new ParseException("Invalid value for property " +
+								Configuration.MYSQL_REPLICAS + ": " + replicas);
+					}
+				}
+				dbFactory.addReplica(hostPort[0], replicaPort);
+			}
+		}
 		dbFactory.setUser("root");
 		dbFactory.setSyncEnabled(true);
+		dbFactory.setUserPartitioning(config.getBooleanProperty(
+				Configuration.DATABASE_USER_PARTITIONING, false));
+		// range deletes are only safe if all clients support them, see
+		// Database.setRangeDeleteEnabled()
+		dbFactory.setRangeDeleteEnabled(config.getBooleanProperty(
+				Configuration.DATABASE_RANGE_DELETE, false));
+		String idFormat = config.get(Configuration.DATABASE_RECORD_ID_FORMAT);
+		if (idFormat != null && !idFormat.isEmpty()) {
+			if (idFormat.equals("timeOrdered")) {
+				dbFactory.setRecordIdGenerator(
+						new TimeOrderedRecordIdGenerator());
+			} else if (!idFormat.equals("random")) {
+				throw new ParseException("Invalid value for property " +
+						Configuration.DATABASE_RECORD_ID_FORMAT + ": " +
+						idFormat);
+			}
+		}
 		String password = config.get(Configuration.MYSQL_ROOT_PASSWORD);
 		if (password == null)
 			throw new ParseException("Property mysqlRootPassword not found");
@@ -168,6 +221,31 @@ public abstract class ApplicationInit {
 		return dbFactory;
 	}
 
+	/**
+	 * Creates the ClusterEventBus using properties in the configuration. If
+	 * property {@link Configuration#CLUSTER_EVENT_BUS CLUSTER_EVENT_BUS} is
+	 * "database", it creates a {@link DatabaseClusterEventBus
+	 * DatabaseClusterEventBus} with a database that is shared by all nodes.
+	 * Otherwise it creates a {@link LocalClusterEventBus LocalClusterEventBus}
+	 * for a single node.
+	 *
+	 * @return the ClusterEventBus
+	 * @throws ParseException if the configuration is invalid
+	 */
+	protected ClusterEventBus createClusterEventBus() throws ParseException {
+		Configuration config = AppComponents.get(Configuration.class);
+		String busType = config.get(Configuration.CLUSTER_EVENT_BUS);
+		if (busType == null || busType.isEmpty() || busType.equals("local"))
+			return new LocalClusterEventBus();
+		if (!busType.equals("database")) {
+			throw new ParseException("Invalid value for property " +
+					Configuration.CLUSTER_EVENT_BUS + ": " + busType);
+		}
+		String dbNamePrefix = config.get(Configuration.DB_NAME_PREFIX);
+		return new DatabaseClusterEventBus(AppComponents.get(
+				DatabaseFactory.class), dbNamePrefix + "_cluster");
+	}
+
 	protected abstract OAuthTableRepository createOAuthTableRepository();
 
 	protected abstract SSOTokenRepository createSSOTokenRepository();
@@ -192,6 +270,7 @@ public abstract class ApplicationInit {
 		PushNotificationService pushService = AppComponents.get(
 				PushNotificationService.class);
 		pushService.stopService();
+		AppComponents.get(ClusterEventBus.class).close();
 		DatabaseLoader.getInstance().close();
 		Logger logger = AppComponents.getLogger(SenSeeActContext.LOGTAG);
 		logger.info("Shutdown SenSeeAct");
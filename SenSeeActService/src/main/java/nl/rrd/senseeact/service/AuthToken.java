@@ -13,10 +13,11 @@ import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.datetime.DateTimeUtils;
 
 import java.text.ParseException;
-import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * This class can create or parse a signed Base64 JWT token string. This is
@@ -25,6 +26,13 @@ import java.util.Date;
  * At every request they should authenticate with the token string. The token
  * encodes an instance of {@link AuthDetails AuthDetails}, which defines the
  * user identity and token validity.
+ *
+ * <p>Verifying a token requires a full JWS parse and HMAC verification. As
+ * clients send the same token at every request, this class keeps a bounded
+ * cache of verified tokens. A cached token is still checked for expiration at
+ * every request. The cache is cleared if the secret key changes. The cache
+ * size can be configured with property {@link
+ * Configuration#AUTH_TOKEN_CACHE_SIZE authTokenCacheSize}.</p>
  * 
  * @author Dennis Hofs (RRD)
  */
@@ -36,6 +44,13 @@ public class AuthToken {
 	private static final String COOKIE = "cookie";
 	private static final String AUTO_EXTEND_COOKIE = "autoExtendCookie";
 
+	private static final int DEFAULT_CACHE_SIZE = 10000;
+
+	private static final Object LOCK = new Object();
+	private static String cacheSecretKey = null;
+	private static MACVerifier cacheVerifier = null;
+	private static Map<String,AuthDetails> verifiedTokens = null;
+
 	public static String createToken(ProtocolVersion version, User user,
 			boolean pendingMfa, String mfaId, ZonedDateTime now,
 			Integer expireMinutes, boolean cookie, boolean autoExtendCookie,
@@ -131,14 +146,120 @@ public class AuthToken {
 	public static AuthDetails parseToken(String token)
 			throws InvalidAuthTokenException, ExpiredAuthTokenException {
 		ZonedDateTime now = DateTimeUtils.nowMs();
-		ZoneId tz = now.getZone();
-		JWSVerifier verifier;
-		try {
-			verifier = new MACVerifier(getSecretKey());
-		} catch (JOSEException ex) {
-			throw new RuntimeException("Invalid secret key: " + ex.getMessage(),
-					ex);
+		String base64Key = getBase64SecretKey();
+		AuthDetails details;
+		synchronized (LOCK) {
+			details = findCachedToken(base64Key, token);
+		}
+		if (details == null) {
+			details = parseAndVerifyToken(getVerifier(base64Key), token);
+			synchronized (LOCK) {
+				if (base64Key.equals(cacheSecretKey))
+					verifiedTokens.put(token, details);
+			}
+		}
+		if (details.getExpiration() != null) {
+			ZonedDateTime expires = ZonedDateTime.ofInstant(
+					details.getExpiration().toInstant(), now.getZone());
+			if (!now.isBefore(expires)) {
+				synchronized (LOCK) {
+					if (verifiedTokens != null)
+						verifiedTokens.remove(token);
+				}
+				throw new ExpiredAuthTokenException(String.format(
+						"Token expired: %s is not before %s",
+						now.format(DateTimeUtils.ZONED_FORMAT),
+						expires.format(DateTimeUtils.ZONED_FORMAT)));
+			}
+		}
+		return details;
+	}
+
+	/**
+	 * Returns the authentication details of a token that was verified before
+	 * with the specified secret key. If the token is not in the cache, this
+	 * method returns null. If the secret key has changed, then the cache is
+	 * cleared. This method should be called with a lock on LOCK.
+	 *
+	 * @param base64Key the Base64 secret key
+	 * @param token the token
+	 * @return the authentication details or null
+	 */
+	private static AuthDetails findCachedToken(String base64Key,
+			String token) {
+		if (!base64Key.equals(cacheSecretKey))
+			return null;
+		return verifiedTokens.get(token);
+	}
+
+	/**
+	 * Returns the verifier for the specified secret key. The verifier is
+	 * created only once for a secret key. If the secret key has changed since
+	 * the previous call, this method creates a new verifier and clears the
+	 * cache of verified tokens.
+	 *
+	 * @param base64Key the Base64 secret key
+	 * @return the verifier
+	 */
+	private static MACVerifier getVerifier(String base64Key) {
+		synchronized (LOCK) {
+			if (base64Key.equals(cacheSecretKey))
+				return cacheVerifier;
+			try {
+				cacheVerifier = new MACVerifier(Base64.getDecoder().decode(
+						base64Key));
+			} catch (JOSEException ex) {
+				throw new RuntimeException("Invalid secret key: " +
+						ex.getMessage(), ex);
+			}
+			cacheSecretKey = base64Key;
+			verifiedTokens = createTokenCache(getCacheSize());
+			return cacheVerifier;
 		}
+	}
+
+	/**
+	 * Creates the map for the cache of verified tokens. The map keeps at most
+	 * the specified number of tokens. If it is full, the least recently used
+	 * token is removed.
+	 *
+	 * @param maxSize the maximum number of tokens
+	 * @return the cache map
+	 */
+	private static Map<String,AuthDetails> createTokenCache(int maxSize) {
+		return new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String,AuthDetails> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the maximum number of verified tokens that are cached. This is
+	 * read from property authTokenCacheSize in the configuration.
+	 *
+	 * @return the maximum number of verified tokens in the cache
+	 */
+	private static int getCacheSize() {
+		Configuration config = AppComponents.get(Configuration.class);
+		return config.getIntProperty(Configuration.AUTH_TOKEN_CACHE_SIZE,
+				DEFAULT_CACHE_SIZE, 0);
+	}
+
+	/**
+	 * Parses the specified signed Base64 JWT token string, verifies it with
+	 * the specified verifier and returns the authentication details. This
+	 * method does not check whether the token expired.
+	 *
+	 * @param verifier the verifier
+	 * @param token the token
+	 * @return the authentication details
+	 * @throws InvalidAuthTokenException if the token is invalid
+	 */
+	private static AuthDetails parseAndVerifyToken(JWSVerifier verifier,
+			String token) throws InvalidAuthTokenException {
 		boolean verified;
 		JWTClaimsSet claims;
 		try {
@@ -151,16 +272,6 @@ public class AuthToken {
 		}
 		if (!verified)
 			throw new InvalidAuthTokenException("Invalid token");
-		if (claims.getExpirationTime() != null) {
-			ZonedDateTime expires = ZonedDateTime.ofInstant(
-					claims.getExpirationTime().toInstant(), tz);
-			if (!now.isBefore(expires)) {
-				throw new ExpiredAuthTokenException(String.format(
-						"Token expired: %s is not before %s",
-						now.format(DateTimeUtils.ZONED_FORMAT),
-						expires.format(DateTimeUtils.ZONED_FORMAT)));
-			}
-		}
 		Integer version;
 		Boolean pendingMfa;
 		String mfaId;
@@ -204,9 +315,18 @@ public class AuthToken {
 	 * @return the secret key
 	 */
 	private static byte[] getSecretKey() {
-		String base64Key = AppComponents.get(Configuration.class).get(
+		return Base64.getDecoder().decode(getBase64SecretKey());
+	}
+
+	/**
+	 * Returns the Base64 string of the secret key from property jwtSecretKey
+	 * in the configuration.
+	 *
+	 * @return the Base64 secret key
+	 */
+	private static String getBase64SecretKey() {
+		return AppComponents.get(Configuration.class).get(
 				Configuration.JWT_SECRET_KEY);
-		return Base64.getDecoder().decode(base64Key);
 	}
 
 	/**
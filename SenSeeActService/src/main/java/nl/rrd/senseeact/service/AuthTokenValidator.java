@@ -31,6 +31,8 @@ import java.time.ZonedDateTime;
  * @author Dennis Hofs (RRD)
  */
 public class AuthTokenValidator {
+	private static final int DEFAULT_COOKIE_EXTEND_INTERVAL = 60; // seconds
+
 	/**
 	 * Validates the authentication token in the specified HTTP request. If the
 	 * validation fails, this method throws an HttpException with
@@ -62,7 +64,10 @@ public class AuthTokenValidator {
 	 * <p>The general token may be configured so that the token and authToken
 	 * cookie should be extended at every successful validation. In that case
 	 * this method will set the extended cookie in the specified HTTP
-	 * response.</p>
+	 * response. To avoid signing a new token at every request, the cookie is
+	 * only extended if the current token was issued longer ago than the
+	 * interval in property {@link Configuration#AUTH_COOKIE_EXTEND_INTERVAL
+	 * authCookieExtendInterval} (in seconds).</p>
 	 *
 	 * @param authDb the authentication database
 	 * @param request the HTTP request
@@ -93,7 +98,8 @@ public class AuthTokenValidator {
 			ProjectControllerExecution.findUserProject(context.getProject(),
 					authDb, result.getUser());
 		}
-		if (authDetails != null && authDetails.isAutoExtendCookie()) {
+		if (authDetails != null && authDetails.isAutoExtendCookie() &&
+				needsCookieExtension(authDetails)) {
 			ZonedDateTime now = DateTimeUtils.nowMs();
 			AuthToken.createToken(version, result.getUser(),
 					authDetails.isPendingMfa(), authDetails.getMfaId(), now,
@@ -109,6 +115,34 @@ public class AuthTokenValidator {
 		return result;
 	}
 
+	/**
+	 * Returns whether the authToken cookie for the specified token should be
+	 * extended. This is true if the token was issued longer ago than the
+	 * configured interval in property authCookieExtendInterval.
+	 *
+	 * @param authDetails the authentication details of the current token
+	 * @return true if the cookie should be extended, false otherwise
+	 */
+	private static boolean needsCookieExtension(AuthDetails authDetails) {
+		if (authDetails.getIssuedAt() == null)
+			return true;
+		long elapsed = System.currentTimeMillis() -
+				authDetails.getIssuedAt().getTime();
+		return elapsed >= getCookieExtendInterval() * 1000L;
+	}
+
+	/**
+	 * Returns the minimum interval in seconds between two extensions of the
+	 * authToken cookie. This is read from property authCookieExtendInterval.
+	 *
+	 * @return the interval in seconds
+	 */
+	private static int getCookieExtendInterval() {
+		Configuration config = AppComponents.get(Configuration.class);
+		return config.getIntProperty(Configuration.AUTH_COOKIE_EXTEND_INTERVAL,
+				DEFAULT_COOKIE_EXTEND_INTERVAL, 0);
+	}
+
 	private static ValidateTokenResult getAuthenticatedUser(
 			ProtocolVersion version, HttpServletRequest request,
 			HttpServletResponse response, Database authDb, QueryContext context)
@@ -0,0 +1,139 @@
+package nl.rrd.senseeact.service;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseCache;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.cluster.ClusterEvent;
+import nl.rrd.senseeact.dao.cluster.ClusterEventBus;
+import nl.rrd.senseeact.dao.cluster.ClusterEventListener;
+import nl.rrd.senseeact.dao.listener.DatabaseListenerRepository;
+import nl.rrd.senseeact.service.model.UserCache;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This listener receives the events that other nodes in the cluster publish on
+ * the {@link ClusterEventBus ClusterEventBus} and updates the caches in memory
+ * of this node. It handles the following events:
+ *
+ * <p><ul>
+ * <li>{@link ClusterEventBus#TABLE_METADATA TABLE_METADATA}: invalidates the
+ * {@link DatabaseCache DatabaseCache} for the database</li>
+ * <li>{@link ClusterEventBus#DATABASE_ACTIONS DATABASE_ACTIONS}: wakes up
+ * watches on the database</li>
+ * <li>{@link UserCache#CLUSTER_EVENT_USER UserCache.CLUSTER_EVENT_USER}:
+ * reloads the user in the {@link UserCache UserCache}</li>
+ * <li>{@link WatchTableListener#CLUSTER_EVENT
+ * WatchTableListener.CLUSTER_EVENT}: reloads a watch table
+ * registration</li>
+ * <li>{@link WatchSubjectListener#CLUSTER_EVENT
+ * WatchSubjectListener.CLUSTER_EVENT}: reloads a watch subject
+ * registration</li>
+ * <li>{@link PushNotificationService#CLUSTER_EVENT
+ * PushNotificationService.CLUSTER_EVENT}: reloads the sync push
+ * registrations of a user</li>
+ * </ul></p>
+ *
+ * <p>Permissions are not cached, so they don't need an event.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class ClusterCacheListener implements ClusterEventListener {
+	private static final String LOGTAG =
+			ClusterCacheListener.class.getSimpleName();
+
+	/**
+	 * Registers a new listener for all event types at the specified bus.
+	 *
+	 * @param bus the cluster event bus
+	 */
+	public static void register(ClusterEventBus bus) {
+		ClusterCacheListener listener = new ClusterCacheListener();
+		bus.addListener(ClusterEventBus.TABLE_METADATA, listener);
+		bus.addListener(ClusterEventBus.DATABASE_ACTIONS, listener);
+		bus.addListener(UserCache.CLUSTER_EVENT_USER, listener);
+		bus.addListener(WatchTableListener.CLUSTER_EVENT, listener);
+		bus.addListener(WatchSubjectListener.CLUSTER_EVENT, listener);
+		bus.addListener(PushNotificationService.CLUSTER_EVENT, listener);
+	}
+
+	@Override
+	public void onClusterEvent(ClusterEvent event) {
+		switch (event.getType()) {
+			case ClusterEventBus.TABLE_METADATA:
+				DatabaseCache.getInstance().invalidateDatabase(
+						event.get("database"));
+				break;
+			case ClusterEventBus.DATABASE_ACTIONS:
+				onDatabaseActions(event);
+				break;
+			default:
+				runDatabaseEvent(event);
+				break;
+		}
+	}
+
+	private void onDatabaseActions(ClusterEvent event) {
+		List<String> users = new ArrayList<>();
+		String usersStr = event.get("users");
+		if (usersStr != null && !usersStr.isEmpty())
+			users.addAll(List.of(usersStr.split(",")));
+		DatabaseListenerRepository repository =
+				DatabaseListenerRepository.getInstance();
+		repository.notifyRemoteDatabaseActions(event.get("database"),
+				event.get("table"), users);
+	}
+
+	/**
+	 * Handles an event that needs to read data from the database.
+	 *
+	 * @param event the event
+	 */
+	private void runDatabaseEvent(ClusterEvent event) {
+		Logger logger = AppComponents.getLogger(LOGTAG);
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection conn = null;
+		try {
+			conn = dbLoader.openConnection();
+			Database authDb = dbLoader.initAuthDatabase(conn);
+			switch (event.getType()) {
+				case UserCache.CLUSTER_EVENT_USER:
+					UserCache.getInstance().reloadUser(authDb,
+							event.get("userid"));
+					break;
+				case WatchTableListener.CLUSTER_EVENT:
+					Database projectDb = dbLoader.initProjectDatabase(conn,
+							event.get("project"));
+					if (projectDb != null) {
+						WatchTableListener.reloadRegistration(authDb,
+								projectDb, event.get("id"));
+					}
+					break;
+				case WatchSubjectListener.CLUSTER_EVENT:
+					WatchSubjectListener.reloadRegistration(authDb,
+							event.get("id"));
+					break;
+				case PushNotificationService.CLUSTER_EVENT:
+					PushNotificationService pushService = AppComponents.get(
+							PushNotificationService.class);
+					pushService.reloadRegistrations(authDb,
+							event.get("database"), event.get("user"));
+					break;
+			}
+		} catch (DatabaseException ex) {
+			logger.error("Database error while handling cluster event " +
+					event.getType() + ": " + ex.getMessage(), ex);
+		} catch (IOException ex) {
+			logger.error("Communication error while handling cluster event " +
+					event.getType() + ": " + ex.getMessage(), ex);
+		} finally {
+			if (conn != null)
+				conn.close();
+		}
+	}
+}
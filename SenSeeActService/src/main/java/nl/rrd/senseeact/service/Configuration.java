@@ -17,10 +17,32 @@ public class Configuration extends BaseConfiguration {
 	public static final String MYSQL_HOST = "mysqlHost";
 	public static final String MYSQL_PORT = "mysqlPort";
 	public static final String MYSQL_ROOT_PASSWORD = "mysqlRootPassword";
+	public static final String MYSQL_REPLICAS_ENABLED = "mysqlReplicasEnabled";
+	public static final String MYSQL_REPLICAS = "mysqlReplicas";
+	public static final String MYSQL_REPLICA_WRITE_WINDOW = "mysqlReplicaWriteWindow";
 
 	public static final String DB_NAME_PREFIX = "dbNamePrefix";
+	public static final String DATABASE_USER_PARTITIONING = "databaseUserPartitioning";
+	public static final String DATABASE_RANGE_DELETE = "databaseRangeDelete";
+	public static final String DATABASE_RECORD_ID_FORMAT = "databaseRecordIdFormat";
+	public static final String CLUSTER_EVENT_BUS = "clusterEventBus";
+	public static final String RATE_LIMITS = "rateLimits";
 	public static final String JWT_SECRET_KEY = "jwtSecretKey";
 	public static final String SECRET_SALT = "secretSalt";
+	public static final String AUTH_TOKEN_CACHE_SIZE = "authTokenCacheSize";
+	public static final String AUTH_COOKIE_EXTEND_INTERVAL = "authCookieExtendInterval";
+	public static final String SYNC_READ_THREADS = "syncReadThreads";
+	public static final String PUSH_WORKER_THREADS = "pushWorkerThreads";
+	public static final String PUSH_STUB_URL = "pushStubUrl";
+	public static final String USER_DELETION_THREADS = "userDeletionThreads";
+	public static final String ACTION_LOG_RETENTION = "actionLogRetention";
+	public static final String ACTION_LOG_TABLE_RETENTION = "actionLogTableRetention";
+	public static final String ACTION_LOG_CONSUMER_TIMEOUT = "actionLogConsumerTimeout";
+	public static final String SYSTEM_STAT_RETENTION = "systemStatRetention";
+	public static final String MOBILE_LOG_SEGMENT_SIZE = "mobileLogSegmentSize";
+	public static final String MOBILE_LOG_RETENTION = "mobileLogRetention";
+	public static final String QUESTIONNAIRE_OCCURRENCE_HORIZON = "questionnaireOccurrenceHorizon";
+	public static final String INGESTION_QUEUE = "ingestionQueue";
 	
 	public static final String ADMIN_EMAIL = "adminEmail";
 	public static final String ADMIN_PASSWORD = "adminPassword";
@@ -2,12 +2,15 @@ package nl.rrd.senseeact.service;
 
 import nl.rrd.senseeact.client.model.PerformanceStatTable;
 import nl.rrd.senseeact.client.model.Role;
+import nl.rrd.senseeact.client.model.SystemStatRollup;
+import nl.rrd.senseeact.client.model.SystemStatRollupTable;
 import nl.rrd.senseeact.client.model.SystemStatTable;
 import nl.rrd.senseeact.client.project.BaseProject;
 import nl.rrd.senseeact.client.project.ProjectRepository;
 import nl.rrd.senseeact.dao.*;
 import nl.rrd.senseeact.dao.listener.DatabaseActionListener;
 import nl.rrd.senseeact.dao.listener.DatabaseListenerRepository;
+import nl.rrd.senseeact.dao.sync.SyncReadExecutor;
 import nl.rrd.senseeact.service.access.ProjectUserAccessControl;
 import nl.rrd.senseeact.service.access.ProjectUserAccessControlRepository;
 import nl.rrd.senseeact.service.controller.AuthControllerExecution;
@@ -31,6 +34,24 @@ import java.util.*;
 /**
  * Utility class to load the authentication database and project databases.
  * This is thread-safe.
+ *
+ * <p>If the {@link DatabaseFactory DatabaseFactory} has read replicas, you
+ * can run read-only queries on a replica with {@link
+ * #openReplicaConnection(String, List) openReplicaConnection()}. The
+ * replicas are selected with round-robin. If a replica fails, you should
+ * call {@link #setReplicaFailed(DatabaseConnection, Exception)
+ * setReplicaFailed()}, so it is skipped for some time. A replica can lag
+ * behind the primary server, so if data of a user was written recently (see
+ * {@link Configuration#MYSQL_REPLICA_WRITE_WINDOW
+ * MYSQL_REPLICA_WRITE_WINDOW}), reads for that user go to the primary
+ * server.</p>
+ *
+ * <p>The recent writes are only recorded in this JVM (see {@link
+ * #recordWrite(String, String) recordWrite()}). If several service instances
+ * share the database, a user may write through one instance and read a stale
+ * replica through another. Therefore replicas are only used if {@link
+ * Configuration#MYSQL_REPLICAS_ENABLED MYSQL_REPLICAS_ENABLED} is set to
+ * true, which should only be done if there is one service instance.</p>
  * 
  * @author Dennis Hofs (RRD)
  */
@@ -38,6 +59,8 @@ public class DatabaseLoader {
 	private static final int MIN_KEEP_OPEN_DURATION = 300000; // milliseconds
 	private static final int MAX_KEEP_OPEN_DURATION = 600000; // milliseconds
 	private static final int CLEAN_INTERVAL = 60000; // milliseconds
+	private static final int REPLICA_RETRY_DELAY = 30000; // milliseconds
+	private static final int DEFAULT_REPLICA_WRITE_WINDOW = 10; // seconds
 	
 	private final Object AUTH_DB_LOCK = new Object();
 	private final Map<String,Object> PROJECT_DB_LOCKS = new LinkedHashMap<>();
@@ -50,8 +73,19 @@ public class DatabaseLoader {
 	
 	private boolean closed = false;
 	private String cleanTaskId;
+
+	private int nextReplica = 0;
+	private Map<Integer,Long> replicaFailTimes = new HashMap<>();
+	private long replicaWriteWindow;
+	private final Map<String,Long> recentWrites = new HashMap<>();
+
+	private SyncReadExecutor syncReadExecutor = null;
 	
 	private DatabaseLoader() {
+		Configuration config = AppComponents.get(Configuration.class);
+		replicaWriteWindow = config.getIntProperty(
+				Configuration.MYSQL_REPLICA_WRITE_WINDOW,
+				DEFAULT_REPLICA_WRITE_WINDOW, 0) * 1000L;
 		TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
 		cleanTaskId = scheduler.generateTaskId();
 		scheduler.scheduleTask(null, new CleanConnectionsTask(), cleanTaskId);
@@ -75,11 +109,170 @@ public class DatabaseLoader {
 	 */
 	public DatabaseConnection openConnection()
 			throws IOException {
+		return openConnection(-1);
+	}
+
+	/**
+	 * Opens a connection to a read replica of the database server, so you
+	 * can run a read-only query on it. This method returns null if the
+	 * query should run on the primary server. That is the case if there are
+	 * no replicas, if all replicas failed recently, or if data of one of the
+	 * specified users was written recently, so it may not have been
+	 * replicated yet.
+	 *
+	 * <p>The replica is selected with round-robin. You should get databases
+	 * with {@link #getReplicaProjectDatabase(DatabaseConnection, String)
+	 * getReplicaProjectDatabase()} after they were initialised on the primary
+	 * server. If a query on the replica fails, you should call {@link
+	 * #setReplicaFailed(DatabaseConnection, Exception) setReplicaFailed()}.
+	 * When you have completed the database operations, you should close the
+	 * connection.</p>
+	 *
+	 * @param project the project code
+	 * @param users the user IDs of the users whose data will be read
+	 * @return the database connection or null
+	 */
+	public DatabaseConnection openReplicaConnection(String project,
+			List<String> users) {
+		DatabaseFactory dbFactory = AppComponents.getInstance()
+				.getComponent(DatabaseFactory.class);
+		int count = dbFactory.getReplicaCount();
+		if (count == 0 || hasRecentWrite(project, users))
+			return null;
+		int replica = selectReplica(count);
+		if (replica == -1)
+			return null;
+		try {
+			return openConnection(replica);
+		} catch (IOException ex) {
+			markReplicaFailed(replica, ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the database for the specified project from a connection to a
+	 * read replica (see {@link #openReplicaConnection(String, List)
+	 * openReplicaConnection()}). The database should have been initialised on
+	 * the primary server with {@link
+	 * #initProjectDatabase(DatabaseConnection, String) initProjectDatabase()}.
+	 * This can be null if the project doesn't use a database.
+	 *
+	 * @param conn the connection to the replica
+	 * @param project the project code
+	 * @return the database or null
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public Database getReplicaProjectDatabase(DatabaseConnection conn,
+			String project) throws DatabaseException {
+		String name = getProjectDatabaseName(project);
+		if (name == null)
+			return null;
+		return conn.getDatabase(name);
+	}
+
+	/**
+	 * Marks the replica of the specified connection as failed. It will not be
+	 * selected for 30 seconds. If the connection is not a replica connection,
+	 * this method has no effect.
+	 *
+	 * @param conn the connection to the replica
+	 * @param ex the error that occurred
+	 */
+	public void setReplicaFailed(DatabaseConnection conn, Exception ex) {
+		if (!(conn instanceof CloseListenDatabaseConnection listenConn))
+			return;
+		OpenDatabaseConnection openConn = listenConn.openConn;
+		if (openConn.replica == -1)
+			return;
+		synchronized (INSTANCE_LOCK) {
+			// don't reuse the base connection
+			openConn.failed = true;
+		}
+		markReplicaFailed(openConn.replica, ex);
+	}
+
+	private void markReplicaFailed(int replica, Exception ex) {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		logger.warn(String.format(
+				"Database replica %d failed, retry after %d ms: %s",
+				replica, REPLICA_RETRY_DELAY, ex.getMessage()));
+		synchronized (INSTANCE_LOCK) {
+			replicaFailTimes.put(replica, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Selects the next replica with round-robin, skipping replicas that
+	 * failed recently. If all replicas failed recently, this method returns
+	 * -1.
+	 *
+	 * @param count the number of replicas
+	 * @return the index of the replica or -1
+	 */
+	private int selectReplica(int count) {
+		synchronized (INSTANCE_LOCK) {
+			long now = System.currentTimeMillis();
+			for (int i = 0; i < count; i++) {
+				int replica = nextReplica % count;
+				nextReplica = (replica + 1) % count;
+				Long failTime = replicaFailTimes.get(replica);
+				if (failTime == null || now - failTime >= REPLICA_RETRY_DELAY) {
+					replicaFailTimes.remove(replica);
+					return replica;
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Records that data of the specified user was written in the specified
+	 * project. For some time reads of that data will go to the primary
+	 * server rather than a replica. See {@link
+	 * #openReplicaConnection(String, List) openReplicaConnection()}.
+	 *
+	 * <p>The write is only recorded in this JVM. Other service instances do
+	 * not know about it.</p>
+	 *
+	 * @param project the project code
+	 * @param user the user ID
+	 */
+	public void recordWrite(String project, String user) {
+		synchronized (recentWrites) {
+			recentWrites.put(project + "/" + user, System.currentTimeMillis());
+		}
+	}
+
+	private boolean hasRecentWrite(String project, List<String> users) {
+		long now = System.currentTimeMillis();
+		synchronized (recentWrites) {
+			for (String user : users) {
+				Long time = recentWrites.get(project + "/" + user);
+				if (time != null && now - time < replicaWriteWindow)
+					return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Opens a connection to the primary database server or a read replica.
+	 * It enables action logging for synchronisation with a remote database.
+	 *
+	 * @param replica the index of the read replica, or -1 for the primary
+	 * server
+	 * @return the database connection
+	 * @throws IOException if the connection could not be opened
+	 */
+	private DatabaseConnection openConnection(int replica)
+			throws IOException {
 		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 		synchronized (INSTANCE_LOCK) {
 			if (closed)
 				throw new IOException("DatabaseLoader closed");
-			OpenDatabaseConnection openConn = findMatchingOpenConnection();
+			OpenDatabaseConnection openConn = findMatchingOpenConnection(
+					replica);
 			if (openConn != null) {
 				CloseListenDatabaseConnection conn =
 						new CloseListenDatabaseConnection(openConn);
@@ -91,14 +284,19 @@ public class DatabaseLoader {
 		DatabaseFactory dbFactory = AppComponents.getInstance()
 				.getComponent(DatabaseFactory.class);
 		boolean saved = false;
-		DatabaseConnection baseConn = dbFactory.connect();
+		DatabaseConnection baseConn;
+		if (replica == -1)
+			baseConn = dbFactory.connect();
+		else
+			baseConn = dbFactory.connectReplica(replica);
 		logger.trace("Created new database connection");
 		try {
 			baseConn.setSyncEnabled(true);
 			synchronized (INSTANCE_LOCK) {
 				if (closed)
 					throw new IOException("DatabaseLoader closed");
-				OpenDatabaseConnection openConn = findMatchingOpenConnection();
+				OpenDatabaseConnection openConn = findMatchingOpenConnection(
+						replica);
 				if (openConn != null) {
 					CloseListenDatabaseConnection conn =
 							new CloseListenDatabaseConnection(openConn);
@@ -107,6 +305,7 @@ public class DatabaseLoader {
 					return conn;
 				}
 				openConn = new OpenDatabaseConnection();
+				openConn.replica = replica;
 				openConn.baseConn = baseConn;
 				openConn.openTime = System.currentTimeMillis();
 				CloseListenDatabaseConnection conn =
@@ -125,6 +324,34 @@ public class DatabaseLoader {
 		}
 	}
 	
+	/**
+	 * Returns the executor for parallel reads of sync actions. It is shared
+	 * by all sync requests, so {@link Configuration#SYNC_READ_THREADS
+	 * SYNC_READ_THREADS} is the maximum number of parallel reads in the
+	 * whole service. The reads get their database connections from {@link
+	 * #openConnection() openConnection()}. If parallel reads are disabled
+	 * (SYNC_READ_THREADS &lt;= 1), this method returns null.
+	 *
+	 * @return the executor or null
+	 * @throws IOException if this database loader has been closed
+	 */
+	public SyncReadExecutor getSyncReadExecutor() throws IOException {
+		synchronized (INSTANCE_LOCK) {
+			if (closed)
+				throw new IOException("DatabaseLoader closed");
+			if (syncReadExecutor != null)
+				return syncReadExecutor;
+			Configuration config = AppComponents.get(Configuration.class);
+			int threads = config.getIntProperty(
+					Configuration.SYNC_READ_THREADS, 1, 1);
+			if (threads <= 1)
+				return null;
+			syncReadExecutor = new SyncReadExecutor(threads,
+					this::openConnection);
+			return syncReadExecutor;
+		}
+	}
+	
 	/**
 	 * Closes this database loader and any open database connections.
 	 */
@@ -135,6 +362,10 @@ public class DatabaseLoader {
 			closed = true;
 			TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
 			scheduler.cancelTask(null, cleanTaskId);
+			if (syncReadExecutor != null) {
+				syncReadExecutor.close();
+				syncReadExecutor = null;
+			}
 			for (OpenDatabaseConnection openConn : openConns) {
 				openConn.baseConn.close();
 			}
@@ -184,8 +415,19 @@ public class DatabaseLoader {
 		result.add(new WatchSubjectRegistrationTable());
 		result.add(new WatchTableRegistrationTable());
 		result.add(new MobileWakeRequestTable());
+		result.add(new MobileLogSegmentTable());
+		result.add(new QuestionnaireOccurrenceTable());
+		result.add(new QuestionnaireAnswerTable());
+		result.add(new QuestionnaireBackfillTable());
+		result.add(new SubjectChangeTable());
 		result.add(new DataExportTable());
+		result.add(new UserDeletionTaskTable());
 		result.add(new SystemStatTable());
+		for (SystemStatRollup.Resolution resolution :
+				SystemStatRollup.Resolution.values()) {
+			if (resolution != SystemStatRollup.Resolution.RAW)
+				result.add(new SystemStatRollupTable(resolution));
+		}
 		result.add(new PerformanceStatTable());
 		OAuthTableRepository oauthRepo = AppComponents.get(
 				OAuthTableRepository.class);
@@ -316,20 +558,37 @@ public class DatabaseLoader {
 		@Override
 		public void onAddDatabaseActions(String database, String table,
 				List<DatabaseAction> actions) {
+			DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+			Set<String> users = new HashSet<>();
+			for (DatabaseAction action : actions) {
+				if (action.getUser() != null && users.add(action.getUser()))
+					dbLoader.recordWrite(project, action.getUser());
+			}
 			PushNotificationService pushService = AppComponents.get(
 					PushNotificationService.class);
 			pushService.onAddDatabaseActions(project, database, table, actions);
 		}
+
+		@Override
+		public void onAddRemoteDatabaseActions(String database, String table,
+				List<String> users) {
+			// another node wrote the data, so reads on this node should go
+			// to the primary server for some time as well
+			DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+			for (String user : new HashSet<>(users)) {
+				dbLoader.recordWrite(project, user);
+			}
+		}
 	}
 	
-	private OpenDatabaseConnection findMatchingOpenConnection() {
+	private OpenDatabaseConnection findMatchingOpenConnection(int replica) {
 		ReferenceParameter<Boolean> reusable = new ReferenceParameter<>();
 		Iterator<OpenDatabaseConnection> it = openConns.iterator();
 		while (it.hasNext()) {
 			OpenDatabaseConnection openConn = it.next();
 			if (cleanConnection(openConn, reusable)) {
 				it.remove();
-			} else if (reusable.get()) {
+			} else if (reusable.get() && openConn.replica == replica) {
 				return openConn;
 			}
 		}
@@ -342,6 +601,11 @@ public class DatabaseLoader {
 				return;
 			openConns.removeIf(openConn -> cleanConnection(openConn, null));
 		}
+		long now = System.currentTimeMillis();
+		synchronized (recentWrites) {
+			recentWrites.values().removeIf(
+					time -> now - time >= replicaWriteWindow);
+		}
 	}
 
 	private boolean cleanConnection(OpenDatabaseConnection openConn,
@@ -349,7 +613,7 @@ public class DatabaseLoader {
 		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 		long now = System.currentTimeMillis();
 		long openMs = now - openConn.openTime;
-		if (openMs > MIN_KEEP_OPEN_DURATION) {
+		if (openMs > MIN_KEEP_OPEN_DURATION || openConn.failed) {
 			if (reusable != null)
 				reusable.set(false);
 			if (openMs > MAX_KEEP_OPEN_DURATION) {
@@ -380,6 +644,8 @@ public class DatabaseLoader {
 	}
 	
 	private class OpenDatabaseConnection {
+		public int replica = -1;
+		public boolean failed = false;
 		public long openTime;
 		public DatabaseConnection baseConn;
 		public List<CloseListenDatabaseConnection> dbConns = new ArrayList<>();
@@ -0,0 +1,50 @@
+package nl.rrd.senseeact.service;
+
+import com.google.firebase.messaging.*;
+import nl.rrd.utils.AppComponents;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Push message sender that sends messages with Firebase Cloud Messaging. The
+ * Firebase app should be initialised before messages are sent.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class FcmPushMessageSender implements PushMessageSender {
+	private static final String LOGTAG =
+			FcmPushMessageSender.class.getSimpleName();
+
+	@Override
+	public boolean send(String fcmToken, Map<String,String> data)
+			throws IOException {
+		Logger logger = AppComponents.getLogger(LOGTAG);
+		AndroidConfig androidConfig = AndroidConfig.builder()
+				.setPriority(AndroidConfig.Priority.HIGH)
+				.build();
+		Message message = Message.builder()
+				.putAllData(data)
+				.setToken(fcmToken)
+				.setAndroidConfig(androidConfig)
+				.build();
+		try {
+			String response = FirebaseMessaging.getInstance().send(message);
+			logger.info("Sent push message to " + fcmToken);
+			logger.info("Response: " + response);
+			return true;
+		} catch (FirebaseMessagingException ex) {
+			MessagingErrorCode error = ex.getMessagingErrorCode();
+			if (error == MessagingErrorCode.UNREGISTERED ||
+					error == MessagingErrorCode.SENDER_ID_MISMATCH) {
+				logger.info(String.format(
+						"FCM token %s rejected with error %s", fcmToken,
+						error));
+				return false;
+			}
+			throw new IOException("Failed to send push message to " +
+					fcmToken + ": " + ex.getMessage(), ex);
+		}
+	}
+}
@@ -16,9 +16,16 @@ import java.util.Map;
  * @author Dennis Hofs (RRD)
  */
 public class HttpContentReader {
+	private static final String CONTENT_ATTRIBUTE =
+			HttpContentReader.class.getName() + ".content";
 
 	/**
-	 * Reads the content as a UTF-8 string.
+	 * Reads the content as a UTF-8 string. The content is saved in the
+	 * request, so it can be read again if a query is retried (see {@link
+	 * QueryRunner#runReadOnlyProjectQuery(ProjectQuery, String, String,
+	 * jakarta.servlet.http.HttpServletRequest,
+	 * jakarta.servlet.http.HttpServletResponse)
+	 * QueryRunner.runReadOnlyProjectQuery()}).
 	 * 
 	 * @param request the request
 	 * @return the content
@@ -26,9 +33,15 @@ public class HttpContentReader {
 	 */
 	public static String readString(HttpServletRequest request)
 			throws IOException {
+		Object saved = request.getAttribute(CONTENT_ATTRIBUTE);
+		if (saved != null)
+			return (String)saved;
+		String content;
 		try (InputStream input = request.getInputStream()) {
-			return FileUtils.readFileString(input);
+			content = FileUtils.readFileString(input);
 		}
+		request.setAttribute(CONTENT_ATTRIBUTE, content);
+		return content;
 	}
 	
 	/**
@@ -0,0 +1,31 @@
+package nl.rrd.senseeact.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A push message sender delivers data messages to a device that has a sync
+ * push registration. It is used by {@link PushNotificationService
+ * PushNotificationService}. Implementations should be thread-safe, because
+ * the service may send messages from multiple threads at the same time.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public interface PushMessageSender {
+
+	/**
+	 * Sends a data message to the device with the specified FCM token. If
+	 * the token is no longer valid, this method returns false. The service
+	 * will then remove the registration. If the message could not be sent
+	 * because of another error, this method throws an IOException. The
+	 * service will then retry later.
+	 *
+	 * @param fcmToken the FCM token
+	 * @param data the message data
+	 * @return true if the message was sent, false if the token is no longer
+	 * valid
+	 * @throws IOException if the message could not be sent
+	 */
+	boolean send(String fcmToken, Map<String,String> data)
+			throws IOException;
+}
@@ -1,15 +1,11 @@
 package nl.rrd.senseeact.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
-import com.google.firebase.messaging.*;
 import nl.rrd.utils.AppComponent;
 import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.exception.DatabaseException;
-import nl.rrd.utils.exception.ParseException;
-import nl.rrd.utils.json.JsonMapper;
 import nl.rrd.utils.json.JsonObject;
 import nl.rrd.senseeact.client.SenSeeActClient;
 import nl.rrd.senseeact.client.SyncTableRestriction;
@@ -19,7 +15,9 @@ import nl.rrd.senseeact.client.project.ProjectRepository;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseAction;
 import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
 import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.senseeact.dao.cluster.ClusterEventBus;
 import nl.rrd.senseeact.service.model.SyncPushRegistration;
 import nl.rrd.senseeact.service.model.SyncPushRegistrationTable;
 import org.slf4j.Logger;
@@ -27,84 +25,294 @@ import org.slf4j.Logger;
 import java.io.IOException;
 import java.util.*;
 
+/**
+ * This service sends push messages to devices with a sync push registration
+ * when new database actions are added to a table that the registration
+ * matches.
+ *
+ * <p>Updates are queued per destination (registration). The queue of a
+ * destination contains each update (database, table, user, project) at most
+ * once, so a burst of database actions results in one message per device.
+ * Destinations are delivered by a pool of worker threads (see {@link
+ * Configuration#PUSH_WORKER_THREADS Configuration.PUSH_WORKER_THREADS}). If
+ * a message to a destination fails, only that destination is retried later
+ * with an exponential backoff.</p>
+ *
+ * <p>By default messages are sent with Firebase Cloud Messaging. For testing
+ * you can configure {@link Configuration#PUSH_STUB_URL
+ * Configuration.PUSH_STUB_URL} to post the messages to a local endpoint
+ * instead. See {@link StubPushMessageSender StubPushMessageSender}.</p>
+ *
+ * <p>Messages are sent by the node where the database actions were added.
+ * In a cluster each node should therefore know all registrations. When the
+ * registrations of a user change, this service publishes a {@link
+ * #CLUSTER_EVENT CLUSTER_EVENT} and other nodes should call {@link
+ * #reloadRegistrations(Database, String, String)
+ * reloadRegistrations()}.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
 @AppComponent
 public class PushNotificationService {
+	/**
+	 * The type of {@link ClusterEventBus ClusterEventBus} event that is
+	 * published when the sync push registrations of a user change. The data
+	 * contains keys "database" and "user".
+	 */
+	public static final String CLUSTER_EVENT = "pushRegistration";
+
 	private static final String SERVICE_NAME =
 			PushNotificationService.class.getSimpleName();
 
+	private static final int DEFAULT_WORKER_THREADS = 4;
+	private static final int MIN_RETRY_DELAY = 10000; // milliseconds
+	private static final int MAX_RETRY_DELAY = 600000; // milliseconds
+
 	private Logger logger;
 	private final Object lock = new Object();
 	private boolean stopped = false;
+	private PushMessageSender sender;
 
 	private Map<DatabaseTableUserKey,List<SyncPushRegistration>> registrations =
-			new LinkedHashMap<>();
-	private List<PushUpdate> pendingUpdates = new ArrayList<>();
-	
+			new HashMap<>();
+	// database -> table -> keys in "registrations"
+	private Map<String,Map<String,Set<DatabaseTableUserKey>>> tableKeys =
+			new HashMap<>();
+
+	// registration ID -> destination with pending updates
+	private Map<String,PushDestination> destinations = new HashMap<>();
+	private Set<PushDestination> readyDestinations = new LinkedHashSet<>();
+	private PriorityQueue<PushDestination> retryDestinations =
+			new PriorityQueue<>(Comparator.comparingLong(
+					dest -> dest.retryTime));
+	private int pendingCount = 0;
+
+	private long deliveredCount = 0;
+	private long failedCount = 0;
+	private long latencySum = 0;
+	private long latencyMax = 0;
+
 	public void startService() {
 		logger = AppComponents.getLogger(SERVICE_NAME);
 		logger.info("Start " + SERVICE_NAME);
-		if (FirebaseApp.getApps().isEmpty()) {
-			FirebaseOptions options;
-			try {
-				options = FirebaseOptions.builder()
-						.setCredentials(GoogleCredentials.getApplicationDefault())
-						.build();
-			} catch (IOException ex) {
-				logger.error("Failed to read Google credentials: " +
-						ex.getMessage(), ex);
-				return;
+		Configuration config = AppComponents.get(Configuration.class);
+		String stubUrl = config.get(Configuration.PUSH_STUB_URL);
+		if (stubUrl != null && !stubUrl.isEmpty()) {
+			logger.info("Send push messages to stub endpoint " + stubUrl);
+			sender = new StubPushMessageSender(stubUrl);
+		} else {
+			if (FirebaseApp.getApps().isEmpty()) {
+				FirebaseOptions options;
+				try {
+					options = FirebaseOptions.builder()
+							.setCredentials(
+							GoogleCredentials.getApplicationDefault())
+							.build();
+				} catch (IOException ex) {
+					logger.error("Failed to read Google credentials: " +
+							ex.getMessage(), ex);
+					return;
+				}
+				FirebaseApp.initializeApp(options);
 			}
-			FirebaseApp.initializeApp(options);
+			sender = new FcmPushMessageSender();
 		}
 		new Thread(this::runServiceThread).start();
 	}
-	
+
 	public void stopService() {
 		synchronized (lock) {
 			if (stopped)
 				return;
 			stopped = true;
 			registrations.clear();
+			tableKeys.clear();
+			destinations.clear();
+			readyDestinations.clear();
+			retryDestinations.clear();
+			pendingCount = 0;
 			lock.notifyAll();
 		}
 		logger.info("Stop " + SERVICE_NAME);
 	}
-	
+
 	private void runServiceThread() {
 		List<SyncPushRegistration> regs = readPushRegistrations();
 		if (regs == null)
 			return;
 		for (SyncPushRegistration reg : regs) {
-			addRegistration(reg);
+			loadRegistration(reg);
 			if (stopped)
 				return;
 		}
+		int threadCount = getWorkerThreadCount();
+		for (int i = 0; i < threadCount; i++) {
+			new Thread(this::runWorkerThread, SERVICE_NAME + "-worker-" + i)
+					.start();
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads that deliver push messages. This
+	 * is read from {@link Configuration#PUSH_WORKER_THREADS
+	 * Configuration.PUSH_WORKER_THREADS}.
+	 *
+	 * @return the number of worker threads
+	 */
+	private int getWorkerThreadCount() {
+		Configuration config = AppComponents.get(Configuration.class);
+		return config.getIntProperty(Configuration.PUSH_WORKER_THREADS,
+				DEFAULT_WORKER_THREADS, 1);
+	}
+
+	private void runWorkerThread() {
+		while (true) {
+			PushDestination dest;
+			synchronized (lock) {
+				dest = waitNextDestination();
+				if (dest == null)
+					return;
+				dest.busy = true;
+			}
+			deliverDestination(dest);
+		}
+	}
+
+	/**
+	 * Waits until a destination is ready for delivery and removes it from the
+	 * ready queue. Destinations whose retry time has passed are moved to the
+	 * ready queue. If the service is stopped, this method returns null. This
+	 * method should be called while synchronized on "lock".
+	 *
+	 * @return the destination or null
+	 */
+	private PushDestination waitNextDestination() {
 		while (!stopped) {
+			long now = System.currentTimeMillis();
+			while (!retryDestinations.isEmpty() &&
+					retryDestinations.peek().retryTime <= now) {
+				PushDestination dest = retryDestinations.poll();
+				dest.retryTime = 0;
+				if (!dest.pendingUpdates.isEmpty())
+					readyDestinations.add(dest);
+				else
+					destinations.remove(dest.registration.getId(), dest);
+			}
+			Iterator<PushDestination> it = readyDestinations.iterator();
+			if (it.hasNext()) {
+				PushDestination dest = it.next();
+				it.remove();
+				return dest;
+			}
+			try {
+				if (retryDestinations.isEmpty())
+					lock.wait();
+				else
+					lock.wait(retryDestinations.peek().retryTime - now);
+			} catch (InterruptedException ex) {
+				throw new RuntimeException("Thread interrupted", ex);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Sends the pending updates of the specified destination one by one,
+	 * until the queue of the destination is empty or a message fails. If a
+	 * message fails, the update is put back at the front of the queue and the
+	 * destination is scheduled for a retry.
+	 *
+	 * @param dest the destination
+	 */
+	private void deliverDestination(PushDestination dest) {
+		while (true) {
+			SyncPushRegistration reg;
 			PushUpdate update;
+			long enqueueTime;
 			synchronized (lock) {
-				while (!stopped && pendingUpdates.isEmpty()) {
-					try {
-						lock.wait();
-					} catch (InterruptedException ex) {
-						throw new RuntimeException("Thread interrupted", ex);
-					}
-				}
 				if (stopped)
 					return;
-				update = pendingUpdates.remove(0);
-			}
-			if (!pushUpdate(update)) {
-				synchronized (lock) {
-					if (stopped)
-						return;
-					pendingUpdates.add(0, update);
-					if (!sleep(10000))
-						return;
+				String regId = dest.registration.getId();
+				if (destinations.get(regId) != dest)
+					return;
+				if (dest.pendingUpdates.isEmpty()) {
+					dest.busy = false;
+					destinations.remove(regId);
+					return;
 				}
+				Iterator<Map.Entry<PushUpdate,Long>> it =
+						dest.pendingUpdates.entrySet().iterator();
+				Map.Entry<PushUpdate,Long> entry = it.next();
+				it.remove();
+				pendingCount--;
+				reg = dest.registration;
+				update = entry.getKey();
+				enqueueTime = entry.getValue();
 			}
+			PushMessageData data = new PushMessageData(update.project,
+					update.user, update.table);
+			Map<String,String> dataMap = data.toFcmMap();
+			logger.info("Sending push message: " + dataMap);
+			boolean registered;
+			try {
+				registered = sender.send(reg.getFcmToken(), dataMap);
+			} catch (IOException ex) {
+				logger.error(ex.getMessage(), ex);
+				onDeliveryFailed(dest, update, enqueueTime);
+				return;
+			}
+			if (!registered) {
+				unregisterOnError(reg);
+				return;
+			}
+			synchronized (lock) {
+				long latency = System.currentTimeMillis() - enqueueTime;
+				dest.failures = 0;
+				deliveredCount++;
+				latencySum += latency;
+				if (latency > latencyMax)
+					latencyMax = latency;
+			}
+		}
+	}
+
+	/**
+	 * Called when a push message to a destination failed. It puts the update
+	 * back at the front of the queue of the destination and schedules the
+	 * destination for a retry. Other destinations are not affected.
+	 *
+	 * @param dest the destination
+	 * @param update the update that failed
+	 * @param enqueueTime the time when the update was queued
+	 */
+	private void onDeliveryFailed(PushDestination dest, PushUpdate update,
+			long enqueueTime) {
+		synchronized (lock) {
+			failedCount++;
+			if (stopped || destinations.get(dest.registration.getId()) != dest)
+				return;
+			LinkedHashMap<PushUpdate,Long> pending = new LinkedHashMap<>();
+			pending.put(update, enqueueTime);
+			for (Map.Entry<PushUpdate,Long> entry :
+					dest.pendingUpdates.entrySet()) {
+				pending.putIfAbsent(entry.getKey(), entry.getValue());
+			}
+			pendingCount += pending.size() - dest.pendingUpdates.size();
+			dest.pendingUpdates = pending;
+			dest.failures++;
+			long delay = MIN_RETRY_DELAY;
+			for (int i = 1; i < dest.failures && delay < MAX_RETRY_DELAY;
+					i++) {
+				delay *= 2;
+			}
+			delay = Math.min(delay, MAX_RETRY_DELAY);
+			dest.busy = false;
+			dest.retryTime = System.currentTimeMillis() + delay;
+			retryDestinations.add(dest);
+			lock.notifyAll();
 		}
 	}
-	
+
 	private List<SyncPushRegistration> readPushRegistrations() {
 		while (true) {
 			Exception exception;
@@ -123,7 +331,7 @@ public class PushNotificationService {
 			}
 		}
 	}
-	
+
 	private boolean sleep(int ms) {
 		synchronized (lock) {
 			long now = System.currentTimeMillis();
@@ -139,7 +347,7 @@ public class PushNotificationService {
 			return !stopped;
 		}
 	}
-	
+
 	private List<SyncPushRegistration> readPushRegistrationsSingle()
 			throws IOException, DatabaseException {
 		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
@@ -152,16 +360,59 @@ public class PushNotificationService {
 			dbConn.close();
 		}
 	}
-	
+
 	/**
 	 * Adds a sync push registration. If the service is stopped, then this
 	 * method has no effect. If the registration refers to a non-existing
 	 * project, then this method tries to remove the registration from the
 	 * database.
-	 * 
+	 *
 	 * @param registration the registration
 	 */
 	public void addRegistration(SyncPushRegistration registration) {
+		loadRegistration(registration);
+		publishUserChange(registration.getDatabase(), registration.getUser());
+	}
+
+	/**
+	 * Reads the sync push registrations for the specified database and user
+	 * from the authentication database and replaces the registrations in
+	 * memory. This should be called when another node in the cluster
+	 * published a {@link #CLUSTER_EVENT CLUSTER_EVENT}.
+	 *
+	 * @param authDb the authentication database
+	 * @param database the database name
+	 * @param user the user
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void reloadRegistrations(Database authDb, String database,
+			String user) throws DatabaseException {
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+			new DatabaseCriteria.Equal("database", database),
+			new DatabaseCriteria.Equal("user", user)
+		);
+		List<SyncPushRegistration> regs = authDb.select(
+				new SyncPushRegistrationTable(), criteria, 0, null);
+		synchronized (lock) {
+			if (stopped)
+				return;
+			for (DatabaseTableUserKey key : findUserKeys(database, user)) {
+				removeKey(key);
+			}
+			for (SyncPushRegistration reg : regs) {
+				loadRegistration(reg);
+			}
+		}
+	}
+
+	/**
+	 * Adds a sync push registration without notifying other nodes in the
+	 * cluster. See {@link #addRegistration(SyncPushRegistration)
+	 * addRegistration()}.
+	 *
+	 * @param registration the registration
+	 */
+	private void loadRegistration(SyncPushRegistration registration) {
 		synchronized (lock) {
 			if (stopped)
 				return;
@@ -184,13 +435,16 @@ public class PushNotificationService {
 				if (restriction.matchesTable(projectTable.getName()))
 					addRegistration(registration, projectTable.getName());
 			}
+			PushDestination dest = destinations.get(registration.getId());
+			if (dest != null)
+				dest.registration = registration;
 		}
 	}
-	
+
 	/**
 	 * Adds a sync push registration that should be triggered for the specified
 	 * table.
-	 * 
+	 *
 	 * @param registration the registration
 	 */
 	private void addRegistration(SyncPushRegistration registration,
@@ -201,11 +455,83 @@ public class PushNotificationService {
 				k -> new ArrayList<>());
 		list.removeIf(other -> other.getId().equals(registration.getId()));
 		list.add(registration);
+		tableKeys.computeIfAbsent(key.database, k -> new HashMap<>())
+				.computeIfAbsent(key.table, k -> new HashSet<>())
+				.add(key);
+	}
+
+	/**
+	 * Removes the specified key from "registrations" and "tableKeys". It also
+	 * removes the destinations of the registrations for that key. This method
+	 * should be called while synchronized on "lock".
+	 *
+	 * @param key the key
+	 */
+	private void removeKey(DatabaseTableUserKey key) {
+		List<SyncPushRegistration> regs = registrations.remove(key);
+		if (regs != null) {
+			for (SyncPushRegistration reg : regs) {
+				removeDestination(reg.getId());
+			}
+		}
+		Map<String,Set<DatabaseTableUserKey>> dbTables = tableKeys.get(
+				key.database);
+		if (dbTables == null)
+			return;
+		Set<DatabaseTableUserKey> keys = dbTables.get(key.table);
+		if (keys == null)
+			return;
+		keys.remove(key);
+		if (keys.isEmpty())
+			dbTables.remove(key.table);
+		if (dbTables.isEmpty())
+			tableKeys.remove(key.database);
+	}
+
+	/**
+	 * Removes the destination for the specified registration, including its
+	 * pending updates. This method should be called while synchronized on
+	 * "lock".
+	 *
+	 * @param registrationId the registration ID
+	 */
+	private void removeDestination(String registrationId) {
+		PushDestination dest = destinations.remove(registrationId);
+		if (dest == null)
+			return;
+		pendingCount -= dest.pendingUpdates.size();
+		dest.pendingUpdates.clear();
+		readyDestinations.remove(dest);
+		retryDestinations.remove(dest);
 	}
-	
+
+	/**
+	 * Returns the keys in "registrations" for the specified database and
+	 * user. This method should be called while synchronized on "lock".
+	 *
+	 * @param database the database name
+	 * @param user the user
+	 * @return the keys
+	 */
+	private List<DatabaseTableUserKey> findUserKeys(String database,
+			String user) {
+		List<DatabaseTableUserKey> result = new ArrayList<>();
+		Map<String,Set<DatabaseTableUserKey>> dbTables = tableKeys.get(
+				database);
+		if (dbTables == null)
+			return result;
+		for (Set<DatabaseTableUserKey> keys : dbTables.values()) {
+			for (DatabaseTableUserKey key : keys) {
+				if (key.user.equals(user))
+					result.add(key);
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Removes the registrations for the specified user and project.
-	 * 
+	 *
 	 * @param user the user
 	 * @param project the project
 	 */
@@ -214,29 +540,34 @@ public class PushNotificationService {
 			if (stopped)
 				return;
 			String dbName = DatabaseLoader.getProjectDatabaseName(project);
-			Set<DatabaseTableUserKey> keySet = new HashSet<>(
-					registrations.keySet());
-			for (DatabaseTableUserKey key : keySet) {
-				if (key.database.equals(dbName) && key.user.equals(user)) {
-					registrations.remove(key);
-				}
+			for (DatabaseTableUserKey key : findUserKeys(dbName, user)) {
+				removeKey(key);
 			}
 		}
+		publishUserChange(DatabaseLoader.getProjectDatabaseName(project), user);
 	}
 
-	private void removeRegistration(DatabaseTableUserKey key,
-			SyncPushRegistration reg) {
+	/**
+	 * Removes the specified registration for all tables and deletes it from
+	 * the database.
+	 *
+	 * @param reg the registration
+	 */
+	private void removeRegistration(SyncPushRegistration reg) {
 		synchronized (lock) {
 			if (stopped)
 				return;
-			List<SyncPushRegistration> regs = registrations.get(key);
-			if (regs != null) {
-				regs.remove(reg);
+			for (DatabaseTableUserKey key : findUserKeys(reg.getDatabase(),
+					reg.getUser())) {
+				List<SyncPushRegistration> regs = registrations.get(key);
+				regs.removeIf(other -> other.getId().equals(reg.getId()));
 				if (regs.isEmpty())
-					registrations.remove(key);
+					removeKey(key);
 			}
+			removeDestination(reg.getId());
 		}
 		tryRemoveRegistrationFromDb(reg);
+		publishUserChange(reg.getDatabase(), reg.getUser());
 	}
 
 	private void tryRemoveRegistrationFromDb(SyncPushRegistration reg) {
@@ -260,116 +591,236 @@ public class PushNotificationService {
 			dbConn.close();
 		}
 	}
-	
+
 	public void removeRegistrations(String database, String user,
 			String deviceId) {
 		synchronized (lock) {
 			if (stopped)
 				return;
-			Set<DatabaseTableUserKey> keySet = new HashSet<>(
-					registrations.keySet());
-			for (DatabaseTableUserKey key : keySet) {
-				if (!key.database.equals(database) || !key.user.equals(user))
-					continue;
+			for (DatabaseTableUserKey key : findUserKeys(database, user)) {
 				List<SyncPushRegistration> regs = registrations.get(key);
-				removeDevice(regs, deviceId);
+				Iterator<SyncPushRegistration> it = regs.iterator();
+				while (it.hasNext()) {
+					SyncPushRegistration reg = it.next();
+					if (reg.getDeviceId().equals(deviceId)) {
+						it.remove();
+						removeDestination(reg.getId());
+					}
+				}
 				if (regs.isEmpty())
-					registrations.remove(key);
+					removeKey(key);
 			}
 		}
+		publishUserChange(database, user);
 	}
-	
-	private void removeDevice(List<SyncPushRegistration> regs,
-			String deviceId) {
-		regs.removeIf(reg -> reg.getDeviceId().equals(deviceId));
+
+	/**
+	 * Publishes a {@link #CLUSTER_EVENT CLUSTER_EVENT} so other nodes in the
+	 * cluster reload the registrations of the specified user. If the database
+	 * is null, this method has no effect.
+	 *
+	 * @param database the database name or null
+	 * @param user the user
+	 */
+	private void publishUserChange(String database, String user) {
+		if (database == null)
+			return;
+		Map<String,String> data = new LinkedHashMap<>();
+		data.put("database", database);
+		data.put("user", user);
+		ClusterEventBus bus = AppComponents.get(ClusterEventBus.class);
+		bus.publish(CLUSTER_EVENT, data);
 	}
 
 	public void onAddDatabaseActions(String project, String database,
 			String table, List<DatabaseAction> actions) {
 		Boolean isUserTable = null;
-		List<String> users = new ArrayList<>();
+		Set<String> users = new LinkedHashSet<>();
 		for (DatabaseAction action : actions) {
 			isUserTable = action.getUser() != null;
-			List<String> excludeSources = new ArrayList<>();
-			excludeSources.add(SenSeeActClient.SYNC_REMOTE_ID);
-			if (isUserTable)
-				excludeSources.add(action.getUser());
-			if (excludeSources.contains(action.getSource()))
+			String source = action.getSource();
+			if (SenSeeActClient.SYNC_REMOTE_ID.equals(source))
 				continue;
-			if (isUserTable && !users.contains(action.getUser()))
+			if (isUserTable && action.getUser().equals(source))
+				continue;
+			if (isUserTable)
 				users.add(action.getUser());
 		}
 		synchronized (lock) {
 			if (stopped || isUserTable == null)
 				return;
-			List<PushUpdate> updates = new ArrayList<>();
 			if (isUserTable) {
 				for (String user : users) {
-					updates.add(new PushUpdate(database, table, user, project));
+					enqueueUpdate(new PushUpdate(database, table, user,
+							project));
 				}
 			} else {
-				updates.add(new PushUpdate(database, table, null, project));
-			}
-			for (PushUpdate update : updates) {
-				if (!pendingUpdates.contains(update)) {
-					pendingUpdates.add(update);
-					lock.notifyAll();
-				}
+				enqueueUpdate(new PushUpdate(database, table, null, project));
 			}
 		}
 	}
-	
-	private boolean pushUpdate(PushUpdate update) {
+
+	/**
+	 * Adds the specified update to the queue of each destination whose
+	 * registration matches the update. If the update is already queued for a
+	 * destination, it is not added again. This method should be called while
+	 * synchronized on "lock".
+	 *
+	 * @param update the update
+	 */
+	private void enqueueUpdate(PushUpdate update) {
 		List<SyncPushRegistration> updateRegs = new ArrayList<>();
-		synchronized (lock) {
-			if (stopped)
-				return false;
-			for (DatabaseTableUserKey key : registrations.keySet()) {
-				if (key.matchesUpdate(update))
+		if (update.user != null) {
+			List<SyncPushRegistration> regs = registrations.get(
+					new DatabaseTableUserKey(update.database, update.table,
+					update.user));
+			if (regs != null)
+				updateRegs.addAll(regs);
+		} else {
+			Map<String,Set<DatabaseTableUserKey>> dbTables = tableKeys.get(
+					update.database);
+			Set<DatabaseTableUserKey> keys = dbTables == null ? null :
+					dbTables.get(update.table);
+			if (keys != null) {
+				for (DatabaseTableUserKey key : keys) {
 					updateRegs.addAll(registrations.get(key));
+				}
 			}
-			if (updateRegs.isEmpty())
-				return true;
 		}
-		PushMessageData data = new PushMessageData(update.project, update.user,
-				update.table);
-		Map<String,String> dataMap = data.toFcmMap();
-		logger.info("Sending push message: " + dataMap);
+		long now = System.currentTimeMillis();
+		boolean added = false;
 		for (SyncPushRegistration reg : updateRegs) {
-			DatabaseTableUserKey key = new DatabaseTableUserKey(
-					reg.getDatabase(), update.table, reg.getUser());
-			AndroidConfig androidConfig = AndroidConfig.builder()
-					.setPriority(AndroidConfig.Priority.HIGH)
-					.build();
-			Message.Builder builder = Message.builder()
-					.putAllData(dataMap)
-					.setToken(reg.getFcmToken())
-					.setAndroidConfig(androidConfig);
-			Message message = builder.build();
-			try {
-				String response = FirebaseMessaging.getInstance().send(message);
-				logger.info("Sent push message to " + reg.getFcmToken());
-				logger.info("Response: " + response);
-			} catch (FirebaseMessagingException ex) {
-				MessagingErrorCode error = ex.getMessagingErrorCode();
-				if (error == MessagingErrorCode.UNREGISTERED ||
-						error == MessagingErrorCode.SENDER_ID_MISMATCH) {
-					unregisterOnError(key, reg, error);
-				} else {
-					logger.error("Failed to send push message to " +
-							reg.getFcmToken() + ": " + ex.getMessage(), ex);
-					return false;
-				}
-			}
+			PushDestination dest = destinations.computeIfAbsent(reg.getId(),
+					id -> new PushDestination(reg));
+			if (dest.pendingUpdates.putIfAbsent(update, now) != null)
+				continue;
+			pendingCount++;
+			if (!dest.busy && dest.retryTime == 0)
+				readyDestinations.add(dest);
+			added = true;
+		}
+		if (added)
+			lock.notifyAll();
+	}
+
+	/**
+	 * Returns statistics about the delivery of push messages since the
+	 * previous call of this method. The queue size is the current number of
+	 * pending messages.
+	 *
+	 * @return the delivery statistics
+	 */
+	public DeliveryStats getDeliveryStats() {
+		synchronized (lock) {
+			DeliveryStats stats = new DeliveryStats(pendingCount,
+					deliveredCount, failedCount,
+					deliveredCount == 0 ? null : latencySum / deliveredCount,
+					deliveredCount == 0 ? null : latencyMax);
+			deliveredCount = 0;
+			failedCount = 0;
+			latencySum = 0;
+			latencyMax = 0;
+			return stats;
 		}
-		return true;
 	}
 
-	private void unregisterOnError(DatabaseTableUserKey key,
-			SyncPushRegistration reg, MessagingErrorCode error) {
-		logger.info(String.format("Delete FCM registration on error %s: ",
-				error) + reg);
-		removeRegistration(key, reg);
+	private void unregisterOnError(SyncPushRegistration reg) {
+		logger.info("Delete FCM registration after rejected token: " + reg);
+		removeRegistration(reg);
+	}
+
+	/**
+	 * Statistics about the delivery of push messages. See {@link
+	 * #getDeliveryStats() getDeliveryStats()}.
+	 */
+	public static class DeliveryStats {
+		private int queueSize;
+		private long deliveredCount;
+		private long failedCount;
+		private Long avgLatency;
+		private Long maxLatency;
+
+		public DeliveryStats(int queueSize, long deliveredCount,
+				long failedCount, Long avgLatency, Long maxLatency) {
+			this.queueSize = queueSize;
+			this.deliveredCount = deliveredCount;
+			this.failedCount = failedCount;
+			this.avgLatency = avgLatency;
+			this.maxLatency = maxLatency;
+		}
+
+		/**
+		 * Returns the number of pending messages.
+		 *
+		 * @return the number of pending messages
+		 */
+		public int getQueueSize() {
+			return queueSize;
+		}
+
+		/**
+		 * Returns the number of messages that were delivered.
+		 *
+		 * @return the number of delivered messages
+		 */
+		public long getDeliveredCount() {
+			return deliveredCount;
+		}
+
+		/**
+		 * Returns the number of failed delivery attempts.
+		 *
+		 * @return the number of failed delivery attempts
+		 */
+		public long getFailedCount() {
+			return failedCount;
+		}
+
+		/**
+		 * Returns the average time in milliseconds from queueing an update
+		 * until delivery of the message. This is null if no messages were
+		 * delivered.
+		 *
+		 * @return the average latency in milliseconds or null
+		 */
+		public Long getAvgLatency() {
+			return avgLatency;
+		}
+
+		/**
+		 * Returns the maximum time in milliseconds from queueing an update
+		 * until delivery of the message. This is null if no messages were
+		 * delivered.
+		 *
+		 * @return the maximum latency in milliseconds or null
+		 */
+		public Long getMaxLatency() {
+			return maxLatency;
+		}
+
+		@Override
+		public String toString() {
+			return JsonObject.toString(this);
+		}
+	}
+
+	/**
+	 * A destination is a sync push registration with a queue of pending
+	 * updates. A destination is in at most one of "readyDestinations" and
+	 * "retryDestinations", or it is busy at a worker thread.
+	 */
+	private static class PushDestination {
+		public SyncPushRegistration registration;
+		// update -> time when the update was queued
+		public LinkedHashMap<PushUpdate,Long> pendingUpdates =
+				new LinkedHashMap<>();
+		public boolean busy = false;
+		public int failures = 0;
+		public long retryTime = 0;
+
+		public PushDestination(SyncPushRegistration registration) {
+			this.registration = registration;
+		}
 	}
 
 	/**
@@ -379,7 +830,7 @@ public class PushNotificationService {
 		public String database;
 		public String table;
 		public String user;
-		
+
 		public DatabaseTableUserKey(String database, String table,
 				String user) {
 			this.database = database;
@@ -387,16 +838,6 @@ public class PushNotificationService {
 			this.user = user;
 		}
 
-		public boolean matchesUpdate(PushUpdate update) {
-			if (!database.equals(update.database))
-				return false;
-			if (!table.equals(update.table))
-				return false;
-			if (update.user != null && !user.equals(update.user))
-				return false;
-			return true;
-		}
-		
 		@Override
 		public int hashCode() {
 			int result = database.hashCode();
@@ -404,7 +845,7 @@ public class PushNotificationService {
 			result += 31 * user.hashCode();
 			return result;
 		}
-		
+
 		@Override
 		public boolean equals(Object obj) {
 			if (obj == null)
@@ -452,7 +893,7 @@ public class PushNotificationService {
 			this.user = user;
 			this.project = project;
 		}
-		
+
 		@Override
 		public int hashCode() {
 			int result = database.hashCode();
@@ -9,6 +9,7 @@ package nl.rrd.senseeact.service;
 public class QueryContext {
 	private String project = null;
 	private boolean allowPendingMfa = false;
+	private RateLimiter.RequestClass requestClass = null;
 
 	/**
 	 * If the query accesses project data, this method returns the project code.
@@ -67,4 +68,27 @@ public class QueryContext {
 		this.allowPendingMfa = allowPendingMfa;
 		return this;
 	}
+
+	/**
+	 * Returns the request class for rate limiting. If this is null (default),
+	 * the query is not limited. See {@link RateLimiter RateLimiter}.
+	 *
+	 * @return the request class or null
+	 */
+	public RateLimiter.RequestClass getRequestClass() {
+		return requestClass;
+	}
+
+	/**
+	 * Sets the request class for rate limiting. If this is null (default),
+	 * the query is not limited. See {@link RateLimiter RateLimiter}.
+	 *
+	 * @param requestClass the request class or null
+	 * @return this context
+	 */
+	public QueryContext setRequestClass(
+			RateLimiter.RequestClass requestClass) {
+		this.requestClass = requestClass;
+		return this;
+	}
 }
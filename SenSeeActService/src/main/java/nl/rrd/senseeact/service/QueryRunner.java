@@ -12,9 +12,11 @@ import nl.rrd.senseeact.dao.DatabaseConnection;
 import nl.rrd.senseeact.service.exception.BadRequestException;
 import nl.rrd.senseeact.service.exception.HttpException;
 import nl.rrd.senseeact.service.exception.InternalServerErrorException;
+import nl.rrd.senseeact.service.exception.TooManyRequestsException;
 import nl.rrd.senseeact.service.exception.UnauthorizedException;
 import nl.rrd.senseeact.service.model.User;
 import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
 import org.slf4j.Logger;
 
 import java.io.PrintWriter;
@@ -91,11 +93,12 @@ public class QueryRunner {
 					versionName);
 		}
 		DatabaseConnection conn = null;
+		User user = null;
+		boolean limited = false;
 		try {
 			DatabaseLoader dbLoader = DatabaseLoader.getInstance();
 			conn = dbLoader.openConnection();
 			Database authDb = dbLoader.initAuthDatabase(conn);
-			User user = null;
 			AuthDetails authDetails = null;
 			if (request != null) {
 				ValidateTokenResult validateResult =
@@ -103,6 +106,7 @@ public class QueryRunner {
 						authDb, context);
 				user = validateResult.getUser();
 				authDetails = validateResult.getAuthDetails();
+				limited = acquireRateLimit(user, context, response);
 			}
 			return query.runQuery(version, authDb, user, authDetails);
 		} catch (UnauthorizedException ex) {
@@ -123,6 +127,8 @@ public class QueryRunner {
 					ex.getMessage() + ": " + stackTrace, ex);
 			throw new InternalServerErrorException();
 		} finally {
+			if (limited)
+				releaseRateLimit(user, context);
 			if (conn != null)
 				conn.close();
 		}
@@ -157,6 +163,111 @@ public class QueryRunner {
 			String versionName, String project, HttpServletRequest request,
 			HttpServletResponse response, String logId) throws HttpException,
 			Exception {
+		return runProjectQuery(query, versionName, project, request, response,
+				logId, false, null);
+	}
+
+	/**
+	 * Runs a query on a project database with rate limiting. This is the same
+	 * as {@link
+	 * #runProjectQuery(ProjectQuery, String, String, HttpServletRequest, HttpServletResponse)
+	 * runProjectQuery()}, but the query is admitted by the {@link RateLimiter
+	 * RateLimiter} for the specified request class. If the user exceeds the
+	 * limit, it throws an HttpException with 429 Too Many Requests and sets
+	 * header Retry-After.
+	 *
+	 * @param query the query
+	 * @param versionName the protocol version name (see {@link ProtocolVersion
+	 * ProtocolVersion})
+	 * @param project the project code
+	 * @param request the HTTP request
+	 * @param response the HTTP response
+	 * @param requestClass the request class for rate limiting
+	 * @return the query result
+	 * @throws HttpException if the query should return an HTTP error status
+	 * @throws Exception if an unexpected error occurs. This results in HTTP
+	 * error status 500 Internal Server Error.
+	 */
+	public static <T> T runProjectQuery(ProjectQuery<T> query,
+			String versionName, String project, HttpServletRequest request,
+			HttpServletResponse response,
+			RateLimiter.RequestClass requestClass) throws HttpException,
+			Exception {
+		return runProjectQuery(query, versionName, project, request, response,
+				null, false, requestClass);
+	}
+
+	/**
+	 * Runs a read-only query on a project database. This is the same as
+	 * {@link
+	 * #runProjectQuery(ProjectQuery, String, String, HttpServletRequest, HttpServletResponse)
+	 * runProjectQuery()}, but the query may be run on a read replica of the
+	 * database server. See {@link
+	 * DatabaseLoader#openReplicaConnection(String, List)
+	 * DatabaseLoader.openReplicaConnection()}. The authentication database is
+	 * always on the primary server. The query should not write to the
+	 * project database.
+	 *
+	 * <p>Data of the authenticated user and the subject in request parameter
+	 * "user" is read from the primary server if it was written recently. If
+	 * the query fails on the replica with a database error before the
+	 * response was committed, the replica is marked as failed and the query
+	 * is run again on the primary server.</p>
+	 *
+	 * @param query the query
+	 * @param versionName the protocol version name (see {@link ProtocolVersion
+	 * ProtocolVersion})
+	 * @param project the project code
+	 * @param request the HTTP request
+	 * @param response the HTTP response (to add header WWW-Authenticate in
+	 * case of 401 Unauthorized)
+	 * @return the query result
+	 * @throws HttpException if the query should return an HTTP error status
+	 * @throws Exception if an unexpected error occurs. This results in HTTP
+	 * error status 500 Internal Server Error.
+	 */
+	public static <T> T runReadOnlyProjectQuery(ProjectQuery<T> query,
+			String versionName, String project, HttpServletRequest request,
+			HttpServletResponse response) throws HttpException, Exception {
+		return runProjectQuery(query, versionName, project, request, response,
+				null, true, null);
+	}
+
+	/**
+	 * Runs a read-only query on a project database with rate limiting. This
+	 * is the same as {@link
+	 * #runReadOnlyProjectQuery(ProjectQuery, String, String, HttpServletRequest, HttpServletResponse)
+	 * runReadOnlyProjectQuery()}, but the query is admitted by the {@link
+	 * RateLimiter RateLimiter} for the specified request class. If the user
+	 * exceeds the limit, it throws an HttpException with 429 Too Many
+	 * Requests and sets header Retry-After.
+	 *
+	 * @param query the query
+	 * @param versionName the protocol version name (see {@link ProtocolVersion
+	 * ProtocolVersion})
+	 * @param project the project code
+	 * @param request the HTTP request
+	 * @param response the HTTP response
+	 * @param requestClass the request class for rate limiting
+	 * @return the query result
+	 * @throws HttpException if the query should return an HTTP error status
+	 * @throws Exception if an unexpected error occurs. This results in HTTP
+	 * error status 500 Internal Server Error.
+	 */
+	public static <T> T runReadOnlyProjectQuery(ProjectQuery<T> query,
+			String versionName, String project, HttpServletRequest request,
+			HttpServletResponse response,
+			RateLimiter.RequestClass requestClass) throws HttpException,
+			Exception {
+		return runProjectQuery(query, versionName, project, request, response,
+				null, true, requestClass);
+	}
+
+	private static <T> T runProjectQuery(ProjectQuery<T> query,
+			String versionName, String project, HttpServletRequest request,
+			HttpServletResponse response, String logId, boolean readOnly,
+			RateLimiter.RequestClass requestClass) throws HttpException,
+			Exception {
 		Logger logger = AppComponents.getLogger(
 				QueryRunner.class.getSimpleName());
 		if (logId != null) {
@@ -170,6 +281,10 @@ public class QueryRunner {
 					versionName);
 		}
 		DatabaseConnection conn = null;
+		QueryContext context = new QueryContext().setProject(project)
+				.setRequestClass(requestClass);
+		User user = null;
+		boolean limited = false;
 		try {
 			DatabaseLoader dbLoader = DatabaseLoader.getInstance();
 			if (logId != null) {
@@ -186,10 +301,10 @@ public class QueryRunner {
 				logger.info("Run project query {} after init auth database, project {}",
 						logId, project);
 			}
-			QueryContext context = new QueryContext().setProject(project);
 			ValidateTokenResult validateResult = AuthTokenValidator.validate(
 					version, request, response, authDb, context);
-			User user = validateResult.getUser();
+			user = validateResult.getUser();
+			limited = acquireRateLimit(user, context, response);
 			if (logId != null) {
 				logger.info("Run project query {} validated token, project {}, user {}",
 						logId, project, user.getUserid());
@@ -202,8 +317,14 @@ public class QueryRunner {
 				logger.info("Run project query {} after init sample database, project {}, user {}",
 						logId, project, user.getUserid());
 			}
-			T result = query.runQuery(version, authDb, projectDb, user,
-					baseProject);
+			T result;
+			if (readOnly && projectDb != null) {
+				result = runReplicaQuery(query, version, project, request,
+						response, authDb, projectDb, user, baseProject);
+			} else {
+				result = query.runQuery(version, authDb, projectDb, user,
+						baseProject);
+			}
 			if (logId != null) {
 				logger.info("Run project query {} after run query, project {}, user {}",
 						logId, project, user.getUserid());
@@ -225,11 +346,99 @@ public class QueryRunner {
 					ex.getMessage() + ": " + stackTrace, ex);
 			throw new InternalServerErrorException();
 		} finally {
+			if (limited)
+				releaseRateLimit(user, context);
 			if (conn != null)
 				conn.close();
 		}
 	}
 
+	/**
+	 * Admits a query of the specified user with the {@link RateLimiter
+	 * RateLimiter} if the query context defines a request class. If the user
+	 * exceeds the limit, this method sets header Retry-After and throws an
+	 * HttpException with 429 Too Many Requests.
+	 *
+	 * @param user the authenticated user
+	 * @param context the query context
+	 * @param response the HTTP response
+	 * @return true if the query was admitted and should be released with
+	 * {@link #releaseRateLimit(User, QueryContext) releaseRateLimit()}, false
+	 * if the query is not limited
+	 * @throws TooManyRequestsException if the user exceeds the limit
+	 */
+	private static boolean acquireRateLimit(User user, QueryContext context,
+			HttpServletResponse response) throws TooManyRequestsException {
+		if (user == null || context.getRequestClass() == null)
+			return false;
+		RateLimiter limiter = AppComponents.get(RateLimiter.class);
+		long retryAfter = limiter.tryAcquire(user.getUserid(),
+				context.getRequestClass());
+		if (retryAfter == 0)
+			return true;
+		response.addHeader("Retry-After",
+				Long.toString((retryAfter + 999) / 1000));
+		throw new TooManyRequestsException(
+				"Too many requests of type " + context.getRequestClass());
+	}
+
+	private static void releaseRateLimit(User user, QueryContext context) {
+		RateLimiter limiter = AppComponents.get(RateLimiter.class);
+		limiter.release(user.getUserid(), context.getRequestClass());
+	}
+
+	/**
+	 * Runs a read-only project query on a read replica if possible. If there
+	 * is no suitable replica, or the query fails on the replica with a
+	 * database error before the response was committed, the query is run on
+	 * the primary project database.
+	 *
+	 * @param query the query
+	 * @param version the protocol version
+	 * @param project the project code
+	 * @param request the HTTP request
+	 * @param response the HTTP response
+	 * @param authDb the authentication database
+	 * @param projectDb the project database on the primary server
+	 * @param user the authenticated user
+	 * @param baseProject the project
+	 * @return the query result
+	 * @throws HttpException if the query should return an HTTP error status
+	 * @throws Exception if an unexpected error occurs
+	 */
+	private static <T> T runReplicaQuery(ProjectQuery<T> query,
+			ProtocolVersion version, String project,
+			HttpServletRequest request, HttpServletResponse response,
+			Database authDb, Database projectDb, User user,
+			BaseProject baseProject) throws HttpException, Exception {
+		List<String> users = new ArrayList<>();
+		users.add(user.getUserid());
+		String subject = request.getParameter("user");
+		if (subject != null && !subject.isEmpty()) {
+			User subjectUser = User.findAccessibleUser(version, subject,
+					authDb, user);
+			users.add(subjectUser.getUserid());
+		}
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection replicaConn = dbLoader.openReplicaConnection(
+				project, users);
+		if (replicaConn != null) {
+			try {
+				Database replicaDb = dbLoader.getReplicaProjectDatabase(
+						replicaConn, project);
+				return query.runQuery(version, authDb, replicaDb, user,
+						baseProject);
+			} catch (DatabaseException ex) {
+				dbLoader.setReplicaFailed(replicaConn, ex);
+				if (response.isCommitted())
+					throw ex;
+			} finally {
+				replicaConn.close();
+			}
+		}
+		return query.runQuery(version, authDb, projectDb, user, baseProject);
+	}
+
 	public static SenSeeActClient getSelfClient(HttpServletRequest request) {
 		Configuration config = AppComponents.get(Configuration.class);
 		String baseUrl = config.getBaseUrl();
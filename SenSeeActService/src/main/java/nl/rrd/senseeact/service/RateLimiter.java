@@ -0,0 +1,336 @@
+package nl.rrd.senseeact.service;
+
+import nl.rrd.utils.AppComponent;
+import nl.rrd.utils.AppComponents;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class limits the rate of heavy requests per user. Requests are grouped
+ * in a {@link RequestClass RequestClass}. For each user and request class it
+ * keeps a token bucket and the number of running requests. A request is only
+ * admitted if the bucket has a token and the user has fewer running requests
+ * than the concurrency cap.
+ *
+ * <p>The limits are read from {@link Configuration#RATE_LIMITS
+ * Configuration.RATE_LIMITS}. It's a comma-separated list of items
+ * "class:rate:burst:concurrency", for example
+ * "recordRead:5:20:4,syncRead:2:10:2". The rate is the number of tokens that
+ * are added per second, the burst is the maximum number of tokens in the
+ * bucket and the concurrency is the maximum number of running requests per
+ * user. Request classes that are not configured, are not limited.</p>
+ *
+ * <p>The {@link QueryRunner QueryRunner} calls {@link
+ * #tryAcquire(String, RequestClass) tryAcquire()} and {@link
+ * #release(String, RequestClass) release()} for queries that define a
+ * request class in the {@link QueryContext QueryContext}.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@AppComponent
+public class RateLimiter {
+	private static final long CLEAN_INTERVAL = 60000;
+	private static final long CONCURRENCY_RETRY_DELAY = 1000;
+
+	public enum RequestClass {
+		RECORD_READ("recordRead"),
+		SYNC_READ("syncRead"),
+		SYNC_WRITE("syncWrite"),
+		EXPORT("export"),
+		WATCH("watch");
+
+		private final String name;
+
+		RequestClass(String name) {
+			this.name = name;
+		}
+
+		public static RequestClass fromStringValue(String val) {
+			for (RequestClass requestClass : values()) {
+				if (requestClass.name.equals(val))
+					return requestClass;
+			}
+			throw new IllegalArgumentException(String.format(
+					"Unknown name \"%s\" in enum %s", val,
+					RequestClass.class.getName()));
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private final Object lock = new Object();
+	private Map<RequestClass,Limit> limits = null;
+	private Map<UserRequestKey,UserState> userStates = new HashMap<>();
+	private long lastClean = 0;
+	private Map<RequestClass,Stats> stats = new LinkedHashMap<>();
+
+	/**
+	 * Constructs a new rate limiter that reads the limits from the
+	 * configuration.
+	 */
+	public RateLimiter() {
+	}
+
+	/**
+	 * Constructs a new rate limiter with the specified limits instead of the
+	 * limits from the configuration. The value has the same format as {@link
+	 * Configuration#RATE_LIMITS Configuration.RATE_LIMITS}. This is used for
+	 * testing.
+	 *
+	 * @param rateLimits the limits
+	 */
+	RateLimiter(String rateLimits) {
+		limits = parseLimits(rateLimits);
+	}
+
+	/**
+	 * Tries to admit a request from the specified user. If the request is
+	 * admitted, this method returns 0 and you must call {@link
+	 * #release(String, RequestClass) release()} when the request is
+	 * completed. Otherwise it returns the number of milliseconds after which
+	 * the user may try again.
+	 *
+	 * @param user the user ID
+	 * @param requestClass the request class
+	 * @return 0 if the request is admitted, or the number of milliseconds
+	 * after which the user may try again
+	 */
+	public long tryAcquire(String user, RequestClass requestClass) {
+		synchronized (lock) {
+			Limit limit = getLimits().get(requestClass);
+			if (limit == null)
+				return 0;
+			long now = currentTimeMillis();
+			cleanUserStates(now);
+			UserState state = userStates.computeIfAbsent(
+					new UserRequestKey(user, requestClass),
+					key -> new UserState(limit.burst, now));
+			state.refill(limit, now);
+			Stats classStats = stats.computeIfAbsent(requestClass,
+					key -> new Stats());
+			if (state.running >= limit.concurrency) {
+				classStats.rejected++;
+				return CONCURRENCY_RETRY_DELAY;
+			}
+			if (state.tokens < 1) {
+				classStats.rejected++;
+				return (long)Math.ceil((1 - state.tokens) * 1000 / limit.rate);
+			}
+			state.tokens -= 1;
+			state.running++;
+			classStats.admitted++;
+			return 0;
+		}
+	}
+
+	/**
+	 * Releases a request that was admitted by {@link
+	 * #tryAcquire(String, RequestClass) tryAcquire()}.
+	 *
+	 * @param user the user ID
+	 * @param requestClass the request class
+	 */
+	public void release(String user, RequestClass requestClass) {
+		synchronized (lock) {
+			UserState state = userStates.get(new UserRequestKey(user,
+					requestClass));
+			if (state != null && state.running > 0)
+				state.running--;
+		}
+	}
+
+	/**
+	 * Returns the number of admitted and rejected requests per request class
+	 * since the previous call of this method. It only includes request
+	 * classes that are limited.
+	 *
+	 * @return the statistics per request class
+	 */
+	public Map<RequestClass,Stats> getStats() {
+		synchronized (lock) {
+			Map<RequestClass,Stats> result = new LinkedHashMap<>();
+			for (RequestClass requestClass : getLimits().keySet()) {
+				Stats classStats = stats.get(requestClass);
+				result.put(requestClass, classStats == null ? new Stats() :
+						classStats);
+			}
+			stats = new LinkedHashMap<>();
+			return result;
+		}
+	}
+
+	/**
+	 * Removes the state of users who have no running requests and a full
+	 * bucket. This method should be called while synchronized on "lock".
+	 *
+	 * @param now the current time
+	 */
+	private void cleanUserStates(long now) {
+		if (now - lastClean < CLEAN_INTERVAL)
+			return;
+		lastClean = now;
+		Iterator<Map.Entry<UserRequestKey,UserState>> it =
+				userStates.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<UserRequestKey,UserState> entry = it.next();
+			UserState state = entry.getValue();
+			Limit limit = limits.get(entry.getKey().requestClass);
+			state.refill(limit, now);
+			if (state.running == 0 && state.tokens >= limit.burst)
+				it.remove();
+		}
+	}
+
+	/**
+	 * Returns the current time in milliseconds. This can be overridden for
+	 * testing.
+	 *
+	 * @return the current time in milliseconds
+	 */
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the limits from the configuration. They are parsed at the first
+	 * call. This method should be called while synchronized on "lock".
+	 *
+	 * @return the limits
+	 */
+	private Map<RequestClass,Limit> getLimits() {
+		if (limits != null)
+			return limits;
+		Configuration config = AppComponents.get(Configuration.class);
+		limits = parseLimits(config.get(Configuration.RATE_LIMITS));
+		return limits;
+	}
+
+	/**
+	 * Parses the limits in the format of {@link Configuration#RATE_LIMITS
+	 * Configuration.RATE_LIMITS}.
+	 *
+	 * @param value the value or null
+	 * @return the limits
+	 */
+	private Map<RequestClass,Limit> parseLimits(String value) {
+		Map<RequestClass,Limit> result = new LinkedHashMap<>();
+		if (value != null && !value.trim().isEmpty()) {
+			for (String item : value.split(",")) {
+				String[] parts = item.trim().split(":");
+				if (parts.length != 4)
+					throw createConfigException(value, null);
+				try {
+					RequestClass requestClass = RequestClass.fromStringValue(
+							parts[0].trim());
+					double rate = Double.parseDouble(parts[1].trim());
+					int burst = Integer.parseInt(parts[2].trim());
+					int concurrency = Integer.parseInt(parts[3].trim());
+					if (rate <= 0 || burst < 1 || concurrency < 1)
+						throw createConfigException(value, null);
+					result.put(requestClass, new Limit(rate, burst,
+							concurrency));
+				} catch (IllegalArgumentException ex) {
+					throw createConfigException(value, ex);
+				}
+			}
+		}
+		return result;
+	}
+
+	private RuntimeException createConfigException(String value,
+			Exception cause) {
+		return AppComponents.get(Configuration.class)
+				.createInvalidValueException(Configuration.RATE_LIMITS, value,
+				cause);
+	}
+
+	/**
+	 * The number of admitted and rejected requests for a request class.
+	 */
+	public static class Stats {
+		private long admitted = 0;
+		private long rejected = 0;
+
+		public long getAdmitted() {
+			return admitted;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+	}
+
+	private static class Limit {
+		public double rate;
+		public int burst;
+		public int concurrency;
+
+		public Limit(double rate, int burst, int concurrency) {
+			this.rate = rate;
+			this.burst = burst;
+			this.concurrency = concurrency;
+		}
+	}
+
+	private static class UserState {
+		public double tokens;
+		public long lastRefill;
+		public int running = 0;
+
+		public UserState(double tokens, long lastRefill) {
+			this.tokens = tokens;
+			this.lastRefill = lastRefill;
+		}
+
+		/**
+		 * Adds the tokens for the time since the last refill.
+		 *
+		 * @param limit the limit
+		 * @param now the current time
+		 */
+		public void refill(Limit limit, long now) {
+			if (now <= lastRefill)
+				return;
+			tokens = Math.min(limit.burst,
+					tokens + (now - lastRefill) * limit.rate / 1000);
+			lastRefill = now;
+		}
+	}
+
+	private static class UserRequestKey {
+		public String user;
+		public RequestClass requestClass;
+
+		public UserRequestKey(String user, RequestClass requestClass) {
+			this.user = user;
+			this.requestClass = requestClass;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = user.hashCode();
+			result += 31 * requestClass.hashCode();
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == null)
+				return false;
+			if (obj.getClass() != getClass())
+				return false;
+			UserRequestKey other = (UserRequestKey)obj;
+			if (!user.equals(other.user))
+				return false;
+			if (requestClass != other.requestClass)
+				return false;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package nl.rrd.senseeact.service;
+
+import nl.rrd.utils.http.HttpClient2;
+import nl.rrd.utils.http.HttpClientException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Push message sender that posts messages to a local HTTP endpoint instead
+ * of Firebase Cloud Messaging. This is meant for testing. The request
+ * content is a JSON object with the properties "token" and "data". If the
+ * endpoint returns HTTP status 404 or 410, the token is considered to be no
+ * longer valid. Other errors are retried by the push notification service.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class StubPushMessageSender implements PushMessageSender {
+	private String url;
+
+	/**
+	 * Constructs a new sender.
+	 *
+	 * @param url the URL of the stub endpoint
+	 */
+	public StubPushMessageSender(String url) {
+		this.url = url;
+	}
+
+	@Override
+	public boolean send(String fcmToken, Map<String,String> data)
+			throws IOException {
+		Map<String,Object> content = new LinkedHashMap<>();
+		content.put("token", fcmToken);
+		content.put("data", data);
+		try (HttpClient2 client = new HttpClient2(url)) {
+			client.setMethod("POST")
+					.writeJson(content)
+					.readString();
+			return true;
+		} catch (HttpClientException ex) {
+			if (ex.getStatusCode() == 404 || ex.getStatusCode() == 410)
+				return false;
+			throw new IOException("Push stub endpoint returned error: " +
+					ex.getMessage(), ex);
+		}
+	}
+}
@@ -8,6 +8,7 @@ import nl.rrd.senseeact.client.model.SubjectEvent;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseConnection;
 import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.cluster.ClusterEventBus;
 import nl.rrd.senseeact.service.model.User;
 import nl.rrd.senseeact.service.model.UserCache;
 import nl.rrd.senseeact.service.model.WatchSubjectRegistration;
@@ -18,7 +19,9 @@ import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class WatchSubjectListener implements UserListener {
@@ -31,6 +34,15 @@ public class WatchSubjectListener implements UserListener {
 	 */
 	public static final int REMOVE_AFTER_WATCH_MINUTES = 60;
 
+	/**
+	 * The type of {@link ClusterEventBus ClusterEventBus} event that is
+	 * published when a watch subject registration is added, changed or
+	 * removed. The data contains keys "project" and "id". Other nodes in the
+	 * cluster should call {@link #reloadRegistration(Database, String)
+	 * reloadRegistration()}.
+	 */
+	public static final String CLUSTER_EVENT = "watchSubjectRegistration";
+
 	private static final Object LOCK = new Object();
 
 	private WatchSubjectRegistration registration;
@@ -110,6 +122,7 @@ public class WatchSubjectListener implements UserListener {
 				conn.close();
 			}
 		}
+		publishRegistration(registration);
 	}
 
 	@Override
@@ -315,6 +328,7 @@ public class WatchSubjectListener implements UserListener {
 			conn = dbLoader.openConnection();
 			Database authDb = dbLoader.initAuthDatabase(conn);
 			authDb.update(WatchSubjectRegistrationTable.NAME, registration);
+			publishRegistration(registration);
 			return true;
 		} catch (DatabaseException ex) {
 			logger.error("Database error while saving events: " +
@@ -391,6 +405,7 @@ public class WatchSubjectListener implements UserListener {
 			authDb.update(WatchSubjectRegistrationTable.NAME, reg);
 			listener.registration.setLastWatchTime(now.toInstant()
 					.toEpochMilli());
+			publishRegistration(listener.registration);
 			return true;
 		}
 	}
@@ -409,6 +424,7 @@ public class WatchSubjectListener implements UserListener {
 				if (reset)
 					reg.getEventList().clear();
 				authDb.update(WatchSubjectRegistrationTable.NAME, reg);
+				publishRegistration(reg);
 				return listener.registration.getId();
 			} else {
 				WatchSubjectRegistration reg = new WatchSubjectRegistration();
@@ -421,6 +437,7 @@ public class WatchSubjectListener implements UserListener {
 				UserListenerRepository repository =
 						UserListenerRepository.getInstance();
 				repository.addUserListener(listener);
+				publishRegistration(reg);
 				return reg.getId();
 			}
 		}
@@ -435,8 +452,62 @@ public class WatchSubjectListener implements UserListener {
 			UserListenerRepository repository =
 					UserListenerRepository.getInstance();
 			repository.removeUserListener(listener);
+			publishRegistration(listener.registration);
 		}
 	}
+
+	/**
+	 * Reads the specified registration from the database and adds, updates or
+	 * removes the listener. This should be called when another node in the
+	 * cluster published a {@link #CLUSTER_EVENT CLUSTER_EVENT}. If the
+	 * registration has events, a current watch is woken up.
+	 *
+	 * @param authDb the authentication database
+	 * @param regId the registration ID
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public static void reloadRegistration(Database authDb, String regId)
+			throws DatabaseException {
+		synchronized (LOCK) {
+			DatabaseCriteria criteria = new DatabaseCriteria.Equal("id", regId);
+			WatchSubjectRegistration reg = authDb.selectOne(
+					new WatchSubjectRegistrationTable(), criteria, null);
+			WatchSubjectListener listener = findListener(regId);
+			UserListenerRepository repository =
+					UserListenerRepository.getInstance();
+			if (reg == null) {
+				if (listener == null)
+					return;
+				listener.setCurrentWatch(null);
+				repository.removeUserListener(listener);
+			} else if (listener == null) {
+				listener = new WatchSubjectListener(reg);
+				if (listener.initUserSubjects(reg.getUser(), authDb))
+					repository.addUserListener(listener);
+			} else {
+				synchronized (listener.lock) {
+					listener.registration = reg;
+					listener.initUserSubjects(reg.getUser(), authDb);
+					if (!reg.getEventList().isEmpty())
+						listener.lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publishes a {@link #CLUSTER_EVENT CLUSTER_EVENT} so other nodes in the
+	 * cluster reload the specified registration.
+	 *
+	 * @param reg the registration
+	 */
+	private static void publishRegistration(WatchSubjectRegistration reg) {
+		Map<String,String> data = new LinkedHashMap<>();
+		data.put("project", reg.getProject());
+		data.put("id", reg.getId());
+		ClusterEventBus bus = AppComponents.get(ClusterEventBus.class);
+		bus.publish(CLUSTER_EVENT, data);
+	}
 	
 	private static WatchSubjectListener findListener(String user,
 			String project) {
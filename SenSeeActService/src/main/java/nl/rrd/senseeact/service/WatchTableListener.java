@@ -14,6 +14,7 @@ import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseAction;
 import nl.rrd.senseeact.dao.DatabaseConnection;
 import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.cluster.ClusterEventBus;
 import nl.rrd.senseeact.dao.listener.DatabaseActionListener;
 import nl.rrd.senseeact.dao.listener.DatabaseListenerRepository;
 import nl.rrd.senseeact.service.model.WatchTableRegistration;
@@ -38,6 +39,15 @@ public class WatchTableListener implements DatabaseActionListener {
 	public static final int REMOVE_AFTER_FAILED_CALLBACK_HOURS = 24;
 	public static final int REMOVE_AFTER_FAILED_CALLBACK_COUNT = 5;
 
+	/**
+	 * The type of {@link ClusterEventBus ClusterEventBus} event that is
+	 * published when a watch table registration is added, changed or removed.
+	 * The data contains keys "project" and "id". Other nodes in the cluster
+	 * should call {@link #reloadRegistration(Database, Database, String)
+	 * reloadRegistration()}.
+	 */
+	public static final String CLUSTER_EVENT = "watchTableRegistration";
+
 	private static final Object LOCK = new Object();
 
 	private WatchTableRegistration registration;
@@ -92,6 +102,7 @@ public class WatchTableListener implements DatabaseActionListener {
 				conn.close();
 			}
 		}
+		publishRegistration(registration);
 	}
 
 	@Override
@@ -100,8 +111,13 @@ public class WatchTableListener implements DatabaseActionListener {
 		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 		if (!table.equals(registration.getTable()))
 			return;
-		Set<String> subjects = findMatchingSubjects(actions);
+		List<String> users = new ArrayList<>();
+		for (DatabaseAction action : actions) {
+			users.add(action.getUser());
+		}
+		Set<String> subjects = findMatchingSubjects(users);
 		List<String> triggeredClone;
+		boolean saved = false;
 		synchronized (lock) {
 			boolean changed = false;
 			List<String> triggered = registration.getTriggeredSubjectsList();
@@ -120,6 +136,7 @@ public class WatchTableListener implements DatabaseActionListener {
 					conn = dbLoader.openConnection();
 					Database authDb = dbLoader.initAuthDatabase(conn);
 					authDb.update(WatchTableRegistrationTable.NAME, registration);
+					saved = true;
 				} catch (DatabaseException ex) {
 					logger.error("Database error while saving triggered subjects: " +
 							ex.getMessage(), ex);
@@ -133,12 +150,42 @@ public class WatchTableListener implements DatabaseActionListener {
 			}
 			triggeredClone = new ArrayList<>(triggered);
 		}
+		if (saved)
+			publishRegistration(registration);
 		if (registration.getCallbackUrl() != null &&
 				!triggeredClone.isEmpty()) {
 			new Thread(() -> startCallback(triggeredClone)).start();
 		}
 	}
 
+	/**
+	 * Called when another node in the cluster added database actions. This
+	 * method only adds the triggered subjects in memory and wakes up a current
+	 * watch. The node that added the actions saves the triggered subjects and
+	 * runs the callback.
+	 */
+	@Override
+	public void onAddRemoteDatabaseActions(String database, String table,
+			List<String> users) {
+		if (!table.equals(registration.getTable()))
+			return;
+		Set<String> subjects = findMatchingSubjects(users);
+		synchronized (lock) {
+			boolean changed = false;
+			List<String> triggered = registration.getTriggeredSubjectsList();
+			for (String subject : subjects) {
+				if (!triggered.contains(subject)) {
+					triggered.add(subject);
+					changed = true;
+				}
+			}
+			if (changed) {
+				Collections.sort(triggered);
+				lock.notifyAll();
+			}
+		}
+	}
+
 	private void startCallback(List<String> triggeredSubjects) {
 		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 		Map<String,Object> data = new LinkedHashMap<>();
@@ -174,6 +221,7 @@ public class WatchTableListener implements DatabaseActionListener {
 			registration.getTriggeredSubjectsList().removeAll(triggeredSubjects);
 			authDb.update(WatchTableRegistrationTable.NAME, registration);
 		}
+		publishRegistration(registration);
 	}
 
 	private void onCallbackFailed(Database authDb, Database projectDb,
@@ -194,6 +242,7 @@ public class WatchTableListener implements DatabaseActionListener {
 			}
 			authDb.update(WatchTableRegistrationTable.NAME, registration);
 		}
+		publishRegistration(registration);
 		cleanRegistrations(authDb, projectDb);
 	}
 
@@ -219,17 +268,12 @@ public class WatchTableListener implements DatabaseActionListener {
 		return strValue.equalsIgnoreCase("callback_expired");
 	}
 
-	private Set<String> findMatchingSubjects(List<DatabaseAction> actions) {
-		if (registration.getSubject() == null) {
-			Set<String> result = new HashSet<>();
-			for (DatabaseAction action : actions) {
-				result.add(action.getUser());
-			}
-			return result;
-		}
-		for (DatabaseAction action : actions) {
-			if (action.getUser().equals(registration.getSubject()))
-				return Collections.singleton(action.getUser());
+	private Set<String> findMatchingSubjects(List<String> users) {
+		if (registration.getSubject() == null)
+			return new HashSet<>(users);
+		for (String user : users) {
+			if (user.equals(registration.getSubject()))
+				return Collections.singleton(user);
 		}
 		return Collections.emptySet();
 	}
@@ -339,6 +383,7 @@ public class WatchTableListener implements DatabaseActionListener {
 			authDb.update(WatchTableRegistrationTable.NAME, reg);
 			listener.registration.setLastWatchTime(
 					now.toInstant().toEpochMilli());
+			publishRegistration(listener.registration);
 			return true;
 		}
 	}
@@ -373,6 +418,7 @@ public class WatchTableListener implements DatabaseActionListener {
 				repository.addDatabaseActionListener(projectDb.getName(),
 						new WatchTableListener(reg));
 			}
+			publishRegistration(reg);
 			return reg.getId();
 		}
 	}
@@ -391,8 +437,62 @@ public class WatchTableListener implements DatabaseActionListener {
 					reg.getProject(), reg.getTable(), reg.getSubject());
 			repository.removeDatabaseActionListener(projectDb.getName(),
 					listener);
+			publishRegistration(reg);
 		}
 	}
+
+	/**
+	 * Reads the specified registration from the database and adds, updates or
+	 * removes the listener. This should be called when another node in the
+	 * cluster published a {@link #CLUSTER_EVENT CLUSTER_EVENT}. If the
+	 * registration has triggered subjects, a current watch is woken up.
+	 *
+	 * @param authDb the authentication database
+	 * @param projectDb the project database
+	 * @param regId the registration ID
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public static void reloadRegistration(Database authDb, Database projectDb,
+			String regId) throws DatabaseException {
+		synchronized (LOCK) {
+			DatabaseCriteria criteria = new DatabaseCriteria.Equal("id", regId);
+			WatchTableRegistration reg = authDb.selectOne(
+					new WatchTableRegistrationTable(), criteria, null);
+			WatchTableListener listener = findListener(projectDb, regId);
+			DatabaseListenerRepository repository =
+					DatabaseListenerRepository.getInstance();
+			if (reg == null) {
+				if (listener == null)
+					return;
+				listener.setCurrentWatch(null);
+				repository.removeDatabaseActionListener(projectDb.getName(),
+						listener);
+			} else if (listener == null) {
+				repository.addDatabaseActionListener(projectDb.getName(),
+						new WatchTableListener(reg));
+			} else {
+				synchronized (listener.lock) {
+					listener.registration = reg;
+					if (!reg.getTriggeredSubjectsList().isEmpty())
+						listener.lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Publishes a {@link #CLUSTER_EVENT CLUSTER_EVENT} so other nodes in the
+	 * cluster reload the specified registration.
+	 *
+	 * @param reg the registration
+	 */
+	private static void publishRegistration(WatchTableRegistration reg) {
+		Map<String,String> data = new LinkedHashMap<>();
+		data.put("project", reg.getProject());
+		data.put("id", reg.getId());
+		ClusterEventBus bus = AppComponents.get(ClusterEventBus.class);
+		bus.publish(CLUSTER_EVENT, data);
+	}
 	
 	private static WatchTableListener findListener(Database projectDb,
 			String user, String table, String subject, String callbackUrl) {
@@ -9,7 +9,9 @@ import nl.rrd.senseeact.client.project.ProjectRepository;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseCriteria;
 import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.senseeact.service.QueryContext;
 import nl.rrd.senseeact.service.QueryRunner;
+import nl.rrd.senseeact.service.RateLimiter;
 import nl.rrd.senseeact.service.exception.HttpException;
 import nl.rrd.senseeact.service.exception.NotFoundException;
 import nl.rrd.senseeact.service.export.DataExportStatus;
@@ -72,7 +74,8 @@ public class DownloadController {
 			String project) throws HttpException, Exception {
 		QueryRunner.runAuthQuery((version, authDb, user, authDetails) ->
 				doStartDownload(authDb, user, project),
-				versionName, request, response);
+				versionName, request, response, new QueryContext()
+				.setRequestClass(RateLimiter.RequestClass.EXPORT));
 	}
 
 	@RequestMapping(value="/{exportId}", method=RequestMethod.GET)
@@ -86,7 +89,8 @@ public class DownloadController {
 			String exportId) throws HttpException, Exception {
 		QueryRunner.runAuthQuery((version, authDb, user, authDetails) ->
 				doDownloadExport(authDb, user, exportId, response),
-				versionName, request, response);
+				versionName, request, response, new QueryContext()
+				.setRequestClass(RateLimiter.RequestClass.EXPORT));
 	}
 
 	@RequestMapping(value="/{exportId}", method=RequestMethod.DELETE)
@@ -79,10 +79,19 @@ public class GroupController {
 			@Parameter(hidden = true)
 			String versionName,
 			@RequestParam(value="domain", required=false, defaultValue="")
-			final String domain) throws HttpException, Exception {
+			final String domain,
+			@RequestParam(value="type", required=false, defaultValue="")
+			final String type,
+			@RequestParam(value="prefix", required=false, defaultValue="")
+			final String prefix,
+			@RequestParam(value="after", required=false, defaultValue="")
+			final String after,
+			@RequestParam(value="limit", required=false, defaultValue="")
+			final String limit) throws HttpException, Exception {
 		return QueryRunner.runAuthQuery(
 				(version, authDb, user, authDetails) ->
-				doGetGroupList(authDb, user, domain),
+				doGetGroupList(authDb, user, domain, type, prefix, after,
+						limit),
 				versionName, request, response);
 	}
 	
@@ -273,28 +282,90 @@ public class GroupController {
 		}
 	}
 	
+	/**
+	 * Returns a page of group names in alphabetical order. All filters are
+	 * optional:
+	 *
+	 * <p><ul>
+	 * <li>domain: the domain of the group name (only for multi-user
+	 * groups)</li>
+	 * <li>type: the group type (default MULTI_USER)</li>
+	 * <li>prefix: the start of the group name</li>
+	 * <li>after: the last group name in the previous page</li>
+	 * <li>limit: the maximum number of groups (default 0: no limit)</li>
+	 * </ul></p>
+	 *
+	 * <p>The name filters are applied in the database query. The group type
+	 * is derived from the name, so it's checked on each selected group. If
+	 * that leaves a page with less than "limit" groups, this method selects
+	 * the next batch until the page is full or there are no more groups.</p>
+	 *
+	 * @param authDb the authentication database
+	 * @param user the user who runs the query (must be an admin)
+	 * @param domain the domain or an empty string
+	 * @param typeStr the group type or an empty string
+	 * @param prefix the name prefix or an empty string
+	 * @param after the name after which the page starts, or an empty string
+	 * @param limitStr the maximum number of groups or an empty string
+	 * @return the group names
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
 	private List<String> doGetGroupList(Database authDb, User user,
-			String domain) throws HttpException, Exception {
+			String domain, String typeStr, String prefix, String after,
+			String limitStr) throws HttpException, Exception {
 		if (user.getRole() != Role.ADMIN)
 			throw new ForbiddenException();
+		List<HttpFieldError> fieldErrors = new ArrayList<>();
+		Group.Type type = Group.Type.MULTI_USER;
+		if (typeStr != null && !typeStr.isEmpty()) {
+			try {
+				type = TypeConversion.getEnum(typeStr, Group.Type.class);
+			} catch (ParseException ex) {
+				fieldErrors.add(new HttpFieldError("type",
+						"Invalid group type: " + typeStr));
+			}
+		}
+		int limit = UserController.parseListLimit(limitStr, fieldErrors);
+		if (!fieldErrors.isEmpty())
+			throw BadRequestException.withInvalidInput(fieldErrors);
+		List<DatabaseCriteria> andCriteria = new ArrayList<>();
+		if (domain != null && !domain.isEmpty()) {
+			andCriteria.add(new DatabaseCriteria.EndsWith("name",
+					"@" + domain));
+		}
+		if (prefix != null && !prefix.isEmpty())
+			andCriteria.add(new DatabaseCriteria.StartsWith("name", prefix));
 		GroupTable table = new GroupTable();
 		DatabaseSort[] sort = new DatabaseSort[] {
 				new DatabaseSort("name", true)
 		};
-		List<Group> groups = authDb.select(table, null, 0, sort);
 		List<String> result = new ArrayList<>();
-		for (Group group : groups) {
-			if (group.getGroupType() != Group.Type.MULTI_USER)
-				continue;
-			String name = group.getName();
-			if (domain != null && domain.length() > 0) {
-				String groupDomain = name.substring(name.indexOf('@') + 1);
-				if (!groupDomain.equals(domain))
-					continue;
+		String pageAfter = after;
+		while (true) {
+			List<DatabaseCriteria> pageCriteria = new ArrayList<>(andCriteria);
+			if (pageAfter != null && !pageAfter.isEmpty()) {
+				pageCriteria.add(new DatabaseCriteria.GreaterThan("name",
+						pageAfter));
+			}
+			DatabaseCriteria criteria = null;
+			if (!pageCriteria.isEmpty()) {
+				criteria = new DatabaseCriteria.And(pageCriteria.toArray(
+						new DatabaseCriteria[0]));
+			}
+			int selectLimit = limit == 0 ? 0 : limit - result.size();
+			List<Group> groups = authDb.select(table, criteria, selectLimit,
+					sort);
+			for (Group group : groups) {
+				if (group.getGroupType() == type)
+					result.add(group.getName());
+				pageAfter = group.getName();
+			}
+			if (limit == 0 || groups.size() < selectLimit ||
+					result.size() >= limit) {
+				return result;
 			}
-			result.add(group.getName());
 		}
-		return result;
 	}
 	
 	private Object doDeleteGroup(Database authDb, User user, String name)
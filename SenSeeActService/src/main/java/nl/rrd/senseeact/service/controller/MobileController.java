@@ -5,16 +5,24 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import nl.rrd.senseeact.service.QueryRunner;
 import nl.rrd.senseeact.service.exception.HttpException;
+import nl.rrd.senseeact.service.mobilelog.MobileLogStore;
+import nl.rrd.senseeact.service.model.MobileLogSegment;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.util.List;
 
 @RestController
 @RequestMapping("/v{version}/mobile")
 public class MobileController {
 	private MobileControllerExecution exec = new MobileControllerExecution();
 
+	@Autowired
+	private MobileLogStore logStore;
+
 	@RequestMapping(value="/log/{app}", method=RequestMethod.POST)
 	public void writeMobileLogForAppCode(
 			final HttpServletRequest request,
@@ -34,9 +42,41 @@ public class MobileController {
 			@RequestParam(value="zip", defaultValue="false")
 			final boolean zip) throws HttpException, Exception {
 		QueryRunner.runAuthQuery((version, authDb, user, authDetails) ->
-				exec.writeMobileLogForAppCode(request, app, device, date,
-						position, zip, user),
+				exec.writeMobileLogForAppCode(request, authDb, logStore, app,
+						device, date, position, zip, user),
+				versionName, request, response);
+	}
+
+	@RequestMapping(value="/log/{app}", method=RequestMethod.GET)
+	public void readMobileLogForAppCode(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@PathVariable("app")
+			String app,
+			@RequestParam(value="user", required=false, defaultValue="")
+			String subject,
+			@RequestParam(value="device", required=false, defaultValue="")
+			String device,
+			@RequestParam(value="start")
+			@DateTimeFormat(iso=DateTimeFormat.ISO.DATE)
+			LocalDate start,
+			@RequestParam(value="end")
+			@DateTimeFormat(iso=DateTimeFormat.ISO.DATE)
+			LocalDate end,
+			@RequestParam(value="zip", defaultValue="false")
+			boolean zip) throws HttpException, Exception {
+		List<MobileLogSegment> segments = QueryRunner.runAuthQuery(
+				(version, authDb, user, authDetails) ->
+				exec.findMobileLogSegments(version, authDb, logStore, user,
+						app, subject, device, start, end, zip),
 				versionName, request, response);
+		response.setContentType("application/octet-stream");
+		try (OutputStream out = response.getOutputStream()) {
+			logStore.writeSegments(segments, out);
+		}
 	}
 
 	@RequestMapping(value="/wake/register", method=RequestMethod.POST)
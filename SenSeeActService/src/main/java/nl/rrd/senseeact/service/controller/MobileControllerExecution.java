@@ -6,29 +6,28 @@ import nl.rrd.senseeact.client.MobileAppRepository;
 import nl.rrd.senseeact.client.exception.ErrorCode;
 import nl.rrd.senseeact.client.exception.HttpError;
 import nl.rrd.senseeact.client.exception.HttpFieldError;
+import nl.rrd.senseeact.client.model.Role;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseCriteria;
 import nl.rrd.senseeact.dao.DatabaseSort;
-import nl.rrd.senseeact.service.Configuration;
 import nl.rrd.senseeact.service.ProtocolVersion;
 import nl.rrd.senseeact.service.exception.BadRequestException;
+import nl.rrd.senseeact.service.exception.ForbiddenException;
 import nl.rrd.senseeact.service.exception.HttpException;
+import nl.rrd.senseeact.service.mobilelog.MobileLogStore;
+import nl.rrd.senseeact.service.model.MobileLogSegment;
 import nl.rrd.senseeact.service.model.MobileWakeRequest;
 import nl.rrd.senseeact.service.model.MobileWakeRequestTable;
 import nl.rrd.senseeact.service.model.User;
 import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.datetime.DateTimeUtils;
-import nl.rrd.utils.io.FileUtils;
 import nl.rrd.utils.validation.Validation;
 import nl.rrd.utils.validation.ValidationException;
 import org.slf4j.Logger;
 
 import java.io.*;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class MobileControllerExecution {
 	private static final int MIN_WAKE_INTERVAL = 60;
@@ -37,26 +36,19 @@ public class MobileControllerExecution {
 			new LinkedHashMap<>();
 
 	public Object writeMobileLogForAppCode(HttpServletRequest request,
-			String appCode, String device, LocalDate date, long position,
-			boolean zip, User user) throws HttpException, Exception {
-		MobileAppRepository appRepo = AppComponents.get(
-				MobileAppRepository.class);
-		MobileApp app;
-		try {
-			app = appRepo.forCode(appCode);
-		} catch (IllegalArgumentException ex) {
-			String msg = "Invalid app code: " + appCode;
-			HttpError error = new HttpError(ErrorCode.INVALID_INPUT, msg);
-			error.addFieldError(new HttpFieldError("app", msg));
-			throw new BadRequestException(error);
-		}
-		doWriteMobileLog(request, app, device, date, position, zip, user);
+			Database authDb, MobileLogStore logStore, String appCode,
+			String device, LocalDate date, long position, boolean zip,
+			User user) throws HttpException, Exception {
+		MobileApp app = findMobileApp(appCode);
+		doWriteMobileLog(request, authDb, logStore, app, device, date,
+				position, zip, user);
 		return null;
 	}
 
-	private void doWriteMobileLog(HttpServletRequest request, MobileApp app,
-			String device, LocalDate date, long position, boolean zip,
-			User user) throws HttpException, Exception {
+	private void doWriteMobileLog(HttpServletRequest request, Database authDb,
+			MobileLogStore logStore, MobileApp app, String device,
+			LocalDate date, long position, boolean zip, User user)
+			throws HttpException, Exception {
 		Object currLock = new Object();
 		synchronized (userLockQueue) {
 			List<Object> locks = userLockQueue.computeIfAbsent(user.getUserid(),
@@ -67,8 +59,8 @@ public class MobileControllerExecution {
 			}
 		}
 		try {
-			doWriteMobileLogLock(request, app, device, date, position, zip,
-					user);
+			doWriteMobileLogLock(request, authDb, logStore, app, device, date,
+					position, zip, user);
 		} finally {
 			synchronized (userLockQueue) {
 				List<Object> locks = userLockQueue.get(user.getUserid());
@@ -81,105 +73,97 @@ public class MobileControllerExecution {
 	}
 
 	private void doWriteMobileLogLock(HttpServletRequest request,
-			MobileApp app, String device, LocalDate date, long position,
-			boolean zip, User user) throws HttpException, Exception {
+			Database authDb, MobileLogStore logStore, MobileApp app,
+			String device, LocalDate date, long position, boolean zip,
+			User user) throws HttpException, Exception {
 		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
 		logger.info(
 				"Start write mobile log {}.{} for user {} (device: {}, date: {}, position: {})",
 				app.getName(), zip ? "zip" : "log", user.getUserid(), device,
 				date.format(DateTimeUtils.DATE_FORMAT), position);
-		if (device != null && device.length() > 0) {
-			try {
-				Validation.validateStringLength(device, 0, 64);
-				Validation.validateStringRegex(device, "[a-zA-Z0-9\\-]+");
-			} catch (ValidationException ex) {
-				String msg = "Invalid device ID: " + device;
-				HttpError error = new HttpError(ErrorCode.INVALID_INPUT, msg);
-				error.addFieldError(new HttpFieldError("device", msg));
-				throw new BadRequestException(error);
-			}
-		}
-		Configuration config = AppComponents.get(Configuration.class);
-		String dataPath = config.get(Configuration.DATA_DIR);
-		if (dataPath == null) {
-			throw new Exception("Configuration key \"" +
-					Configuration.DATA_DIR + "\" not found");
-		}
-		File logDir = new File(dataPath, "mobilelog" + File.separator +
-				app.getName() + File.separator + user.getUserid());
-		if (device != null && device.length() > 0)
-			logDir = new File(logDir, device);
-		FileUtils.mkdir(logDir);
-		int totalRead = 0;
+		validateDevice(device);
+		long written;
 		try (InputStream input = request.getInputStream()) {
-			try (OutputStream output = prepareLogFile(logDir, date, position,
-					zip)) {
-				byte[] bs = new byte[4096];
-				int read;
-				while ((read = input.read(bs)) > 0) {
-					output.write(bs, 0, read);
-					totalRead += read;
-				}
-			}
+			written = logStore.write(authDb, app.getName(), user.getUserid(),
+					device, date, zip, position, input);
 		}
 		logger.info("Wrote mobile log for user {}: {} bytes", user.getUserid(),
-				totalRead);
+				written);
 	}
 
-	private OutputStream prepareLogFile(File logDir, LocalDate date,
-			long position, boolean zip) throws IOException {
-		DateTimeFormatter shortDateFormat = DateTimeFormatter.ofPattern(
-				"yyyyMMdd");
-		String prefix = date.format(shortDateFormat);
-		String ext = zip ? "zip" : "log";
-		Pattern regex = Pattern.compile(prefix + "_([0-9]+)" + "\\." + ext);
-		File[] existing = logDir.listFiles(pathname -> {
-			Matcher m = regex.matcher(pathname.getName());
-			return m.matches();
-		});
-		List<File> existingList = Arrays.asList(existing);
-		existingList.sort(Comparator.comparing(File::getName));
-		File prevFile = null;
-		long prevLen = 0;
-		File logFile;
-		if (existingList.isEmpty()) {
-			logFile = new File(logDir, date.format(shortDateFormat) +
-					"_000000." + ext);
-		} else {
-			prevFile = existingList.get(existingList.size() - 1);
-			Matcher m = regex.matcher(prevFile.getName());
-			if (!m.matches()) {
-				throw new RuntimeException(
-						"Regular expression match failed unexpectedly");
-			}
-			int index = Integer.parseInt(m.group(1));
-			prevLen = prevFile.length();
-			if (position >= prevLen) {
-				logFile = prevFile;
-			} else {
-				logFile = new File(logDir, date.format(shortDateFormat) + "_" +
-						String.format("%06d", index + 1) + "." + ext);
-			}
+	/**
+	 * Runs the query to read mobile logs. It validates the input and returns
+	 * the segments of the log files from "start" to "end" (inclusive). The
+	 * caller should write the segments to the response with {@link
+	 * MobileLogStore#writeSegments(List, OutputStream)
+	 * MobileLogStore.writeSegments()}. Only admins can read the logs of other
+	 * users.
+	 *
+	 * @param version the protocol version
+	 * @param authDb the authentication database
+	 * @param logStore the mobile log store
+	 * @param user the user who is currently logged in
+	 * @param appCode the app code
+	 * @param subject the user ID or email address of the user whose logs
+	 * should be read, or an empty string for the current user
+	 * @param device the device ID or an empty string
+	 * @param start the start date
+	 * @param end the end date
+	 * @param zip true if zip files should be read, false for plain log files
+	 * @return the segments
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
+	public List<MobileLogSegment> findMobileLogSegments(
+			ProtocolVersion version, Database authDb, MobileLogStore logStore,
+			User user, String appCode, String subject, String device,
+			LocalDate start, LocalDate end, boolean zip)
+			throws HttpException, Exception {
+		MobileApp app = findMobileApp(appCode);
+		validateDevice(device);
+		User subjectUser = user;
+		if (!subject.isEmpty()) {
+			if (user.getRole() != Role.ADMIN)
+				throw new ForbiddenException();
+			subjectUser = User.findAccessibleUser(version, subject, authDb,
+					user);
 		}
-		if (prevFile != null && position < prevLen && zip)
-			FileUtils.copyFile(prevFile, logFile, 0, position);
-		long logLen = logFile.length();
-		OutputStream out = new FileOutputStream(logFile, true);
-		if (position > logLen)
-			writeZeros(out, position - logLen);
-		return out;
+		if (end.isBefore(start)) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError(
+					"end", "End date is before start date"));
+		}
+		if (zip && !end.equals(start)) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError(
+					"end", "Zip files can only be read for one date"));
+		}
+		return logStore.findSegments(authDb, app.getName(),
+				subjectUser.getUserid(), device, start, end, zip);
 	}
 
-	private void writeZeros(OutputStream out, long len) throws IOException {
-		byte[] fill = new byte[4096];
-		Arrays.fill(fill, (byte)0);
-		long remain = len;
-		while (remain > 0) {
-			int toWrite = fill.length;
-			if (remain < toWrite)
-				toWrite = (int)remain;
-			out.write(fill, 0, toWrite);
-			remain -= toWrite;
+	private MobileApp findMobileApp(String appCode) throws HttpException {
+		MobileAppRepository appRepo = AppComponents.get(
+				MobileAppRepository.class);
+		try {
+			return appRepo.forCode(appCode);
+		} catch (IllegalArgumentException ex) {
+			String msg = "Invalid app code: " + appCode;
+			HttpError error = new HttpError(ErrorCode.INVALID_INPUT, msg);
+			error.addFieldError(new HttpFieldError("app", msg));
+			throw new BadRequestException(error);
+		}
+	}
+
+	private void validateDevice(String device) throws HttpException {
+		if (device.isEmpty())
+			return;
+		try {
+			Validation.validateStringLength(device, 0, 64);
+			Validation.validateStringRegex(device, "[a-zA-Z0-9\\-]+");
+		} catch (ValidationException ex) {
+			String msg = "Invalid device ID: " + device;
+			HttpError error = new HttpError(ErrorCode.INVALID_INPUT, msg);
+			error.addFieldError(new HttpFieldError("device", msg));
+			throw new BadRequestException(error);
 		}
 	}
 
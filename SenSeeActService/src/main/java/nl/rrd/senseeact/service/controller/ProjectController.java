@@ -10,11 +10,20 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import nl.rrd.senseeact.client.model.NullableResponse;
 import nl.rrd.senseeact.client.model.TableSpec;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireAnswerStats;
 import nl.rrd.senseeact.dao.DatabaseObject;
 import nl.rrd.senseeact.service.QueryRunner;
+import nl.rrd.senseeact.service.RateLimiter;
 import nl.rrd.senseeact.service.SenSeeActContext;
+import nl.rrd.senseeact.service.controller.model.SubjectChangeList;
+import nl.rrd.senseeact.service.controller.model.SubjectListPage;
 import nl.rrd.senseeact.service.exception.HttpException;
+import nl.rrd.senseeact.service.ingest.IngestionQueue;
+import nl.rrd.senseeact.service.model.QuestionnaireAnswer;
+import nl.rrd.senseeact.service.questionnaire.QuestionnaireAnswerProjection;
+import nl.rrd.senseeact.service.subject.SubjectChangeLog;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -25,6 +34,15 @@ import java.util.Map;
 public class ProjectController {
 	private ProjectControllerExecution exec = new ProjectControllerExecution();
 
+	@Autowired
+	private QuestionnaireAnswerProjection answerProjection;
+
+	@Autowired
+	private SubjectChangeLog subjectChangeLog;
+
+	@Autowired
+	private IngestionQueue ingestionQueue;
+
 	@RequestMapping(value="/list", method=RequestMethod.GET)
 	public List<?> list(
 			HttpServletRequest request,
@@ -88,6 +106,58 @@ public class ProjectController {
 						role, includeInactive),
 				versionName, project, request, response);
 	}
+
+	@RequestMapping(value="/{project}/users/page", method=RequestMethod.GET)
+	public SubjectListPage getUsersPage(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@PathVariable("project")
+			String project,
+			@RequestParam(value="user", required=false, defaultValue="")
+			final String forUser,
+			@RequestParam(value="role", required=false, defaultValue="")
+			final String role,
+			@RequestParam(value="includeInactive", required=false, defaultValue="true")
+			final String includeInactive,
+			@RequestParam(value="cursor", required=false, defaultValue="")
+			final String cursor,
+			@RequestParam(value="limit", required=false, defaultValue="")
+			final String limit) throws HttpException, Exception {
+		return QueryRunner.runProjectQuery(
+				(version, authDb, projectDb, user, baseProject) ->
+				exec.getUsersPage(version, authDb, user, baseProject,
+						subjectChangeLog, forUser, role, includeInactive,
+						cursor, limit),
+				versionName, project, request, response);
+	}
+
+	@RequestMapping(value="/{project}/users/changes", method=RequestMethod.GET)
+	public SubjectChangeList getUserChanges(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@PathVariable("project")
+			String project,
+			@RequestParam(value="user", required=false, defaultValue="")
+			final String forUser,
+			@RequestParam(value="role", required=false, defaultValue="")
+			final String role,
+			@RequestParam(value="includeInactive", required=false, defaultValue="true")
+			final String includeInactive,
+			@RequestParam(value="since")
+			final String since) throws HttpException, Exception {
+		return QueryRunner.runProjectQuery(
+				(version, authDb, projectDb, user, baseProject) ->
+				exec.getUserChanges(version, authDb, user, baseProject,
+						subjectChangeLog, forUser, role, includeInactive,
+						since),
+				versionName, project, request, response);
+	}
 	
 	@Hidden
 	@RequestMapping(value="/{project}/addUser", method=RequestMethod.POST)
@@ -191,7 +261,8 @@ public class ProjectController {
 		return QueryRunner.runProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.registerWatchSubjects(authDb, user, baseProject, reset),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.WATCH);
 	}
 	
 	@RequestMapping(value="/{project}/subjects/watch/{id}",
@@ -289,11 +360,12 @@ public class ProjectController {
 			String start,
 			@RequestParam(value="end", required=false, defaultValue="")
 			String end) throws HttpException, Exception {
-		QueryRunner.runProjectQuery(
+		QueryRunner.runReadOnlyProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.getRecords(version, authDb, projectDb, user, baseProject,
 						table, subject, start, end, null, response),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.RECORD_READ);
 	}
 	
 	@RequestMapping(value="/{project}/table/{table}/filter/get",
@@ -322,11 +394,12 @@ public class ProjectController {
 			String start,
 			@RequestParam(value="end", required=false, defaultValue="")
 			String end) throws HttpException, Exception {
-		QueryRunner.runProjectQuery(
+		QueryRunner.runReadOnlyProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.getRecords(version, authDb, projectDb, user, baseProject,
 						table, subject, start, end, request, response),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.RECORD_READ);
 	}
 	
 	@RequestMapping(value="/{project}/table/{table}/{recordId}",
@@ -349,7 +422,8 @@ public class ProjectController {
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.getRecord(version, authDb, projectDb, user, baseProject,
 						table, recordId, subject),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.RECORD_READ);
 	}
 	
 	@RequestMapping(value="/{project}/table/{table}",
@@ -377,7 +451,28 @@ public class ProjectController {
 		return QueryRunner.runProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.insertRecords(version, request, authDb, projectDb, user,
-						baseProject, table, subject),
+						baseProject, ingestionQueue, table, subject),
+				versionName, project, request, response);
+	}
+
+	@RequestMapping(value="/{project}/table/{table}/flush",
+			method=RequestMethod.POST)
+	public void flushRecords(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@PathVariable("project")
+			String project,
+			@PathVariable("table")
+			String table,
+			@RequestParam(value="user", required=false, defaultValue="")
+			String subject) throws HttpException, Exception {
+		QueryRunner.runProjectQuery(
+				(version, authDb, projectDb, user, baseProject) ->
+				exec.flushRecords(version, authDb, projectDb, user,
+						baseProject, ingestionQueue, table, subject),
 				versionName, project, request, response);
 	}
 	
@@ -532,11 +627,12 @@ public class ProjectController {
 			String start,
 			@RequestParam(value="end", required=false, defaultValue="")
 			String end) throws HttpException, Exception {
-		Map<?,?> result = QueryRunner.runProjectQuery(
+		Map<?,?> result = QueryRunner.runReadOnlyProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.getFirstLastRecord(version, authDb, projectDb, user,
 						baseProject, table, subject, start, end, true, null),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.RECORD_READ);
 		return new NullableResponse<>(result);
 	}
 	
@@ -558,11 +654,12 @@ public class ProjectController {
 			String start,
 			@RequestParam(value="end", required=false, defaultValue="")
 			String end) throws HttpException, Exception {
-		Map<?,?> result = QueryRunner.runProjectQuery(
+		Map<?,?> result = QueryRunner.runReadOnlyProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.getFirstLastRecord(version, authDb, projectDb, user,
 						baseProject, table, subject, start, end, false, null),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.RECORD_READ);
 		return new NullableResponse<>(result);
 	}
 	
@@ -592,11 +689,12 @@ public class ProjectController {
 			String start,
 			@RequestParam(value="end", required=false, defaultValue="")
 			String end) throws HttpException, Exception {
-		Map<?,?> result = QueryRunner.runProjectQuery(
+		Map<?,?> result = QueryRunner.runReadOnlyProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.getFirstLastRecord(version, authDb, projectDb, user,
 						baseProject, table, subject, start, end, true, request),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.RECORD_READ);
 		return new NullableResponse<>(result);
 	}
 	
@@ -626,12 +724,13 @@ public class ProjectController {
 			String start,
 			@RequestParam(value="end", required=false, defaultValue="")
 			String end) throws HttpException, Exception {
-		Map<?,?> result = QueryRunner.runProjectQuery(
+		Map<?,?> result = QueryRunner.runReadOnlyProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.getFirstLastRecord(version, authDb, projectDb, user,
 						baseProject, table, subject, start, end, false,
 						request),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.RECORD_READ);
 		return new NullableResponse<>(result);
 	}
 	
@@ -660,7 +759,8 @@ public class ProjectController {
 				exec.registerWatchTable(version, authDb, projectDb, user,
 						baseProject, table, subject, anySubject, callbackUrl,
 						reset),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.WATCH);
 	}
 	
 	@RequestMapping(value="/{project}/table/{table}/watch/{id}",
@@ -700,4 +800,73 @@ public class ProjectController {
 						table, id),
 				versionName, project, request, response);
 	}
+
+	@RequestMapping(value="/{project}/questionnaire/{questionnaire}/answers",
+			method=RequestMethod.GET)
+	public List<QuestionnaireAnswer> getQuestionnaireAnswers(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@PathVariable("project")
+			String project,
+			@PathVariable("questionnaire")
+			String questionnaire,
+			@RequestParam(value="question")
+			String question,
+			@RequestParam(value="key", required=false, defaultValue="")
+			String key,
+			@RequestParam(value="value", required=false, defaultValue="")
+			String value,
+			@RequestParam(value="min", required=false, defaultValue="")
+			String min,
+			@RequestParam(value="max", required=false, defaultValue="")
+			String max,
+			@RequestParam(value="start", required=false, defaultValue="")
+			String start,
+			@RequestParam(value="end", required=false, defaultValue="")
+			String end) throws HttpException, Exception {
+		return QueryRunner.runProjectQuery(
+				(version, authDb, projectDb, user, baseProject) ->
+				exec.getQuestionnaireAnswers(version, authDb, user,
+						baseProject, answerProjection, questionnaire,
+						question, key, value, min, max, start, end),
+				versionName, project, request, response);
+	}
+
+	@RequestMapping(
+			value="/{project}/questionnaire/{questionnaire}/answers/stats",
+			method=RequestMethod.GET)
+	public QuestionnaireAnswerStats getQuestionnaireAnswerStats(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@PathVariable("project")
+			String project,
+			@PathVariable("questionnaire")
+			String questionnaire,
+			@RequestParam(value="question")
+			String question,
+			@RequestParam(value="key", required=false, defaultValue="")
+			String key,
+			@RequestParam(value="value", required=false, defaultValue="")
+			String value,
+			@RequestParam(value="min", required=false, defaultValue="")
+			String min,
+			@RequestParam(value="max", required=false, defaultValue="")
+			String max,
+			@RequestParam(value="start", required=false, defaultValue="")
+			String start,
+			@RequestParam(value="end", required=false, defaultValue="")
+			String end) throws HttpException, Exception {
+		return QueryRunner.runProjectQuery(
+				(version, authDb, projectDb, user, baseProject) ->
+				exec.getQuestionnaireAnswerStats(version, authDb, user,
+						baseProject, answerProjection, questionnaire,
+						question, key, value, min, max, start, end),
+				versionName, project, request, response);
+	}
 }
@@ -10,6 +10,8 @@ import nl.rrd.senseeact.client.model.*;
 import nl.rrd.senseeact.client.model.compat.ProjectV1;
 import nl.rrd.senseeact.client.model.compat.ProjectV2;
 import nl.rrd.senseeact.client.model.compat.ProjectV3;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireAnswerStats;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireDataTable;
 import nl.rrd.senseeact.client.model.sample.LocalTimeSample;
 import nl.rrd.senseeact.client.model.sample.Sample;
 import nl.rrd.senseeact.client.model.sample.UTCSample;
@@ -18,15 +20,22 @@ import nl.rrd.senseeact.client.project.ProjectRepository;
 import nl.rrd.senseeact.dao.*;
 import nl.rrd.senseeact.service.*;
 import nl.rrd.senseeact.service.controller.model.SelectFilterParser;
+import nl.rrd.senseeact.service.controller.model.SubjectChangeList;
+import nl.rrd.senseeact.service.controller.model.SubjectListPage;
 import nl.rrd.senseeact.service.exception.BadRequestException;
 import nl.rrd.senseeact.service.exception.ForbiddenException;
 import nl.rrd.senseeact.service.exception.HttpException;
+import nl.rrd.senseeact.service.exception.InternalServerErrorException;
 import nl.rrd.senseeact.service.exception.NotFoundException;
+import nl.rrd.senseeact.service.ingest.IngestionQueue;
 import nl.rrd.senseeact.service.model.User;
 import nl.rrd.senseeact.service.model.*;
+import nl.rrd.senseeact.service.questionnaire.QuestionnaireAnswerProjection;
+import nl.rrd.senseeact.service.subject.SubjectChangeLog;
 import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.beans.PropertyReader;
 import nl.rrd.utils.beans.PropertyWriter;
+import nl.rrd.utils.datetime.DateTimeUtils;
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.utils.exception.ParseException;
 import nl.rrd.utils.json.JsonAtomicToken;
@@ -45,6 +54,7 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -52,6 +62,10 @@ import java.util.*;
 
 public class ProjectControllerExecution {
 	private static final int BATCH_SIZE = 1000;
+	private static final int SUBJECT_PAGE_SIZE = 100;
+	private static final int MAX_SUBJECT_PAGE_SIZE = 1000;
+	private static final int MAX_SUBJECT_CHANGES = 1000;
+	private static final int ANSWER_USER_BATCH_SIZE = 100;
 	public static final int HANGING_GET_TIMEOUT = 60000;
 
 	/**
@@ -352,6 +366,145 @@ public class ProjectControllerExecution {
 		return UserController.getCompatUserList(version, subjects);
 	}
 
+	/**
+	 * Runs the query getUsersPage. It returns a page of the same list as
+	 * {@link #getUsers(ProtocolVersion, Database, User, BaseProject, String,
+	 * String, String) getUsers()}, sorted by user ID. The page also contains
+	 * the version of the {@link SubjectChangeLog SubjectChangeLog}, which the
+	 * client can pass to {@link #getUserChanges(ProtocolVersion, Database,
+	 * User, BaseProject, SubjectChangeLog, String, String, String, String)
+	 * getUserChanges()}.
+	 *
+	 * @param version the protocol version
+	 * @param authDb the authentication database
+	 * @param user the user who is currently logged in
+	 * @param project the project
+	 * @param changeLog the subject change log
+	 * @param forUserid the user ID of the user whose subjects should be
+	 * returned, or an empty string
+	 * @param roleStr the role or an empty string
+	 * @param includeInactiveStr "true" if inactive users should be included
+	 * @param cursor the cursor from the previous page or an empty string
+	 * @param limitStr the maximum number of users or an empty string
+	 * @return the page
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
+	public SubjectListPage getUsersPage(ProtocolVersion version,
+			Database authDb, User user, BaseProject project,
+			SubjectChangeLog changeLog, String forUserid, String roleStr,
+			String includeInactiveStr, String cursor, String limitStr)
+			throws HttpException, Exception {
+		int limit = SUBJECT_PAGE_SIZE;
+		if (limitStr != null && !limitStr.isEmpty()) {
+			try {
+				limit = Integer.parseInt(limitStr);
+			} catch (NumberFormatException ex) {
+				limit = 0;
+			}
+			if (limit <= 0 || limit > MAX_SUBJECT_PAGE_SIZE) {
+				throw BadRequestException.withInvalidInput(new HttpFieldError(
+						"limit", "Invalid limit: " + limitStr));
+			}
+		}
+		UserController.GetSubjectListInput input =
+				UserController.getSubjectListInput(version, authDb, user,
+				forUserid, roleStr, includeInactiveStr);
+		SubjectListPage result = new SubjectListPage();
+		result.setVersion(changeLog.getListVersion());
+		List<User> users = User.findProjectUsers(project.getCode(), authDb,
+				input.getForUser(), input.getRole(), input.isIncludeInactive());
+		users.sort(Comparator.comparing(User::getUserid));
+		List<User> pageUsers = new ArrayList<>();
+		for (User pageUser : users) {
+			if (cursor != null && !cursor.isEmpty() &&
+					pageUser.getUserid().compareTo(cursor) <= 0) {
+				continue;
+			}
+			if (pageUsers.size() == limit) {
+				result.setNextCursor(pageUsers.get(limit - 1).getUserid());
+				break;
+			}
+			pageUsers.add(pageUser);
+		}
+		result.setUsers(UserController.getCompatUserList(version, pageUsers));
+		return result;
+	}
+
+	/**
+	 * Runs the query getUserChanges. It returns the changes in the list of
+	 * {@link #getUsers(ProtocolVersion, Database, User, BaseProject, String,
+	 * String, String) getUsers()} since the specified version. It reads the
+	 * changed users from the {@link SubjectChangeLog SubjectChangeLog} and
+	 * only checks whether those users are still in the list. If the changes
+	 * can't be determined, the result has "reset" set to true.
+	 *
+	 * @param version the protocol version
+	 * @param authDb the authentication database
+	 * @param user the user who is currently logged in
+	 * @param project the project
+	 * @param changeLog the subject change log
+	 * @param forUserid the user ID of the user whose subjects should be
+	 * returned, or an empty string
+	 * @param roleStr the role or an empty string
+	 * @param includeInactiveStr "true" if inactive users should be included
+	 * @param sinceStr the version from the previous list or changes
+	 * @return the changes
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
+	public SubjectChangeList getUserChanges(ProtocolVersion version,
+			Database authDb, User user, BaseProject project,
+			SubjectChangeLog changeLog, String forUserid, String roleStr,
+			String includeInactiveStr, String sinceStr)
+			throws HttpException, Exception {
+		long since;
+		try {
+			since = Long.parseLong(sinceStr);
+		} catch (NumberFormatException ex) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError(
+					"since", "Invalid version: " + sinceStr));
+		}
+		UserController.GetSubjectListInput input =
+				UserController.getSubjectListInput(version, authDb, user,
+				forUserid, roleStr, includeInactiveStr);
+		User forUser = input.getForUser();
+		SubjectChangeList result = new SubjectChangeList();
+		result.setVersion(since);
+		if (!changeLog.isAvailable(since)) {
+			result.setReset(true);
+			return result;
+		}
+		long until = changeLog.getListVersion();
+		List<SubjectChange> changes = changeLog.findChanges(authDb,
+				project.getCode(), since, until, MAX_SUBJECT_CHANGES);
+		boolean complete = changes.size() < MAX_SUBJECT_CHANGES;
+		Set<String> subjects = new LinkedHashSet<>();
+		for (SubjectChange change : changes) {
+			// a change of the access of a professional or admin may affect
+			// any user in the list
+			if (change.getSubject().isEmpty() ||
+					(change.getSubject().equals(forUser.getUserid()) &&
+					forUser.getRole() != Role.PATIENT)) {
+				result.setReset(true);
+				return result;
+			}
+			subjects.add(change.getSubject());
+		}
+		List<User> users = User.findProjectUsers(project.getCode(), authDb,
+				forUser, input.getRole(), input.isIncludeInactive(), subjects);
+		Set<String> removed = new LinkedHashSet<>(subjects);
+		for (User changedUser : users) {
+			removed.remove(changedUser.getUserid());
+		}
+		result.setUpdated(UserController.getCompatUserList(version, users));
+		result.setRemoved(new ArrayList<>(removed));
+		result.setMore(!complete);
+		result.setVersion(changeLog.getNextVersion(since, until, changes,
+				complete));
+		return result;
+	}
+
 	/**
 	 * Runs the query registerWatchSubjects.
 	 *
@@ -737,18 +890,15 @@ public class ProjectControllerExecution {
 			startTime = ((ZonedDateTime)startObj).toLocalDateTime();
 			andCriteria.add(new DatabaseCriteria.GreaterEqual(
 					"utcTime", startMillis));
-		} else if (startObj instanceof ZonedDateTime) {
-			String startTimeStr = ((ZonedDateTime)startObj).toLocalDateTime()
-					.format(Sample.LOCAL_TIME_FORMAT);
-			startTime = ((ZonedDateTime)startObj).toLocalDateTime();
-			andCriteria.add(new DatabaseCriteria.GreaterEqual(
-					"localTime", startTimeStr));
 		} else if (startObj != null) {
-			String startTimeStr = ((LocalDateTime)startObj).format(
-					Sample.LOCAL_TIME_FORMAT);
-			startTime = (LocalDateTime)startObj;
-			andCriteria.add(new DatabaseCriteria.GreaterEqual(
-					"localTime", startTimeStr));
+			if (startObj instanceof ZonedDateTime)
+				startTime = ((ZonedDateTime)startObj).toLocalDateTime();
+			else
+				startTime = (LocalDateTime)startObj;
+			// the database uses the numeric shadow of the local time if the
+			// table has it
+			andCriteria.add(new DatabaseCriteria.GreaterEqual("localTime",
+					startTime.format(Sample.LOCAL_TIME_FORMAT)));
 		}
 		Object endObj = null;
 		if (isTimeTable && end != null && !end.isEmpty()) {
@@ -768,18 +918,15 @@ public class ProjectControllerExecution {
 			endTime = ((ZonedDateTime)endObj).toLocalDateTime();
 			andCriteria.add(new DatabaseCriteria.LessThan(
 					"utcTime", endMillis));
-		} else if (endObj instanceof ZonedDateTime) {
-			String endTimeStr = ((ZonedDateTime)endObj).toLocalDateTime()
-					.format(Sample.LOCAL_TIME_FORMAT);
-			endTime = ((ZonedDateTime)endObj).toLocalDateTime();
-			andCriteria.add(new DatabaseCriteria.LessThan(
-					"localTime", endTimeStr));
 		} else if (endObj != null) {
-			String endTimeStr = ((LocalDateTime)endObj).format(
-					Sample.LOCAL_TIME_FORMAT);
-			endTime = (LocalDateTime)endObj;
-			andCriteria.add(new DatabaseCriteria.LessThan(
-					"localTime", endTimeStr));
+			if (endObj instanceof ZonedDateTime)
+				endTime = ((ZonedDateTime)endObj).toLocalDateTime();
+			else
+				endTime = (LocalDateTime)endObj;
+			// the database uses the numeric shadow of the local time if the
+			// table has it
+			andCriteria.add(new DatabaseCriteria.LessThan("localTime",
+					endTime.format(Sample.LOCAL_TIME_FORMAT)));
 		}
 		if (!fieldErrors.isEmpty()) {
 			HttpError error = new HttpError(ErrorCode.INVALID_INPUT,
@@ -893,7 +1040,9 @@ public class ProjectControllerExecution {
 	}
 
 	/**
-	 * Runs the query insertRecords.
+	 * Runs the query insertRecords. If the ingestion queue accepts the
+	 * records, they are written to the database in the background. See
+	 * {@link IngestionQueue IngestionQueue}.
 	 *
 	 * @param version the protocol version
 	 * @param request the HTTP request
@@ -901,6 +1050,7 @@ public class ProjectControllerExecution {
 	 * @param db the project database or null
 	 * @param user the user who is currently logged in
 	 * @param project the project code
+	 * @param ingestionQueue the ingestion queue
 	 * @param table the name of the table
 	 * @param subject the user ID or email address of the subject or null
 	 * @return the record IDs
@@ -909,8 +1059,8 @@ public class ProjectControllerExecution {
 	 */
 	public List<String> insertRecords(ProtocolVersion version,
 			HttpServletRequest request, Database authDb, Database db, User user,
-			BaseProject project, String table, String subject)
-			throws HttpException, Exception {
+			BaseProject project, IngestionQueue ingestionQueue, String table,
+			String subject) throws HttpException, Exception {
 		DatabaseTableDef<?> tableDef = project.findTable(table);
 		if (tableDef == null) {
 			throw new NotFoundException(String.format(
@@ -938,7 +1088,8 @@ public class ProjectControllerExecution {
 			jsonReader.readToken(JsonAtomicToken.Type.START_LIST);
 			while (jsonReader.getToken().getType() !=
 					JsonAtomicToken.Type.END_LIST) {
-				insertRecordBatch(version, user, jsonReader, db, tableDef,
+				insertRecordBatch(version, user, jsonReader, db,
+						project.getCode(), ingestionQueue, tableDef,
 						subjectUser, idList);
 			}
 			return idList;
@@ -967,6 +1118,50 @@ public class ProjectControllerExecution {
 				PermissionName.PERMISSION_WRITE_RESOURCE_TABLE, permParams);
 	}
 
+	/**
+	 * Runs the query flushRecords. It waits until the records that were
+	 * inserted into the specified table and are still in the ingestion queue,
+	 * have been written to the database. After that the client can read
+	 * them.
+	 *
+	 * @param version the protocol version
+	 * @param authDb the authentication database
+	 * @param db the project database or null
+	 * @param user the user who is currently logged in
+	 * @param project the project
+	 * @param ingestionQueue the ingestion queue
+	 * @param table the name of the table
+	 * @param subject the user ID or email address of the subject or an empty
+	 * string or null
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
+	public Object flushRecords(ProtocolVersion version, Database authDb,
+			Database db, User user, BaseProject project,
+			IngestionQueue ingestionQueue, String table, String subject)
+			throws HttpException, Exception {
+		DatabaseTableDef<?> tableDef = project.findTable(table);
+		if (tableDef == null) {
+			throw new NotFoundException(String.format(
+					"Table \"%s\" not found in project \"%s\"",
+					table, project.getCode()));
+		}
+		String subjectId = "";
+		DatabaseCache cache = DatabaseCache.getInstance();
+		List<String> fields = cache.getTableFields(db, table);
+		if (fields.contains("user")) {
+			ProjectUserAccess userAccess = User.findAccessibleProjectUser(
+					version, subject, project.getCode(), table, AccessMode.R,
+					authDb, user);
+			subjectId = userAccess.getUser().getUserid();
+		}
+		if (!ingestionQueue.flush(project.getCode(), table, subjectId)) {
+			throw new InternalServerErrorException(
+					"Timeout while writing queued records");
+		}
+		return null;
+	}
+
 	/**
 	 * Runs the query updateRecord.
 	 *
@@ -1223,10 +1418,10 @@ public class ProjectControllerExecution {
 	 * @throws IOException if a reading error occurs
 	 */
 	private void insertRecordBatch(ProtocolVersion version, User user,
-			JsonObjectStreamReader jsonReader, Database db,
-			DatabaseTableDef<?> table, User subjectUser, List<String> idList)
-			throws JsonParseException, HttpException, DatabaseException,
-			IOException {
+			JsonObjectStreamReader jsonReader, Database db, String project,
+			IngestionQueue ingestionQueue, DatabaseTableDef<?> table,
+			User subjectUser, List<String> idList) throws JsonParseException,
+			HttpException, DatabaseException, IOException {
 		List<Map<?,?>> recordMaps = new ArrayList<>();
 		while (jsonReader.getToken().getType() !=
 				JsonAtomicToken.Type.END_LIST &&
@@ -1243,7 +1438,8 @@ public class ProjectControllerExecution {
 			records.add(createInsertRecord(version, user, map, table,
 					subjectUser));
 		}
-		db.insert(table.getName(), records);
+		if (!ingestionQueue.add(db, project, table, subjectUser, records))
+			db.insert(table.getName(), records);
 		for (DatabaseObject record : records) {
 			idList.add(record.getId());
 		}
@@ -1600,6 +1796,245 @@ public class ProjectControllerExecution {
 		return listener;
 	}
 
+	/**
+	 * Runs the query getQuestionnaireAnswers. It returns the answers to a
+	 * question from the users that the specified user can access. The
+	 * answers are read from the {@link QuestionnaireAnswerProjection
+	 * QuestionnaireAnswerProjection}.
+	 *
+	 * @param version the protocol version
+	 * @param authDb the authentication database
+	 * @param user the user who is currently logged in
+	 * @param project the project
+	 * @param projection the questionnaire answer projection
+	 * @param questionnaire the questionnaire ID
+	 * @param question the question ID
+	 * @param key the key in the data map of the question or an empty string
+	 * @param value the string value or an empty string
+	 * @param min the minimum numeric value (inclusive) or an empty string
+	 * @param max the maximum numeric value (inclusive) or an empty string
+	 * @param start the start time or an empty string
+	 * @param end the end time or an empty string
+	 * @return the answers sorted by time
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
+	public List<QuestionnaireAnswer> getQuestionnaireAnswers(
+			ProtocolVersion version, Database authDb, User user,
+			BaseProject project, QuestionnaireAnswerProjection projection,
+			String questionnaire, String question, String key, String value,
+			String min, String max, String start, String end)
+			throws HttpException, Exception {
+		if (project.findTable(QuestionnaireDataTable.NAME) == null) {
+			throw new NotFoundException(String.format(
+					"Table \"%s\" not found in project \"%s\"",
+					QuestionnaireDataTable.NAME, project.getCode()));
+		}
+		if (question == null || question.isEmpty()) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError(
+					"question", "Parameter \"question\" not defined"));
+		}
+		Double minValue = parseAnswerValue("min", min);
+		Double maxValue = parseAnswerValue("max", max);
+		List<DatabaseCriteria> timeCriteria = new ArrayList<>();
+		DatabaseCriteria startCriteria = parseAnswerTime("start", start);
+		if (startCriteria != null)
+			timeCriteria.add(startCriteria);
+		DatabaseCriteria endCriteria = parseAnswerTime("end", end);
+		if (endCriteria != null)
+			timeCriteria.add(endCriteria);
+		Map<String,ProjectUserAccess> accessMap = new HashMap<>();
+		List<User> subjects = User.findProjectUsers(project.getCode(), authDb,
+				user, null, true);
+		for (User subject : subjects) {
+			try {
+				accessMap.put(subject.getUserid(),
+						User.findAccessibleProjectUserByUserid(
+						subject.getUserid(), project.getCode(),
+						QuestionnaireDataTable.NAME, AccessMode.R, authDb,
+						user));
+			} catch (ForbiddenException ex) {}
+		}
+		// query the accessible users in batches, so the criteria don't get
+		// too large
+		List<ProjectUserAccess> accessList = new ArrayList<>(
+				accessMap.values());
+		List<QuestionnaireAnswer> result = new ArrayList<>();
+		for (int i = 0; i < accessList.size(); i += ANSWER_USER_BATCH_SIZE) {
+			List<DatabaseCriteria> orList = new ArrayList<>();
+			for (ProjectUserAccess access : accessList.subList(i,
+					Math.min(i + ANSWER_USER_BATCH_SIZE, accessList.size()))) {
+				orList.add(getAnswerAccessCriteria(access));
+			}
+			List<DatabaseCriteria> andList = new ArrayList<>(timeCriteria);
+			andList.add(new DatabaseCriteria.Or(orList.toArray(
+					new DatabaseCriteria[0])));
+			result.addAll(projection.findAnswers(authDb, project.getCode(),
+					questionnaire, question,
+					key == null || key.isEmpty() ? null : key,
+					value == null || value.isEmpty() ? null : value,
+					minValue, maxValue, new DatabaseCriteria.And(
+					andList.toArray(new DatabaseCriteria[0]))));
+		}
+		if (accessList.size() > ANSWER_USER_BATCH_SIZE) {
+			result.sort(Comparator.comparingLong(
+					QuestionnaireAnswer::getUtcTime));
+		}
+		return result;
+	}
+
+	/**
+	 * Runs the query getQuestionnaireAnswerStats. It finds the answers in the
+	 * same way as {@link #getQuestionnaireAnswers(ProtocolVersion, Database,
+	 * User, BaseProject, QuestionnaireAnswerProjection, String, String,
+	 * String, String, String, String, String, String)
+	 * getQuestionnaireAnswers()} and returns statistics of all answers and
+	 * per user.
+	 *
+	 * @param version the protocol version
+	 * @param authDb the authentication database
+	 * @param user the user who is currently logged in
+	 * @param project the project
+	 * @param projection the questionnaire answer projection
+	 * @param questionnaire the questionnaire ID
+	 * @param question the question ID
+	 * @param key the key in the data map of the question or an empty string
+	 * @param value the string value or an empty string
+	 * @param min the minimum numeric value (inclusive) or an empty string
+	 * @param max the maximum numeric value (inclusive) or an empty string
+	 * @param start the start time or an empty string
+	 * @param end the end time or an empty string
+	 * @return the statistics
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
+	public QuestionnaireAnswerStats getQuestionnaireAnswerStats(
+			ProtocolVersion version, Database authDb, User user,
+			BaseProject project, QuestionnaireAnswerProjection projection,
+			String questionnaire, String question, String key, String value,
+			String min, String max, String start, String end)
+			throws HttpException, Exception {
+		List<QuestionnaireAnswer> answers = getQuestionnaireAnswers(version,
+				authDb, user, project, projection, questionnaire, question,
+				key, value, min, max, start, end);
+		Map<String,List<QuestionnaireAnswer>> userAnswers =
+				new LinkedHashMap<>();
+		for (QuestionnaireAnswer answer : answers) {
+			userAnswers.computeIfAbsent(answer.getUser(),
+					k -> new ArrayList<>()).add(answer);
+		}
+		QuestionnaireAnswerStats result = getAnswerStats(answers);
+		for (String subject : userAnswers.keySet()) {
+			QuestionnaireAnswerStats userStats = getAnswerStats(
+					userAnswers.get(subject));
+			userStats.setUser(subject);
+			result.getUsers().add(userStats);
+		}
+		return result;
+	}
+
+	private QuestionnaireAnswerStats getAnswerStats(
+			List<QuestionnaireAnswer> answers) {
+		QuestionnaireAnswerStats stats = new QuestionnaireAnswerStats();
+		stats.setCount(answers.size());
+		double sum = 0;
+		for (QuestionnaireAnswer answer : answers) {
+			if (answer.getStrValue() != null) {
+				stats.getValueCounts().merge(answer.getStrValue(), 1,
+						Integer::sum);
+			}
+			Double numValue = answer.getNumValue();
+			if (numValue == null)
+				continue;
+			stats.setNumCount(stats.getNumCount() + 1);
+			sum += numValue;
+			if (stats.getMin() == null || numValue < stats.getMin())
+				stats.setMin(numValue);
+			if (stats.getMax() == null || numValue > stats.getMax())
+				stats.setMax(numValue);
+		}
+		if (stats.getNumCount() > 0)
+			stats.setMean(sum / stats.getNumCount());
+		return stats;
+	}
+
+	private Double parseAnswerValue(String param, String value)
+			throws BadRequestException {
+		if (value == null || value.isEmpty())
+			return null;
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException ex) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError(
+					param, "Invalid number: " + value));
+		}
+	}
+
+	/**
+	 * Parses the start or end time of a questionnaire answer query and
+	 * returns the database criteria. If the time is an empty string, this
+	 * method returns null. See {@link
+	 * ParameterParser#parseSelectDateTime(boolean, String)
+	 * ParameterParser.parseSelectDateTime()}.
+	 *
+	 * @param param "start" or "end"
+	 * @param value the time or an empty string
+	 * @return the database criteria or null
+	 * @throws BadRequestException if the time is invalid
+	 */
+	private DatabaseCriteria parseAnswerTime(String param, String value)
+			throws BadRequestException {
+		if (value == null || value.isEmpty())
+			return null;
+		Object time;
+		try {
+			time = new ParameterParser().parseSelectDateTime(true, value);
+		} catch (ParseException ex) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError(
+					param, ex.getMessage()));
+		}
+		boolean isStart = param.equals("start");
+		if (time instanceof ZonedDateTime zonedTime) {
+			long millis = zonedTime.toInstant().toEpochMilli();
+			if (isStart)
+				return new DatabaseCriteria.GreaterEqual("utcTime", millis);
+			else
+				return new DatabaseCriteria.LessThan("utcTime", millis);
+		}
+		String localTime = ((LocalDateTime)time).format(
+				Sample.LOCAL_TIME_FORMAT);
+		if (isStart)
+			return new DatabaseCriteria.GreaterEqual("localTime", localTime);
+		else
+			return new DatabaseCriteria.LessThan("localTime", localTime);
+	}
+
+	/**
+	 * Returns the criteria for the questionnaire answers of a user that the
+	 * current user can access. If the access is restricted to a date range,
+	 * the criteria compare the local time of the answers with the start and
+	 * end date. A local time is formatted as yyyy-MM-ddTHH:mm:ss.SSS, so it
+	 * can be compared with a date string.
+	 *
+	 * @param access the access to the user
+	 * @return the criteria
+	 */
+	private DatabaseCriteria getAnswerAccessCriteria(ProjectUserAccess access) {
+		List<DatabaseCriteria> andList = new ArrayList<>();
+		andList.add(new DatabaseCriteria.Equal("user",
+				access.getUser().getUserid()));
+		if (access.getStartDate() != null) {
+			andList.add(new DatabaseCriteria.GreaterEqual("localTime",
+					access.getStartDate().format(DateTimeUtils.DATE_FORMAT)));
+		}
+		if (access.getEndDate() != null) {
+			andList.add(new DatabaseCriteria.LessThan("localTime",
+					access.getEndDate().format(DateTimeUtils.DATE_FORMAT)));
+		}
+		return new DatabaseCriteria.And(andList.toArray(
+				new DatabaseCriteria[0]));
+	}
+
 	/**
 	 * Finds the {@link BaseProject BaseProject} for the specified project code.
 	 * It checks if the user can access the project. If the user is an admin,
@@ -12,6 +12,9 @@ import nl.rrd.senseeact.client.exception.HttpFieldError;
 import nl.rrd.senseeact.client.model.NullableResponse;
 import nl.rrd.senseeact.client.model.Role;
 import nl.rrd.senseeact.client.model.SystemStat;
+import nl.rrd.senseeact.client.model.SystemStatRollup;
+import nl.rrd.senseeact.client.model.SystemStatRollupTable;
+import nl.rrd.senseeact.client.model.SystemStatSeries;
 import nl.rrd.senseeact.client.model.SystemStatTable;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseCriteria;
@@ -66,6 +69,28 @@ public class StatsController {
 				versionName, request, response);
 	}
 	
+	@RequestMapping(value="/{statName}/series", method=RequestMethod.GET)
+	public SystemStatSeries getSystemStatSeries(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@PathVariable("statName")
+			String statName,
+			@RequestParam(value="start", required=false, defaultValue="")
+			String start,
+			@RequestParam(value="end", required=false, defaultValue="")
+			String end,
+			@RequestParam(value="maxPoints")
+			String maxPoints) throws HttpException, Exception {
+		return QueryRunner.runAuthQuery(
+				(version, authDb, user, authDetails) ->
+				doGetSystemStatSeries(authDb, user, statName, start, end,
+						maxPoints),
+				versionName, request, response);
+	}
+	
 	private SystemStat doGetSystemStatLatest(Database authDb, User user,
 			String statName) throws HttpException, DatabaseException {
 		if (user.getRole() != Role.ADMIN)
@@ -83,6 +108,88 @@ public class StatsController {
 			DatabaseException {
 		if (user.getRole() != Role.ADMIN)
 			throw new ForbiddenException();
+		DatabaseCriteria criteria = getStatCriteria(statName, start, end);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("utcTime", true)
+		};
+		return authDb.select(new SystemStatTable(), criteria, 0, sort);
+	}
+
+	/**
+	 * Returns the system stats with the specified name in the specified time
+	 * range at the finest resolution that has at most "maxPoints" points. It
+	 * tries the raw stats and then the rollups from minute to day resolution.
+	 * If even the day rollups have more points, it returns the day rollups.
+	 *
+	 * @param authDb the authentication database
+	 * @param user the user who runs the query (must be an admin)
+	 * @param statName the stat name
+	 * @param start the start time or an empty string
+	 * @param end the end time or an empty string
+	 * @param maxPointsStr the maximum number of points
+	 * @return the time series
+	 * @throws HttpException if the request is invalid
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private SystemStatSeries doGetSystemStatSeries(Database authDb, User user,
+			String statName, String start, String end, String maxPointsStr)
+			throws HttpException, DatabaseException {
+		if (user.getRole() != Role.ADMIN)
+			throw new ForbiddenException();
+		int maxPoints;
+		try {
+			maxPoints = Integer.parseInt(maxPointsStr);
+		} catch (NumberFormatException ex) {
+			maxPoints = 0;
+		}
+		if (maxPoints <= 0) {
+			throw BadRequestException.withInvalidInput(new HttpFieldError(
+					"maxPoints", "Invalid value for parameter \"maxPoints\": " +
+					maxPointsStr));
+		}
+		DatabaseCriteria criteria = getStatCriteria(statName, start, end);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("utcTime", true)
+		};
+		SystemStatSeries result = new SystemStatSeries();
+		SystemStatTable rawTable = new SystemStatTable();
+		if (authDb.count(rawTable, criteria) <= maxPoints) {
+			result.setResolution(SystemStatRollup.Resolution.RAW);
+			List<SystemStat> stats = authDb.select(rawTable, criteria, 0,
+					sort);
+			List<SystemStatRollup> points = new ArrayList<>();
+			for (SystemStat stat : stats) {
+				points.add(new SystemStatRollup(stat, stat.getUtcTime()));
+			}
+			result.setPoints(points);
+			return result;
+		}
+		SystemStatRollupTable table = null;
+		for (SystemStatRollup.Resolution resolution :
+				SystemStatRollup.Resolution.values()) {
+			if (resolution == SystemStatRollup.Resolution.RAW)
+				continue;
+			table = new SystemStatRollupTable(resolution);
+			if (authDb.count(table, criteria) <= maxPoints)
+				break;
+		}
+		result.setResolution(table.getResolution());
+		result.setPoints(authDb.select(table, criteria, 0, sort));
+		return result;
+	}
+
+	/**
+	 * Returns the criteria to select system stats or rollups with the
+	 * specified name in the specified time range.
+	 *
+	 * @param statName the stat name
+	 * @param start the start time or an empty string
+	 * @param end the end time or an empty string
+	 * @return the criteria
+	 * @throws HttpException if the start or end time is invalid
+	 */
+	private DatabaseCriteria getStatCriteria(String statName, String start,
+			String end) throws HttpException {
 		StringBuilder errorBuilder = new StringBuilder();
 		List<HttpFieldError> fieldErrors = new ArrayList<>();
 		List<DatabaseCriteria> andCriteria = new ArrayList<>();
@@ -121,11 +228,7 @@ public class StatsController {
 			error.setFieldErrors(fieldErrors);
 			throw new BadRequestException(error);
 		}
-		DatabaseCriteria criteria = new DatabaseCriteria.And(
+		return new DatabaseCriteria.And(
 				andCriteria.toArray(new DatabaseCriteria[0]));
-		DatabaseSort[] sort = new DatabaseSort[] {
-				new DatabaseSort("utcTime", true)
-		};
-		return authDb.select(new SystemStatTable(), criteria, 0, sort);
 	}
 }
@@ -7,7 +7,9 @@ import nl.rrd.senseeact.client.model.SyncWatchResult;
 import nl.rrd.senseeact.dao.DatabaseAction;
 import nl.rrd.senseeact.dao.sync.SyncActionStats;
 import nl.rrd.senseeact.dao.sync.SyncProgress;
+import nl.rrd.senseeact.dao.sync.SyncSnapshot;
 import nl.rrd.senseeact.service.QueryRunner;
+import nl.rrd.senseeact.service.RateLimiter;
 import nl.rrd.senseeact.service.exception.HttpException;
 import org.springframework.web.bind.annotation.*;
 
@@ -30,11 +32,12 @@ public class SyncController {
 			String project,
 			@RequestParam(value="user", required=false, defaultValue="")
 			String subject) throws HttpException, Exception {
-		return QueryRunner.runProjectQuery(
+		return QueryRunner.runReadOnlyProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.getReadStats(version, request, authDb, projectDb, user,
 						subject),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.SYNC_READ);
 	}
 	
 	@RequestMapping(value="/project/{project}/read",
@@ -52,9 +55,30 @@ public class SyncController {
 		return QueryRunner.runProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.read(version, request, authDb, projectDb, user, subject),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.SYNC_READ);
 	}
 	
+	@RequestMapping(value="/project/{project}/read-snapshot",
+			method=RequestMethod.POST)
+	public SyncSnapshot readSnapshot(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@PathVariable("project")
+			String project,
+			@RequestParam(value="user", required=false, defaultValue="")
+			String subject) throws HttpException, Exception {
+		return QueryRunner.runProjectQuery(
+				(version, authDb, projectDb, user, baseProject) ->
+				exec.readSnapshot(version, request, authDb, projectDb, user,
+						subject),
+				versionName, project, request, response,
+				RateLimiter.RequestClass.SYNC_READ);
+	}
+
 	@RequestMapping(value="/project/{project}/register-push",
 			method=RequestMethod.POST)
 	public void registerPush(
@@ -144,6 +168,7 @@ public class SyncController {
 		QueryRunner.runProjectQuery(
 				(version, authDb, projectDb, user, baseProject) ->
 				exec.write(version, request, authDb, projectDb, user, subject),
-				versionName, project, request, response);
+				versionName, project, request, response,
+				RateLimiter.RequestClass.SYNC_WRITE);
 	}
 }
@@ -92,6 +92,7 @@ public class SyncControllerExecution {
 		sync.setIncludeTables(includeTables);
 		sync.setExcludeTables(excludeTables);
 		sync.setTimeRangeRestrictions(timeRangeRestrictions);
+		configureParallelReads(sync);
 		return sync.getSyncActionStats(database, progress,
 				includeOwn ? null :
 				Arrays.asList(SenSeeActClient.SYNC_REMOTE_ID, user.getUserid()));
@@ -124,12 +125,16 @@ public class SyncControllerExecution {
 		List<String> includeTables = null;
 		List<String> excludeTables = null;
 		List<SyncTimeRangeRestriction> timeRangeRestrictions = null;
+		String clientId = null;
+		boolean checkpoint = false;
 		try {
 			Map<String,?> params = HttpContentReader.readJsonParams(request,
 					true);
 			if (params != null) {
 				MapReader paramReader = new MapReader(params);
 				maxCount = paramReader.readInt("maxCount", 0);
+				clientId = paramReader.readString("clientId", null);
+				checkpoint = paramReader.readBoolean("checkpoint", false);
 				maxTime = paramReader.readLong("maxTime", null);
 				includeOwn = paramReader.readBoolean("includeOwn", false);
 				progress = paramReader.readJson("progress",
@@ -157,11 +162,110 @@ public class SyncControllerExecution {
 		sync.setIncludeTables(includeTables);
 		sync.setExcludeTables(excludeTables);
 		sync.setTimeRangeRestrictions(timeRangeRestrictions);
+		configureParallelReads(sync);
+		// the progress confirms what the consumer has read, so older actions
+		// can be compacted
+		sync.saveConsumerProgress(database, getConsumerId(user, clientId),
+				progress, checkpoint);
 		return sync.readSyncActions(database, progress, maxCount, maxTime,
 				includeOwn ? null :
 				Arrays.asList(SenSeeActClient.SYNC_REMOTE_ID, user.getUserid()));
 	}
 	
+	/**
+	 * Runs the query readSnapshot().
+	 *
+	 * @param version the protocol version
+	 * @param request the HTTP request
+	 * @param authDb the authentication database
+	 * @param database the database (can be null)
+	 * @param user the user
+	 * @param subject the user ID or email address of the subject or null
+	 * @return the snapshot page
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
+	public SyncSnapshot readSnapshot(ProtocolVersion version,
+			HttpServletRequest request, Database authDb, Database database,
+			User user, String subject) throws HttpException, Exception {
+		User subjectUser = User.findAccessibleUser(version, subject, authDb,
+				user);
+		if (database == null)
+			return new SyncSnapshot();
+		int maxCount = 0;
+		List<SyncProgress> progress = null;
+		List<String> includeTables = null;
+		List<String> excludeTables = null;
+		List<SyncTimeRangeRestriction> timeRangeRestrictions = null;
+		SyncSnapshot previous = null;
+		String clientId = null;
+		try {
+			Map<String,?> params = HttpContentReader.readJsonParams(request,
+					true);
+			if (params != null) {
+				MapReader paramReader = new MapReader(params);
+				maxCount = paramReader.readInt("maxCount", 0);
+				clientId = paramReader.readString("clientId", null);
+				progress = paramReader.readJson("progress",
+						new TypeReference<>() {}, null);
+				includeTables = paramReader.readJson("includeTables",
+						new TypeReference<>() {}, null);
+				excludeTables = paramReader.readJson("excludeTables",
+						new TypeReference<>() {}, null);
+				timeRangeRestrictions = paramReader.readJson(
+						"timeRangeRestrictions", new TypeReference<>() {},
+						null);
+				previous = paramReader.readJson("snapshot",
+						new TypeReference<>() {}, null);
+			}
+		} catch (ParseException ex) {
+			throw new BadRequestException(ErrorCode.INVALID_INPUT,
+					"Invalid content: " + ex.getMessage());
+		}
+		DatabaseSynchronizer sync = new DatabaseSynchronizer(
+				subjectUser.getUserid(), true);
+		sync.setIncludeTables(includeTables);
+		sync.setExcludeTables(excludeTables);
+		sync.setTimeRangeRestrictions(timeRangeRestrictions);
+		// the tables without progress are saved at the start, so actions
+		// after the snapshot are not compacted before they are read
+		sync.saveConsumerProgress(database, getConsumerId(user, clientId),
+				progress);
+		return sync.readSyncSnapshot(database, progress, previous, maxCount);
+	}
+
+	/**
+	 * Returns the consumer ID for the consumer progress that is used in
+	 * action log compaction. If the client sent a client ID, each client of
+	 * the user has its own progress. Older clients don't send a client ID.
+	 * Then all clients of the user share one progress.
+	 *
+	 * @param user the user that reads the actions
+	 * @param clientId the client ID or null
+	 * @return the consumer ID
+	 */
+	private String getConsumerId(User user, String clientId) {
+		if (clientId == null || clientId.isEmpty())
+			return user.getUserid();
+		return user.getUserid() + ":" + clientId;
+	}
+
+	/**
+	 * Enables parallel reads on the specified synchronizer if configured
+	 * with {@link Configuration#SYNC_READ_THREADS
+	 * Configuration.SYNC_READ_THREADS}. The reads run on the executor of
+	 * the {@link DatabaseLoader DatabaseLoader}, which is shared by all sync
+	 * requests.
+	 *
+	 * @param sync the synchronizer
+	 * @throws IOException if the database loader has been closed
+	 */
+	private void configureParallelReads(DatabaseSynchronizer sync)
+			throws IOException {
+		sync.setParallelReads(
+				DatabaseLoader.getInstance().getSyncReadExecutor());
+	}
+
 	public Object registerPush(ProtocolVersion version,
 			HttpServletRequest request, Database authDb, Database database,
 			User user, BaseProject project, String subject)
@@ -359,6 +463,15 @@ public class SyncControllerExecution {
 				lock.notifyAll();
 			}
 		}
+
+		@Override
+		public void onAddRemoteDatabaseActions(String database, String table,
+				List<String> users) {
+			synchronized (lock) {
+				hasNewActions = true;
+				lock.notifyAll();
+			}
+		}
 	}
 	
 	/**
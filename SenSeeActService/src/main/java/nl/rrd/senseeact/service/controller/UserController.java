@@ -15,10 +15,10 @@ import nl.rrd.senseeact.client.exception.HttpFieldError;
 import nl.rrd.senseeact.client.model.ListUser;
 import nl.rrd.senseeact.client.model.Role;
 import nl.rrd.senseeact.client.model.compat.*;
-import nl.rrd.senseeact.client.project.BaseProject;
-import nl.rrd.senseeact.client.project.ProjectRepository;
 import nl.rrd.senseeact.dao.*;
 import nl.rrd.senseeact.service.*;
+import nl.rrd.senseeact.service.deletion.UserDeletionManager;
+import nl.rrd.senseeact.service.deletion.UserDeletionProgress;
 import nl.rrd.senseeact.service.exception.BadRequestException;
 import nl.rrd.senseeact.service.exception.ForbiddenException;
 import nl.rrd.senseeact.service.exception.HttpException;
@@ -40,6 +40,7 @@ import nl.rrd.utils.validation.TypeConversion;
 import nl.rrd.utils.validation.Validation;
 import nl.rrd.utils.validation.ValidationException;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
@@ -62,16 +63,32 @@ public class UserController {
 			"lastActive"
 	);
 
+	@Autowired
+	private UserDeletionManager deletionManager;
+
 	@RequestMapping(value="/list", method=RequestMethod.GET)
 	public List<ListUser> getUserList(
 			HttpServletRequest request,
 			HttpServletResponse response,
 			@PathVariable("version")
 			@Parameter(hidden = true)
-			String versionName) throws HttpException, Exception {
+			String versionName,
+			@RequestParam(value="domain", required=false, defaultValue="")
+			final String domain,
+			@RequestParam(value="role", required=false, defaultValue="")
+			final String role,
+			@RequestParam(value="active", required=false, defaultValue="")
+			final String active,
+			@RequestParam(value="prefix", required=false, defaultValue="")
+			final String prefix,
+			@RequestParam(value="after", required=false, defaultValue="")
+			final String after,
+			@RequestParam(value="limit", required=false, defaultValue="")
+			final String limit) throws HttpException, Exception {
 		return QueryRunner.runAuthQuery(
 				(version, authDb, user, authDetails) ->
-				doGetUserList(user),
+				doGetUserList(authDb, user, domain, role, active, prefix,
+						after, limit),
 				versionName, request, response);
 	}
 
@@ -188,6 +205,37 @@ public class UserController {
 				versionName, request, response);
 	}
 
+	@RequestMapping(value="/deletion", method=RequestMethod.GET)
+	public UserDeletionProgress getDeletionProgress(
+			HttpServletRequest request,
+			HttpServletResponse response,
+			@PathVariable("version")
+			@Parameter(hidden = true)
+			String versionName,
+			@RequestParam(value="user")
+			final String user) throws HttpException, Exception {
+		return QueryRunner.runAuthQuery(
+				(version, authDb, currUser, authDetails) ->
+				doGetDeletionProgress(authDb, currUser, user),
+				versionName, request, response);
+	}
+
+	private UserDeletionProgress doGetDeletionProgress(Database authDb,
+			User currUser, String delUserId) throws HttpException,
+			DatabaseException {
+		if (currUser.getRole() != Role.ADMIN) {
+			throw new ForbiddenException(
+					"Only admins can get the progress of a user deletion");
+		}
+		UserDeletionProgress progress = deletionManager.getProgress(authDb,
+				delUserId);
+		if (progress == null) {
+			throw new NotFoundException(
+					"Deletion of user not found: " + delUserId);
+		}
+		return progress;
+	}
+
 	private Object doSetRole(ProtocolVersion version, Database authDb,
 			User currUser, String setUserId, String role)
 			throws HttpException, Exception {
@@ -277,19 +325,119 @@ public class UserController {
 		return null;
 	}
 
-	private List<ListUser> doGetUserList(User user) throws HttpException,
-			Exception {
+	/**
+	 * Returns a page of users ordered by email address. All filters are
+	 * optional:
+	 *
+	 * <p><ul>
+	 * <li>domain: the domain of the email address</li>
+	 * <li>role: the role</li>
+	 * <li>active: true or false</li>
+	 * <li>prefix: the start of the email address</li>
+	 * <li>after: the email address of the last user in the previous page</li>
+	 * <li>limit: the maximum number of users (default 0: no limit)</li>
+	 * </ul></p>
+	 *
+	 * <p>The users are selected from the database, so the filters and the
+	 * page limit can use the indexes on the user table.</p>
+	 *
+	 * @param authDb the authentication database
+	 * @param user the user who runs the query (must be an admin)
+	 * @param domain the email domain or an empty string
+	 * @param roleStr the role or an empty string
+	 * @param activeStr the active status or an empty string
+	 * @param prefix the email prefix or an empty string
+	 * @param after the email address after which the page starts, or an
+	 * empty string
+	 * @param limitStr the maximum number of users or an empty string
+	 * @return the users
+	 * @throws HttpException if the request is invalid
+	 * @throws Exception if any other error occurs
+	 */
+	private List<ListUser> doGetUserList(Database authDb, User user,
+			String domain, String roleStr, String activeStr, String prefix,
+			String after, String limitStr) throws HttpException, Exception {
 		if (user.getRole() != Role.ADMIN)
 			throw new ForbiddenException();
-		UserCache userCache = UserCache.getInstance();
-		List<User> users = userCache.getUsers(null, Comparator.comparing(
-				User::getEmail));
+		List<HttpFieldError> fieldErrors = new ArrayList<>();
+		List<DatabaseCriteria> andCriteria = new ArrayList<>();
+		if (roleStr != null && !roleStr.isEmpty()) {
+			try {
+				Role role = TypeConversion.getEnum(roleStr, Role.class);
+				andCriteria.add(new DatabaseCriteria.Equal("role",
+						role.name()));
+			} catch (ParseException ex) {
+				fieldErrors.add(new HttpFieldError("role",
+						"Invalid role: " + roleStr));
+			}
+		}
+		if (activeStr != null && !activeStr.isEmpty()) {
+			try {
+				boolean active = TypeConversion.getBoolean(activeStr);
+				andCriteria.add(new DatabaseCriteria.Equal("active",
+						active ? 1 : 0));
+			} catch (ParseException ex) {
+				fieldErrors.add(new HttpFieldError("active", ex.getMessage()));
+			}
+		}
+		int limit = parseListLimit(limitStr, fieldErrors);
+		if (!fieldErrors.isEmpty())
+			throw BadRequestException.withInvalidInput(fieldErrors);
+		if (domain != null && !domain.isEmpty()) {
+			andCriteria.add(new DatabaseCriteria.EndsWith("email",
+					"@" + domain.toLowerCase()));
+		}
+		if (prefix != null && !prefix.isEmpty()) {
+			andCriteria.add(new DatabaseCriteria.StartsWith("email",
+					prefix.toLowerCase()));
+		}
+		if (after != null && !after.isEmpty()) {
+			andCriteria.add(new DatabaseCriteria.GreaterThan("email",
+					after.toLowerCase()));
+		}
+		DatabaseCriteria criteria = null;
+		if (!andCriteria.isEmpty()) {
+			criteria = new DatabaseCriteria.And(andCriteria.toArray(
+					new DatabaseCriteria[0]));
+		}
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("email", true)
+		};
+		List<User> users = authDb.select(new UserTable(), criteria, limit,
+				sort);
 		List<ListUser> result = new ArrayList<>();
 		for (User getUser : users) {
 			result.add(ListUser.fromUser(getUser));
 		}
 		return result;
 	}
+
+	/**
+	 * Parses the "limit" parameter of a list query. If the parameter is not
+	 * specified, this method returns 0 (no limit). If the value is invalid,
+	 * this method adds an error to the specified list and returns 0.
+	 *
+	 * @param limitStr the parameter value
+	 * @param fieldErrors the list of field errors
+	 * @return the limit
+	 */
+	static int parseListLimit(String limitStr,
+			List<HttpFieldError> fieldErrors) {
+		if (limitStr == null || limitStr.isEmpty())
+			return 0;
+		int limit;
+		try {
+			limit = Integer.parseInt(limitStr);
+		} catch (NumberFormatException ex) {
+			limit = -1;
+		}
+		if (limit < 0) {
+			fieldErrors.add(new HttpFieldError("limit",
+					"Invalid limit: " + limitStr));
+			return 0;
+		}
+		return limit;
+	}
 	
 	private DatabaseObject doGetUser(ProtocolVersion version, Database authDb,
 			User user, String getUserId, String email)
@@ -828,12 +976,30 @@ public class UserController {
 				user.getUserid())) {
 			throw new ForbiddenException("You cannot delete other users");
 		}
-		deleteUser(authDb, delUser);
+		deleteUser(authDb, delUser, deletionManager);
 		return null;
 	}
 
-	public static void deleteUser(Database authDb, User user)
-			throws HttpException, DatabaseException, IOException {
+	/**
+	 * Deletes the specified user. The user is deleted from the authentication
+	 * database immediately. The data in the project databases is deleted in
+	 * the background by the {@link UserDeletionManager UserDeletionManager}.
+	 * Its deletion tasks are written before the user is deleted from the
+	 * authentication database, so they are resumed at the next startup if the
+	 * deletion is interrupted.
+	 *
+	 * @param authDb the authentication database
+	 * @param user the user to delete
+	 * @param deletionManager the user deletion manager
+	 * @throws HttpException if the user cannot be deleted
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if a communication error occurs
+	 */
+	public static void deleteUser(Database authDb, User user,
+			UserDeletionManager deletionManager) throws HttpException,
+			DatabaseException, IOException {
+		List<UserDeletionTask> deletionTasks = deletionManager.createTasks(
+				authDb, user.getUserid());
 		DatabaseCriteria criteria = new DatabaseCriteria.Equal(
 				"user", user.getUserid());
 		List<UserProject> oldUserProjects = authDb.select(
@@ -863,7 +1029,8 @@ public class UserController {
 				UserTable.NAME,
 				GroupTable.NAME,
 				GroupMemberTable.NAME,
-				UserProjectTable.NAME
+				UserProjectTable.NAME,
+				UserDeletionTaskTable.NAME
 		);
 		List<DatabaseTableDef<?>> authTables = DatabaseLoader.getAuthDbTables();
 		authTables.removeIf(table -> {
@@ -877,21 +1044,9 @@ public class UserController {
 			authDb.delete(table, criteria);
 		}
 		authDb.delete(new UserTableKeyTable(), criteria);
-		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
-		DatabaseConnection dbConn = dbLoader.openConnection();
-		ProjectRepository projects = AppComponents.get(ProjectRepository.class);
-		try {
-			for (BaseProject project : projects.getProjects()) {
-				Database db = dbLoader.initProjectDatabase(dbConn,
-						project.getCode());
-				if (db != null)
-					db.purgeUser(user.getUserid());
-			}
-		} finally {
-			dbConn.close();
-		}
 		UserCache userCache = UserCache.getInstance();
 		userCache.deleteUser(authDb, user.getUserid());
+		deletionManager.startDeletion(deletionTasks);
 	}
 	
 	private List<String> doGetGroups(ProtocolVersion version, Database authDb,
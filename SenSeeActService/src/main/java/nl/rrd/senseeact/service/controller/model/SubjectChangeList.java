@@ -0,0 +1,118 @@
+package nl.rrd.senseeact.service.controller.model;
+
+import nl.rrd.senseeact.dao.DatabaseObject;
+import nl.rrd.utils.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class models the changes in a project user list since a version. It
+ * contains the current profile of users that were added or changed, and the
+ * user IDs of users that were removed. A removed user may not have been in
+ * the list of the client.
+ *
+ * <p>If "reset" is true, the changes can't be determined and the client
+ * should read the complete list again. Otherwise the client should store
+ * "version" for the next query. If "more" is true, there are more changes
+ * and the client can query again right away.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SubjectChangeList extends JsonObject {
+	private long version;
+	private boolean reset = false;
+	private boolean more = false;
+	private List<DatabaseObject> updated = new ArrayList<>();
+	private List<String> removed = new ArrayList<>();
+
+	/**
+	 * Returns the version that should be passed to the next query.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the version that should be passed to the next query.
+	 *
+	 * @param version the version
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Returns whether the client should read the complete list again.
+	 *
+	 * @return true if the client should read the complete list again
+	 */
+	public boolean isReset() {
+		return reset;
+	}
+
+	/**
+	 * Sets whether the client should read the complete list again.
+	 *
+	 * @param reset true if the client should read the complete list again
+	 */
+	public void setReset(boolean reset) {
+		this.reset = reset;
+	}
+
+	/**
+	 * Returns whether there are more changes after this version.
+	 *
+	 * @return true if there are more changes
+	 */
+	public boolean isMore() {
+		return more;
+	}
+
+	/**
+	 * Sets whether there are more changes after this version.
+	 *
+	 * @param more true if there are more changes
+	 */
+	public void setMore(boolean more) {
+		this.more = more;
+	}
+
+	/**
+	 * Returns the users that were added or changed.
+	 *
+	 * @return the users that were added or changed
+	 */
+	public List<DatabaseObject> getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * Sets the users that were added or changed.
+	 *
+	 * @param updated the users that were added or changed
+	 */
+	public void setUpdated(List<DatabaseObject> updated) {
+		this.updated = updated;
+	}
+
+	/**
+	 * Returns the user IDs of the users that were removed.
+	 *
+	 * @return the user IDs of the users that were removed
+	 */
+	public List<String> getRemoved() {
+		return removed;
+	}
+
+	/**
+	 * Sets the user IDs of the users that were removed.
+	 *
+	 * @param removed the user IDs of the users that were removed
+	 */
+	public void setRemoved(List<String> removed) {
+		this.removed = removed;
+	}
+}
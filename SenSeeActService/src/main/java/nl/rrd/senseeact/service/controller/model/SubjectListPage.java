@@ -0,0 +1,80 @@
+package nl.rrd.senseeact.service.controller.model;
+
+import nl.rrd.senseeact.dao.DatabaseObject;
+import nl.rrd.utils.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class models a page of a project user list. The users are sorted by
+ * user ID. If there are more users, "nextCursor" can be passed to get the
+ * next page. The version can be passed to the query for subject changes to
+ * keep the list up to date. A client should store the version of the first
+ * page.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SubjectListPage extends JsonObject {
+	private List<DatabaseObject> users = new ArrayList<>();
+	private String nextCursor = null;
+	private long version;
+
+	/**
+	 * Returns the users on this page.
+	 *
+	 * @return the users
+	 */
+	public List<DatabaseObject> getUsers() {
+		return users;
+	}
+
+	/**
+	 * Sets the users on this page.
+	 *
+	 * @param users the users
+	 */
+	public void setUsers(List<DatabaseObject> users) {
+		this.users = users;
+	}
+
+	/**
+	 * Returns the cursor for the next page. If this is the last page, this is
+	 * null.
+	 *
+	 * @return the cursor for the next page or null
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Sets the cursor for the next page. If this is the last page, this
+	 * should be null.
+	 *
+	 * @param nextCursor the cursor for the next page or null
+	 */
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Returns the version of the subject change log from before the list was
+	 * read.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the version of the subject change log from before the list was
+	 * read.
+	 *
+	 * @param version the version
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+}
@@ -0,0 +1,417 @@
+package nl.rrd.senseeact.service.deletion;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nl.rrd.senseeact.client.project.BaseProject;
+import nl.rrd.senseeact.client.project.ProjectRepository;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.service.Configuration;
+import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.senseeact.service.model.UserDeletionTask;
+import nl.rrd.senseeact.service.model.UserDeletionTaskTable;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * This service deletes the data of deleted users from the project databases.
+ * When a user is deleted, the user is removed from the authentication
+ * database, and a {@link UserDeletionTask UserDeletionTask} is created for
+ * each project with {@link #createTasks(Database, String) createTasks()}.
+ * The tasks are created before the user is removed, so if the process stops
+ * in between, the tasks are resumed at the next startup. After the user has
+ * been removed, the tasks are queued with {@link #startDeletion(List)
+ * startDeletion()}. The tasks are stored in the authentication database and
+ * run by a fixed number of worker threads, so the projects of a user are
+ * purged in parallel. The number of threads is read from {@link
+ * Configuration#USER_DELETION_THREADS Configuration.USER_DELETION_THREADS}.
+ *
+ * <p>At startup the service resumes all tasks that were not completed. Tasks
+ * that were completed more than {@link #MAX_AVAILABLE_DAYS MAX_AVAILABLE_DAYS}
+ * days ago are removed. The progress of a deletion can be obtained with
+ * {@link #getProgress(Database, String) getProgress()}.</p>
+ *
+ * <p>If the status of a task cannot be written to the authentication
+ * database, the task is queued again and retried after {@link #RETRY_DELAY
+ * RETRY_DELAY} milliseconds. Purging a user is idempotent, so a task may be
+ * run again after the purge completed.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@Service
+public class UserDeletionManager {
+	private static final int MAX_AVAILABLE_DAYS = 7;
+	private static final int DEFAULT_WORKER_THREADS = 4;
+	private static final int RETRY_DELAY = 10000; // milliseconds
+
+	private final Object lock = new Object();
+	private boolean closed = false;
+
+	private LinkedList<QueuedTask> queue = new LinkedList<>();
+	// IDs of the tasks in the queue or at a worker thread
+	private Set<String> queuedIds = new HashSet<>();
+
+	/**
+	 * Creates a deletion task for each project and writes the tasks to the
+	 * authentication database. This should be called before the user is
+	 * deleted from the authentication database, so the tasks are resumed at
+	 * the next startup if the deletion is interrupted. After the user has
+	 * been deleted, you should call {@link #startDeletion(List)
+	 * startDeletion()} with the returned tasks.
+	 *
+	 * @param authDb the authentication database
+	 * @param user the user ID of the user that will be deleted
+	 * @return the tasks
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public List<UserDeletionTask> createTasks(Database authDb, String user)
+			throws DatabaseException {
+		ProjectRepository projects = AppComponents.get(ProjectRepository.class);
+		long now = System.currentTimeMillis();
+		List<UserDeletionTask> tasks = new ArrayList<>();
+		for (BaseProject project : projects.getProjects()) {
+			tasks.add(new UserDeletionTask(user, project.getCode(), now));
+		}
+		if (!tasks.isEmpty())
+			authDb.insert(UserDeletionTaskTable.NAME, tasks);
+		return tasks;
+	}
+
+	/**
+	 * Queues the specified deletion tasks for the worker threads. The tasks
+	 * should have been created with {@link #createTasks(Database, String)
+	 * createTasks()}. This should be called after the user has been deleted
+	 * from the authentication database.
+	 *
+	 * @param tasks the tasks
+	 */
+	public void startDeletion(List<UserDeletionTask> tasks) {
+		if (tasks.isEmpty())
+			return;
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		logger.info(String.format("Start deletion of user %s in %d projects",
+				tasks.get(0).getUser(), tasks.size()));
+		for (UserDeletionTask task : tasks) {
+			queueTask(task);
+		}
+	}
+
+	/**
+	 * Returns the progress of the deletion of the specified user. If no
+	 * deletion tasks are found for the user, this method returns null.
+	 *
+	 * @param authDb the authentication database
+	 * @param user the user ID of the deleted user
+	 * @return the progress or null
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public UserDeletionProgress getProgress(Database authDb, String user)
+			throws DatabaseException {
+		List<UserDeletionTask> tasks = authDb.select(
+				new UserDeletionTaskTable(),
+				new DatabaseCriteria.Equal("user", user), 0, null);
+		if (tasks.isEmpty())
+			return null;
+		UserDeletionProgress progress = new UserDeletionProgress();
+		progress.setUser(user);
+		progress.setTotal(tasks.size());
+		int completed = 0;
+		int failed = 0;
+		for (UserDeletionTask task : tasks) {
+			if (UserDeletionStatus.COMPLETED.name().equals(task.getStatus()))
+				completed++;
+			else if (UserDeletionStatus.FAILED.name().equals(task.getStatus()))
+				failed++;
+		}
+		progress.setCompleted(completed);
+		progress.setFailed(failed);
+		UserDeletionStatus status;
+		if (completed + failed < tasks.size())
+			status = UserDeletionStatus.RUNNING;
+		else if (failed > 0)
+			status = UserDeletionStatus.FAILED;
+		else
+			status = UserDeletionStatus.COMPLETED;
+		progress.setStatus(status.name());
+		return progress;
+	}
+
+	private void queueTask(UserDeletionTask task) {
+		synchronized (lock) {
+			if (closed || queuedIds.contains(task.getId()))
+				return;
+			queuedIds.add(task.getId());
+			queue.add(new QueuedTask(task, 0));
+			lock.notifyAll();
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		new Thread(this::runInit).start();
+	}
+
+	private void runInit() {
+		String serviceName = getClass().getSimpleName();
+		Logger logger = AppComponents.getLogger(serviceName);
+		logger.info("Start " + serviceName);
+		while (!isClosed()) {
+			try {
+				runWithAuthDb(this::initDb);
+				onInitDb();
+				return;
+			} catch (DatabaseException | IOException ex) {
+				if (isClosed())
+					return;
+				logger.error("Database error: " + ex.getMessage());
+			}
+			wait(10000);
+			if (isClosed())
+				return;
+			logger.info("Retry init");
+		}
+	}
+
+	private boolean isClosed() {
+		synchronized (lock) {
+			return closed;
+		}
+	}
+
+	private void wait(int ms) {
+		long now = System.currentTimeMillis();
+		long end = now + ms;
+		synchronized (lock) {
+			while (!closed && now < end) {
+				try {
+					lock.wait(end - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+				now = System.currentTimeMillis();
+			}
+		}
+	}
+
+	private void initDb(Database authDb) throws DatabaseException {
+		UserDeletionTaskTable table = new UserDeletionTaskTable();
+		long minTime = System.currentTimeMillis() -
+				MAX_AVAILABLE_DAYS * 24L * 3600000L;
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("status",
+						UserDeletionStatus.COMPLETED.name()),
+				new DatabaseCriteria.LessThan("updated", minTime)
+		);
+		authDb.delete(table, criteria);
+		criteria = new DatabaseCriteria.NotEqual("status",
+				UserDeletionStatus.COMPLETED.name());
+		List<UserDeletionTask> tasks = authDb.select(table, criteria, 0, null);
+		for (UserDeletionTask task : tasks) {
+			queueTask(task);
+		}
+	}
+
+	private void onInitDb() {
+		synchronized (lock) {
+			if (closed)
+				return;
+			Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+			int threadCount = getWorkerThreadCount();
+			for (int i = 0; i < threadCount; i++) {
+				new Thread(this::runWorkerThread, getClass().getSimpleName() +
+						"-worker-" + i).start();
+			}
+			logger.info("Init completed");
+		}
+	}
+
+	/**
+	 * Returns the number of worker threads that purge project databases. This
+	 * is read from {@link Configuration#USER_DELETION_THREADS
+	 * Configuration.USER_DELETION_THREADS}.
+	 *
+	 * @return the number of worker threads
+	 */
+	int getWorkerThreadCount() {
+		Configuration config = AppComponents.get(Configuration.class);
+		return config.getIntProperty(Configuration.USER_DELETION_THREADS,
+				DEFAULT_WORKER_THREADS, 1);
+	}
+
+	private void runWorkerThread() {
+		while (true) {
+			UserDeletionTask task = takeTask();
+			if (task == null)
+				return;
+			boolean finished = runTask(task);
+			synchronized (lock) {
+				if (!finished && !closed) {
+					queue.add(new QueuedTask(task,
+							System.currentTimeMillis() + getRetryDelay()));
+					lock.notifyAll();
+				} else {
+					queuedIds.remove(task.getId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Waits until a task in the queue can be run and removes it from the
+	 * queue. If the service is closed, this method returns null.
+	 *
+	 * @return the task or null
+	 */
+	private UserDeletionTask takeTask() {
+		synchronized (lock) {
+			while (!closed) {
+				long now = System.currentTimeMillis();
+				long wakeTime = 0;
+				Iterator<QueuedTask> it = queue.iterator();
+				while (it.hasNext()) {
+					QueuedTask queued = it.next();
+					if (queued.runTime <= now) {
+						it.remove();
+						return queued.task;
+					}
+					if (wakeTime == 0 || queued.runTime < wakeTime)
+						wakeTime = queued.runTime;
+				}
+				try {
+					if (wakeTime == 0)
+						lock.wait();
+					else
+						lock.wait(wakeTime - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the time in milliseconds after which a task is retried if its
+	 * status could not be written.
+	 *
+	 * @return the retry delay in milliseconds
+	 */
+	int getRetryDelay() {
+		return RETRY_DELAY;
+	}
+
+	/**
+	 * Purges the user from the project database of the specified task and
+	 * updates the status of the task. If the purge fails, the status is set
+	 * to FAILED. If the status cannot be written, this method returns false
+	 * and the task should be retried. The task also remains unfinished in
+	 * the database, so it is resumed at the next startup if the service
+	 * stops before the retry.
+	 *
+	 * @param task the task
+	 * @return true if the task finished, false if it should be retried
+	 */
+	private boolean runTask(UserDeletionTask task) {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		String taskLog = String.format("deletion of user %s in project %s",
+				task.getUser(), task.getProject());
+		if (!tryUpdateStatus(task, UserDeletionStatus.RUNNING, null))
+			return false;
+		try {
+			purgeUser(task);
+		} catch (DatabaseException | IOException ex) {
+			logger.error("Failed " + taskLog + ": " + ex.getMessage(), ex);
+			return tryUpdateStatus(task, UserDeletionStatus.FAILED,
+					ex.getMessage());
+		}
+		if (!tryUpdateStatus(task, UserDeletionStatus.COMPLETED, null))
+			return false;
+		logger.info("Completed " + taskLog);
+		return true;
+	}
+
+	/**
+	 * Purges the user of the specified task from the project database.
+	 *
+	 * @param task the task
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if the database connection could not be opened
+	 */
+	void purgeUser(UserDeletionTask task) throws DatabaseException,
+			IOException {
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			Database db = dbLoader.initProjectDatabase(dbConn,
+					task.getProject());
+			if (db != null)
+				db.purgeUser(task.getUser());
+		} finally {
+			dbConn.close();
+		}
+	}
+
+	private boolean tryUpdateStatus(UserDeletionTask task,
+			UserDeletionStatus status, String error) {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		task.setStatus(status.name());
+		task.setError(error);
+		task.setUpdated(System.currentTimeMillis());
+		try {
+			runWithAuthDb(authDb -> authDb.update(UserDeletionTaskTable.NAME,
+					task));
+			return true;
+		} catch (DatabaseException | IOException ex) {
+			logger.error("Database error: " + ex.getMessage(), ex);
+			return false;
+		}
+	}
+
+	void runWithAuthDb(DatabaseRunner runner) throws DatabaseException,
+			IOException {
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			Database authDb = dbLoader.initAuthDatabase(dbConn);
+			runner.run(authDb);
+		} finally {
+			dbConn.close();
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		synchronized (lock) {
+			if (closed)
+				return;
+			String serviceName = getClass().getSimpleName();
+			Logger logger = AppComponents.getLogger(serviceName);
+			logger.info("Stop " + serviceName);
+			closed = true;
+			queue.clear();
+			queuedIds.clear();
+			lock.notifyAll();
+		}
+	}
+
+	interface DatabaseRunner {
+		void run(Database db) throws DatabaseException;
+	}
+
+	private static class QueuedTask {
+		private UserDeletionTask task;
+		// time when the task can be run, as a unix time in milliseconds
+		private long runTime;
+
+		public QueuedTask(UserDeletionTask task, long runTime) {
+			this.task = task;
+			this.runTime = runTime;
+		}
+	}
+}
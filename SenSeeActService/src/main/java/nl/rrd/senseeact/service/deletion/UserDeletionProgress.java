@@ -0,0 +1,118 @@
+package nl.rrd.senseeact.service.deletion;
+
+import nl.rrd.utils.json.JsonObject;
+
+/**
+ * The progress of the deletion of a user. It summarises the {@link
+ * nl.rrd.senseeact.service.model.UserDeletionTask UserDeletionTask}s for
+ * the user. The overall status is:
+ *
+ * <p><ul>
+ * <li>RUNNING: if there are pending or running tasks</li>
+ * <li>FAILED: if all tasks have finished and at least one task failed</li>
+ * <li>COMPLETED: if all tasks have been completed</li>
+ * </ul></p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class UserDeletionProgress extends JsonObject {
+	private String user;
+	private String status;
+	private int total = 0;
+	private int completed = 0;
+	private int failed = 0;
+
+	/**
+	 * Returns the user ID of the deleted user.
+	 *
+	 * @return the user ID of the deleted user
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Sets the user ID of the deleted user.
+	 *
+	 * @param user the user ID of the deleted user
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Returns the overall status. This is the name of a {@link
+	 * UserDeletionStatus UserDeletionStatus}, but never PENDING.
+	 *
+	 * @return the overall status
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * Sets the overall status. This is the name of a {@link
+	 * UserDeletionStatus UserDeletionStatus}, but never PENDING.
+	 *
+	 * @param status the overall status
+	 */
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	/**
+	 * Returns the total number of projects that should be purged.
+	 *
+	 * @return the total number of projects
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Sets the total number of projects that should be purged.
+	 *
+	 * @param total the total number of projects
+	 */
+	public void setTotal(int total) {
+		this.total = total;
+	}
+
+	/**
+	 * Returns the number of projects that have been purged.
+	 *
+	 * @return the number of purged projects
+	 */
+	public int getCompleted() {
+		return completed;
+	}
+
+	/**
+	 * Sets the number of projects that have been purged.
+	 *
+	 * @param completed the number of purged projects
+	 */
+	public void setCompleted(int completed) {
+		this.completed = completed;
+	}
+
+	/**
+	 * Returns the number of projects where the purge failed. These projects
+	 * will be retried when the service is restarted.
+	 *
+	 * @return the number of failed projects
+	 */
+	public int getFailed() {
+		return failed;
+	}
+
+	/**
+	 * Sets the number of projects where the purge failed. These projects will
+	 * be retried when the service is restarted.
+	 *
+	 * @param failed the number of failed projects
+	 */
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+}
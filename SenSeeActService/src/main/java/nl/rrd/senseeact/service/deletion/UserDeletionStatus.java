@@ -0,0 +1,30 @@
+package nl.rrd.senseeact.service.deletion;
+
+/**
+ * The status of a {@link nl.rrd.senseeact.service.model.UserDeletionTask
+ * UserDeletionTask} or of the deletion of a user as a whole.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public enum UserDeletionStatus {
+	/**
+	 * The task is waiting for a worker thread.
+	 */
+	PENDING,
+
+	/**
+	 * The task is currently running.
+	 */
+	RUNNING,
+
+	/**
+	 * The user data has been deleted.
+	 */
+	COMPLETED,
+
+	/**
+	 * The task stopped with an error. It will be retried when the service is
+	 * restarted.
+	 */
+	FAILED
+}
@@ -0,0 +1,966 @@
+package nl.rrd.senseeact.service.ingest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nl.rrd.senseeact.client.project.BaseProject;
+import nl.rrd.senseeact.client.project.ProjectRepository;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseFieldException;
+import nl.rrd.senseeact.dao.DatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseObjectMapper;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.senseeact.dao.PackedArrayColumn;
+import nl.rrd.senseeact.service.Configuration;
+import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.senseeact.service.model.User;
+import nl.rrd.senseeact.service.model.UserTable;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.ParseException;
+import nl.rrd.utils.json.JsonMapper;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * This service can accept inserted records before they are written to the
+ * project database. It is enabled with {@link Configuration#INGESTION_QUEUE
+ * Configuration.INGESTION_QUEUE}. The records of an insert get their IDs
+ * from the {@link nl.rrd.senseeact.dao.RecordIdGenerator RecordIdGenerator}
+ * of the database and they are appended as one entry to a write-ahead log in
+ * the directory "ingestion" in the data directory. When the entry has been
+ * written to disk, the insert can be acknowledged to the client. Before that
+ * the records are mapped in the same way as when they are applied, so
+ * records that would be rejected are inserted directly and the client gets
+ * the error.
+ *
+ * <p>The log uses group commit. An insert writes its entry to the log file
+ * and then waits until the entry has been synced to disk. A flush thread
+ * syncs the log file once for all entries that were written since the
+ * previous sync and then wakes up the waiting inserts. While it syncs, new
+ * entries can be written, and they are synced in the next batch. An entry
+ * is only queued to be applied after it has been synced.</p>
+ *
+ * <p>A background thread drains the queue. It takes the oldest entries up to
+ * {@link #MAX_APPLY_RECORDS MAX_APPLY_RECORDS} records, groups them by
+ * project, table and user, and inserts each group into the project database.
+ * The database actions, action log and listeners are handled as with a
+ * normal insert. After that, the sequence number of the last applied entry
+ * is written to a checkpoint file and log segments that only contain applied
+ * entries are deleted. If the database fails, the thread retries after 10
+ * seconds.</p>
+ *
+ * <p>After a failure the entries of the batch are applied one at a time, so
+ * an entry that can't be written does not block the other entries. If an
+ * entry fails {@link #MAX_APPLY_ATTEMPTS MAX_APPLY_ATTEMPTS} times while the
+ * database is available, it is moved to the dead-letter file
+ * "dead_letter.log" in the same directory. That file is not replayed, but
+ * it keeps the records for inspection.</p>
+ *
+ * <p>At startup the service replays the entries after the checkpoint. This
+ * also happens if the queue is no longer enabled, so records that were
+ * acknowledged before are not lost. An entry may have been applied before
+ * the checkpoint was written, so at replay the records whose ID already
+ * exists are skipped.</p>
+ *
+ * <p>Clients that want to read their own writes, should call {@link
+ * #flush(String, String, String) flush()}. It waits until the records that
+ * were queued for a table and user have been written to the database.</p>
+ *
+ * <p>If the queue is not enabled or not running, or it already has {@link
+ * #MAX_PENDING_RECORDS MAX_PENDING_RECORDS} records, then {@link
+ * #add(Database, String, DatabaseTableDef, User, List) add()} returns false
+ * and the caller should insert the records directly.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@Service
+public class IngestionQueue {
+	public static final int MAX_PENDING_RECORDS = 100000;
+	public static final int MAX_APPLY_RECORDS = 10000;
+	public static final int FLUSH_TIMEOUT = 60000;
+	public static final int MAX_APPLY_ATTEMPTS = 5;
+
+	private static final int INSERT_BATCH_SIZE = 1000;
+	private static final int REPLAY_SELECT_SIZE = 100;
+	private static final long SEGMENT_SIZE = 16 * 1024 * 1024;
+	private static final int RETRY_DELAY = 10000;
+	private static final String CHECKPOINT_FILE = "checkpoint";
+	private static final String DEAD_LETTER_FILE = "dead_letter.log";
+	private static final String SEGMENT_PREFIX = "wal_";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static final Object LOCK = new Object();
+	private boolean closed = false;
+	private boolean running = false;
+	private boolean enabled = false;
+
+	private LinkedList<Entry> pending = new LinkedList<>();
+	private int pendingRecords = 0;
+	private long appliedSeq = 0;
+
+	// the fields below are synchronized with writeLock
+	private final Object writeLock = new Object();
+	private File walDir = null;
+	private long nextSeq = 1;
+	private List<Segment> segments = new ArrayList<>();
+	private Segment activeSegment = null;
+	private FileOutputStream activeOutput = null;
+	// entries that have been written to the active segment, but not synced
+	private List<Entry> unsynced = new ArrayList<>();
+	// true while the flush thread syncs the active segment
+	private boolean syncing = false;
+
+	/**
+	 * Tries to add records to the queue. If the queue is not enabled or not
+	 * running, or if it is full, this method returns false and the caller
+	 * should insert the records directly. Otherwise this method sets the
+	 * record IDs, writes the records to the write-ahead log and returns true
+	 * when they have been synced to disk.
+	 *
+	 * <p>If a record can't be mapped in the same way as when the queue is
+	 * applied, this method also returns false. The direct insert then reports
+	 * the error to the client.</p>
+	 *
+	 * @param db the project database
+	 * @param project the project code
+	 * @param table the table
+	 * @param subjectUser the user that the records belong to, or null if the
+	 * table is not a user table
+	 * @param records the records
+	 * @return true if the records were added, false if they should be
+	 * inserted directly
+	 * @throws IOException if the write-ahead log could not be written
+	 */
+	public boolean add(Database db, String project, DatabaseTableDef<?> table,
+			User subjectUser, List<? extends DatabaseObject> records)
+			throws IOException {
+		if (records.isEmpty())
+			return true;
+		synchronized (LOCK) {
+			if (closed || !running || !enabled ||
+					pendingRecords + records.size() > MAX_PENDING_RECORDS) {
+				return false;
+			}
+		}
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		List<Map<String,Object>> maps = new ArrayList<>();
+		for (DatabaseObject record : records) {
+			record.setId(db.getRecordIdGenerator().generateId());
+			maps.add(mapper.objectToMap(record, true));
+		}
+		if (!isValidRecords(table, maps))
+			return false;
+		Entry entry = new Entry();
+		entry.project = project;
+		entry.table = table.getName();
+		entry.user = subjectUser != null ? subjectUser.getUserid() : "";
+		entry.records = maps;
+		synchronized (writeLock) {
+			// after close the flush thread no longer syncs new entries
+			if (closed)
+				return false;
+			// a failed sequence number is not reused, so a new segment
+			// never gets the name of a failed segment
+			entry.seq = nextSeq++;
+			appendEntry(entry);
+			while (!entry.synced && entry.syncError == null) {
+				try {
+					writeLock.wait();
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		}
+		if (entry.syncError != null) {
+			throw new IOException("Failed to sync write-ahead log: " +
+					entry.syncError.getMessage(), entry.syncError);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the specified records can be applied. It maps the
+	 * records from the write-ahead log to objects and database values in the
+	 * same way as when they are inserted into the database.
+	 *
+	 * @param table the table
+	 * @param maps the records as they are written to the write-ahead log
+	 * @return true if the records are valid, false otherwise
+	 */
+	private boolean isValidRecords(DatabaseTableDef<?> table,
+			List<Map<String,Object>> maps) {
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		List<String> packedFields = PackedArrayColumn.getFields(
+				table.getDataClass());
+		try {
+			for (Map<String,Object> map : maps) {
+				DatabaseObject record = mapper.mapToObject(map,
+						table.getDataClass(), true);
+				PackedArrayColumn.pack(packedFields, mapper.objectToMap(
+						record, false));
+			}
+			return true;
+		} catch (DatabaseFieldException | DatabaseException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Waits until the records that are currently in the queue for the
+	 * specified table and user, have been written to the database. It waits
+	 * at most {@link #FLUSH_TIMEOUT FLUSH_TIMEOUT} ms.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @param user the user ID or an empty string if the table is not a user
+	 * table
+	 * @return true if the records have been written, false if a timeout
+	 * occurred or the service was closed
+	 */
+	public boolean flush(String project, String table, String user) {
+		synchronized (LOCK) {
+			long target = 0;
+			for (Entry entry : pending) {
+				if (entry.project.equals(project) &&
+						entry.table.equals(table) && entry.user.equals(user)) {
+					target = entry.seq;
+				}
+			}
+			long now = System.currentTimeMillis();
+			long end = now + FLUSH_TIMEOUT;
+			while (!closed && appliedSeq < target && now < end) {
+				try {
+					LOCK.wait(end - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+				now = System.currentTimeMillis();
+			}
+			return appliedSeq >= target;
+		}
+	}
+
+	/**
+	 * Writes an entry to the active segment of the write-ahead log and adds
+	 * it to the unsynced entries for the flush thread. If there is no active
+	 * segment or it is full, this method starts a new segment. If writing
+	 * fails, the active segment is closed, so the next entry is written to a
+	 * new segment. This method should be called with writeLock.
+	 *
+	 * @param entry the entry
+	 * @throws IOException if a writing error occurs
+	 */
+	private void appendEntry(Entry entry) throws IOException {
+		if (activeSegment != null && activeSegment.size >= getSegmentSize())
+			closeActiveSegment();
+		if (activeSegment == null) {
+			Segment segment = new Segment();
+			segment.file = new File(walDir, String.format("%s%016d%s",
+					SEGMENT_PREFIX, entry.seq, SEGMENT_SUFFIX));
+			activeOutput = new FileOutputStream(segment.file, true);
+			activeSegment = segment;
+			segments.add(segment);
+		}
+		byte[] bs = (JsonMapper.generate(entry.toMap()) + "\n").getBytes(
+				StandardCharsets.UTF_8);
+		try {
+			activeOutput.write(bs);
+		} catch (IOException ex) {
+			closeActiveSegment();
+			throw ex;
+		}
+		activeSegment.size += bs.length;
+		activeSegment.lastSeq = entry.seq;
+		unsynced.add(entry);
+		writeLock.notifyAll();
+	}
+
+	/**
+	 * Forces the data of a segment file to disk.
+	 *
+	 * @param output the output of the segment file
+	 * @throws IOException if a writing error occurs
+	 */
+	void syncOutput(FileOutputStream output) throws IOException {
+		output.getFD().sync();
+	}
+
+	private void runFlushThread() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		while (true) {
+			List<Entry> batch;
+			FileOutputStream output;
+			synchronized (writeLock) {
+				while (!closed && unsynced.isEmpty()) {
+					try {
+						writeLock.wait();
+					} catch (InterruptedException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+				// at close the remaining entries are synced by
+				// closeActiveSegment()
+				if (closed)
+					return;
+				batch = unsynced;
+				unsynced = new ArrayList<>();
+				output = activeOutput;
+				syncing = true;
+			}
+			IOException error = null;
+			try {
+				syncOutput(output);
+			} catch (IOException ex) {
+				logger.error("Failed to sync write-ahead log: " +
+						ex.getMessage(), ex);
+				error = ex;
+			}
+			synchronized (writeLock) {
+				syncing = false;
+				// the next entries are written to a new segment
+				if (error != null)
+					closeActiveSegment();
+				completeSync(batch, error);
+			}
+		}
+	}
+
+	/**
+	 * Completes the sync of the specified entries and wakes up the inserts
+	 * that wait for them. If the sync succeeded, the entries are added to the
+	 * queue. This method should be called with writeLock.
+	 *
+	 * @param entries the entries
+	 * @param error the sync error or null
+	 */
+	private void completeSync(List<Entry> entries, IOException error) {
+		if (entries.isEmpty())
+			return;
+		synchronized (LOCK) {
+			for (Entry entry : entries) {
+				if (error != null) {
+					entry.syncError = error;
+				} else {
+					entry.synced = true;
+					pending.add(entry);
+					pendingRecords += entry.records.size();
+				}
+			}
+			LOCK.notifyAll();
+		}
+		writeLock.notifyAll();
+	}
+
+	/**
+	 * Closes the active segment. If the flush thread is syncing the segment,
+	 * this method waits until it has finished. Entries that have not been
+	 * synced yet, are synced before the segment is closed. This method should
+	 * be called with writeLock, but not with LOCK.
+	 */
+	private void closeActiveSegment() {
+		while (syncing) {
+			try {
+				writeLock.wait();
+			} catch (InterruptedException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+		if (!unsynced.isEmpty()) {
+			List<Entry> batch = unsynced;
+			unsynced = new ArrayList<>();
+			IOException error = null;
+			try {
+				syncOutput(activeOutput);
+			} catch (IOException ex) {
+				error = ex;
+			}
+			completeSync(batch, error);
+		}
+		if (activeOutput != null) {
+			try {
+				activeOutput.close();
+			} catch (IOException ex) {
+				Logger logger = AppComponents.getLogger(
+						getClass().getSimpleName());
+				logger.error("Failed to close write-ahead log segment: " +
+						ex.getMessage(), ex);
+			}
+		}
+		activeOutput = null;
+		activeSegment = null;
+	}
+
+	@PostConstruct
+	public void init() {
+		new Thread(this::runInit).start();
+	}
+
+	private void runInit() {
+		String serviceName = getClass().getSimpleName();
+		Logger logger = AppComponents.getLogger(serviceName);
+		logger.info("Start " + serviceName);
+		while (!closed) {
+			try {
+				doInit();
+				return;
+			} catch (IOException ex) {
+				if (closed)
+					return;
+				logger.error("Failed to read write-ahead log: " +
+						ex.getMessage(), ex);
+			}
+			wait(10000);
+			if (closed)
+				return;
+			logger.info("Retry init");
+		}
+	}
+
+	private void wait(int ms) {
+		long now = System.currentTimeMillis();
+		long end = now + ms;
+		synchronized (LOCK) {
+			while (!closed && now < end) {
+				try {
+					LOCK.wait(end - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+				now = System.currentTimeMillis();
+			}
+		}
+	}
+
+	private void doInit() throws IOException {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		boolean enabled = isQueueEnabled();
+		File dir = getQueueDir();
+		if (dir == null && !enabled)
+			return;
+		if (dir == null) {
+			throw new RuntimeException("Configuration key \"" +
+					Configuration.DATA_DIR + "\" not found");
+		}
+		if (!dir.exists() && !enabled)
+			return;
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Can't create directory: " +
+					dir.getAbsolutePath());
+		}
+		long checkpoint = readCheckpoint(dir);
+		List<Segment> readSegments = new ArrayList<>();
+		List<Entry> replay = new ArrayList<>();
+		int replayRecords = 0;
+		long maxSeq = checkpoint;
+		for (File file : listSegmentFiles(dir)) {
+			Segment segment = new Segment();
+			segment.file = file;
+			segment.size = file.length();
+			for (Entry entry : readSegmentFile(file)) {
+				segment.lastSeq = Math.max(segment.lastSeq, entry.seq);
+				if (entry.seq <= checkpoint)
+					continue;
+				entry.replay = true;
+				replay.add(entry);
+				replayRecords += entry.records.size();
+			}
+			maxSeq = Math.max(maxSeq, segment.lastSeq);
+			readSegments.add(segment);
+		}
+		replay.sort(Comparator.comparingLong(entry -> entry.seq));
+		synchronized (writeLock) {
+			synchronized (LOCK) {
+				if (closed)
+					return;
+				walDir = dir;
+				segments = readSegments;
+				nextSeq = maxSeq + 1;
+				appliedSeq = checkpoint;
+				pending.addAll(replay);
+				pendingRecords += replayRecords;
+				this.enabled = enabled;
+				running = true;
+				new Thread(this::runApplyThread, getClass().getSimpleName() +
+						"-apply").start();
+				new Thread(this::runFlushThread, getClass().getSimpleName() +
+						"-flush").start();
+				if (!replay.isEmpty()) {
+					logger.info("Replay " + replayRecords + " records from " +
+							"write-ahead log");
+				}
+				logger.info("Init completed");
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the queue is enabled in {@link
+	 * Configuration#INGESTION_QUEUE Configuration.INGESTION_QUEUE}. The
+	 * default is false.
+	 *
+	 * @return true if the queue is enabled, false otherwise
+	 */
+	boolean isQueueEnabled() {
+		Configuration config = AppComponents.get(Configuration.class);
+		return config.getBooleanProperty(Configuration.INGESTION_QUEUE, false);
+	}
+
+	/**
+	 * Returns the directory of the write-ahead log. This is directory
+	 * "ingestion" in the data directory. If the data directory is not
+	 * configured, this method returns null.
+	 *
+	 * @return the directory of the write-ahead log or null
+	 */
+	File getQueueDir() {
+		Configuration config = AppComponents.get(Configuration.class);
+		String dataPath = config.get(Configuration.DATA_DIR);
+		if (dataPath == null)
+			return null;
+		return new File(dataPath, "ingestion");
+	}
+
+	long getSegmentSize() {
+		return SEGMENT_SIZE;
+	}
+
+	int getRetryDelay() {
+		return RETRY_DELAY;
+	}
+
+	private List<File> listSegmentFiles(File dir) {
+		File[] files = dir.listFiles((parent, name) ->
+				name.startsWith(SEGMENT_PREFIX) &&
+				name.endsWith(SEGMENT_SUFFIX));
+		List<File> result = new ArrayList<>();
+		if (files != null)
+			result.addAll(Arrays.asList(files));
+		result.sort(Comparator.comparing(File::getName));
+		return result;
+	}
+
+	/**
+	 * Reads the entries from a segment file. If a line can't be parsed, the
+	 * server probably stopped or failed while it was written. Such an entry
+	 * was not acknowledged, so it is skipped.
+	 *
+	 * @param file the segment file
+	 * @return the entries
+	 * @throws IOException if a reading error occurs
+	 */
+	private List<Entry> readSegmentFile(File file) throws IOException {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		List<Entry> result = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty())
+					continue;
+				try {
+					result.add(Entry.fromMap(JsonMapper.parse(line,
+							new TypeReference<Map<String,Object>>() {})));
+				} catch (ParseException | ClassCastException ex) {
+					logger.warn("Skip invalid entry in write-ahead log " +
+							file.getName() + ": " + ex.getMessage());
+				}
+			}
+		}
+		return result;
+	}
+
+	private long readCheckpoint(File dir) throws IOException {
+		File file = new File(dir, CHECKPOINT_FILE);
+		if (!file.exists())
+			return 0;
+		String content = Files.readString(file.toPath(),
+				StandardCharsets.UTF_8).trim();
+		try {
+			return Long.parseLong(content);
+		} catch (NumberFormatException ex) {
+			throw new IOException("Invalid checkpoint in write-ahead log: " +
+					content);
+		}
+	}
+
+	private void writeCheckpoint(long seq) throws IOException {
+		File file = new File(walDir, CHECKPOINT_FILE);
+		File tmpFile = new File(walDir, CHECKPOINT_FILE + ".tmp");
+		try (FileOutputStream output = new FileOutputStream(tmpFile)) {
+			output.write(Long.toString(seq).getBytes(StandardCharsets.UTF_8));
+			output.getFD().sync();
+		}
+		Files.move(tmpFile.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Deletes the segments that only contain entries up to the specified
+	 * sequence number. If the active segment is full and all its entries
+	 * have been applied, it is closed and deleted as well.
+	 *
+	 * @param seq the sequence number of the last applied entry
+	 */
+	private void deleteAppliedSegments(long seq) {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		synchronized (writeLock) {
+			if (activeSegment != null && activeSegment.lastSeq <= seq &&
+					activeSegment.size >= getSegmentSize()) {
+				closeActiveSegment();
+			}
+			Iterator<Segment> it = segments.iterator();
+			while (it.hasNext()) {
+				Segment segment = it.next();
+				if (segment == activeSegment || segment.lastSeq > seq)
+					continue;
+				if (!segment.file.delete() && segment.file.exists()) {
+					logger.error("Can't delete write-ahead log segment: " +
+							segment.file.getAbsolutePath());
+					continue;
+				}
+				it.remove();
+			}
+		}
+	}
+
+	private void runApplyThread() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		// number of entries that are applied one at a time after a failure
+		int isolateCount = 0;
+		while (true) {
+			List<Entry> batch = new ArrayList<>();
+			int count = 0;
+			synchronized (LOCK) {
+				while (!closed && pending.isEmpty()) {
+					try {
+						LOCK.wait();
+					} catch (InterruptedException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+				if (closed)
+					return;
+				for (Entry entry : pending) {
+					if (!batch.isEmpty() && (isolateCount > 0 ||
+							count + entry.records.size() > MAX_APPLY_RECORDS)) {
+						break;
+					}
+					batch.add(entry);
+					count += entry.records.size();
+				}
+			}
+			try {
+				applyEntries(batch);
+			} catch (DatabaseException | IOException ex) {
+				logger.error("Failed to apply ingestion queue: " +
+						ex.getMessage(), ex);
+				// part of the batch may have been written
+				for (Entry entry : batch) {
+					entry.replay = true;
+				}
+				if (batch.size() > 1) {
+					isolateCount = batch.size();
+					wait(getRetryDelay());
+					continue;
+				}
+				Entry entry = batch.get(0);
+				if (ex instanceof DatabaseException && isDatabaseAvailable())
+					entry.attempts++;
+				if (entry.attempts < MAX_APPLY_ATTEMPTS) {
+					wait(getRetryDelay());
+					continue;
+				}
+				try {
+					writeDeadLetter(entry);
+				} catch (IOException deadEx) {
+					logger.error("Failed to write dead-letter entry: " +
+							deadEx.getMessage(), deadEx);
+					wait(getRetryDelay());
+					continue;
+				}
+				logger.error(String.format(
+						"Moved %d queued records for table %s/%s to dead-letter file after %d attempts",
+						count, entry.project, entry.table, entry.attempts));
+			}
+			if (isolateCount > 0)
+				isolateCount--;
+			long seq = batch.get(batch.size() - 1).seq;
+			synchronized (LOCK) {
+				for (int i = 0; i < batch.size(); i++) {
+					pending.removeFirst();
+				}
+				pendingRecords -= count;
+				appliedSeq = seq;
+				LOCK.notifyAll();
+			}
+			try {
+				writeCheckpoint(seq);
+			} catch (IOException ex) {
+				logger.error("Failed to write checkpoint of write-ahead log: " +
+						ex.getMessage(), ex);
+				continue;
+			}
+			deleteAppliedSegments(seq);
+		}
+	}
+
+	/**
+	 * Returns whether the database is available. This is used to distinguish
+	 * an entry that can't be written from a database that is down.
+	 *
+	 * @return true if the database is available, false otherwise
+	 */
+	boolean isDatabaseAvailable() {
+		try {
+			DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+			DatabaseConnection dbConn = openConnection();
+			try {
+				Database authDb = dbLoader.initAuthDatabase(dbConn);
+				authDb.selectOne(new UserTable(), null, null);
+			} finally {
+				dbConn.close();
+			}
+			return true;
+		} catch (DatabaseException | IOException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Appends an entry that can't be applied to the dead-letter file and
+	 * forces it to disk.
+	 *
+	 * @param entry the entry
+	 * @throws IOException if a writing error occurs
+	 */
+	private void writeDeadLetter(Entry entry) throws IOException {
+		File file = new File(walDir, DEAD_LETTER_FILE);
+		byte[] bs = (JsonMapper.generate(entry.toMap()) + "\n").getBytes(
+				StandardCharsets.UTF_8);
+		try (FileOutputStream output = new FileOutputStream(file, true)) {
+			output.write(bs);
+			output.getFD().sync();
+		}
+	}
+
+	/**
+	 * Writes the specified entries to the project databases. The records are
+	 * grouped by project, table and user, so each group is written with as
+	 * few inserts as possible.
+	 *
+	 * @param entries the entries
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if the database connection could not be opened
+	 */
+	private void applyEntries(List<Entry> entries) throws DatabaseException,
+			IOException {
+		Map<String,List<Entry>> groups = new LinkedHashMap<>();
+		for (Entry entry : entries) {
+			String key = entry.project + "/" + entry.table + "/" + entry.user;
+			groups.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+		}
+		DatabaseConnection dbConn = openConnection();
+		try {
+			for (List<Entry> group : groups.values()) {
+				applyGroup(dbConn, group);
+			}
+		} finally {
+			dbConn.close();
+		}
+	}
+
+	DatabaseConnection openConnection() throws IOException {
+		return DatabaseLoader.getInstance().openConnection();
+	}
+
+	Database initProjectDatabase(DatabaseConnection dbConn, String project)
+			throws DatabaseException {
+		return DatabaseLoader.getInstance().initProjectDatabase(dbConn,
+				project);
+	}
+
+	/**
+	 * Finds the table definition of the specified table in a project. If the
+	 * project or table does not exist, this method returns null.
+	 *
+	 * @param project the project code
+	 * @param table the table name
+	 * @return the table definition or null
+	 */
+	DatabaseTableDef<?> findTable(String project, String table) {
+		ProjectRepository projects = AppComponents.get(
+				ProjectRepository.class);
+		BaseProject baseProject = projects.findProjectByCode(project);
+		if (baseProject == null)
+			return null;
+		return baseProject.findTable(table);
+	}
+
+	private void applyGroup(DatabaseConnection dbConn, List<Entry> group)
+			throws DatabaseException {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		Entry first = group.get(0);
+		int count = 0;
+		boolean replay = false;
+		for (Entry entry : group) {
+			count += entry.records.size();
+			replay |= entry.replay;
+		}
+		DatabaseTableDef<?> table = findTable(first.project, first.table);
+		Database db = null;
+		if (table != null)
+			db = initProjectDatabase(dbConn, first.project);
+		if (db == null) {
+			logger.error(String.format(
+					"Discard %d queued records for unknown table %s/%s",
+					count, first.project, first.table));
+			return;
+		}
+		DatabaseObjectMapper mapper = new DatabaseObjectMapper();
+		List<DatabaseObject> records = new ArrayList<>();
+		for (Entry entry : group) {
+			for (Map<String,Object> map : entry.records) {
+				try {
+					records.add(mapper.mapToObject(map, table.getDataClass(),
+							true));
+				} catch (DatabaseFieldException ex) {
+					logger.error(String.format(
+							"Discard invalid queued record for table %s/%s: ",
+							first.project, first.table) + ex.getMessage());
+				}
+			}
+		}
+		if (replay)
+			records = removeExistingRecords(db, table, first.user, records);
+		for (int i = 0; i < records.size(); i += INSERT_BATCH_SIZE) {
+			db.insert(table.getName(), records.subList(i,
+					Math.min(i + INSERT_BATCH_SIZE, records.size())));
+		}
+	}
+
+	/**
+	 * Removes the records whose ID already exists in the database. This is
+	 * used for entries that may have been written before.
+	 *
+	 * @param db the project database
+	 * @param table the table
+	 * @param user the user ID or an empty string if the table is not a user
+	 * table
+	 * @param records the records
+	 * @return the records that don't exist yet
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private List<DatabaseObject> removeExistingRecords(Database db,
+			DatabaseTableDef<?> table, String user,
+			List<DatabaseObject> records) throws DatabaseException {
+		Set<String> existing = new HashSet<>();
+		for (int i = 0; i < records.size(); i += REPLAY_SELECT_SIZE) {
+			List<DatabaseObject> sub = records.subList(i,
+					Math.min(i + REPLAY_SELECT_SIZE, records.size()));
+			DatabaseCriteria[] idCriteria = new DatabaseCriteria[sub.size()];
+			for (int j = 0; j < sub.size(); j++) {
+				idCriteria[j] = new DatabaseCriteria.Equal("id",
+						sub.get(j).getId());
+			}
+			DatabaseCriteria criteria = new DatabaseCriteria.Or(idCriteria);
+			if (!user.isEmpty()) {
+				criteria = new DatabaseCriteria.And(
+						new DatabaseCriteria.Equal("user", user),
+						criteria);
+			}
+			for (DatabaseObject record : db.select(table, criteria, 0,
+					null)) {
+				existing.add(record.getId());
+			}
+		}
+		if (existing.isEmpty())
+			return records;
+		List<DatabaseObject> result = new ArrayList<>();
+		for (DatabaseObject record : records) {
+			if (!existing.contains(record.getId()))
+				result.add(record);
+		}
+		return result;
+	}
+
+	@PreDestroy
+	public void destroy() {
+		synchronized (writeLock) {
+			synchronized (LOCK) {
+				if (closed)
+					return;
+				String serviceName = getClass().getSimpleName();
+				Logger logger = AppComponents.getLogger(serviceName);
+				logger.info("Stop " + serviceName);
+				closed = true;
+				running = false;
+				LOCK.notifyAll();
+			}
+			// sync the entries that are still waiting for the flush thread
+			closeActiveSegment();
+			writeLock.notifyAll();
+		}
+	}
+
+	private static class Segment {
+		private File file;
+		private long size = 0;
+		private long lastSeq = 0;
+	}
+
+	/**
+	 * An entry in the write-ahead log. It contains the records of one insert.
+	 * The records are stored as data maps from {@link DatabaseObjectMapper
+	 * DatabaseObjectMapper} with decoded JSON values.
+	 */
+	private static class Entry {
+		private long seq;
+		private String project;
+		private String table;
+		private String user;
+		private List<Map<String,Object>> records;
+		private boolean replay = false;
+		private int attempts = 0;
+		// the fields below are synchronized with writeLock
+		private boolean synced = false;
+		private IOException syncError = null;
+
+		private Map<String,Object> toMap() {
+			Map<String,Object> map = new LinkedHashMap<>();
+			map.put("seq", seq);
+			map.put("project", project);
+			map.put("table", table);
+			map.put("user", user);
+			map.put("records", records);
+			return map;
+		}
+
+		@SuppressWarnings("unchecked")
+		private static Entry fromMap(Map<String,Object> map)
+				throws ParseException {
+			Entry entry = new Entry();
+			if (!(map.get("seq") instanceof Number seq))
+				throw new ParseException("Sequence number not found");
+			entry.seq = seq.longValue();
+			entry.project = (String)map.get("project");
+			entry.table = (String)map.get("table");
+			entry.user = (String)map.get("user");
+			entry.records = (List<Map<String,Object>>)map.get("records");
+			if (entry.project == null || entry.table == null ||
+					entry.user == null || entry.records == null) {
+				throw new ParseException("Incomplete entry");
+			}
+			return entry;
+		}
+	}
+}
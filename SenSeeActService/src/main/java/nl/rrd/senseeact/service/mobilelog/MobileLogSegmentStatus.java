@@ -0,0 +1,24 @@
+package nl.rrd.senseeact.service.mobilelog;
+
+/**
+ * The possible status values of a {@link
+ * nl.rrd.senseeact.service.model.MobileLogSegment MobileLogSegment}.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public enum MobileLogSegmentStatus {
+	/**
+	 * The segment is open and new data is appended to it.
+	 */
+	ACTIVE,
+
+	/**
+	 * The segment is closed. Its length is final.
+	 */
+	CLOSED,
+
+	/**
+	 * The segment is closed and its file has been compressed with gzip.
+	 */
+	COMPRESSED
+}
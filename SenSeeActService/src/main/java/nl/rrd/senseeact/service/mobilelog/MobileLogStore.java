@@ -0,0 +1,1067 @@
+package nl.rrd.senseeact.service.mobilelog;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.senseeact.service.Configuration;
+import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.senseeact.service.model.MobileLogSegment;
+import nl.rrd.senseeact.service.model.MobileLogSegmentTable;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.datetime.DateTimeUtils;
+import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.TaskException;
+import nl.rrd.utils.io.FileUtils;
+import nl.rrd.utils.schedule.*;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This service stores the log files that are uploaded by mobile apps. A
+ * mobile app uploads its log file for a date in chunks, where each chunk
+ * specifies its position in the log file. The data is written to
+ * append-only segment files in the directory
+ * mobilelog/{app}/{user}[/{device}] in the data directory. Each segment is
+ * registered as a {@link MobileLogSegment MobileLogSegment} in the
+ * authentication database.
+ *
+ * <p>The service keeps an index of the active segment of each log file in
+ * memory, including its length, so an upload only appends to the active
+ * segment without listing the log directory. A new segment is started in
+ * the following cases:</p>
+ *
+ * <p><ul>
+ * <li>The active segment has reached the size in {@link
+ * Configuration#MOBILE_LOG_SEGMENT_SIZE
+ * Configuration.MOBILE_LOG_SEGMENT_SIZE} (in kilobytes, default 4096).</li>
+ * <li>The upload starts after the end of the active segment. The gap is not
+ * stored. It is filled with zeros when the log is read.</li>
+ * <li>The upload starts before the end of the active segment. This means
+ * that the app started a new log file for the same date, so a new
+ * generation is started. A zip file is rewritten from the upload position,
+ * so in that case the new generation refers to the segments of the previous
+ * generation up to the upload position, without copying them.</li>
+ * </ul></p>
+ *
+ * <p>Once a day a maintenance task closes the active segments of dates
+ * before yesterday, and it deletes segments that are older than the number
+ * of days in {@link Configuration#MOBILE_LOG_RETENTION
+ * Configuration.MOBILE_LOG_RETENTION}. If that property is not set or
+ * negative, the segments are kept forever. Closed segments of plain log
+ * files are compressed with gzip by a background thread. Zip files are not
+ * compressed.</p>
+ *
+ * <p>With {@link #findSegments(Database, String, String, String, LocalDate,
+ * LocalDate, boolean) findSegments()} and {@link #writeSegments(List,
+ * OutputStream) writeSegments()} you can read the logs in a date range. Only
+ * the segments in that range are read.</p>
+ *
+ * <p>Before segments were introduced, each upload was written to a complete
+ * file {yyyyMMdd}_{index}.{log|zip} in the same directories. At the first
+ * startup these legacy files are registered as closed segments, where the
+ * index is the generation. See {@link #importLegacyFiles(Database)
+ * importLegacyFiles()}.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@Service
+public class MobileLogStore {
+	private static final int DEFAULT_SEGMENT_SIZE = 4096;
+
+	private static final DateTimeFormatter SHORT_DATE_FORMAT =
+			DateTimeFormatter.ofPattern("yyyyMMdd");
+	private static final Pattern LEGACY_FILE_PATTERN = Pattern.compile(
+			"([0-9]{8})_([0-9]{6})\\.(log|zip)");
+	private static final String LEGACY_IMPORT_MARKER = "legacy_imported";
+
+	private static final Object LOCK = new Object();
+	private boolean closed = false;
+
+	private Map<String,Stream> streams = new HashMap<>();
+	private LinkedList<MobileLogSegment> compressQueue = new LinkedList<>();
+	private String maintenanceTaskId = null;
+
+	/**
+	 * Writes data that was uploaded by a mobile app to the log file for the
+	 * specified date. This method reads the input until the end of the
+	 * stream. It does not close the input.
+	 *
+	 * @param authDb the authentication database
+	 * @param app the name of the mobile app
+	 * @param user the user ID
+	 * @param device the device ID or an empty string
+	 * @param date the date of the log file
+	 * @param zip true if the log file is a zip file, false otherwise
+	 * @param position the position in the log file where the data should be
+	 * written
+	 * @param input the input with the data
+	 * @return the number of bytes that were written
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if a reading or writing error occurs
+	 */
+	public long write(Database authDb, String app, String user, String device,
+			LocalDate date, boolean zip, long position, InputStream input)
+			throws DatabaseException, IOException {
+		String dateStr = date.format(DateTimeUtils.DATE_FORMAT);
+		while (true) {
+			Stream stream = getStream(app, user, device, dateStr, zip);
+			synchronized (stream) {
+				if (stream.removed)
+					continue;
+				if (!stream.loaded)
+					loadStream(authDb, stream);
+				prepareActiveSegment(authDb, stream, position);
+				return appendActiveSegment(stream, input);
+			}
+		}
+	}
+
+	/**
+	 * Returns the stream for the specified log file. If the stream is not in
+	 * the index yet, this method creates an empty stream and adds it to the
+	 * index. The caller should synchronize on the stream and load it if
+	 * needed.
+	 *
+	 * @param app the name of the mobile app
+	 * @param user the user ID
+	 * @param device the device ID or an empty string
+	 * @param date the date formatted as yyyy-MM-dd
+	 * @param zip true if the log file is a zip file, false otherwise
+	 * @return the stream
+	 */
+	private Stream getStream(String app, String user, String device,
+			String date, boolean zip) {
+		String key = getStreamKey(app, user, device, date, zip);
+		synchronized (LOCK) {
+			return streams.computeIfAbsent(key, k -> new Stream(key, app, user,
+					device, date, zip));
+		}
+	}
+
+	private void removeStream(Stream stream) {
+		synchronized (LOCK) {
+			if (streams.get(stream.key) == stream)
+				streams.remove(stream.key);
+		}
+		stream.removed = true;
+	}
+
+	private String getStreamKey(String app, String user, String device,
+			String date, boolean zip) {
+		return app + "/" + user + "/" + device + "/" + date + "/" +
+				(zip ? "zip" : "log");
+	}
+
+	/**
+	 * Loads the segments of the last generation of a stream from the
+	 * database. If the last segment is active, the length of the active
+	 * segment is read from the file.
+	 *
+	 * @param authDb the authentication database
+	 * @param stream the stream
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void loadStream(Database authDb, Stream stream)
+			throws DatabaseException {
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("generation", true),
+				new DatabaseSort("segment", true)
+		};
+		List<MobileLogSegment> segments = authDb.select(
+				new MobileLogSegmentTable(), getStreamCriteria(stream), 0,
+				sort);
+		stream.loaded = true;
+		if (segments.isEmpty())
+			return;
+		MobileLogSegment last = segments.get(segments.size() - 1);
+		stream.generation = last.getGeneration();
+		for (MobileLogSegment segment : segments) {
+			if (segment.getGeneration() == stream.generation)
+				stream.segments.add(segment);
+		}
+		if (last.getStatus().equals(MobileLogSegmentStatus.ACTIVE.name())) {
+			File file = new File(getLogDir(stream.app, stream.user,
+					stream.device), last.getFile());
+			stream.active = last;
+			stream.activeLength = file.length();
+			stream.end = last.getPosition() + stream.activeLength;
+		} else {
+			stream.end = last.getPosition() + last.getLength();
+		}
+	}
+
+	private DatabaseCriteria getStreamCriteria(Stream stream) {
+		return new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("user", stream.user),
+				new DatabaseCriteria.Equal("app", stream.app),
+				new DatabaseCriteria.Equal("device", stream.device),
+				new DatabaseCriteria.Equal("date", stream.date),
+				new DatabaseCriteria.Equal("zip", stream.zip ? 1 : 0)
+		);
+	}
+
+	/**
+	 * Makes sure that the stream has an active segment where data at the
+	 * specified position can be appended. If the position is at the end of
+	 * the active segment and the active segment is not full, this method
+	 * does nothing. Otherwise it closes the active segment and starts a new
+	 * one. If the position is before the end of the stream, it also starts a
+	 * new generation.
+	 *
+	 * @param authDb the authentication database
+	 * @param stream the stream
+	 * @param position the position of the data that will be written
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if the segment file can't be created
+	 */
+	private void prepareActiveSegment(Database authDb, Stream stream,
+			long position) throws DatabaseException, IOException {
+		if (stream.active != null && position == stream.end &&
+				stream.activeLength < getSegmentSize()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		closeActiveSegment(authDb, stream, now);
+		if (stream.generation < 0 || position < stream.end)
+			startGeneration(authDb, stream, position, now);
+		MobileLogSegment segment = new MobileLogSegment();
+		segment.setUser(stream.user);
+		segment.setApp(stream.app);
+		segment.setDevice(stream.device);
+		segment.setDate(stream.date);
+		segment.setZip(stream.zip);
+		segment.setGeneration(stream.generation);
+		segment.setSegment(stream.segments.size());
+		segment.setPosition(position);
+		LocalDate date = LocalDate.parse(stream.date,
+				DateTimeUtils.DATE_FORMAT);
+		segment.setFile(String.format("%s_%06d_%06d.%s",
+				date.format(SHORT_DATE_FORMAT), segment.getGeneration(),
+				segment.getSegment(), stream.zip ? "zip" : "log"));
+		segment.setCreated(now);
+		segment.setUpdated(now);
+		authDb.insert(MobileLogSegmentTable.NAME, segment);
+		File dir = getLogDir(stream.app, stream.user, stream.device);
+		FileUtils.mkdir(dir);
+		new FileOutputStream(new File(dir, segment.getFile())).close();
+		stream.segments.add(segment);
+		stream.active = segment;
+		stream.activeLength = 0;
+		stream.end = position;
+	}
+
+	/**
+	 * Starts a new generation in the specified stream. If the stream is a zip
+	 * file, the new generation starts with references to the segments of the
+	 * previous generation before the specified position.
+	 *
+	 * @param authDb the authentication database
+	 * @param stream the stream
+	 * @param position the position where the new generation is written
+	 * @param now the current time
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void startGeneration(Database authDb, Stream stream,
+			long position, long now) throws DatabaseException {
+		int generation = stream.generation + 1;
+		List<MobileLogSegment> prefix = new ArrayList<>();
+		if (stream.zip) {
+			for (MobileLogSegment segment : stream.segments) {
+				if (segment.getPosition() >= position)
+					continue;
+				MobileLogSegment ref = new MobileLogSegment();
+				ref.setUser(segment.getUser());
+				ref.setApp(segment.getApp());
+				ref.setDevice(segment.getDevice());
+				ref.setDate(segment.getDate());
+				ref.setZip(segment.isZip());
+				ref.setGeneration(generation);
+				ref.setSegment(prefix.size());
+				ref.setPosition(segment.getPosition());
+				ref.setLength(Math.min(segment.getLength(),
+						position - segment.getPosition()));
+				ref.setFile(segment.getFile());
+				ref.setStatus(segment.getStatus());
+				ref.setCreated(now);
+				ref.setUpdated(now);
+				prefix.add(ref);
+			}
+			if (!prefix.isEmpty())
+				authDb.insert(MobileLogSegmentTable.NAME, prefix);
+		}
+		stream.generation = generation;
+		stream.segments = prefix;
+	}
+
+	private void closeActiveSegment(Database authDb, Stream stream, long now)
+			throws DatabaseException {
+		if (stream.active == null)
+			return;
+		MobileLogSegment segment = stream.active;
+		segment.setLength(stream.activeLength);
+		segment.setStatus(MobileLogSegmentStatus.CLOSED.name());
+		segment.setUpdated(now);
+		authDb.update(MobileLogSegmentTable.NAME, segment);
+		stream.active = null;
+		if (!segment.isZip())
+			queueCompress(segment);
+	}
+
+	private long appendActiveSegment(Stream stream, InputStream input)
+			throws IOException {
+		File file = new File(getLogDir(stream.app, stream.user, stream.device),
+				stream.active.getFile());
+		long written = 0;
+		try (OutputStream output = new FileOutputStream(file, true)) {
+			byte[] bs = new byte[4096];
+			int read;
+			while ((read = input.read(bs)) > 0) {
+				output.write(bs, 0, read);
+				written += read;
+				stream.activeLength += read;
+				stream.end += read;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Finds the segments of the log files with a date in the specified
+	 * range. The segments are sorted by date, generation and position. For
+	 * zip files only the last generation of each date is returned, because
+	 * previous generations of a zip file are incomplete.
+	 *
+	 * @param authDb the authentication database
+	 * @param app the name of the mobile app
+	 * @param user the user ID
+	 * @param device the device ID or an empty string
+	 * @param start the start date (inclusive)
+	 * @param end the end date (inclusive)
+	 * @param zip true if you want to find zip files, false if you want to find
+	 * plain log files
+	 * @return the segments
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public List<MobileLogSegment> findSegments(Database authDb, String app,
+			String user, String device, LocalDate start, LocalDate end,
+			boolean zip) throws DatabaseException {
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("user", user),
+				new DatabaseCriteria.Equal("app", app),
+				new DatabaseCriteria.Equal("device", device),
+				new DatabaseCriteria.GreaterEqual("date",
+						start.format(DateTimeUtils.DATE_FORMAT)),
+				new DatabaseCriteria.LessEqual("date",
+						end.format(DateTimeUtils.DATE_FORMAT)),
+				new DatabaseCriteria.Equal("zip", zip ? 1 : 0)
+		);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("date", true),
+				new DatabaseSort("generation", true),
+				new DatabaseSort("segment", true)
+		};
+		List<MobileLogSegment> segments = authDb.select(
+				new MobileLogSegmentTable(), criteria, 0, sort);
+		if (!zip)
+			return segments;
+		Map<String,Integer> lastGenerations = new HashMap<>();
+		for (MobileLogSegment segment : segments) {
+			lastGenerations.put(segment.getDate(), segment.getGeneration());
+		}
+		List<MobileLogSegment> result = new ArrayList<>();
+		for (MobileLogSegment segment : segments) {
+			if (segment.getGeneration() == lastGenerations.get(
+					segment.getDate())) {
+				result.add(segment);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the data of the specified segments to the output. The segments
+	 * should have been obtained from {@link #findSegments(Database, String,
+	 * String, String, LocalDate, LocalDate, boolean) findSegments()}.
+	 * Compressed segments are decompressed while they are written. Each
+	 * generation of a date is written as one file from position 0. If a
+	 * segment starts after the end of the previous segment, the gap is
+	 * filled with zeros. Segments that have been deleted in the meantime are
+	 * skipped, so their data is also filled with zeros if another segment
+	 * follows. This method does not close the output.
+	 *
+	 * @param segments the segments
+	 * @param output the output
+	 * @throws IOException if a reading or writing error occurs
+	 */
+	public void writeSegments(List<MobileLogSegment> segments,
+			OutputStream output) throws IOException {
+		String currentFile = null;
+		long filePos = 0;
+		for (MobileLogSegment segment : segments) {
+			String fileKey = segment.getDate() + "/" + segment.getGeneration();
+			if (!fileKey.equals(currentFile)) {
+				currentFile = fileKey;
+				filePos = 0;
+			}
+			File dir = getLogDir(segment.getApp(), segment.getUser(),
+					segment.getDevice());
+			String name = segment.getFile();
+			// an active segment has no final length yet
+			long length = -1;
+			if (!segment.getStatus().equals(
+					MobileLogSegmentStatus.ACTIVE.name())) {
+				length = segment.getLength();
+			}
+			File file = new File(dir, name);
+			if (!file.exists() && !name.endsWith(".gz")) {
+				// the segment was compressed after it was found
+				name += ".gz";
+				file = new File(dir, name);
+			}
+			if (!file.exists())
+				continue;
+			if (segment.getPosition() > filePos) {
+				writeZeros(output, segment.getPosition() - filePos);
+				filePos = segment.getPosition();
+			}
+			try (InputStream input = openSegmentFile(file)) {
+				// skip data that overlaps the previous segment
+				long skip = filePos - segment.getPosition();
+				if (skip > 0) {
+					skip = copyData(input, OutputStream.nullOutputStream(),
+							length < 0 ? skip : Math.min(skip, length));
+					if (length >= 0)
+						length -= skip;
+				}
+				filePos += copyData(input, output, length);
+			}
+		}
+	}
+
+	private void writeZeros(OutputStream output, long length)
+			throws IOException {
+		byte[] bs = new byte[4096];
+		long remain = length;
+		while (remain > 0) {
+			int toWrite = (int)Math.min(remain, bs.length);
+			output.write(bs, 0, toWrite);
+			remain -= toWrite;
+		}
+	}
+
+	private InputStream openSegmentFile(File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		if (!file.getName().endsWith(".gz"))
+			return input;
+		try {
+			return new GZIPInputStream(input);
+		} catch (IOException ex) {
+			input.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Copies data from the input to the output. If "length" is negative, it
+	 * copies until the end of the input. Otherwise it copies at most "length"
+	 * bytes.
+	 *
+	 * @param input the input
+	 * @param output the output
+	 * @param length the number of bytes to copy or -1
+	 * @return the number of bytes that were copied
+	 * @throws IOException if a reading or writing error occurs
+	 */
+	private long copyData(InputStream input, OutputStream output, long length)
+			throws IOException {
+		byte[] bs = new byte[4096];
+		long copied = 0;
+		while (length < 0 || copied < length) {
+			int toRead = bs.length;
+			if (length >= 0 && length - copied < toRead)
+				toRead = (int)(length - copied);
+			int read = input.read(bs, 0, toRead);
+			if (read <= 0)
+				break;
+			output.write(bs, 0, read);
+			copied += read;
+		}
+		return copied;
+	}
+
+	/**
+	 * Returns the directory with the log files of the specified user and
+	 * device.
+	 *
+	 * @param app the name of the mobile app
+	 * @param user the user ID
+	 * @param device the device ID or an empty string
+	 * @return the log directory
+	 */
+	public File getLogDir(String app, String user, String device) {
+		File logDir = new File(getMobileLogDir(), app + File.separator +
+				user);
+		if (!device.isEmpty())
+			logDir = new File(logDir, device);
+		return logDir;
+	}
+
+	/**
+	 * Returns the root directory of the mobile logs. This is directory
+	 * "mobilelog" in the data directory.
+	 *
+	 * @return the root directory of the mobile logs
+	 */
+	File getMobileLogDir() {
+		Configuration config = AppComponents.get(Configuration.class);
+		String dataPath = config.get(Configuration.DATA_DIR);
+		if (dataPath == null) {
+			throw new RuntimeException("Configuration key \"" +
+					Configuration.DATA_DIR + "\" not found");
+		}
+		return new File(dataPath, "mobilelog");
+	}
+
+	/**
+	 * Returns the maximum size of a segment in bytes. This is read from
+	 * {@link Configuration#MOBILE_LOG_SEGMENT_SIZE
+	 * Configuration.MOBILE_LOG_SEGMENT_SIZE}, which is specified in
+	 * kilobytes.
+	 *
+	 * @return the maximum size of a segment in bytes
+	 */
+	long getSegmentSize() {
+		Configuration config = AppComponents.get(Configuration.class);
+		return config.getIntProperty(Configuration.MOBILE_LOG_SEGMENT_SIZE,
+				DEFAULT_SEGMENT_SIZE, 1) * 1024L;
+	}
+
+	/**
+	 * Returns the number of days that segments are kept. This is read from
+	 * {@link Configuration#MOBILE_LOG_RETENTION
+	 * Configuration.MOBILE_LOG_RETENTION}. If the property is not set or
+	 * negative, this method returns -1, which means that segments are kept
+	 * forever.
+	 *
+	 * @return the number of days or -1
+	 */
+	private int getRetentionDays() {
+		Configuration config = AppComponents.get(Configuration.class);
+		int days = config.getIntProperty(Configuration.MOBILE_LOG_RETENTION,
+				-1, Integer.MIN_VALUE);
+		return days < 0 ? -1 : days;
+	}
+
+	@PostConstruct
+	public void init() {
+		new Thread(this::runInit).start();
+	}
+
+	private void runInit() {
+		String serviceName = getClass().getSimpleName();
+		Logger logger = AppComponents.getLogger(serviceName);
+		logger.info("Start " + serviceName);
+		while (!closed) {
+			try {
+				runWithAuthDb(this::initDb);
+				onInitDb();
+				return;
+			} catch (DatabaseException | IOException ex) {
+				if (closed)
+					return;
+				logger.error("Database error: " + ex.getMessage());
+			}
+			wait(10000);
+			if (closed)
+				return;
+			logger.info("Retry init");
+		}
+	}
+
+	private void wait(int ms) {
+		long now = System.currentTimeMillis();
+		long end = now + ms;
+		synchronized (LOCK) {
+			while (!closed && now < end) {
+				try {
+					LOCK.wait(end - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+				now = System.currentTimeMillis();
+			}
+		}
+	}
+
+	private void initDb(Database authDb) throws DatabaseException,
+			IOException {
+		importLegacyFiles(authDb);
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("status",
+						MobileLogSegmentStatus.CLOSED.name()),
+				new DatabaseCriteria.Equal("zip", 0)
+		);
+		List<MobileLogSegment> segments = authDb.select(
+				new MobileLogSegmentTable(), criteria, 0, null);
+		for (MobileLogSegment segment : segments) {
+			queueCompress(segment);
+		}
+	}
+
+	/**
+	 * Registers the legacy log files as segments in the database, so they can
+	 * be read with {@link #findSegments(Database, String, String, String,
+	 * LocalDate, LocalDate, boolean) findSegments()}. A legacy file
+	 * {yyyyMMdd}_{index}.{log|zip} contains the complete log file of one
+	 * upload. It becomes a closed segment at position 0 in generation
+	 * "index". Plain log files are compressed after the import.
+	 *
+	 * <p>The import runs once. When it has completed, this method writes a
+	 * marker file in the mobile log directory. If the import is interrupted,
+	 * it is run again at the next startup and it skips files that have
+	 * already been registered. If segments have been written for a log file
+	 * before its legacy files were imported, the legacy files are not
+	 * imported, because their generations would conflict.</p>
+	 *
+	 * @param authDb the authentication database
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if the marker file can't be written
+	 */
+	void importLegacyFiles(Database authDb) throws DatabaseException,
+			IOException {
+		File rootDir = getMobileLogDir();
+		File marker = new File(rootDir, LEGACY_IMPORT_MARKER);
+		if (marker.exists() || !rootDir.isDirectory())
+			return;
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		logger.info("Start import of legacy mobile log files");
+		int count = 0;
+		for (File appDir : listDirs(rootDir)) {
+			for (File userDir : listDirs(appDir)) {
+				count += importLegacyFiles(authDb, appDir.getName(),
+						userDir.getName(), "");
+				for (File deviceDir : listDirs(userDir)) {
+					count += importLegacyFiles(authDb, appDir.getName(),
+							userDir.getName(), deviceDir.getName());
+				}
+			}
+		}
+		new FileOutputStream(marker).close();
+		logger.info("Imported {} legacy mobile log files", count);
+	}
+
+	private List<File> listDirs(File dir) {
+		File[] children = dir.listFiles(File::isDirectory);
+		if (children == null)
+			return new ArrayList<>();
+		return Arrays.asList(children);
+	}
+
+	/**
+	 * Registers the legacy log files in the directory of the specified app,
+	 * user and device. See {@link #importLegacyFiles(Database)
+	 * importLegacyFiles()}.
+	 *
+	 * @param authDb the authentication database
+	 * @param app the name of the mobile app
+	 * @param user the user ID
+	 * @param device the device ID or an empty string
+	 * @return the number of files that were imported
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private int importLegacyFiles(Database authDb, String app, String user,
+			String device) throws DatabaseException {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		File dir = getLogDir(app, user, device);
+		File[] files = dir.listFiles(File::isFile);
+		if (files == null)
+			return 0;
+		Map<String,List<File>> streamFiles = new LinkedHashMap<>();
+		for (File file : files) {
+			Matcher m = LEGACY_FILE_PATTERN.matcher(file.getName());
+			if (!m.matches())
+				continue;
+			LocalDate date;
+			try {
+				date = LocalDate.parse(m.group(1), SHORT_DATE_FORMAT);
+			} catch (DateTimeParseException ex) {
+				continue;
+			}
+			String key = getStreamKey(app, user, device,
+					date.format(DateTimeUtils.DATE_FORMAT),
+					m.group(3).equals("zip"));
+			streamFiles.computeIfAbsent(key, k -> new ArrayList<>())
+					.add(file);
+		}
+		int count = 0;
+		for (List<File> keyFiles : streamFiles.values()) {
+			Matcher m = LEGACY_FILE_PATTERN.matcher(keyFiles.get(0).getName());
+			m.matches();
+			String date = LocalDate.parse(m.group(1), SHORT_DATE_FORMAT)
+					.format(DateTimeUtils.DATE_FORMAT);
+			Stream stream = getStream(app, user, device, date,
+					m.group(3).equals("zip"));
+			synchronized (stream) {
+				int streamCount = importLegacyStream(authDb, stream, keyFiles);
+				if (streamCount < 0) {
+					logger.warn("Skip import of legacy mobile log files in " +
+							dir.getAbsolutePath() + " for date " + date +
+							", because the log file already has new segments");
+				} else {
+					count += streamCount;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Registers legacy log files of one stream. The caller should be
+	 * synchronized on the stream. If the stream already has segments that are
+	 * not legacy files, this method returns -1. Otherwise it registers the
+	 * files that are not registered yet and removes the stream from the
+	 * index, so it is loaded again at the next write.
+	 *
+	 * @param authDb the authentication database
+	 * @param stream the stream
+	 * @param files the legacy files
+	 * @return the number of files that were imported or -1
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private int importLegacyStream(Database authDb, Stream stream,
+			List<File> files) throws DatabaseException {
+		List<MobileLogSegment> existing = authDb.select(
+				new MobileLogSegmentTable(), getStreamCriteria(stream), 0,
+				null);
+		Set<String> registered = new HashSet<>();
+		for (MobileLogSegment segment : existing) {
+			String file = segment.getFile();
+			if (file.endsWith(".gz"))
+				file = file.substring(0, file.length() - 3);
+			if (!LEGACY_FILE_PATTERN.matcher(file).matches())
+				return -1;
+			registered.add(file);
+		}
+		long now = System.currentTimeMillis();
+		List<MobileLogSegment> segments = new ArrayList<>();
+		for (File file : files) {
+			if (registered.contains(file.getName()))
+				continue;
+			Matcher m = LEGACY_FILE_PATTERN.matcher(file.getName());
+			m.matches();
+			MobileLogSegment segment = new MobileLogSegment();
+			segment.setUser(stream.user);
+			segment.setApp(stream.app);
+			segment.setDevice(stream.device);
+			segment.setDate(stream.date);
+			segment.setZip(stream.zip);
+			segment.setGeneration(Integer.parseInt(m.group(2)));
+			segment.setSegment(0);
+			segment.setPosition(0);
+			segment.setLength(file.length());
+			segment.setFile(file.getName());
+			segment.setStatus(MobileLogSegmentStatus.CLOSED.name());
+			segment.setCreated(now);
+			segment.setUpdated(now);
+			segments.add(segment);
+		}
+		if (!segments.isEmpty())
+			authDb.insert(MobileLogSegmentTable.NAME, segments);
+		removeStream(stream);
+		return segments.size();
+	}
+
+	private void onInitDb() {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+			new Thread(this::runCompressThread, getClass().getSimpleName() +
+					"-compress").start();
+			TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
+			maintenanceTaskId = scheduler.generateTaskId();
+			scheduler.scheduleTask(null, new MaintenanceTask(),
+					maintenanceTaskId);
+			logger.info("Init completed");
+		}
+	}
+
+	private void queueCompress(MobileLogSegment segment) {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			compressQueue.add(segment);
+			LOCK.notifyAll();
+		}
+	}
+
+	private void runCompressThread() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		while (true) {
+			MobileLogSegment segment;
+			synchronized (LOCK) {
+				while (!closed && compressQueue.isEmpty()) {
+					try {
+						LOCK.wait();
+					} catch (InterruptedException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+				if (closed)
+					return;
+				segment = compressQueue.removeFirst();
+			}
+			try {
+				compressSegment(segment);
+			} catch (DatabaseException | IOException ex) {
+				logger.error("Failed to compress mobile log segment " +
+						segment.getFile() + ": " + ex.getMessage(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Compresses the file of a closed segment with gzip. The compressed file
+	 * gets extension .gz. After the segment has been updated in the
+	 * database, the original file is deleted. If the segment has been
+	 * deleted in the meantime, the compressed file is deleted as well.
+	 *
+	 * @param segment the segment
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if a reading or writing error occurs
+	 */
+	void compressSegment(MobileLogSegment segment)
+			throws DatabaseException, IOException {
+		File dir = getLogDir(segment.getApp(), segment.getUser(),
+				segment.getDevice());
+		File file = new File(dir, segment.getFile());
+		if (!file.exists())
+			return;
+		String gzName = segment.getFile() + ".gz";
+		File gzFile = new File(dir, gzName);
+		File tmpFile = new File(dir, gzName + ".tmp");
+		try (InputStream input = new FileInputStream(file)) {
+			try (OutputStream output = new GZIPOutputStream(
+					new FileOutputStream(tmpFile))) {
+				copyData(input, output, -1);
+			}
+		}
+		if (!tmpFile.renameTo(gzFile)) {
+			throw new IOException("Failed to rename " +
+					tmpFile.getAbsolutePath() + " to " + gzFile.getName());
+		}
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("user", segment.getUser()),
+				new DatabaseCriteria.Equal("app", segment.getApp()),
+				new DatabaseCriteria.Equal("device", segment.getDevice()),
+				new DatabaseCriteria.Equal("file", segment.getFile())
+		);
+		Map<String,Object> values = new LinkedHashMap<>();
+		values.put("file", gzName);
+		values.put("status", MobileLogSegmentStatus.COMPRESSED.name());
+		values.put("updated", System.currentTimeMillis());
+		boolean[] exists = new boolean[1];
+		runWithAuthDb(authDb -> {
+			MobileLogSegmentTable table = new MobileLogSegmentTable();
+			exists[0] = authDb.selectOne(table, criteria, null) != null;
+			if (exists[0])
+				authDb.update(table, criteria, values);
+		});
+		if (!exists[0])
+			gzFile.delete();
+		file.delete();
+	}
+
+	/**
+	 * Runs the daily maintenance. It closes the active segments of dates
+	 * before yesterday and removes their streams from the index. Then it
+	 * deletes the segments that are older than the retention period.
+	 */
+	private void runMaintenance() {
+		String logtag = getClass().getSimpleName();
+		Logger logger = AppComponents.getLogger(logtag);
+		logger.info("Start mobile log maintenance");
+		try {
+			runWithAuthDb(authDb -> {
+				closeOldSegments(authDb);
+				deleteExpiredSegments(authDb);
+			});
+		} catch (DatabaseException | IOException ex) {
+			logger.error("Database error: " + ex.getMessage(), ex);
+		}
+	}
+
+	private void closeOldSegments(Database authDb) throws DatabaseException {
+		String minDate = LocalDate.now().minusDays(1).format(
+				DateTimeUtils.DATE_FORMAT);
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("status",
+						MobileLogSegmentStatus.ACTIVE.name()),
+				new DatabaseCriteria.LessThan("date", minDate)
+		);
+		List<MobileLogSegment> segments = authDb.select(
+				new MobileLogSegmentTable(), criteria, 0, null);
+		long now = System.currentTimeMillis();
+		for (MobileLogSegment segment : segments) {
+			Stream stream = getStream(segment.getApp(), segment.getUser(),
+					segment.getDevice(), segment.getDate(), segment.isZip());
+			synchronized (stream) {
+				File file = new File(getLogDir(segment.getApp(),
+						segment.getUser(), segment.getDevice()),
+						segment.getFile());
+				segment.setLength(file.length());
+				segment.setStatus(MobileLogSegmentStatus.CLOSED.name());
+				segment.setUpdated(now);
+				authDb.update(MobileLogSegmentTable.NAME, segment);
+				if (!segment.isZip())
+					queueCompress(segment);
+				removeStream(stream);
+			}
+		}
+	}
+
+	private void deleteExpiredSegments(Database authDb)
+			throws DatabaseException {
+		int retention = getRetentionDays();
+		if (retention < 0)
+			return;
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		String minDate = LocalDate.now().minusDays(retention).format(
+				DateTimeUtils.DATE_FORMAT);
+		MobileLogSegmentTable table = new MobileLogSegmentTable();
+		List<MobileLogSegment> segments = authDb.select(table,
+				new DatabaseCriteria.LessThan("date", minDate), 0, null);
+		Map<String,List<MobileLogSegment>> streamSegments =
+				new LinkedHashMap<>();
+		for (MobileLogSegment segment : segments) {
+			String key = getStreamKey(segment.getApp(), segment.getUser(),
+					segment.getDevice(), segment.getDate(), segment.isZip());
+			streamSegments.computeIfAbsent(key, k -> new ArrayList<>())
+					.add(segment);
+		}
+		for (List<MobileLogSegment> keySegments : streamSegments.values()) {
+			MobileLogSegment first = keySegments.get(0);
+			Stream stream = getStream(first.getApp(), first.getUser(),
+					first.getDevice(), first.getDate(), first.isZip());
+			synchronized (stream) {
+				authDb.delete(table, getStreamCriteria(stream));
+				removeStream(stream);
+				File dir = getLogDir(stream.app, stream.user, stream.device);
+				for (MobileLogSegment segment : keySegments) {
+					new File(dir, segment.getFile()).delete();
+				}
+			}
+		}
+		logger.info(String.format(
+				"Deleted %d mobile log segments before %s",
+				segments.size(), minDate));
+	}
+
+	void runWithAuthDb(DatabaseRunner runner) throws DatabaseException,
+			IOException {
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			Database authDb = dbLoader.initAuthDatabase(dbConn);
+			runner.run(authDb);
+		} finally {
+			dbConn.close();
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			String serviceName = getClass().getSimpleName();
+			Logger logger = AppComponents.getLogger(serviceName);
+			logger.info("Stop " + serviceName);
+			closed = true;
+			compressQueue.clear();
+			if (maintenanceTaskId != null) {
+				TaskScheduler scheduler = AppComponents.get(
+						TaskScheduler.class);
+				scheduler.cancelTask(null, maintenanceTaskId);
+				maintenanceTaskId = null;
+			}
+			LOCK.notifyAll();
+		}
+	}
+
+	interface DatabaseRunner {
+		void run(Database db) throws DatabaseException, IOException;
+	}
+
+	/**
+	 * The index of one log file, identified by app, user, device, date and
+	 * extension. It contains the segments of the last generation and the
+	 * active segment with its current length.
+	 */
+	private static class Stream {
+		private final String key;
+		private final String app;
+		private final String user;
+		private final String device;
+		private final String date;
+		private final boolean zip;
+
+		private boolean loaded = false;
+		private boolean removed = false;
+		private int generation = -1;
+		private List<MobileLogSegment> segments = new ArrayList<>();
+		private MobileLogSegment active = null;
+		private long activeLength = 0;
+		private long end = 0;
+
+		private Stream(String key, String app, String user, String device,
+				String date, boolean zip) {
+			this.key = key;
+			this.app = app;
+			this.user = user;
+			this.device = device;
+			this.date = date;
+			this.zip = zip;
+		}
+	}
+
+	private class MaintenanceTask extends AbstractScheduledTask {
+		public MaintenanceTask() {
+			LocalDate today = LocalDate.now().minusDays(1);
+			Random random = new Random();
+			int second = random.nextInt(86400);
+			LocalTime time = LocalTime.ofSecondOfDay(second);
+			TaskSchedule.TimeSchedule schedule = new TaskSchedule.TimeSchedule(
+					today, time);
+			schedule.setRepeatDate(new DateDuration(1, DateUnit.DAY));
+			setSchedule(schedule);
+		}
+
+		@Override
+		public String getName() {
+			return MobileLogStore.class.getSimpleName() + "." +
+					getClass().getSimpleName();
+		}
+
+		@Override
+		public void run(Object context, String taskId, ZonedDateTime now,
+				ScheduleParams scheduleParams) throws TaskException {
+			runMaintenance();
+		}
+	}
+}
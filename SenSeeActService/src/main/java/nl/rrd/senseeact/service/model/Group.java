@@ -27,7 +27,7 @@ import java.util.List;
  * @author Dennis Hofs (RRD)
  */
 public class Group extends BaseDatabaseObject {
-	@DatabaseField(value=DatabaseType.STRING)
+	@DatabaseField(value=DatabaseType.STRING, index=true)
 	private String name;
 	
 	public String getName() {
@@ -1,13 +1,14 @@
 package nl.rrd.senseeact.service.model;
 
 import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseIndex;
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.senseeact.dao.DatabaseTableDef;
 
 public class GroupTable extends DatabaseTableDef<Group> {
 	public static String NAME = "group";
 	
-	private static int VERSION = 0;
+	private static int VERSION = 1;
 
 	public GroupTable() {
 		super(NAME, Group.class, VERSION, false);
@@ -16,6 +17,15 @@ public class GroupTable extends DatabaseTableDef<Group> {
 	@Override
 	public int upgradeTable(int version, Database db, String physTable)
 			throws DatabaseException {
-		return 0;
+		if (version == 0)
+			return upgradeTableV0(db, physTable);
+		else
+			return 1;
+	}
+
+	private int upgradeTableV0(Database db, String physTable)
+			throws DatabaseException {
+		db.createIndex(physTable, new DatabaseIndex("name", "name"));
+		return 1;
 	}
 }
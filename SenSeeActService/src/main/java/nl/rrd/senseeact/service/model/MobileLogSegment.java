@@ -0,0 +1,318 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+import nl.rrd.senseeact.service.mobilelog.MobileLogSegmentStatus;
+
+/**
+ * A segment of a mobile log file. A mobile app uploads its log file for a
+ * date in chunks, where each chunk specifies its position in the log file.
+ * The server stores the uploaded data in append-only segment files, which
+ * are managed by the {@link nl.rrd.senseeact.service.mobilelog.MobileLogStore
+ * MobileLogStore}.
+ *
+ * <p>If the app starts a new log file for the same date, it uploads data at
+ * a position before the end of the previous file. The server then starts a
+ * new generation. Each segment belongs to one generation and contains the
+ * data from "position" to "position + length" in the log file of that
+ * generation.</p>
+ *
+ * <p>A zip file may be rewritten from some position. In that case the new
+ * generation starts with segments that refer to the files of the previous
+ * generation, with a length that is clipped to the rewrite position. The
+ * length is always the number of bytes to read from the start of the
+ * (uncompressed) file.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class MobileLogSegment extends BaseDatabaseObject {
+	@DatabaseField(value=DatabaseType.STRING)
+	private String user;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String app;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String device = "";
+
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String date;
+
+	@DatabaseField(value=DatabaseType.BYTE)
+	private boolean zip = false;
+
+	@DatabaseField(value=DatabaseType.INT)
+	private int generation = 0;
+
+	@DatabaseField(value=DatabaseType.INT)
+	private int segment = 0;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long position = 0;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long length = 0;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String file;
+
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String status = MobileLogSegmentStatus.ACTIVE.name();
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long created;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long updated;
+
+	/**
+	 * Returns the user ID of the user who uploaded the log.
+	 *
+	 * @return the user ID
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Sets the user ID of the user who uploaded the log.
+	 *
+	 * @param user the user ID
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Returns the name of the mobile app.
+	 *
+	 * @return the name of the mobile app
+	 */
+	public String getApp() {
+		return app;
+	}
+
+	/**
+	 * Sets the name of the mobile app.
+	 *
+	 * @param app the name of the mobile app
+	 */
+	public void setApp(String app) {
+		this.app = app;
+	}
+
+	/**
+	 * Returns the device ID. If the app did not specify a device ID, this is
+	 * an empty string.
+	 *
+	 * @return the device ID or an empty string
+	 */
+	public String getDevice() {
+		return device;
+	}
+
+	/**
+	 * Sets the device ID. If the app did not specify a device ID, this should
+	 * be an empty string.
+	 *
+	 * @param device the device ID or an empty string
+	 */
+	public void setDevice(String device) {
+		this.device = device;
+	}
+
+	/**
+	 * Returns the date of the log file, formatted as yyyy-MM-dd.
+	 *
+	 * @return the date of the log file
+	 */
+	public String getDate() {
+		return date;
+	}
+
+	/**
+	 * Sets the date of the log file, formatted as yyyy-MM-dd.
+	 *
+	 * @param date the date of the log file
+	 */
+	public void setDate(String date) {
+		this.date = date;
+	}
+
+	/**
+	 * Returns whether the log file is a zip file.
+	 *
+	 * @return true if the log file is a zip file, false otherwise
+	 */
+	public boolean isZip() {
+		return zip;
+	}
+
+	/**
+	 * Sets whether the log file is a zip file.
+	 *
+	 * @param zip true if the log file is a zip file, false otherwise
+	 */
+	public void setZip(boolean zip) {
+		this.zip = zip;
+	}
+
+	/**
+	 * Returns the generation of the log file. This is increased when the app
+	 * starts a new log file for the same date.
+	 *
+	 * @return the generation
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Sets the generation of the log file. This is increased when the app
+	 * starts a new log file for the same date.
+	 *
+	 * @param generation the generation
+	 */
+	public void setGeneration(int generation) {
+		this.generation = generation;
+	}
+
+	/**
+	 * Returns the index of the segment within its generation.
+	 *
+	 * @return the index of the segment
+	 */
+	public int getSegment() {
+		return segment;
+	}
+
+	/**
+	 * Sets the index of the segment within its generation.
+	 *
+	 * @param segment the index of the segment
+	 */
+	public void setSegment(int segment) {
+		this.segment = segment;
+	}
+
+	/**
+	 * Returns the position in the log file where the data of this segment
+	 * starts.
+	 *
+	 * @return the position in the log file
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Sets the position in the log file where the data of this segment
+	 * starts.
+	 *
+	 * @param position the position in the log file
+	 */
+	public void setPosition(long position) {
+		this.position = position;
+	}
+
+	/**
+	 * Returns the number of bytes of this segment. If the segment is active,
+	 * this may be behind the length of the file.
+	 *
+	 * @return the number of bytes
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Sets the number of bytes of this segment. If the segment is active,
+	 * this may be behind the length of the file.
+	 *
+	 * @param length the number of bytes
+	 */
+	public void setLength(long length) {
+		this.length = length;
+	}
+
+	/**
+	 * Returns the name of the segment file in the log directory of the user
+	 * and device.
+	 *
+	 * @return the file name
+	 */
+	public String getFile() {
+		return file;
+	}
+
+	/**
+	 * Sets the name of the segment file in the log directory of the user and
+	 * device.
+	 *
+	 * @param file the file name
+	 */
+	public void setFile(String file) {
+		this.file = file;
+	}
+
+	/**
+	 * Returns the status. This should be the name of a {@link
+	 * MobileLogSegmentStatus MobileLogSegmentStatus}.
+	 *
+	 * @return the status
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * Sets the status. This should be the name of a {@link
+	 * MobileLogSegmentStatus MobileLogSegmentStatus}.
+	 *
+	 * @param status the status
+	 */
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	/**
+	 * Returns the time when the segment was created, as a unix time in
+	 * milliseconds.
+	 *
+	 * @return the time when the segment was created
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * Sets the time when the segment was created, as a unix time in
+	 * milliseconds.
+	 *
+	 * @param created the time when the segment was created
+	 */
+	public void setCreated(long created) {
+		this.created = created;
+	}
+
+	/**
+	 * Returns the time when the segment was last updated, as a unix time in
+	 * milliseconds.
+	 *
+	 * @return the time when the segment was last updated
+	 */
+	public long getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * Sets the time when the segment was last updated, as a unix time in
+	 * milliseconds.
+	 *
+	 * @param updated the time when the segment was last updated
+	 */
+	public void setUpdated(long updated) {
+		this.updated = updated;
+	}
+}
@@ -0,0 +1,24 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseIndex;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+public class MobileLogSegmentTable extends DatabaseTableDef<MobileLogSegment> {
+	public static final String NAME = "mobile_log_segments";
+
+	private static final int VERSION = 0;
+
+	public MobileLogSegmentTable() {
+		super(NAME, MobileLogSegment.class, VERSION, false);
+		addCompoundIndex(new DatabaseIndex("userDevice", "user", "app",
+				"device", "date"));
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
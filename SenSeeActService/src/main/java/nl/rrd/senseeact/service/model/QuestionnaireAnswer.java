@@ -0,0 +1,240 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+
+/**
+ * A single answer value from a {@link
+ * nl.rrd.senseeact.client.model.questionnaire.QuestionnaireData
+ * QuestionnaireData} record. Each record contains a list of questions and
+ * each question has a map with data keys and values. This object has one
+ * value of one data key. If the value is a list, each item is stored as a
+ * separate object.
+ *
+ * <p>The objects are derived from the questionnaire data in the project
+ * databases and stored in the authentication database by the {@link
+ * nl.rrd.senseeact.service.questionnaire.QuestionnaireAnswerProjection
+ * QuestionnaireAnswerProjection}. They allow queries on answer values across
+ * users.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class QuestionnaireAnswer extends BaseDatabaseObject {
+	@DatabaseField(value=DatabaseType.STRING)
+	private String project;
+
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String user;
+
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String recordId;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String questionnaireId;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String questionId;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String dataKey;
+
+	@DatabaseField(value=DatabaseType.DOUBLE)
+	private Double numValue = null;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String strValue = null;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long utcTime;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String localTime;
+
+	/**
+	 * Returns the project code.
+	 *
+	 * @return the project code
+	 */
+	public String getProject() {
+		return project;
+	}
+
+	/**
+	 * Sets the project code.
+	 *
+	 * @param project the project code
+	 */
+	public void setProject(String project) {
+		this.project = project;
+	}
+
+	/**
+	 * Returns the user ID of the user who filled in the questionnaire.
+	 *
+	 * @return the user ID
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Sets the user ID of the user who filled in the questionnaire.
+	 *
+	 * @param user the user ID
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Returns the ID of the questionnaire data record in the project
+	 * database.
+	 *
+	 * @return the record ID
+	 */
+	public String getRecordId() {
+		return recordId;
+	}
+
+	/**
+	 * Sets the ID of the questionnaire data record in the project database.
+	 *
+	 * @param recordId the record ID
+	 */
+	public void setRecordId(String recordId) {
+		this.recordId = recordId;
+	}
+
+	/**
+	 * Returns the questionnaire ID.
+	 *
+	 * @return the questionnaire ID
+	 */
+	public String getQuestionnaireId() {
+		return questionnaireId;
+	}
+
+	/**
+	 * Sets the questionnaire ID.
+	 *
+	 * @param questionnaireId the questionnaire ID
+	 */
+	public void setQuestionnaireId(String questionnaireId) {
+		this.questionnaireId = questionnaireId;
+	}
+
+	/**
+	 * Returns the question ID.
+	 *
+	 * @return the question ID
+	 */
+	public String getQuestionId() {
+		return questionId;
+	}
+
+	/**
+	 * Sets the question ID.
+	 *
+	 * @param questionId the question ID
+	 */
+	public void setQuestionId(String questionId) {
+		this.questionId = questionId;
+	}
+
+	/**
+	 * Returns the key in the data map of the question.
+	 *
+	 * @return the data key
+	 */
+	public String getDataKey() {
+		return dataKey;
+	}
+
+	/**
+	 * Sets the key in the data map of the question.
+	 *
+	 * @param dataKey the data key
+	 */
+	public void setDataKey(String dataKey) {
+		this.dataKey = dataKey;
+	}
+
+	/**
+	 * Returns the numeric value. If the value is not a number or a numeric
+	 * string, this is null.
+	 *
+	 * @return the numeric value or null
+	 */
+	public Double getNumValue() {
+		return numValue;
+	}
+
+	/**
+	 * Sets the numeric value. If the value is not a number or a numeric
+	 * string, this should be null.
+	 *
+	 * @param numValue the numeric value or null
+	 */
+	public void setNumValue(Double numValue) {
+		this.numValue = numValue;
+	}
+
+	/**
+	 * Returns the value as a string. If the value is null, this is null.
+	 *
+	 * @return the string value or null
+	 */
+	public String getStrValue() {
+		return strValue;
+	}
+
+	/**
+	 * Sets the value as a string. If the value is null, this should be null.
+	 *
+	 * @param strValue the string value or null
+	 */
+	public void setStrValue(String strValue) {
+		this.strValue = strValue;
+	}
+
+	/**
+	 * Returns the time of the questionnaire data record as a unix time in
+	 * milliseconds.
+	 *
+	 * @return the time of the record
+	 */
+	public long getUtcTime() {
+		return utcTime;
+	}
+
+	/**
+	 * Sets the time of the questionnaire data record as a unix time in
+	 * milliseconds.
+	 *
+	 * @param utcTime the time of the record
+	 */
+	public void setUtcTime(long utcTime) {
+		this.utcTime = utcTime;
+	}
+
+	/**
+	 * Returns the local time of the questionnaire data record, formatted as
+	 * yyyy-MM-dd'T'HH:mm:ss.SSS.
+	 *
+	 * @return the local time of the record
+	 */
+	public String getLocalTime() {
+		return localTime;
+	}
+
+	/**
+	 * Sets the local time of the questionnaire data record, formatted as
+	 * yyyy-MM-dd'T'HH:mm:ss.SSS.
+	 *
+	 * @param localTime the local time of the record
+	 */
+	public void setLocalTime(String localTime) {
+		this.localTime = localTime;
+	}
+}
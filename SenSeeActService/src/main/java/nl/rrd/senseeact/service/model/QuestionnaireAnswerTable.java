@@ -0,0 +1,29 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseIndex;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+public class QuestionnaireAnswerTable
+		extends DatabaseTableDef<QuestionnaireAnswer> {
+	public static final String NAME = "qn_answers";
+
+	private static final int VERSION = 0;
+
+	public QuestionnaireAnswerTable() {
+		super(NAME, QuestionnaireAnswer.class, VERSION, false);
+		addCompoundIndex(new DatabaseIndex("questionNumValue",
+				"project", "questionnaireId", "questionId", "numValue"));
+		addCompoundIndex(new DatabaseIndex("questionStrValue",
+				"project", "questionnaireId", "questionId", "strValue"));
+		addCompoundIndex(new DatabaseIndex("questionTime",
+				"project", "questionnaireId", "questionId", "utcTime"));
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
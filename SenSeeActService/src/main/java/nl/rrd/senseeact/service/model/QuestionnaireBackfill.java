@@ -0,0 +1,60 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+
+/**
+ * A marker that the {@link
+ * nl.rrd.senseeact.service.questionnaire.QuestionnaireAnswerProjection
+ * QuestionnaireAnswerProjection} completed the initial build of the
+ * {@link QuestionnaireAnswer QuestionnaireAnswer}s of a project. Projects
+ * without a marker are built at startup.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class QuestionnaireBackfill extends BaseDatabaseObject {
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String project;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long utcTime;
+
+	/**
+	 * Returns the project code.
+	 *
+	 * @return the project code
+	 */
+	public String getProject() {
+		return project;
+	}
+
+	/**
+	 * Sets the project code.
+	 *
+	 * @param project the project code
+	 */
+	public void setProject(String project) {
+		this.project = project;
+	}
+
+	/**
+	 * Returns the time when the build was completed as a unix time in
+	 * milliseconds.
+	 *
+	 * @return the time when the build was completed
+	 */
+	public long getUtcTime() {
+		return utcTime;
+	}
+
+	/**
+	 * Sets the time when the build was completed as a unix time in
+	 * milliseconds.
+	 *
+	 * @param utcTime the time when the build was completed
+	 */
+	public void setUtcTime(long utcTime) {
+		this.utcTime = utcTime;
+	}
+}
@@ -0,0 +1,22 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+public class QuestionnaireBackfillTable
+		extends DatabaseTableDef<QuestionnaireBackfill> {
+	public static final String NAME = "qn_backfills";
+
+	private static final int VERSION = 0;
+
+	public QuestionnaireBackfillTable() {
+		super(NAME, QuestionnaireBackfill.class, VERSION, false);
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
@@ -0,0 +1,195 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+
+/**
+ * An occurrence of a questionnaire schedule. The occurrences are computed
+ * from the {@link
+ * nl.rrd.senseeact.client.model.questionnaire.QuestionnaireSchedulesRecord
+ * QuestionnaireSchedulesRecord}s in the project databases and stored in the
+ * authentication database by the {@link
+ * nl.rrd.senseeact.service.scheduled.QuestionnaireOccurrenceIndex
+ * QuestionnaireOccurrenceIndex}.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class QuestionnaireOccurrence extends BaseDatabaseObject {
+	@DatabaseField(value=DatabaseType.STRING)
+	private String project;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String questionnaire;
+
+	@DatabaseField(value=DatabaseType.INT)
+	private int schedule;
+
+	@DatabaseField(value=DatabaseType.LONG, index=true)
+	private long utcTime;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String localTime;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String timezone;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long endUtcTime = 0;
+
+	@DatabaseField(value=DatabaseType.LONG, index=true)
+	private long notifyUtcTime = 0;
+
+	/**
+	 * Returns the project code.
+	 *
+	 * @return the project code
+	 */
+	public String getProject() {
+		return project;
+	}
+
+	/**
+	 * Sets the project code.
+	 *
+	 * @param project the project code
+	 */
+	public void setProject(String project) {
+		this.project = project;
+	}
+
+	/**
+	 * Returns the name of the questionnaire.
+	 *
+	 * @return the name of the questionnaire
+	 */
+	public String getQuestionnaire() {
+		return questionnaire;
+	}
+
+	/**
+	 * Sets the name of the questionnaire.
+	 *
+	 * @param questionnaire the name of the questionnaire
+	 */
+	public void setQuestionnaire(String questionnaire) {
+		this.questionnaire = questionnaire;
+	}
+
+	/**
+	 * Returns the index of the schedule in the schedules record.
+	 *
+	 * @return the index of the schedule
+	 */
+	public int getSchedule() {
+		return schedule;
+	}
+
+	/**
+	 * Sets the index of the schedule in the schedules record.
+	 *
+	 * @param schedule the index of the schedule
+	 */
+	public void setSchedule(int schedule) {
+		this.schedule = schedule;
+	}
+
+	/**
+	 * Returns the start time of the occurrence as a unix time in
+	 * milliseconds.
+	 *
+	 * @return the start time
+	 */
+	public long getUtcTime() {
+		return utcTime;
+	}
+
+	/**
+	 * Sets the start time of the occurrence as a unix time in milliseconds.
+	 *
+	 * @param utcTime the start time
+	 */
+	public void setUtcTime(long utcTime) {
+		this.utcTime = utcTime;
+	}
+
+	/**
+	 * Returns the local start time of the occurrence, formatted as
+	 * yyyy-MM-dd'T'HH:mm:ss.SSS.
+	 *
+	 * @return the local start time
+	 */
+	public String getLocalTime() {
+		return localTime;
+	}
+
+	/**
+	 * Sets the local start time of the occurrence, formatted as
+	 * yyyy-MM-dd'T'HH:mm:ss.SSS.
+	 *
+	 * @param localTime the local start time
+	 */
+	public void setLocalTime(String localTime) {
+		this.localTime = localTime;
+	}
+
+	/**
+	 * Returns the time zone of the schedules record, which was used to
+	 * convert the local time to the UTC time.
+	 *
+	 * @return the time zone
+	 */
+	public String getTimezone() {
+		return timezone;
+	}
+
+	/**
+	 * Sets the time zone of the schedules record, which was used to convert
+	 * the local time to the UTC time.
+	 *
+	 * @param timezone the time zone
+	 */
+	public void setTimezone(String timezone) {
+		this.timezone = timezone;
+	}
+
+	/**
+	 * Returns the end time of the occurrence as a unix time in milliseconds.
+	 * If the schedule has no duration, this is 0.
+	 *
+	 * @return the end time or 0
+	 */
+	public long getEndUtcTime() {
+		return endUtcTime;
+	}
+
+	/**
+	 * Sets the end time of the occurrence as a unix time in milliseconds. If
+	 * the schedule has no duration, this is 0.
+	 *
+	 * @param endUtcTime the end time or 0
+	 */
+	public void setEndUtcTime(long endUtcTime) {
+		this.endUtcTime = endUtcTime;
+	}
+
+	/**
+	 * Returns the time when a notification should be sent, as a unix time in
+	 * milliseconds. If no notification should be sent, this is 0.
+	 *
+	 * @return the notification time or 0
+	 */
+	public long getNotifyUtcTime() {
+		return notifyUtcTime;
+	}
+
+	/**
+	 * Sets the time when a notification should be sent, as a unix time in
+	 * milliseconds. If no notification should be sent, this is 0.
+	 *
+	 * @param notifyUtcTime the notification time or 0
+	 */
+	public void setNotifyUtcTime(long notifyUtcTime) {
+		this.notifyUtcTime = notifyUtcTime;
+	}
+}
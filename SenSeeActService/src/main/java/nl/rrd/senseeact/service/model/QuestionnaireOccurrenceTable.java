@@ -0,0 +1,25 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseIndex;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+public class QuestionnaireOccurrenceTable
+		extends DatabaseTableDef<QuestionnaireOccurrence> {
+	public static final String NAME = "qn_occurrences";
+
+	private static final int VERSION = 0;
+
+	public QuestionnaireOccurrenceTable() {
+		super(NAME, QuestionnaireOccurrence.class, VERSION, false);
+		addCompoundIndex(new DatabaseIndex("projectQuestionnaireTime",
+				"project", "questionnaire", "utcTime"));
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
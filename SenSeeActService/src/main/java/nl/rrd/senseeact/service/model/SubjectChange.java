@@ -0,0 +1,109 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+
+/**
+ * An entry in the log of changes that may affect the subject lists of
+ * projects. It is written by the {@link
+ * nl.rrd.senseeact.service.subject.SubjectChangeLog SubjectChangeLog} when
+ * project membership, project user access, group membership or a user
+ * profile changes.
+ *
+ * <p>If the change applies to all projects, the project is an empty string.
+ * If it is not known which user is affected, the subject is an empty string.
+ * In that case clients should reload the complete subject list.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SubjectChange extends BaseDatabaseObject {
+	@DatabaseField(value=DatabaseType.LONG, index=true)
+	private long version;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String project = "";
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String subject = "";
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long utcTime;
+
+	/**
+	 * Returns the version of this change. Versions increase with each
+	 * change.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Sets the version of this change. Versions increase with each change.
+	 *
+	 * @param version the version
+	 */
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	/**
+	 * Returns the project code. If the change applies to all projects, this
+	 * is an empty string.
+	 *
+	 * @return the project code or an empty string
+	 */
+	public String getProject() {
+		return project;
+	}
+
+	/**
+	 * Sets the project code. If the change applies to all projects, this
+	 * should be an empty string.
+	 *
+	 * @param project the project code or an empty string
+	 */
+	public void setProject(String project) {
+		this.project = project;
+	}
+
+	/**
+	 * Returns the user ID of the user that is affected by the change. If it
+	 * is not known which user is affected, this is an empty string.
+	 *
+	 * @return the user ID or an empty string
+	 */
+	public String getSubject() {
+		return subject;
+	}
+
+	/**
+	 * Sets the user ID of the user that is affected by the change. If it is
+	 * not known which user is affected, this should be an empty string.
+	 *
+	 * @param subject the user ID or an empty string
+	 */
+	public void setSubject(String subject) {
+		this.subject = subject;
+	}
+
+	/**
+	 * Returns the time of the change as a unix time in milliseconds.
+	 *
+	 * @return the time of the change
+	 */
+	public long getUtcTime() {
+		return utcTime;
+	}
+
+	/**
+	 * Sets the time of the change as a unix time in milliseconds.
+	 *
+	 * @param utcTime the time of the change
+	 */
+	public void setUtcTime(long utcTime) {
+		this.utcTime = utcTime;
+	}
+}
@@ -0,0 +1,21 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+public class SubjectChangeTable extends DatabaseTableDef<SubjectChange> {
+	public static final String NAME = "subject_changes";
+
+	private static final int VERSION = 0;
+
+	public SubjectChangeTable() {
+		super(NAME, SubjectChange.class, VERSION, false);
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
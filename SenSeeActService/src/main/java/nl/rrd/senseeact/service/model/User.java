@@ -503,6 +503,74 @@ public class User extends nl.rrd.senseeact.client.model.User {
 			allProjectUsers = findUsersInProject(authDb, project, role,
 					includeInactive);
 		}
+		return filterAccessibleProjectUsers(project, authDb, user, role,
+				allProjectUsers);
+	}
+
+	/**
+	 * Returns the users with the specified user IDs that occur in the
+	 * specified project and that can be accessed by the specified user. This
+	 * applies the same rules as {@link
+	 * #findProjectUsers(String, Database, User, Role, boolean)
+	 * findProjectUsers()}, but it only checks the specified user IDs, so it
+	 * doesn't need to read all users in the project.
+	 *
+	 * @param project the project code
+	 * @param authDb the authentication database
+	 * @param user the user for whom accessible project users should be
+	 * retrieved
+	 * @param role if set, it only returns users that were added to the project
+	 * with the specified role. This can be set to null.
+	 * @param includeInactive true if inactive subjects should be included,
+	 * false if only active subjects should be returned
+	 * @param userids the user IDs to check
+	 * @return the accessible users
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public static List<User> findProjectUsers(String project, Database authDb,
+			User user, Role role, boolean includeInactive,
+			Collection<String> userids) throws DatabaseException {
+		List<User> projectUsers = null;
+		if (user.getRole() == Role.ADMIN ||
+				user.getRole() == Role.PROFESSIONAL) {
+			projectUsers = new ArrayList<>();
+			UserCache userCache = UserCache.getInstance();
+			for (String userid : new LinkedHashSet<>(userids)) {
+				User projectUser = userCache.findByUserid(userid);
+				if (projectUser == null)
+					continue;
+				if (!includeInactive && !projectUser.isActive())
+					continue;
+				if (isProjectUser(authDb, project, userid, role))
+					projectUsers.add(projectUser);
+			}
+		} else if (!userids.contains(user.getUserid())) {
+			return new ArrayList<>();
+		}
+		return filterAccessibleProjectUsers(project, authDb, user, role,
+				projectUsers);
+	}
+
+	/**
+	 * Filters the users that can be accessed by the specified user. If the
+	 * user is an admin or professional, "allProjectUsers" should contain the
+	 * candidate users from the project. If the user is a patient, it is
+	 * ignored and the result only contains the patient if it belongs to the
+	 * project.
+	 *
+	 * @param project the project code
+	 * @param authDb the authentication database
+	 * @param user the user for whom accessible project users should be
+	 * retrieved
+	 * @param role the role that the users should have in the project, or null
+	 * @param allProjectUsers the candidate users from the project, or null if
+	 * the user is a patient
+	 * @return the accessible users
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private static List<User> filterAccessibleProjectUsers(String project,
+			Database authDb, User user, Role role,
+			List<User> allProjectUsers) throws DatabaseException {
 		if (user.getRole() == Role.ADMIN) {
 			return allProjectUsers;
 		} else if (user.getRole() == Role.PROFESSIONAL) {
@@ -1,13 +1,22 @@
 package nl.rrd.senseeact.service.model;
 
+import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.cluster.ClusterEventBus;
 import nl.rrd.senseeact.service.ProtocolVersion;
 
 import java.util.*;
 
 public class UserCache {
+	/**
+	 * The type of {@link ClusterEventBus ClusterEventBus} event that is
+	 * published when a user is created, updated or deleted. The data contains
+	 * key "userid".
+	 */
+	public static final String CLUSTER_EVENT_USER = "user";
+
 	private static final Object LOCK = new Object();
 
 	private static UserCache instance = null;
@@ -157,12 +166,14 @@ public class UserCache {
 			throws DatabaseException {
 		authDb.insert(UserTable.NAME, user);
 		addUser(new User(user));
+		publishUser(user.getUserid());
 	}
 
 	public void updateUser(Database authDb, User user)
 			throws DatabaseException {
 		authDb.update(UserTable.NAME, user);
 		updateUser(new User(user));
+		publishUser(user.getUserid());
 	}
 
 	public void deleteUser(Database authDb, String userid)
@@ -171,6 +182,31 @@ public class UserCache {
 				userid);
 		authDb.delete(new UserTable(), criteria);
 		deleteUser(userid);
+		publishUser(userid);
+	}
+
+	/**
+	 * Reads the specified user from the database and adds, updates or removes
+	 * the user in the cache. This should be called when another node in the
+	 * cluster has changed the user.
+	 *
+	 * @param authDb the authentication database
+	 * @param userid the user ID
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void reloadUser(Database authDb, String userid)
+			throws DatabaseException {
+		DatabaseCriteria criteria = new DatabaseCriteria.Equal("userid",
+				userid);
+		User user = authDb.selectOne(new UserTable(), criteria, null);
+		synchronized (LOCK) {
+			if (user == null)
+				deleteUser(userid);
+			else if (useridMap.containsKey(userid))
+				updateUser(user);
+			else
+				addUser(user);
+		}
 	}
 
 	public int getCount() {
@@ -245,6 +281,17 @@ public class UserCache {
 		}
 	}
 
+	/**
+	 * Publishes a {@link #CLUSTER_EVENT_USER CLUSTER_EVENT_USER} event so other
+	 * nodes in the cluster reload the user.
+	 *
+	 * @param userid the user ID
+	 */
+	private void publishUser(String userid) {
+		ClusterEventBus bus = AppComponents.get(ClusterEventBus.class);
+		bus.publish(CLUSTER_EVENT_USER, Map.of("userid", userid));
+	}
+
 	public interface UserFilter {
 		boolean matches(User user);
 	}
@@ -0,0 +1,170 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.BaseDatabaseObject;
+import nl.rrd.senseeact.dao.DatabaseField;
+import nl.rrd.senseeact.dao.DatabaseType;
+import nl.rrd.senseeact.service.deletion.UserDeletionStatus;
+
+/**
+ * A task to delete the data of a deleted user from one project database. When
+ * a user is deleted, a task is created for each project. The tasks are run by
+ * the {@link nl.rrd.senseeact.service.deletion.UserDeletionManager
+ * UserDeletionManager}.
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class UserDeletionTask extends BaseDatabaseObject {
+	@DatabaseField(value=DatabaseType.STRING, index=true)
+	private String user;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String project;
+
+	@DatabaseField(value=DatabaseType.STRING)
+	private String status = UserDeletionStatus.PENDING.name();
+
+	@DatabaseField(value=DatabaseType.TEXT)
+	private String error = null;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long created;
+
+	@DatabaseField(value=DatabaseType.LONG)
+	private long updated;
+
+	/**
+	 * Constructs a new empty task. This is used for DataAccessObjects and JSON
+	 * serialization. Users should not call this.
+	 */
+	public UserDeletionTask() {
+	}
+
+	/**
+	 * Constructs a new pending task.
+	 *
+	 * @param user the user ID of the deleted user
+	 * @param project the project code
+	 * @param created the time when the user was deleted, as a unix time in
+	 * milliseconds
+	 */
+	public UserDeletionTask(String user, String project, long created) {
+		this.user = user;
+		this.project = project;
+		this.created = created;
+		this.updated = created;
+	}
+
+	/**
+	 * Returns the user ID of the deleted user.
+	 *
+	 * @return the user ID of the deleted user
+	 */
+	public String getUser() {
+		return user;
+	}
+
+	/**
+	 * Sets the user ID of the deleted user.
+	 *
+	 * @param user the user ID of the deleted user
+	 */
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	/**
+	 * Returns the project code.
+	 *
+	 * @return the project code
+	 */
+	public String getProject() {
+		return project;
+	}
+
+	/**
+	 * Sets the project code.
+	 *
+	 * @param project the project code
+	 */
+	public void setProject(String project) {
+		this.project = project;
+	}
+
+	/**
+	 * Returns the status. This should be the name of a {@link
+	 * UserDeletionStatus UserDeletionStatus}.
+	 *
+	 * @return the status
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * Sets the status. This should be the name of a {@link UserDeletionStatus
+	 * UserDeletionStatus}.
+	 *
+	 * @param status the status
+	 */
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	/**
+	 * Returns the error message if the status is FAILED.
+	 *
+	 * @return the error message or null
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Sets the error message if the status is FAILED.
+	 *
+	 * @param error the error message or null
+	 */
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	/**
+	 * Returns the time when the user was deleted, as a unix time in
+	 * milliseconds.
+	 *
+	 * @return the time when the user was deleted
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	/**
+	 * Sets the time when the user was deleted, as a unix time in
+	 * milliseconds.
+	 *
+	 * @param created the time when the user was deleted
+	 */
+	public void setCreated(long created) {
+		this.created = created;
+	}
+
+	/**
+	 * Returns the time when the status was last changed, as a unix time in
+	 * milliseconds.
+	 *
+	 * @return the time when the status was last changed
+	 */
+	public long getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * Sets the time when the status was last changed, as a unix time in
+	 * milliseconds.
+	 *
+	 * @param updated the time when the status was last changed
+	 */
+	public void setUpdated(long updated) {
+		this.updated = updated;
+	}
+}
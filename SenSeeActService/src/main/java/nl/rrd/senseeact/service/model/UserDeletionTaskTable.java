@@ -0,0 +1,21 @@
+package nl.rrd.senseeact.service.model;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.utils.exception.DatabaseException;
+
+public class UserDeletionTaskTable extends DatabaseTableDef<UserDeletionTask> {
+	public static final String NAME = "user_deletion_tasks";
+
+	private static final int VERSION = 0;
+
+	public UserDeletionTaskTable() {
+		super(NAME, UserDeletionTask.class, VERSION, false);
+	}
+
+	@Override
+	public int upgradeTable(int version, Database db, String physTable)
+			throws DatabaseException {
+		return 0;
+	}
+}
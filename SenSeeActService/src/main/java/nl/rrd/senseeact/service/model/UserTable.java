@@ -10,10 +10,11 @@ import java.util.Map;
 public class UserTable extends DatabaseTableDef<User> {
 	public static final String NAME = "user";
 	
-	private static final int VERSION = 15;
+	private static final int VERSION = 16;
 
 	public UserTable() {
 		super(NAME, User.class, VERSION, false);
+		addCompoundIndex(new DatabaseIndex("roleEmail", "role", "email"));
 	}
 
 	@Override
@@ -49,8 +50,10 @@ public class UserTable extends DatabaseTableDef<User> {
 			return upgradeTableV13(db, physTable);
 		else if (version == 14)
 			return upgradeTableV14(db, physTable);
+		else if (version == 15)
+			return upgradeTableV15(db, physTable);
 		else
-			return 15;
+			return 16;
 	}
 	
 	private int upgradeTableV0(Database db, String physTable)
@@ -199,4 +202,11 @@ public class UserTable extends DatabaseTableDef<User> {
 		db.update(physTable, null, null, values);
 		return 15;
 	}
+
+	private int upgradeTableV15(Database db, String physTable)
+			throws DatabaseException {
+		db.createIndex(physTable, new DatabaseIndex("roleEmail", "role",
+				"email"));
+		return 16;
+	}
 }
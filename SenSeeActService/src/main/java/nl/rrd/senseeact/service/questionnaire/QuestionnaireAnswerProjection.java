@@ -0,0 +1,630 @@
+package nl.rrd.senseeact.service.questionnaire;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionData;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireData;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireDataTable;
+import nl.rrd.senseeact.client.project.BaseProject;
+import nl.rrd.senseeact.client.project.ProjectRepository;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseAction;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.senseeact.dao.listener.DatabaseActionListener;
+import nl.rrd.senseeact.dao.listener.DatabaseListenerRepository;
+import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.senseeact.service.model.QuestionnaireAnswer;
+import nl.rrd.senseeact.service.model.QuestionnaireAnswerTable;
+import nl.rrd.senseeact.service.model.QuestionnaireBackfill;
+import nl.rrd.senseeact.service.model.QuestionnaireBackfillTable;
+import nl.rrd.senseeact.service.model.UserProject;
+import nl.rrd.senseeact.service.model.UserProjectTable;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * This service maintains a projection of the answers in the {@link
+ * QuestionnaireData QuestionnaireData} records of the project databases. The
+ * answers of a record are stored as one JSON string. This service splits
+ * them into {@link QuestionnaireAnswer QuestionnaireAnswer}s in the
+ * authentication database, with one object per record, question, data key
+ * and value. This allows queries on answer values across users without
+ * parsing the JSON strings.
+ *
+ * <p>The service listens to the database actions in the questionnaire data
+ * tables. For inserted, updated and deleted records, it reloads the records
+ * from the project database and replaces their answers. If a range of
+ * records is deleted, it rebuilds the answers of the user. The updates run
+ * in a background thread, so the projection may be behind the project
+ * database for a short time. If an update fails, it is queued again and
+ * retried after a delay.</p>
+ *
+ * <p>At startup the service builds the answers of each project that does
+ * not have a {@link QuestionnaireBackfill QuestionnaireBackfill} marker yet.
+ * The answers are built for each user in the project, because the
+ * questionnaire data table may be split by user. The marker is written when
+ * the build of a project is completed, so a build that was interrupted is
+ * started again.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@Service
+public class QuestionnaireAnswerProjection {
+	private static final int BATCH_SIZE = 100;
+	private static final int MAX_STRING_VALUE = 255;
+	private static final int RETRY_DELAY = 10000;
+
+	private static final Object LOCK = new Object();
+	private boolean closed = false;
+
+	// map from database name to project code
+	private Map<String,String> projectDbNames = new HashMap<>();
+	private ProjectionActionListener actionListener = null;
+
+	// map from project code to queued update
+	private Map<String,ProjectUpdate> updateQueue = new LinkedHashMap<>();
+
+	/**
+	 * Finds answers in the projection. Only "project", "questionnaireId" and
+	 * "questionId" are required. The other parameters can be null. The
+	 * result is sorted by time.
+	 *
+	 * @param authDb the authentication database
+	 * @param project the project code
+	 * @param questionnaireId the questionnaire ID
+	 * @param questionId the question ID
+	 * @param dataKey the key in the data map of the question or null
+	 * @param value the string value or null
+	 * @param min the minimum numeric value (inclusive) or null
+	 * @param max the maximum numeric value (inclusive) or null
+	 * @param criteria additional criteria on the time or null
+	 * @return the answers
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public List<QuestionnaireAnswer> findAnswers(Database authDb,
+			String project, String questionnaireId, String questionId,
+			String dataKey, String value, Double min, Double max,
+			DatabaseCriteria criteria) throws DatabaseException {
+		List<DatabaseCriteria> andList = new ArrayList<>();
+		andList.add(new DatabaseCriteria.Equal("project", project));
+		andList.add(new DatabaseCriteria.Equal("questionnaireId",
+				questionnaireId));
+		andList.add(new DatabaseCriteria.Equal("questionId", questionId));
+		if (dataKey != null)
+			andList.add(new DatabaseCriteria.Equal("dataKey", dataKey));
+		if (value != null)
+			andList.add(new DatabaseCriteria.Equal("strValue", value));
+		if (min != null)
+			andList.add(new DatabaseCriteria.GreaterEqual("numValue", min));
+		if (max != null)
+			andList.add(new DatabaseCriteria.LessEqual("numValue", max));
+		if (criteria != null)
+			andList.add(criteria);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("utcTime", true)
+		};
+		return authDb.select(new QuestionnaireAnswerTable(),
+				new DatabaseCriteria.And(andList.toArray(
+				new DatabaseCriteria[0])), 0, sort);
+	}
+
+	@PostConstruct
+	public void init() {
+		new Thread(this::runInit).start();
+	}
+
+	private void runInit() {
+		String serviceName = getClass().getSimpleName();
+		Logger logger = AppComponents.getLogger(serviceName);
+		logger.info("Start " + serviceName);
+		while (!closed) {
+			try {
+				initProjectListeners();
+				onInit();
+				return;
+			} catch (DatabaseException | IOException ex) {
+				if (closed)
+					return;
+				logger.error("Database error: " + ex.getMessage());
+			}
+			wait(10000);
+			if (closed)
+				return;
+			logger.info("Retry init");
+		}
+	}
+
+	private void wait(int ms) {
+		long now = System.currentTimeMillis();
+		long end = now + ms;
+		synchronized (LOCK) {
+			while (!closed && now < end) {
+				try {
+					LOCK.wait(end - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+				now = System.currentTimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * Opens the project databases that have a questionnaire data table and
+	 * registers an action listener for each database.
+	 *
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if the database connection can't be opened
+	 */
+	private void initProjectListeners() throws DatabaseException,
+			IOException {
+		Map<String,String> dbNames = new HashMap<>();
+		for (String project : getQuestionnaireProjects()) {
+			runWithDatabases(project, (authDb, projectDb) ->
+					dbNames.put(projectDb.getName(), project));
+		}
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			projectDbNames = dbNames;
+			actionListener = new ProjectionActionListener();
+			DatabaseListenerRepository repository =
+					DatabaseListenerRepository.getInstance();
+			for (String dbName : dbNames.keySet()) {
+				repository.addDatabaseActionListener(dbName, actionListener);
+			}
+		}
+	}
+
+	/**
+	 * Returns the codes of the projects that have a database with a
+	 * questionnaire data table.
+	 *
+	 * @return the project codes
+	 */
+	List<String> getQuestionnaireProjects() {
+		ProjectRepository projectRepo = AppComponents.get(
+				ProjectRepository.class);
+		List<String> result = new ArrayList<>();
+		for (BaseProject project : projectRepo.getProjects()) {
+			String code = project.getCode();
+			if (DatabaseLoader.getProjectDatabaseName(code) != null &&
+					project.findTable(QuestionnaireDataTable.NAME) != null) {
+				result.add(code);
+			}
+		}
+		return result;
+	}
+
+	private void onInit() throws DatabaseException, IOException {
+		List<String> backfillProjects = new ArrayList<>();
+		runWithDatabases(null, (authDb, projectDb) -> {
+			Collection<String> projects;
+			synchronized (LOCK) {
+				projects = new ArrayList<>(projectDbNames.values());
+			}
+			Set<String> completed = new HashSet<>();
+			List<QuestionnaireBackfill> backfills = authDb.select(
+					new QuestionnaireBackfillTable(), null, 0, null);
+			for (QuestionnaireBackfill backfill : backfills) {
+				completed.add(backfill.getProject());
+			}
+			for (String project : projects) {
+				if (!completed.contains(project))
+					backfillProjects.add(project);
+			}
+		});
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+			new Thread(this::runUpdateThread, getClass().getSimpleName() +
+					"-update").start();
+			for (String project : backfillProjects) {
+				getQueuedUpdate(project).all = true;
+			}
+			LOCK.notifyAll();
+			logger.info("Init completed");
+		}
+	}
+
+	/**
+	 * Returns the queued update for the specified project. If no update is
+	 * queued yet, it creates a new one. This method should be called while
+	 * synchronized on LOCK.
+	 *
+	 * @param project the project code
+	 * @return the queued update
+	 */
+	private ProjectUpdate getQueuedUpdate(String project) {
+		return updateQueue.computeIfAbsent(project,
+				key -> new ProjectUpdate());
+	}
+
+	private void runUpdateThread() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		while (true) {
+			String project;
+			ProjectUpdate update;
+			synchronized (LOCK) {
+				while (!closed && updateQueue.isEmpty()) {
+					try {
+						LOCK.wait();
+					} catch (InterruptedException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+				if (closed)
+					return;
+				project = updateQueue.keySet().iterator().next();
+				update = updateQueue.remove(project);
+			}
+			try {
+				updateProject(project, update);
+			} catch (DatabaseException | IOException ex) {
+				logger.error(String.format(
+						"Failed to update questionnaire answers of project %s: %s",
+						project, ex.getMessage()), ex);
+				requeueUpdate(project, update);
+				wait(getRetryDelay());
+			}
+		}
+	}
+
+	/**
+	 * Queues a failed update again. If another update for the project was
+	 * queued in the meantime, the updates are merged.
+	 *
+	 * @param project the project code
+	 * @param update the failed update
+	 */
+	private void requeueUpdate(String project, ProjectUpdate update) {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			ProjectUpdate queued = getQueuedUpdate(project);
+			if (update.all) {
+				queued.all = true;
+			} else {
+				queued.users.addAll(update.users);
+				for (String user : update.recordIds.keySet()) {
+					queued.getRecordIds(user).addAll(update.recordIds.get(
+							user));
+				}
+			}
+		}
+	}
+
+	private void updateProject(String project, ProjectUpdate update)
+			throws DatabaseException, IOException {
+		runWithDatabases(project, (authDb, projectDb) -> {
+			if (update.all) {
+				rebuildProject(authDb, projectDb, project);
+				return;
+			}
+			for (String user : update.users) {
+				rebuildUser(authDb, projectDb, project, user);
+			}
+			for (String user : update.recordIds.keySet()) {
+				if (update.users.contains(user))
+					continue;
+				List<String> recordIds = new ArrayList<>(
+						update.recordIds.get(user));
+				for (int i = 0; i < recordIds.size(); i += BATCH_SIZE) {
+					updateRecords(authDb, projectDb, project, user,
+							recordIds.subList(i, Math.min(i + BATCH_SIZE,
+							recordIds.size())));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Rebuilds the answers of all users in the specified project. The users
+	 * are read from the {@link UserProjectTable UserProjectTable}. When the
+	 * build is completed, this method writes the backfill marker.
+	 *
+	 * @param authDb the authentication database
+	 * @param projectDb the project database
+	 * @param project the project code
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void rebuildProject(Database authDb, Database projectDb,
+			String project) throws DatabaseException {
+		authDb.delete(new QuestionnaireAnswerTable(),
+				new DatabaseCriteria.Equal("project", project));
+		List<UserProject> userProjects = authDb.select(new UserProjectTable(),
+				new DatabaseCriteria.Equal("projectCode", project), 0, null);
+		Set<String> users = new LinkedHashSet<>();
+		for (UserProject userProject : userProjects) {
+			users.add(userProject.getUser());
+		}
+		for (String user : users) {
+			if (closed)
+				return;
+			rebuild(authDb, projectDb, project, user);
+		}
+		if (!closed)
+			setBackfillCompleted(authDb, project);
+	}
+
+	private void rebuildUser(Database authDb, Database projectDb,
+			String project, String user) throws DatabaseException {
+		authDb.delete(new QuestionnaireAnswerTable(), new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("project", project),
+				new DatabaseCriteria.Equal("user", user)));
+		rebuild(authDb, projectDb, project, user);
+	}
+
+	/**
+	 * Writes the marker that the answers of the specified project have been
+	 * built.
+	 *
+	 * @param authDb the authentication database
+	 * @param project the project code
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void setBackfillCompleted(Database authDb, String project)
+			throws DatabaseException {
+		QuestionnaireBackfillTable table = new QuestionnaireBackfillTable();
+		authDb.delete(table, new DatabaseCriteria.Equal("project", project));
+		QuestionnaireBackfill backfill = new QuestionnaireBackfill();
+		backfill.setProject(project);
+		backfill.setUtcTime(System.currentTimeMillis());
+		authDb.insert(QuestionnaireBackfillTable.NAME, backfill);
+	}
+
+	/**
+	 * Inserts the answers of all questionnaire data records of the specified
+	 * user. The records are read in batches ordered by ID. The existing
+	 * answers should already have been deleted.
+	 *
+	 * @param authDb the authentication database
+	 * @param projectDb the project database
+	 * @param project the project code
+	 * @param user the user ID
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void rebuild(Database authDb, Database projectDb, String project,
+			String user) throws DatabaseException {
+		QuestionnaireDataTable dataTable = new QuestionnaireDataTable();
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("id", true)
+		};
+		String lastId = null;
+		while (!closed) {
+			DatabaseCriteria batchCriteria = new DatabaseCriteria.Equal("user",
+					user);
+			if (lastId != null) {
+				batchCriteria = new DatabaseCriteria.And(batchCriteria,
+						new DatabaseCriteria.GreaterThan("id", lastId));
+			}
+			List<QuestionnaireData> records = projectDb.select(dataTable,
+					batchCriteria, BATCH_SIZE, sort);
+			if (records.isEmpty())
+				return;
+			insertAnswers(authDb, project, records);
+			lastId = records.get(records.size() - 1).getId();
+		}
+	}
+
+	/**
+	 * Replaces the answers of the specified questionnaire data records of a
+	 * user. If a record no longer exists, its answers are deleted.
+	 *
+	 * @param authDb the authentication database
+	 * @param projectDb the project database
+	 * @param project the project code
+	 * @param user the user ID
+	 * @param recordIds the record IDs
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void updateRecords(Database authDb, Database projectDb,
+			String project, String user, List<String> recordIds)
+			throws DatabaseException {
+		List<DatabaseCriteria> orList = new ArrayList<>();
+		for (String recordId : recordIds) {
+			orList.add(new DatabaseCriteria.Equal("id", recordId));
+		}
+		List<QuestionnaireData> records = projectDb.select(
+				new QuestionnaireDataTable(), new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("user", user),
+				new DatabaseCriteria.Or(orList.toArray(
+				new DatabaseCriteria[0]))), 0, null);
+		orList.clear();
+		for (String recordId : recordIds) {
+			orList.add(new DatabaseCriteria.Equal("recordId", recordId));
+		}
+		authDb.delete(new QuestionnaireAnswerTable(), new DatabaseCriteria.And(
+				new DatabaseCriteria.Equal("project", project),
+				new DatabaseCriteria.Or(orList.toArray(
+				new DatabaseCriteria[0]))));
+		insertAnswers(authDb, project, records);
+	}
+
+	private void insertAnswers(Database authDb, String project,
+			List<QuestionnaireData> records) throws DatabaseException {
+		List<QuestionnaireAnswer> answers = new ArrayList<>();
+		for (QuestionnaireData record : records) {
+			answers.addAll(createAnswers(project, record));
+		}
+		if (!answers.isEmpty())
+			authDb.insert(QuestionnaireAnswerTable.NAME, answers);
+	}
+
+	private List<QuestionnaireAnswer> createAnswers(String project,
+			QuestionnaireData record) {
+		List<QuestionnaireAnswer> result = new ArrayList<>();
+		if (record.getAnswerList() == null)
+			return result;
+		for (QuestionData question : record.getAnswerList()) {
+			if (question.getQuestionId() == null || question.getData() == null)
+				continue;
+			for (Map.Entry<String,?> entry : question.getData().entrySet()) {
+				List<Object> values = new ArrayList<>();
+				if (entry.getValue() instanceof List<?> list)
+					values.addAll(list);
+				else
+					values.add(entry.getValue());
+				for (Object value : values) {
+					QuestionnaireAnswer answer = new QuestionnaireAnswer();
+					answer.setProject(project);
+					answer.setUser(record.getUser());
+					answer.setRecordId(record.getId());
+					answer.setQuestionnaireId(record.getQuestionnaireId());
+					answer.setQuestionId(question.getQuestionId());
+					answer.setDataKey(entry.getKey());
+					setAnswerValue(answer, value);
+					answer.setUtcTime(record.getUtcTime());
+					answer.setLocalTime(record.getLocalTime());
+					result.add(answer);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the string value and numeric value of an answer. A number or a
+	 * numeric string gets a numeric value. A boolean gets numeric value 1 or
+	 * 0. Maps are stored as a string only. Long strings are truncated to
+	 * {@link #MAX_STRING_VALUE MAX_STRING_VALUE} characters.
+	 *
+	 * @param answer the answer
+	 * @param value the value from the question data
+	 */
+	private void setAnswerValue(QuestionnaireAnswer answer, Object value) {
+		if (value == null)
+			return;
+		String strValue = value.toString();
+		Double numValue = null;
+		if (value instanceof Number number) {
+			numValue = number.doubleValue();
+		} else if (value instanceof Boolean bool) {
+			numValue = bool ? 1.0 : 0.0;
+		} else if (value instanceof String str) {
+			try {
+				numValue = Double.parseDouble(str.trim());
+			} catch (NumberFormatException ex) {}
+		}
+		if (numValue != null && (numValue.isNaN() || numValue.isInfinite()))
+			numValue = null;
+		if (strValue.length() > MAX_STRING_VALUE)
+			strValue = strValue.substring(0, MAX_STRING_VALUE);
+		answer.setStrValue(strValue);
+		answer.setNumValue(numValue);
+	}
+
+	int getRetryDelay() {
+		return RETRY_DELAY;
+	}
+
+	/**
+	 * Opens a database connection and runs the specified runner with the
+	 * authentication database and the database of the specified project. If
+	 * the project is null, the project database is null as well.
+	 *
+	 * @param project the project code or null
+	 * @param runner the runner
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if the database connection can't be opened
+	 */
+	void runWithDatabases(String project, DatabaseRunner runner)
+			throws DatabaseException, IOException {
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			Database authDb = dbLoader.initAuthDatabase(dbConn);
+			Database projectDb = null;
+			if (project != null)
+				projectDb = dbLoader.initProjectDatabase(dbConn, project);
+			runner.run(authDb, projectDb);
+		} finally {
+			dbConn.close();
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			String serviceName = getClass().getSimpleName();
+			Logger logger = AppComponents.getLogger(serviceName);
+			logger.info("Stop " + serviceName);
+			closed = true;
+			updateQueue.clear();
+			if (actionListener != null) {
+				DatabaseListenerRepository repository =
+						DatabaseListenerRepository.getInstance();
+				for (String dbName : projectDbNames.keySet()) {
+					repository.removeDatabaseActionListener(dbName,
+							actionListener);
+				}
+				actionListener = null;
+			}
+			LOCK.notifyAll();
+		}
+	}
+
+	interface DatabaseRunner {
+		void run(Database authDb, Database projectDb)
+				throws DatabaseException;
+	}
+
+	/**
+	 * A queued update of the answers of a project. If "all" is true, all
+	 * answers of the project are rebuilt. Otherwise the answers of the users
+	 * in "users" are rebuilt and the answers of the records in "recordIds"
+	 * are replaced. The record IDs are grouped by user.
+	 */
+	private static class ProjectUpdate {
+		public boolean all = false;
+		public Set<String> users = new LinkedHashSet<>();
+		public Map<String,Set<String>> recordIds = new LinkedHashMap<>();
+
+		public Set<String> getRecordIds(String user) {
+			return recordIds.computeIfAbsent(user,
+					key -> new LinkedHashSet<>());
+		}
+	}
+
+	private class ProjectionActionListener
+			implements DatabaseActionListener {
+		@Override
+		public void onAddDatabaseActions(String database, String table,
+				List<DatabaseAction> actions) {
+			if (!QuestionnaireDataTable.NAME.equals(table))
+				return;
+			synchronized (LOCK) {
+				if (closed)
+					return;
+				String project = projectDbNames.get(database);
+				if (project == null)
+					return;
+				ProjectUpdate update = getQueuedUpdate(project);
+				for (DatabaseAction action : actions) {
+					if (update.all)
+						break;
+					if (action.getUser() == null) {
+						update.all = true;
+					} else if (action.getAction() ==
+							DatabaseAction.Action.DELETE_RANGE) {
+						update.users.add(action.getUser());
+					} else if (action.getRecordId() != null) {
+						update.getRecordIds(action.getUser()).add(
+								action.getRecordId());
+					}
+				}
+				LOCK.notifyAll();
+			}
+		}
+	}
+}
@@ -11,10 +11,12 @@ import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseConnection;
 import nl.rrd.senseeact.service.DatabaseLoader;
 import nl.rrd.senseeact.service.controller.UserController;
+import nl.rrd.senseeact.service.deletion.UserDeletionManager;
 import nl.rrd.senseeact.service.exception.HttpException;
 import nl.rrd.senseeact.service.model.User;
 import nl.rrd.senseeact.service.model.UserCache;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
@@ -27,6 +29,9 @@ import java.util.Random;
 
 @Service
 public class AccountCleanupService {
+	@Autowired
+	private UserDeletionManager deletionManager;
+
 	private String cleanupTaskId = null;
 
 	@PostConstruct
@@ -68,7 +73,8 @@ public class AccountCleanupService {
 				if (now.isBefore(created.plusHours(24)))
 					continue;
 				try {
-					UserController.deleteUser(authDb, user);
+					UserController.deleteUser(authDb, user,
+							deletionManager);
 				} catch (HttpException | DatabaseException | IOException ex) {
 					logger.error("Failed to delete temporary user " +
 							user.getEmail() + ": " + ex.getMessage(), ex);
@@ -0,0 +1,191 @@
+package nl.rrd.senseeact.service.scheduled;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nl.rrd.senseeact.client.model.SystemStat;
+import nl.rrd.senseeact.client.model.SystemStatTable;
+import nl.rrd.senseeact.client.project.BaseProject;
+import nl.rrd.senseeact.client.project.ProjectRepository;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.sync.ActionLogCompactor;
+import nl.rrd.senseeact.service.Configuration;
+import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.datetime.DateTimeUtils;
+import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.TaskException;
+import nl.rrd.utils.schedule.*;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+/**
+ * This service compacts the database action tables of all project databases
+ * once a day with the {@link ActionLogCompactor ActionLogCompactor}. It is
+ * only enabled if {@link Configuration#ACTION_LOG_RETENTION
+ * Configuration.ACTION_LOG_RETENTION} is set. The following properties are
+ * used:
+ *
+ * <p><ul>
+ * <li>{@link Configuration#ACTION_LOG_RETENTION ACTION_LOG_RETENTION}: the
+ * default number of days that actions are kept without compaction</li>
+ * <li>{@link Configuration#ACTION_LOG_TABLE_RETENTION
+ * ACTION_LOG_TABLE_RETENTION}: the retention in days for specific tables,
+ * for example "table1:7,table2:-1". A negative value disables compaction for
+ * a table.</li>
+ * <li>{@link Configuration#ACTION_LOG_CONSUMER_TIMEOUT
+ * ACTION_LOG_CONSUMER_TIMEOUT}: the number of days after which a consumer
+ * that has not synchronised is ignored (default 90)</li>
+ * </ul></p>
+ *
+ * <p>For each project it stores the reclaimed rows and bytes as {@link
+ * SystemStat SystemStat}s.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@Service
+public class ActionLogCompactionService {
+	private static final long DAY = 24L * 3600000;
+
+	private String compactTaskId = null;
+
+	@PostConstruct
+	public void init() {
+		Configuration config = AppComponents.get(Configuration.class);
+		String retention = config.get(Configuration.ACTION_LOG_RETENTION);
+		if (retention == null || retention.isEmpty())
+			return;
+		TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
+		compactTaskId = scheduler.generateTaskId();
+		scheduler.scheduleTask(null, new CompactTask(), compactTaskId);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (compactTaskId != null) {
+			TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
+			scheduler.cancelTask(null, compactTaskId);
+			compactTaskId = null;
+		}
+	}
+
+	private void runService() {
+		String logtag = getClass().getSimpleName();
+		Logger logger = AppComponents.getLogger(logtag);
+		logger.info("Start " + logtag);
+		ActionLogCompactor compactor = createCompactor();
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn;
+		try {
+			dbConn = dbLoader.openConnection();
+		} catch (IOException ex) {
+			logger.error("Failed to connect to database: " + ex.getMessage());
+			return;
+		}
+		try {
+			Database authDb = dbLoader.initAuthDatabase(dbConn);
+			ProjectRepository projectRepo = AppComponents.get(
+					ProjectRepository.class);
+			List<SystemStat> stats = new ArrayList<>();
+			for (BaseProject project : projectRepo.getProjects()) {
+				String code = project.getCode();
+				if (DatabaseLoader.getProjectDatabaseName(code) == null)
+					continue;
+				Database db = dbLoader.initProjectDatabase(dbConn, code);
+				ActionLogCompactor.Result result = compactor.compact(db);
+				logger.info(String.format(
+						"Compacted action log of project %s: merged %d records, removed %d deleted records, reclaimed %d rows, %d bytes",
+						code, result.getMergedRecords(),
+						result.getRemovedRecords(), result.getDeletedRows(),
+						result.getReclaimedBytes()));
+				ZonedDateTime now = DateTimeUtils.nowMs();
+				stats.add(new SystemStat(
+						SystemStat.Name.ACTION_LOG_ROWS_RECLAIMED,
+						result.getDeletedRows(), now, code));
+				stats.add(new SystemStat(
+						SystemStat.Name.ACTION_LOG_BYTES_RECLAIMED,
+						result.getReclaimedBytes(), now, code));
+			}
+			if (!stats.isEmpty()) {
+				authDb.insert(SystemStatTable.NAME, stats);
+				new SystemStatRollupWriter().addStats(authDb, stats);
+			}
+		} catch (DatabaseException ex) {
+			logger.error("Database error: " + ex.getMessage(), ex);
+		} finally {
+			dbConn.close();
+		}
+	}
+
+	/**
+	 * Creates the compactor with the retention settings from the
+	 * configuration.
+	 *
+	 * @return the compactor
+	 */
+	private ActionLogCompactor createCompactor() {
+		Configuration config = AppComponents.get(Configuration.class);
+		ActionLogCompactor compactor = new ActionLogCompactor();
+		compactor.setDefaultRetention(toMillis(config.getIntProperty(
+				Configuration.ACTION_LOG_RETENTION, -1, Integer.MIN_VALUE)));
+		String timeout = config.get(
+				Configuration.ACTION_LOG_CONSUMER_TIMEOUT);
+		if (timeout != null && !timeout.isEmpty()) {
+			compactor.setConsumerTimeout(toMillis(config.getIntProperty(
+					Configuration.ACTION_LOG_CONSUMER_TIMEOUT, -1,
+					Integer.MIN_VALUE)));
+		}
+		Map<String,Long> tableRetentions = new HashMap<>();
+		Map<String,Integer> tableDays = config.getIntMapProperty(
+				Configuration.ACTION_LOG_TABLE_RETENTION);
+		for (String table : tableDays.keySet()) {
+			tableRetentions.put(table, toMillis(tableDays.get(table)));
+		}
+		compactor.setTableRetentions(tableRetentions);
+		return compactor;
+	}
+
+	/**
+	 * Converts a number of days from a configuration property to
+	 * milliseconds. A negative number of days is returned as -1.
+	 *
+	 * @param days the number of days
+	 * @return the number of milliseconds or -1
+	 */
+	private long toMillis(int days) {
+		if (days < 0)
+			return -1;
+		return days * DAY;
+	}
+
+	private class CompactTask extends AbstractScheduledTask {
+		public CompactTask() {
+			LocalDate today = LocalDate.now().minusDays(1);
+			Random random = new Random();
+			int second = random.nextInt(86400);
+			LocalTime time = LocalTime.ofSecondOfDay(second);
+			TaskSchedule.TimeSchedule schedule = new TaskSchedule.TimeSchedule(
+					today, time);
+			schedule.setRepeatDate(new DateDuration(1, DateUnit.DAY));
+			setSchedule(schedule);
+		}
+
+		@Override
+		public String getName() {
+			return ActionLogCompactionService.class.getSimpleName() + "." +
+					getClass().getSimpleName();
+		}
+
+		@Override
+		public void run(Object context, String taskId, ZonedDateTime now,
+				ScheduleParams scheduleParams) throws TaskException {
+			runService();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package nl.rrd.senseeact.service.scheduled;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nl.rrd.senseeact.client.project.BaseProject;
+import nl.rrd.senseeact.client.project.ProjectRepository;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.LocalTimeColumn;
+import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.TaskException;
+import nl.rrd.utils.schedule.AbstractScheduledTask;
+import nl.rrd.utils.schedule.ScheduleParams;
+import nl.rrd.utils.schedule.TaskSchedule;
+import nl.rrd.utils.schedule.TaskScheduler;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+/**
+ * This service fills in the shadow field "localTimeMillis" (see {@link
+ * LocalTimeColumn LocalTimeColumn}) in the background, after it was added to
+ * existing tables of the project databases. It checks the databases every
+ * minute and calls {@link Database#backfillLocalTimeMillis(String)
+ * Database.backfillLocalTimeMillis()} for each table that has not been
+ * filled in yet. Until then, queries on the table compare the string field
+ * "localTime".
+ *
+ * <p>Each table is filled in with a new database connection. If a backfill
+ * fails, it is resumed at the next run.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@Service
+public class LocalTimeMillisBackfillService {
+	private static final int BACKFILL_DELAY = 60000; // milliseconds
+
+	private String backfillTaskId = null;
+
+	@PostConstruct
+	public void init() {
+		TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
+		backfillTaskId = scheduler.generateTaskId();
+		scheduler.scheduleTask(null, new BackfillTask(), backfillTaskId);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (backfillTaskId != null) {
+			TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
+			scheduler.cancelTask(null, backfillTaskId);
+			backfillTaskId = null;
+		}
+	}
+
+	private void runService() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		ProjectRepository projectRepo = AppComponents.get(
+				ProjectRepository.class);
+		for (BaseProject project : projectRepo.getProjects()) {
+			String code = project.getCode();
+			if (DatabaseLoader.getProjectDatabaseName(code) == null)
+				continue;
+			try {
+				backfillProject(code);
+			} catch (IOException ex) {
+				logger.error("Failed to connect to database: " +
+						ex.getMessage());
+				return;
+			} catch (DatabaseException ex) {
+				logger.error("Failed to fill in " +
+						LocalTimeColumn.LOCAL_TIME_MILLIS + " in project " +
+						code + ": " + ex.getMessage(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Fills in the shadow field in each table of the specified project where
+	 * needed.
+	 *
+	 * @param project the project code
+	 * @throws IOException if the database connection could not be opened
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private void backfillProject(String project) throws IOException,
+			DatabaseException {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		List<String> tables;
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			Database db = dbLoader.initProjectDatabase(dbConn, project);
+			tables = db.getLocalTimeMillisBackfillTables();
+		} finally {
+			dbConn.close();
+		}
+		for (String table : tables) {
+			dbConn = dbLoader.openConnection();
+			try {
+				Database db = dbLoader.initProjectDatabase(dbConn, project);
+				logger.info("Start filling in {} in table {} of project {}",
+						LocalTimeColumn.LOCAL_TIME_MILLIS, table, project);
+				db.backfillLocalTimeMillis(table);
+				logger.info("Finished filling in {} in table {} of project {}",
+						LocalTimeColumn.LOCAL_TIME_MILLIS, table, project);
+			} finally {
+				dbConn.close();
+			}
+		}
+	}
+
+	private class BackfillTask extends AbstractScheduledTask {
+		public BackfillTask() {
+			setSchedule(new TaskSchedule.FixedDelay(BACKFILL_DELAY));
+		}
+
+		@Override
+		public String getName() {
+			return LocalTimeMillisBackfillService.class.getSimpleName() +
+					"." + getClass().getSimpleName();
+		}
+
+		@Override
+		public void run(Object context, String taskId, ZonedDateTime now,
+				ScheduleParams scheduleParams) throws TaskException {
+			runService();
+		}
+	}
+}
@@ -0,0 +1,543 @@
+package nl.rrd.senseeact.service.scheduled;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nl.rrd.senseeact.client.model.questionnaire.DateTimeSchedule;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireSchedulesRecord;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireSchedulesTable;
+import nl.rrd.senseeact.client.model.sample.Sample;
+import nl.rrd.senseeact.client.project.BaseProject;
+import nl.rrd.senseeact.client.project.ProjectRepository;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.senseeact.dao.listener.DatabaseEvent;
+import nl.rrd.senseeact.dao.listener.DatabaseListener;
+import nl.rrd.senseeact.dao.listener.DatabaseListenerRepository;
+import nl.rrd.senseeact.service.Configuration;
+import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.senseeact.service.model.QuestionnaireOccurrence;
+import nl.rrd.senseeact.service.model.QuestionnaireOccurrenceTable;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.TaskException;
+import nl.rrd.utils.schedule.*;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.*;
+import java.util.*;
+
+/**
+ * This service maintains an index of the upcoming occurrences of the
+ * questionnaire schedules. The schedules are defined by {@link
+ * QuestionnaireSchedulesRecord QuestionnaireSchedulesRecord}s in the project
+ * databases. For each questionnaire the latest record is used. Its
+ * schedules are expanded to {@link QuestionnaireOccurrence
+ * QuestionnaireOccurrence}s in the authentication database, from now until
+ * the number of days in {@link Configuration#QUESTIONNAIRE_OCCURRENCE_HORIZON
+ * Configuration.QUESTIONNAIRE_OCCURRENCE_HORIZON} (default 14).
+ *
+ * <p>The service listens to changes in the schedules tables. When a new
+ * schedules record is written, it only updates the future occurrences of
+ * that questionnaire. For other changes it updates the future occurrences of
+ * the project. Once a day it moves the horizon and deletes occurrences older
+ * than {@link #MAX_PAST_DAYS MAX_PAST_DAYS} days.</p>
+ *
+ * <p>Other services can call {@link #findDue(Database, String, long, long)
+ * findDue()} or {@link #findNotificationsDue(Database, String, long, long)
+ * findNotificationsDue()} to find the questionnaires that are due in a time
+ * range, without computing the schedules.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@Service
+public class QuestionnaireOccurrenceIndex {
+	private static final int DEFAULT_HORIZON_DAYS = 14;
+	private static final int MAX_PAST_DAYS = 7;
+
+	private static final Object LOCK = new Object();
+	private boolean closed = false;
+
+	// map from database name to project code
+	private Map<String,String> projectDbNames = new HashMap<>();
+	private IndexDatabaseListener dbListener = null;
+	private String updateTaskId = null;
+
+	// map from project code to questionnaire names, or null for all
+	// questionnaires
+	private Map<String,Set<String>> updateQueue = new LinkedHashMap<>();
+
+	/**
+	 * Finds the occurrences that start in the specified time range. If
+	 * "project" is null, it finds the occurrences of all projects. The result
+	 * is sorted by time.
+	 *
+	 * @param authDb the authentication database
+	 * @param project the project code or null
+	 * @param start the start of the range as a unix time in milliseconds
+	 * (inclusive)
+	 * @param end the end of the range as a unix time in milliseconds
+	 * (exclusive)
+	 * @return the occurrences
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public List<QuestionnaireOccurrence> findDue(Database authDb,
+			String project, long start, long end) throws DatabaseException {
+		return findInRange(authDb, project, "utcTime", start, end);
+	}
+
+	/**
+	 * Finds the occurrences whose notification should be sent in the
+	 * specified time range. If "project" is null, it finds the occurrences of
+	 * all projects. The result is sorted by notification time.
+	 *
+	 * @param authDb the authentication database
+	 * @param project the project code or null
+	 * @param start the start of the range as a unix time in milliseconds
+	 * (inclusive)
+	 * @param end the end of the range as a unix time in milliseconds
+	 * (exclusive)
+	 * @return the occurrences
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public List<QuestionnaireOccurrence> findNotificationsDue(
+			Database authDb, String project, long start, long end)
+			throws DatabaseException {
+		// notifyUtcTime is 0 if no notification should be sent
+		return findInRange(authDb, project, "notifyUtcTime",
+				Math.max(start, 1), end);
+	}
+
+	private List<QuestionnaireOccurrence> findInRange(Database authDb,
+			String project, String column, long start, long end)
+			throws DatabaseException {
+		List<DatabaseCriteria> andList = new ArrayList<>();
+		if (project != null)
+			andList.add(new DatabaseCriteria.Equal("project", project));
+		andList.add(new DatabaseCriteria.GreaterEqual(column, start));
+		andList.add(new DatabaseCriteria.LessThan(column, end));
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				andList.toArray(new DatabaseCriteria[0]));
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort(column, true)
+		};
+		return authDb.select(new QuestionnaireOccurrenceTable(), criteria, 0,
+				sort);
+	}
+
+	@PostConstruct
+	public void init() {
+		new Thread(this::runInit).start();
+	}
+
+	private void runInit() {
+		String serviceName = getClass().getSimpleName();
+		Logger logger = AppComponents.getLogger(serviceName);
+		logger.info("Start " + serviceName);
+		while (!closed) {
+			try {
+				initProjectListeners();
+				onInit();
+				return;
+			} catch (DatabaseException | IOException ex) {
+				if (closed)
+					return;
+				logger.error("Database error: " + ex.getMessage());
+			}
+			wait(10000);
+			if (closed)
+				return;
+			logger.info("Retry init");
+		}
+	}
+
+	private void wait(int ms) {
+		long now = System.currentTimeMillis();
+		long end = now + ms;
+		synchronized (LOCK) {
+			while (!closed && now < end) {
+				try {
+					LOCK.wait(end - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+				now = System.currentTimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * Opens the project databases that have a schedules table and registers
+	 * a listener for each database.
+	 *
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if the database connection can't be opened
+	 */
+	private void initProjectListeners() throws DatabaseException,
+			IOException {
+		Map<String,String> dbNames = new HashMap<>();
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			for (String project : getScheduleProjects()) {
+				Database projectDb = dbLoader.initProjectDatabase(dbConn,
+						project);
+				dbNames.put(projectDb.getName(), project);
+			}
+		} finally {
+			dbConn.close();
+		}
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			projectDbNames = dbNames;
+			dbListener = new IndexDatabaseListener();
+			DatabaseListenerRepository repository =
+					DatabaseListenerRepository.getInstance();
+			for (String dbName : dbNames.keySet()) {
+				repository.addDatabaseListener(dbName, dbListener);
+			}
+		}
+	}
+
+	/**
+	 * Returns the codes of the projects that have a database with a schedules
+	 * table.
+	 *
+	 * @return the project codes
+	 */
+	private List<String> getScheduleProjects() {
+		ProjectRepository projectRepo = AppComponents.get(
+				ProjectRepository.class);
+		List<String> result = new ArrayList<>();
+		for (BaseProject project : projectRepo.getProjects()) {
+			String code = project.getCode();
+			if (DatabaseLoader.getProjectDatabaseName(code) != null &&
+					project.findTable(QuestionnaireSchedulesTable.NAME) !=
+					null) {
+				result.add(code);
+			}
+		}
+		return result;
+	}
+
+	private void onInit() {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+			new Thread(this::runUpdateThread, getClass().getSimpleName() +
+					"-update").start();
+			TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
+			updateTaskId = scheduler.generateTaskId();
+			scheduler.scheduleTask(null, new UpdateTask(), updateTaskId);
+			for (String project : projectDbNames.values()) {
+				queueUpdate(project, null);
+			}
+			logger.info("Init completed");
+		}
+	}
+
+	/**
+	 * Queues an update of the future occurrences of a project. If
+	 * "questionnaire" is null, all questionnaires of the project are updated.
+	 *
+	 * @param project the project code
+	 * @param questionnaire the questionnaire name or null
+	 */
+	private void queueUpdate(String project, String questionnaire) {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			if (updateQueue.containsKey(project)) {
+				Set<String> questionnaires = updateQueue.get(project);
+				if (questionnaires == null)
+					return;
+				if (questionnaire == null)
+					updateQueue.put(project, null);
+				else
+					questionnaires.add(questionnaire);
+			} else if (questionnaire == null) {
+				updateQueue.put(project, null);
+			} else {
+				Set<String> questionnaires = new HashSet<>();
+				questionnaires.add(questionnaire);
+				updateQueue.put(project, questionnaires);
+			}
+			LOCK.notifyAll();
+		}
+	}
+
+	private void runUpdateThread() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		while (true) {
+			String project;
+			Set<String> questionnaires;
+			synchronized (LOCK) {
+				while (!closed && updateQueue.isEmpty()) {
+					try {
+						LOCK.wait();
+					} catch (InterruptedException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+				if (closed)
+					return;
+				project = updateQueue.keySet().iterator().next();
+				questionnaires = updateQueue.remove(project);
+			}
+			try {
+				updateProject(project, questionnaires);
+			} catch (DatabaseException | IOException ex) {
+				logger.error(String.format(
+						"Failed to update questionnaire occurrences of project %s: %s",
+						project, ex.getMessage()), ex);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the future occurrences of the specified questionnaires in a
+	 * project. If "questionnaires" is null, it replaces the future
+	 * occurrences of all questionnaires in the project.
+	 *
+	 * @param project the project code
+	 * @param questionnaires the questionnaire names or null
+	 * @throws DatabaseException if a database error occurs
+	 * @throws IOException if the database connection can't be opened
+	 */
+	private void updateProject(String project, Set<String> questionnaires)
+			throws DatabaseException, IOException {
+		long now = System.currentTimeMillis();
+		long end = now + getHorizonDays() * 24L * 3600000L;
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			Database authDb = dbLoader.initAuthDatabase(dbConn);
+			Database projectDb = dbLoader.initProjectDatabase(dbConn, project);
+			Map<String,QuestionnaireSchedulesRecord> records =
+					findLatestRecords(projectDb, questionnaires);
+			List<QuestionnaireOccurrence> occurrences = new ArrayList<>();
+			for (QuestionnaireSchedulesRecord record : records.values()) {
+				occurrences.addAll(createOccurrences(project, record, now,
+						end));
+			}
+			List<DatabaseCriteria> andList = new ArrayList<>();
+			andList.add(new DatabaseCriteria.Equal("project", project));
+			if (questionnaires != null) {
+				List<DatabaseCriteria> orList = new ArrayList<>();
+				for (String questionnaire : questionnaires) {
+					orList.add(new DatabaseCriteria.Equal("questionnaire",
+							questionnaire));
+				}
+				andList.add(new DatabaseCriteria.Or(orList.toArray(
+						new DatabaseCriteria[0])));
+			}
+			andList.add(new DatabaseCriteria.GreaterEqual("utcTime", now));
+			QuestionnaireOccurrenceTable table =
+					new QuestionnaireOccurrenceTable();
+			authDb.delete(table, new DatabaseCriteria.And(andList.toArray(
+					new DatabaseCriteria[0])));
+			if (!occurrences.isEmpty())
+				authDb.insert(table.getName(), occurrences);
+		} finally {
+			dbConn.close();
+		}
+	}
+
+	/**
+	 * Finds the latest schedules record for each of the specified
+	 * questionnaires. If "questionnaires" is null, it finds the latest record
+	 * for all questionnaires.
+	 *
+	 * @param projectDb the project database
+	 * @param questionnaires the questionnaire names or null
+	 * @return map from questionnaire name to the latest record
+	 * @throws DatabaseException if a database error occurs
+	 */
+	private Map<String,QuestionnaireSchedulesRecord> findLatestRecords(
+			Database projectDb, Set<String> questionnaires)
+			throws DatabaseException {
+		QuestionnaireSchedulesTable table = new QuestionnaireSchedulesTable();
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("utcTime", false)
+		};
+		Map<String,QuestionnaireSchedulesRecord> result = new HashMap<>();
+		if (questionnaires == null) {
+			List<QuestionnaireSchedulesRecord> records = projectDb.select(
+					table, null, 0, sort);
+			for (QuestionnaireSchedulesRecord record : records) {
+				if (!result.containsKey(record.getQuestionnaire()))
+					result.put(record.getQuestionnaire(), record);
+			}
+			return result;
+		}
+		for (String questionnaire : questionnaires) {
+			QuestionnaireSchedulesRecord record = projectDb.selectOne(table,
+					new DatabaseCriteria.Equal("questionnaire", questionnaire),
+					sort);
+			if (record != null)
+				result.put(questionnaire, record);
+		}
+		return result;
+	}
+
+	private List<QuestionnaireOccurrence> createOccurrences(String project,
+			QuestionnaireSchedulesRecord record, long start, long end) {
+		ZoneId tz = record.toTimeZone();
+		LocalDateTime localStart = Instant.ofEpochMilli(start).atZone(tz)
+				.toLocalDateTime();
+		LocalDateTime localEnd = Instant.ofEpochMilli(end).atZone(tz)
+				.toLocalDateTime();
+		List<QuestionnaireOccurrence> result = new ArrayList<>();
+		List<DateTimeSchedule> schedules = record.getSchedulesList();
+		for (int i = 0; i < schedules.size(); i++) {
+			DateTimeSchedule schedule = schedules.get(i);
+			for (LocalDateTime time : schedule.findOccurrences(localStart,
+					localEnd)) {
+				ZonedDateTime tzTime = time.atZone(tz);
+				long utcTime = tzTime.toInstant().toEpochMilli();
+				QuestionnaireOccurrence occurrence =
+						new QuestionnaireOccurrence();
+				occurrence.setProject(project);
+				occurrence.setQuestionnaire(record.getQuestionnaire());
+				occurrence.setSchedule(i);
+				occurrence.setUtcTime(utcTime);
+				occurrence.setLocalTime(time.format(Sample.LOCAL_TIME_FORMAT));
+				occurrence.setTimezone(tz.getId());
+				if (schedule.getDuration() != null) {
+					occurrence.setEndUtcTime(utcTime +
+							schedule.getDuration().getDuration());
+				}
+				if (schedule.getNotifyDelay() != null) {
+					occurrence.setNotifyUtcTime(utcTime +
+							schedule.getNotifyDelay().getDuration());
+				}
+				result.add(occurrence);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of days for which occurrences are computed. This is
+	 * read from {@link Configuration#QUESTIONNAIRE_OCCURRENCE_HORIZON
+	 * Configuration.QUESTIONNAIRE_OCCURRENCE_HORIZON}.
+	 *
+	 * @return the number of days
+	 */
+	private int getHorizonDays() {
+		Configuration config = AppComponents.get(Configuration.class);
+		return config.getIntProperty(
+				Configuration.QUESTIONNAIRE_OCCURRENCE_HORIZON,
+				DEFAULT_HORIZON_DAYS, 1);
+	}
+
+	/**
+	 * Deletes old occurrences and queues an update of all projects, so the
+	 * horizon moves forward.
+	 */
+	private void runDailyUpdate() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		long minTime = System.currentTimeMillis() -
+				MAX_PAST_DAYS * 24L * 3600000L;
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		try {
+			DatabaseConnection dbConn = dbLoader.openConnection();
+			try {
+				Database authDb = dbLoader.initAuthDatabase(dbConn);
+				authDb.delete(new QuestionnaireOccurrenceTable(),
+						new DatabaseCriteria.LessThan("utcTime", minTime));
+			} finally {
+				dbConn.close();
+			}
+		} catch (DatabaseException | IOException ex) {
+			logger.error("Database error: " + ex.getMessage(), ex);
+		}
+		Collection<String> projects;
+		synchronized (LOCK) {
+			projects = new ArrayList<>(projectDbNames.values());
+		}
+		for (String project : projects) {
+			queueUpdate(project, null);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			String serviceName = getClass().getSimpleName();
+			Logger logger = AppComponents.getLogger(serviceName);
+			logger.info("Stop " + serviceName);
+			closed = true;
+			updateQueue.clear();
+			if (dbListener != null) {
+				DatabaseListenerRepository repository =
+						DatabaseListenerRepository.getInstance();
+				for (String dbName : projectDbNames.keySet()) {
+					repository.removeDatabaseListener(dbName, dbListener);
+				}
+				dbListener = null;
+			}
+			if (updateTaskId != null) {
+				TaskScheduler scheduler = AppComponents.get(
+						TaskScheduler.class);
+				scheduler.cancelTask(null, updateTaskId);
+				updateTaskId = null;
+			}
+			LOCK.notifyAll();
+		}
+	}
+
+	private class IndexDatabaseListener implements DatabaseListener {
+		@Override
+		public void onDatabaseEvent(DatabaseEvent event) {
+			if (!QuestionnaireSchedulesTable.NAME.equals(event.getTable()))
+				return;
+			String project;
+			synchronized (LOCK) {
+				project = projectDbNames.get(event.getDatabase());
+			}
+			if (project == null)
+				return;
+			if (!(event instanceof DatabaseEvent.Insert insert)) {
+				queueUpdate(project, null);
+				return;
+			}
+			for (Map<String,Object> values : insert.getValues()) {
+				Object questionnaire = values.get("questionnaire");
+				if (questionnaire instanceof String str)
+					queueUpdate(project, str);
+				else
+					queueUpdate(project, null);
+			}
+		}
+	}
+
+	private class UpdateTask extends AbstractScheduledTask {
+		public UpdateTask() {
+			LocalDate today = LocalDate.now();
+			TaskSchedule.TimeSchedule schedule = new TaskSchedule.TimeSchedule(
+					today, LocalTime.MIN);
+			schedule.setRepeatDate(new DateDuration(1, DateUnit.DAY));
+			setSchedule(schedule);
+		}
+
+		@Override
+		public String getName() {
+			return QuestionnaireOccurrenceIndex.class.getSimpleName() + "." +
+					getClass().getSimpleName();
+		}
+
+		@Override
+		public void run(Object context, String taskId, ZonedDateTime now,
+				ScheduleParams scheduleParams) throws TaskException {
+			runDailyUpdate();
+		}
+	}
+}
@@ -4,11 +4,15 @@ import nl.rrd.utils.AppComponents;
 import nl.rrd.utils.datetime.DateTimeUtils;
 import nl.rrd.utils.exception.DatabaseException;
 import nl.rrd.senseeact.client.model.SystemStat;
+import nl.rrd.senseeact.client.model.SystemStatRollup;
 import nl.rrd.senseeact.client.model.SystemStatTable;
 import nl.rrd.senseeact.dao.Database;
 import nl.rrd.senseeact.dao.DatabaseConnection;
 import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.service.Configuration;
 import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.senseeact.service.PushNotificationService;
+import nl.rrd.senseeact.service.RateLimiter;
 import org.slf4j.Logger;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -22,7 +26,9 @@ import java.time.LocalDate;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,13 +38,12 @@ public class SystemResourceMonitor {
 			SystemResourceMonitor.class.getSimpleName();
 	private static final Object LOCK = new Object();
 	
-	private Logger logger;
+	private Logger logger = AppComponents.getLogger(LOGTAG);
 
 	private LocalDate lastCleanDate = null;
 	
 	@Scheduled(fixedDelay=900000)
 	public void runTask() {
-		logger = AppComponents.getLogger(LOGTAG);
 		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
 		try {
 			DatabaseConnection dbConn = dbLoader.openConnection();
@@ -108,7 +113,41 @@ public class SystemResourceMonitor {
 						descr + ": " + ex.getMessage());
 			}
 		}
+		addPushStats(stats, now);
+		addRateLimitStats(stats, now);
 		authDb.insert(SystemStatTable.NAME, stats);
+		new SystemStatRollupWriter().addStats(authDb, stats);
+	}
+
+	private void addPushStats(List<SystemStat> stats, ZonedDateTime now) {
+		PushNotificationService pushService = AppComponents.get(
+				PushNotificationService.class);
+		PushNotificationService.DeliveryStats pushStats =
+				pushService.getDeliveryStats();
+		stats.add(new SystemStat(SystemStat.Name.PUSH_QUEUE_SIZE,
+				pushStats.getQueueSize(), now));
+		stats.add(new SystemStat(SystemStat.Name.PUSH_DELIVERY_FAILURES,
+				pushStats.getFailedCount(), now));
+		if (pushStats.getAvgLatency() != null) {
+			stats.add(new SystemStat(SystemStat.Name.PUSH_DELIVERY_LATENCY_AVG,
+					pushStats.getAvgLatency(), now));
+			stats.add(new SystemStat(SystemStat.Name.PUSH_DELIVERY_LATENCY_MAX,
+					pushStats.getMaxLatency(), now));
+		}
+	}
+
+	private void addRateLimitStats(List<SystemStat> stats,
+			ZonedDateTime now) {
+		RateLimiter limiter = AppComponents.get(RateLimiter.class);
+		Map<RateLimiter.RequestClass,RateLimiter.Stats> limitStats =
+				limiter.getStats();
+		for (RateLimiter.RequestClass requestClass : limitStats.keySet()) {
+			RateLimiter.Stats classStats = limitStats.get(requestClass);
+			stats.add(new SystemStat(SystemStat.Name.RATE_LIMIT_ADMITTED,
+					classStats.getAdmitted(), now, requestClass.toString()));
+			stats.add(new SystemStat(SystemStat.Name.RATE_LIMIT_REJECTED,
+					classStats.getRejected(), now, requestClass.toString()));
+		}
 	}
 
 	private void cleanData(LocalDate today) {
@@ -128,20 +167,68 @@ public class SystemResourceMonitor {
 		}
 	}
 
-	private void doCleanData(Database authDb, LocalDate today)
+	void doCleanData(Database authDb, LocalDate today)
 			throws DatabaseException {
-		SystemStatTable table = new SystemStatTable();
-		LocalDate startDate = today.minusDays(30);
-		long startMs = startDate.atStartOfDay(ZoneId.systemDefault())
-				.toInstant().toEpochMilli();
-		DatabaseCriteria criteria = new DatabaseCriteria.LessThan(
-				"utcTime", startMs);
-		authDb.delete(table, criteria);
-		logger.info("Cleaned system stats before " +
-				startDate.format(DateTimeUtils.DATE_FORMAT));
+		Map<SystemStatRollup.Resolution,Integer> retentions =
+				getRetentions();
+		SystemStatRollupWriter rollupWriter = new SystemStatRollupWriter();
+		for (SystemStatRollup.Resolution resolution : retentions.keySet()) {
+			int days = retentions.get(resolution);
+			if (days < 0)
+				continue;
+			LocalDate startDate = today.minusDays(days);
+			long startMs = startDate.atStartOfDay(ZoneId.systemDefault())
+					.toInstant().toEpochMilli();
+			if (resolution == SystemStatRollup.Resolution.RAW) {
+				DatabaseCriteria criteria = new DatabaseCriteria.LessThan(
+						"utcTime", startMs);
+				authDb.delete(new SystemStatTable(), criteria);
+			} else {
+				rollupWriter.deleteBefore(authDb, resolution, startMs);
+			}
+			logger.info(String.format("Cleaned system stats (%s) before %s",
+					resolution.name().toLowerCase(),
+					startDate.format(DateTimeUtils.DATE_FORMAT)));
+		}
 		synchronized (LOCK) {
 			if (lastCleanDate == null || lastCleanDate.isBefore(today))
 				lastCleanDate = today;
 		}
 	}
+
+	/**
+	 * Returns the number of days that system stats are kept at each
+	 * resolution. The defaults are 30 days for raw stats, 7 days for minute
+	 * rollups, 90 days for hour rollups and 730 days for day rollups. They can
+	 * be overridden with {@link Configuration#SYSTEM_STAT_RETENTION
+	 * Configuration.SYSTEM_STAT_RETENTION}, for example
+	 * "raw:30,minute:7,hour:90,day:-1". A negative value means that the stats
+	 * are kept forever.
+	 *
+	 * @return the retention in days for each resolution
+	 */
+	Map<SystemStatRollup.Resolution,Integer> getRetentions() {
+		Map<SystemStatRollup.Resolution,Integer> result =
+				new LinkedHashMap<>();
+		result.put(SystemStatRollup.Resolution.RAW, 30);
+		result.put(SystemStatRollup.Resolution.MINUTE, 7);
+		result.put(SystemStatRollup.Resolution.HOUR, 90);
+		result.put(SystemStatRollup.Resolution.DAY, 730);
+		Configuration config = AppComponents.get(Configuration.class);
+		Map<String,Integer> retentions = config.getIntMapProperty(
+				Configuration.SYSTEM_STAT_RETENTION);
+		for (String key : retentions.keySet()) {
+			SystemStatRollup.Resolution resolution;
+			try {
+				resolution = SystemStatRollup.Resolution.valueOf(
+						key.toUpperCase());
+			} catch (IllegalArgumentException ex) {
+				throw config.createInvalidValueException(
+						Configuration.SYSTEM_STAT_RETENTION,
+						config.get(Configuration.SYSTEM_STAT_RETENTION), ex);
+			}
+			result.put(resolution, retentions.get(key));
+		}
+		return result;
+	}
 }
@@ -0,0 +1,89 @@
+package nl.rrd.senseeact.service.scheduled;
+
+import nl.rrd.senseeact.client.model.SystemStat;
+import nl.rrd.senseeact.client.model.SystemStatRollup;
+import nl.rrd.senseeact.client.model.SystemStatRollupTable;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseMerge;
+import nl.rrd.utils.exception.DatabaseException;
+
+import java.util.*;
+
+/**
+ * This class maintains the {@link SystemStatRollup SystemStatRollup}s. When
+ * new {@link SystemStat SystemStat}s are written, they should also be passed
+ * to {@link #addStats(Database, List) addStats()}. That method adds them to
+ * the rollups at each resolution.
+ *
+ * <p>Each rollup is written with {@link Database#merge(
+ * nl.rrd.senseeact.dao.DatabaseTableDef, nl.rrd.senseeact.dao.DatabaseObject,
+ * List) Database.merge()}, so it is inserted or merged into the existing
+ * rollup in one atomic statement. Therefore several threads or service
+ * instances can add statistics at the same time.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+public class SystemStatRollupWriter {
+	private static final List<DatabaseMerge> MERGES = List.of(
+			new DatabaseMerge.Min("min"),
+			new DatabaseMerge.Max("max"),
+			new DatabaseMerge.Average("avg", "count"),
+			new DatabaseMerge.Sum("count"));
+
+	/**
+	 * Adds the specified statistics to the rollups at each resolution.
+	 *
+	 * @param authDb the authentication database
+	 * @param stats the statistics
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void addStats(Database authDb, List<SystemStat> stats)
+			throws DatabaseException {
+		for (SystemStatRollup.Resolution resolution :
+				SystemStatRollup.Resolution.values()) {
+			if (resolution != SystemStatRollup.Resolution.RAW)
+				addStats(authDb, resolution, stats);
+		}
+	}
+
+	private void addStats(Database authDb,
+			SystemStatRollup.Resolution resolution, List<SystemStat> stats)
+			throws DatabaseException {
+		SystemStatRollupTable table = new SystemStatRollupTable(resolution);
+		Map<String,SystemStatRollup> rollups = new LinkedHashMap<>();
+		for (SystemStat stat : stats) {
+			long bucket = resolution.getBucketStart(stat.getUtcTime());
+			String id = SystemStatRollup.getKeyId(stat.getName(),
+					stat.getExtra(), bucket);
+			SystemStatRollup rollup = rollups.get(id);
+			if (rollup == null) {
+				rollup = new SystemStatRollup(stat, bucket);
+				rollup.setId(id);
+				rollups.put(id, rollup);
+			} else {
+				rollup.add(stat);
+			}
+		}
+		for (SystemStatRollup rollup : rollups.values()) {
+			authDb.merge(table, rollup, MERGES);
+		}
+	}
+
+	/**
+	 * Deletes the rollups at the specified resolution with a time before the
+	 * specified time.
+	 *
+	 * @param authDb the authentication database
+	 * @param resolution the resolution
+	 * @param beforeTime the time as a unix time in milliseconds
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public void deleteBefore(Database authDb,
+			SystemStatRollup.Resolution resolution, long beforeTime)
+			throws DatabaseException {
+		DatabaseCriteria criteria = new DatabaseCriteria.LessThan(
+				"utcTime", beforeTime);
+		authDb.delete(new SystemStatRollupTable(resolution), criteria);
+	}
+}
@@ -30,7 +30,9 @@ import java.text.ParseException;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class can validate SSO JWT tokens in a specific request header. Tokens
@@ -38,13 +40,19 @@ import java.util.List;
  * multiple public keys, then the token is valid if it can be validated with
  * one of the public keys.
  *
+ * <p>The public keys are parsed once when they are added. A public key can be
+ * added with a key ID. If a token has a "kid" header that matches the key ID
+ * of a public key, then the token is only validated with that key. Otherwise
+ * it is validated with each public key in turn.</p>
+ *
  * @author Dennis Hofs (RRD)
  */
 public class SSOTokenJwt extends SSOToken {
 	private static final int MAX_TOKEN_VALID_MARGIN = 10; // minutes
 
 	private String tokenHeader;
-	private List<String> publicKeys = new ArrayList<>();
+	private List<JWSVerifier> verifiers = new ArrayList<>();
+	private Map<String,JWSVerifier> keyIdVerifiers = new HashMap<>();
 
 	/**
 	 * Constructs a new instance. SSO tokens for this instance will only be
@@ -73,16 +81,54 @@ public class SSOTokenJwt extends SSOToken {
 			String publicKey) {
 		super(projects);
 		this.tokenHeader = tokenHeader;
-		this.publicKeys.add(publicKey);
+		addPublicKey(publicKey);
 	}
 
 	/**
-	 * Adds a public key.
+	 * Adds a public key. This should be a Base64 string of an X.509 encoded
+	 * RSA public key.
 	 *
 	 * @param publicKey the public key
 	 */
 	public void addPublicKey(String publicKey) {
-		this.publicKeys.add(publicKey);
+		addPublicKey(null, publicKey);
+	}
+
+	/**
+	 * Adds a public key with a key ID. If a token has a "kid" header that
+	 * matches the key ID, then it will be validated with this key only. The
+	 * public key should be a Base64 string of an X.509 encoded RSA public key.
+	 *
+	 * @param keyId the key ID or null
+	 * @param publicKey the public key
+	 */
+	public void addPublicKey(String keyId, String publicKey) {
+		JWSVerifier verifier = createVerifier(publicKey);
+		verifiers.add(verifier);
+		if (keyId != null)
+			keyIdVerifiers.put(keyId, verifier);
+	}
+
+	/**
+	 * Parses the specified public key and creates a verifier for it.
+	 *
+	 * @param publicKey the Base64 string of the public key
+	 * @return the verifier
+	 */
+	private JWSVerifier createVerifier(String publicKey) {
+		RSAPublicKey pubKey;
+		try {
+			byte[] encPubKey = Base64.decodeBase64(publicKey.getBytes(
+					StandardCharsets.UTF_8));
+			KeyFactory factory = KeyFactory.getInstance("RSA");
+			pubKey = (RSAPublicKey)factory.generatePublic(
+					new X509EncodedKeySpec(encPubKey));
+		} catch (NoSuchAlgorithmException | InvalidKeySpecException ex) {
+			throw new RuntimeException(String.format(
+					"Can't get public key to verify token in %s: ",
+					tokenHeader) + ex.getMessage(), ex);
+		}
+		return new RSASSAVerifier(pubKey);
 	}
 
 	@Override
@@ -154,7 +200,8 @@ public class SSOTokenJwt extends SSOToken {
 
 	/**
 	 * Tries to parse the token string and validate it with one of the public
-	 * keys.
+	 * keys. If the token has a key ID that matches one of the public keys,
+	 * then it's only validated with that key.
 	 *
 	 * @param token the token string
 	 * @return the token details
@@ -162,64 +209,47 @@ public class SSOTokenJwt extends SSOToken {
 	 * public keys defined
 	 */
 	private JWTClaimsSet parseToken(String token) throws UnauthorizedException {
-		if (publicKeys.isEmpty())
+		if (verifiers.isEmpty())
 			throw new RuntimeException("No public keys found");
-		UnauthorizedException exception = null;
-		for (String publicKey : publicKeys) {
-			try {
-				return parseTokenForKey(token, publicKey);
-			} catch (UnauthorizedException ex) {
-				if (exception == null)
-					exception = ex;
-			}
-		}
-		throw exception;
-	}
-
-	/**
-	 * Tries to parse the token string and validate it with the specified public
-	 * key.
-	 *
-	 * @param token the token string
-	 * @param publicKey the public key
-	 * @return the token details
-	 * @throws UnauthorizedException if the token is invalid
-	 */
-	private JWTClaimsSet parseTokenForKey(String token, String publicKey)
-			throws UnauthorizedException {
 		Logger logger = AppComponents.getLogger(
 				QueryRunner.class.getSimpleName());
-		RSAPublicKey pubKey;
-		try {
-			byte[] encPubKey = Base64.decodeBase64(publicKey.getBytes(
-					StandardCharsets.UTF_8));
-			KeyFactory factory = KeyFactory.getInstance("RSA");
-			pubKey = (RSAPublicKey)factory.generatePublic(
-					new X509EncodedKeySpec(encPubKey));
-		} catch (NoSuchAlgorithmException | InvalidKeySpecException ex) {
-			throw new RuntimeException(String.format(
-					"Can't get public key to verify token in %s: ",
-					tokenHeader) + ex.getMessage(), ex);
-		}
-		JWSVerifier verifier = new RSASSAVerifier(pubKey);
-		boolean verified;
+		SignedJWT signedJwt;
 		JWTClaimsSet claims;
 		try {
-			SignedJWT signedJwt = SignedJWT.parse(token);
-			verified = signedJwt.verify(verifier);
+			signedJwt = SignedJWT.parse(token);
 			claims = signedJwt.getJWTClaimsSet();
-		} catch (JOSEException | ParseException ex) {
+		} catch (ParseException ex) {
 			logger.error(String.format("Invalid JWT token in %s: ",
 					tokenHeader) + ex.getMessage());
 			throw new UnauthorizedException(ErrorCode.AUTH_TOKEN_INVALID,
 					"Authentication token invalid");
 		}
-		if (!verified) {
+		String keyId = signedJwt.getHeader().getKeyID();
+		JWSVerifier keyIdVerifier = keyId == null ? null :
+				keyIdVerifiers.get(keyId);
+		List<JWSVerifier> tryVerifiers;
+		if (keyIdVerifier != null)
+			tryVerifiers = List.of(keyIdVerifier);
+		else
+			tryVerifiers = verifiers;
+		String error = null;
+		for (JWSVerifier verifier : tryVerifiers) {
+			try {
+				if (signedJwt.verify(verifier))
+					return claims;
+			} catch (JOSEException ex) {
+				if (error == null)
+					error = ex.getMessage();
+			}
+		}
+		if (error != null) {
+			logger.error(String.format("Invalid JWT token in %s: ",
+					tokenHeader) + error);
+		} else {
 			logger.error(String.format("Invalid JWT token in %s", tokenHeader));
-			throw new UnauthorizedException(ErrorCode.AUTH_TOKEN_INVALID,
-					"Authentication token invalid");
 		}
-		return claims;
+		throw new UnauthorizedException(ErrorCode.AUTH_TOKEN_INVALID,
+				"Authentication token invalid");
 	}
 
 	/**
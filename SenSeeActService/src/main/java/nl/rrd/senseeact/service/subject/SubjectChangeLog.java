@@ -0,0 +1,469 @@
+package nl.rrd.senseeact.service.subject;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import nl.rrd.senseeact.client.model.Role;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.senseeact.dao.listener.DatabaseEvent;
+import nl.rrd.senseeact.dao.listener.DatabaseListener;
+import nl.rrd.senseeact.dao.listener.DatabaseListenerRepository;
+import nl.rrd.senseeact.service.DatabaseLoader;
+import nl.rrd.senseeact.service.UserListener;
+import nl.rrd.senseeact.service.UserListenerRepository;
+import nl.rrd.senseeact.service.model.GroupMemberTable;
+import nl.rrd.senseeact.service.model.ProjectUserAccessTable;
+import nl.rrd.senseeact.service.model.SubjectChange;
+import nl.rrd.senseeact.service.model.SubjectChangeTable;
+import nl.rrd.senseeact.service.model.User;
+import nl.rrd.senseeact.service.model.UserProjectTable;
+import nl.rrd.utils.AppComponents;
+import nl.rrd.utils.exception.DatabaseException;
+import nl.rrd.utils.exception.TaskException;
+import nl.rrd.utils.schedule.*;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+/**
+ * This service maintains a log of changes that may affect the subject lists
+ * of projects. Clients can read the subject list once and then only read the
+ * changes since the version of that list. See {@link SubjectChange
+ * SubjectChange}.
+ *
+ * <p>The service listens to writes in the tables {@link UserProjectTable
+ * UserProjectTable}, {@link ProjectUserAccessTable ProjectUserAccessTable}
+ * and {@link GroupMemberTable GroupMemberTable}, and to profile, role and
+ * active changes of users. For each change it logs the affected user. If the
+ * affected user can't be derived from the write (for example a delete by
+ * group ID), it logs a change without a subject, which means that clients
+ * should reload the complete list.</p>
+ *
+ * <p>Versions are derived from the time in microseconds and increase with
+ * each change. The changes are written in a background thread and on
+ * multiple nodes in a cluster. Therefore a version that is returned to
+ * clients is at most {@link #SAFETY_MARGIN SAFETY_MARGIN} ms before the
+ * current time, so that changes that are still being written are not
+ * skipped. This means that clients may receive the same change more than
+ * once. Changes are kept for {@link #RETENTION_DAYS RETENTION_DAYS}
+ * days.</p>
+ *
+ * @author Dennis Hofs (RRD)
+ */
+@Service
+public class SubjectChangeLog {
+	public static final int SAFETY_MARGIN = 60000;
+	public static final int RETENTION_DAYS = 30;
+
+	private static final Object LOCK = new Object();
+	private boolean closed = false;
+
+	private String authDbName = null;
+	private ChangeListener changeListener = null;
+	private String cleanTaskId = null;
+	private long lastVersion = 0;
+	private List<SubjectChange> writeQueue = new ArrayList<>();
+
+	/**
+	 * Returns the version that a client should store when it reads the
+	 * complete subject list. This should be called before reading the list.
+	 * It is also the upper bound that should be passed to {@link
+	 * #findChanges(Database, String, long, long, int) findChanges()}.
+	 *
+	 * @return the version
+	 */
+	public long getListVersion() {
+		return getSafeVersion();
+	}
+
+	/**
+	 * Returns whether changes since the specified version are still
+	 * available. If this method returns false, the client should reload the
+	 * complete subject list.
+	 *
+	 * @param since the version
+	 * @return true if the changes since the version are available, false
+	 * otherwise
+	 */
+	public boolean isAvailable(long since) {
+		long minTime = System.currentTimeMillis() -
+				RETENTION_DAYS * 24L * 3600000L;
+		return since >= minTime * 1000L;
+	}
+
+	/**
+	 * Finds the changes for the specified project since the specified
+	 * version. This includes changes that apply to all projects. The result
+	 * is sorted by version. If the result has "limit" changes, there may be
+	 * more changes.
+	 *
+	 * <p>The changes are limited to the version "until", which should be
+	 * obtained from {@link #getListVersion() getListVersion()}. Changes after
+	 * that version may still be followed by changes with a lower version
+	 * that are being written, so they are returned in a later call.</p>
+	 *
+	 * @param authDb the authentication database
+	 * @param project the project code
+	 * @param since the version (exclusive)
+	 * @param until the maximum version (inclusive)
+	 * @param limit the maximum number of changes
+	 * @return the changes
+	 * @throws DatabaseException if a database error occurs
+	 */
+	public List<SubjectChange> findChanges(Database authDb, String project,
+			long since, long until, int limit) throws DatabaseException {
+		DatabaseCriteria criteria = new DatabaseCriteria.And(
+				new DatabaseCriteria.GreaterThan("version", since),
+				new DatabaseCriteria.LessEqual("version", until),
+				new DatabaseCriteria.Or(
+						new DatabaseCriteria.Equal("project", project),
+						new DatabaseCriteria.Equal("project", "")
+				)
+		);
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("version", true)
+		};
+		return authDb.select(new SubjectChangeTable(), criteria, limit, sort);
+	}
+
+	/**
+	 * Returns the version that a client should store after reading the
+	 * specified changes from {@link
+	 * #findChanges(Database, String, long, long, int) findChanges()}. If the
+	 * result was complete, the version is moved forward to "until", so old
+	 * versions don't expire when there are no changes. The version is never
+	 * after "until".
+	 *
+	 * @param since the version that was passed to findChanges()
+	 * @param until the maximum version that was passed to findChanges()
+	 * @param changes the changes
+	 * @param complete true if there are no more changes, false if the result
+	 * was limited
+	 * @return the version
+	 */
+	public long getNextVersion(long since, long until,
+			List<SubjectChange> changes, boolean complete) {
+		long version = since;
+		if (!changes.isEmpty())
+			version = changes.get(changes.size() - 1).getVersion();
+		if (complete)
+			version = Math.max(version, until);
+		return version;
+	}
+
+	private long getSafeVersion() {
+		return (System.currentTimeMillis() - SAFETY_MARGIN) * 1000L;
+	}
+
+	@PostConstruct
+	public void init() {
+		new Thread(this::runInit).start();
+	}
+
+	private void runInit() {
+		String serviceName = getClass().getSimpleName();
+		Logger logger = AppComponents.getLogger(serviceName);
+		logger.info("Start " + serviceName);
+		while (!closed) {
+			try {
+				doInit();
+				return;
+			} catch (DatabaseException | IOException ex) {
+				if (closed)
+					return;
+				logger.error("Database error: " + ex.getMessage());
+			}
+			wait(10000);
+			if (closed)
+				return;
+			logger.info("Retry init");
+		}
+	}
+
+	private void wait(int ms) {
+		long now = System.currentTimeMillis();
+		long end = now + ms;
+		synchronized (LOCK) {
+			while (!closed && now < end) {
+				try {
+					LOCK.wait(end - now);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+				now = System.currentTimeMillis();
+			}
+		}
+	}
+
+	private void doInit() throws DatabaseException, IOException {
+		String dbName;
+		SubjectChange last;
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			Database authDb = dbLoader.initAuthDatabase(dbConn);
+			dbName = authDb.getName();
+			last = authDb.selectOne(new SubjectChangeTable(), null,
+					new DatabaseSort[] { new DatabaseSort("version", false) });
+		} finally {
+			dbConn.close();
+		}
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+			if (last != null)
+				lastVersion = last.getVersion();
+			authDbName = dbName;
+			changeListener = new ChangeListener();
+			DatabaseListenerRepository.getInstance().addDatabaseListener(
+					authDbName, changeListener);
+			UserListenerRepository.getInstance().addUserListener(
+					changeListener);
+			new Thread(this::runWriteThread, getClass().getSimpleName() +
+					"-write").start();
+			TaskScheduler scheduler = AppComponents.get(TaskScheduler.class);
+			cleanTaskId = scheduler.generateTaskId();
+			scheduler.scheduleTask(null, new CleanTask(), cleanTaskId);
+			logger.info("Init completed");
+		}
+	}
+
+	/**
+	 * Queues a change to be written to the log.
+	 *
+	 * @param project the project code or an empty string if the change
+	 * applies to all projects
+	 * @param subject the user ID of the affected user or an empty string if
+	 * not known
+	 */
+	private void queueChange(String project, String subject) {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			SubjectChange change = new SubjectChange();
+			change.setProject(project);
+			change.setSubject(subject);
+			change.setUtcTime(System.currentTimeMillis());
+			writeQueue.add(change);
+			LOCK.notifyAll();
+		}
+	}
+
+	private void runWriteThread() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		while (true) {
+			List<SubjectChange> changes;
+			synchronized (LOCK) {
+				while (!closed && writeQueue.isEmpty()) {
+					try {
+						LOCK.wait();
+					} catch (InterruptedException ex) {
+						throw new RuntimeException(ex);
+					}
+				}
+				if (closed)
+					return;
+				changes = writeQueue;
+				writeQueue = new ArrayList<>();
+				long now = System.currentTimeMillis();
+				for (SubjectChange change : changes) {
+					lastVersion = Math.max(lastVersion + 1, now * 1000L);
+					change.setVersion(lastVersion);
+				}
+			}
+			try {
+				writeChanges(changes);
+			} catch (DatabaseException | IOException ex) {
+				logger.error("Failed to write subject changes: " +
+						ex.getMessage(), ex);
+			}
+		}
+	}
+
+	private void writeChanges(List<SubjectChange> changes)
+			throws DatabaseException, IOException {
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		DatabaseConnection dbConn = dbLoader.openConnection();
+		try {
+			Database authDb = dbLoader.initAuthDatabase(dbConn);
+			authDb.insert(SubjectChangeTable.NAME, changes);
+		} finally {
+			dbConn.close();
+		}
+	}
+
+	private void runClean() {
+		Logger logger = AppComponents.getLogger(getClass().getSimpleName());
+		long minTime = System.currentTimeMillis() -
+				RETENTION_DAYS * 24L * 3600000L;
+		DatabaseLoader dbLoader = DatabaseLoader.getInstance();
+		try {
+			DatabaseConnection dbConn = dbLoader.openConnection();
+			try {
+				Database authDb = dbLoader.initAuthDatabase(dbConn);
+				authDb.delete(new SubjectChangeTable(),
+						new DatabaseCriteria.LessThan("version",
+						minTime * 1000L));
+			} finally {
+				dbConn.close();
+			}
+		} catch (DatabaseException | IOException ex) {
+			logger.error("Database error: " + ex.getMessage(), ex);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		synchronized (LOCK) {
+			if (closed)
+				return;
+			String serviceName = getClass().getSimpleName();
+			Logger logger = AppComponents.getLogger(serviceName);
+			logger.info("Stop " + serviceName);
+			closed = true;
+			if (changeListener != null) {
+				DatabaseListenerRepository.getInstance()
+						.removeDatabaseListener(authDbName, changeListener);
+				UserListenerRepository.getInstance().removeUserListener(
+						changeListener);
+				changeListener = null;
+			}
+			if (cleanTaskId != null) {
+				TaskScheduler scheduler = AppComponents.get(
+						TaskScheduler.class);
+				scheduler.cancelTask(null, cleanTaskId);
+				cleanTaskId = null;
+			}
+			LOCK.notifyAll();
+		}
+	}
+
+	private class ChangeListener implements DatabaseListener, UserListener {
+		@Override
+		public void onDatabaseEvent(DatabaseEvent event) {
+			String projectColumn;
+			String subjectColumn;
+			switch (event.getTable()) {
+			case UserProjectTable.NAME:
+				projectColumn = "projectCode";
+				subjectColumn = "user";
+				break;
+			case ProjectUserAccessTable.NAME:
+				projectColumn = "project";
+				subjectColumn = "subject";
+				break;
+			case GroupMemberTable.NAME:
+				projectColumn = null;
+				subjectColumn = "user";
+				break;
+			default:
+				return;
+			}
+			List<Map<String,?>> valuesList = new ArrayList<>();
+			if (event instanceof DatabaseEvent.Insert insert) {
+				valuesList.addAll(insert.getValues());
+			} else if (event instanceof DatabaseEvent.Update update) {
+				Map<String,Object> values = new HashMap<>(
+						findEqualValues(update.getCriteria()));
+				values.putAll(update.getValues());
+				valuesList.add(values);
+			} else if (event instanceof DatabaseEvent.Delete delete) {
+				valuesList.add(findEqualValues(delete.getCriteria()));
+			}
+			for (Map<String,?> values : valuesList) {
+				String project = "";
+				if (projectColumn != null &&
+						values.get(projectColumn) instanceof String str) {
+					project = str;
+				}
+				String subject = "";
+				if (values.get(subjectColumn) instanceof String str)
+					subject = str;
+				queueChange(project, subject);
+			}
+		}
+
+		/**
+		 * Returns the values of the columns that the specified criteria
+		 * require to be equal to a value. This only looks at an Equal
+		 * criteria or Equal criteria in an And criteria.
+		 *
+		 * @param criteria the criteria or null
+		 * @return map from column name to value
+		 */
+		private Map<String,Object> findEqualValues(DatabaseCriteria criteria) {
+			Map<String,Object> result = new HashMap<>();
+			if (criteria instanceof DatabaseCriteria.Equal equal) {
+				result.put(equal.getColumn(), equal.getValue());
+			} else if (criteria instanceof DatabaseCriteria.And and) {
+				for (DatabaseCriteria operand : and.getOperands()) {
+					if (operand instanceof DatabaseCriteria.Equal equal)
+						result.put(equal.getColumn(), equal.getValue());
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public void userProfileUpdated(User user, User oldProfile) {
+			queueChange("", user.getUserid());
+		}
+
+		@Override
+		public void userRoleChanged(User user, Role oldRole) {
+			queueChange("", user.getUserid());
+		}
+
+		@Override
+		public void userActiveChanged(User user) {
+			queueChange("", user.getUserid());
+		}
+
+		@Override
+		public void userAddedToProject(User user, String project, Role role) {
+		}
+
+		@Override
+		public void userRemovedFromProject(User user, String project,
+				Role role) {
+		}
+
+		@Override
+		public void userAddedAsSubject(User user, User profUser) {
+		}
+
+		@Override
+		public void userRemovedAsSubject(User user, User profUser) {
+		}
+	}
+
+	private class CleanTask extends AbstractScheduledTask {
+		public CleanTask() {
+			LocalDate today = LocalDate.now();
+			TaskSchedule.TimeSchedule schedule = new TaskSchedule.TimeSchedule(
+					today, LocalTime.MIN);
+			schedule.setRepeatDate(new DateDuration(1, DateUnit.DAY));
+			setSchedule(schedule);
+		}
+
+		@Override
+		public String getName() {
+			return SubjectChangeLog.class.getSimpleName() + "." +
+					getClass().getSimpleName();
+		}
+
+		@Override
+		public void run(Object context, String taskId, ZonedDateTime now,
+				ScheduleParams scheduleParams) throws TaskException {
+			runClean();
+		}
+	}
+}
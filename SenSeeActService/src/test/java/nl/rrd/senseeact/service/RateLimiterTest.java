@@ -0,0 +1,96 @@
+package nl.rrd.senseeact.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class RateLimiterTest {
+
+	@Test
+	public void testRefill() {
+		// 2 tokens per second, burst 3
+		TestRateLimiter limiter = new TestRateLimiter("recordRead:2:3:10");
+		RateLimiter.RequestClass reqClass =
+				RateLimiter.RequestClass.RECORD_READ;
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+			limiter.release("user1", reqClass);
+		}
+		Assert.assertEquals(500, limiter.tryAcquire("user1", reqClass));
+		limiter.now += 250;
+		Assert.assertEquals(250, limiter.tryAcquire("user1", reqClass));
+		limiter.now += 250;
+		Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+		limiter.release("user1", reqClass);
+		Assert.assertEquals(500, limiter.tryAcquire("user1", reqClass));
+
+		// the bucket is filled up to the burst
+		limiter.now += 10000;
+		for (int i = 0; i < 3; i++) {
+			Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+			limiter.release("user1", reqClass);
+		}
+		Assert.assertEquals(500, limiter.tryAcquire("user1", reqClass));
+
+		// other users and request classes have their own bucket
+		Assert.assertEquals(0, limiter.tryAcquire("user2", reqClass));
+		Assert.assertEquals(0, limiter.tryAcquire("user1",
+				RateLimiter.RequestClass.EXPORT));
+
+		Map<RateLimiter.RequestClass,RateLimiter.Stats> stats =
+				limiter.getStats();
+		Assert.assertEquals(1, stats.size());
+		Assert.assertEquals(8, stats.get(reqClass).getAdmitted());
+		Assert.assertEquals(4, stats.get(reqClass).getRejected());
+		stats = limiter.getStats();
+		Assert.assertEquals(0, stats.get(reqClass).getAdmitted());
+		Assert.assertEquals(0, stats.get(reqClass).getRejected());
+	}
+
+	@Test
+	public void testConcurrencyRelease() {
+		// enough tokens, at most 2 running requests
+		TestRateLimiter limiter = new TestRateLimiter("syncRead:100:100:2");
+		RateLimiter.RequestClass reqClass = RateLimiter.RequestClass.SYNC_READ;
+		Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+		Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+		Assert.assertTrue(limiter.tryAcquire("user1", reqClass) > 0);
+		Assert.assertEquals(0, limiter.tryAcquire("user2", reqClass));
+
+		// a release by another user doesn't free a slot
+		limiter.release("user2", reqClass);
+		Assert.assertTrue(limiter.tryAcquire("user1", reqClass) > 0);
+
+		limiter.release("user1", reqClass);
+		Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+		Assert.assertTrue(limiter.tryAcquire("user1", reqClass) > 0);
+
+		// extra releases don't allow more running requests
+		for (int i = 0; i < 4; i++) {
+			limiter.release("user1", reqClass);
+		}
+		Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+		Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+		Assert.assertTrue(limiter.tryAcquire("user1", reqClass) > 0);
+
+		// running requests are kept when idle users are cleaned
+		limiter.now += 120000;
+		Assert.assertTrue(limiter.tryAcquire("user1", reqClass) > 0);
+		limiter.release("user1", reqClass);
+		Assert.assertEquals(0, limiter.tryAcquire("user1", reqClass));
+	}
+
+	private static class TestRateLimiter extends RateLimiter {
+		private long now = 1000000;
+
+		public TestRateLimiter(String rateLimits) {
+			super(rateLimits);
+		}
+
+		@Override
+		long currentTimeMillis() {
+			return now;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package nl.rrd.senseeact.service.deletion;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.memdb.MemoryDatabaseFactory;
+import nl.rrd.senseeact.service.model.UserDeletionTask;
+import nl.rrd.senseeact.service.model.UserDeletionTaskTable;
+import nl.rrd.utils.exception.DatabaseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+public class UserDeletionManagerTest {
+	private static final String USER1 = "user1@example.com";
+	private static final String USER2 = "user2@example.com";
+
+	private DatabaseConnection dbConn;
+	private Database authDb;
+	private TestUserDeletionManager manager;
+
+	@Before
+	public void setUp() throws Exception {
+		dbConn = new MemoryDatabaseFactory().connect();
+		authDb = dbConn.initDatabase("auth", Collections.singletonList(
+				new UserDeletionTaskTable()), false);
+		manager = new TestUserDeletionManager();
+	}
+
+	@After
+	public void tearDown() {
+		manager.destroy();
+		dbConn.close();
+	}
+
+	@Test
+	public void testResumeTasks() throws Exception {
+		long now = System.currentTimeMillis();
+		List<UserDeletionTask> tasks = new ArrayList<>();
+		tasks.add(createTask(USER1, "project1", UserDeletionStatus.COMPLETED,
+				now));
+		// the service stopped while this task was running
+		tasks.add(createTask(USER1, "project2", UserDeletionStatus.RUNNING,
+				now));
+		tasks.add(createTask(USER1, "project3", UserDeletionStatus.PENDING,
+				now));
+		// completed more than a week ago
+		tasks.add(createTask(USER2, "project1", UserDeletionStatus.COMPLETED,
+				now - 8 * 24 * 3600000L));
+		authDb.insert(UserDeletionTaskTable.NAME, tasks);
+		UserDeletionProgress progress = manager.getProgress(authDb, USER1);
+		Assert.assertEquals(UserDeletionStatus.RUNNING.name(),
+				progress.getStatus());
+		Assert.assertEquals(1, progress.getCompleted());
+
+		manager.init();
+		progress = waitForDeletion(USER1);
+		Assert.assertEquals(UserDeletionStatus.COMPLETED.name(),
+				progress.getStatus());
+		Assert.assertEquals(3, progress.getCompleted());
+		Assert.assertEquals(0, progress.getFailed());
+		Assert.assertEquals(Arrays.asList("project2", "project3"),
+				manager.getPurgedProjects());
+		Assert.assertNull(manager.getProgress(authDb, USER2));
+	}
+
+	@Test
+	public void testRetryStatusUpdate() throws Exception {
+		UserDeletionTask task = createTask(USER1, "project1",
+				UserDeletionStatus.PENDING, System.currentTimeMillis());
+		authDb.insert(UserDeletionTaskTable.NAME,
+				Collections.singletonList(task));
+		// fail the first RUNNING update and the first COMPLETED update
+		manager.failures.addAll(Arrays.asList(true, false, true, false,
+				false));
+
+		manager.init();
+		UserDeletionProgress progress = waitForDeletion(USER1);
+		Assert.assertEquals(UserDeletionStatus.COMPLETED.name(),
+				progress.getStatus());
+		Assert.assertEquals(1, progress.getCompleted());
+		// the purge is run again after the COMPLETED update failed
+		Assert.assertEquals(Arrays.asList("project1", "project1"),
+				manager.getPurgedProjects());
+		Assert.assertTrue(manager.failures.isEmpty());
+	}
+
+	@Test
+	public void testFailedPurge() throws Exception {
+		UserDeletionTask task = createTask(USER1, "project1",
+				UserDeletionStatus.PENDING, System.currentTimeMillis());
+		authDb.insert(UserDeletionTaskTable.NAME,
+				Collections.singletonList(task));
+		manager.failPurge = true;
+
+		manager.init();
+		UserDeletionProgress progress = waitForDeletion(USER1);
+		Assert.assertEquals(UserDeletionStatus.FAILED.name(),
+				progress.getStatus());
+		Assert.assertEquals(1, progress.getFailed());
+		List<UserDeletionTask> tasks = authDb.select(
+				new UserDeletionTaskTable(), null, 0, null);
+		Assert.assertEquals("Purge failed", tasks.get(0).getError());
+	}
+
+	private UserDeletionTask createTask(String user, String project,
+			UserDeletionStatus status, long time) {
+		UserDeletionTask task = new UserDeletionTask(user, project, time);
+		task.setStatus(status.name());
+		return task;
+	}
+
+	private UserDeletionProgress waitForDeletion(String user)
+			throws Exception {
+		long end = System.currentTimeMillis() + 10000;
+		while (true) {
+			UserDeletionProgress progress = manager.getProgress(authDb, user);
+			if (!progress.getStatus().equals(
+					UserDeletionStatus.RUNNING.name())) {
+				return progress;
+			}
+			if (System.currentTimeMillis() >= end)
+				Assert.fail("Deletion of user " + user + " not finished");
+			Thread.sleep(10);
+		}
+	}
+
+	private class TestUserDeletionManager extends UserDeletionManager {
+		// failures of the auth database calls after initialisation
+		private final LinkedList<Boolean> failures = new LinkedList<>();
+		private boolean failPurge = false;
+		private boolean initialised = false;
+		private final List<String> purgedProjects = new ArrayList<>();
+
+		@Override
+		int getWorkerThreadCount() {
+			return 1;
+		}
+
+		@Override
+		int getRetryDelay() {
+			return 10;
+		}
+
+		@Override
+		void runWithAuthDb(DatabaseRunner runner) throws DatabaseException {
+			synchronized (this) {
+				if (!initialised) {
+					initialised = true;
+				} else if (!failures.isEmpty() && failures.removeFirst()) {
+					throw new DatabaseException("Auth database failed");
+				}
+			}
+			runner.run(authDb);
+		}
+
+		@Override
+		void purgeUser(UserDeletionTask task) throws DatabaseException {
+			if (failPurge)
+				throw new DatabaseException("Purge failed");
+			synchronized (this) {
+				purgedProjects.add(task.getProject());
+			}
+		}
+
+		public synchronized List<String> getPurgedProjects() {
+			return new ArrayList<>(purgedProjects);
+		}
+	}
+}
@@ -0,0 +1,332 @@
+package nl.rrd.senseeact.service.ingest;
+
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireData;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireDataTable;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.senseeact.dao.memdb.MemoryDatabaseFactory;
+import nl.rrd.senseeact.service.model.User;
+import nl.rrd.utils.exception.DatabaseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+public class IngestionQueueTest {
+	private static final String PROJECT = "project1";
+	private static final String BAD_PROJECT = "project2";
+	private static final String USER = "user1";
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private DatabaseConnection dbConn;
+	private Database projectDb;
+	private File queueDir;
+	private User user;
+	private List<TestIngestionQueue> queues = new ArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		dbConn = new MemoryDatabaseFactory().connect();
+		projectDb = dbConn.initDatabase(PROJECT, Collections.singletonList(
+				new QuestionnaireDataTable()), false);
+		queueDir = new File(tempFolder.getRoot(), "ingestion");
+		user = new User();
+		user.setUserid(USER);
+	}
+
+	@After
+	public void tearDown() {
+		for (TestIngestionQueue queue : queues) {
+			queue.destroy();
+		}
+		dbConn.close();
+	}
+
+	@Test
+	public void testAppend() throws Exception {
+		TestIngestionQueue queue = startQueue();
+		List<QuestionnaireData> records = addRecords(queue, PROJECT, 2);
+		records.addAll(addRecords(queue, PROJECT, 2));
+		Assert.assertTrue(queue.flush(PROJECT, QuestionnaireDataTable.NAME,
+				USER));
+		assertRecords(records);
+		List<File> files = listSegmentFiles();
+		Assert.assertEquals(1, files.size());
+		List<String> lines = Files.readAllLines(files.get(0).toPath(),
+				StandardCharsets.UTF_8);
+		Assert.assertEquals(2, lines.size());
+		Assert.assertTrue(lines.get(0).startsWith("{\"seq\":1,"));
+		Assert.assertTrue(lines.get(1).startsWith("{\"seq\":2,"));
+	}
+
+	@Test
+	public void testGroupCommit() throws Exception {
+		TestIngestionQueue queue = startQueue();
+		queue.syncDelay = 20;
+		List<QuestionnaireData> records = new ArrayList<>();
+		List<Exception> errors = new ArrayList<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					for (int j = 0; j < 10; j++) {
+						List<QuestionnaireData> added = addRecords(queue,
+								PROJECT, 1);
+						synchronized (records) {
+							records.addAll(added);
+						}
+					}
+				} catch (Exception ex) {
+					synchronized (errors) {
+						errors.add(ex);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(new ArrayList<Exception>(), errors);
+		Assert.assertTrue(queue.flush(PROJECT, QuestionnaireDataTable.NAME,
+				USER));
+		assertRecords(records);
+		// concurrent inserts share a sync
+		Assert.assertTrue(queue.getSyncCount() < 80);
+	}
+
+	@Test
+	public void testReplay() throws Exception {
+		TestIngestionQueue queue = startQueue();
+		queue.databaseDown = true;
+		List<QuestionnaireData> applied = addRecords(queue, PROJECT, 2);
+		List<QuestionnaireData> records = addRecords(queue, PROJECT, 2);
+		queue.destroy();
+		// the first entry was written before the checkpoint
+		projectDb.insert(QuestionnaireDataTable.NAME, applied);
+		records.addAll(applied);
+
+		queue = startQueue();
+		records.addAll(addRecords(queue, PROJECT, 1));
+		Assert.assertTrue(queue.flush(PROJECT, QuestionnaireDataTable.NAME,
+				USER));
+		assertRecords(records);
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+		TestIngestionQueue queue = startQueue();
+		// start a new segment for each entry
+		queue.segmentSize = 1;
+		for (int i = 0; i < 3; i++) {
+			addRecords(queue, PROJECT, 1);
+		}
+		Assert.assertTrue(queue.flush(PROJECT, QuestionnaireDataTable.NAME,
+				USER));
+		File checkpoint = new File(queueDir, "checkpoint");
+		waitFor(() -> checkpoint.exists() && Files.readString(
+				checkpoint.toPath()).equals("3"));
+		waitFor(() -> listSegmentFiles().isEmpty());
+		queue.destroy();
+
+		// applied entries are not replayed
+		projectDb.delete(new QuestionnaireDataTable(),
+				new DatabaseCriteria.Equal("user", USER));
+		queue = startQueue();
+		List<QuestionnaireData> records = addRecords(queue, PROJECT, 1);
+		Assert.assertTrue(queue.flush(PROJECT, QuestionnaireDataTable.NAME,
+				USER));
+		assertRecords(records);
+		Assert.assertTrue(listSegmentFiles().get(0).getName().endsWith(
+				"0000000000000004.log"));
+	}
+
+	@Test
+	public void testDeadLetter() throws Exception {
+		TestIngestionQueue queue = startQueue();
+		addRecords(queue, BAD_PROJECT, 1);
+		List<QuestionnaireData> records = addRecords(queue, PROJECT, 2);
+		Assert.assertTrue(queue.flush(PROJECT, QuestionnaireDataTable.NAME,
+				USER));
+		Assert.assertTrue(queue.flush(BAD_PROJECT,
+				QuestionnaireDataTable.NAME, USER));
+		assertRecords(records);
+		File deadLetter = new File(queueDir, "dead_letter.log");
+		List<String> lines = Files.readAllLines(deadLetter.toPath(),
+				StandardCharsets.UTF_8);
+		Assert.assertEquals(1, lines.size());
+		Assert.assertTrue(lines.get(0).contains("\"project\":\"" +
+				BAD_PROJECT + "\""));
+		// a failed batch with other entries does not count as an attempt
+		Assert.assertTrue(queue.getFailedAttempts() >=
+				IngestionQueue.MAX_APPLY_ATTEMPTS);
+	}
+
+	private TestIngestionQueue startQueue() {
+		TestIngestionQueue queue = new TestIngestionQueue();
+		queues.add(queue);
+		queue.init();
+		return queue;
+	}
+
+	/**
+	 * Adds one entry with the specified number of records. If the queue is
+	 * not running yet, it retries until the entry is added.
+	 */
+	private List<QuestionnaireData> addRecords(TestIngestionQueue queue,
+			String project, int count) throws Exception {
+		List<QuestionnaireData> records = new ArrayList<>();
+		ZonedDateTime time = ZonedDateTime.of(2026, 1, 1, 10, 0, 0, 0,
+				ZoneId.of("Europe/Amsterdam"));
+		for (int i = 0; i < count; i++) {
+			QuestionnaireData record = new QuestionnaireData(USER,
+					time.plusMinutes(i));
+			record.setQuestionnaireId("questionnaire1");
+			records.add(record);
+		}
+		long end = System.currentTimeMillis() + 10000;
+		while (!queue.add(projectDb, project, new QuestionnaireDataTable(),
+				user, records)) {
+			if (System.currentTimeMillis() >= end)
+				Assert.fail("Ingestion queue not running");
+			Thread.sleep(10);
+		}
+		return records;
+	}
+
+	private void assertRecords(List<QuestionnaireData> expected)
+			throws Exception {
+		List<QuestionnaireData> records = projectDb.select(
+				new QuestionnaireDataTable(),
+				new DatabaseCriteria.Equal("user", USER), 0, null);
+		Set<String> ids = new HashSet<>();
+		for (QuestionnaireData record : records) {
+			ids.add(record.getId());
+		}
+		Set<String> expectedIds = new HashSet<>();
+		for (QuestionnaireData record : expected) {
+			expectedIds.add(record.getId());
+		}
+		Assert.assertEquals(expected.size(), records.size());
+		Assert.assertEquals(expectedIds, ids);
+	}
+
+	private List<File> listSegmentFiles() {
+		File[] files = queueDir.listFiles((dir, name) ->
+				name.startsWith("wal_"));
+		List<File> result = new ArrayList<>();
+		if (files != null)
+			Collections.addAll(result, files);
+		return result;
+	}
+
+	private void waitFor(Callable<Boolean> condition) throws Exception {
+		long end = System.currentTimeMillis() + 10000;
+		while (!condition.call()) {
+			if (System.currentTimeMillis() >= end)
+				Assert.fail("Condition not met");
+			Thread.sleep(10);
+		}
+	}
+
+	private class TestIngestionQueue extends IngestionQueue {
+		private volatile boolean databaseDown = false;
+		private volatile long segmentSize = 1024 * 1024;
+		private volatile long syncDelay = 0;
+		private int syncCount = 0;
+		private int failedAttempts = 0;
+
+		@Override
+		boolean isQueueEnabled() {
+			return true;
+		}
+
+		@Override
+		File getQueueDir() {
+			return queueDir;
+		}
+
+		@Override
+		long getSegmentSize() {
+			return segmentSize;
+		}
+
+		@Override
+		int getRetryDelay() {
+			return 10;
+		}
+
+		@Override
+		void syncOutput(FileOutputStream output) throws IOException {
+			synchronized (this) {
+				syncCount++;
+			}
+			if (syncDelay > 0) {
+				try {
+					Thread.sleep(syncDelay);
+				} catch (InterruptedException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+			super.syncOutput(output);
+		}
+
+		@Override
+		DatabaseConnection openConnection() throws IOException {
+			if (databaseDown)
+				throw new IOException("Database down");
+			return dbConn;
+		}
+
+		@Override
+		Database initProjectDatabase(DatabaseConnection dbConn,
+				String project) throws DatabaseException {
+			if (project.equals(BAD_PROJECT)) {
+				synchronized (this) {
+					failedAttempts++;
+				}
+				throw new DatabaseException("Can't write project " + project);
+			}
+			return projectDb;
+		}
+
+		@Override
+		DatabaseTableDef<?> findTable(String project, String table) {
+			return new QuestionnaireDataTable();
+		}
+
+		@Override
+		boolean isDatabaseAvailable() {
+			return !databaseDown;
+		}
+
+		public synchronized int getSyncCount() {
+			return syncCount;
+		}
+
+		public synchronized int getFailedAttempts() {
+			return failedAttempts;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package nl.rrd.senseeact.service.mobilelog;
+
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.memdb.MemoryDatabaseFactory;
+import nl.rrd.senseeact.service.model.MobileLogSegment;
+import nl.rrd.senseeact.service.model.MobileLogSegmentTable;
+import nl.rrd.utils.exception.DatabaseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.List;
+
+public class MobileLogStoreTest {
+	private static final String APP = "app";
+	private static final String USER = "user1@example.com";
+	private static final LocalDate DATE = LocalDate.of(2026, 1, 1);
+
+	@Rule
+	public TemporaryFolder tempFolder = new TemporaryFolder();
+
+	private DatabaseConnection dbConn;
+	private Database authDb;
+	private File logDir;
+	private TestMobileLogStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		dbConn = new MemoryDatabaseFactory().connect();
+		authDb = dbConn.initDatabase("auth", Collections.singletonList(
+				new MobileLogSegmentTable()), false);
+		logDir = new File(tempFolder.getRoot(), "mobilelog");
+		store = new TestMobileLogStore();
+	}
+
+	@After
+	public void tearDown() {
+		store.destroy();
+		dbConn.close();
+	}
+
+	@Test
+	public void testGap() throws Exception {
+		write("", DATE, false, 2, "ab");
+		write("", DATE, false, 6, "cd");
+		List<MobileLogSegment> segments = findSegments("", DATE, false);
+		Assert.assertEquals(2, segments.size());
+		Assert.assertEquals(2, segments.get(0).getPosition());
+		Assert.assertEquals(6, segments.get(1).getPosition());
+		Assert.assertEquals("\0\0ab\0\0cd", read(segments));
+	}
+
+	@Test
+	public void testActiveSegment() throws Exception {
+		write("", DATE, false, 0, "hello ");
+		write("", DATE, false, 6, "world");
+		List<MobileLogSegment> segments = findSegments("", DATE, false);
+		Assert.assertEquals(1, segments.size());
+		Assert.assertEquals(MobileLogSegmentStatus.ACTIVE.name(),
+				segments.get(0).getStatus());
+		Assert.assertEquals("hello world", read(segments));
+	}
+
+	@Test
+	public void testCompressedSegment() throws Exception {
+		store.segmentSize = 4;
+		write("", DATE, false, 0, "abcdef");
+		// the first segment is full, so this closes it
+		write("", DATE, false, 6, "gh");
+		List<MobileLogSegment> found = findSegments("", DATE, false);
+		Assert.assertEquals(2, found.size());
+		MobileLogSegment closed = found.get(0);
+		Assert.assertEquals(MobileLogSegmentStatus.CLOSED.name(),
+				closed.getStatus());
+		Assert.assertEquals(6, closed.getLength());
+		store.compressSegment(closed);
+		File dir = store.getLogDir(APP, USER, "");
+		Assert.assertFalse(new File(dir, closed.getFile()).exists());
+		Assert.assertTrue(new File(dir, closed.getFile() + ".gz").exists());
+		// the segment was compressed after it was found
+		Assert.assertEquals("abcdefgh", read(found));
+		List<MobileLogSegment> segments = findSegments("", DATE, false);
+		Assert.assertEquals(MobileLogSegmentStatus.COMPRESSED.name(),
+				segments.get(0).getStatus());
+		Assert.assertEquals(closed.getFile() + ".gz",
+				segments.get(0).getFile());
+		Assert.assertEquals("abcdefgh", read(segments));
+	}
+
+	@Test
+	public void testLegacyImport() throws Exception {
+		LocalDate date2 = DATE.plusDays(1);
+		LocalDate date3 = DATE.plusDays(2);
+		File userDir = store.getLogDir(APP, USER, "");
+		writeFile(new File(userDir, "20260101_000000.log"), "old");
+		writeFile(new File(userDir, "20260101_000001.log"), "new");
+		writeFile(new File(userDir, "20260101_000000.zip"), "zip");
+		writeFile(new File(store.getLogDir(APP, USER, "device1"),
+				"20260102_000000.log"), "device");
+		// this log file has new segments before the import
+		write("", date3, false, 0, "segment");
+		writeFile(new File(userDir, "20260103_000000.log"), "legacy");
+
+		store.importLegacyFiles(authDb);
+		Assert.assertTrue(new File(logDir, "legacy_imported").exists());
+		List<MobileLogSegment> segments = findSegments("", DATE, false);
+		Assert.assertEquals(2, segments.size());
+		Assert.assertEquals(0, segments.get(0).getGeneration());
+		Assert.assertEquals(1, segments.get(1).getGeneration());
+		Assert.assertEquals(MobileLogSegmentStatus.CLOSED.name(),
+				segments.get(0).getStatus());
+		Assert.assertEquals("oldnew", read(segments));
+		Assert.assertEquals("zip", read(findSegments("", DATE, true)));
+		Assert.assertEquals("device", read(findSegments("device1", date2,
+				false)));
+		Assert.assertEquals("segment", read(findSegments("", date3, false)));
+
+		// an interrupted import skips the registered files
+		new File(logDir, "legacy_imported").delete();
+		store.importLegacyFiles(authDb);
+		Assert.assertEquals(2, findSegments("", DATE, false).size());
+
+		// continue the last generation
+		write("", DATE, false, 3, "er");
+		segments = findSegments("", DATE, false);
+		Assert.assertEquals(3, segments.size());
+		Assert.assertEquals("20260101_000001_000001.log",
+				segments.get(2).getFile());
+		Assert.assertEquals("oldnewer", read(segments));
+	}
+
+	private void write(String device, LocalDate date, boolean zip,
+			long position, String data) throws Exception {
+		store.write(authDb, APP, USER, device, date, zip, position,
+				new ByteArrayInputStream(data.getBytes(
+						StandardCharsets.UTF_8)));
+	}
+
+	private List<MobileLogSegment> findSegments(String device, LocalDate date,
+			boolean zip) throws Exception {
+		return store.findSegments(authDb, APP, USER, device, date, date, zip);
+	}
+
+	private String read(List<MobileLogSegment> segments) throws Exception {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		store.writeSegments(segments, output);
+		return output.toString(StandardCharsets.UTF_8);
+	}
+
+	private void writeFile(File file, String data) throws IOException {
+		file.getParentFile().mkdirs();
+		try (OutputStream output = new FileOutputStream(file)) {
+			output.write(data.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private class TestMobileLogStore extends MobileLogStore {
+		private long segmentSize = 1024;
+
+		@Override
+		File getMobileLogDir() {
+			return logDir;
+		}
+
+		@Override
+		long getSegmentSize() {
+			return segmentSize;
+		}
+
+		@Override
+		void runWithAuthDb(DatabaseRunner runner) throws DatabaseException,
+				IOException {
+			runner.run(authDb);
+		}
+	}
+}
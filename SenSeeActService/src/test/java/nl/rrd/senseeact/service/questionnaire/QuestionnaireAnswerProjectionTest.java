@@ -0,0 +1,236 @@
+package nl.rrd.senseeact.service.questionnaire;
+
+import nl.rrd.senseeact.client.model.Role;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionData;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireData;
+import nl.rrd.senseeact.client.model.questionnaire.QuestionnaireDataTable;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseCriteria;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.senseeact.dao.memdb.MemoryDatabaseFactory;
+import nl.rrd.senseeact.service.model.QuestionnaireAnswer;
+import nl.rrd.senseeact.service.model.QuestionnaireAnswerTable;
+import nl.rrd.senseeact.service.model.QuestionnaireBackfill;
+import nl.rrd.senseeact.service.model.QuestionnaireBackfillTable;
+import nl.rrd.senseeact.service.model.UserProject;
+import nl.rrd.senseeact.service.model.UserProjectTable;
+import nl.rrd.utils.exception.DatabaseException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+public class QuestionnaireAnswerProjectionTest {
+	private static final String PROJECT = "qnproject";
+	private static final String QUESTIONNAIRE = "questionnaire1";
+	private static final String USER1 = "user1@example.com";
+	private static final String USER2 = "user2@example.com";
+
+	private DatabaseConnection dbConn;
+	private Database authDb;
+	private Database projectDb;
+	private TestProjection projection;
+
+	@Before
+	public void setUp() throws Exception {
+		dbConn = new MemoryDatabaseFactory().connect();
+		authDb = dbConn.initDatabase("auth", Arrays.asList(
+				new QuestionnaireAnswerTable(),
+				new QuestionnaireBackfillTable(),
+				new UserProjectTable()), false);
+		dbConn.setSyncEnabled(true);
+		dbConn.setRangeDeleteEnabled(true);
+		projectDb = dbConn.initDatabase(PROJECT, Collections.singletonList(
+				new QuestionnaireDataTable()), false);
+		List<UserProject> userProjects = new ArrayList<>();
+		for (String user : List.of(USER1, USER2)) {
+			UserProject userProject = new UserProject();
+			userProject.setUser(user);
+			userProject.setProjectCode(PROJECT);
+			userProject.setAsRole(Role.PATIENT);
+			userProjects.add(userProject);
+		}
+		authDb.insert(UserProjectTable.NAME, userProjects);
+		projection = new TestProjection();
+	}
+
+	@After
+	public void tearDown() {
+		projection.destroy();
+		dbConn.close();
+	}
+
+	@Test
+	public void testBackfill() throws Exception {
+		QuestionnaireData record1 = insertRecord(USER1, 0, "a");
+		QuestionnaireData record2 = insertRecord(USER2, 1, List.of(1, 2));
+		projection.init();
+		waitFor(() -> authDb.count(new QuestionnaireBackfillTable(),
+				null) == 1);
+		List<QuestionnaireAnswer> answers = selectAnswers();
+		Assert.assertEquals(3, answers.size());
+		assertAnswer(answers.get(0), record1, "a", null);
+		assertAnswer(answers.get(1), record2, "1", 1.0);
+		assertAnswer(answers.get(2), record2, "2", 2.0);
+		QuestionnaireBackfill backfill = authDb.selectOne(
+				new QuestionnaireBackfillTable(), null, null);
+		Assert.assertEquals(PROJECT, backfill.getProject());
+	}
+
+	@Test
+	public void testBackfillMarker() throws Exception {
+		QuestionnaireBackfill backfill = new QuestionnaireBackfill();
+		backfill.setProject(PROJECT);
+		backfill.setUtcTime(System.currentTimeMillis());
+		authDb.insert(QuestionnaireBackfillTable.NAME, backfill);
+		insertRecord(USER1, 0, "a");
+		projection.init();
+		projection.waitForInit();
+		QuestionnaireData record = insertRecord(USER1, 1, "b");
+		waitFor(() -> !selectAnswers().isEmpty());
+		// the project is not built again, so the first record is missing
+		List<QuestionnaireAnswer> answers = selectAnswers();
+		Assert.assertEquals(1, answers.size());
+		assertAnswer(answers.get(0), record, "b", null);
+		Assert.assertEquals(1, authDb.count(new QuestionnaireBackfillTable(),
+				null));
+	}
+
+	@Test
+	public void testListenerUpdates() throws Exception {
+		projection.init();
+		waitFor(() -> authDb.count(new QuestionnaireBackfillTable(),
+				null) == 1);
+		QuestionnaireData record = insertRecord(USER1, 0, "a");
+		waitFor(() -> selectAnswers().size() == 1);
+		assertAnswer(selectAnswers().get(0), record, "a", null);
+
+		record.setAnswerList(createAnswerList(List.of("3", "b")));
+		projectDb.update(QuestionnaireDataTable.NAME, record);
+		waitFor(() -> selectAnswers().size() == 2);
+		List<QuestionnaireAnswer> answers = selectAnswers();
+		assertAnswer(answers.get(0), record, "3", 3.0);
+		assertAnswer(answers.get(1), record, "b", null);
+
+		projectDb.delete(QuestionnaireDataTable.NAME, record);
+		waitFor(() -> selectAnswers().isEmpty());
+	}
+
+	@Test
+	public void testRangeDelete() throws Exception {
+		projection.init();
+		waitFor(() -> authDb.count(new QuestionnaireBackfillTable(),
+				null) == 1);
+		QuestionnaireData record1 = insertRecord(USER1, 0, "a");
+		QuestionnaireData record2 = insertRecord(USER1, 1, "b");
+		QuestionnaireData record3 = insertRecord(USER2, 0, "c");
+		waitFor(() -> selectAnswers().size() == 3);
+		projectDb.delete(new QuestionnaireDataTable(),
+				new DatabaseCriteria.And(
+					new DatabaseCriteria.Equal("user", USER1),
+					new DatabaseCriteria.LessEqual("utcTime",
+							record1.getUtcTime())
+				));
+		waitFor(() -> selectAnswers().size() == 2);
+		List<QuestionnaireAnswer> answers = selectAnswers();
+		assertAnswer(answers.get(0), record3, "c", null);
+		assertAnswer(answers.get(1), record2, "b", null);
+	}
+
+	private QuestionnaireData insertRecord(String user, int minute,
+			Object value) throws Exception {
+		ZonedDateTime time = ZonedDateTime.of(2026, 1, 1, 10, minute, 0, 0,
+				ZoneId.of("Europe/Amsterdam"));
+		QuestionnaireData record = new QuestionnaireData(user, time);
+		record.setQuestionnaireId(QUESTIONNAIRE);
+		record.setAnswerList(createAnswerList(value));
+		projectDb.insert(QuestionnaireDataTable.NAME, record);
+		return record;
+	}
+
+	private List<QuestionData> createAnswerList(Object value) {
+		QuestionData question = new QuestionData();
+		question.setQuestionId("question1");
+		question.setData(Map.of("value", value));
+		return Collections.singletonList(question);
+	}
+
+	private List<QuestionnaireAnswer> selectAnswers() throws Exception {
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("utcTime", true),
+				new DatabaseSort("user", true),
+				new DatabaseSort("strValue", true)
+		};
+		return authDb.select(new QuestionnaireAnswerTable(), null, 0, sort);
+	}
+
+	private void assertAnswer(QuestionnaireAnswer answer,
+			QuestionnaireData record, String strValue, Double numValue) {
+		Assert.assertEquals(PROJECT, answer.getProject());
+		Assert.assertEquals(record.getUser(), answer.getUser());
+		Assert.assertEquals(record.getId(), answer.getRecordId());
+		Assert.assertEquals(QUESTIONNAIRE, answer.getQuestionnaireId());
+		Assert.assertEquals("question1", answer.getQuestionId());
+		Assert.assertEquals("value", answer.getDataKey());
+		Assert.assertEquals(strValue, answer.getStrValue());
+		Assert.assertEquals(numValue, answer.getNumValue());
+		Assert.assertEquals(record.getUtcTime(), answer.getUtcTime());
+	}
+
+	private void waitFor(Callable<Boolean> condition) throws Exception {
+		long end = System.currentTimeMillis() + 10000;
+		while (!condition.call()) {
+			if (System.currentTimeMillis() >= end)
+				Assert.fail("Projection not updated");
+			Thread.sleep(10);
+		}
+	}
+
+	private class TestProjection extends QuestionnaireAnswerProjection {
+		private boolean initialised = false;
+
+		@Override
+		List<String> getQuestionnaireProjects() {
+			return Collections.singletonList(PROJECT);
+		}
+
+		@Override
+		int getRetryDelay() {
+			return 10;
+		}
+
+		@Override
+		void runWithDatabases(String project, DatabaseRunner runner)
+				throws DatabaseException {
+			runner.run(authDb, project == null ? null : projectDb);
+			// the listeners are registered before the first call without
+			// a project
+			if (project == null) {
+				synchronized (this) {
+					initialised = true;
+					notifyAll();
+				}
+			}
+		}
+
+		public synchronized void waitForInit() throws InterruptedException {
+			long end = System.currentTimeMillis() + 10000;
+			long now = System.currentTimeMillis();
+			while (!initialised && now < end) {
+				wait(end - now);
+				now = System.currentTimeMillis();
+			}
+			Assert.assertTrue(initialised);
+		}
+	}
+}
@@ -0,0 +1,182 @@
+package nl.rrd.senseeact.service.scheduled;
+
+import nl.rrd.senseeact.client.model.SystemStat;
+import nl.rrd.senseeact.client.model.SystemStatRollup;
+import nl.rrd.senseeact.client.model.SystemStatRollupTable;
+import nl.rrd.senseeact.client.model.SystemStatTable;
+import nl.rrd.senseeact.dao.Database;
+import nl.rrd.senseeact.dao.DatabaseConnection;
+import nl.rrd.senseeact.dao.DatabaseSort;
+import nl.rrd.senseeact.dao.DatabaseTableDef;
+import nl.rrd.senseeact.dao.memdb.MemoryDatabaseFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SystemStatRollupWriterTest {
+	private DatabaseConnection dbConn;
+	private Database authDb;
+
+	@Before
+	public void setUp() throws Exception {
+		dbConn = new MemoryDatabaseFactory().connect();
+		List<DatabaseTableDef<?>> tables = new ArrayList<>();
+		tables.add(new SystemStatTable());
+		for (SystemStatRollup.Resolution resolution :
+				SystemStatRollup.Resolution.values()) {
+			if (resolution != SystemStatRollup.Resolution.RAW)
+				tables.add(new SystemStatRollupTable(resolution));
+		}
+		authDb = dbConn.initDatabase("auth", tables, false);
+	}
+
+	@After
+	public void tearDown() {
+		dbConn.close();
+	}
+
+	@Test
+	public void testBucketRollup() throws Exception {
+		ZonedDateTime start = ZonedDateTime.of(2026, 1, 1, 10, 0, 0, 0,
+				ZoneOffset.UTC);
+		SystemStatRollupWriter writer = new SystemStatRollupWriter();
+		List<SystemStat> stats = new ArrayList<>();
+		stats.add(createStat(10, start.plusSeconds(30), "a"));
+		stats.add(createStat(20, start.plusSeconds(50), "a"));
+		stats.add(createStat(5, start.plusSeconds(40), "b"));
+		writer.addStats(authDb, stats);
+		// merged into the existing rollups
+		stats = new ArrayList<>();
+		stats.add(createStat(0, start.plusSeconds(10), "a"));
+		stats.add(createStat(30, start.plusSeconds(70), "a"));
+		writer.addStats(authDb, stats);
+
+		List<SystemStatRollup> rollups = selectRollups(
+				SystemStatRollup.Resolution.MINUTE);
+		Assert.assertEquals(3, rollups.size());
+		assertRollup(rollups.get(0), start, "a", 0, 20, 10, 3);
+		assertRollup(rollups.get(1), start, "b", 5, 5, 5, 1);
+		assertRollup(rollups.get(2), start.plusMinutes(1), "a", 30, 30, 30,
+				1);
+		for (SystemStatRollup.Resolution resolution : List.of(
+				SystemStatRollup.Resolution.HOUR,
+				SystemStatRollup.Resolution.DAY)) {
+			ZonedDateTime bucket = start.withHour(
+					resolution == SystemStatRollup.Resolution.DAY ? 0 : 10);
+			rollups = selectRollups(resolution);
+			Assert.assertEquals(2, rollups.size());
+			assertRollup(rollups.get(0), bucket, "a", 0, 30, 15, 4);
+			assertRollup(rollups.get(1), bucket, "b", 5, 5, 5, 1);
+		}
+	}
+
+	@Test
+	public void testConcurrentWriters() throws Exception {
+		ZonedDateTime start = ZonedDateTime.of(2026, 1, 1, 10, 0, 0, 0,
+				ZoneOffset.UTC);
+		List<Thread> threads = new ArrayList<>();
+		List<Exception> errors = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			long value = i;
+			Thread thread = new Thread(() -> {
+				SystemStatRollupWriter writer = new SystemStatRollupWriter();
+				try {
+					for (int j = 0; j < 50; j++) {
+						writer.addStats(authDb, List.of(createStat(value,
+								start.plusSeconds(j), null)));
+					}
+				} catch (Exception ex) {
+					synchronized (errors) {
+						errors.add(ex);
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(new ArrayList<Exception>(), errors);
+		List<SystemStatRollup> rollups = selectRollups(
+				SystemStatRollup.Resolution.MINUTE);
+		Assert.assertEquals(1, rollups.size());
+		assertRollup(rollups.get(0), start, null, 0, 3, 1.5, 200);
+	}
+
+	@Test
+	public void testRetention() throws Exception {
+		LocalDate today = LocalDate.of(2026, 3, 1);
+		ZoneId tz = ZoneId.systemDefault();
+		ZonedDateTime oldTime = today.minusDays(3).atStartOfDay(tz)
+				.plusHours(1);
+		ZonedDateTime newTime = today.atStartOfDay(tz).plusHours(1);
+		List<SystemStat> stats = new ArrayList<>();
+		stats.add(createStat(1, oldTime, null));
+		stats.add(createStat(2, newTime, null));
+		authDb.insert(SystemStatTable.NAME, stats);
+		new SystemStatRollupWriter().addStats(authDb, stats);
+
+		Map<SystemStatRollup.Resolution,Integer> retentions =
+				new LinkedHashMap<>();
+		retentions.put(SystemStatRollup.Resolution.RAW, 1);
+		retentions.put(SystemStatRollup.Resolution.MINUTE, 2);
+		retentions.put(SystemStatRollup.Resolution.HOUR, -1);
+		retentions.put(SystemStatRollup.Resolution.DAY, 10);
+		SystemResourceMonitor monitor = new SystemResourceMonitor() {
+			@Override
+			Map<SystemStatRollup.Resolution,Integer> getRetentions() {
+				return retentions;
+			}
+		};
+		monitor.doCleanData(authDb, today);
+
+		List<SystemStat> rawStats = authDb.select(new SystemStatTable(), null,
+				0, null);
+		Assert.assertEquals(1, rawStats.size());
+		Assert.assertEquals(2, rawStats.get(0).getValue());
+		Assert.assertEquals(1, selectRollups(
+				SystemStatRollup.Resolution.MINUTE).size());
+		Assert.assertEquals(2, selectRollups(
+				SystemStatRollup.Resolution.HOUR).size());
+		Assert.assertEquals(2, selectRollups(
+				SystemStatRollup.Resolution.DAY).size());
+	}
+
+	private SystemStat createStat(long value, ZonedDateTime time,
+			String extra) {
+		return new SystemStat(SystemStat.Name.FREE_MEMORY, value, time,
+				extra);
+	}
+
+	private List<SystemStatRollup> selectRollups(
+			SystemStatRollup.Resolution resolution) throws Exception {
+		DatabaseSort[] sort = new DatabaseSort[] {
+				new DatabaseSort("utcTime", true),
+				new DatabaseSort("extra", true)
+		};
+		return authDb.select(new SystemStatRollupTable(resolution), null, 0,
+				sort);
+	}
+
+	private void assertRollup(SystemStatRollup rollup, ZonedDateTime time,
+			String extra, long min, long max, double avg, int count) {
+		Assert.assertEquals(time.toInstant().toEpochMilli(),
+				rollup.getUtcTime());
+		Assert.assertEquals(extra, rollup.getExtra());
+		Assert.assertEquals(min, rollup.getMin());
+		Assert.assertEquals(max, rollup.getMax());
+		Assert.assertEquals(avg, rollup.getAvg(), 0.0001);
+		Assert.assertEquals(count, rollup.getCount());
+	}
+}
@@ -6,6 +6,7 @@ import java.io.*;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 
@@ -67,6 +68,96 @@ public abstract class BaseConfiguration {
 		return defaultValue;
 	}
 
+	/**
+	 * Returns the value of an integer property. If the property is not set or
+	 * empty, this method returns the default value. If the value is not an
+	 * integer or it is less than the minimum, this method throws a
+	 * RuntimeException.
+	 *
+	 * @param key the property key
+	 * @param defaultValue the default value
+	 * @param min the minimum value
+	 * @return the property value or the default value
+	 */
+	public int getIntProperty(String key, int defaultValue, int min) {
+		String value = get(key);
+		if (value == null || value.trim().isEmpty())
+			return defaultValue;
+		int result;
+		try {
+			result = Integer.parseInt(value.trim());
+		} catch (NumberFormatException ex) {
+			throw createInvalidValueException(key, value, ex);
+		}
+		if (result < min)
+			throw createInvalidValueException(key, value, null);
+		return result;
+	}
+
+	/**
+	 * Returns the value of a boolean property. If the property is not set or
+	 * empty, this method returns the default value. Otherwise the value must
+	 * be "true" or "false", or this method throws a RuntimeException.
+	 *
+	 * @param key the property key
+	 * @param defaultValue the default value
+	 * @return the property value or the default value
+	 */
+	public boolean getBooleanProperty(String key, boolean defaultValue) {
+		String value = get(key);
+		if (value == null || value.trim().isEmpty())
+			return defaultValue;
+		if (value.trim().equals("true"))
+			return true;
+		if (value.trim().equals("false"))
+			return false;
+		throw createInvalidValueException(key, value, null);
+	}
+
+	/**
+	 * Returns the value of a property with a list of keys and integer values,
+	 * for example "key1:10,key2:20". If the property is not set or empty,
+	 * this method returns an empty map. If the value has an invalid format,
+	 * this method throws a RuntimeException.
+	 *
+	 * @param key the property key
+	 * @return the map from keys to integer values
+	 */
+	public Map<String,Integer> getIntMapProperty(String key) {
+		Map<String,Integer> result = new LinkedHashMap<>();
+		String value = get(key);
+		if (value == null || value.trim().isEmpty())
+			return result;
+		for (String item : value.split(",")) {
+			String[] keyValue = item.trim().split(":");
+			if (keyValue.length != 2 || keyValue[0].trim().isEmpty())
+				throw createInvalidValueException(key, value, null);
+			try {
+				result.put(keyValue[0].trim(), Integer.parseInt(
+						keyValue[1].trim()));
+			} catch (NumberFormatException ex) {
+				throw createInvalidValueException(key, value, ex);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the exception that should be thrown if a property has an
+	 * invalid value. This can be used for properties with a format that is
+	 * not supported by the get methods of this class.
+	 *
+	 * @param key the property key
+	 * @param value the invalid value
+	 * @param cause the cause or null
+	 * @return the exception
+	 */
+	public RuntimeException createInvalidValueException(String key,
+			String value, Throwable cause) {
+		return new RuntimeException("Invalid value for property " + key +
+				": " + value, cause);
+	}
+
 	private String tryReadFromFile(String key) {
 		File dataDir = new File(get(DATA_DIR));
 		File configFile = new File(dataDir, "ssaconfig.properties");
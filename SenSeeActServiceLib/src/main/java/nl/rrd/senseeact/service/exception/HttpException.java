@@ -74,6 +74,8 @@ public abstract class HttpException extends Exception {
 			new ForbiddenException(error);
 		case 404 ->
 			new NotFoundException(error);
+		case 429 ->
+			new TooManyRequestsException(error);
 		case 501 ->
 			new NotImplementedException(error);
 		default ->
@@ -0,0 +1,34 @@
+package nl.rrd.senseeact.service.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import nl.rrd.senseeact.client.exception.HttpError;
+import nl.rrd.senseeact.service.controller.ErrorController;
+
+/**
+ * This exception results in a HTTP response with status 429 Too Many
+ * Requests. The exception message (default "Too Many Requests") will be
+ * written to the response. It is handled by the {@link ErrorController
+ * ErrorController}. The thrower should set the header Retry-After.
+ * 
+ * @author Dennis Hofs (RRD)
+ */
+@ResponseStatus(value=HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyRequestsException extends HttpException {
+	public TooManyRequestsException() {
+		super("Too Many Requests");
+	}
+
+	public TooManyRequestsException(String message) {
+		super(message);
+	}
+	
+	public TooManyRequestsException(String code, String message) {
+		super(code, message);
+	}
+	
+	public TooManyRequestsException(HttpError error) {
+		super(error);
+	}
+}